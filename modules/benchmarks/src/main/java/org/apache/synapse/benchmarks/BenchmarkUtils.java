@@ -0,0 +1,69 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.benchmarks;
+
+import org.apache.axis2.context.ConfigurationContext;
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.config.SynapseConfiguration;
+import org.apache.synapse.core.axis2.Axis2MessageContext;
+import org.apache.synapse.mediators.TestUtils;
+
+/**
+ * Helpers shared by the benchmarks
+ */
+final class BenchmarkUtils {
+
+    private BenchmarkUtils() {
+    }
+
+    /**
+     * Create a message context which has the given payload as the first child of the SOAP
+     * body, and which is complete enough to be cloned and mediated through sequences
+     *
+     * @param payload the payload
+     * @param config  the configuration the message belongs to
+     * @return the message context
+     * @throws Exception if the message context could not be created
+     */
+    static MessageContext createMessageContext(String payload, SynapseConfiguration config)
+            throws Exception {
+        MessageContext synCtx = TestUtils.createSynapseMessageContext(payload, config);
+        org.apache.axis2.context.MessageContext axis2Ctx =
+                ((Axis2MessageContext) synCtx).getAxis2MessageContext();
+        axis2Ctx.setConfigurationContext(new ConfigurationContext(config.getAxisConfiguration()));
+        return synCtx;
+    }
+
+    /**
+     * @param orders number of orders
+     * @return a purchase order payload with the given number of orders
+     */
+    static String createOrders(int orders) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<m0:orders xmlns:m0=\"http://services.samples\">");
+        for (int i = 0; i < orders; i++) {
+            sb.append("<m0:order><m0:price>").append(100 + i).append(".5</m0:price>")
+                    .append("<m0:quantity>").append(i + 1).append("</m0:quantity>")
+                    .append("<m0:symbol>SYM").append(i).append("</m0:symbol></m0:order>");
+        }
+        sb.append("</m0:orders>");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.benchmarks;
+
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.commons.util.PropertyHelper;
+import org.apache.synapse.config.SynapseConfiguration;
+import org.apache.synapse.mediators.Value;
+import org.apache.synapse.mediators.bean.BeanMediator;
+import org.apache.synapse.mediators.bean.BeanUtils;
+import org.apache.synapse.mediators.ext.POJOCommandMediator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a POJO command and sets a bean property with the mediators, which resolve the command
+ * class and the bean accessors once, and with the reflective lookups and invocations the
+ * mediators previously made for every message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JavaExtensionBenchmark {
+
+    /**
+     * A command which doesn't implement the Command interface, so that its execute() method is
+     * looked up as well
+     */
+    public static class OrderCommand {
+
+        private String symbol;
+        private int quantity;
+        private double price;
+        private String total;
+
+        public void setSymbol(String symbol) {
+            this.symbol = symbol;
+        }
+
+        public void setQuantity(int quantity) {
+            this.quantity = quantity;
+        }
+
+        public void setPrice(double price) {
+            this.price = price;
+        }
+
+        public String getTotal() {
+            return total;
+        }
+
+        public void execute() {
+            total = symbol + ":" + (quantity * price);
+        }
+    }
+
+    /**
+     * A bean with a few properties, of which one is set
+     */
+    public static class Order {
+
+        private String symbol;
+        private int quantity;
+
+        public String getSymbol() {
+            return symbol;
+        }
+
+        public void setSymbol(String symbol) {
+            this.symbol = symbol;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public void setQuantity(int quantity) {
+            this.quantity = quantity;
+        }
+    }
+
+    private POJOCommandMediator commandMediator;
+    private BeanMediator beanMediator;
+    private MessageContext synCtx;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        commandMediator = new POJOCommandMediator();
+        commandMediator.setCommand(OrderCommand.class);
+        commandMediator.addStaticSetterProperty("quantity", "100");
+        commandMediator.addStaticSetterProperty("price", "10.5");
+        commandMediator.addContextSetterProperty("symbol", "symbol");
+        commandMediator.addContextGetterProperty("total", "total");
+        commandMediator.init(null);
+
+        beanMediator = new BeanMediator();
+        beanMediator.setAction(BeanMediator.Action.SET_PROPERTY);
+        beanMediator.setVarName("order");
+        beanMediator.setPropertyName("quantity");
+        beanMediator.setValue(new Value("25"));
+
+        synCtx = BenchmarkUtils.createMessageContext(BenchmarkUtils.createOrders(1),
+                new SynapseConfiguration());
+        synCtx.setProperty("symbol", "IBM");
+        synCtx.setProperty("order", new Order());
+    }
+
+    @Benchmark
+    public Object pojoCommand() {
+        commandMediator.mediate(synCtx);
+        return synCtx.getProperty("total");
+    }
+
+    /**
+     * What the POJO command mediator did for each message before the command class was bound
+     */
+    @Benchmark
+    public Object pojoCommandReflective() throws Exception {
+        Object command = OrderCommand.class.newInstance();
+        for (Map.Entry<String, Object> entry :
+                commandMediator.getStaticSetterProperties().entrySet()) {
+            PropertyHelper.setInstanceProperty(entry.getKey(), entry.getValue(), command);
+        }
+        for (Map.Entry<String, String> entry :
+                commandMediator.getContextSetterProperties().entrySet()) {
+            PropertyHelper.setInstanceProperty(entry.getKey(),
+                    synCtx.getProperty(entry.getValue()), command);
+        }
+        OrderCommand.class.getMethod("execute").invoke(command);
+        for (Map.Entry<String, String> entry :
+                commandMediator.getContextGetterProperties().entrySet()) {
+            String name = "get" + Character.toUpperCase(entry.getKey().charAt(0)) +
+                    entry.getKey().substring(1);
+            for (Method method : command.getClass().getMethods()) {
+                if (name.equals(method.getName())) {
+                    synCtx.setProperty(entry.getValue(), method.invoke(command));
+                    break;
+                }
+            }
+        }
+        return synCtx.getProperty("total");
+    }
+
+    @Benchmark
+    public Object beanSetProperty() {
+        beanMediator.mediate(synCtx);
+        return synCtx.getProperty("order");
+    }
+
+    /**
+     * What the bean mediator did for each message before the property accessor was bound
+     */
+    @Benchmark
+    public Object beanSetPropertyReflective() throws Exception {
+        Object bean = synCtx.getProperty("order");
+        BeanUtils.invokeInstanceMethod(bean,
+                new PropertyDescriptor("quantity", bean.getClass()).getWriteMethod(),
+                new Object[] {beanMediator.getValue().evaluateObjectValue(synCtx)});
+        return bean;
+    }
+}
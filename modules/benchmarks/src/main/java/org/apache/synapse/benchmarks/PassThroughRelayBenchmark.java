@@ -0,0 +1,194 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.benchmarks;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.synapse.ServerConfigurationInformation;
+import org.apache.synapse.ServerManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Relays SOAP requests through a proxy service on the pass through transport to an echo back
+ * end, end to end over the loopback interface. The proxy service does not look into the
+ * messages, so this is the cheapest path through a running Synapse instance, and any change in
+ * the score comes from the transport, the proxy service dispatching or the send mediator.
+ * <p/>
+ * Synapse listens on port 18280 and the back end on port 19000, as configured by the
+ * relay/axis2.xml and relay/synapse.xml resources of this module.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PassThroughRelayBenchmark {
+
+    private static final String PROXY_URL = "http://localhost:18280/services/RelayProxy";
+    private static final int BACKEND_PORT = 19000;
+
+    @Param({"1", "100"})
+    public int orders;
+
+    private File synapseHome;
+    private HttpServer backend;
+    private ExecutorService backendExecutor;
+    private ServerManager serverManager;
+    private byte[] request;
+
+    @Setup
+    public void setUp() throws Exception {
+        synapseHome = new File(System.getProperty("java.io.tmpdir"),
+                "synapse-benchmark-" + System.currentTimeMillis());
+        File repository = new File(synapseHome, "repository");
+        FileUtils.forceMkdir(new File(repository, "services"));
+        FileUtils.forceMkdir(new File(repository, "modules"));
+        File axis2Xml = copyResource("relay/axis2.xml", synapseHome);
+        File synapseXml = copyResource("relay/synapse.xml", synapseHome);
+
+        backendExecutor = Executors.newFixedThreadPool(
+                Runtime.getRuntime().availableProcessors());
+        backend = HttpServer.create(new InetSocketAddress(BACKEND_PORT), 0);
+        backend.createContext("/echo", new EchoHandler());
+        backend.setExecutor(backendExecutor);
+        backend.start();
+
+        ServerConfigurationInformation information = new ServerConfigurationInformation();
+        information.setSynapseHome(synapseHome.getAbsolutePath());
+        information.setSynapseXMLLocation(synapseXml.getAbsolutePath());
+        information.setAxis2Xml(axis2Xml.getAbsolutePath());
+        information.setAxis2RepoLocation(repository.getAbsolutePath());
+        information.setResolveRoot(repository.getAbsolutePath());
+        information.setServerName("benchmark");
+
+        serverManager = new ServerManager();
+        serverManager.init(information, null);
+        serverManager.start();
+
+        request = ("<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\">" +
+                "<soapenv:Body>" + BenchmarkUtils.createOrders(orders) +
+                "</soapenv:Body></soapenv:Envelope>").getBytes("UTF-8");
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (serverManager != null) {
+            serverManager.shutdown();
+        }
+        if (backend != null) {
+            backend.stop(0);
+            backendExecutor.shutdownNow();
+        }
+        FileUtils.deleteQuietly(synapseHome);
+    }
+
+    @Benchmark
+    public int relay() throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(PROXY_URL).openConnection();
+        connection.setDoOutput(true);
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", "text/xml; charset=UTF-8");
+        connection.setRequestProperty("SOAPAction", "urn:placeOrders");
+        connection.setFixedLengthStreamingMode(request.length);
+
+        OutputStream out = connection.getOutputStream();
+        try {
+            out.write(request);
+        } finally {
+            out.close();
+        }
+
+        if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+            throw new IOException("Unexpected response from the proxy service : " +
+                    connection.getResponseCode() + " " + connection.getResponseMessage());
+        }
+        // read the response fully, so that the connection can be kept alive
+        InputStream in = connection.getInputStream();
+        try {
+            return IOUtils.toByteArray(in).length;
+        } finally {
+            in.close();
+        }
+    }
+
+    private File copyResource(String name, File dir) throws IOException {
+        File file = new File(dir, new File(name).getName());
+        InputStream in = getClass().getClassLoader().getResourceAsStream(name);
+        if (in == null) {
+            throw new IOException("Resource not found : " + name);
+        }
+        try {
+            FileUtils.copyInputStreamToFile(in, file);
+        } finally {
+            in.close();
+        }
+        return file;
+    }
+
+    private static class EchoHandler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            byte[] body;
+            InputStream in = exchange.getRequestBody();
+            try {
+                body = IOUtils.toByteArray(in);
+            } finally {
+                in.close();
+            }
+
+            exchange.getResponseHeaders().set("Content-Type",
+                    exchange.getRequestHeaders().getFirst("Content-Type"));
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, body.length);
+            OutputStream out = exchange.getResponseBody();
+            try {
+                out.write(body);
+            } finally {
+                out.close();
+            }
+        }
+    }
+}
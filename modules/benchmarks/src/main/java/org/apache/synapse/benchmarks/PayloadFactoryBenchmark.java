@@ -0,0 +1,124 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.benchmarks;
+
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.util.AXIOMUtil;
+import org.apache.axiom.soap.SOAPBody;
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.config.SynapseConfiguration;
+import org.apache.synapse.mediators.transform.PayloadFactoryMediator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Creates a payload with the {@link PayloadFactoryMediator}, which builds the payload from the
+ * format compiled at deployment time, and with the previous implementation, which substitutes
+ * the arguments into the format text and parses the result for each message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PayloadFactoryBenchmark {
+
+    private static final Pattern ARGUMENT = Pattern.compile("\\$(\\d)+");
+
+    /** number of order elements in the format */
+    @Param({"1", "20"})
+    public int orders;
+
+    private PayloadFactoryMediator mediator;
+    private String format;
+    private Object[] args;
+    private MessageContext synCtx;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<m:placeOrders xmlns:m=\"http://services.samples\">");
+        for (int i = 0; i < orders; i++) {
+            sb.append("<m:order type=\"$1\"><m:price>$2</m:price><m:quantity>$3</m:quantity>")
+                    .append("<m:symbol>$4</m:symbol></m:order>");
+        }
+        sb.append("</m:placeOrders>");
+        format = sb.toString();
+
+        mediator = new PayloadFactoryMediator();
+        mediator.setFormat(format);
+        args = new Object[] {"limit", "101.5", "25", "IBM"};
+        for (Object value : args) {
+            PayloadFactoryMediator.Argument arg = new PayloadFactoryMediator.Argument();
+            arg.setValue((String) value);
+            mediator.addArgument(arg);
+        }
+
+        // the payload is replaced on each invocation, so the message can be reused
+        synCtx = BenchmarkUtils.createMessageContext(BenchmarkUtils.createOrders(1),
+                new SynapseConfiguration());
+    }
+
+    @Benchmark
+    public MessageContext compiledFormat() {
+        mediator.mediate(synCtx);
+        return synCtx;
+    }
+
+    /**
+     * The previous implementation of the mediator
+     */
+    @Benchmark
+    public MessageContext substituteAndParse() throws Exception {
+        StringBuffer result = new StringBuffer();
+        Matcher matcher = ARGUMENT.matcher("<dummy>" + format + "</dummy>");
+        while (matcher.find()) {
+            int argIndex = Integer.parseInt(matcher.group().substring(1));
+            matcher.appendReplacement(result, args[argIndex - 1].toString());
+        }
+        matcher.appendTail(result);
+
+        OMElement resultElement = AXIOMUtil.stringToOM(result.toString());
+        SOAPBody soapBody = synCtx.getEnvelope().getBody();
+        soapBody.removeChildren();
+        for (Iterator itr = resultElement.getChildElements(); itr.hasNext();) {
+            OMElement child = (OMElement) itr.next();
+            itr.remove();
+            soapBody.addChild(child);
+        }
+        return synCtx;
+    }
+}
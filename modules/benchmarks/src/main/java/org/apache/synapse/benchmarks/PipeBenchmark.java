@@ -0,0 +1,185 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.benchmarks;
+
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.util.HeapByteBufferAllocator;
+import org.apache.synapse.transport.passthru.Pipe;
+import org.apache.synapse.transport.passthru.util.BufferFactory;
+import org.apache.synapse.transport.passthru.util.ControlledByteBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves a message body through a pass through {@link Pipe}, alternating between filling the
+ * pipe buffer from a decoder and draining it into an encoder, as the source and target
+ * handlers of the pass through transport do for a relayed message. The decoder and the encoder
+ * work on memory, so that the benchmark measures the pipe and its buffers only.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipeBenchmark {
+
+    @Param({"1024", "65536", "1048576"})
+    public int size;
+
+    @Param({"8192", "16384"})
+    public int bufferSize;
+
+    private BufferFactory bufferFactory;
+    private byte[] body;
+    private final ByteBuffer sink = ByteBuffer.allocate(4096);
+    private final IOControl ioControl = new NoopIOControl();
+
+    @Setup
+    public void setUp() {
+        bufferFactory = new BufferFactory(bufferSize, HeapByteBufferAllocator.INSTANCE, 4);
+        body = new byte[size];
+        for (int i = 0; i < size; i++) {
+            body[i] = (byte) ('a' + i % 26);
+        }
+    }
+
+    @Benchmark
+    public long relay() throws IOException {
+        ControlledByteBuffer buffer = bufferFactory.getBuffer();
+        try {
+            Pipe pipe = new Pipe(ioControl, buffer, "benchmark", null);
+            pipe.attachConsumer(ioControl);
+            MemoryDecoder decoder = new MemoryDecoder(body);
+            MemoryEncoder encoder = new MemoryEncoder(sink);
+            while (!encoder.isCompleted()) {
+                if (!decoder.isCompleted()) {
+                    pipe.produce(decoder);
+                }
+                pipe.consume(encoder);
+            }
+            return encoder.written;
+        } finally {
+            bufferFactory.release(buffer);
+        }
+    }
+
+    private static class MemoryDecoder implements ContentDecoder {
+
+        private final ByteBuffer source;
+
+        MemoryDecoder(byte[] body) {
+            this.source = ByteBuffer.wrap(body);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            if (!source.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(dst.remaining(), source.remaining());
+            ByteBuffer chunk = source.duplicate();
+            chunk.limit(chunk.position() + n);
+            dst.put(chunk);
+            source.position(source.position() + n);
+            return n;
+        }
+
+        @Override
+        public boolean isCompleted() {
+            return !source.hasRemaining();
+        }
+    }
+
+    private static class MemoryEncoder implements ContentEncoder {
+
+        private final ByteBuffer sink;
+        private long written;
+        private boolean completed;
+
+        MemoryEncoder(ByteBuffer sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            int n = 0;
+            while (src.hasRemaining()) {
+                sink.clear();
+                int chunk = Math.min(sink.remaining(), src.remaining());
+                ByteBuffer slice = src.duplicate();
+                slice.limit(slice.position() + chunk);
+                sink.put(slice);
+                src.position(src.position() + chunk);
+                n += chunk;
+            }
+            written += n;
+            return n;
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+        }
+
+        @Override
+        public boolean isCompleted() {
+            return completed;
+        }
+    }
+
+    private static class NoopIOControl implements IOControl {
+
+        @Override
+        public void requestInput() {
+        }
+
+        @Override
+        public void suspendInput() {
+        }
+
+        @Override
+        public void requestOutput() {
+        }
+
+        @Override
+        public void suspendOutput() {
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.benchmarks;
+
+import org.apache.axiom.om.util.AXIOMUtil;
+import org.apache.synapse.commons.evaluators.EvaluatorContext;
+import org.apache.synapse.commons.evaluators.Parser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Classifies a request with the priority {@link Parser} of the nhttp transport, against a
+ * configuration with the given number of conditions. Most conditions compare a header with a
+ * value, and every tenth one also matches the user agent and a URL parameter. The request
+ * matches the last condition.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PriorityParserBenchmark {
+
+    @Param({"10", "300"})
+    public int conditions;
+
+    private Parser parser;
+    private String url;
+    private Map<String, String> headers;
+
+    @Setup
+    public void setUp() throws Exception {
+        StringBuilder sb = new StringBuilder("<conditions defaultPriority=\"1\">");
+        for (int i = 0; i < conditions; i++) {
+            sb.append("<condition priority=\"").append(i % 10 + 1).append("\">");
+            if (i % 10 == 9) {
+                sb.append("<and><equal type=\"header\" source=\"Host\" value=\"host")
+                        .append(i).append("\"/><match type=\"header\" source=\"User-Agent\" ")
+                        .append("regex=\"curl.*\"/><equal type=\"param\" source=\"tier\" ")
+                        .append("value=\"gold\"/></and>");
+            } else {
+                sb.append("<equal type=\"header\" source=\"Host\" value=\"host")
+                        .append(i).append("\"/>");
+            }
+            sb.append("</condition>");
+        }
+        sb.append("</conditions>");
+
+        parser = new Parser(1);
+        parser.init(AXIOMUtil.stringToOM(sb.toString()));
+
+        url = "/services/StockQuoteProxy?tier=gold";
+        headers = new HashMap<String, String>();
+        headers.put("Host", "host" + (conditions - 1));
+        headers.put("User-Agent", "curl/7.68.0");
+        headers.put("Content-Type", "text/xml");
+    }
+
+    @Benchmark
+    public int parse() {
+        return parser.parse(new EvaluatorContext(url, headers));
+    }
+}
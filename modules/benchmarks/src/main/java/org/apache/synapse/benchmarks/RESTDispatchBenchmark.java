@@ -0,0 +1,96 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.benchmarks;
+
+import org.apache.axis2.Constants;
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.config.SynapseConfiguration;
+import org.apache.synapse.core.axis2.Axis2MessageContext;
+import org.apache.synapse.mediators.base.SequenceMediator;
+import org.apache.synapse.rest.API;
+import org.apache.synapse.rest.RESTRequestHandler;
+import org.apache.synapse.rest.Resource;
+import org.apache.synapse.rest.dispatch.URITemplateHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dispatches a request to one of a number of REST APIs, each with a couple of URI template
+ * resources. The request matches the last API deployed, so that the dispatcher has to go
+ * through all the others first. Dispatching the same request again only overwrites the
+ * properties set by the previous dispatch, so the message context is reused.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RESTDispatchBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int apis;
+
+    private RESTRequestHandler handler;
+    private MessageContext synCtx;
+
+    @Setup
+    public void setUp() throws Exception {
+        SynapseConfiguration config = new SynapseConfiguration();
+        for (int i = 0; i < apis; i++) {
+            API api = new API("API" + i, "/api" + i);
+            api.addResource(createResource("/customers/{id}"));
+            api.addResource(createResource("/customers/{id}/orders/{order}"));
+            config.addAPI(api.getName(), api);
+        }
+        handler = new RESTRequestHandler();
+
+        synCtx = BenchmarkUtils.createMessageContext("<foo/>", config);
+        org.apache.axis2.context.MessageContext msgCtx =
+                ((Axis2MessageContext) synCtx).getAxis2MessageContext();
+        msgCtx.setIncomingTransportName("http");
+        msgCtx.setProperty(Constants.Configuration.HTTP_METHOD, "GET");
+        msgCtx.setProperty(Constants.Configuration.TRANSPORT_IN_URL,
+                "/api" + (apis - 1) + "/customers/42/orders/7");
+    }
+
+    private Resource createResource(String template) {
+        Resource resource = new Resource();
+        resource.setDispatcherHelper(new URITemplateHelper(template));
+        resource.setInSequence(new SequenceMediator());
+        return resource;
+    }
+
+    @Benchmark
+    public boolean dispatch() {
+        return handler.process(synCtx);
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compares the CSV result of a JMH run with a baseline recorded the same way, and exits with
+ * a non zero status if the score of any benchmark is worse than its baseline score by more
+ * than the given threshold. Throughput scores are worse when they are lower, and the scores of
+ * the other modes, which are times, are worse when they are higher. Benchmarks without a
+ * baseline score are reported and ignored, while a baseline score without a result fails the
+ * check, as does a missing or empty baseline, so that the check can never pass without
+ * comparing anything.
+ * <p/>
+ * With <tt>-record</tt>, the result is checked to have scores and replaces the baseline
+ * instead, which is how the baseline of a machine is recorded.
+ * <p/>
+ * Usage: RegressionCheck &lt;result.csv&gt; &lt;baseline.csv&gt; &lt;threshold&gt;<br/>
+ * or: RegressionCheck -record &lt;result.csv&gt; &lt;baseline.csv&gt;
+ */
+public final class RegressionCheck {
+
+    private static final String MODE_THROUGHPUT = "thrpt";
+    private static final String RECORD = "-record";
+
+    private RegressionCheck() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 3 && RECORD.equals(args[0])) {
+            record(new File(args[1]), new File(args[2]));
+            return;
+        }
+        if (args.length != 3) {
+            System.err.println("Usage: RegressionCheck <result.csv> <baseline.csv> <threshold>");
+            System.err.println("   or: RegressionCheck " + RECORD + " <result.csv> <baseline.csv>");
+            System.exit(2);
+        }
+
+        Map<String, Score> results = read(new File(args[0]));
+        File baselineFile = new File(args[1]);
+        Map<String, Score> baseline = baselineFile.isFile() ?
+                read(baselineFile) : new LinkedHashMap<String, Score>();
+        double threshold = Double.parseDouble(args[2]);
+
+        if (baseline.isEmpty()) {
+            System.err.println("The baseline " + baselineFile.getPath() + " has no scores. " +
+                    "Record one with: mvn -Pbenchmarks,perf-baseline verify");
+            System.exit(1);
+        }
+
+        List<String> regressions = new ArrayList<String>();
+        for (Map.Entry<String, Score> entry : results.entrySet()) {
+            Score score = entry.getValue();
+            Score base = baseline.get(entry.getKey());
+            if (base == null) {
+                System.out.println("[NEW]  " + entry.getKey() + " : " + score);
+                continue;
+            }
+
+            double change = (score.value - base.value) / base.value;
+            boolean regressed = MODE_THROUGHPUT.equals(score.mode) ?
+                    change < -threshold : change > threshold;
+            String line = entry.getKey() + " : " + score + " (baseline " + base + ", " +
+                    String.format(Locale.ENGLISH, "%+.1f%%", change * 100) + ")";
+            if (regressed) {
+                regressions.add(line);
+                System.out.println("[FAIL] " + line);
+            } else {
+                System.out.println("[OK]   " + line);
+            }
+        }
+
+        List<String> missing = new ArrayList<String>();
+        for (String key : baseline.keySet()) {
+            if (!results.containsKey(key)) {
+                missing.add(key);
+                System.out.println("[MISS] " + key + " : no result (baseline " +
+                        baseline.get(key) + ")");
+            }
+        }
+
+        if (!regressions.isEmpty()) {
+            System.err.println(regressions.size() + " benchmark(s) regressed by more than " +
+                    String.format(Locale.ENGLISH, "%.0f%%", threshold * 100) +
+                    " against the baseline " + baselineFile.getPath());
+        }
+        if (!missing.isEmpty()) {
+            System.err.println(missing.size() + " benchmark(s) of the baseline " +
+                    baselineFile.getPath() + " have no result. Remove them from the baseline " +
+                    "if they were removed or renamed.");
+        }
+        if (!regressions.isEmpty() || !missing.isEmpty()) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Replace the baseline with the given result, provided that the result has scores
+     */
+    private static void record(File resultFile, File baselineFile) throws IOException {
+        Map<String, Score> results = read(resultFile);
+        if (results.isEmpty()) {
+            System.err.println("The result " + resultFile.getPath() + " has no scores; " +
+                    "the baseline " + baselineFile.getPath() + " is left unchanged.");
+            System.exit(1);
+        }
+
+        File parent = baselineFile.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Unable to create the directory " + parent.getPath());
+        }
+        FileInputStream in = new FileInputStream(resultFile);
+        try {
+            FileOutputStream out = new FileOutputStream(baselineFile);
+            try {
+                byte[] buffer = new byte[4096];
+                int c;
+                while ((c = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, c);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+        System.out.println("Recorded " + results.size() + " score(s) in the baseline " +
+                baselineFile.getPath());
+    }
+
+    /**
+     * Read the scores of a JMH CSV result file, keyed by the benchmark name, its mode and the
+     * values of its parameters
+     */
+    private static Map<String, Score> read(File file) throws IOException {
+        Map<String, Score> scores = new LinkedHashMap<String, Score>();
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line = reader.readLine();
+            if (line == null) {
+                return scores;
+            }
+            List<String> header = parse(line);
+            int benchmarkCol = header.indexOf("Benchmark");
+            int modeCol = header.indexOf("Mode");
+            int scoreCol = header.indexOf("Score");
+            int unitCol = header.indexOf("Unit");
+            if (benchmarkCol < 0 || modeCol < 0 || scoreCol < 0) {
+                throw new IOException("Not a JMH CSV result file : " + file.getPath());
+            }
+
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().length() == 0) {
+                    continue;
+                }
+                List<String> row = parse(line);
+                StringBuilder key = new StringBuilder(row.get(benchmarkCol));
+                key.append(" [").append(row.get(modeCol));
+                for (int i = 0; i < header.size() && i < row.size(); i++) {
+                    if (header.get(i).startsWith("Param: ")) {
+                        key.append(", ").append(header.get(i).substring(7))
+                                .append('=').append(row.get(i));
+                    }
+                }
+                key.append(']');
+                scores.put(key.toString(), new Score(row.get(modeCol),
+                        Double.parseDouble(row.get(scoreCol)),
+                        unitCol < 0 ? "" : row.get(unitCol)));
+            }
+        } finally {
+            reader.close();
+        }
+        return scores;
+    }
+
+    /**
+     * Split a CSV line, as written by JMH, into its values
+     */
+    private static List<String> parse(String line) {
+        List<String> values = new ArrayList<String>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append(c);
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (c == ',' && !quoted) {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    private static class Score {
+
+        private final String mode;
+        private final double value;
+        private final String unit;
+
+        Score(String mode, double value, String unit) {
+            this.mode = mode;
+            this.value = value;
+            this.unit = unit;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ENGLISH, "%.3f %s", value, unit);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.benchmarks;
+
+import org.apache.axiom.soap.SOAPEnvelope;
+import org.apache.synapse.ManagedLifecycle;
+import org.apache.synapse.Mediator;
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.config.SynapseConfiguration;
+import org.apache.synapse.config.xml.MediatorFactoryFinder;
+import org.apache.synapse.mediators.TestUtils;
+import org.apache.synapse.util.MessageHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splits a purchase order payload into one message per order with the iterate mediator and
+ * aggregates the orders back into a single message with the aggregate mediator. The iterate
+ * target is sequential, so that the whole round trip happens on the benchmark thread and the
+ * benchmark measures the cloning, splitting and merging of the messages rather than the
+ * scheduling of the asynchronous targets.
+ * <p/>
+ * The iterate mediator detaches the orders from the message, so each invocation starts from a
+ * copy of the original envelope. The copy is measured along with the split, but costs no more
+ * than one of the copies the iterate mediator makes for each order.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SplitAggregateBenchmark {
+
+    private static final String ITERATE =
+            "<iterate xmlns=\"http://ws.apache.org/ns/synapse\" " +
+            "xmlns:m0=\"http://services.samples\" expression=\"//m0:orders/m0:order\" " +
+            "preservePayload=\"true\" attachPath=\"//m0:orders\" sequential=\"true\">" +
+            "<target><sequence><aggregate><completeCondition>" +
+            "<messageCount/></completeCondition>" +
+            "<onComplete expression=\"//m0:orders/m0:order\">" +
+            "<property name=\"aggregated\" value=\"true\"/>" +
+            "</onComplete></aggregate></sequence></target></iterate>";
+
+    @Param({"10", "100"})
+    public int orders;
+
+    private SynapseConfiguration config;
+    private Mediator iterate;
+    private String payload;
+    private MessageContext synCtx;
+    private SOAPEnvelope envelope;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        config = new SynapseConfiguration();
+        payload = BenchmarkUtils.createOrders(orders);
+
+        iterate = MediatorFactoryFinder.getInstance().getMediator(
+                TestUtils.createOMElement(ITERATE), new Properties());
+        // the aggregate mediator has to be initialized before it can collect messages
+        MessageContext initCtx = BenchmarkUtils.createMessageContext(payload, config);
+        ((ManagedLifecycle) iterate).init(initCtx.getEnvironment());
+
+        synCtx = BenchmarkUtils.createMessageContext(payload, config);
+        envelope = synCtx.getEnvelope();
+        envelope.build();
+    }
+
+    @Benchmark
+    public MessageContext splitAndAggregate() throws Exception {
+        synCtx.setEnvelope(MessageHelper.cloneSOAPEnvelope(envelope));
+        iterate.mediate(synCtx);
+        return synCtx;
+    }
+}
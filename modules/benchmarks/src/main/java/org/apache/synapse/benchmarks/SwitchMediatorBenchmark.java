@@ -0,0 +1,103 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.synapse.benchmarks;
+
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.config.SynapseConfiguration;
+import org.apache.synapse.config.xml.SwitchCase;
+import org.apache.synapse.mediators.filters.SwitchMediator;
+import org.apache.synapse.util.xpath.SynapseXPath;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Selects a case of a switch mediator whose cases are a mix of literal, prefix and general
+ * regexes, with the value matching the last case. The mediator looks the value up in the
+ * compiled case matcher, while the previous implementation tries each case regex in order.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SwitchMediatorBenchmark {
+
+    @Param({"10", "200"})
+    public int cases;
+
+    private SwitchMediator mediator;
+    private MessageContext synCtx;
+
+    @Setup
+    public void setUp() throws Exception {
+        mediator = new SwitchMediator();
+        mediator.setSource(new SynapseXPath("//symbol"));
+        for (int i = 0; i < cases; i++) {
+            String regex;
+            switch (i % 4) {
+                case 0:
+                    regex = "SYM" + i + "[0-9]+";
+                    break;
+                case 1:
+                    regex = "SYM" + i + ".*";
+                    break;
+                default:
+                    regex = "SYM" + i;
+            }
+            SwitchCase swCase = new SwitchCase();
+            swCase.setRegex(Pattern.compile(regex));
+            mediator.addCase(swCase);
+        }
+
+        synCtx = BenchmarkUtils.createMessageContext("<order><symbol>SYM" + (cases - 1) +
+                "</symbol></order>", new SynapseConfiguration());
+    }
+
+    @Benchmark
+    public boolean compiledCases() {
+        return mediator.mediate(synCtx);
+    }
+
+    /**
+     * The previous implementation of the mediator
+     */
+    @Benchmark
+    public boolean caseByCase() {
+        String sourceText = mediator.getSource().stringValueOf(synCtx);
+        for (SwitchCase swCase : mediator.getCases()) {
+            if (swCase.matches(sourceText)) {
+                return swCase.mediate(synCtx);
+            }
+        }
+        return true;
+    }
+}
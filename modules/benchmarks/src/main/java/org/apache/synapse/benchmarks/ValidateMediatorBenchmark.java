@@ -0,0 +1,122 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.benchmarks;
+
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.config.Entry;
+import org.apache.synapse.config.SynapseConfiguration;
+import org.apache.synapse.mediators.TestUtils;
+import org.apache.synapse.mediators.Value;
+import org.apache.synapse.mediators.builtin.ValidateMediator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validates multi-megabyte purchase order payloads with the {@link ValidateMediator}, on one
+ * thread and on several threads sharing the mediator. Each thread validates a message of its
+ * own, which is built on the first invocation, so the benchmark measures the schema lookup,
+ * the validator set up and the validation itself.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValidateMediatorBenchmark {
+
+    private static final String XSD =
+            "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\" " +
+            "targetNamespace=\"http://services.samples\" elementFormDefault=\"qualified\">" +
+            "<xs:element name=\"orders\"><xs:complexType><xs:sequence>" +
+            "<xs:element name=\"order\" maxOccurs=\"unbounded\"><xs:complexType><xs:sequence>" +
+            "<xs:element name=\"price\" type=\"xs:decimal\"/>" +
+            "<xs:element name=\"quantity\" type=\"xs:positiveInteger\"/>" +
+            "<xs:element name=\"symbol\" type=\"xs:string\"/>" +
+            "</xs:sequence></xs:complexType></xs:element>" +
+            "</xs:sequence></xs:complexType></xs:element>" +
+            "</xs:schema>";
+
+    /**
+     * The mediator and the payload, shared by all the threads
+     */
+    @State(Scope.Benchmark)
+    public static class Shared {
+
+        /** about 2 MB and 5 MB of payload */
+        @Param({"20000", "50000"})
+        public int orders;
+
+        private SynapseConfiguration config;
+        private ValidateMediator mediator;
+        private String payload;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            config = new SynapseConfiguration();
+            Entry entry = new Entry("xsd");
+            entry.setType(Entry.INLINE_XML);
+            entry.setValue(TestUtils.createOMElement(XSD));
+            config.addEntry("xsd", entry);
+
+            mediator = new ValidateMediator();
+            mediator.setSchemaKeys(Collections.singletonList(new Value("xsd")));
+            payload = BenchmarkUtils.createOrders(orders);
+        }
+    }
+
+    /**
+     * The message validated by one thread
+     */
+    @State(Scope.Thread)
+    public static class Message {
+
+        private MessageContext synCtx;
+
+        @Setup(Level.Trial)
+        public void setUp(Shared shared) throws Exception {
+            synCtx = BenchmarkUtils.createMessageContext(shared.payload, shared.config);
+        }
+    }
+
+    @Benchmark
+    public boolean validate(Shared shared, Message message) {
+        return shared.mediator.mediate(message.synCtx);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean validateConcurrently(Shared shared, Message message) {
+        return shared.mediator.mediate(message.synCtx);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.benchmarks;
+
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.config.SynapseConfiguration;
+import org.apache.synapse.util.xpath.SynapseXPath;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluates {@link SynapseXPath} expressions of increasing cost against a purchase order
+ * payload: a plain path, a path through a Synapse variable, a predicate and an aggregate
+ * function.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XPathBenchmark {
+
+    @Param({"//m0:order[1]/m0:symbol",
+            "$body/m0:orders/m0:order[last()]/m0:symbol",
+            "//m0:order[m0:quantity > 5]/m0:price",
+            "sum(//m0:order/m0:price)"})
+    public String expression;
+
+    @Param({"10", "100"})
+    public int orders;
+
+    private SynapseXPath xpath;
+    private MessageContext synCtx;
+
+    @Setup
+    public void setUp() throws Exception {
+        xpath = new SynapseXPath(expression);
+        xpath.addNamespace("m0", "http://services.samples");
+        synCtx = BenchmarkUtils.createMessageContext(BenchmarkUtils.createOrders(orders),
+                new SynapseConfiguration());
+    }
+
+    @Benchmark
+    public String stringValueOf() {
+        return xpath.stringValueOf(synCtx);
+    }
+}
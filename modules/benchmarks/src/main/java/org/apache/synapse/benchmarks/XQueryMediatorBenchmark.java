@@ -0,0 +1,171 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.benchmarks;
+
+import net.sf.saxon.javax.xml.xquery.XQItemType;
+import org.apache.axiom.om.OMElement;
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.config.SynapseConfiguration;
+import org.apache.synapse.mediators.xquery.MediatorCustomVariable;
+import org.apache.synapse.mediators.xquery.MediatorVariable;
+import org.apache.synapse.mediators.xquery.XQueryMediator;
+import org.apache.synapse.util.xpath.SynapseXPath;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.xml.namespace.QName;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transforms a purchase order payload with the {@link XQueryMediator}, with the result of the
+ * query either streamed into the payload or built into a document first, and then writes the
+ * result out the way the message formatter would. The result replaces a placeholder next to
+ * the orders, so each thread reuses the message it built on the first invocation.
+ * <p/>
+ * The mediator is shared by all the threads, as a deployed mediator is. The concurrent
+ * benchmarks compare the prepared expression pool of the mediator with running the queries
+ * one at a time under a lock, which is how the mediator shared its expression before.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XQueryMediatorBenchmark {
+
+    private static final String NS = "http://services.samples";
+
+    private static final String QUERY =
+            "declare namespace m0=\"http://services.samples\";" +
+            "declare variable $payload as document-node() external;" +
+            "<m:placeOrders xmlns:m=\"http://services.samples/xsd\">{" +
+            "for $order in $payload//m0:orders/m0:order return " +
+            "<m:order><m:symbol>{$order/m0:symbol/text()}</m:symbol>" +
+            "<m:total>{$order/m0:price * $order/m0:quantity}</m:total></m:order>" +
+            "}</m:placeOrders>";
+
+    /**
+     * The mediator and the payload, shared by all the threads
+     */
+    @State(Scope.Benchmark)
+    public static class Shared {
+
+        @Param({"10", "100"})
+        public int orders;
+
+        @Param({"true", "false"})
+        public boolean streamResult;
+
+        private SynapseConfiguration config;
+        private XQueryMediator mediator;
+        private String payload;
+        /** serializes the queries of the locked benchmark */
+        private final Object lock = new Object();
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            config = new SynapseConfiguration();
+            payload = "<m0:request xmlns:m0=\"" + NS + "\">" +
+                    BenchmarkUtils.createOrders(orders) + "<m0:result/></m0:request>";
+
+            mediator = new XQueryMediator();
+            List<MediatorVariable> variables = new ArrayList<MediatorVariable>();
+            MediatorVariable variable = new MediatorCustomVariable(new QName("payload"));
+            variable.setType(XQItemType.XQITEMKIND_DOCUMENT);
+            variables.add(variable);
+            mediator.addAllVariables(variables);
+            mediator.setQuerySource(QUERY);
+            mediator.setStreamResult(streamResult);
+
+            // the result replaces the node following the orders, which is the placeholder on
+            // the first invocation and the previous result after that. The path does not look
+            // into the previous result, which would build a streamed result.
+            SynapseXPath target = new SynapseXPath("$body/m0:request/node()[2]");
+            target.addNamespace("m0", NS);
+            mediator.setTarget(target);
+        }
+    }
+
+    /**
+     * The message transformed by one thread
+     */
+    @State(Scope.Thread)
+    public static class Message {
+
+        private MessageContext synCtx;
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        @Setup(Level.Trial)
+        public void setUp(Shared shared) throws Exception {
+            synCtx = BenchmarkUtils.createMessageContext(shared.payload, shared.config);
+        }
+
+        /**
+         * Write out the result of the query. A streamed result is written from the bytes it
+         * was serialized to, while a built result is serialized from its object model.
+         *
+         * @return the number of bytes written
+         * @throws Exception if the result could not be written
+         */
+        int writeResult() throws Exception {
+            OMElement request = synCtx.getEnvelope().getBody().getFirstElement();
+            OMElement result = (OMElement) request.getLastChild();
+            out.reset();
+            result.serializeAndConsume(out);
+            return out.size();
+        }
+    }
+
+    @Benchmark
+    public int transform(Shared shared, Message message) throws Exception {
+        shared.mediator.mediate(message.synCtx);
+        return message.writeResult();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int transformConcurrently(Shared shared, Message message) throws Exception {
+        shared.mediator.mediate(message.synCtx);
+        return message.writeResult();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int transformConcurrentlyLocked(Shared shared, Message message) throws Exception {
+        synchronized (shared.lock) {
+            shared.mediator.mediate(message.synCtx);
+        }
+        return message.writeResult();
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.benchmarks;
+
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.config.Entry;
+import org.apache.synapse.config.SynapseConfiguration;
+import org.apache.synapse.mediators.TestUtils;
+import org.apache.synapse.mediators.Value;
+import org.apache.synapse.mediators.transform.XSLTMediator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transforms a purchase order payload with the {@link XSLTMediator}, using a stylesheet held
+ * in a local entry. The stylesheet is compiled on the first invocation and reused after that,
+ * so the benchmark measures the transformation itself, and the conversion of the payload to
+ * and from the source and result of the transformation. The result is kept in a property
+ * rather than replacing the payload, so each thread reuses the message it built on the first
+ * invocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XSLTMediatorBenchmark {
+
+    private static final String XSLT =
+            "<xsl:stylesheet version=\"2.0\" " +
+            "xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\" " +
+            "xmlns:m0=\"http://services.samples\" exclude-result-prefixes=\"m0\">" +
+            "<xsl:output method=\"xml\" omit-xml-declaration=\"yes\" indent=\"no\"/>" +
+            "<xsl:template match=\"/\"><xsl:apply-templates select=\"//m0:orders\"/></xsl:template>" +
+            "<xsl:template match=\"m0:orders\">" +
+            "<m:placeOrders xmlns:m=\"http://services.samples/xsd\">" +
+            "<xsl:for-each select=\"m0:order\"><m:order>" +
+            "<m:symbol><xsl:value-of select=\"m0:symbol\"/></m:symbol>" +
+            "<m:total><xsl:value-of select=\"m0:price * m0:quantity\"/></m:total>" +
+            "</m:order></xsl:for-each>" +
+            "</m:placeOrders></xsl:template>" +
+            "</xsl:stylesheet>";
+
+    private static final String RESULT = "result";
+
+    @Param({"10", "100"})
+    public int orders;
+
+    private SynapseConfiguration config;
+    private XSLTMediator mediator;
+    private String payload;
+    private MessageContext synCtx;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        config = new SynapseConfiguration();
+        Entry entry = new Entry("xslt");
+        entry.setType(Entry.INLINE_XML);
+        entry.setValue(TestUtils.createOMElement(XSLT));
+        config.addEntry("xslt", entry);
+
+        mediator = new XSLTMediator();
+        mediator.setXsltKey(new Value("xslt"));
+        mediator.setTargetPropertyName(RESULT);
+        payload = BenchmarkUtils.createOrders(orders);
+        synCtx = BenchmarkUtils.createMessageContext(payload, config);
+    }
+
+    @Benchmark
+    public Object transform() {
+        mediator.mediate(synCtx);
+        return synCtx.getProperty(RESULT);
+    }
+}
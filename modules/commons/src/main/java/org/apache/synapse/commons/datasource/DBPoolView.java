@@ -21,6 +21,7 @@ package org.apache.synapse.commons.datasource;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
@@ -33,6 +34,16 @@ public class DBPoolView implements DBPoolViewMBean {
     private final Map<String, Long> connectionsUsage = new HashMap<String, Long>();
     private String name;
 
+    private final AtomicLong batchCount = new AtomicLong(0);
+    private final AtomicLong batchedStatementCount = new AtomicLong(0);
+    private final AtomicLong totalBatchLatency = new AtomicLong(0);
+    private final AtomicLong maxBatchLatency = new AtomicLong(0);
+
+    private final AtomicLong cacheHitCount = new AtomicLong(0);
+    private final AtomicLong cacheMissCount = new AtomicLong(0);
+    private final AtomicLong cacheCoalescedCount = new AtomicLong(0);
+    private final AtomicLong cacheEvictionCount = new AtomicLong(0);
+
     public DBPoolView(String name) {
         this.name = name;
     }
@@ -81,10 +92,97 @@ public class DBPoolView implements DBPoolViewMBean {
         return connectionsUsage;
     }
 
+    /**
+     * Record the execution of a statement batch
+     *
+     * @param size    number of statements in the batch
+     * @param latency time in milliseconds taken to execute and commit the batch
+     */
+    public void updateBatchStatistics(int size, long latency) {
+        batchCount.incrementAndGet();
+        batchedStatementCount.addAndGet(size);
+        totalBatchLatency.addAndGet(latency);
+        long max;
+        while (latency > (max = maxBatchLatency.get())) {
+            if (maxBatchLatency.compareAndSet(max, latency)) {
+                break;
+            }
+        }
+    }
+
+    @Override
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    @Override
+    public long getBatchedStatementCount() {
+        return batchedStatementCount.get();
+    }
+
+    @Override
+    public double getAverageBatchLatency() {
+        long count = batchCount.get();
+        return count == 0 ? 0 : (double) totalBatchLatency.get() / count;
+    }
+
+    @Override
+    public long getMaxBatchLatency() {
+        return maxBatchLatency.get();
+    }
+
+    /** Record a lookup answered from a statement result cache */
+    public void cacheHit() {
+        cacheHitCount.incrementAndGet();
+    }
+
+    /** Record a lookup which did not find a valid entry in a statement result cache */
+    public void cacheMiss() {
+        cacheMissCount.incrementAndGet();
+    }
+
+    /** Record a cache miss which waited for a load already in progress for the same key */
+    public void cacheCoalesced() {
+        cacheCoalescedCount.incrementAndGet();
+    }
+
+    /** Record an entry evicted to keep a statement result cache within its maximum size */
+    public void cacheEvicted() {
+        cacheEvictionCount.incrementAndGet();
+    }
+
+    @Override
+    public long getCacheHitCount() {
+        return cacheHitCount.get();
+    }
+
+    @Override
+    public long getCacheMissCount() {
+        return cacheMissCount.get();
+    }
+
+    @Override
+    public long getCacheCoalescedCount() {
+        return cacheCoalescedCount.get();
+    }
+
+    @Override
+    public long getCacheEvictionCount() {
+        return cacheEvictionCount.get();
+    }
+
     @Override
     public void reset() {
         numActive = 0;
         numIdle = 0;
         connectionsUsage.clear();
+        batchCount.set(0);
+        batchedStatementCount.set(0);
+        totalBatchLatency.set(0);
+        maxBatchLatency.set(0);
+        cacheHitCount.set(0);
+        cacheMissCount.set(0);
+        cacheCoalescedCount.set(0);
+        cacheEvictionCount.set(0);
     }
 }
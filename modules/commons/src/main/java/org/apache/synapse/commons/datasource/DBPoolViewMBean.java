@@ -52,6 +52,62 @@ public interface DBPoolViewMBean {
      */
     public Map getConnectionUsage();
 
+    /**
+     * Number of statement batches executed against the data source
+     *
+     * @return <code>long</code> Number of batches
+     */
+    public long getBatchCount();
+
+    /**
+     * Number of statements executed in batches against the data source
+     *
+     * @return <code>long</code> Number of batched statements
+     */
+    public long getBatchedStatementCount();
+
+    /**
+     * Average time taken to execute and commit a batch
+     *
+     * @return <code>double</code> Average batch latency in milliseconds
+     */
+    public double getAverageBatchLatency();
+
+    /**
+     * Maximum time taken to execute and commit a batch
+     *
+     * @return <code>long</code> Maximum batch latency in milliseconds
+     */
+    public long getMaxBatchLatency();
+
+    /**
+     * Number of lookups answered from the result caches of the statements
+     *
+     * @return <code>long</code> Number of cache hits
+     */
+    public long getCacheHitCount();
+
+    /**
+     * Number of lookups which did not find a valid entry in the result caches of the statements
+     *
+     * @return <code>long</code> Number of cache misses
+     */
+    public long getCacheMissCount();
+
+    /**
+     * Number of cache misses which waited for a query already running for the same parameters
+     *
+     * @return <code>long</code> Number of coalesced misses
+     */
+    public long getCacheCoalescedCount();
+
+    /**
+     * Number of entries evicted to keep the result caches within their maximum size
+     *
+     * @return <code>long</code> Number of evicted entries
+     */
+    public long getCacheEvictionCount();
+
     /**
      * reset statistics
      */
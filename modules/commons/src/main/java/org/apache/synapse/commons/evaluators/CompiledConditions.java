@@ -0,0 +1,663 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.commons.evaluators;
+
+import org.apache.synapse.commons.evaluators.source.HeaderTextRetriever;
+import org.apache.synapse.commons.evaluators.source.ParameterTextRetriever;
+import org.apache.synapse.commons.evaluators.source.PropertyTextRetriever;
+import org.apache.synapse.commons.evaluators.source.SOAPEnvelopeTextRetriever;
+import org.apache.synapse.commons.evaluators.source.SourceTextRetriever;
+import org.apache.synapse.commons.evaluators.source.URLTextRetriever;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * An ordered set of {@link Condition}s compiled into a structure which finds the first
+ * condition matching a request with as little work as possible:
+ * <ul>
+ * <li>Evaluators which read the same part of the request share a source, and each source
+ * text is retrieved at most once per request.</li>
+ * <li>Structurally equal evaluators, in the same or in different conditions, are compiled
+ * into a single node, which is evaluated at most once per request.</li>
+ * <li>All the equal evaluators on a source are decided by a single hash lookup of the source
+ * text, instead of one comparison each.</li>
+ * <li>Consecutive conditions which require a source to be equal to one of some values are
+ * merged into a table mapping each value to the conditions requiring it, so that only those
+ * conditions are looked at.</li>
+ * </ul>
+ * The outcome, including which error is reported when a source cannot be retrieved, is the
+ * same as evaluating the conditions one after the other. Evaluators other than the built in
+ * ones are evaluated as they are.
+ * <p/>
+ * Instances are immutable and can be used by any number of threads at the same time.
+ */
+public final class CompiledConditions {
+
+    private static final int UNKNOWN = Integer.MIN_VALUE;
+    private static final int NO_VALUE = -1;
+
+    private final Condition[] conditions;
+    private final Source[] sources;
+    private final Node[] nodes;
+    private final Step[] steps;
+
+    private CompiledConditions(Condition[] conditions, Source[] sources, Node[] nodes,
+                               Step[] steps) {
+        this.conditions = conditions;
+        this.sources = sources;
+        this.nodes = nodes;
+        this.steps = steps;
+    }
+
+    /**
+     * Compile the given conditions
+     *
+     * @param conditions conditions in the order they should be evaluated
+     * @return the compiled conditions
+     */
+    public static CompiledConditions compile(Condition[] conditions) {
+        return new Compiler().compile(conditions.clone());
+    }
+
+    /**
+     * Find the first condition matching the request
+     *
+     * @param context the request
+     * @return the first matching condition, or null if none of the conditions match
+     * @throws EvaluatorException if a condition could not be evaluated before a matching
+     *         one was found, with a message naming the priority of that condition
+     */
+    public Condition match(EvaluatorContext context) throws EvaluatorException {
+        Evaluation evaluation = new Evaluation(context);
+        try {
+            for (Step step : steps) {
+                int index = step.match(evaluation);
+                if (index >= 0) {
+                    return conditions[index];
+                }
+            }
+        } catch (EvaluatorException e) {
+            throw new EvaluatorException("Error evaluating the " + EvaluatorConstants.CONDITION +
+                    " with priority :" + conditions[evaluation.condition].getPriority(), e);
+        }
+        return null;
+    }
+
+    /**
+     * @return the number of distinct sources read by the conditions
+     */
+    int getSourceCount() {
+        return sources.length;
+    }
+
+    /**
+     * @return the number of distinct evaluators of the conditions
+     */
+    int getNodeCount() {
+        return nodes.length;
+    }
+
+    /**
+     * Fold the case of a string the way {@link String#equalsIgnoreCase(String)} compares
+     * characters, so that two strings are equal ignoring case if and only if their folded
+     * forms are equal
+     */
+    static String fold(String s) {
+        char[] chars = null;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            char folded = Character.toLowerCase(Character.toUpperCase(c));
+            if (folded != c) {
+                if (chars == null) {
+                    chars = s.toCharArray();
+                }
+                chars[i] = folded;
+            }
+        }
+        return chars == null ? s : new String(chars);
+    }
+
+    /**
+     * Per request state: the source texts retrieved so far, the value each source matched
+     * and the results of the nodes evaluated so far
+     */
+    private final class Evaluation {
+
+        private final EvaluatorContext context;
+        private final String[] texts = new String[sources.length];
+        private final boolean[] retrieved = new boolean[sources.length];
+        private final int[] values = new int[sources.length];
+        private final byte[] results = new byte[nodes.length];
+        private int condition;
+
+        Evaluation(EvaluatorContext context) {
+            this.context = context;
+            Arrays.fill(values, UNKNOWN);
+        }
+
+        String getText(Source source) throws EvaluatorException {
+            if (!retrieved[source.id]) {
+                texts[source.id] = source.retriever.getSourceText(context);
+                retrieved[source.id] = true;
+            }
+            return texts[source.id];
+        }
+
+        /**
+         * @return the id of the value the source text is equal to, or NO_VALUE
+         */
+        int getValue(Source source) throws EvaluatorException {
+            int value = values[source.id];
+            if (value == UNKNOWN) {
+                String text = getText(source);
+                Integer id = text != null ? source.values.get(fold(text)) : null;
+                value = id != null ? id : NO_VALUE;
+                values[source.id] = value;
+            }
+            return value;
+        }
+    }
+
+    /**
+     * A part of the request read by one or more evaluators, with the distinct values it is
+     * compared with by the equal evaluators
+     */
+    private static final class Source {
+
+        private final int id;
+        private final SourceTextRetriever retriever;
+        private final Map<String, Integer> values = new HashMap<String, Integer>();
+
+        Source(int id, SourceTextRetriever retriever) {
+            this.id = id;
+            this.retriever = retriever;
+        }
+
+        int getValueId(String value) {
+            String folded = fold(value);
+            Integer id = values.get(folded);
+            if (id == null) {
+                id = values.size();
+                values.put(folded, id);
+            }
+            return id;
+        }
+    }
+
+    private abstract static class Node {
+
+        private static final byte TRUE = 1;
+        private static final byte FALSE = 2;
+
+        private final int id;
+
+        Node(int id) {
+            this.id = id;
+        }
+
+        final boolean evaluate(Evaluation evaluation) throws EvaluatorException {
+            byte result = evaluation.results[id];
+            if (result == 0) {
+                result = compute(evaluation) ? TRUE : FALSE;
+                evaluation.results[id] = result;
+            }
+            return result == TRUE;
+        }
+
+        abstract boolean compute(Evaluation evaluation) throws EvaluatorException;
+    }
+
+    /**
+     * Equal evaluators, or an or of equal evaluators, reading the same source
+     */
+    private static final class EqualNode extends Node {
+
+        private final Source source;
+        private final boolean[] values;
+
+        EqualNode(int id, Source source, boolean[] values) {
+            super(id);
+            this.source = source;
+            this.values = values;
+        }
+
+        @Override
+        boolean compute(Evaluation evaluation) throws EvaluatorException {
+            int value = evaluation.getValue(source);
+            return value >= 0 && value < values.length && values[value];
+        }
+    }
+
+    private static final class MatchNode extends Node {
+
+        private final Source source;
+        private final Pattern regex;
+
+        MatchNode(int id, Source source, Pattern regex) {
+            super(id);
+            this.source = source;
+            this.regex = regex;
+        }
+
+        @Override
+        boolean compute(Evaluation evaluation) throws EvaluatorException {
+            String text = evaluation.getText(source);
+            return text != null && regex.matcher(text).matches();
+        }
+    }
+
+    private static final class AndNode extends Node {
+
+        private final Node[] children;
+
+        AndNode(int id, Node[] children) {
+            super(id);
+            this.children = children;
+        }
+
+        @Override
+        boolean compute(Evaluation evaluation) throws EvaluatorException {
+            for (Node child : children) {
+                if (!child.evaluate(evaluation)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class OrNode extends Node {
+
+        private final Node[] children;
+
+        OrNode(int id, Node[] children) {
+            super(id);
+            this.children = children;
+        }
+
+        @Override
+        boolean compute(Evaluation evaluation) throws EvaluatorException {
+            for (Node child : children) {
+                if (child.evaluate(evaluation)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class NotNode extends Node {
+
+        private final Node child;
+
+        NotNode(int id, Node child) {
+            super(id);
+            this.child = child;
+        }
+
+        @Override
+        boolean compute(Evaluation evaluation) throws EvaluatorException {
+            return !child.evaluate(evaluation);
+        }
+    }
+
+    /**
+     * An evaluator the compiler does not know about
+     */
+    private static final class EvaluatorNode extends Node {
+
+        private final Evaluator evaluator;
+
+        EvaluatorNode(int id, Evaluator evaluator) {
+            super(id);
+            this.evaluator = evaluator;
+        }
+
+        @Override
+        boolean compute(Evaluation evaluation) throws EvaluatorException {
+            return evaluator.evaluate(evaluation.context);
+        }
+    }
+
+    private interface Step {
+
+        /**
+         * @return index of the matching condition, or -1
+         */
+        int match(Evaluation evaluation) throws EvaluatorException;
+    }
+
+    private static final class ConditionStep implements Step {
+
+        private final int index;
+        private final Node node;
+
+        ConditionStep(int index, Node node) {
+            this.index = index;
+            this.node = node;
+        }
+
+        @Override
+        public int match(Evaluation evaluation) throws EvaluatorException {
+            evaluation.condition = index;
+            return node.evaluate(evaluation) ? index : -1;
+        }
+    }
+
+    /**
+     * Consecutive conditions which are each guarded by an equal node: either the condition is
+     * the equal node itself, or an and whose first operand is the equal node. When a guard is
+     * false, so is its condition, without looking at anything else, and so the guards of the
+     * conditions are decided by one hash lookup per source, and only the conditions whose
+     * guard holds are evaluated further.
+     * <p/>
+     * The sources are looked at in the order the conditions first use them, and a source is
+     * only looked at, and a condition only evaluated further, if all the conditions before it
+     * are known to be false, exactly as if the conditions were evaluated one after the other.
+     */
+    private static final class TableStep implements Step {
+
+        private static final int[] NONE = new int[0];
+
+        private final Node[] roots;
+        private final Source[] sources;
+        private final int[] first;
+        private final int[][][] tables;
+
+        TableStep(Node[] roots, Source[] sources, int[] first, int[][][] tables) {
+            this.roots = roots;
+            this.sources = sources;
+            this.first = first;
+            this.tables = tables;
+        }
+
+        @Override
+        public int match(Evaluation evaluation) throws EvaluatorException {
+            int[][] candidates = new int[sources.length][];
+            int[] positions = new int[sources.length];
+            int retrieved = 0;
+
+            while (true) {
+                // the first condition, out of those whose guard is known to hold
+                int next = Integer.MAX_VALUE;
+                int from = -1;
+                for (int s = 0; s < retrieved; s++) {
+                    if (positions[s] < candidates[s].length && candidates[s][positions[s]] < next) {
+                        next = candidates[s][positions[s]];
+                        from = s;
+                    }
+                }
+
+                if (retrieved < sources.length && first[retrieved] < next) {
+                    evaluation.condition = first[retrieved];
+                    int value = evaluation.getValue(sources[retrieved]);
+                    int[][] table = tables[retrieved];
+                    candidates[retrieved] = value >= 0 && value < table.length &&
+                            table[value] != null ? table[value] : NONE;
+                    retrieved++;
+                    continue;
+                }
+
+                if (from < 0) {
+                    return -1;
+                }
+                positions[from]++;
+                evaluation.condition = next;
+                if (roots[next].evaluate(evaluation)) {
+                    return next;
+                }
+            }
+        }
+    }
+
+    private static final class Compiler {
+
+        private final Map<String, Source> sourcesByKey = new HashMap<String, Source>();
+        private final List<Source> sources = new ArrayList<Source>();
+        private final Map<String, Node> nodesByKey = new HashMap<String, Node>();
+        private final List<Node> nodes = new ArrayList<Node>();
+
+        CompiledConditions compile(Condition[] conditions) {
+            Node[] roots = new Node[conditions.length];
+            for (int i = 0; i < conditions.length; i++) {
+                roots[i] = compile(conditions[i].getEvaluator());
+            }
+
+            List<Step> steps = new ArrayList<Step>();
+            int i = 0;
+            while (i < roots.length) {
+                int end = i;
+                while (end < roots.length && getGuard(roots[end]) != null) {
+                    end++;
+                }
+                if (end - i > 1) {
+                    steps.add(createTable(roots, i, end));
+                    i = end;
+                } else {
+                    steps.add(new ConditionStep(i, roots[i]));
+                    i++;
+                }
+            }
+
+            return new CompiledConditions(conditions,
+                    sources.toArray(new Source[sources.size()]),
+                    nodes.toArray(new Node[nodes.size()]),
+                    steps.toArray(new Step[steps.size()]));
+        }
+
+        /**
+         * @return the equal node which has to hold for the given condition to hold, and
+         *         without which nothing else of the condition is evaluated, or null
+         */
+        private EqualNode getGuard(Node root) {
+            if (root instanceof EqualNode) {
+                return (EqualNode) root;
+            } else if (root instanceof AndNode && ((AndNode) root).children[0] instanceof EqualNode) {
+                return (EqualNode) ((AndNode) root).children[0];
+            }
+            return null;
+        }
+
+        private TableStep createTable(Node[] roots, int start, int end) {
+            List<Source> tableSources = new ArrayList<Source>();
+            List<Integer> first = new ArrayList<Integer>();
+            List<List<List<Integer>>> lists = new ArrayList<List<List<Integer>>>();
+
+            for (int i = start; i < end; i++) {
+                EqualNode guard = getGuard(roots[i]);
+                int s = tableSources.indexOf(guard.source);
+                if (s < 0) {
+                    s = tableSources.size();
+                    tableSources.add(guard.source);
+                    first.add(i);
+                    List<List<Integer>> values = new ArrayList<List<Integer>>();
+                    for (int v = 0; v < guard.source.values.size(); v++) {
+                        values.add(new ArrayList<Integer>());
+                    }
+                    lists.add(values);
+                }
+                for (int v = 0; v < guard.values.length; v++) {
+                    if (guard.values[v]) {
+                        lists.get(s).get(v).add(i);
+                    }
+                }
+            }
+
+            int[] firstArray = new int[first.size()];
+            int[][][] tables = new int[lists.size()][][];
+            for (int s = 0; s < tables.length; s++) {
+                firstArray[s] = first.get(s);
+                List<List<Integer>> values = lists.get(s);
+                tables[s] = new int[values.size()][];
+                for (int v = 0; v < values.size(); v++) {
+                    List<Integer> indices = values.get(v);
+                    if (!indices.isEmpty()) {
+                        tables[s][v] = new int[indices.size()];
+                        for (int k = 0; k < indices.size(); k++) {
+                            tables[s][v][k] = indices.get(k);
+                        }
+                    }
+                }
+            }
+            return new TableStep(roots, tableSources.toArray(new Source[tableSources.size()]),
+                    firstArray, tables);
+        }
+
+        private Node compile(Evaluator evaluator) {
+            if (evaluator instanceof EqualEvaluator) {
+                EqualEvaluator equal = (EqualEvaluator) evaluator;
+                Source source = getSource(equal.getTextRetriever());
+                if (equal.getValue() == null) {
+                    // equalsIgnoreCase(null) never matches
+                    return getNode("equal(" + source.id + ")", new EqualNode(
+                            nodes.size(), source, new boolean[0]));
+                }
+                int value = source.getValueId(equal.getValue());
+                boolean[] values = new boolean[value + 1];
+                values[value] = true;
+                return getNode("equal(" + source.id + "," + value + ")",
+                        new EqualNode(nodes.size(), source, values));
+
+            } else if (evaluator instanceof MatchEvaluator) {
+                MatchEvaluator match = (MatchEvaluator) evaluator;
+                Source source = getSource(match.getTextRetriever());
+                Pattern regex = match.getRegex();
+                return getNode("match(" + source.id + "," + regex.flags() + "," +
+                        regex.pattern() + ")", new MatchNode(nodes.size(), source, regex));
+
+            } else if (evaluator instanceof NotEvaluator) {
+                Node child = compile(((NotEvaluator) evaluator).getEvaluator());
+                return getNode("not(" + child.id + ")", new NotNode(nodes.size(), child));
+
+            } else if (evaluator instanceof AndEvaluator) {
+                Node[] children = compile(((AndEvaluator) evaluator).getEvaluators());
+                return getNode("and" + ids(children), new AndNode(nodes.size(), children));
+
+            } else if (evaluator instanceof OrEvaluator) {
+                Node[] children = compile(((OrEvaluator) evaluator).getEvaluators());
+                EqualNode equal = mergeEquals(children);
+                if (equal != null) {
+                    return equal;
+                }
+                return getNode("or" + ids(children), new OrNode(nodes.size(), children));
+            }
+
+            Node node = new EvaluatorNode(nodes.size(), evaluator);
+            nodes.add(node);
+            return node;
+        }
+
+        private Node[] compile(Evaluator[] evaluators) {
+            Node[] children = new Node[evaluators.length];
+            for (int i = 0; i < evaluators.length; i++) {
+                children[i] = compile(evaluators[i]);
+            }
+            return children;
+        }
+
+        /**
+         * Merge an or of equal nodes on the same source into a single equal node
+         */
+        private EqualNode mergeEquals(Node[] children) {
+            Source source = null;
+            int length = 0;
+            for (Node child : children) {
+                if (!(child instanceof EqualNode) ||
+                        (source != null && source != ((EqualNode) child).source)) {
+                    return null;
+                }
+                source = ((EqualNode) child).source;
+                length = Math.max(length, ((EqualNode) child).values.length);
+            }
+
+            boolean[] values = new boolean[length];
+            StringBuilder key = new StringBuilder("equal(").append(source.id);
+            for (Node child : children) {
+                boolean[] childValues = ((EqualNode) child).values;
+                for (int v = 0; v < childValues.length; v++) {
+                    values[v] |= childValues[v];
+                }
+            }
+            for (int v = 0; v < values.length; v++) {
+                if (values[v]) {
+                    key.append(',').append(v);
+                }
+            }
+            return (EqualNode) getNode(key.append(')').toString(),
+                    new EqualNode(nodes.size(), source, values));
+        }
+
+        private String ids(Node[] children) {
+            StringBuilder sb = new StringBuilder("(");
+            for (int i = 0; i < children.length; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append(children[i].id);
+            }
+            return sb.append(')').toString();
+        }
+
+        /**
+         * Return the node already compiled for the given key, or register the new node
+         */
+        private Node getNode(String key, Node node) {
+            Node existing = nodesByKey.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            nodesByKey.put(key, node);
+            nodes.add(node);
+            return node;
+        }
+
+        private Source getSource(SourceTextRetriever retriever) {
+            String key = getSourceKey(retriever);
+            Source source = key != null ? sourcesByKey.get(key) : null;
+            if (source == null) {
+                source = new Source(sources.size(), retriever);
+                sources.add(source);
+                if (key != null) {
+                    sourcesByKey.put(key, source);
+                }
+            }
+            return source;
+        }
+
+        /**
+         * @return a key identifying the part of the request the retriever reads, or null if
+         *         that is not known and the retriever should not be shared
+         */
+        private String getSourceKey(SourceTextRetriever retriever) {
+            Class<?> type = retriever.getClass();
+            if (type == HeaderTextRetriever.class || type == ParameterTextRetriever.class ||
+                    type == PropertyTextRetriever.class || type == URLTextRetriever.class ||
+                    type == SOAPEnvelopeTextRetriever.class) {
+                return type.getName() + ":" + retriever.getSource();
+            }
+            return null;
+        }
+    }
+}
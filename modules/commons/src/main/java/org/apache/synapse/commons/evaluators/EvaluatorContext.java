@@ -23,6 +23,8 @@ import org.apache.axis2.transport.http.util.URIEncoderDecoder;
 import org.apache.axis2.context.MessageContext;
 
 import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -33,6 +35,7 @@ import java.util.Map;
 public class EvaluatorContext {
 
     private String url;
+    private URI uri;
     private Map<String, String> headers;
     private Map<String, String> params;
     private MessageContext messageContext;
@@ -56,6 +59,18 @@ public class EvaluatorContext {
         return url;
     }
 
+    /**
+     * Get the URL parsed as a URI. The URL is parsed once, when this method is first called.
+     * @return URI
+     * @throws URISyntaxException if the URL is not a valid URI
+     */
+    public URI getURI() throws URISyntaxException {
+        if (uri == null) {
+            uri = new URI(url);
+        }
+        return uri;
+    }
+
     /**
      * Get all the HTTP headers
      * @return all the HTTP headers as name value pairs
@@ -80,25 +95,31 @@ public class EvaluatorContext {
      */
     public String getParam(String name) throws UnsupportedEncodingException {
         if (params == null) {
-            // build the params
+            // build the params, scanning the query string once instead of splitting it into
+            // arrays, as this is done for every request with priority based mediation
             params = new HashMap<String, String>();
 
             int i = url.indexOf("?");
             if (i > -1) {
                 String queryString = url.substring(i + 1);
 
-                if (queryString != null && !queryString.equals("")) {
-                    String httpParams[] = queryString.split("&");
-
-                    if (httpParams == null || httpParams.length == 0) {
-                        return "";
+                if (!queryString.equals("")) {
+                    boolean found = false;
+                    int start = 0;
+                    while (start <= queryString.length()) {
+                        int end = queryString.indexOf('&', start);
+                        if (end < 0) {
+                            end = queryString.length();
+                        }
+                        if (end > start) {
+                            found = true;
+                            addParam(queryString.substring(start, end));
+                        }
+                        start = end + 1;
                     }
 
-                    for (String param : httpParams) {
-                        String temp[] = param.split("=");
-                        if (temp != null && temp.length >= 2) {
-                            params.put(temp[0], URIEncoderDecoder.decode(temp[1]));
-                        }
+                    if (!found) {
+                        return "";
                     }
                 }
             }
@@ -106,6 +127,33 @@ public class EvaluatorContext {
         return params.get(name);
     }
 
+    /**
+     * Add a name=value pair of the query string. Only the text up to the next '=' is taken
+     * as the value, and pairs without a value are ignored.
+     */
+    private void addParam(String param) throws UnsupportedEncodingException {
+        int i = param.indexOf('=');
+        if (i < 0) {
+            return;
+        }
+
+        int end = param.indexOf('=', i + 1);
+        String value = param.substring(i + 1, end < 0 ? param.length() : end);
+        if (value.length() == 0) {
+            // "name=" or "name==", but not "name==value"
+            int j = i + 1;
+            while (j < param.length() && param.charAt(j) == '=') {
+                j++;
+            }
+            if (j == param.length()) {
+                return;
+            }
+        }
+
+        params.put(param.substring(0, i), value.indexOf('%') < 0 ?
+                value : URIEncoderDecoder.decode(value));
+    }
+
     /**
      * Get the HTTP header value for the Header name
      * @param name name of the header
@@ -143,6 +191,7 @@ public class EvaluatorContext {
      */
     public void setUrl(String url) {
         this.url = url;
+        this.uri = null;
     }
 
     /**
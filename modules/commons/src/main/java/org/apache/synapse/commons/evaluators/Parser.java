@@ -50,6 +50,9 @@ public class Parser {
     /** set of conditions to be evaluated */
     private Condition[] conditions = null;
 
+    /** the conditions compiled for evaluation */
+    private CompiledConditions compiledConditions = null;
+
     /** Default priority to be used */
     private int defaultPriority = -1;
 
@@ -72,24 +75,21 @@ public class Parser {
 
     /**
      * Parse the HTTP request against the condition set and return the matching priority.
+     * The conditions are evaluated through their {@link CompiledConditions}, which retrieves
+     * each part of the request the conditions look at only once.
      *
      * @param context context used for holding the HTTP information
      * @return priority as an integer
      */
     public int parse(EvaluatorContext context) {
-        for (Condition condition : conditions) {
-            try {
-                if (condition.getEvaluator().evaluate(context)) {
-                    return condition.getPriority();
-                }
-            } catch (EvaluatorException e) {
-                String msg = "Error evaluating the "
-                        + EvaluatorConstants.CONDITION + " with priority :"
-                        + condition.getPriority();
-                if (defaultPriority == -1) {
-                    log.error(msg, e);
-                }
-                return defaultPriority;
+        try {
+            Condition condition = compiledConditions.match(context);
+            if (condition != null) {
+                return condition.getPriority();
+            }
+        } catch (EvaluatorException e) {
+            if (defaultPriority == -1) {
+                log.error(e.getMessage(), e.getCause());
             }
         }
 
@@ -127,6 +127,7 @@ public class Parser {
 
         if (conditionList.size() > 1) {
             this.conditions = conditionList.toArray(new Condition[conditionList.size()]);
+            this.compiledConditions = CompiledConditions.compile(this.conditions);
         } else if (conditionList.size() == 1 && defaultPriority == -1){
             handleException("No point in having one rule without a default priority");
         } else {
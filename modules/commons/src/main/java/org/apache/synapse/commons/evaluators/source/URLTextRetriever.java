@@ -41,7 +41,7 @@ public class URLTextRetriever implements SourceTextRetriever {
         }
 
         try {
-            URI uri = new URI(context.getUrl());
+            URI uri = context.getURI();
             switch (fragment) {
                 case protocol: return uri.getScheme();
                 case user: return uri.getUserInfo();
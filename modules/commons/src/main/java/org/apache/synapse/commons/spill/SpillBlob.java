@@ -0,0 +1,438 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.commons.spill;
+
+import org.apache.axiom.ext.io.StreamCopyException;
+import org.apache.axiom.util.blob.BlobOutputStream;
+import org.apache.axiom.util.blob.OverflowBlob;
+import org.apache.axiom.util.blob.WritableBlob;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * An {@link OverflowBlob} which keeps its data in heap chunks and extents of the spill file
+ * handed out by a {@link SpillManager}. The first part of the data, up to the threshold of the
+ * blob or until the memory quota of the manager is used up, is held in chunks and the rest in
+ * extents. Nothing is copied when the blob spills, and data held in extents is read straight
+ * from the mapped spill file. Unlike a plain OverflowBlob, the blob is not cleaned up when it is
+ * garbage collected: {@link #release()} must be called once the data is no longer needed, or
+ * its chunks and extents stay out of the pools until the manager is destroyed. The data cannot
+ * be read after the blob is released.
+ */
+public class SpillBlob extends OverflowBlob {
+
+    private static final int STATE_NEW = 0;
+    private static final int STATE_UNCOMMITTED = 1;
+    private static final int STATE_COMMITTED = 2;
+
+    private final SpillManager manager;
+    private final int chunkSize;
+    private final int extentSize;
+
+    private byte[][] chunks;
+    private int chunkCount = 0;
+    private int[] extents = new int[4];
+    private int extentCount = 0;
+    private boolean spilled = false;
+
+    /** Extent currently written to */
+    private ByteBuffer writeExtent;
+
+    private long length = 0;
+    private int blobState = STATE_NEW;
+    private boolean released = false;
+
+    SpillBlob(SpillManager manager, int thresholdChunks) {
+        super(1, manager.getChunkSize(), "spill", ".dat");
+        this.manager = manager;
+        this.chunkSize = manager.getChunkSize();
+        this.extentSize = manager.getExtentSize();
+        this.chunks = new byte[Math.max(0, thresholdChunks)][];
+    }
+
+    /**
+     * @return true if part of the data is held in the spill file
+     */
+    public boolean isSpilled() {
+        return spilled;
+    }
+
+    @Override
+    public BlobOutputStream getOutputStream() {
+        if (blobState != STATE_NEW) {
+            throw new IllegalStateException();
+        }
+        blobState = STATE_UNCOMMITTED;
+        return new OutputStreamImpl();
+    }
+
+    @Override
+    public long readFrom(InputStream in, long length, boolean commit)
+            throws StreamCopyException {
+
+        if (blobState == STATE_COMMITTED) {
+            throw new IllegalStateException();
+        }
+
+        long toRead = length == -1 ? Long.MAX_VALUE : length;
+        long read = 0;
+        byte[] buffer = null;
+        while (toRead > 0) {
+            int c;
+            try {
+                if (!spilled && ensureChunk()) {
+                    // read straight into the current chunk
+                    int offset = (int) (this.length - (long) (chunkCount - 1) * chunkSize);
+                    c = in.read(chunks[chunkCount - 1], offset,
+                            (int) Math.min(chunkSize - offset, toRead));
+                    if (c > 0) {
+                        this.length += c;
+                    }
+                } else {
+                    if (buffer == null) {
+                        buffer = new byte[Math.min(extentSize, 8192)];
+                    }
+                    c = in.read(buffer, 0, (int) Math.min(buffer.length, toRead));
+                    if (c > 0) {
+                        try {
+                            write(buffer, 0, c);
+                        } catch (IOException e) {
+                            throw new StreamCopyException(StreamCopyException.WRITE, e);
+                        }
+                    }
+                }
+            } catch (StreamCopyException e) {
+                throw e;
+            } catch (IOException e) {
+                throw new StreamCopyException(StreamCopyException.READ, e);
+            }
+
+            if (c == -1) {
+                break;
+            }
+            read += c;
+            toRead -= c;
+        }
+
+        if (commit) {
+            commit();
+        } else {
+            blobState = STATE_UNCOMMITTED;
+        }
+        return read;
+    }
+
+    @Override
+    public long readFrom(InputStream in, long length) throws StreamCopyException {
+        return readFrom(in, length, blobState == STATE_NEW);
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        if (blobState != STATE_COMMITTED) {
+            throw new IllegalStateException();
+        }
+        return new InputStreamImpl();
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws StreamCopyException {
+        if (released) {
+            throw new StreamCopyException(StreamCopyException.READ,
+                    new IOException("The blob has been released"));
+        }
+        long memoryLength = getMemoryLength();
+        for (int i = 0; i < chunkCount; i++) {
+            int c = (int) Math.min(chunkSize, memoryLength - (long) i * chunkSize);
+            try {
+                out.write(chunks[i], 0, c);
+            } catch (IOException e) {
+                throw new StreamCopyException(StreamCopyException.WRITE, e);
+            }
+        }
+
+        byte[] buffer = null;
+        long remaining = length - memoryLength;
+        for (int i = 0; i < extentCount; i++) {
+            ByteBuffer extent;
+            try {
+                extent = manager.getExtent(extents[i]);
+            } catch (IOException e) {
+                throw new StreamCopyException(StreamCopyException.READ, e);
+            }
+            if (buffer == null) {
+                buffer = new byte[Math.min(extentSize, 8192)];
+            }
+            int left = (int) Math.min(extentSize, remaining);
+            remaining -= left;
+            while (left > 0) {
+                int c = Math.min(left, buffer.length);
+                extent.get(buffer, 0, c);
+                try {
+                    out.write(buffer, 0, c);
+                } catch (IOException e) {
+                    throw new StreamCopyException(StreamCopyException.WRITE, e);
+                }
+                left -= c;
+            }
+        }
+    }
+
+    /**
+     * Write the data to a channel. The part of the data held in the spill file is transferred
+     * by the file system, without being copied through the heap.
+     *
+     * @param target channel to write the data to. This method will not close the channel.
+     * @throws IOException on an error writing to the channel
+     */
+    public void writeTo(WritableByteChannel target) throws IOException {
+        checkNotReleased();
+        long memoryLength = getMemoryLength();
+        for (int i = 0; i < chunkCount; i++) {
+            int c = (int) Math.min(chunkSize, memoryLength - (long) i * chunkSize);
+            ByteBuffer buffer = ByteBuffer.wrap(chunks[i], 0, c);
+            while (buffer.hasRemaining()) {
+                target.write(buffer);
+            }
+        }
+
+        long remaining = length - memoryLength;
+        for (int i = 0; i < extentCount; i++) {
+            int c = (int) Math.min(extentSize, remaining);
+            manager.transferExtent(extents[i], c, target);
+            remaining -= c;
+        }
+    }
+
+    @Override
+    public long getLength() {
+        return length;
+    }
+
+    @Override
+    public void release() {
+        if (released) {
+            return;
+        }
+        released = true;
+        for (int i = 0; i < chunkCount; i++) {
+            manager.releaseChunk(chunks[i]);
+            chunks[i] = null;
+        }
+        chunkCount = 0;
+        manager.releaseExtents(extents, extentCount);
+        extentCount = 0;
+        writeExtent = null;
+        length = 0;
+    }
+
+    private void commit() {
+        if (blobState != STATE_COMMITTED) {
+            blobState = STATE_COMMITTED;
+            if (spilled) {
+                manager.recordSpilledBytes(length - getMemoryLength());
+            }
+        }
+    }
+
+    private long getMemoryLength() {
+        return spilled ? (long) chunkCount * chunkSize : length;
+    }
+
+    /**
+     * Make sure the current chunk has room for at least one more byte, by allocating a new
+     * one if needed. Switches the blob to the spill file if no chunk can be allocated.
+     *
+     * @return true if the current chunk has room, false if the blob has spilled
+     */
+    private boolean ensureChunk() {
+        if (length < (long) chunkCount * chunkSize) {
+            return true;
+        }
+        byte[] chunk = chunkCount < chunks.length ? manager.allocateChunk() : null;
+        if (chunk == null) {
+            spilled = true;
+            manager.recordSpill();
+            return false;
+        }
+        chunks[chunkCount++] = chunk;
+        return true;
+    }
+
+    private void checkNotReleased() throws IOException {
+        if (released) {
+            throw new IOException("The blob has been released");
+        }
+    }
+
+    private void write(byte[] b, int off, int len) throws IOException {
+        checkNotReleased();
+        while (len > 0) {
+            int c;
+            if (!spilled && ensureChunk()) {
+                int offset = (int) (length - (long) (chunkCount - 1) * chunkSize);
+                c = Math.min(len, chunkSize - offset);
+                System.arraycopy(b, off, chunks[chunkCount - 1], offset, c);
+            } else {
+                if (writeExtent == null || !writeExtent.hasRemaining()) {
+                    int extent = manager.allocateExtent();
+                    if (extentCount == extents.length) {
+                        int[] newExtents = new int[extents.length * 2];
+                        System.arraycopy(extents, 0, newExtents, 0, extentCount);
+                        extents = newExtents;
+                    }
+                    extents[extentCount++] = extent;
+                    writeExtent = manager.getExtent(extent);
+                }
+                c = Math.min(len, writeExtent.remaining());
+                writeExtent.put(b, off, c);
+            }
+            length += c;
+            off += c;
+            len -= c;
+        }
+    }
+
+    class OutputStreamImpl extends BlobOutputStream {
+
+        @Override
+        public WritableBlob getBlob() {
+            return SpillBlob.this;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (blobState != STATE_UNCOMMITTED) {
+                throw new IllegalStateException();
+            }
+            SpillBlob.this.write(b, off, len);
+        }
+
+        @Override
+        public void write(byte[] b) throws IOException {
+            write(b, 0, b.length);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void close() throws IOException {
+            commit();
+        }
+    }
+
+    class InputStreamImpl extends InputStream {
+
+        private long position;
+        private long mark;
+
+        /** Index and buffer of the extent last read from */
+        private int extentIndex = -1;
+        private ByteBuffer extent;
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(Integer.MAX_VALUE, length - position);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            checkNotReleased();
+            if (len == 0) {
+                return 0;
+            }
+            if (position >= length) {
+                return -1;
+            }
+
+            int read = 0;
+            long memoryLength = getMemoryLength();
+            while (len > 0 && position < length) {
+                int c;
+                if (position < memoryLength) {
+                    int chunk = (int) (position / chunkSize);
+                    int offset = (int) (position % chunkSize);
+                    c = (int) Math.min(Math.min(len, chunkSize - offset), memoryLength - position);
+                    System.arraycopy(chunks[chunk], offset, b, off, c);
+                } else {
+                    long spillPosition = position - memoryLength;
+                    int index = (int) (spillPosition / extentSize);
+                    int offset = (int) (spillPosition % extentSize);
+                    if (index != extentIndex) {
+                        extent = manager.getExtent(extents[index]);
+                        extentIndex = index;
+                    }
+                    c = (int) Math.min(Math.min(len, extentSize - offset), length - position);
+                    extent.position(offset);
+                    extent.get(b, off, c);
+                }
+                position += c;
+                off += c;
+                len -= c;
+                read += c;
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] b) throws IOException {
+            return read(b, 0, b.length);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b) == -1 ? -1 : (int) b[0] & 0xFF;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long c = Math.max(0, Math.min(n, length - position));
+            position += c;
+            return c;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public void mark(int readlimit) {
+            mark = position;
+        }
+
+        @Override
+        public void reset() throws IOException {
+            position = mark;
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+}
@@ -0,0 +1,469 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.commons.spill;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>Shared storage for the temporary data of all the messages in flight. The manager hands
+ * out fixed size heap chunks from a pool, and fixed size extents of a single memory mapped
+ * spill file, to the {@link SpillBlob} instances it creates. Chunks and extents go back to the
+ * manager when a blob is released and are reused by the next blobs, so buffering large
+ * payloads neither allocates new arrays for every message nor creates and deletes a temporary
+ * file for every message.</p>
+ *
+ * <p>The total size of the chunks handed out is bounded by the memory quota. A blob which
+ * cannot get a chunk, because it reached its own threshold or because the quota is used up,
+ * continues in the spill file. The spill file is as large as the disk quota, but it is created
+ * sparse and is mapped in segments as the extents are first used. Writing to a blob fails
+ * with an IOException when no extent is left.</p>
+ *
+ * <p>Blobs are only returned to the pools by {@link SpillBlob#release()}, so the manager must
+ * only hand blobs to callers which release them once the data is no longer needed.</p>
+ */
+public class SpillManager {
+
+    /**
+     * Property of the Axis2 configuration context holding the spill manager of the Synapse
+     * environment, so that the transports can buffer the messages they send in the same area
+     */
+    public static final String SPILL_MANAGER = "synapse.spill.manager";
+
+    private static final Log log = LogFactory.getLog(SpillManager.class);
+
+    /** Largest size of a mapped segment of the spill file */
+    private static final int MAX_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    /** Length of an interval of the rate counters, and number of intervals they cover */
+    private static final long RATE_INTERVAL = TimeUnit.SECONDS.toMillis(10);
+    private static final int RATE_INTERVALS = 6;
+
+    private final int chunkSize;
+    private final long memoryQuota;
+    private final int extentSize;
+    private final int totalExtents;
+    private final int segmentExtents;
+
+    private final ConcurrentLinkedQueue<byte[]> freeChunks = new ConcurrentLinkedQueue<byte[]>();
+    private final AtomicInteger pooledChunks = new AtomicInteger();
+    private final AtomicLong memoryInUse = new AtomicLong();
+
+    private final File spillFile;
+    private final RandomAccessFile spillAccess;
+    private final FileChannel channel;
+    private final AtomicReferenceArray<MappedByteBuffer> segments;
+
+    /** Extents released by blobs, reused before the ones never used so far */
+    private final int[] freeExtents;
+    private int freeExtentCount = 0;
+    private int nextExtent = 0;
+    private boolean destroyed = false;
+    private boolean closed = false;
+
+    private final AtomicLong spillCount = new AtomicLong();
+    private final AtomicLong spilledBytes = new AtomicLong();
+    private final AtomicLong quotaExceededCount = new AtomicLong();
+    private final RateCounter spillRate = new RateCounter();
+    private final RateCounter spilledBytesRate = new RateCounter();
+
+    /**
+     * Create a spill manager and its spill file
+     *
+     * @param directory   directory of the spill file, or null for the temporary directory
+     * @param chunkSize   size of the heap chunks in bytes
+     * @param memoryQuota largest number of bytes held in heap chunks at any time
+     * @param extentSize  size of the extents of the spill file in bytes
+     * @param diskQuota   size of the spill file in bytes, rounded down to whole extents
+     * @throws IOException if the spill file cannot be created
+     */
+    public SpillManager(File directory, int chunkSize, long memoryQuota, int extentSize,
+                        long diskQuota) throws IOException {
+
+        if (chunkSize <= 0 || extentSize <= 0 || extentSize > MAX_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("Invalid chunk size " + chunkSize +
+                    " or extent size " + extentSize);
+        }
+        long extents = diskQuota / extentSize;
+        if (extents < 1 || extents > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The disk quota of " + diskQuota +
+                    " bytes must hold between 1 and " + Integer.MAX_VALUE + " extents");
+        }
+
+        this.chunkSize = chunkSize;
+        this.memoryQuota = memoryQuota;
+        this.extentSize = extentSize;
+        this.totalExtents = (int) extents;
+        this.segmentExtents = MAX_SEGMENT_SIZE / extentSize;
+        this.freeExtents = new int[totalExtents];
+        this.segments = new AtomicReferenceArray<MappedByteBuffer>(
+                (totalExtents + segmentExtents - 1) / segmentExtents);
+
+        spillFile = File.createTempFile("synapse-spill", ".dat", directory);
+        spillFile.deleteOnExit();
+        spillAccess = new RandomAccessFile(spillFile, "rw");
+        spillAccess.setLength((long) totalExtents * extentSize);
+        channel = spillAccess.getChannel();
+
+        if (log.isDebugEnabled()) {
+            log.debug("Created a spill area of " + totalExtents + " extents of " + extentSize +
+                    " bytes in " + spillFile);
+        }
+    }
+
+    /**
+     * Create a blob backed by this manager
+     *
+     * @param thresholdChunks largest number of heap chunks the blob may use before it
+     *                        continues in the spill file
+     * @return a new blob, which must be released after use
+     */
+    public SpillBlob createBlob(int thresholdChunks) {
+        return new SpillBlob(this, thresholdChunks);
+    }
+
+    /**
+     * Release the spill file. No more extents are handed out, but blobs still holding extents
+     * can be read until they are released. The spill file is unmapped and deleted once the
+     * last of these blobs is released.
+     */
+    public void destroy() {
+        boolean close;
+        synchronized (freeExtents) {
+            destroyed = true;
+            close = lastExtentReleased();
+        }
+        if (close) {
+            closeSpillFile();
+        } else if (log.isDebugEnabled()) {
+            log.debug("Deferring the removal of the spill file " + spillFile + " until " +
+                    "the blobs using it are released");
+        }
+        freeChunks.clear();
+        pooledChunks.set(0);
+    }
+
+    int getChunkSize() {
+        return chunkSize;
+    }
+
+    int getExtentSize() {
+        return extentSize;
+    }
+
+    /**
+     * Hand out a heap chunk, reusing a pooled one when possible
+     *
+     * @return the chunk or null if the memory quota is used up
+     */
+    byte[] allocateChunk() {
+        long used;
+        do {
+            used = memoryInUse.get();
+            if (used + chunkSize > memoryQuota) {
+                return null;
+            }
+        } while (!memoryInUse.compareAndSet(used, used + chunkSize));
+
+        byte[] chunk = freeChunks.poll();
+        if (chunk == null) {
+            return new byte[chunkSize];
+        }
+        pooledChunks.decrementAndGet();
+        return chunk;
+    }
+
+    void releaseChunk(byte[] chunk) {
+        freeChunks.offer(chunk);
+        pooledChunks.incrementAndGet();
+        memoryInUse.addAndGet(-chunkSize);
+    }
+
+    /**
+     * Hand out an extent of the spill file
+     *
+     * @return index of the extent
+     * @throws IOException if the disk quota is used up
+     */
+    int allocateExtent() throws IOException {
+        int extent;
+        synchronized (freeExtents) {
+            if (destroyed) {
+                throw new IOException("The spill area has been destroyed");
+            } else if (freeExtentCount > 0) {
+                extent = freeExtents[--freeExtentCount];
+            } else if (nextExtent < totalExtents) {
+                extent = nextExtent++;
+            } else {
+                extent = -1;
+            }
+        }
+        if (extent < 0) {
+            quotaExceededCount.incrementAndGet();
+            throw new IOException("The spill area quota of " +
+                    ((long) totalExtents * extentSize) + " bytes is exceeded");
+        }
+        return extent;
+    }
+
+    void releaseExtents(int[] extents, int count) {
+        boolean close;
+        synchronized (freeExtents) {
+            System.arraycopy(extents, 0, freeExtents, freeExtentCount, count);
+            freeExtentCount += count;
+            close = destroyed && lastExtentReleased();
+        }
+        if (close) {
+            closeSpillFile();
+        }
+    }
+
+    /**
+     * Check whether the spill file is no longer used and has not been closed yet, and mark it
+     * closed if so. Must be called while holding the lock on the free extents.
+     */
+    private boolean lastExtentReleased() {
+        if (closed || freeExtentCount != nextExtent) {
+            return false;
+        }
+        closed = true;
+        return true;
+    }
+
+    /**
+     * Unmap the segments of the spill file, close it and delete it. The segments are unmapped
+     * explicitly, as a mapping is otherwise only released when its buffer is garbage collected
+     * and keeps the file, and its disk space, in use until then.
+     */
+    private void closeSpillFile() {
+        synchronized (segments) {
+            for (int i = 0; i < segments.length(); i++) {
+                MappedByteBuffer segment = segments.getAndSet(i, null);
+                if (segment != null) {
+                    unmap(segment);
+                }
+            }
+        }
+        try {
+            channel.close();
+            spillAccess.close();
+        } catch (IOException e) {
+            log.warn("Error closing the spill file " + spillFile, e);
+        }
+        if (!spillFile.delete()) {
+            log.warn("Could not delete the spill file " + spillFile);
+        }
+    }
+
+    /**
+     * Release the mapping of a buffer, through sun.misc.Unsafe on Java 9 and later and through
+     * the cleaner of the buffer on Java 8. If neither is available the mapping is left to be
+     * released with the buffer.
+     */
+    private void unmap(MappedByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner;
+            try {
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (NoSuchMethodException e) {
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+                return;
+            }
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+        } catch (Exception e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Could not unmap a segment of the spill file " + spillFile, e);
+            }
+        }
+    }
+
+    /**
+     * Get a buffer over the given extent of the mapped spill file
+     *
+     * @param extent index of the extent
+     * @return a buffer with its position at the start of the extent and its limit at the end
+     * @throws IOException if the segment holding the extent cannot be mapped
+     */
+    ByteBuffer getExtent(int extent) throws IOException {
+        int index = extent / segmentExtents;
+        MappedByteBuffer segment = segments.get(index);
+        if (segment == null) {
+            segment = mapSegment(index);
+        }
+        ByteBuffer buffer = segment.duplicate();
+        int offset = (extent % segmentExtents) * extentSize;
+        buffer.limit(offset + extentSize).position(offset);
+        return buffer.slice();
+    }
+
+    /**
+     * Transfer the content of an extent to a channel, without copying it through the heap
+     *
+     * @param extent index of the extent
+     * @param length number of bytes to transfer from the start of the extent
+     * @param target the channel to transfer the bytes to
+     * @throws IOException on an error writing to the channel
+     */
+    void transferExtent(int extent, int length, WritableByteChannel target) throws IOException {
+        long position = (long) extent * extentSize;
+        long end = position + length;
+        while (position < end) {
+            position += channel.transferTo(position, end - position, target);
+        }
+    }
+
+    /**
+     * Record that a blob continued in the spill file
+     */
+    void recordSpill() {
+        spillCount.incrementAndGet();
+        spillRate.add(1);
+    }
+
+    void recordSpilledBytes(long bytes) {
+        spilledBytes.addAndGet(bytes);
+        spilledBytesRate.add(bytes);
+    }
+
+    private MappedByteBuffer mapSegment(int index) throws IOException {
+        synchronized (segments) {
+            MappedByteBuffer segment = segments.get(index);
+            if (segment == null) {
+                long position = (long) index * segmentExtents * extentSize;
+                long size = Math.min((long) segmentExtents * extentSize,
+                        (long) totalExtents * extentSize - position);
+                segment = channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+                segments.set(index, segment);
+            }
+            return segment;
+        }
+    }
+
+    public long getMemoryQuota() {
+        return memoryQuota;
+    }
+
+    public long getMemoryInUse() {
+        return memoryInUse.get();
+    }
+
+    public int getPooledChunkCount() {
+        return pooledChunks.get();
+    }
+
+    public long getDiskQuota() {
+        return (long) totalExtents * extentSize;
+    }
+
+    public long getDiskInUse() {
+        synchronized (freeExtents) {
+            return (long) (nextExtent - freeExtentCount) * extentSize;
+        }
+    }
+
+    public long getSpillCount() {
+        return spillCount.get();
+    }
+
+    public long getSpilledBytes() {
+        return spilledBytes.get();
+    }
+
+    public long getQuotaExceededCount() {
+        return quotaExceededCount.get();
+    }
+
+    /**
+     * @return average number of blobs per second which continued in the spill file, over
+     *         the last minute
+     */
+    public double getSpillRate() {
+        return spillRate.getRate();
+    }
+
+    /**
+     * @return average number of bytes per second written to the spill file, over the
+     *         last minute
+     */
+    public double getSpilledBytesRate() {
+        return spilledBytesRate.getRate();
+    }
+
+    public void resetStatistics() {
+        spillCount.set(0);
+        spilledBytes.set(0);
+        quotaExceededCount.set(0);
+    }
+
+    /**
+     * Sums values over a ring of fixed length intervals, which are cleared lazily as they
+     * come around again
+     */
+    private static class RateCounter {
+
+        private final AtomicLongArray counts = new AtomicLongArray(RATE_INTERVALS);
+        private final AtomicLongArray stamps = new AtomicLongArray(RATE_INTERVALS);
+
+        void add(long value) {
+            long interval = System.currentTimeMillis() / RATE_INTERVAL;
+            int slot = (int) (interval % RATE_INTERVALS);
+            long stamp = stamps.get(slot);
+            if (stamp != interval && stamps.compareAndSet(slot, stamp, interval)) {
+                counts.set(slot, 0);
+            }
+            counts.addAndGet(slot, value);
+        }
+
+        double getRate() {
+            long interval = System.currentTimeMillis() / RATE_INTERVAL;
+            long total = 0;
+            for (int i = 0; i < RATE_INTERVALS; i++) {
+                if (interval - stamps.get(i) < RATE_INTERVALS) {
+                    total += counts.get(i);
+                }
+            }
+            return total * 1000.0 / (RATE_INTERVALS * RATE_INTERVAL);
+        }
+    }
+}
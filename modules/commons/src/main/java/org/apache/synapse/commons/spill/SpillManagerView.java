@@ -0,0 +1,84 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.commons.spill;
+
+public class SpillManagerView implements SpillManagerViewMBean {
+
+    private SpillManager manager;
+
+    public SpillManagerView(SpillManager manager) {
+        this.manager = manager;
+    }
+
+    @Override
+    public long getMemoryQuota() {
+        return manager.getMemoryQuota();
+    }
+
+    @Override
+    public long getMemoryInUse() {
+        return manager.getMemoryInUse();
+    }
+
+    @Override
+    public int getPooledChunkCount() {
+        return manager.getPooledChunkCount();
+    }
+
+    @Override
+    public long getDiskQuota() {
+        return manager.getDiskQuota();
+    }
+
+    @Override
+    public long getDiskInUse() {
+        return manager.getDiskInUse();
+    }
+
+    @Override
+    public long getSpillCount() {
+        return manager.getSpillCount();
+    }
+
+    @Override
+    public long getSpilledBytes() {
+        return manager.getSpilledBytes();
+    }
+
+    @Override
+    public long getQuotaExceededCount() {
+        return manager.getQuotaExceededCount();
+    }
+
+    @Override
+    public double getSpillRate() {
+        return manager.getSpillRate();
+    }
+
+    @Override
+    public double getSpilledBytesRate() {
+        return manager.getSpilledBytesRate();
+    }
+
+    @Override
+    public void resetStatistics() {
+        manager.resetStatistics();
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.commons.spill;
+
+/**
+ * JMX MBean interface for monitoring the shared storage of temporary message data.
+ */
+public interface SpillManagerViewMBean {
+
+    public long getMemoryQuota();
+
+    public long getMemoryInUse();
+
+    /**
+     * Get the number of released heap chunks kept for reuse
+     *
+     * @return An integer
+     */
+    public int getPooledChunkCount();
+
+    public long getDiskQuota();
+
+    public long getDiskInUse();
+
+    /**
+     * Get the number of buffers which did not fit in memory and continued in the spill file
+     *
+     * @return A long
+     */
+    public long getSpillCount();
+
+    public long getSpilledBytes();
+
+    /**
+     * Get the number of writes which failed as the spill file was full
+     *
+     * @return A long
+     */
+    public long getQuotaExceededCount();
+
+    /**
+     * Get the number of buffers per second which continued in the spill file, over the
+     * last minute
+     *
+     * @return A double
+     */
+    public double getSpillRate();
+
+    /**
+     * Get the number of bytes per second written to the spill file, over the last minute
+     *
+     * @return A double
+     */
+    public double getSpilledBytesRate();
+
+    public void resetStatistics();
+}
@@ -0,0 +1,274 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.commons.evaluators;
+
+import junit.framework.TestCase;
+import org.apache.axiom.om.util.AXIOMUtil;
+import org.apache.synapse.commons.evaluators.source.HeaderTextRetriever;
+import org.apache.synapse.commons.evaluators.source.ParameterTextRetriever;
+import org.apache.synapse.commons.evaluators.source.SourceTextRetriever;
+import org.apache.synapse.commons.evaluators.source.URLTextRetriever;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+public class CompiledConditionsTest extends TestCase {
+
+    private static final String[] HOSTS = {"alpha", "BETA", "gamma", "delta", "epsilon"};
+    private static final String[] AGENTS = {"mozilla", "curl", "Wget", "java"};
+
+    public void testSameResultAsSequentialEvaluation() throws Exception {
+        Random random = new Random(42);
+        Condition[] conditions = createConditions(random, 200);
+        CompiledConditions compiled = CompiledConditions.compile(conditions);
+
+        for (int i = 0; i < 2000; i++) {
+            String url = "http://" + pick(random, HOSTS) + ":8280/services/S" +
+                    random.nextInt(10) + "?customer=" + pick(random, HOSTS).toUpperCase();
+            Map<String, String> headers = new HashMap<String, String>();
+            headers.put("User-Agent", pick(random, AGENTS));
+            if (random.nextBoolean()) {
+                headers.put("Host", pick(random, HOSTS));
+            }
+
+            Condition expected = null;
+            for (Condition condition : conditions) {
+                if (condition.getEvaluator().evaluate(new EvaluatorContext(url, headers))) {
+                    expected = condition;
+                    break;
+                }
+            }
+            assertSame(url + " " + headers, expected,
+                    compiled.match(new EvaluatorContext(url, headers)));
+        }
+    }
+
+    public void testSharedSourcesAndEvaluators() throws Exception {
+        Condition[] conditions = new Condition[] {
+                condition(1, and(equal(header("Host"), "alpha"), match(header("User-Agent"), "cu.*"))),
+                condition(2, and(equal(header("Host"), "ALPHA"), not(match(header("User-Agent"), "cu.*")))),
+                condition(3, or(equal(header("Host"), "beta"), equal(header("Host"), "gamma"))),
+                condition(4, equal(param("customer"), "foo"))
+        };
+        CompiledConditions compiled = CompiledConditions.compile(conditions);
+        // Host, User-Agent and customer
+        assertEquals(3, compiled.getSourceCount());
+
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put("Host", "Alpha");
+        headers.put("User-Agent", "wget");
+        CountingContext context = new CountingContext("/foo?customer=foo", headers);
+        assertSame(conditions[1], compiled.match(context));
+        assertEquals(2, context.headerCalls);
+
+        headers.put("Host", "gamma");
+        context = new CountingContext("/foo?customer=foo", headers);
+        assertSame(conditions[2], compiled.match(context));
+        assertEquals(1, context.headerCalls);
+
+        headers.put("Host", "none");
+        context = new CountingContext("/foo?customer=FOO", headers);
+        assertSame(conditions[3], compiled.match(context));
+        assertEquals(1, context.headerCalls);
+        assertNull(compiled.match(new EvaluatorContext("/foo", headers)));
+    }
+
+    public void testConsecutiveEqualConditions() throws Exception {
+        List<Condition> list = new ArrayList<Condition>();
+        for (int i = 0; i < 300; i++) {
+            if (i % 10 == 9) {
+                list.add(condition(i, and(equal(header("Host"), "guarded" + i % 20),
+                        match(header("User-Agent"), "curl.*"))));
+            } else {
+                list.add(condition(i, equal(header("Host"), "host" + i)));
+            }
+        }
+        list.add(condition(1000, equal(header("Host"), "host7")));
+        list.add(condition(1001, equal(param("tier"), "gold")));
+        Condition[] conditions = list.toArray(new Condition[list.size()]);
+        CompiledConditions compiled = CompiledConditions.compile(conditions);
+
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put("Host", "HOST7");
+        assertSame(conditions[7], compiled.match(new EvaluatorContext("/", headers)));
+        headers.put("Host", "host298");
+        assertSame(conditions[298], compiled.match(new EvaluatorContext("/", headers)));
+        headers.put("Host", "guarded19");
+        assertSame(conditions[301], compiled.match(new EvaluatorContext("/?tier=gold", headers)));
+        headers.put("User-Agent", "curl/7.68.0");
+        assertSame(conditions[19], compiled.match(new EvaluatorContext("/", headers)));
+        headers.put("Host", "guarded9");
+        assertSame(conditions[9], compiled.match(new EvaluatorContext("/", headers)));
+        headers.put("Host", "host300");
+        assertNull(compiled.match(new EvaluatorContext("/", headers)));
+    }
+
+    public void testErrorsAfterMatchAreNotReported() throws Exception {
+        URLTextRetriever host = new URLTextRetriever();
+        host.setSource(EvaluatorConstants.URI_FRAGMENTS.host.name());
+        Condition[] conditions = new Condition[] {
+                condition(1, equal(header("Host"), "alpha")),
+                condition(2, equal(host, "beta")),
+                condition(3, equal(header("Host"), "gamma"))
+        };
+        CompiledConditions compiled = CompiledConditions.compile(conditions);
+
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put("Host", "alpha");
+        assertSame(conditions[0], compiled.match(new EvaluatorContext("not a uri", headers)));
+
+        headers.put("Host", "gamma");
+        try {
+            compiled.match(new EvaluatorContext("not a uri", headers));
+            fail("The invalid URL of the second condition should have been reported");
+        } catch (EvaluatorException e) {
+            assertTrue(e.getMessage(), e.getMessage().endsWith(":2"));
+        }
+
+        Parser parser = new Parser(5);
+        parser.init(AXIOMUtil.stringToOM(
+                "<conditions defaultPriority=\"5\">" +
+                "<condition priority=\"1\"><equal type=\"header\" source=\"Host\" value=\"alpha\"/></condition>" +
+                "<condition priority=\"2\"><equal type=\"url\" source=\"host\" value=\"beta\"/></condition>" +
+                "</conditions>"));
+        assertEquals(1, parser.parse(new EvaluatorContext("not a uri", headersOf("Host", "alpha"))));
+        assertEquals(5, parser.parse(new EvaluatorContext("not a uri", headersOf("Host", "x"))));
+        assertEquals(2, parser.parse(new EvaluatorContext("http://beta/", headersOf("Host", "x"))));
+    }
+
+    public void testFold() {
+        String[] strings = {"abc", "ABC", "aBc", "\u0130", "i", "I", "\u0131", "\u00df", "SS",
+                "\u03a3", "\u03c3", "\u03c2", "k", "K", ""};
+        for (String a : strings) {
+            for (String b : strings) {
+                assertEquals(a + " / " + b, a.equalsIgnoreCase(b),
+                        CompiledConditions.fold(a).equals(CompiledConditions.fold(b)));
+            }
+        }
+    }
+
+    private Condition[] createConditions(Random random, int count) {
+        Condition[] conditions = new Condition[count];
+        for (int i = 0; i < count; i++) {
+            conditions[i] = condition(i, createEvaluator(random, 3));
+        }
+        return conditions;
+    }
+
+    private Evaluator createEvaluator(Random random, int depth) {
+        int kind = random.nextInt(depth > 0 ? 7 : 3);
+        switch (kind) {
+            case 0:
+                return equal(header("Host"), pick(random, HOSTS));
+            case 1:
+                return match(header("User-Agent"), pick(random, AGENTS).substring(0, 2) + ".*");
+            case 2:
+                URLTextRetriever host = new URLTextRetriever();
+                host.setSource(EvaluatorConstants.URI_FRAGMENTS.host.name());
+                return random.nextBoolean() ? equal(host, pick(random, HOSTS)) :
+                        equal(param("customer"), pick(random, HOSTS));
+            case 3:
+                return not(createEvaluator(random, depth - 1));
+            case 4:
+                return and(createEvaluator(random, depth - 1), createEvaluator(random, depth - 1));
+            case 5:
+                return or(equal(header("Host"), pick(random, HOSTS)),
+                        equal(header("Host"), pick(random, HOSTS)));
+            default:
+                return or(createEvaluator(random, depth - 1), createEvaluator(random, depth - 1));
+        }
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private static Map<String, String> headersOf(String name, String value) {
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put(name, value);
+        return headers;
+    }
+
+    private static Condition condition(int priority, Evaluator evaluator) {
+        Condition condition = new Condition();
+        condition.setPriority(priority);
+        condition.setEvaluator(evaluator);
+        return condition;
+    }
+
+    private static SourceTextRetriever header(String name) {
+        return new HeaderTextRetriever(name);
+    }
+
+    private static SourceTextRetriever param(String name) {
+        return new ParameterTextRetriever(name);
+    }
+
+    private static Evaluator equal(SourceTextRetriever retriever, String value) {
+        EqualEvaluator equal = new EqualEvaluator();
+        equal.setTextRetriever(retriever);
+        equal.setValue(value);
+        return equal;
+    }
+
+    private static Evaluator match(SourceTextRetriever retriever, String regex) {
+        MatchEvaluator match = new MatchEvaluator();
+        match.setTextRetriever(retriever);
+        match.setRegex(Pattern.compile(regex));
+        return match;
+    }
+
+    private static Evaluator not(Evaluator evaluator) {
+        NotEvaluator not = new NotEvaluator();
+        not.setEvaluator(evaluator);
+        return not;
+    }
+
+    private static Evaluator and(Evaluator... evaluators) {
+        AndEvaluator and = new AndEvaluator();
+        and.setEvaluators(evaluators);
+        return and;
+    }
+
+    private static Evaluator or(Evaluator... evaluators) {
+        OrEvaluator or = new OrEvaluator();
+        or.setEvaluators(evaluators);
+        return or;
+    }
+
+    private static class CountingContext extends EvaluatorContext {
+
+        private int headerCalls;
+
+        CountingContext(String url, Map<String, String> headers) {
+            super(url, headers);
+        }
+
+        @Override
+        public String getHeader(String name) {
+            headerCalls++;
+            return super.getHeader(name);
+        }
+    }
+}
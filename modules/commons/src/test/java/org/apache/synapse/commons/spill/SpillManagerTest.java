@@ -0,0 +1,210 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.commons.spill;
+
+import junit.framework.TestCase;
+import org.apache.commons.io.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Random;
+
+public class SpillManagerTest extends TestCase {
+
+    private final Random random = new Random();
+    private SpillManager manager;
+
+    @Override
+    protected void setUp() throws Exception {
+        // 4 chunks of 1k in memory, 8 extents of 4k on disk
+        manager = new SpillManager(null, 1024, 4 * 1024, 4096, 8 * 4096);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        manager.destroy();
+    }
+
+    public void testSmallBlobStaysInMemory() throws Exception {
+        byte[] data = randomData(3000);
+        SpillBlob blob = write(manager.createBlob(4), data);
+        assertFalse(blob.isSpilled());
+        assertEquals(3 * 1024, manager.getMemoryInUse());
+        assertEquals(0, manager.getDiskInUse());
+        assertTrue(Arrays.equals(data, IOUtils.toByteArray(blob.getInputStream())));
+
+        blob.release();
+        assertEquals(0, manager.getMemoryInUse());
+        assertEquals(3, manager.getPooledChunkCount());
+    }
+
+    public void testLargeBlobSpills() throws Exception {
+        byte[] data = randomData(20000);
+        SpillBlob blob = write(manager.createBlob(2), data);
+        assertTrue(blob.isSpilled());
+        assertEquals(20000, blob.getLength());
+        assertEquals(2 * 1024, manager.getMemoryInUse());
+        assertEquals(5 * 4096, manager.getDiskInUse());
+        assertEquals(1, manager.getSpillCount());
+        assertEquals(20000 - 2 * 1024, manager.getSpilledBytes());
+
+        assertTrue(Arrays.equals(data, readInRandomChunks(blob.getInputStream(), data.length)));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        blob.writeTo(out);
+        assertTrue(Arrays.equals(data, out.toByteArray()));
+
+        out = new ByteArrayOutputStream();
+        blob.writeTo(Channels.newChannel(out));
+        assertTrue(Arrays.equals(data, out.toByteArray()));
+
+        InputStream in = blob.getInputStream();
+        assertEquals(5000, in.skip(5000));
+        in.mark(0);
+        int b = in.read();
+        in.reset();
+        assertEquals(b, in.read());
+        assertEquals(data[5000] & 0xFF, b);
+
+        blob.release();
+        assertEquals(0, manager.getDiskInUse());
+    }
+
+    public void testReadFrom() throws Exception {
+        byte[] data = randomData(10000);
+        SpillBlob blob = manager.createBlob(1);
+        assertEquals(data.length, blob.readFrom(new ByteArrayInputStream(data), -1));
+        assertTrue(blob.isSpilled());
+        assertTrue(Arrays.equals(data, IOUtils.toByteArray(blob.getInputStream())));
+        blob.release();
+    }
+
+    public void testExtentsAreReused() throws Exception {
+        byte[] data = randomData(8 * 4096);
+        for (int i = 0; i < 5; i++) {
+            SpillBlob blob = write(manager.createBlob(0), data);
+            assertEquals(8 * 4096, manager.getDiskInUse());
+            assertTrue(Arrays.equals(data, IOUtils.toByteArray(blob.getInputStream())));
+            blob.release();
+        }
+        assertEquals(0, manager.getDiskInUse());
+        assertEquals(5, manager.getSpillCount());
+        assertTrue(manager.getSpillRate() > 0);
+    }
+
+    public void testMemoryQuota() throws Exception {
+        SpillBlob first = write(manager.createBlob(3), randomData(3000));
+        assertFalse(first.isSpilled());
+
+        // only one chunk is left within the quota
+        byte[] data = randomData(3000);
+        SpillBlob second = write(manager.createBlob(3), data);
+        assertTrue(second.isSpilled());
+        assertEquals(4 * 1024, manager.getMemoryInUse());
+        assertTrue(Arrays.equals(data, IOUtils.toByteArray(second.getInputStream())));
+
+        first.release();
+        second.release();
+        assertEquals(0, manager.getMemoryInUse());
+    }
+
+    public void testDiskQuota() throws Exception {
+        SpillBlob blob = manager.createBlob(0);
+        OutputStream out = blob.getOutputStream();
+        out.write(randomData(8 * 4096));
+        try {
+            out.write(1);
+            fail("The write should exceed the disk quota");
+        } catch (IOException expected) {
+        }
+        assertEquals(1, manager.getQuotaExceededCount());
+        blob.release();
+        assertEquals(0, manager.getDiskInUse());
+    }
+
+    public void testUncommittedBlob() throws Exception {
+        SpillBlob blob = manager.createBlob(4);
+        blob.getOutputStream().write(1);
+        try {
+            blob.getInputStream();
+            fail("An uncommitted blob should not be readable");
+        } catch (IllegalStateException expected) {
+        }
+        blob.release();
+    }
+
+    public void testDestroyWaitsForBlobsInUse() throws Exception {
+        byte[] data = randomData(10000);
+        SpillBlob blob = write(manager.createBlob(0), data);
+        InputStream in = blob.getInputStream();
+        manager.destroy();
+
+        // the spill file stays mapped until the blob is released
+        assertTrue(Arrays.equals(data, IOUtils.toByteArray(blob.getInputStream())));
+        try {
+            write(manager.createBlob(0), data);
+            fail("A destroyed manager should not hand out extents");
+        } catch (IOException expected) {
+        }
+
+        blob.release();
+        assertEquals(0, manager.getDiskInUse());
+        try {
+            in.read();
+            fail("A released blob should not be readable");
+        } catch (IOException expected) {
+        }
+    }
+
+    private SpillBlob write(SpillBlob blob, byte[] data) throws IOException {
+        OutputStream out = blob.getOutputStream();
+        int offset = 0;
+        while (offset < data.length) {
+            int c = Math.min(1 + random.nextInt(3000), data.length - offset);
+            out.write(data, offset, c);
+            offset += c;
+        }
+        out.close();
+        return blob;
+    }
+
+    private byte[] readInRandomChunks(InputStream in, int size) throws IOException {
+        byte[] data = new byte[size];
+        int offset = 0;
+        int c;
+        while (offset < size &&
+                (c = in.read(data, offset, Math.min(1 + random.nextInt(5000), size - offset))) != -1) {
+            offset += c;
+        }
+        assertEquals(-1, in.read());
+        return data;
+    }
+
+    private byte[] randomData(int size) {
+        byte[] data = new byte[size];
+        random.nextBytes(data);
+        return data;
+    }
+}
@@ -341,6 +341,26 @@ public final class SynapseConstants {
     
     public static final String TEMP_FILE_SUFIX = "synapse.tempfile.sufix";
 
+    /** shared spill area for the temporary data, see SpillManager */
+    public static final String SPILL_ENABLED = "synapse.temp_data.spill.enabled";
+
+    public static final String SPILL_DIRECTORY = "synapse.temp_data.spill.dir";
+
+    public static final String SPILL_MEMORY_QUOTA = "synapse.temp_data.spill.memory_quota";
+
+    public static final String SPILL_DISK_QUOTA = "synapse.temp_data.spill.disk_quota";
+
+    public static final String SPILL_EXTENT_SIZE = "synapse.temp_data.spill.extent_size";
+
+    /** memory quota of the spill manager in megabytes */
+    public static final int DEFAULT_SPILL_MEMORY_QUOTA = 64;
+
+    /** disk quota of the spill manager in megabytes */
+    public static final int DEFAULT_SPILL_DISK_QUOTA = 1024;
+
+    /** size of the spill file extents in kilobytes */
+    public static final int DEFAULT_SPILL_EXTENT_SIZE = 64;
+
     public static final String DOING_FAIL_OVER = "synapse.doing.failover";
 
     /** System variable prefix for parameter injection */
@@ -413,6 +433,12 @@ public final class SynapseConstants {
 
     public static final String BLOCKING_CLIENT_ERROR = "blocking.client.error";
 
+    /** The Synapse MC property holding the continuation resumed by the response to a message */
+    public static final String MEDIATION_CONTINUATION = "_SYNAPSE_MEDIATION_CONTINUATION";
+
+    /** The Synapse MC property set on a message while its mediation is suspended */
+    public static final String MEDIATION_SUSPENDED = "_SYNAPSE_MEDIATION_SUSPENDED";
+
     public static final String HTTP_SENDER_STATUSCODE = "transport.http.statusCode";
 
     // Fail-safe mode properties
@@ -44,13 +44,15 @@ public class Entry implements SynapseArtifact {
     /** Source URL of the entry if it is a URL_SRC */
     private URL src;
     /** The value of the entry. This can be either an OMElement or an String */
-    private Object value;
+    private volatile Object value;
+    /** Incremented each time the value is replaced */
+    private volatile long revision;
     /** An XML to Object mapper - if one is available */
     private XMLToObjectMapper mapper;
     /** The version of the cached resource */
-    private long version;
+    private volatile long version;
     /** The local expiry time for the cached resource */
-    private long expiryTime;
+    private volatile long expiryTime;
     /** The name of the file where this entry is defined */
     private String fileName;
     /** The description of the local entry */
@@ -121,8 +123,36 @@ public class Entry implements SynapseArtifact {
         return value;
     }
 
-    public void setValue(Object value) {
+    public synchronized void setValue(Object value) {
         this.value = value;
+        this.revision++;
+    }
+
+    /**
+     * Replace the value of the entry together with the lease of the cached resource. The
+     * expiry time and version are updated before the new value is published, so a thread
+     * which sees the new value also sees its lease.
+     * @param value the new value
+     * @param expiryTime the local expiry time of the new value
+     * @param version the version of the new value
+     */
+    public synchronized void setValue(Object value, long expiryTime, long version) {
+        this.expiryTime = expiryTime;
+        this.version = version;
+        if (this.value != value) {
+            this.value = value;
+            this.revision++;
+        }
+    }
+
+    /**
+     * Gets the revision of the value of the entry, which changes every time the value is
+     * replaced. Objects derived from the value, such as compiled stylesheets, can compare the
+     * revision they were derived from with the current one, to find out if they are out of date.
+     * @return the revision of the value
+     */
+    public long getRevision() {
+        return revision;
     }
 
     /**
@@ -46,6 +46,7 @@ import org.apache.synapse.core.axis2.ProxyService;
 import org.apache.synapse.endpoints.Endpoint;
 import org.apache.synapse.endpoints.dispatch.SALSessions;
 import org.apache.synapse.mediators.base.SequenceMediator;
+import org.apache.synapse.registry.AbstractRegistry;
 import org.apache.synapse.registry.Registry;
 import org.apache.axiom.om.OMNode;
 import org.apache.synapse.rest.API;
@@ -54,6 +55,7 @@ import javax.xml.namespace.QName;
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * The SynapseConfiguration holds the global configuration for a Synapse
@@ -102,7 +104,8 @@ public class SynapseConfiguration implements ManagedLifecycle, SynapseArtifact {
      * override definitions of a remote registry for entries defined locally
      * with the same key
      */
-    private final Map<String, Object> localRegistry = new ConcurrentHashMap<String, Object>();
+    private final ConcurrentMap<String, Object> localRegistry =
+            new ConcurrentHashMap<String, Object>();
 
     /** Holds the synapse properties */
     private Properties properties = new Properties();
@@ -250,8 +253,7 @@ public class SynapseConfiguration implements ManagedLifecycle, SynapseArtifact {
      * @deprecated
      */
     public void addSequence(String key, Entry entry) {
-        assertAlreadyExists(key, ENTRY);
-        localRegistry.put(key, entry);
+        putIfAbsent(key, entry, ENTRY);
     }
 
     /**
@@ -703,9 +705,12 @@ public class SynapseConfiguration implements ManagedLifecycle, SynapseArtifact {
         Object o = localRegistry.get(key);
         if (o != null && o instanceof Entry) {
             Entry entry = (Entry) o;
-            if (!entry.isDynamic() || (entry.isCached() && !entry.isExpired())) {
+            if (!entry.isDynamic() || (entry.isCached() && !entry.isExpired() &&
+                    !isRegistryRefreshAhead())) {
                 // If the entry is not dynamic or if it is a cached dynamic entry with the
-                // cache still not expired, return the existing value.
+                // cache still not expired, return the existing value. A registry which
+                // refreshes entries ahead of expiry has to see the access, and returns the
+                // cached value itself.
                 return entry.getValue();
             }
 
@@ -747,6 +752,11 @@ public class SynapseConfiguration implements ManagedLifecycle, SynapseArtifact {
         return o;
     }
 
+    private boolean isRegistryRefreshAhead() {
+        return registry instanceof AbstractRegistry &&
+                ((AbstractRegistry) registry).getRefreshAheadTime() > 0;
+    }
+
     /**
      * Get the Entry object mapped to the given key
      *
@@ -860,8 +870,7 @@ public class SynapseConfiguration implements ManagedLifecycle, SynapseArtifact {
      * @deprecated
      */
     public void addEndpoint(String key, Entry entry) {
-        assertAlreadyExists(key, ENTRY);
-        localRegistry.put(key, entry);
+        putIfAbsent(key, entry, ENTRY);
     }
 
     /**
@@ -1469,6 +1478,11 @@ public class SynapseConfiguration implements ManagedLifecycle, SynapseArtifact {
         for (API api : apiTable.values()) {
             api.destroy();
         }
+
+        // stop the background refreshes of the registry
+        if (registry instanceof AbstractRegistry) {
+            ((AbstractRegistry) registry).destroy();
+        }
     }
 
     private void handleException(String msg) {
@@ -1778,6 +1792,22 @@ public class SynapseConfiguration implements ManagedLifecycle, SynapseArtifact {
         }
     }
 
+    /**
+     * Add an object to the local registry unless an object already exists by the given key,
+     * in which case a runtime exception is thrown. The check and the addition are atomic, so
+     * that one of two concurrent additions by the same key always fails.
+     *
+     * @param key   the key of the object
+     * @param value the object to add
+     * @param type  the kind of the object, for the error message
+     */
+    private void putIfAbsent(String key, Object value, String type) {
+        assertAlreadyExists(key, type);
+        if (localRegistry.putIfAbsent(key, value) != null) {
+            handleException("Duplicate " + type + " definition for key : " + key);
+        }
+    }
+
     private void assertEntryNull(Entry entry, String key) {
         if (entry == null) {
             handleException("Cannot locate an either local or remote entry for key : " + key);
@@ -1785,8 +1815,7 @@ public class SynapseConfiguration implements ManagedLifecycle, SynapseArtifact {
     }
 
     public void addEndpointTemplate(String name, Template template) {
-        assertAlreadyExists(name, "template");
-        localRegistry.put(name, template);
+        putIfAbsent(name, template, "template");
     }
 
     public void updateEndpointTemplate(String name, Template template) {
@@ -25,6 +25,7 @@ import org.apache.synapse.commons.datasource.DataSourceInformation;
 import org.apache.synapse.securevault.secret.SecretInformation;
 import org.apache.synapse.mediators.db.AbstractDBMediator;
 import org.apache.synapse.mediators.db.Statement;
+import org.apache.synapse.mediators.db.StatementResultCache;
 import org.apache.synapse.util.xpath.SynapseXPath;
 import org.jaxen.JaxenException;
 
@@ -62,6 +63,7 @@ import java.util.Properties;
  *     &lt;sql>insert into table values (?, ?, ..) OR select target from destinations where src = ?&lt;/sql>
  *     &lt;parameter (value="const" | expression="xpath") type="INTEGER|VARCHAR|..."/>*
  *     &lt;result name="propName" column="target | number"/>*
+ *     &lt;cache [timeout="seconds"] [maxSize="entries"]/>? (dblookup only)
  *   &lt;/statement>+
  * &lt;/dbreport | dblookup | .. etc>
  * </pre>
@@ -99,6 +101,7 @@ public abstract class AbstractDBMediatorFactory extends AbstractMediatorFactory
     static final QName SQL_Q = new QName(XMLConfigConstants.SYNAPSE_NAMESPACE, "sql");
     static final QName PARAM_Q = new QName(XMLConfigConstants.SYNAPSE_NAMESPACE, "parameter");
     static final QName RESULT_Q = new QName(XMLConfigConstants.SYNAPSE_NAMESPACE, "result");
+    static final QName CACHE_Q = new QName(XMLConfigConstants.SYNAPSE_NAMESPACE, "cache");
 
     static final QName ATT_COLUMN = new QName("column");
     static final QName ATT_TYPE = new QName("type");
@@ -310,10 +313,29 @@ public abstract class AbstractDBMediatorFactory extends AbstractMediatorFactory
                         getAttribute(resultElt, ATT_COLUMN));
             }
 
+            OMElement cacheElt = stmntElt.getFirstChildWithName(CACHE_Q);
+            if (cacheElt != null) {
+                statement.setResultCache(createResultCache(cacheElt));
+            }
+
             mediator.addStatement(statement);
         }
     }
 
+    /**
+     * Create the result cache of a statement from its <code>cache</code> element. Only
+     * mediators which look up results can cache them, so this fails by default instead of
+     * silently ignoring the element.
+     *
+     * @param cacheElt the <code>cache</code> element of the statement
+     * @return the result cache of the statement
+     */
+    protected StatementResultCache createResultCache(OMElement cacheElt) {
+        handleException("A cache is not supported on the statements of the " +
+                getTagQName().getLocalPart() + " mediator");
+        return null;
+    }
+
     protected String getValue(OMElement elt, QName qName) {
         OMElement e = elt.getFirstChildWithName(qName);
         if (e != null) {
@@ -25,6 +25,7 @@ import org.apache.axiom.om.OMText;
 import org.apache.synapse.SynapseException;
 import org.apache.synapse.mediators.db.AbstractDBMediator;
 import org.apache.synapse.mediators.db.Statement;
+import org.apache.synapse.mediators.db.StatementResultCache;
 
 import javax.xml.namespace.QName;
 import javax.xml.stream.XMLStreamConstants;
@@ -57,6 +58,7 @@ import java.sql.Types;
  *     <sql>insert into table values (?, ?, ..) OR select target from destinations where src = ?</sql>
  *     <parameter (value="const" | expression="xpath") type="INTEGER|VARCHAR|..."/>*
  *     <result name="propName" column="target | number"/>*
+ *     <cache [timeout="seconds"] [maxSize="entries"]/>?
  *   </statement>+
  * </dbreport | dblookup | .. etc>
  *
@@ -149,6 +151,17 @@ public abstract class AbstractDBMediatorSerializer extends AbstractMediatorSeria
             stmntElt.addChild(resultElt);
         }
 
+        StatementResultCache cache = statement.getResultCache();
+        if (cache != null) {
+            OMElement cacheElt = fac.createOMElement(
+                AbstractDBMediatorFactory.CACHE_Q.getLocalPart(), synNS);
+            cacheElt.addAttribute(fac.createOMAttribute(
+                "timeout", nullNS, Long.toString(cache.getTimeout() / 1000)));
+            cacheElt.addAttribute(fac.createOMAttribute(
+                "maxSize", nullNS, Integer.toString(cache.getMaxSize())));
+            stmntElt.addChild(cacheElt);
+        }
+
         return stmntElt;
     }
 
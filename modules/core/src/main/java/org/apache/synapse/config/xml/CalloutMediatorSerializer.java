@@ -27,7 +27,7 @@ import org.apache.synapse.mediators.builtin.CalloutMediator;
 
 /**
  * <pre>
- * &lt;callout [serviceURL="string"] [action="string"][passHeaders="true|false"] [initAxis2ClientOptions="true|false"]&gt;
+ * &lt;callout [serviceURL="string"] [action="string"][passHeaders="true|false"] [initAxis2ClientOptions="true|false"] [blocking="true|false"]&gt;
  *      &lt;configuration [axis2xml="string"] [repository="string"]/&gt;?
  *      &lt;endpoint/&gt;?
  *      &lt;source xpath="expression" | key="string"&gt;?
@@ -84,6 +84,10 @@ public class CalloutMediatorSerializer extends AbstractMediatorSerializer {
             callout.addAttribute(fac.createOMAttribute("initAxis2ClientOptions", nullNS, "false"));
         }
 
+        if (!mediator.isBlocking()) {
+            callout.addAttribute(fac.createOMAttribute("blocking", nullNS, "false"));
+        }
+
         if (mediator.getRequestXPath() != null || mediator.getRequestKey() != null) {
             OMElement source = fac.createOMElement("source", synNS, callout);
             if (mediator.getRequestXPath() != null) {
@@ -0,0 +1,205 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.config.xml;
+
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.OMXMLBuilderFactory;
+import org.apache.axiom.om.util.StAXUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A snapshot of the artifact definitions of a Synapse artifact repository, which were built
+ * successfully the last time the configuration was loaded. The snapshot is a single XML file
+ * holding the document of each artifact file together with the size and modification time of
+ * the file, so that the documents of the files which have not changed since can be taken from
+ * the snapshot instead of opening and parsing each of them again. Checking a file only takes
+ * its metadata, not its content.
+ * <p/>
+ * Only the XML definitions are kept, as the configuration objects built from them are not
+ * serializable.
+ */
+class ConfigurationSnapshot {
+
+    private static final Log log = LogFactory.getLog(ConfigurationSnapshot.class);
+
+    private static final String SNAPSHOT = "snapshot";
+    private static final String ARTIFACT = "artifact";
+    private static final String ATT_PATH = "path";
+    private static final String ATT_LENGTH = "length";
+    private static final String ATT_LAST_MODIFIED = "lastModified";
+
+    private static final QName ARTIFACT_Q = new QName(ARTIFACT);
+    private static final QName ATT_PATH_Q = new QName(ATT_PATH);
+    private static final QName ATT_LENGTH_Q = new QName(ATT_LENGTH);
+    private static final QName ATT_LAST_MODIFIED_Q = new QName(ATT_LAST_MODIFIED);
+
+    private final Map<String, SnapshotEntry> entries = new LinkedHashMap<String, SnapshotEntry>();
+
+    /**
+     * Read the snapshot from the given file. A missing or unreadable snapshot results in an
+     * empty snapshot.
+     *
+     * @param file the snapshot file
+     * @return the snapshot
+     */
+    static ConfigurationSnapshot load(File file) {
+        ConfigurationSnapshot snapshot = new ConfigurationSnapshot();
+        if (!file.isFile()) {
+            if (log.isDebugEnabled()) {
+                log.debug("No configuration snapshot found at : " + file.getPath());
+            }
+            return snapshot;
+        }
+
+        InputStream in = null;
+        try {
+            in = FileUtils.openInputStream(file);
+            OMElement root = OMXMLBuilderFactory.createOMBuilder(in).getDocumentElement();
+            root.build();
+
+            Iterator artifacts = root.getChildrenWithName(ARTIFACT_Q);
+            while (artifacts.hasNext()) {
+                OMElement artifact = (OMElement) artifacts.next();
+                OMElement document = artifact.getFirstElement();
+                String path = artifact.getAttributeValue(ATT_PATH_Q);
+                String length = artifact.getAttributeValue(ATT_LENGTH_Q);
+                String lastModified = artifact.getAttributeValue(ATT_LAST_MODIFIED_Q);
+                if (document != null && path != null && length != null && lastModified != null) {
+                    snapshot.entries.put(path, new SnapshotEntry(Long.parseLong(length),
+                            Long.parseLong(lastModified), document));
+                }
+            }
+
+            // the documents are handed out to threads building the configuration in parallel,
+            // so they are detached here, while only a single thread has access to them
+            for (SnapshotEntry entry : snapshot.entries.values()) {
+                entry.document.detach();
+            }
+        } catch (Exception e) {
+            log.warn("Ignoring the unreadable configuration snapshot at : " + file.getPath(), e);
+            snapshot.entries.clear();
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ignore) {
+                    // the snapshot has already been read
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * @param path         path of the artifact file relative to the repository root
+     * @param length       current size of the artifact file
+     * @param lastModified current modification time of the artifact file
+     * @return the document of the artifact, or null if the snapshot does not have the artifact
+     *         or the file has changed since
+     */
+    OMElement getDocument(String path, long length, long lastModified) {
+        SnapshotEntry entry = entries.get(path);
+        return entry != null && entry.length == length && entry.lastModified == lastModified ?
+                entry.document : null;
+    }
+
+    void addDocument(String path, long length, long lastModified, OMElement document) {
+        entries.put(path, new SnapshotEntry(length, lastModified, document));
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Write the snapshot to the given file. The snapshot is first written to a temporary file
+     * next to it, which then replaces the file, so that a failure never leaves a partial
+     * snapshot behind.
+     *
+     * @param file the snapshot file
+     * @throws IOException        if the snapshot could not be written
+     * @throws XMLStreamException if an artifact could not be serialized
+     */
+    void save(File file) throws IOException, XMLStreamException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            FileUtils.forceMkdir(parent);
+        }
+        File temp = File.createTempFile(file.getName(), ".tmp", parent);
+
+        OutputStream out = FileUtils.openOutputStream(temp);
+        try {
+            XMLStreamWriter writer = StAXUtils.createXMLStreamWriter(out, "UTF-8");
+            writer.writeStartDocument("UTF-8", "1.0");
+            writer.writeStartElement(SNAPSHOT);
+            for (Map.Entry<String, SnapshotEntry> entry : entries.entrySet()) {
+                writer.writeStartElement(ARTIFACT);
+                writer.writeAttribute(ATT_PATH, entry.getKey());
+                writer.writeAttribute(ATT_LENGTH, String.valueOf(entry.getValue().length));
+                writer.writeAttribute(ATT_LAST_MODIFIED,
+                        String.valueOf(entry.getValue().lastModified));
+                entry.getValue().document.serialize(writer);
+                writer.writeEndElement();
+            }
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.close();
+        } finally {
+            out.close();
+        }
+
+        if (file.exists() && !file.delete()) {
+            FileUtils.deleteQuietly(temp);
+            throw new IOException("Unable to replace the configuration snapshot at : " +
+                    file.getPath());
+        }
+        FileUtils.moveFile(temp, file);
+
+        if (log.isDebugEnabled()) {
+            log.debug("Saved " + entries.size() + " artifacts in the configuration snapshot at : " +
+                    file.getPath());
+        }
+    }
+
+    private static class SnapshotEntry {
+        private final long length;
+        private final long lastModified;
+        private final OMElement document;
+
+        SnapshotEntry(long length, long lastModified, OMElement document) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.document = document;
+        }
+    }
+}
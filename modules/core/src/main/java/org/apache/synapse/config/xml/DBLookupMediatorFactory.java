@@ -23,6 +23,7 @@ import org.apache.axiom.om.OMElement;
 import org.apache.synapse.Mediator;
 import org.apache.synapse.SynapseConstants;
 import org.apache.synapse.mediators.db.DBLookupMediator;
+import org.apache.synapse.mediators.db.StatementResultCache;
 
 import javax.xml.namespace.QName;
 import java.util.Properties;
@@ -54,6 +55,7 @@ import java.util.Properties;
  *     &lt;sql&gt;select something from table where something_else = ?&lt;/sql&gt;
  *     &lt;parameter [value="" | expression=""] type="int|string"/&gt;*
  *     &lt;result name="string" column="int|string"/&gt;*
+ *     &lt;cache [timeout="seconds"] [maxSize="entries"]/&gt;?
  *   &lt;/statement&gt;+
  * &lt;/dblookup&gt;
  * </pre>
@@ -63,6 +65,14 @@ public class DBLookupMediatorFactory extends AbstractDBMediatorFactory {
     private static final QName DBLOOKUP_Q =
         new QName(SynapseConstants.SYNAPSE_NAMESPACE, "dblookup");
 
+    static final QName ATT_TIMEOUT = new QName("timeout");
+    static final QName ATT_MAX_SIZE = new QName("maxSize");
+
+    /** Default time in seconds a cached statement result stays valid */
+    static final long DEFAULT_CACHE_TIMEOUT = 60;
+    /** Default maximum number of results cached for a statement */
+    static final int DEFAULT_CACHE_SIZE = 1000;
+
     @Override
     public Mediator createSpecificMediator(OMElement elem, Properties properties) {
 
@@ -72,6 +82,29 @@ public class DBLookupMediatorFactory extends AbstractDBMediatorFactory {
         return mediator;
     }
 
+    @Override
+    protected StatementResultCache createResultCache(OMElement cacheElt) {
+
+        long timeout = DEFAULT_CACHE_TIMEOUT;
+        int maxSize = DEFAULT_CACHE_SIZE;
+        String timeoutStr = getAttribute(cacheElt, ATT_TIMEOUT);
+        String maxSizeStr = getAttribute(cacheElt, ATT_MAX_SIZE);
+        try {
+            if (timeoutStr != null) {
+                timeout = Long.parseLong(timeoutStr.trim());
+            }
+            if (maxSizeStr != null) {
+                maxSize = Integer.parseInt(maxSizeStr.trim());
+            }
+        } catch (NumberFormatException e) {
+            handleException("Invalid timeout or maxSize specified for the statement cache", e);
+        }
+        if (maxSize <= 0) {
+            handleException("The maxSize of the statement cache must be a positive number");
+        }
+        return new StatementResultCache(timeout * 1000, maxSize);
+    }
+
     @Override
     public QName getTagQName() {
         return DBLOOKUP_Q;
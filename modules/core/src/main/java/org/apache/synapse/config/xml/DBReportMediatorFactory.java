@@ -23,6 +23,7 @@ import org.apache.axiom.om.OMElement;
 import org.apache.axiom.om.OMAttribute;
 import org.apache.synapse.Mediator;
 import org.apache.synapse.SynapseConstants;
+import org.apache.synapse.mediators.db.AsyncReportWriter;
 import org.apache.synapse.mediators.db.DBReportMediator;
 
 import javax.xml.namespace.QName;
@@ -53,8 +54,12 @@ import java.util.Properties;
  *     &lt;sql&gt;insert into something values(?, ?, ?, ?)&lt;/sql&gt;
  *     &lt;parameter [value="" | expression=""] type="int|string"/&gt;*
  *    &lt;/statement&gt;+
+ *   &lt;async [queueSize="int"] [batchSize="int"] [flushInterval="ms"]
+ *          [overflow="block|drop|spill"] [spillDirectory="path"] [shutdownTimeout="ms"]/&gt;?
  * &lt;/dblreport&gt;
  * </pre>
+ * The optional async element makes the mediator write the rows in batches from a separate
+ * thread, and cannot be combined with useTransaction="true".
  */
 public class DBReportMediatorFactory extends AbstractDBMediatorFactory {
 
@@ -62,6 +67,14 @@ public class DBReportMediatorFactory extends AbstractDBMediatorFactory {
             new QName(SynapseConstants.SYNAPSE_NAMESPACE, "dbreport");
     private static final QName DBREPORT_USE_TX = new QName("useTransaction");
 
+    static final QName ASYNC_Q = new QName(SynapseConstants.SYNAPSE_NAMESPACE, "async");
+    private static final QName ATT_QUEUE_SIZE = new QName("queueSize");
+    private static final QName ATT_BATCH_SIZE = new QName("batchSize");
+    private static final QName ATT_FLUSH_INTERVAL = new QName("flushInterval");
+    private static final QName ATT_OVERFLOW = new QName("overflow");
+    private static final QName ATT_SPILL_DIRECTORY = new QName("spillDirectory");
+    private static final QName ATT_SHUTDOWN_TIMEOUT = new QName("shutdownTimeout");
+
     @Override
     public Mediator createSpecificMediator(OMElement elem, Properties properties) {
         DBReportMediator mediator = new DBReportMediator();
@@ -77,9 +90,60 @@ public class DBReportMediatorFactory extends AbstractDBMediatorFactory {
         }
         buildDataSource(elem, mediator);
         processStatements(elem, mediator);
+
+        OMElement asyncElt = elem.getFirstChildWithName(ASYNC_Q);
+        if (asyncElt != null) {
+            if (mediator.isUseTransaction()) {
+                handleException("The DBReport mediator cannot write asynchronously while " +
+                        "participating in a transaction");
+            }
+            processAsyncConfig(asyncElt, mediator);
+        }
         return mediator;
     }
 
+    private void processAsyncConfig(OMElement asyncElt, DBReportMediator mediator) {
+        mediator.setAsync(true);
+        try {
+            String value = getAttribute(asyncElt, ATT_QUEUE_SIZE);
+            if (value != null) {
+                mediator.setQueueSize(Integer.parseInt(value.trim()));
+            }
+            value = getAttribute(asyncElt, ATT_BATCH_SIZE);
+            if (value != null) {
+                mediator.setBatchSize(Integer.parseInt(value.trim()));
+            }
+            value = getAttribute(asyncElt, ATT_FLUSH_INTERVAL);
+            if (value != null) {
+                mediator.setFlushInterval(Long.parseLong(value.trim()));
+            }
+            value = getAttribute(asyncElt, ATT_SHUTDOWN_TIMEOUT);
+            if (value != null) {
+                mediator.setShutdownTimeout(Long.parseLong(value.trim()));
+            }
+        } catch (NumberFormatException e) {
+            handleException("Invalid number specified in the async configuration of the " +
+                    "DBReport mediator", e);
+        }
+        if (mediator.getQueueSize() <= 0 || mediator.getBatchSize() <= 0 ||
+                mediator.getFlushInterval() <= 0) {
+            handleException("The queueSize, batchSize and flushInterval of the DBReport " +
+                    "mediator must be positive numbers");
+        }
+
+        String overflow = getAttribute(asyncElt, ATT_OVERFLOW);
+        if (overflow != null) {
+            try {
+                mediator.setOverflowPolicy(
+                        AsyncReportWriter.OverflowPolicy.valueOf(overflow.trim().toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                handleException("Invalid overflow policy : " + overflow + " specified for " +
+                        "the DBReport mediator. Expected block, drop or spill");
+            }
+        }
+        mediator.setSpillDirectory(getAttribute(asyncElt, ATT_SPILL_DIRECTORY));
+    }
+
     @Override
     public QName getTagQName() {
         return DBREPORT_Q;
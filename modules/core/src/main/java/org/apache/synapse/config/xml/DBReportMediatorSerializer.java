@@ -21,6 +21,7 @@ package org.apache.synapse.config.xml;
 
 import org.apache.axiom.om.OMElement;
 import org.apache.synapse.Mediator;
+import org.apache.synapse.mediators.db.AsyncReportWriter;
 import org.apache.synapse.mediators.db.DBReportMediator;
 
 /**
@@ -45,9 +46,43 @@ public class DBReportMediatorSerializer extends AbstractDBMediatorSerializer {
         saveTracingState(dbReport, mediator);
         serializeDBInformation(mediator, dbReport);
 
+        if (mediator.isAsync()) {
+            dbReport.addChild(createAsyncElement(mediator));
+        }
+
         return dbReport;
     }
 
+    private OMElement createAsyncElement(DBReportMediator mediator) {
+        OMElement asyncElt = fac.createOMElement(
+                DBReportMediatorFactory.ASYNC_Q.getLocalPart(), synNS);
+        if (mediator.getQueueSize() != DBReportMediator.DEFAULT_QUEUE_SIZE) {
+            asyncElt.addAttribute(fac.createOMAttribute(
+                    "queueSize", nullNS, Integer.toString(mediator.getQueueSize())));
+        }
+        if (mediator.getBatchSize() != DBReportMediator.DEFAULT_BATCH_SIZE) {
+            asyncElt.addAttribute(fac.createOMAttribute(
+                    "batchSize", nullNS, Integer.toString(mediator.getBatchSize())));
+        }
+        if (mediator.getFlushInterval() != DBReportMediator.DEFAULT_FLUSH_INTERVAL) {
+            asyncElt.addAttribute(fac.createOMAttribute(
+                    "flushInterval", nullNS, Long.toString(mediator.getFlushInterval())));
+        }
+        if (mediator.getOverflowPolicy() != AsyncReportWriter.OverflowPolicy.BLOCK) {
+            asyncElt.addAttribute(fac.createOMAttribute(
+                    "overflow", nullNS, mediator.getOverflowPolicy().name().toLowerCase()));
+        }
+        if (mediator.getSpillDirectory() != null) {
+            asyncElt.addAttribute(fac.createOMAttribute(
+                    "spillDirectory", nullNS, mediator.getSpillDirectory()));
+        }
+        if (mediator.getShutdownTimeout() != DBReportMediator.DEFAULT_SHUTDOWN_TIMEOUT) {
+            asyncElt.addAttribute(fac.createOMAttribute(
+                    "shutdownTimeout", nullNS, Long.toString(mediator.getShutdownTimeout())));
+        }
+        return asyncElt;
+    }
+
     @Override
     public String getMediatorClassName() {
         return DBReportMediator.class.getName();
@@ -0,0 +1,365 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.config.xml;
+
+import org.apache.axiom.om.OMElement;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.synapse.SynapseException;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads and parses the artifact files of a Synapse artifact repository for the
+ * {@link MultiXMLConfigurationBuilder}. All the files are submitted to a fork/join pool up
+ * front, so that the documents of a directory are ready, or being parsed, by the time the
+ * builder gets to that directory. The artifacts of a single directory may also be built in
+ * parallel, while the directories themselves are still built one after the other, in the
+ * order in which their artifacts may refer to each other.
+ * <p/>
+ * When a snapshot file is given, the document of an artifact file whose size and modification
+ * time match the ones recorded in the snapshot is taken from the snapshot instead of being read
+ * and parsed again, and a new snapshot of the artifacts which were built successfully is
+ * written by {@link #saveSnapshot()}.
+ * <p/>
+ * The loader also keeps the time spent in each phase of the build, which is reported with
+ * {@link #getTimings()}.
+ */
+class MultiXMLArtifactLoader {
+
+    private static final Log log = LogFactory.getLog(MultiXMLArtifactLoader.class);
+
+    private static final String[] extensions = { "xml" };
+
+    /** coarsest resolution of the modification times of the file systems in common use, in ms */
+    private static final long TIMESTAMP_RESOLUTION = 2000;
+
+    private final File root;
+    /** The pool parsing and building the artifacts, or null to do everything on the caller */
+    private final ForkJoinPool pool;
+    private final File snapshotFile;
+    private ConfigurationSnapshot snapshot;
+
+    private final Map<String, List<Artifact>> artifacts = new LinkedHashMap<String, List<Artifact>>();
+
+    private final Map<String, Long> timings = new LinkedHashMap<String, Long>();
+    private final long started = System.currentTimeMillis();
+    private long phaseStarted = started;
+    private final AtomicLong parseTime = new AtomicLong(0);
+    private final AtomicLong snapshotHits = new AtomicLong(0);
+
+    /**
+     * @param root         root of the artifact repository
+     * @param threads      number of threads to parse and build the artifacts with, 1 to do it
+     *                     on the calling thread
+     * @param snapshotFile file to read and write the configuration snapshot, or null
+     */
+    MultiXMLArtifactLoader(String root, int threads, File snapshotFile) {
+        this.root = new File(root);
+        this.pool = threads > 1 ? new ForkJoinPool(threads) : null;
+        this.snapshotFile = snapshotFile;
+    }
+
+    /**
+     * Find the artifact files of the given directories of the repository, and start parsing
+     * them in the background if the loader has a pool
+     *
+     * @param directories names of the directories, in the order they will be built
+     */
+    void load(String... directories) {
+        if (snapshotFile != null) {
+            snapshot = ConfigurationSnapshot.load(snapshotFile);
+            phase("snapshot");
+        }
+
+        for (String directory : directories) {
+            List<Artifact> list = new ArrayList<Artifact>();
+            File dir = new File(root, directory);
+            if (dir.exists()) {
+                Iterator files = FileUtils.iterateFiles(dir, extensions, false);
+                while (files.hasNext()) {
+                    list.add(new Artifact(directory, (File) files.next()));
+                }
+            }
+            artifacts.put(directory, list);
+        }
+
+        if (pool != null) {
+            for (List<Artifact> list : artifacts.values()) {
+                for (final Artifact artifact : list) {
+                    artifact.parseTask = pool.submit(new Callable<OMElement>() {
+                        @Override
+                        public OMElement call() throws Exception {
+                            return parse(artifact);
+                        }
+                    });
+                }
+            }
+        }
+    }
+
+    /**
+     * @param directory name of a directory of the repository
+     * @return the artifact files found in the directory, which may still be being parsed
+     */
+    List<Artifact> getArtifacts(String directory) {
+        List<Artifact> list = artifacts.get(directory);
+        return list != null ? list : Collections.<Artifact>emptyList();
+    }
+
+    /**
+     * Build the given artifacts with the given builder. If parallel is true and the loader
+     * has a pool, the artifacts are built concurrently and the first failure, in the order
+     * of the artifacts, is thrown once all of them are done.
+     *
+     * @param list     the artifacts to be built
+     * @param parallel whether the artifacts are independent of each other
+     * @param builder  builds and registers a single artifact
+     */
+    void build(List<Artifact> list, boolean parallel, final ArtifactBuilder builder) {
+        if (pool == null || !parallel || list.size() < 2) {
+            for (Artifact artifact : list) {
+                builder.build(artifact);
+            }
+            return;
+        }
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>(list.size());
+        for (final Artifact artifact : list) {
+            tasks.add(pool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    builder.build(artifact);
+                }
+            }));
+        }
+
+        Throwable failure = null;
+        for (ForkJoinTask<?> task : tasks) {
+            try {
+                task.get();
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SynapseException("Interrupted while building the configuration", e);
+            }
+        }
+
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure != null) {
+            throw new SynapseException("Error while building the configuration", failure);
+        }
+    }
+
+    private OMElement parse(Artifact artifact) {
+        long start = System.nanoTime();
+        try {
+            if (snapshot == null) {
+                return MultiXMLConfigurationBuilder.getOMElement(artifact.file);
+            }
+
+            // the file is checked before it is read, so that a change made while it is being
+            // read is seen at the next start
+            artifact.length = artifact.file.length();
+            artifact.lastModified = artifact.file.lastModified();
+
+            OMElement document = snapshot.getDocument(artifact.path, artifact.length,
+                    artifact.lastModified);
+            if (document != null) {
+                snapshotHits.incrementAndGet();
+            } else {
+                document = MultiXMLConfigurationBuilder.getOMElement(artifact.file);
+            }
+            return document;
+        } finally {
+            parseTime.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Record the time spent since the end of the previous phase against the given phase
+     *
+     * @param name name of the phase which just ended
+     */
+    void phase(String name) {
+        long now = System.currentTimeMillis();
+        timings.put(name, now - phaseStarted);
+        phaseStarted = now;
+    }
+
+    /**
+     * Write the snapshot of the artifacts which were built successfully, if the loader was
+     * given a snapshot file. Failing to write the snapshot is not fatal.
+     * <p/>
+     * Files modified shortly before the snapshot is written are left out of it: they could
+     * still be changed again within the resolution of the file system timestamps without
+     * their size and modification time changing.
+     */
+    void saveSnapshot() {
+        if (snapshotFile == null) {
+            return;
+        }
+
+        long modifiedBefore = System.currentTimeMillis() - TIMESTAMP_RESOLUTION;
+        ConfigurationSnapshot newSnapshot = new ConfigurationSnapshot();
+        for (List<Artifact> list : artifacts.values()) {
+            for (Artifact artifact : list) {
+                if (artifact.built && artifact.document != null && artifact.lastModified > 0 &&
+                        artifact.lastModified < modifiedBefore) {
+                    newSnapshot.addDocument(artifact.path, artifact.length,
+                            artifact.lastModified, artifact.document);
+                }
+            }
+        }
+
+        try {
+            newSnapshot.save(snapshotFile);
+        } catch (Exception e) {
+            log.warn("Error while writing the configuration snapshot to : " +
+                    snapshotFile.getPath(), e);
+        }
+        phase("snapshot");
+    }
+
+    /**
+     * Shut down the pool of the loader
+     */
+    void close() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the time in milliseconds spent in each phase, in the order of the phases
+     */
+    Map<String, Long> getTimings() {
+        return Collections.unmodifiableMap(timings);
+    }
+
+    /**
+     * @return a one line summary of the time spent in loading the configuration
+     */
+    String getSummary() {
+        int count = 0;
+        for (List<Artifact> list : artifacts.values()) {
+            count += list.size();
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("Loaded ").append(count).append(" artifacts in ")
+                .append(System.currentTimeMillis() - started).append(" ms using ")
+                .append(pool != null ? pool.getParallelism() : 1).append(" thread(s)");
+        if (snapshot != null) {
+            sb.append(", ").append(snapshotHits.get()).append(" from the snapshot");
+        }
+        sb.append(" - parsing: ").append(parseTime.get() / 1000000).append(" ms (cumulative)");
+        for (Map.Entry<String, Long> timing : timings.entrySet()) {
+            sb.append(", ").append(timing.getKey()).append(": ")
+                    .append(timing.getValue()).append(" ms");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Builds and registers a single artifact of the configuration
+     */
+    interface ArtifactBuilder {
+        void build(Artifact artifact);
+    }
+
+    /**
+     * An artifact file of the repository
+     */
+    class Artifact {
+
+        private final File file;
+        /** path of the file relative to the root, which identifies it in the snapshot */
+        private final String path;
+        private ForkJoinTask<OMElement> parseTask;
+        private volatile OMElement document;
+        /** size and modification time of the file, read before it is parsed */
+        private volatile long length;
+        private volatile long lastModified;
+        private volatile boolean built;
+
+        Artifact(String directory, File file) {
+            this.file = file;
+            this.path = directory + "/" + file.getName();
+        }
+
+        File getFile() {
+            return file;
+        }
+
+        /**
+         * @return the parsed document of the file, waiting for it to be parsed if required
+         * @throws Exception if the file could not be read or parsed
+         */
+        OMElement getDocument() throws Exception {
+            if (document != null) {
+                return document;
+            }
+            if (parseTask == null) {
+                document = parse(this);
+                return document;
+            }
+
+            try {
+                document = parseTask.get();
+                return document;
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Exception) {
+                    throw (Exception) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw e;
+            }
+        }
+
+        /**
+         * Mark the artifact as built and registered successfully, which makes it eligible for
+         * the next snapshot
+         */
+        void setBuilt() {
+            built = true;
+        }
+    }
+}
@@ -37,7 +37,11 @@ import org.apache.synapse.commons.executors.PriorityExecutor;
 import org.apache.synapse.config.Entry;
 import org.apache.synapse.config.SynapseConfigUtils;
 import org.apache.synapse.config.SynapseConfiguration;
+import org.apache.synapse.config.SynapsePropertiesLoader;
+import org.apache.synapse.config.xml.MultiXMLArtifactLoader.Artifact;
+import org.apache.synapse.config.xml.MultiXMLArtifactLoader.ArtifactBuilder;
 import org.apache.synapse.core.axis2.ProxyService;
+import org.apache.synapse.deployers.SynapseArtifactDeploymentStore;
 import org.apache.synapse.endpoints.Endpoint;
 import org.apache.synapse.eventing.SynapseEventSource;
 import org.apache.synapse.mediators.base.SequenceMediator;
@@ -46,7 +50,7 @@ import org.apache.synapse.rest.API;
 import javax.xml.namespace.QName;
 import javax.xml.stream.XMLStreamException;
 import java.io.*;
-import java.util.Iterator;
+import java.util.List;
 import java.util.Properties;
 
 /**
@@ -74,6 +78,13 @@ import java.util.Properties;
  *  <li>CONFIG_HOME/registry.xml</li>
  * </ul>
  * </p>
+ * <p>
+ * If the {@link #LOADER_THREADS} Synapse property is set to more than one thread, the files
+ * are parsed in parallel using that many threads. The artifacts are built one kind at a time,
+ * so that the artifacts they refer to are in place. When the {@link #SNAPSHOT_FILE} property
+ * is set, a snapshot of the artifacts is kept in that file, and the files whose size and
+ * modification time have not changed since the snapshot was written are not parsed again.
+ * </p>
  *
  */
 public class MultiXMLConfigurationBuilder {
@@ -95,7 +106,10 @@ public class MultiXMLConfigurationBuilder {
 
     public static final String SEPARATE_REGISTRY_DEFINITION = "__separateRegDef";
 
-    private static final String[] extensions = { "xml" };
+    /** Synapse property giving the number of threads to load the artifacts with */
+    public static final String LOADER_THREADS = "synapse.config.loader.threads";
+    /** Synapse property giving the file to keep the configuration snapshot in */
+    public static final String SNAPSHOT_FILE = "synapse.config.snapshot";
 
     private static Log log = LogFactory.getLog(MultiXMLConfigurationBuilder.class);
 
@@ -103,40 +117,93 @@ public class MultiXMLConfigurationBuilder {
 
         log.info("Building synapse configuration from the synapse artifact repository at : " + root);
 
-        // First try to load the configuration from synapse.xml
-        SynapseConfiguration synapseConfig = createConfigurationFromSynapseXML(root, properties);
-        if (synapseConfig == null) {
-            synapseConfig = SynapseConfigUtils.newConfiguration();
-            synapseConfig.setDefaultQName(XMLConfigConstants.DEFINITIONS_ELT);
-        } else if (log.isDebugEnabled()) {
-            log.debug("Found a synapse configuration in the " + SynapseConstants.SYNAPSE_XML
-                    + " file at the artifact repository root, which gets precedence "
-                    + "over other definitions");
+        MultiXMLArtifactLoader loader = new MultiXMLArtifactLoader(root,
+                getLoaderThreads(properties), getSnapshotFile(properties));
+        try {
+            // start parsing the artifacts in the background, in the order they are built
+            loader.load(LOCAL_ENTRY_DIR, ENDPOINTS_DIR, SEQUENCES_DIR, TEMPLATES_DIR,
+                    PROXY_SERVICES_DIR, TASKS_DIR, EVENTS_DIR, EXECUTORS_DIR, MESSAGE_STORE_DIR,
+                    MESSAGE_PROCESSOR_DIR, SYNAPSE_IMPORTS_DIR, REST_API_DIR);
+
+            // First try to load the configuration from synapse.xml
+            SynapseConfiguration synapseConfig = createConfigurationFromSynapseXML(root, properties);
+            if (synapseConfig == null) {
+                synapseConfig = SynapseConfigUtils.newConfiguration();
+                synapseConfig.setDefaultQName(XMLConfigConstants.DEFINITIONS_ELT);
+            } else if (log.isDebugEnabled()) {
+                log.debug("Found a synapse configuration in the " + SynapseConstants.SYNAPSE_XML
+                        + " file at the artifact repository root, which gets precedence "
+                        + "over other definitions");
+            }
+            loader.phase(SynapseConstants.SYNAPSE_XML);
+
+            if (synapseConfig.getRegistry() == null) {
+                // If the synapse.xml does not define a registry look for a registry.xml
+                createRegistry(synapseConfig, root, properties);
+            } else if (log.isDebugEnabled()) {
+                log.debug("Using the registry defined in the " + SynapseConstants.SYNAPSE_XML
+                        + " as the registry, any definitions in the "+ REGISTRY_FILE +
+                        " will be neglected");
+            }
+            loader.phase(REGISTRY_FILE);
+
+            // artifacts of a kind only refer to artifacts of the kinds built before them, so
+            // the kinds are built in this order, and those without side effects on each other
+            // are built in parallel
+            createLocalEntries(synapseConfig, loader, properties);
+            loader.phase(LOCAL_ENTRY_DIR);
+            createEndpoints(synapseConfig, loader, properties);
+            loader.phase(ENDPOINTS_DIR);
+            createSequences(synapseConfig, loader, properties);
+            loader.phase(SEQUENCES_DIR);
+            createTemplates(synapseConfig, loader, properties);
+            loader.phase(TEMPLATES_DIR);
+            createProxyServices(synapseConfig, loader, properties);
+            loader.phase(PROXY_SERVICES_DIR);
+            createTasks(synapseConfig, loader, properties);
+            loader.phase(TASKS_DIR);
+            createEventSources(synapseConfig, loader, properties);
+            loader.phase(EVENTS_DIR);
+            createExecutors(synapseConfig, loader, properties);
+            loader.phase(EXECUTORS_DIR);
+            createMessageStores(synapseConfig, loader, properties);
+            loader.phase(MESSAGE_STORE_DIR);
+            createMessageProcessors(synapseConfig, loader, properties);
+            loader.phase(MESSAGE_PROCESSOR_DIR);
+            createSynapseImports(synapseConfig, loader, properties);
+            loader.phase(SYNAPSE_IMPORTS_DIR);
+            createAPIs(synapseConfig, loader);
+            loader.phase(REST_API_DIR);
+
+            loader.saveSnapshot();
+            log.info(loader.getSummary());
+            return synapseConfig;
+        } finally {
+            loader.close();
         }
+    }
 
-        if (synapseConfig.getRegistry() == null) {
-            // If the synapse.xml does not define a registry look for a registry.xml
-            createRegistry(synapseConfig, root, properties);
-        } else if (log.isDebugEnabled()) {
-            log.debug("Using the registry defined in the " + SynapseConstants.SYNAPSE_XML
-                    + " as the registry, any definitions in the "+ REGISTRY_FILE +
-                    " will be neglected");
+    private static int getLoaderThreads(Properties properties) {
+        String value = getProperty(properties, LOADER_THREADS);
+        if (value == null) {
+            return 1;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            handleException("Invalid value for " + LOADER_THREADS + " : " + value, e);
+            return 1;
         }
+    }
 
-        createLocalEntries(synapseConfig, root, properties);
-        createEndpoints(synapseConfig, root, properties);
-        createSequences(synapseConfig, root, properties);
-        createTemplates(synapseConfig, root, properties);
-        createProxyServices(synapseConfig, root, properties);
-        createTasks(synapseConfig, root, properties);
-        createEventSources(synapseConfig, root, properties);
-        createExecutors(synapseConfig, root, properties);
-        createMessageStores(synapseConfig, root, properties);
-        createMessageProcessors(synapseConfig, root, properties);
-        createSynapseImports(synapseConfig, root, properties);
-        createAPIs(synapseConfig, root);
-
-        return synapseConfig;
+    private static File getSnapshotFile(Properties properties) {
+        String value = getProperty(properties, SNAPSHOT_FILE);
+        return value != null && !"".equals(value.trim()) ? new File(value.trim()) : null;
+    }
+
+    private static String getProperty(Properties properties, String name) {
+        String value = properties != null ? properties.getProperty(name) : null;
+        return value != null ? value : SynapsePropertiesLoader.getPropertyValue(name, null);
     }
 
     private static SynapseConfiguration createConfigurationFromSynapseXML(
@@ -185,22 +252,23 @@ public class MultiXMLConfigurationBuilder {
         }
     }
 
-    private static void createLocalEntries(SynapseConfiguration synapseConfig, String rootDirPath,
-                                           Properties properties) {
+    private static void createLocalEntries(final SynapseConfiguration synapseConfig,
+                                           MultiXMLArtifactLoader loader,
+                                           final Properties properties) {
 
-        File localEntriesDir = new File(rootDirPath, LOCAL_ENTRY_DIR);
-        if (localEntriesDir.exists()) {
-            if (log.isDebugEnabled()) {
-                log.debug("Loading local entry definitions from : " + localEntriesDir.getPath());
-            }
+        List<Artifact> entryDefinitions = loader.getArtifacts(LOCAL_ENTRY_DIR);
+        if (!entryDefinitions.isEmpty() && log.isDebugEnabled()) {
+            log.debug("Loading local entry definitions from : " + LOCAL_ENTRY_DIR);
+        }
 
-            Iterator entryDefinitions = FileUtils.iterateFiles(localEntriesDir, extensions, false);
-            while (entryDefinitions.hasNext()) {
-                File file = (File) entryDefinitions.next();
+        loader.build(entryDefinitions, true, new ArtifactBuilder() {
+            @Override
+            public void build(Artifact artifact) {
+                File file = artifact.getFile();
 
                 OMElement document = null;
                 try {
-                    document = getOMElement(file);
+                    document = artifact.getDocument();
                 } catch (Exception e) {
                     String msg = "Error while building Local Entry from file : " + file.getName();
                     handleConfigurationError(SynapseConstants.FAIL_SAFE_MODE_LOCALENTRIES, msg, e);
@@ -211,30 +279,30 @@ public class MultiXMLConfigurationBuilder {
                                                                              properties);
                     if (entry != null) {
                         entry.setFileName(file.getName());
-                        synapseConfig.getArtifactDeploymentStore().addArtifact(file.getAbsolutePath(),
-                                                                               entry.getKey());
+                        addArtifact(synapseConfig, artifact, entry.getKey());
                     }
                 }
             }
-        }
+        });
     }
 
-    private static void createProxyServices(SynapseConfiguration synapseConfig, String rootDirPath,
-                                            Properties properties) {
+    private static void createProxyServices(final SynapseConfiguration synapseConfig,
+                                            MultiXMLArtifactLoader loader,
+                                            final Properties properties) {
 
-        File proxyServicesDir = new File(rootDirPath, PROXY_SERVICES_DIR);
-        if (proxyServicesDir.exists()) {
-            if (log.isDebugEnabled()) {
-                log.debug("Loading proxy services from : " + proxyServicesDir.getPath());
-            }
+        List<Artifact> proxyDefinitions = loader.getArtifacts(PROXY_SERVICES_DIR);
+        if (!proxyDefinitions.isEmpty() && log.isDebugEnabled()) {
+            log.debug("Loading proxy services from : " + PROXY_SERVICES_DIR);
+        }
 
-            Iterator proxyDefinitions = FileUtils.iterateFiles(proxyServicesDir, extensions, false);
-            while (proxyDefinitions.hasNext()) {
-                File file = (File) proxyDefinitions.next();
+        loader.build(proxyDefinitions, true, new ArtifactBuilder() {
+            @Override
+            public void build(Artifact artifact) {
+                File file = artifact.getFile();
 
                 OMElement document = null;
                 try {
-                    document = getOMElement(file);
+                    document = artifact.getDocument();
                 } catch (Exception e) {
                     String msg = "Error while building Proxy service configuration from file : " + file.getName();
                     handleConfigurationError(SynapseConstants.FAIL_SAFE_MODE_PROXY_SERVICES, msg, e);
@@ -245,30 +313,29 @@ public class MultiXMLConfigurationBuilder {
                                                                                     document, properties);
                     if (proxy != null) {
                         proxy.setFileName(file.getName());
-                        synapseConfig.getArtifactDeploymentStore().addArtifact(
-                                file.getAbsolutePath(), proxy.getName());
+                        addArtifact(synapseConfig, artifact, proxy.getName());
                     }
                 }
             }
-        }
+        });
     }
 
-    private static void createTasks(SynapseConfiguration synapseConfig, String rootDirPath,
-                                    Properties properties) {
+    private static void createTasks(final SynapseConfiguration synapseConfig,
+                                    MultiXMLArtifactLoader loader, final Properties properties) {
 
-        File tasksDir = new File(rootDirPath, TASKS_DIR);
-        if (tasksDir.exists()) {
-            if (log.isDebugEnabled()) {
-                log.debug("Loading tasks from : " + tasksDir.getPath());
-            }
+        List<Artifact> taskDefinitions = loader.getArtifacts(TASKS_DIR);
+        if (!taskDefinitions.isEmpty() && log.isDebugEnabled()) {
+            log.debug("Loading tasks from : " + TASKS_DIR);
+        }
 
-            Iterator taskDefinitions = FileUtils.iterateFiles(tasksDir, extensions, false);
-            while (taskDefinitions.hasNext()) {
-                File file = (File) taskDefinitions.next();
+        loader.build(taskDefinitions, false, new ArtifactBuilder() {
+            @Override
+            public void build(Artifact artifact) {
+                File file = artifact.getFile();
 
                 OMElement document = null;
                 try {
-                    document = getOMElement(file);
+                    document = artifact.getDocument();
                 } catch (Exception e) {
                     String msg = "Error while building Task configuration from file : " + file.getName();
                     handleConfigurationError(SynapseConstants.FAIL_SAFE_MODE_TASKS, msg, e);
@@ -278,29 +345,28 @@ public class MultiXMLConfigurationBuilder {
                     Startup startup = SynapseXMLConfigurationFactory.defineStartup(synapseConfig,
                                                                                    document, properties);
                     startup.setFileName(file.getName());
-                    synapseConfig.getArtifactDeploymentStore().addArtifact(
-                            file.getAbsolutePath(), startup.getName());
+                    addArtifact(synapseConfig, artifact, startup.getName());
                 }
-             }
-        }
+            }
+        });
     }
 
-    private static void createSequences(SynapseConfiguration synapseConfig, String rootDirPath,
-                                        Properties properties) {
+    private static void createSequences(final SynapseConfiguration synapseConfig,
+                                        MultiXMLArtifactLoader loader, final Properties properties) {
 
-        File sequencesDir = new File(rootDirPath, SEQUENCES_DIR);
-        if (sequencesDir.exists()) {
-            if (log.isDebugEnabled()) {
-                log.debug("Loading sequences from : " + sequencesDir.getPath());
-            }
+        List<Artifact> sequences = loader.getArtifacts(SEQUENCES_DIR);
+        if (!sequences.isEmpty() && log.isDebugEnabled()) {
+            log.debug("Loading sequences from : " + SEQUENCES_DIR);
+        }
 
-            Iterator sequences = FileUtils.iterateFiles(sequencesDir, extensions, false);
-            while (sequences.hasNext()) {
-                File file = (File) sequences.next();
+        loader.build(sequences, true, new ArtifactBuilder() {
+            @Override
+            public void build(Artifact artifact) {
+                File file = artifact.getFile();
 
                 OMElement document = null;
                 try {
-                    document = getOMElement(file);
+                    document = artifact.getDocument();
                 } catch (Exception e) {
                     String msg = "Error while building Sequence configuration from file : " + file.getName();
                     handleConfigurationError(SynapseConstants.FAIL_SAFE_MODE_SEQUENCES, msg, e);
@@ -312,29 +378,29 @@ public class MultiXMLConfigurationBuilder {
                     if (seq != null && seq instanceof SequenceMediator) {
                         SequenceMediator sequence = (SequenceMediator) seq;
                         sequence.setFileName(file.getName());
-                        synapseConfig.getArtifactDeploymentStore().addArtifact(
-                                file.getAbsolutePath(), sequence.getName());
+                        addArtifact(synapseConfig, artifact, sequence.getName());
                     }
                 }
-             }
-        }
+            }
+        });
     }
 
-    private static void createTemplates(SynapseConfiguration synapseConfig, String rootDirPath,
-                                        Properties properties) {
+    private static void createTemplates(final SynapseConfiguration synapseConfig,
+                                        MultiXMLArtifactLoader loader, final Properties properties) {
 
-        File templatesDir = new File(rootDirPath, TEMPLATES_DIR);
-        if (templatesDir.exists()) {
-            if (log.isDebugEnabled()) {
-                log.debug("Loading template from : " + templatesDir.getPath());
-            }
-            Iterator templates = FileUtils.iterateFiles(templatesDir, extensions, false);
-            while (templates.hasNext()) {
-                File file = (File) templates.next();
+        List<Artifact> templates = loader.getArtifacts(TEMPLATES_DIR);
+        if (!templates.isEmpty() && log.isDebugEnabled()) {
+            log.debug("Loading template from : " + TEMPLATES_DIR);
+        }
+
+        loader.build(templates, true, new ArtifactBuilder() {
+            @Override
+            public void build(Artifact artifact) {
+                File file = artifact.getFile();
 
                 OMElement document = null;
                 try {
-                    document = getOMElement(file);
+                    document = artifact.getDocument();
                 } catch (Exception e) {
                     String msg = "Error while building Template configuration from file : " + file.getName();
                     handleConfigurationError(SynapseConstants.FAIL_SAFE_MODE_TEMPLATES, msg, e);
@@ -349,8 +415,7 @@ public class MultiXMLConfigurationBuilder {
                                         synapseConfig, document, properties);
                         if (mediator != null) {
                             mediator.setFileName(file.getName());
-                            synapseConfig.getArtifactDeploymentStore().addArtifact(
-                                    file.getAbsolutePath(), mediator.getName());
+                            addArtifact(synapseConfig, artifact, mediator.getName());
                         }
 
                     } else {
@@ -362,32 +427,31 @@ public class MultiXMLConfigurationBuilder {
                                             synapseConfig, document, properties);
                             if (endpointTemplate != null) {
                                 endpointTemplate.setFileName(file.getName());
-                                synapseConfig.getArtifactDeploymentStore().addArtifact(
-                                        file.getAbsolutePath(), endpointTemplate.getName());
+                                addArtifact(synapseConfig, artifact, endpointTemplate.getName());
                             }
                         }
                     }
                 }
             }
-        }
+        });
     }
 
-    private static void createEndpoints(SynapseConfiguration synapseConfig, String rootDirPath,
-                                        Properties properties) {
+    private static void createEndpoints(final SynapseConfiguration synapseConfig,
+                                        MultiXMLArtifactLoader loader, final Properties properties) {
 
-        File endpointsDir = new File(rootDirPath, ENDPOINTS_DIR);
-        if (endpointsDir.exists()) {
-            if (log.isDebugEnabled()) {
-                log.debug("Loading endpoints from : " + endpointsDir.getPath());
-            }
+        List<Artifact> endpoints = loader.getArtifacts(ENDPOINTS_DIR);
+        if (!endpoints.isEmpty() && log.isDebugEnabled()) {
+            log.debug("Loading endpoints from : " + ENDPOINTS_DIR);
+        }
 
-            Iterator endpoints = FileUtils.iterateFiles(endpointsDir, extensions, false);
-            while (endpoints.hasNext()) {
-                File file = (File) endpoints.next();
+        loader.build(endpoints, true, new ArtifactBuilder() {
+            @Override
+            public void build(Artifact artifact) {
+                File file = artifact.getFile();
 
                 OMElement document = null;
                 try {
-                    document = getOMElement(file);
+                    document = artifact.getDocument();
                 } catch (Exception e) {
                     String msg = "Error while building Endpoint configuration from file : " + file.getName();
                     handleConfigurationError(SynapseConstants.FAIL_SAFE_MODE_EP, msg, e);
@@ -398,30 +462,30 @@ public class MultiXMLConfigurationBuilder {
                             synapseConfig, document, properties);
                     if (endpoint != null) {
                         endpoint.setFileName(file.getName());
-                        synapseConfig.getArtifactDeploymentStore().addArtifact(
-                                file.getAbsolutePath(), endpoint.getName());
+                        addArtifact(synapseConfig, artifact, endpoint.getName());
                     }
                 }
             }
-        }
+        });
     }
 
-    private static void createEventSources(SynapseConfiguration synapseConfig, String rootDirPath,
-                                           Properties properties) {
+    private static void createEventSources(final SynapseConfiguration synapseConfig,
+                                           MultiXMLArtifactLoader loader,
+                                           final Properties properties) {
 
-        File eventsDir = new File(rootDirPath, EVENTS_DIR);
-        if (eventsDir.exists()) {
-            if (log.isDebugEnabled()) {
-                log.debug("Loading event sources from : " + eventsDir.getPath());
-            }
+        List<Artifact> events = loader.getArtifacts(EVENTS_DIR);
+        if (!events.isEmpty() && log.isDebugEnabled()) {
+            log.debug("Loading event sources from : " + EVENTS_DIR);
+        }
 
-            Iterator events = FileUtils.iterateFiles(eventsDir, extensions, false);
-            while (events.hasNext()) {
-                File file = (File) events.next();
+        loader.build(events, false, new ArtifactBuilder() {
+            @Override
+            public void build(Artifact artifact) {
+                File file = artifact.getFile();
 
                 OMElement document = null;
                 try {
-                    document = getOMElement(file);
+                    document = artifact.getDocument();
                 } catch (Exception e) {
                     String msg = "Error while building Event Source configuration from file : " + file.getName();
                     handleConfigurationError(SynapseConstants.FAIL_SAFE_MODE_EVENT_SOURCE, msg, e);
@@ -432,30 +496,29 @@ public class MultiXMLConfigurationBuilder {
                             defineEventSource(synapseConfig, document, properties);
                     if (eventSource != null) {
                         eventSource.setFileName(file.getName());
-                        synapseConfig.getArtifactDeploymentStore().addArtifact(
-                                file.getAbsolutePath(), eventSource.getName());
+                        addArtifact(synapseConfig, artifact, eventSource.getName());
                     }
                 }
             }
-        }
+        });
     }
 
-    private static void createExecutors(SynapseConfiguration synapseConfig, String rootDirPath,
-                                        Properties properties) {
+    private static void createExecutors(final SynapseConfiguration synapseConfig,
+                                        MultiXMLArtifactLoader loader, final Properties properties) {
 
-        File executorsDir = new File(rootDirPath, EXECUTORS_DIR);
-        if (executorsDir.exists()) {
-            if (log.isDebugEnabled()) {
-                log.debug("Loading event sources from : " + executorsDir.getPath());
-            }
+        List<Artifact> executors = loader.getArtifacts(EXECUTORS_DIR);
+        if (!executors.isEmpty() && log.isDebugEnabled()) {
+            log.debug("Loading event sources from : " + EXECUTORS_DIR);
+        }
 
-            Iterator executors = FileUtils.iterateFiles(executorsDir, extensions, false);
-            while (executors.hasNext()) {
-                File file = (File) executors.next();
+        loader.build(executors, false, new ArtifactBuilder() {
+            @Override
+            public void build(Artifact artifact) {
+                File file = artifact.getFile();
 
                 OMElement document = null;
                 try {
-                    document = getOMElement(file);
+                    document = artifact.getDocument();
                 } catch (Exception e) {
                     String msg = "Error while building Executor configuration from file : " + file.getName();
                     handleConfigurationError(SynapseConstants.FAIL_SAFE_MODE_EXECUTORS, msg, e);
@@ -466,30 +529,30 @@ public class MultiXMLConfigurationBuilder {
                             defineExecutor(synapseConfig, document, properties);
                     if (executor != null) {
                         executor.setFileName(file.getName());
-                        synapseConfig.getArtifactDeploymentStore().addArtifact(
-                                file.getAbsolutePath(), executor.getName());
+                        addArtifact(synapseConfig, artifact, executor.getName());
                     }
                 }
             }
-        }
+        });
     }
 
-    private static void createMessageStores(SynapseConfiguration synapseConfig ,
-                                            String rootDirPath, Properties properties) {
+    private static void createMessageStores(final SynapseConfiguration synapseConfig,
+                                            MultiXMLArtifactLoader loader,
+                                            final Properties properties) {
 
-        File messageStoresDir = new File(rootDirPath, MESSAGE_STORE_DIR);
-        if (messageStoresDir.exists() ) {
-            if (log.isDebugEnabled()) {
-                log.debug("Loading Message Stores from :" + messageStoresDir.getPath());
-            }
+        List<Artifact> messageStores = loader.getArtifacts(MESSAGE_STORE_DIR);
+        if (!messageStores.isEmpty() && log.isDebugEnabled()) {
+            log.debug("Loading Message Stores from :" + MESSAGE_STORE_DIR);
+        }
 
-            Iterator messageStores = FileUtils.iterateFiles(messageStoresDir, extensions, false);
-            while (messageStores.hasNext()) {
-                File file = (File) messageStores.next();
+        loader.build(messageStores, false, new ArtifactBuilder() {
+            @Override
+            public void build(Artifact artifact) {
+                File file = artifact.getFile();
 
                 OMElement document = null;
                 try {
-                    document = getOMElement(file);
+                    document = artifact.getDocument();
                 } catch (Exception e) {
                     String msg = "Error while building Message Store configuration from file : " + file.getName();
                     handleConfigurationError(SynapseConstants.FAIL_SAFE_MODE_MESSAGE_STORES, msg, e);
@@ -500,30 +563,30 @@ public class MultiXMLConfigurationBuilder {
                             synapseConfig, document, properties);
                     if (messageStore != null) {
                         messageStore.setFileName(file.getName());
-                        synapseConfig.getArtifactDeploymentStore().addArtifact(file.getAbsolutePath(),
-                                                                               messageStore.getName());
+                        addArtifact(synapseConfig, artifact, messageStore.getName());
                     }
                 }
             }
-        }
+        });
     }
 
-    private static void createMessageProcessors(SynapseConfiguration synapseConfig,
-                                            String rootDirPath, Properties properties) {
+    private static void createMessageProcessors(final SynapseConfiguration synapseConfig,
+                                                MultiXMLArtifactLoader loader,
+                                                final Properties properties) {
 
-        File messageProcessorDir = new File(rootDirPath, MESSAGE_PROCESSOR_DIR);
-        if (messageProcessorDir.exists()) {
-            if (log.isDebugEnabled()) {
-                log.debug("Loading Message Processors from :" + messageProcessorDir.getPath());
-            }
+        List<Artifact> messageProcessors = loader.getArtifacts(MESSAGE_PROCESSOR_DIR);
+        if (!messageProcessors.isEmpty() && log.isDebugEnabled()) {
+            log.debug("Loading Message Processors from :" + MESSAGE_PROCESSOR_DIR);
+        }
 
-            Iterator messageProcessors = FileUtils.iterateFiles(messageProcessorDir, extensions, false);
-            while (messageProcessors.hasNext()) {
-                File file = (File) messageProcessors.next();
+        loader.build(messageProcessors, false, new ArtifactBuilder() {
+            @Override
+            public void build(Artifact artifact) {
+                File file = artifact.getFile();
 
                 OMElement document = null;
                 try {
-                    document = getOMElement(file);
+                    document = artifact.getDocument();
                 } catch (Exception e) {
                     String msg = "Error while building Message Processor configuration from file : " + file.getName();
                     handleConfigurationError(SynapseConstants.FAIL_SAFE_MODE_MESSAGE_PROCESSORS, msg, e);
@@ -534,27 +597,30 @@ public class MultiXMLConfigurationBuilder {
                             synapseConfig, document, properties);
                     if (messageProcessor != null) {
                         messageProcessor.setFileName(file.getName());
-                        synapseConfig.getArtifactDeploymentStore().addArtifact(file.getAbsolutePath(),
-                                                                               messageProcessor.getName());
+                        addArtifact(synapseConfig, artifact, messageProcessor.getName());
                     }
                 }
             }
-        }
+        });
     }
 
-    private static void createSynapseImports(SynapseConfiguration synapseConfig, String root, Properties properties) {
-        File synImportsDir = new File(root, SYNAPSE_IMPORTS_DIR);
-        if (synImportsDir.exists()) {
-            if (log.isDebugEnabled()) {
-                log.debug("Loading Synapse Imports from :" + synImportsDir.getPath());
-            }
-            Iterator synImports = FileUtils.iterateFiles(synImportsDir, extensions, false);
-            while (synImports.hasNext()) {
-                File file = (File) synImports.next();
+    private static void createSynapseImports(final SynapseConfiguration synapseConfig,
+                                             MultiXMLArtifactLoader loader,
+                                             final Properties properties) {
+
+        List<Artifact> synImports = loader.getArtifacts(SYNAPSE_IMPORTS_DIR);
+        if (!synImports.isEmpty() && log.isDebugEnabled()) {
+            log.debug("Loading Synapse Imports from :" + SYNAPSE_IMPORTS_DIR);
+        }
+
+        loader.build(synImports, false, new ArtifactBuilder() {
+            @Override
+            public void build(Artifact artifact) {
+                File file = artifact.getFile();
 
                 OMElement document = null;
                 try {
-                    document = getOMElement(file);
+                    document = artifact.getDocument();
                 } catch (Exception e) {
                     String msg = "Error while building Synapse Import configuration from file : " + file.getName();
                     handleConfigurationError(SynapseConstants.FAIL_SAFE_MODE_IMPORTS, msg, e);
@@ -565,30 +631,30 @@ public class MultiXMLConfigurationBuilder {
                             synapseConfig, document, properties);
                     if (synImp != null) {
                         synImp.setFileName(file.getName());
-                        synapseConfig.getArtifactDeploymentStore().addArtifact(file.getAbsolutePath(),
-                                                                               synImp.getName());
+                        addArtifact(synapseConfig, artifact, synImp.getName());
                     }
                 }
             }
-        }
-
+        });
     }
 
-    private static void createAPIs(SynapseConfiguration synapseConfig, String rootDirPath) {
+    private static void createAPIs(final SynapseConfiguration synapseConfig,
+                                   MultiXMLArtifactLoader loader) {
 
-        File apiDir = new File(rootDirPath, REST_API_DIR);
-        if (apiDir.exists()) {
-            if (log.isDebugEnabled()) {
-                log.debug("Loading APIs from :" + apiDir.getPath());
-            }
+        List<Artifact> apis = loader.getArtifacts(REST_API_DIR);
+        if (!apis.isEmpty() && log.isDebugEnabled()) {
+            log.debug("Loading APIs from :" + REST_API_DIR);
+        }
 
-            Iterator apiIterator = FileUtils.iterateFiles(apiDir, extensions, false);
-            while (apiIterator.hasNext()) {
-                File file = (File) apiIterator.next();
+        // APIs are checked against each other for conflicting contexts as they are added
+        loader.build(apis, false, new ArtifactBuilder() {
+            @Override
+            public void build(Artifact artifact) {
+                File file = artifact.getFile();
 
                 OMElement document = null;
                 try {
-                    document = getOMElement(file);
+                    document = artifact.getDocument();
                 } catch (Exception e) {
                     String msg = "Error while building API configuration from file : " + file.getName();
                     handleConfigurationError(SynapseConstants.FAIL_SAFE_MODE_APIS, msg, e);
@@ -598,15 +664,24 @@ public class MultiXMLConfigurationBuilder {
                     API api = SynapseXMLConfigurationFactory.defineAPI(synapseConfig, document);
                     if (api != null) {
                         api.setFileName(file.getName());
-                        synapseConfig.getArtifactDeploymentStore().addArtifact(file.getAbsolutePath(),
-                                                                               api.getName());
+                        addArtifact(synapseConfig, artifact, api.getName());
                     }
                 }
             }
+        });
+    }
+
+    private static void addArtifact(SynapseConfiguration synapseConfig, Artifact artifact,
+                                    String name) {
+        artifact.setBuilt();
+        SynapseArtifactDeploymentStore store = synapseConfig.getArtifactDeploymentStore();
+        // the artifacts of some kinds are built in parallel
+        synchronized (store) {
+            store.addArtifact(artifact.getFile().getAbsolutePath(), name);
         }
     }
 
-    private static OMElement getOMElement(File file) {
+    static OMElement getOMElement(File file) {
         FileInputStream is;
         try {
             is = FileUtils.openInputStream(file);
@@ -49,18 +49,37 @@ public class PayloadFactoryMediatorFactory extends AbstractMediatorFactory {
 
     private static final QName FORMAT_Q = new QName(XMLConfigConstants.SYNAPSE_NAMESPACE, "format");
     private static final QName ARGS_Q = new QName(XMLConfigConstants.SYNAPSE_NAMESPACE, "args");
+    private static final QName ATT_MEDIA_TYPE = new QName("media-type");
 
     @Override
     public Mediator createSpecificMediator(OMElement elem, Properties properties) {
 
         PayloadFactoryMediator payloadFactoryMediator = new PayloadFactoryMediator();
 
+        String mediaType = elem.getAttributeValue(ATT_MEDIA_TYPE);
+        if (mediaType != null) {
+            if (PayloadFactoryMediator.XML_TYPE.equals(mediaType) ||
+                    PayloadFactoryMediator.JSON_TYPE.equals(mediaType)) {
+                payloadFactoryMediator.setMediaType(mediaType);
+            } else {
+                handleException("Unsupported media-type for the payloadFactory mediator: " +
+                        mediaType + ". It must be 'xml' or 'json'");
+            }
+        }
+
         OMElement formatElem = elem.getFirstChildWithName(FORMAT_Q);
 
         if (formatElem != null) {
-            OMElement copy = formatElem.getFirstElement().cloneOMElement();
-            removeIndentations(copy);
-            payloadFactoryMediator.setFormat(copy.toString());
+            if (PayloadFactoryMediator.JSON_TYPE.equals(mediaType)) {
+                payloadFactoryMediator.setFormat(formatElem.getText().trim());
+            } else if (formatElem.getFirstElement() != null) {
+                OMElement copy = formatElem.getFirstElement().cloneOMElement();
+                removeIndentations(copy);
+                payloadFactoryMediator.setFormat(copy.toString());
+            } else {
+                handleException("format element of payloadFactoryMediator must contain the " +
+                        "XML payload");
+            }
         } else {
             handleException("format element of payloadFactoryMediator is required");
         }
@@ -0,0 +1,203 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.continuation;
+
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.mediators.AbstractListMediator;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps track of the list mediators a thread is currently mediating through, together with the
+ * position of the child mediator being invoked in each of them. A mediator which wants to
+ * suspend the mediation of a message captures the frames belonging to that message into a
+ * {@link MediationContinuation}, from which the remaining mediators can later be invoked.
+ * <p>
+ * The frames are held in plain arrays owned by the thread, so that keeping track of the
+ * mediation does not allocate anything on the hot path. They are only kept while at least one
+ * mediator which may suspend a flow is deployed, so that purely blocking configurations do not
+ * pay for the thread local lookup in every list mediator.
+ */
+public final class ContinuationStack {
+
+    private static final int INITIAL_DEPTH = 16;
+
+    /** number of deployed mediators which may suspend a flow */
+    private static final AtomicInteger suspendingMediators = new AtomicInteger();
+
+    private static final ThreadLocal<ContinuationStack> current =
+            new ThreadLocal<ContinuationStack>() {
+                @Override
+                protected ContinuationStack initialValue() {
+                    return new ContinuationStack();
+                }
+            };
+
+    private AbstractListMediator[] mediators = new AbstractListMediator[INITIAL_DEPTH];
+    private MessageContext[] messages = new MessageContext[INITIAL_DEPTH];
+    private int[] positions = new int[INITIAL_DEPTH];
+    /** continuations waiting for the frame at the same depth to be popped */
+    private MediationContinuation[] suspended = new MediationContinuation[INITIAL_DEPTH];
+    private int size = 0;
+
+    private ContinuationStack() {}
+
+    /**
+     * Get the stack of the calling thread
+     *
+     * @return the continuation stack of the current thread
+     */
+    public static ContinuationStack getCurrent() {
+        return current.get();
+    }
+
+    /**
+     * Get the stack of the calling thread, if the frames of list mediators are to be kept
+     *
+     * @return the continuation stack of the current thread, or null if no mediator which may
+     * suspend a flow is deployed
+     */
+    public static ContinuationStack getActive() {
+        return suspendingMediators.get() > 0 ? current.get() : null;
+    }
+
+    /**
+     * Register a mediator which may suspend the flow, to be called when it is initialized,
+     * before any message can reach it
+     */
+    public static void addSuspendingMediator() {
+        suspendingMediators.incrementAndGet();
+    }
+
+    /**
+     * Unregister a mediator registered through {@link #addSuspendingMediator()}, to be called
+     * when it is destroyed
+     */
+    public static void removeSuspendingMediator() {
+        suspendingMediators.decrementAndGet();
+    }
+
+    /**
+     * Push a new frame for the given list mediator
+     *
+     * @param mediator the list mediator starting to mediate its children
+     * @param synCtx the message being mediated
+     * @return the depth of the new frame, to be passed into the other methods
+     */
+    public int push(AbstractListMediator mediator, MessageContext synCtx) {
+        if (size == mediators.length) {
+            int length = size * 2;
+            mediators = Arrays.copyOf(mediators, length);
+            messages = Arrays.copyOf(messages, length);
+            positions = Arrays.copyOf(positions, length);
+            suspended = Arrays.copyOf(suspended, length);
+        }
+        mediators[size] = mediator;
+        messages[size] = synCtx;
+        positions[size] = 0;
+        return size++;
+    }
+
+    /**
+     * Record the index of the child mediator being invoked by the frame at the given depth
+     *
+     * @param frame depth of the frame
+     * @param position index of the child mediator
+     */
+    public void setPosition(int frame, int position) {
+        positions[frame] = position;
+    }
+
+    /**
+     * Pop the frame at the given depth, along with any frame left above it. If a continuation
+     * was captured up to this frame, it is notified that the suspended flow has been unwound.
+     *
+     * @param frame depth of the frame
+     */
+    public void pop(int frame) {
+        if (frame > size) {
+            // the frame was never pushed, as the stack was not active at the time
+            return;
+        }
+        for (int i = frame; i < size; i++) {
+            mediators[i] = null;
+            messages[i] = null;
+        }
+        size = frame;
+
+        MediationContinuation continuation = suspended[frame];
+        if (continuation != null) {
+            suspended[frame] = null;
+            continuation.unwound();
+        }
+    }
+
+    /**
+     * Get the current depth of the stack
+     *
+     * @return the number of frames held
+     */
+    public int getDepth() {
+        return size;
+    }
+
+    /**
+     * Capture the innermost frames belonging to the given message, starting from the top of
+     * the stack. Frames of other messages (e.g. the parent of a cloned message being mediated
+     * on the same thread) stop the capture.
+     *
+     * @param synCtx the message being suspended
+     * @param continuation the continuation to be notified once the captured frames are unwound
+     * @return the captured frames with the innermost first, or null if the message is not
+     * being mediated by a list mediator on this thread
+     */
+    Frame[] capture(MessageContext synCtx, MediationContinuation continuation) {
+        int base = size;
+        while (base > 0 && messages[base - 1] == synCtx) {
+            base--;
+        }
+        if (base == size) {
+            return null;
+        }
+
+        Frame[] frames = new Frame[size - base];
+        for (int i = 0; i < frames.length; i++) {
+            int depth = size - 1 - i;
+            frames[i] = new Frame(mediators[depth], positions[depth]);
+        }
+        suspended[base] = continuation;
+        return frames;
+    }
+
+    /**
+     * A list mediator along with the index of the child mediator it was invoking
+     */
+    static final class Frame {
+
+        final AbstractListMediator mediator;
+        final int position;
+
+        Frame(AbstractListMediator mediator, int position) {
+            this.mediator = mediator;
+            this.position = position;
+        }
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.continuation;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.synapse.FaultHandler;
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.SynapseConstants;
+import org.apache.synapse.SynapseException;
+import org.apache.synapse.mediators.template.TemplateContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Stack;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The remainder of a suspended mediation flow. A mediator which hands a message over to an
+ * asynchronous operation (such as a non-blocking callout) suspends the flow by calling
+ * {@link #suspend(MessageContext, ResponseHandler)} and returning false, which unwinds the
+ * enclosing list mediators without mediating their remaining children. Once the operation
+ * completes, {@link #onResponse(MessageContext)} or {@link #onFault(MessageContext)} resumes
+ * the flow right after the suspending mediator, on the thread delivering the result.
+ * <p>
+ * The fault stack, the template function stack and the tracing state the message had at the
+ * point of suspension are restored before resuming, so that errors raised by the remaining
+ * mediators reach the same fault handlers as in a blocking flow. The flow is never resumed
+ * before the suspending thread has unwound the captured list mediators.
+ */
+public class MediationContinuation {
+
+    private static final Log log = LogFactory.getLog(MediationContinuation.class);
+
+    private final MessageContext synCtx;
+
+    private final ResponseHandler responseHandler;
+
+    private final List<FaultHandler> faultHandlers;
+
+    private final Stack<TemplateContext> functionStack;
+
+    private final int tracingState;
+
+    private ContinuationStack.Frame[] frames;
+
+    /** unwinding of the suspended flow and arrival of the result, in any order */
+    private final AtomicInteger pendingEvents = new AtomicInteger(2);
+
+    /** set once the result has arrived, later results (e.g. a late response) are ignored */
+    private final AtomicBoolean completed = new AtomicBoolean(false);
+
+    private MessageContext result;
+
+    private boolean fault;
+
+    private MediationContinuation(MessageContext synCtx, ResponseHandler responseHandler) {
+        this.synCtx = synCtx;
+        this.responseHandler = responseHandler;
+        this.faultHandlers = new ArrayList<FaultHandler>(synCtx.getFaultStack());
+        this.tracingState = synCtx.getTracingState();
+
+        Stack<TemplateContext> stack = (Stack<TemplateContext>) synCtx.getProperty(
+                SynapseConstants.SYNAPSE__FUNCTION__STACK);
+        if (stack != null) {
+            functionStack = new Stack<TemplateContext>();
+            functionStack.addAll(stack);
+        } else {
+            functionStack = null;
+        }
+    }
+
+    /**
+     * Suspend the mediation of the given message at the calling mediator. The caller must
+     * return false from its mediate method once the asynchronous operation has been started.
+     *
+     * @param synCtx the message being mediated
+     * @param responseHandler applies the result of the asynchronous operation to the message
+     * @return the continuation of the flow, or null if the message is not being mediated
+     * through a list mediator on this thread and hence cannot be suspended
+     */
+    public static MediationContinuation suspend(MessageContext synCtx,
+                                                ResponseHandler responseHandler) {
+        MediationContinuation continuation = new MediationContinuation(synCtx, responseHandler);
+        continuation.frames = ContinuationStack.getCurrent().capture(synCtx, continuation);
+        if (continuation.frames == null) {
+            return null;
+        }
+        synCtx.setProperty(SynapseConstants.MEDIATION_SUSPENDED, Boolean.TRUE);
+        return continuation;
+    }
+
+    /**
+     * Get the fault handler to be pushed into the message carrying the asynchronous operation,
+     * so that a failure of the operation resumes this continuation through
+     * {@link #onFault(MessageContext)}
+     *
+     * @return a fault handler resuming this continuation
+     */
+    public FaultHandler getFaultHandler() {
+        return new ContinuationFaultHandler();
+    }
+
+    /**
+     * Resume the suspended flow with the result of the asynchronous operation
+     *
+     * @param response the message received as the result
+     */
+    public void onResponse(MessageContext response) {
+        if (complete()) {
+            this.result = response;
+            signal();
+        }
+    }
+
+    /**
+     * Resume the suspended flow with the failure of the asynchronous operation
+     *
+     * @param faultCtx the message carrying the error details
+     */
+    public void onFault(MessageContext faultCtx) {
+        if (complete()) {
+            this.result = faultCtx;
+            this.fault = true;
+            signal();
+        }
+    }
+
+    private boolean complete() {
+        if (completed.compareAndSet(false, true)) {
+            return true;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Ignoring a late result for the suspended message : " +
+                    synCtx.getMessageID());
+        }
+        return false;
+    }
+
+    /**
+     * Invoked by the continuation stack once the suspending thread has popped the outermost
+     * frame captured by this continuation
+     */
+    void unwound() {
+        signal();
+    }
+
+    private void signal() {
+        if (pendingEvents.decrementAndGet() == 0) {
+            resume();
+        }
+    }
+
+    private void resume() {
+
+        if (log.isDebugEnabled()) {
+            log.debug("Resuming the mediation of message : " + synCtx.getMessageID() +
+                    " through " + frames.length + " suspended list mediator(s)");
+        }
+
+        synCtx.getPropertyKeySet().remove(SynapseConstants.MEDIATION_SUSPENDED);
+        Stack<FaultHandler> faultStack = synCtx.getFaultStack();
+        faultStack.clear();
+        faultStack.addAll(faultHandlers);
+        if (functionStack != null) {
+            synCtx.setProperty(SynapseConstants.SYNAPSE__FUNCTION__STACK, functionStack);
+        }
+        synCtx.setTracingState(tracingState);
+
+        ContinuationStack stack = ContinuationStack.getCurrent();
+        int base = stack.getDepth();
+        try {
+            // re-create the outer frames first, so that the flow can be suspended again
+            for (int i = frames.length - 1; i > 0; i--) {
+                stack.setPosition(stack.push(frames[i].mediator, synCtx), frames[i].position);
+            }
+
+            if (fault) {
+                responseHandler.onFault(synCtx, result);
+            } else {
+                responseHandler.onResponse(synCtx, result);
+            }
+
+            for (int i = 0; i < frames.length; i++) {
+                if (i > 0) {
+                    // the list mediator pushes its own frame while resuming
+                    stack.pop(base + frames.length - 1 - i);
+                }
+                if (!frames[i].mediator.resume(synCtx, frames[i].position + 1)) {
+                    break;
+                }
+            }
+
+        } catch (SynapseException e) {
+            handleFault(e);
+        } catch (Exception e) {
+            handleFault(new SynapseException("Error while resuming the mediation", e));
+        } finally {
+            if (stack.getDepth() > base) {
+                stack.pop(base);
+            }
+        }
+    }
+
+    private void handleFault(SynapseException e) {
+        Stack<FaultHandler> faultStack = synCtx.getFaultStack();
+        if (!faultStack.isEmpty()) {
+            try {
+                faultStack.pop().handleFault(synCtx, e);
+            } catch (Exception ex) {
+                log.error("Error while handling the fault of a resumed message", ex);
+            }
+        } else {
+            log.error("Synapse encountered an exception, " +
+                    "No error handlers found - [Message Dropped]\n" + e.getMessage());
+        }
+    }
+
+    /**
+     * Applies the result of an asynchronous operation to the suspended message, before the
+     * remaining mediators are invoked. Throwing a {@link SynapseException} hands the message
+     * over to the fault handlers active at the point of suspension.
+     */
+    public interface ResponseHandler {
+
+        /**
+         * Apply a successful result
+         *
+         * @param synCtx the suspended message
+         * @param response the result of the operation
+         */
+        void onResponse(MessageContext synCtx, MessageContext response);
+
+        /**
+         * Apply a failure
+         *
+         * @param synCtx the suspended message
+         * @param faultCtx the message carrying the error details
+         */
+        void onFault(MessageContext synCtx, MessageContext faultCtx);
+    }
+
+    private class ContinuationFaultHandler extends FaultHandler {
+
+        @Override
+        public void onFault(MessageContext faultCtx) {
+            MediationContinuation.this.onFault(faultCtx);
+        }
+    }
+}
@@ -86,6 +86,15 @@ public interface SynapseEnvironment {
      */
     public OverflowBlob createOverflowBlob();
 
+    /**
+     * Creates a new <code>OverflowBlob</code> for temporary data which the caller releases
+     * as soon as it no longer needs the data. Such a blob may take its memory and disk space
+     * from the shared spill area, which only gets the space back when the blob is released.
+     *
+     * @return an OverflowBlob created from the parameters provided in the synapse.properties
+     */
+    public OverflowBlob createScopedOverflowBlob();
+
    /**
      * This method returns the <code>StatisticsCollector</code> responsible for
      * collecting stats for this synapse instance.
@@ -26,6 +26,7 @@ import org.apache.axis2.context.ConfigurationContext;
 import org.apache.axis2.context.OperationContext;
 import org.apache.axis2.context.ServiceContext;
 import org.apache.axis2.description.InOutAxisOperation;
+import org.apache.axis2.util.JavaUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.synapse.Mediator;
@@ -34,6 +35,9 @@ import org.apache.synapse.ServerContextInformation;
 import org.apache.synapse.SynapseConstants;
 import org.apache.synapse.SynapseException;
 import org.apache.synapse.aspects.statistics.StatisticsCollector;
+import org.apache.synapse.commons.jmx.MBeanRegistrar;
+import org.apache.synapse.commons.spill.SpillManager;
+import org.apache.synapse.commons.spill.SpillManagerView;
 import org.apache.synapse.config.SynapseConfiguration;
 import org.apache.synapse.core.SynapseEnvironment;
 import org.apache.synapse.endpoints.EndpointDefinition;
@@ -45,10 +49,12 @@ import org.apache.synapse.rest.RESTRequestHandler;
 import org.apache.synapse.task.SynapseTaskManager;
 import org.apache.synapse.transport.passthru.util.RelayUtils;
 import org.apache.synapse.util.concurrent.SynapseThreadPool;
+import org.apache.synapse.util.concurrent.SynapseThreadPoolView;
 import org.apache.synapse.util.xpath.ext.SynapseXpathFunctionContextProvider;
 import org.apache.synapse.util.xpath.ext.SynapseXpathVariableResolver;
 
 import javax.xml.namespace.QName;
+import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -61,9 +67,15 @@ public class Axis2SynapseEnvironment implements SynapseEnvironment {
 
     private static final Log log = LogFactory.getLog(Axis2SynapseEnvironment.class);
 
+    private static final String THREAD_POOL_CATEGORY = "SynapseThreadPool";
+    private static final String THREAD_POOL_NAME = "SynapseThreadPool";
+    private static final String SPILL_MANAGER_CATEGORY = "SpillManager";
+    private static final String SPILL_MANAGER_NAME = "SpillManager";
+
     private SynapseConfiguration synapseConfig;
     private ConfigurationContext configContext;
     private ExecutorService executorService;
+    private SpillManager spillManager;
     private boolean initialized = false;
     private SynapseTaskManager taskManager;
     private RESTRequestHandler restHandler;
@@ -106,12 +118,42 @@ public class Axis2SynapseEnvironment implements SynapseEnvironment {
             keepAlive = Long.parseLong(synCfg.getProperty(SynapseThreadPool.SYN_THREAD_ALIVE));
         } catch (Exception ignore) {}
 
-        this.executorService = new SynapseThreadPool(coreThreads, maxThreads, keepAlive, qLength,
+        SynapseThreadPool threadPool = new SynapseThreadPool(coreThreads, maxThreads, keepAlive,
+            qLength,
             synCfg.getProperty(SynapseThreadPool.SYN_THREAD_GROUP,
                 SynapseThreadPool.SYNAPSE_THREAD_GROUP),
             synCfg.getProperty(SynapseThreadPool.SYN_THREAD_IDPREFIX,
                 SynapseThreadPool.SYNAPSE_THREAD_ID_PREFIX));
 
+        String rejectionPolicy = synCfg.getProperty(SynapseThreadPool.SYN_THREAD_REJECTION);
+        if (rejectionPolicy != null) {
+            try {
+                threadPool.setRejectionPolicy(rejectionPolicy.trim());
+            } catch (IllegalArgumentException e) {
+                log.warn(e.getMessage() + " - using the default policy : " +
+                    SynapseThreadPool.REJECTION_ABORT);
+            }
+        }
+
+        try {
+            threadPool.setBlockTimeout(Long.parseLong(
+                synCfg.getProperty(SynapseThreadPool.SYN_THREAD_BLOCK_TIMEOUT)));
+        } catch (Exception ignore) {}
+
+        threadPool.setAutoSizing(JavaUtils.isTrueExplicitly(
+            synCfg.getProperty(SynapseThreadPool.SYN_THREAD_AUTOSIZE)));
+
+        try {
+            threadPool.setAutoSizingMinimum(Integer.parseInt(
+                synCfg.getProperty(SynapseThreadPool.SYN_THREAD_AUTOSIZE_MIN)));
+        } catch (Exception ignore) {}
+
+        this.executorService = threadPool;
+
+        if (JavaUtils.isTrueExplicitly(synCfg.getProperty(SynapseConstants.SPILL_ENABLED))) {
+            spillManager = createSpillManager(synCfg);
+        }
+
         taskManager = new SynapseTaskManager();
         restHandler = new RESTRequestHandler();
     }
@@ -370,6 +412,24 @@ public class Axis2SynapseEnvironment implements SynapseEnvironment {
      */
     @Override
     public OverflowBlob createOverflowBlob() {
+        return createOverflowBlob(false);
+    }
+
+    /**
+     * Create a blob which the caller releases once the data is no longer needed. When the
+     * shared spill area is enabled, the blob takes its chunks and spill space from the
+     * {@link SpillManager} of the environment. Blobs which end up in the message, such as
+     * binary content or transformation results, are not released explicitly and are
+     * therefore created by {@link #createOverflowBlob()} instead, outside the spill area.
+     *
+     * @return created blob as per in the synapse.properties file
+     */
+    @Override
+    public OverflowBlob createScopedOverflowBlob() {
+        return createOverflowBlob(true);
+    }
+
+    private OverflowBlob createOverflowBlob(boolean scoped) {
 
         String chkSize = synapseConfig.getProperty(SynapseConstants.CHUNK_SIZE);
         String chunkNumber = synapseConfig.getProperty(SynapseConstants.THRESHOLD_CHUNKS);
@@ -389,9 +449,53 @@ public class Axis2SynapseEnvironment implements SynapseEnvironment {
         String tempSuffix = synapseConfig.getProperty(SynapseConstants.TEMP_FILE_SUFIX,
                 SynapseConstants.DEFAULT_TEMPFILE_SUFIX);
 
+        if (scoped && spillManager != null) {
+            return spillManager.createBlob(numberOfChunks);
+        }
         return new OverflowBlob(numberOfChunks, chunkSize, tempPrefix, tempSuffix);
     }
 
+    /**
+     * Create the spill manager shared by the blobs of this environment, as configured in the
+     * synapse.properties file
+     *
+     * @param synCfg the configuration holding the synapse.properties
+     * @return the spill manager or null if the spill file cannot be created, in which case
+     *  every blob uses its own temporary file
+     */
+    private SpillManager createSpillManager(SynapseConfiguration synCfg) {
+        int chunkSize = SynapseConstants.DEFAULT_CHUNK_SIZE;
+        long memoryQuota = SynapseConstants.DEFAULT_SPILL_MEMORY_QUOTA;
+        long diskQuota = SynapseConstants.DEFAULT_SPILL_DISK_QUOTA;
+        int extentSize = SynapseConstants.DEFAULT_SPILL_EXTENT_SIZE;
+
+        try {
+            chunkSize = Integer.parseInt(synCfg.getProperty(SynapseConstants.CHUNK_SIZE));
+        } catch (Exception ignore) {}
+
+        try {
+            memoryQuota = Long.parseLong(synCfg.getProperty(SynapseConstants.SPILL_MEMORY_QUOTA));
+        } catch (Exception ignore) {}
+
+        try {
+            diskQuota = Long.parseLong(synCfg.getProperty(SynapseConstants.SPILL_DISK_QUOTA));
+        } catch (Exception ignore) {}
+
+        try {
+            extentSize = Integer.parseInt(synCfg.getProperty(SynapseConstants.SPILL_EXTENT_SIZE));
+        } catch (Exception ignore) {}
+
+        String directory = synCfg.getProperty(SynapseConstants.SPILL_DIRECTORY);
+        try {
+            return new SpillManager(directory != null ? new File(directory) : null, chunkSize,
+                memoryQuota * 1024 * 1024, extentSize * 1024, diskQuota * 1024 * 1024);
+        } catch (Exception e) {
+            log.error("Could not create the spill area for temporary data - falling back " +
+                "to a temporary file per message", e);
+            return null;
+        }
+    }
+
     /**
      * This method returns the <code>StatisticsCollector</code> responsible for
      * collecting stats for this synapse instance.
@@ -442,6 +546,32 @@ public class Axis2SynapseEnvironment implements SynapseEnvironment {
      */
     @Override
     public void setInitialized(boolean state) {
+        if (state != initialized && executorService instanceof SynapseThreadPool) {
+            if (state) {
+                MBeanRegistrar.getInstance().registerMBean(
+                    new SynapseThreadPoolView((SynapseThreadPool) executorService),
+                    THREAD_POOL_CATEGORY, THREAD_POOL_NAME);
+            } else {
+                MBeanRegistrar.getInstance().unRegisterMBean(THREAD_POOL_CATEGORY,
+                    THREAD_POOL_NAME);
+            }
+        }
+        if (state != initialized && spillManager != null) {
+            if (state) {
+                MBeanRegistrar.getInstance().registerMBean(new SpillManagerView(spillManager),
+                    SPILL_MANAGER_CATEGORY, SPILL_MANAGER_NAME);
+                if (configContext != null) {
+                    configContext.setProperty(SpillManager.SPILL_MANAGER, spillManager);
+                }
+            } else {
+                if (configContext != null) {
+                    configContext.removeProperty(SpillManager.SPILL_MANAGER);
+                }
+                MBeanRegistrar.getInstance().unRegisterMBean(SPILL_MANAGER_CATEGORY,
+                    SPILL_MANAGER_NAME);
+                spillManager.destroy();
+            }
+        }
         this.initialized = state;
     }
 
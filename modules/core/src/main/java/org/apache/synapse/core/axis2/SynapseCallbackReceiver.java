@@ -43,6 +43,7 @@ import org.apache.synapse.aspects.statistics.StatisticsReporter;
 import org.apache.synapse.commons.jmx.MBeanRegistrar;
 import org.apache.synapse.config.SynapseConfigUtils;
 import org.apache.synapse.config.SynapseConfiguration;
+import org.apache.synapse.continuation.MediationContinuation;
 import org.apache.synapse.endpoints.Endpoint;
 import org.apache.synapse.endpoints.dispatch.Dispatcher;
 import org.apache.synapse.transport.nhttp.NhttpConstants;
@@ -310,6 +311,13 @@ public class SynapseCallbackReceiver implements MessageReceiver {
                     log.warn("Synapse timed out for the request with Message ID : " + messageID +
                             ". Ignoring fault handlers since the timeout action is DISCARD.");
                     faultStack.removeAllElements();
+
+                    // a suspended flow cannot be discarded, as it still holds the client
+                    MediationContinuation continuation = (MediationContinuation)
+                            synapseOutMsgCtx.getProperty(SynapseConstants.MEDIATION_CONTINUATION);
+                    if (continuation != null) {
+                        continuation.onFault(synapseOutMsgCtx);
+                    }
                 } else {
                     ((FaultHandler) faultStack.pop()).handleFault(synapseOutMsgCtx, null);
                 }
@@ -325,6 +333,20 @@ public class SynapseCallbackReceiver implements MessageReceiver {
                 Endpoint successfulEndpoint = (Endpoint) faultStack.pop();
                 successfulEndpoint.onSuccess();
             }
+
+            // a response to a non-blocking callout resumes the suspended mediation flow
+            MediationContinuation continuation = (MediationContinuation) synapseOutMsgCtx
+                    .getProperty(SynapseConstants.MEDIATION_CONTINUATION);
+            if (continuation != null) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Resuming the mediation suspended by the request message : " +
+                            messageID);
+                }
+                continuation.onResponse(new Axis2MessageContext(response,
+                        synapseOutMsgCtx.getConfiguration(), synapseOutMsgCtx.getEnvironment()));
+                return;
+            }
+
             if (log.isDebugEnabled()) {
                 log.debug("Synapse received an asynchronous response message");
                 log.debug("Received To: " +
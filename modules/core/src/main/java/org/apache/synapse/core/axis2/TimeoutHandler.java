@@ -28,11 +28,13 @@ import org.apache.synapse.ServerContextInformation;
 import org.apache.synapse.aspects.statistics.StatisticsCleaner;
 import org.apache.synapse.aspects.statistics.StatisticsCollector;
 import org.apache.synapse.config.SynapseConfigUtils;
+import org.apache.synapse.continuation.MediationContinuation;
 import org.apache.synapse.endpoints.dispatch.SALSessions;
 
 import java.util.Map;
 import java.util.Stack;
 import java.util.TimerTask;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * An object of this class is registered to be invoked in some predefined time intervals. This
@@ -150,6 +152,8 @@ public class TimeoutHandler extends TimerTask {
                                     }
                                 }
 
+                            } else {
+                                resumeSuspendedFlow(callback.getSynapseOutMsgCtx());
                             }
                         }
 
@@ -157,12 +161,51 @@ public class TimeoutHandler extends TimerTask {
                         log.warn("Expiring message ID : " + key + "; dropping message after " +
                                 "global timeout of : " + (globalTimeout / 1000) + " seconds");
                         callbackStore.remove(key);
+                        resumeSuspendedFlow(callback.getSynapseOutMsgCtx());
                     }
                 }
             }
         }
     }
 
+    /**
+     * Resume the flow suspended by a non-blocking callout whose request has expired, with a
+     * timeout fault. Unlike other requests, such a flow cannot simply be discarded, as it still
+     * holds the client. The remaining mediation runs on the Synapse worker pool, so that it
+     * does not hold up the expiry of the other callbacks on the timer thread.
+     *
+     * @param msgContext the request message of the expired callback
+     */
+    private void resumeSuspendedFlow(final MessageContext msgContext) {
+        final MediationContinuation continuation = (MediationContinuation)
+                msgContext.getProperty(SynapseConstants.MEDIATION_CONTINUATION);
+        if (continuation != null) {
+            msgContext.setProperty(SynapseConstants.ERROR_CODE,
+                    SynapseConstants.HANDLER_TIME_OUT);
+            msgContext.setProperty(SynapseConstants.ERROR_MESSAGE, SEND_TIMEOUT_MESSAGE);
+
+            Runnable resume = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        continuation.onFault(msgContext);
+                    } catch (Exception e) {
+                        log.error("Error resuming the expired message ID : " +
+                                msgContext.getMessageID(), e);
+                    }
+                }
+            };
+            try {
+                msgContext.getEnvironment().getExecutorService().execute(resume);
+            } catch (RejectedExecutionException e) {
+                // the suspended flow still holds the client, so it must be resumed regardless
+                log.warn("Unable to hand the expired message ID : " + msgContext.getMessageID() +
+                        " to the worker pool - resuming it on the timer thread");
+                resume.run();
+            }
+        }
+    }
+
     /**
      * Returns the current time.
      *
@@ -0,0 +1,146 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.eventing;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.synapse.endpoints.Endpoint;
+import org.wso2.eventing.Subscription;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded queue of the events pending delivery to a single subscriber. The events are sent by
+ * at most one task at a time, hence a slow event sink only holds back its own events. Once the
+ * queue is full, further events for the subscriber are dropped, without affecting the delivery
+ * to the other subscribers. Dropped events are counted, and reported at most once per interval.
+ */
+class EventDeliveryQueue implements Runnable {
+
+    private static final Log log = LogFactory.getLog(EventDeliveryQueue.class);
+
+    /** maximum number of events sent by a task, before yielding the thread */
+    private static final int MAX_BATCH_SIZE = 64;
+
+    /** minimum interval between two warnings about dropped events */
+    private static final long DROP_WARNING_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    private final Subscription subscription;
+
+    private final String subscriptionId;
+
+    private final Endpoint endpoint;
+
+    private final BlockingQueue<SharedEventPayload> events;
+
+    private final Executor executor;
+
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    private final AtomicLong droppedEvents = new AtomicLong();
+
+    private final AtomicLong lastDropWarning = new AtomicLong();
+
+    EventDeliveryQueue(Subscription subscription, Endpoint endpoint, int capacity,
+                       Executor executor) {
+        this.subscription = subscription;
+        this.subscriptionId = subscription.getId();
+        this.endpoint = endpoint;
+        this.events = new ArrayBlockingQueue<SharedEventPayload>(capacity);
+        this.executor = executor;
+    }
+
+    /**
+     * Queue an event for the delivery to the subscriber
+     *
+     * @param event the event to be delivered
+     * @return false if the event was dropped as the queue is full
+     */
+    boolean offer(SharedEventPayload event) {
+        if (!events.offer(event)) {
+            long dropped = droppedEvents.incrementAndGet();
+            long now = System.currentTimeMillis();
+            long last = lastDropWarning.get();
+            if (now - last >= DROP_WARNING_INTERVAL && lastDropWarning.compareAndSet(last, now)) {
+                log.warn("Delivery queue of the subscription : " + subscriptionId + " is full, " +
+                        "dropping events. Total events dropped : " + dropped);
+            }
+            return false;
+        }
+        schedule();
+        return true;
+    }
+
+    /**
+     * @return the subscription this queue delivers the events of
+     */
+    Subscription getSubscription() {
+        return subscription;
+    }
+
+    long getDroppedEventCount() {
+        return droppedEvents.get();
+    }
+
+    int size() {
+        return events.size();
+    }
+
+    @Override
+    public void run() {
+        try {
+            for (int i = 0; i < MAX_BATCH_SIZE; i++) {
+                SharedEventPayload event = events.poll();
+                if (event == null) {
+                    break;
+                }
+                try {
+                    endpoint.send(event.createMessage());
+                } catch (Exception e) {
+                    log.error("Event sending failure for the subscription : " + subscriptionId, e);
+                }
+            }
+        } finally {
+            scheduled.set(false);
+            if (!events.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                // the pending events are sent along with the next event of the subscriber
+                scheduled.set(false);
+                log.warn("Unable to schedule the delivery of events for the subscription : " +
+                        subscriptionId + ". " + events.size() + " events pending");
+            }
+        }
+    }
+}
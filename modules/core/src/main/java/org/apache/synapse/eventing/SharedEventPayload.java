@@ -0,0 +1,131 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.eventing;
+
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.OMFactory;
+import org.apache.axiom.om.OMNamespace;
+import org.apache.axiom.om.ds.ByteArrayDataSource;
+import org.apache.axiom.soap.SOAPBody;
+import org.apache.axis2.AxisFault;
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.SynapseConstants;
+import org.apache.synapse.core.axis2.Axis2MessageContext;
+import org.apache.synapse.transport.passthru.PassThroughConstants;
+import org.apache.synapse.util.MessageHelper;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * An event prepared once for the delivery to any number of subscribers. The payload of the
+ * event is serialized into immutable buffers, which are shared by the messages created for each
+ * subscriber through data source backed elements. The transports write these buffers out as
+ * they are, hence the payload is neither cloned nor parsed again per subscriber; only the
+ * envelope without the payload is cloned.
+ * <p>
+ * Events carrying attachments (MTOM or SwA) are cloned as a whole for each subscriber, since
+ * serializing their payload would inline the attachments.
+ */
+class SharedEventPayload {
+
+    private static final String ENCODING = "UTF-8";
+
+    /** the event message, without the payload if the payload is shared */
+    private final MessageContext template;
+
+    private final List<SharedElement> payload = new ArrayList<SharedElement>();
+
+    private final boolean shared;
+
+    /**
+     * Prepare the given event for dispatching. The message context is owned by this instance
+     * from now on and must not be changed or sent by the caller.
+     *
+     * @param event a private copy of the event message
+     * @throws AxisFault if the payload cannot be serialized
+     */
+    SharedEventPayload(MessageContext event) throws AxisFault {
+        org.apache.axis2.context.MessageContext axis2MsgCtx =
+                ((Axis2MessageContext) event).getAxis2MessageContext();
+
+        // one way delivery for events
+        event.setProperty(SynapseConstants.OUT_ONLY, "true");
+        // the message has been built, hence the new messages do not need pipes of their own
+        axis2MsgCtx.removeProperty(PassThroughConstants.PASS_THROUGH_PIPE);
+
+        SOAPBody body = event.getEnvelope().getBody();
+        shared = !axis2MsgCtx.isDoingMTOM() && !axis2MsgCtx.isDoingSwA();
+        if (shared) {
+            try {
+                Iterator children = body.getChildElements();
+                while (children.hasNext()) {
+                    OMElement element = (OMElement) children.next();
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    element.serialize(out);
+                    payload.add(new SharedElement(element.getLocalName(),
+                            element.getNamespace(), out.toByteArray()));
+                }
+            } catch (XMLStreamException e) {
+                throw new AxisFault("Error while serializing the event payload", e);
+            }
+            body.removeChildren();
+        } else {
+            event.getEnvelope().build();
+        }
+        this.template = event;
+    }
+
+    /**
+     * Create a new message for the delivery of this event to a subscriber
+     *
+     * @return a message which can be sent and modified independently
+     * @throws AxisFault if the message cannot be created
+     */
+    MessageContext createMessage() throws AxisFault {
+        MessageContext message = MessageHelper.cloneMessageContext(template);
+        if (shared) {
+            SOAPBody body = message.getEnvelope().getBody();
+            OMFactory factory = body.getOMFactory();
+            for (SharedElement element : payload) {
+                body.addChild(factory.createOMElement(
+                        new ByteArrayDataSource(element.bytes, ENCODING),
+                        element.localName, element.namespace));
+            }
+        }
+        return message;
+    }
+
+    private static class SharedElement {
+
+        private final String localName;
+        private final OMNamespace namespace;
+        private final byte[] bytes;
+
+        private SharedElement(String localName, OMNamespace namespace, byte[] bytes) {
+            this.localName = localName;
+            this.namespace = namespace;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -36,6 +36,7 @@ import org.apache.synapse.endpoints.Endpoint;
 import org.apache.synapse.endpoints.AddressEndpoint;
 import org.apache.synapse.endpoints.EndpointDefinition;
 import org.apache.synapse.config.SynapseConfiguration;
+import org.apache.synapse.config.SynapsePropertiesLoader;
 import org.apache.synapse.core.SynapseEnvironment;
 import org.apache.synapse.core.axis2.Axis2MessageContext;
 import org.apache.synapse.core.axis2.SynapseMessageReceiver;
@@ -52,6 +53,10 @@ import javax.xml.namespace.QName;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Eventsource that accepts the event requests using a message receiver.
@@ -71,9 +76,35 @@ public class SynapseEventSource extends SynapseMessageReceiver {
     /* Contains properties used in the configuration and possess confidential information such as
      encrypted passwords  */
     private Map<String, String> configurationProperties = new HashMap<String, String>();
+    /* Interval between two sweeps of the delivery queues of expired subscriptions */
+    private static final long SWEEP_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+    /* Events pending delivery, per subscription ID. A queue is replaced when the ID is
+     subscribed again with another endpoint */
+    private final ConcurrentMap<String, EventDeliveryQueue> deliveryQueues =
+            new ConcurrentHashMap<String, EventDeliveryQueue>();
+    private final AtomicLong nextSweep = new AtomicLong();
+    private int deliveryQueueSize;
 
     public SynapseEventSource(String name) {
         this.name = name;
+        this.deliveryQueueSize = getDefaultDeliveryQueueSize();
+    }
+
+    private static int getDefaultDeliveryQueueSize() {
+        String value = SynapsePropertiesLoader.getPropertyValue(
+                SynapseEventingConstants.DELIVERY_QUEUE_SIZE, null);
+        if (value != null) {
+            try {
+                int size = Integer.parseInt(value.trim());
+                if (size > 0) {
+                    return size;
+                }
+            } catch (NumberFormatException ignore) {}
+            log.warn("Invalid value : " + value + " for the property : " +
+                    SynapseEventingConstants.DELIVERY_QUEUE_SIZE + ", using the default : " +
+                    SynapseEventingConstants.DEFAULT_DELIVERY_QUEUE_SIZE);
+        }
+        return SynapseEventingConstants.DEFAULT_DELIVERY_QUEUE_SIZE;
     }
 
     public String getName() {
@@ -92,6 +123,14 @@ public class SynapseEventSource extends SynapseMessageReceiver {
         this.subscriptionManager = subscriptionManager;
     }
 
+    public int getDeliveryQueueSize() {
+        return deliveryQueueSize;
+    }
+
+    public void setDeliveryQueueSize(int deliveryQueueSize) {
+        this.deliveryQueueSize = deliveryQueueSize;
+    }
+
     public String getFileName() {
         return fileName;
     }
@@ -186,16 +225,23 @@ public class SynapseEventSource extends SynapseMessageReceiver {
      * @param msgCtx message context
      */
     public void dispatchEvents(org.apache.synapse.MessageContext msgCtx) {
-
-        List<Subscription> subscribers = null;
+        // take a private copy of the event, as the mediation of the message may continue
+        org.apache.synapse.MessageContext event;
+        try {
+            event = MessageHelper.cloneMessageContext(msgCtx);
+        } catch (AxisFault axisFault) {
+            log.error("Error while copying the event for dispatching", axisFault);
+            return;
+        }
 
         // Call event dispatcher
         msgCtx.getEnvironment().getExecutorService()
-                .execute(new EventDispatcher(msgCtx));
+                .execute(new EventDispatcher(event));
     }
 
     /**
-     * Dispatching events async on a different thread
+     * Dispatching events async on a different thread. The event is prepared for delivery only
+     * once and queued for each of the matching subscribers.
      */
     class EventDispatcher implements Runnable {
         private org.apache.synapse.MessageContext synCtx;
@@ -215,20 +261,127 @@ public class SynapseEventSource extends SynapseMessageReceiver {
                 handleException("Matching subscriptions fetching error", e);
             }
 
+            if (subscriptions.isEmpty()) {
+                return;
+            }
+
+            SharedEventPayload payload;
+            try {
+                payload = new SharedEventPayload(synCtx);
+            } catch (AxisFault axisFault) {
+                log.error("Error while preparing the event for dispatching", axisFault);
+                return;
+            }
+
             for (Subscription subscription : subscriptions) {
-                synCtx.setProperty(SynapseConstants.OUT_ONLY,
-                        "true");    // Set one way message for events
-                try {
-                    getEndpointFromURL(subscription.getEndpointUrl(), synCtx.getEnvironment())
-                            .send(MessageHelper.cloneMessageContext(synCtx));
-                } catch (AxisFault axisFault) {
-                    log.error("Event sending failure " + axisFault.toString());
-                }
+                getDeliveryQueue(subscription, synCtx.getEnvironment()).offer(payload);
                 if (log.isDebugEnabled()) {
                     log.debug("Event push to  : " + subscription.getEndpointUrl());
                 }
             }
+
+            sweepDeliveryQueues();
+        }
+    }
+
+    /**
+     * Get the delivery queue of a subscription, creating it along with the endpoint of the
+     * subscriber on the first event
+     *
+     * @param subscription the subscription
+     * @param se           synapse environment
+     * @return the delivery queue of the subscription
+     */
+    private EventDeliveryQueue getDeliveryQueue(Subscription subscription, SynapseEnvironment se) {
+        String id = subscription.getId();
+        EventDeliveryQueue queue = deliveryQueues.get(id);
+        if (queue != null && isSameSubscriber(queue, subscription)) {
+            return queue;
+        }
+
+        // first event of the subscription, or the ID now delivers to another endpoint
+        EventDeliveryQueue newQueue = new EventDeliveryQueue(subscription,
+                getEndpointFromURL(subscription.getEndpointUrl(), se),
+                deliveryQueueSize, se.getExecutorService());
+        while (true) {
+            if (queue == null) {
+                queue = deliveryQueues.putIfAbsent(id, newQueue);
+                if (queue == null) {
+                    break;
+                }
+            } else if (isSameSubscriber(queue, subscription)) {
+                // created by a concurrent dispatcher
+                return queue;
+            } else if (deliveryQueues.replace(id, queue, newQueue)) {
+                break;
+            } else {
+                queue = deliveryQueues.get(id);
+            }
+        }
+
+        // the subscription may have been removed since it was matched, in which case the
+        // queue is dropped once the event is delivered, instead of being left behind
+        if (!isActive(subscription, System.currentTimeMillis())) {
+            deliveryQueues.remove(id, newQueue);
+        }
+        return newQueue;
+    }
+
+    /**
+     * Check whether a delivery queue can carry the events of a subscription. Subscription
+     * managers other than the in-memory one return a new subscription object on every lookup,
+     * so the queue is matched on the endpoint of the subscriber rather than on the object.
+     *
+     * @param queue        the delivery queue registered for the ID of the subscription
+     * @param subscription the subscription matched by the event
+     * @return true if the queue delivers to the endpoint of the subscription
+     */
+    private boolean isSameSubscriber(EventDeliveryQueue queue, Subscription subscription) {
+        String endpointUrl = queue.getSubscription().getEndpointUrl();
+        return endpointUrl == null ? subscription.getEndpointUrl() == null :
+                endpointUrl.equals(subscription.getEndpointUrl());
+    }
+
+    /**
+     * Remove the delivery queues of subscriptions which have expired or have been removed
+     * from the subscription manager, at most once per sweep interval. The events already
+     * queued are still delivered.
+     */
+    private void sweepDeliveryQueues() {
+        long now = System.currentTimeMillis();
+        long next = nextSweep.get();
+        if (now < next || !nextSweep.compareAndSet(next, now + SWEEP_INTERVAL)) {
+            return;
+        }
+        for (Map.Entry<String, EventDeliveryQueue> entry : deliveryQueues.entrySet()) {
+            if (!isActive(entry.getValue().getSubscription(), now)) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Removing the delivery queue of the subscription : " +
+                            entry.getKey());
+                }
+                deliveryQueues.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Check whether a subscription is still held by the subscription manager and has not
+     * expired. The expiry is taken from the subscription held by the manager, so that a
+     * renewal is seen even if the given object was looked up before it.
+     *
+     * @param subscription the subscription
+     * @param now          the current time
+     * @return true if events may still be delivered for the subscription
+     */
+    private boolean isActive(Subscription subscription, long now) {
+        Subscription current = subscription;
+        try {
+            current = subscriptionManager.getSubscription(subscription.getId());
+        } catch (Exception e) {
+            log.debug("Unable to look up the subscription : " + subscription.getId(), e);
         }
+        return current != null && (current.getExpires() == null ||
+                current.getExpires().getTimeInMillis() > now);
     }
 
     /**
@@ -301,6 +454,8 @@ public class SynapseEventSource extends SynapseMessageReceiver {
                     subscription.getId());
         }
         if (subscriptionManager.unsubscribe(subscription.getId())) {
+            // the events already queued are still delivered
+            deliveryQueues.remove(subscription.getId());
             //send the response
             if (log.isDebugEnabled()) {
                 log.debug("Sending UnSubscribe responce for SynapseSubscription ID : " +
@@ -28,4 +28,8 @@ public class SynapseEventingConstants {
     public static final String STATIC_ENTRY = "staticEntry";
     public static final String SERVICE_TYPE = "serviceType";
     public static final String EVENTING_ST  = "eventing";
+
+    /** Maximum number of events pending delivery to a single subscriber */
+    public static final String DELIVERY_QUEUE_SIZE = "synapse.eventing.delivery_queue_size";
+    public static final int DEFAULT_DELIVERY_QUEUE_SIZE = 1000;
 }
@@ -64,25 +64,40 @@ public class TopicBasedEventFilter implements EventFilter<MessageContext> {
 
     @Override
     public boolean match(Event<MessageContext> event) {
-        MessageContext messageContext = event.getMessage();
-        String evaluatedValue = null;
+        String evaluatedValue = evaluateTopic(event.getMessage());
+        return evaluatedValue != null && matches(evaluatedValue, resultValue);
+    }
+
+    /**
+     * Evaluate the topic of the given message using the source XPath of this filter
+     *
+     * @param messageContext the event message
+     * @return the topic of the message or null if the message does not carry a topic
+     */
+    public String evaluateTopic(MessageContext messageContext) {
         try {
             OMElement topicNode = (OMElement) sourceXpath.selectSingleNode(
                     messageContext.getEnvelope());
             if (topicNode != null) {
-                evaluatedValue = topicNode.getText();
+                return topicNode.getText();
             }
         } catch (JaxenException e) {
             handleException("Error creating topic xpath",e);
         }
-        if (evaluatedValue != null){
-            if (evaluatedValue.equals(resultValue)) {
-                return true;
-            } else if (evaluatedValue.startsWith((resultValue + FILTER_SEP).trim())) {
-                return true;
-            }
-        }
-        return false;
+        return null;
+    }
+
+    /**
+     * Checks whether a topic matches the given filter value. A filter matches its own topic
+     * and all the sub topics below it.
+     *
+     * @param topic the evaluated topic of an event
+     * @param filterValue the filter value of a subscription
+     * @return true if the topic matches the filter
+     */
+    public static boolean matches(String topic, String filterValue) {
+        return topic.equals(filterValue) ||
+                topic.startsWith((filterValue + FILTER_SEP).trim());
     }
 
     private void handleException(String message, Exception e) {
@@ -41,6 +41,10 @@ public class DefaultInMemorySubscriptionManager implements SubscriptionManager<M
 
     private final Map<String, Subscription> store =
             new ConcurrentHashMap<String, Subscription>();
+    /** Index of the stored subscriptions over their topic filters */
+    private final TopicIndex topicIndex = new TopicIndex();
+    /** Evaluates the topic of the events, once per event */
+    private final TopicBasedEventFilter topicFilter = new TopicBasedEventFilter();
     private String topicHeaderName;
     private String topicHeaderNS;
     private SynapseXPath topicXPath;
@@ -63,15 +67,20 @@ public class DefaultInMemorySubscriptionManager implements SubscriptionManager<M
         if (subscription.getId() == null) {
             subscription.setId(UIDGenerator.generateURNString());
         }
-        store.put(subscription.getId(), subscription);
+        Subscription previous = store.put(subscription.getId(), subscription);
+        if (previous != null) {
+            topicIndex.remove(previous);
+        }
+        topicIndex.add(subscription);
         return subscription.getId();
 
     }
 
   @Override
 public boolean unsubscribe(String id) throws EventException {
-        if (store.containsKey(id)) {
-            store.remove(id);
+        Subscription subscription = store.remove(id);
+        if (subscription != null) {
+            topicIndex.remove(subscription);
             return true;
         } else {
             return false;
@@ -83,6 +92,7 @@ public boolean unsubscribe(String id) throws EventException {
     public boolean renew(Subscription subscription) throws EventException {
         Subscription subscriptionOld = getSubscription(subscription.getId());
         if (subscriptionOld != null) {
+            // only the expiry changes, the subscription stays in place within the index
             subscriptionOld.setExpires(subscription.getExpires());
             return true;
         } else {
@@ -111,29 +121,29 @@ public boolean unsubscribe(String id) throws EventException {
     @Override
     public List<Subscription> getMatchingSubscriptions(Event<MessageContext> event)
             throws EventException {
-        final LinkedList<Subscription> list = new LinkedList<Subscription>();
-        for (Map.Entry<String, Subscription> stringSubscriptionEntry : store.entrySet()) {
-            //TODO : pick the filter based on the dialect
-            //XPathBasedEventFilter filter = new XPathBasedEventFilter();
-            TopicBasedEventFilter filter = new TopicBasedEventFilter();
-            if (filter != null) {
-                filter.setResultValue(stringSubscriptionEntry.getValue().getFilterValue());
-                filter.setSourceXpath(topicXPath);
-                //evaluatedValue = topicXPath.stringValueOf(mc);
-            }
-            if (filter == null || filter.match(event)) {
-                Subscription subscription = stringSubscriptionEntry.getValue();
-                Calendar current = Calendar.getInstance(); //Get current date and time
-                if (subscription.getExpires() != null) {
-                    if (current.before(subscription.getExpires())) {
-                        // add only valid subscriptions by checking the expiration
-                        list.add(subscription);
-                    }
-                } else {
-                    // If a expiration dosen't exisits treat it as a never expire subscription, valid till unsubscribe
+        final List<Subscription> list = new ArrayList<Subscription>();
+        if (store.isEmpty()) {
+            return list;
+        }
+        //TODO : pick the filter based on the dialect
+        String topic = topicFilter.evaluateTopic(event.getMessage());
+        if (topic == null) {
+            return list;
+        }
+
+        List<Subscription> candidates = new ArrayList<Subscription>();
+        topicIndex.collect(topic, candidates);
+
+        Calendar current = Calendar.getInstance(); //Get current date and time
+        for (Subscription subscription : candidates) {
+            if (subscription.getExpires() != null) {
+                if (current.before(subscription.getExpires())) {
+                    // add only valid subscriptions by checking the expiration
                     list.add(subscription);
                 }
-
+            } else {
+                // If a expiration dosen't exisits treat it as a never expire subscription, valid till unsubscribe
+                list.add(subscription);
             }
         }
         return list;
@@ -167,6 +177,7 @@ public boolean unsubscribe(String id) throws EventException {
             topicXPath.addNamespace("s11", "http://schemas.xmlsoap.org/soap/envelope/");
             topicXPath.addNamespace("s12", "http://www.w3.org/2003/05/soap-envelope");
             topicXPath.addNamespace("ns", topicHeaderNS);
+            topicFilter.setSourceXpath(topicXPath);
         } catch (JaxenException e) {
             handleException("Unable to create the topic header XPath", e);
         }
@@ -0,0 +1,184 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.eventing.managers;
+
+import org.apache.synapse.eventing.filters.TopicBasedEventFilter;
+import org.wso2.eventing.Subscription;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of subscriptions over their topic filters. A topic filter matches its own topic and
+ * all the topics below it, hence the subscriptions are kept in a trie of topic segments and the
+ * subscriptions matching a topic are the ones found on the path of its segments. Lookups do not
+ * lock and take time proportional to the depth of the topic, while updates are serialized.
+ * <p>
+ * Filter values which cannot be split into segments with the same semantics (i.e. null values
+ * and values with leading white space) are matched one by one as before.
+ */
+class TopicIndex {
+
+    private static final char SEPARATOR = '/';
+
+    private static final Subscription[] EMPTY = new Subscription[0];
+
+    private final Node root = new Node();
+
+    private final Map<String, Subscription> unindexed =
+            new ConcurrentHashMap<String, Subscription>();
+
+    /**
+     * Add a subscription to the index
+     *
+     * @param subscription the subscription to be added
+     */
+    synchronized void add(Subscription subscription) {
+        String filter = subscription.getFilterValue();
+        if (!isIndexable(filter)) {
+            unindexed.put(subscription.getId(), subscription);
+            return;
+        }
+
+        Node node = root;
+        for (String segment : split(filter)) {
+            Node child = node.children.get(segment);
+            if (child == null) {
+                child = new Node();
+                node.children.put(segment, child);
+            }
+            node = child;
+        }
+        node.add(subscription);
+    }
+
+    /**
+     * Remove a subscription from the index
+     *
+     * @param subscription the subscription to be removed
+     */
+    synchronized void remove(Subscription subscription) {
+        String filter = subscription.getFilterValue();
+        if (!isIndexable(filter)) {
+            unindexed.remove(subscription.getId());
+            return;
+        }
+
+        List<String> segments = split(filter);
+        Node[] path = new Node[segments.size() + 1];
+        path[0] = root;
+        for (int i = 0; i < segments.size(); i++) {
+            path[i + 1] = path[i].children.get(segments.get(i));
+            if (path[i + 1] == null) {
+                return;
+            }
+        }
+        path[segments.size()].remove(subscription.getId());
+
+        // prune the branch of nodes which are left without any subscription
+        for (int i = segments.size(); i > 0 && path[i].isEmpty(); i--) {
+            path[i - 1].children.remove(segments.get(i - 1));
+        }
+    }
+
+    /**
+     * Collect the subscriptions with a filter matching the given topic
+     *
+     * @param topic the topic of an event
+     * @param result the collection to which the matching subscriptions are added
+     */
+    void collect(String topic, Collection<Subscription> result) {
+        Node node = root;
+        int start = 0;
+        while (node != null) {
+            int end = topic.indexOf(SEPARATOR, start);
+            String segment = end < 0 ? topic.substring(start) : topic.substring(start, end);
+            node = node.children.get(segment);
+            if (node != null) {
+                result.addAll(Arrays.asList(node.subscriptions));
+            }
+            if (end < 0) {
+                break;
+            }
+            start = end + 1;
+        }
+
+        for (Subscription subscription : unindexed.values()) {
+            if (TopicBasedEventFilter.matches(topic, subscription.getFilterValue())) {
+                result.add(subscription);
+            }
+        }
+    }
+
+    private static boolean isIndexable(String filter) {
+        return filter != null && (filter.length() == 0 || filter.charAt(0) > ' ');
+    }
+
+    /**
+     * Split a filter into its segments, keeping the empty ones so that joining them back
+     * yields the original value
+     */
+    private static List<String> split(String value) {
+        List<String> segments = new ArrayList<String>();
+        int start = 0;
+        int end;
+        while ((end = value.indexOf(SEPARATOR, start)) >= 0) {
+            segments.add(value.substring(start, end));
+            start = end + 1;
+        }
+        segments.add(value.substring(start));
+        return segments;
+    }
+
+    private static class Node {
+
+        private final Map<String, Node> children = new ConcurrentHashMap<String, Node>(4);
+
+        /** replaced on every update, so that lookups can read it without locking */
+        private volatile Subscription[] subscriptions = EMPTY;
+
+        private void add(Subscription subscription) {
+            Subscription[] current = subscriptions;
+            Subscription[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = subscription;
+            subscriptions = updated;
+        }
+
+        private void remove(String id) {
+            List<Subscription> updated = new ArrayList<Subscription>(Arrays.asList(subscriptions));
+            for (int i = 0; i < updated.size(); i++) {
+                if (id.equals(updated.get(i).getId())) {
+                    updated.remove(i);
+                    break;
+                }
+            }
+            subscriptions = updated.isEmpty() ? EMPTY :
+                    updated.toArray(new Subscription[updated.size()]);
+        }
+
+        private boolean isEmpty() {
+            return subscriptions.length == 0 && children.isEmpty();
+        }
+    }
+}
@@ -20,6 +20,7 @@
 package org.apache.synapse.mediators;
 
 import org.apache.synapse.*;
+import org.apache.synapse.continuation.ContinuationStack;
 import org.apache.synapse.core.SynapseEnvironment;
 import org.apache.synapse.core.axis2.Axis2MessageContext;
 import org.apache.synapse.transport.passthru.util.RelayUtils;
@@ -42,6 +43,25 @@ public abstract class AbstractListMediator extends AbstractMediator
 
     @Override
     public boolean mediate(MessageContext synCtx) {
+        return mediate(synCtx, 0);
+    }
+
+    /**
+     * Continues the mediation of a message which was suspended by one of the child mediators
+     * of this list (for example a non-blocking callout), starting at the given child. Lists
+     * which acquire resources around the mediation of their children (such as the fault
+     * handler of a sequence) should override this method to release them once the remaining
+     * children have been mediated.
+     *
+     * @param synCtx the message being resumed
+     * @param position index of the first child mediator to be invoked
+     * @return as per the {@link Mediator#mediate(MessageContext)} contract
+     */
+    public boolean resume(MessageContext synCtx, int position) {
+        return mediate(synCtx, position);
+    }
+
+    private boolean mediate(MessageContext synCtx, int startPosition) {
 
         int parentsEffectiveTraceState = synCtx.getTracingState();
         // if I have been explicitly asked to enable or disable tracing, set it to the message
@@ -49,6 +69,10 @@ public abstract class AbstractListMediator extends AbstractMediator
         setEffectiveTraceState(synCtx);
         int myEffectiveTraceState = synCtx.getTracingState();
 
+        // record the child being mediated, so that the flow can be resumed from the next one
+        ContinuationStack stack = ContinuationStack.getActive();
+        int frame = stack != null ? stack.push(this, synCtx) : -1;
+
         try {
             SynapseLog synLog = getLog(synCtx);
             if (synLog.isTraceOrDebugEnabled()) {
@@ -63,10 +87,13 @@ public abstract class AbstractListMediator extends AbstractMediator
                 }
             }
 
-            for (Mediator mediator : mediators) {
+            for (int i = startPosition; i < mediators.size(); i++) {
+                if (stack != null) {
+                    stack.setPosition(frame, i);
+                }
                 // ensure correct trace state after each invocation of a mediator
                 synCtx.setTracingState(myEffectiveTraceState);
-                if (!mediator.mediate(synCtx)) {
+                if (!mediators.get(i).mediate(synCtx)) {
                     return false;
                 }
             }
@@ -76,6 +103,9 @@ public abstract class AbstractListMediator extends AbstractMediator
             handleException("Runtime error occurred while mediating the message", e, synCtx);
         } finally {
             synCtx.setTracingState(parentsEffectiveTraceState);
+            if (stack != null) {
+                stack.pop(frame);
+            }
         }
         return true;
     }
@@ -20,6 +20,7 @@
 package org.apache.synapse.mediators;
 
 import org.apache.synapse.*;
+import org.apache.synapse.mediators.base.SequenceMediator;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -60,6 +61,18 @@ public class MediatorWorker implements Runnable {
         seq = synCtx.getMainSequence();
     }
 
+    /**
+     * Name of the sequence executed by this worker, which the thread pool uses to
+     * group its statistics
+     *
+     * @return the sequence name or null if the sequence is anonymous
+     */
+    public String getSequenceName() {
+        Mediator mediator = seq;
+        return mediator instanceof SequenceMediator ?
+                ((SequenceMediator) mediator).getName() : null;
+    }
+
     /**
      * Execution method of the thread. This will just call the mediation of the specified
      * Synapse MessageContext using the specified Sequence Mediator
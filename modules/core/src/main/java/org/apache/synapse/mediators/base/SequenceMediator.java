@@ -116,18 +116,7 @@ public class SequenceMediator extends AbstractListMediator implements Nameable {
 
                 // if we pushed an error handler, pop it from the fault stack
                 // before we exit normally without an exception
-                if (errorHandlerMediator != null) {
-                    Stack faultStack = synCtx.getFaultStack();
-                    if (faultStack != null && !faultStack.isEmpty()) {
-                        Object o = faultStack.peek();
-
-                        if (o instanceof MediatorFaultHandler &&
-                                errorHandlerMediator.equals(
-                                        ((MediatorFaultHandler) o).getFaultMediator())) {
-                            faultStack.pop();
-                        }
-                    }
-                }
+                popErrorHandler(synCtx, errorHandlerMediator);
 
                 if (synLog.isTraceOrDebugEnabled()) {
                     if (synLog.isTraceTraceEnabled()) {
@@ -141,19 +130,7 @@ public class SequenceMediator extends AbstractListMediator implements Nameable {
                 return result;
 
             } finally {
-
-                if (isStatisticsEnable()) {
-                    boolean shouldReport = Boolean.parseBoolean(
-                            String.valueOf(synCtx.getProperty(SynapseConstants.OUT_ONLY)));
-                    if (!shouldReport) {
-                        shouldReport = !(Boolean.parseBoolean(String.valueOf(
-                                synCtx.getProperty(SynapseConstants.SENDING_REQUEST))));
-                    }
-                    if (shouldReport) {
-                        StatisticsReporter.reportForComponent(synCtx,
-                                getAspectConfiguration(), ComponentType.SEQUENCE);
-                    }
-                }
+                reportEnd(synCtx);
             }
 
         } else {
@@ -180,6 +157,77 @@ public class SequenceMediator extends AbstractListMediator implements Nameable {
         return false;
     }
 
+    /**
+     * Resumes a suspended flow within this sequence. The onError handler of the sequence is
+     * already part of the restored fault stack, hence it is only popped once the remaining
+     * mediators complete.
+     *
+     * @param synCtx the message being resumed
+     * @param position index of the first child mediator to be invoked
+     * @return as per the {@link Mediator#mediate(MessageContext)} contract
+     */
+    @Override
+    public boolean resume(MessageContext synCtx, int position) {
+
+        SynapseLog synLog = getLog(synCtx);
+        if (synLog.isTraceOrDebugEnabled()) {
+            synLog.traceOrDebug("Resuming : Sequence <" + (name == null ? "anonymous" : name) +
+                    "> at mediator : " + position);
+        }
+
+        try {
+            boolean result = super.resume(synCtx, position);
+            if (errorHandler != null) {
+                popErrorHandler(synCtx, synCtx.getSequence(errorHandler));
+            }
+
+            if (synLog.isTraceOrDebugEnabled()) {
+                synLog.traceOrDebug("End : Sequence <" + (name == null ? "anonymous" : name) + ">");
+            }
+            return result;
+
+        } finally {
+            reportEnd(synCtx);
+        }
+    }
+
+    /**
+     * Report the end of the sequence to the statistics, unless the flow has been suspended
+     * within the sequence, in which case it is reported once the resumed flow completes
+     *
+     * @param synCtx the message being mediated
+     */
+    private void reportEnd(MessageContext synCtx) {
+        if (isStatisticsEnable() &&
+                synCtx.getProperty(SynapseConstants.MEDIATION_SUSPENDED) == null) {
+            boolean shouldReport = Boolean.parseBoolean(
+                    String.valueOf(synCtx.getProperty(SynapseConstants.OUT_ONLY)));
+            if (!shouldReport) {
+                shouldReport = !(Boolean.parseBoolean(String.valueOf(
+                        synCtx.getProperty(SynapseConstants.SENDING_REQUEST))));
+            }
+            if (shouldReport) {
+                StatisticsReporter.reportForComponent(synCtx,
+                        getAspectConfiguration(), ComponentType.SEQUENCE);
+            }
+        }
+    }
+
+    private void popErrorHandler(MessageContext synCtx, Mediator errorHandlerMediator) {
+        if (errorHandlerMediator != null) {
+            Stack faultStack = synCtx.getFaultStack();
+            if (faultStack != null && !faultStack.isEmpty()) {
+                Object o = faultStack.peek();
+
+                if (o instanceof MediatorFaultHandler &&
+                        errorHandlerMediator.equals(
+                                ((MediatorFaultHandler) o).getFaultMediator())) {
+                    faultStack.pop();
+                }
+            }
+        }
+    }
+
     /**
      * This method will ensure that each and every sequence wil only be initialized atmost once
      * @param se - enviorenment to be initialized
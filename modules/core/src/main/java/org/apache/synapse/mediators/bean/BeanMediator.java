@@ -27,6 +27,8 @@ import org.apache.synapse.mediators.Value;
 
 import java.beans.IntrospectionException;
 import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Method;
 import java.util.Map;
 
 /**
@@ -75,6 +77,18 @@ public class BeanMediator extends AbstractMediator {
      */
     private Class clazz;
 
+    /**
+     * Constructor of the bean class for CREATE action, or null if it has no public no argument
+     * constructor
+     */
+    private MethodHandle constructor;
+
+    /**
+     * Accessor of the property for the class of the last bean manipulated. Beans of a given var
+     * name are usually of the same class, so the accessor is resolved only once.
+     */
+    private volatile BoundProperty boundProperty;
+
     /**
      * Manipulates a JavaBean attached to the current message context according to the supplied
      * semantics.
@@ -147,7 +161,10 @@ public class BeanMediator extends AbstractMediator {
 
         Object instance = null;
         try {
-            instance = clazz.newInstance();
+            if (constructor == null) {
+                throw new SynapseException("No public no argument constructor is found.");
+            }
+            instance = BeanUtils.newInstance(constructor);
         } catch (Exception ex) {
             handleException("An error occurred while instantiating '" + clazz.getName() +
                     "' class.", ex, synCtx);
@@ -187,11 +204,7 @@ public class BeanMediator extends AbstractMediator {
             ((Map) bean).put(propertyName, valueObj);
         } else {
             try {
-                BeanUtils.invokeInstanceMethod(
-                        bean,
-                        new PropertyDescriptor(propertyName, bean.getClass()).getWriteMethod(),
-                        new Object[]{valueObj}
-                );
+                getPropertyAccessor(bean.getClass(), true).invoke(bean, new Object[]{valueObj});
             } catch (IntrospectionException e) {
                 handleException("Could not resolve the setter method for '" + propertyName +
                         "' property in '" + bean.getClass() + "'.", e, synCtx);
@@ -222,11 +235,7 @@ public class BeanMediator extends AbstractMediator {
             value = ((Map) bean).get(propertyName);
         } else {
             try {
-                value = BeanUtils.invokeInstanceMethod(
-                            bean,
-                            new PropertyDescriptor(propertyName, bean.getClass()).getReadMethod(),
-                            new Object[0]
-                        );
+                value = getPropertyAccessor(bean.getClass(), false).invoke(bean, new Object[0]);
             } catch (IntrospectionException e) {
                 handleException("Could not resolve the getter method for '" + propertyName +
                         "' property in '" + bean.getClass() + "'.", e, synCtx);
@@ -245,6 +254,38 @@ public class BeanMediator extends AbstractMediator {
         return true;
     }
 
+    /**
+     * Returns the setter or the getter of the property for the given bean class, resolving it
+     * if the class differs from the one last seen.
+     * @param beanClass Class of the bean
+     * @param write     true for the setter, false for the getter
+     * @return The accessor of the property
+     * @throws IntrospectionException If the property can't be resolved
+     */
+    private BoundMethod getPropertyAccessor(Class beanClass, boolean write)
+            throws IntrospectionException {
+
+        BoundProperty property = boundProperty;
+        if (property == null || property.beanClass != beanClass) {
+            PropertyDescriptor descriptor = new PropertyDescriptor(propertyName, beanClass);
+            Method method = write ? descriptor.getWriteMethod() : descriptor.getReadMethod();
+            property = new BoundProperty(beanClass, new BoundMethod(method));
+            boundProperty = property;
+        }
+        return property.accessor;
+    }
+
+    private static final class BoundProperty {
+
+        private final Class beanClass;
+        private final BoundMethod accessor;
+
+        private BoundProperty(Class beanClass, BoundMethod accessor) {
+            this.beanClass = beanClass;
+            this.accessor = accessor;
+        }
+    }
+
     /**
      * Defines actions performed by Bean mediator.
      */
@@ -276,6 +317,7 @@ public class BeanMediator extends AbstractMediator {
 
     public void setPropertyName(String propertyName) {
         this.propertyName = propertyName;
+        this.boundProperty = null;
     }
 
     public Value getValue() {
@@ -308,5 +350,6 @@ public class BeanMediator extends AbstractMediator {
 
     public void setClazz(Class clazz) {
         this.clazz = clazz;
+        this.constructor = clazz == null ? null : BeanUtils.resolveConstructor(clazz);
     }
 }
@@ -24,6 +24,9 @@ import org.apache.axis2.databinding.typemapping.SimpleTypeMapper;
 import org.apache.synapse.SynapseException;
 
 import javax.xml.stream.XMLStreamException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
@@ -34,6 +37,8 @@ public class BeanUtils {
 
     private BeanUtils() {}
 
+    private static final MethodType NEW_INSTANCE = MethodType.methodType(Object.class);
+
     /**
      * Invokes the given method on the given object via reflection, handles simple type conversion
      * from String to simple types.
@@ -113,4 +118,38 @@ public class BeanUtils {
         return resolvedMethod;
     }
 
+    /**
+     * Resolves the public no argument constructor of the given class into a method handle, which
+     * can be passed to {@link #newInstance(MethodHandle)}.
+     *
+     * @param clazz Class to be instantiated.
+     * @return      The constructor handle, or null if the class can't be instantiated through a
+     * public no argument constructor.
+     */
+    public static MethodHandle resolveConstructor(Class clazz) {
+        try {
+            return MethodHandles.publicLookup().findConstructor(
+                    clazz, MethodType.methodType(void.class)).asType(NEW_INSTANCE);
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Creates a new instance with a constructor resolved by {@link #resolveConstructor(Class)}.
+     *
+     * @param constructor The constructor handle.
+     * @return            The new instance.
+     * @throws SynapseException If the constructor fails.
+     */
+    public static Object newInstance(MethodHandle constructor) throws SynapseException {
+        try {
+            return (Object) constructor.invokeExact();
+        } catch (Throwable t) {
+            throw new SynapseException("Error while invoking the constructor.", t);
+        }
+    }
+
 }
@@ -0,0 +1,123 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.mediators.bean;
+
+import org.apache.axis2.databinding.typemapping.SimpleTypeMapper;
+import org.apache.synapse.SynapseException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+/**
+ * A method resolved once into a method handle, along with the way each of its arguments is to be
+ * converted, so that it can be invoked for every message without reflective lookups or
+ * invocation. Arguments are converted as by
+ * {@link BeanUtils#invokeInstanceMethod(Object, Method, Object[])}.
+ */
+public final class BoundMethod {
+
+    private final Method method;
+
+    /** the method, adapted to take the instance and an array of arguments and return an Object */
+    private final MethodHandle handle;
+
+    private final Class[] paramTypes;
+
+    /** parameter types, with primitive types replaced by their wrappers */
+    private final Class[] wrapperTypes;
+
+    /** whether a String value may be converted to the parameter type */
+    private final boolean[] simpleTypes;
+
+    /**
+     * Resolve the given method
+     *
+     * @param method the method, which must be accessible
+     * @throws SynapseException if the method is not accessible
+     */
+    public BoundMethod(Method method) throws SynapseException {
+        this.method = method;
+
+        paramTypes = method.getParameterTypes();
+        wrapperTypes = new Class[paramTypes.length];
+        simpleTypes = new boolean[paramTypes.length];
+        for (int i = 0; i < paramTypes.length; i++) {
+            wrapperTypes[i] = MethodType.methodType(paramTypes[i]).wrap().returnType();
+            simpleTypes[i] = SimpleTypeMapper.isSimpleType(paramTypes[i]);
+        }
+
+        try {
+            handle = MethodHandles.publicLookup().unreflect(method)
+                    .asType(MethodType.genericMethodType(paramTypes.length + 1))
+                    .asSpreader(Object[].class, paramTypes.length);
+        } catch (IllegalAccessException e) {
+            throw new SynapseException("Method '" + method.getName() + "' of '" +
+                    method.getDeclaringClass().getName() + "' class is not accessible.", e);
+        }
+    }
+
+    /**
+     * Invoke the method on the given instance, converting String values of simple types to the
+     * parameter types as required.
+     *
+     * @param instance Instance to invoke the method on.
+     * @param args     Arguments for the method invocation.
+     * @return         Return value of the method invocation, or null for a void method.
+     * @throws SynapseException If the arguments don't match the method, or the method fails.
+     */
+    public Object invoke(Object instance, Object[] args) throws SynapseException {
+
+        if (paramTypes.length != args.length) {
+            throw new SynapseException("Provided argument count does not match method the " +
+                    "parameter count of method '" + method.getName() + "'. Argument count = " +
+                    args.length + ", method parameter count = " + paramTypes.length + ".");
+        }
+
+        Object[] processedArgs = args;
+        for (int i = 0; i < paramTypes.length; ++i) {
+
+            if (args[i] == null || wrapperTypes[i].isInstance(args[i])) {
+                continue;
+            } else if (simpleTypes[i]) {
+                if (processedArgs == args) {
+                    processedArgs = args.clone();
+                }
+                processedArgs[i] = SimpleTypeMapper.getSimpleTypeObject(
+                        paramTypes[i], args[i].toString());
+            } else {
+                throw new SynapseException("Incompatible argument found in argument " + i +
+                        " for '" + method.getName() + "' method.");
+            }
+        }
+
+        try {
+            return (Object) handle.invokeExact(instance, processedArgs);
+        } catch (Throwable t) {
+            throw new SynapseException("Error while invoking '" + method.getName() + "' method.",
+                    t);
+        }
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+}
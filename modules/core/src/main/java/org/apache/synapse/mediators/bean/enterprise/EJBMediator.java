@@ -28,7 +28,7 @@ import org.apache.synapse.commons.beanstalk.enterprise.EnterpriseBeanstalkManage
 import org.apache.synapse.core.SynapseEnvironment;
 import org.apache.synapse.mediators.AbstractMediator;
 import org.apache.synapse.mediators.Value;
-import org.apache.synapse.mediators.bean.BeanUtils;
+import org.apache.synapse.mediators.bean.BoundMethod;
 import org.apache.synapse.mediators.bean.Target;
 
 import java.lang.reflect.Method;
@@ -87,6 +87,11 @@ public class EJBMediator extends AbstractMediator implements ManagedLifecycle {
      */
     private volatile Method method;
 
+    /**
+     * The resolved method, bound for invocation.
+     */
+    private volatile BoundMethod boundMethod;
+
     /**
      *
      * @param se SynapseEnvironment to be used for initialization
@@ -131,11 +136,13 @@ public class EJBMediator extends AbstractMediator implements ManagedLifecycle {
         }
 
         Object result = null;
-        try {
-            result = BeanUtils.invokeInstanceMethod(ejb, method, buildArguments(synCtx));
-        } catch (SynapseException e) {
-            handleException("Failed to invoke method: " + method + " on EJB object of " +
-                    "type: " + className + ".", e, synCtx);
+        if (boundMethod != null) {
+            try {
+                result = boundMethod.invoke(ejb, buildArguments(synCtx));
+            } catch (SynapseException e) {
+                handleException("Failed to invoke method: " + method + " on EJB object of " +
+                        "type: " + className + ".", e, synCtx);
+            }
         }
 
         if (target != null) {
@@ -201,6 +208,7 @@ public class EJBMediator extends AbstractMediator implements ManagedLifecycle {
 
     public void setMethod(Method method) {
         this.method = method;
+        this.boundMethod = method == null ? null : new BoundMethod(method);
     }
 
     public Target getTarget() {
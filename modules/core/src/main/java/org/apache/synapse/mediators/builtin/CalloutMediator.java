@@ -25,11 +25,14 @@ import org.apache.axiom.soap.SOAPBody;
 import org.apache.axiom.soap.SOAPHeader;
 import org.apache.axis2.AxisFault;
 import org.apache.axis2.Constants;
+import org.apache.axis2.context.OperationContext;
 import org.apache.synapse.ManagedLifecycle;
 import org.apache.synapse.MessageContext;
 import org.apache.synapse.SynapseConstants;
 import org.apache.synapse.SynapseException;
 import org.apache.synapse.SynapseLog;
+import org.apache.synapse.continuation.ContinuationStack;
+import org.apache.synapse.continuation.MediationContinuation;
 import org.apache.synapse.core.SynapseEnvironment;
 import org.apache.synapse.core.axis2.Axis2BlockingClient;
 import org.apache.synapse.core.axis2.Axis2MessageContext;
@@ -39,6 +42,7 @@ import org.apache.synapse.endpoints.DefaultEndpoint;
 import org.apache.synapse.endpoints.Endpoint;
 import org.apache.synapse.endpoints.EndpointDefinition;
 import org.apache.synapse.mediators.AbstractMediator;
+import org.apache.synapse.transport.passthru.util.RelayUtils;
 import org.apache.synapse.util.MessageHelper;
 import org.apache.synapse.util.xpath.SynapseXPath;
 import org.jaxen.JaxenException;
@@ -46,7 +50,7 @@ import org.jaxen.JaxenException;
 import java.util.List;
 
 /**
- * <callout [serviceURL="string"] [action="string"][passHeaders="true|false"] [initAxis2ClientOptions="true|false"]>
+ * <callout [serviceURL="string"] [action="string"][passHeaders="true|false"] [initAxis2ClientOptions="true|false"] [blocking="true|false"]>
  * <configuration [axis2xml="string"] [repository="string"]/>?
  * <endpoint/>?
  * <source xpath="expression" | key="string">? <!-- key can be a MC property or entry key -->
@@ -90,6 +94,9 @@ public class CalloutMediator extends AbstractMediator implements ManagedLifecycl
 
     private Axis2BlockingClient blockingMsgSender = null;
 
+    /** Whether the mediation worker waits for the response, or the flow is suspended */
+    private boolean blocking = true;
+
     @Override
     public boolean mediate(MessageContext synCtx) {
 
@@ -159,6 +166,17 @@ public class CalloutMediator extends AbstractMediator implements ManagedLifecycl
                 }
             }
 
+            if (!blocking) {
+                if ("true".equals(synCtx.getProperty(SynapseConstants.OUT_ONLY))) {
+                    endpoint.send(synapseOutMsgCtx);
+                    synLog.traceOrDebug("End : Callout mediator");
+                    return true;
+                } else if (sendNonBlocking(synCtx, synapseOutMsgCtx)) {
+                    synLog.traceOrDebug("End : Callout mediator - mediation suspended");
+                    return false;
+                }
+            }
+
             MessageContext resultMsgCtx = null;
             try {
                 if ("true".equals(synCtx.getProperty(SynapseConstants.OUT_ONLY))) {
@@ -178,28 +196,7 @@ public class CalloutMediator extends AbstractMediator implements ManagedLifecycl
             }
 
             if (resultMsgCtx != null) {
-                if (targetXPath != null) {
-                    Object o = targetXPath.evaluate(synCtx);
-                    OMElement result = resultMsgCtx.getEnvelope().getBody().getFirstElement();
-                    if (o != null && o instanceof OMElement) {
-                        OMNode tgtNode = (OMElement) o;
-                        tgtNode.insertSiblingAfter(result);
-                        tgtNode.detach();
-                    } else if (o != null && o instanceof List && !((List) o).isEmpty()) {
-                        // Always fetches *only* the first
-                        OMNode tgtNode = (OMElement) ((List) o).get(0);
-                        tgtNode.insertSiblingAfter(result);
-                        tgtNode.detach();
-                    } else {
-                        handleException("Evaluation of target XPath expression : " +
-                                        targetXPath.toString() + " did not yeild an OMNode", synCtx);
-                    }
-                } else if (targetKey != null) {
-                    OMElement result = resultMsgCtx.getEnvelope().getBody().getFirstElement();
-                    synCtx.setProperty(targetKey, result);
-                } else {
-                    synCtx.setEnvelope(resultMsgCtx.getEnvelope());
-                }
+                handleResponse(synCtx, resultMsgCtx);
             } else {
                 synLog.traceOrDebug("Service returned a null response");
             }
@@ -216,6 +213,69 @@ public class CalloutMediator extends AbstractMediator implements ManagedLifecycl
         return true;
     }
 
+    /**
+     * Send the request through the asynchronous sender of the Synapse environment, suspending
+     * the current mediation flow until the response arrives. The response is received by the
+     * SynapseCallbackReceiver, which resumes the flow with the mediator following this one.
+     *
+     * @param synCtx the message being mediated
+     * @param synapseOutMsgCtx the request to be sent out
+     * @return true if the request was sent and the flow suspended, false if the flow cannot be
+     * suspended and the request should be sent with the blocking client instead
+     */
+    private boolean sendNonBlocking(MessageContext synCtx, MessageContext synapseOutMsgCtx) {
+
+        MediationContinuation continuation =
+                MediationContinuation.suspend(synCtx, new CalloutResponseHandler());
+        if (continuation == null) {
+            getLog(synCtx).traceOrDebug("Callout is not mediated within a sequence, " +
+                    "using the blocking client");
+            return false;
+        }
+
+        // failures are reported to the suspended flow, not to the fault handlers of the
+        // request which were cloned from the original message
+        synapseOutMsgCtx.getFaultStack().clear();
+        synapseOutMsgCtx.pushFaultHandler(continuation.getFaultHandler());
+        synapseOutMsgCtx.setProperty(SynapseConstants.MEDIATION_CONTINUATION, continuation);
+
+        // the response to the client is written only once the flow completes
+        OperationContext opCtx =
+                ((Axis2MessageContext) synCtx).getAxis2MessageContext().getOperationContext();
+        if (opCtx != null) {
+            opCtx.setProperty(Constants.RESPONSE_WRITTEN, "SKIP");
+        }
+
+        endpoint.send(synapseOutMsgCtx);
+        return true;
+    }
+
+    private void handleResponse(MessageContext synCtx,
+                                MessageContext resultMsgCtx) throws JaxenException {
+        if (targetXPath != null) {
+            Object o = targetXPath.evaluate(synCtx);
+            OMElement result = resultMsgCtx.getEnvelope().getBody().getFirstElement();
+            if (o != null && o instanceof OMElement) {
+                OMNode tgtNode = (OMElement) o;
+                tgtNode.insertSiblingAfter(result);
+                tgtNode.detach();
+            } else if (o != null && o instanceof List && !((List) o).isEmpty()) {
+                // Always fetches *only* the first
+                OMNode tgtNode = (OMElement) ((List) o).get(0);
+                tgtNode.insertSiblingAfter(result);
+                tgtNode.detach();
+            } else {
+                handleException("Evaluation of target XPath expression : " +
+                                targetXPath.toString() + " did not yeild an OMNode", synCtx);
+            }
+        } else if (targetKey != null) {
+            OMElement result = resultMsgCtx.getEnvelope().getBody().getFirstElement();
+            synCtx.setProperty(targetKey, result);
+        } else {
+            synCtx.setEnvelope(resultMsgCtx.getEnvelope());
+        }
+    }
+
     private void handleFault(MessageContext synCtx, Exception ex) {
         synCtx.setProperty(SynapseConstants.SENDING_FAULT, Boolean.TRUE);
 
@@ -285,6 +345,46 @@ public class CalloutMediator extends AbstractMediator implements ManagedLifecycl
         return null;
     }
 
+    /**
+     * Applies the response of a non-blocking callout to the suspended message
+     */
+    private class CalloutResponseHandler implements MediationContinuation.ResponseHandler {
+
+        @Override
+        public void onResponse(MessageContext synCtx, MessageContext response) {
+            SynapseLog synLog = getLog(synCtx);
+            try {
+                RelayUtils.buildMessage(((Axis2MessageContext) response).getAxis2MessageContext(),
+                        false);
+                if (synLog.isTraceTraceEnabled()) {
+                    synLog.traceTrace("Response payload received : " + response.getEnvelope());
+                }
+                handleResponse(synCtx, response);
+            } catch (JaxenException e) {
+                handleException("Error while evaluating the XPath expression: " + targetXPath,
+                        e, synCtx);
+            } catch (Exception e) {
+                handleException("Error while building the response of service : " + serviceURL,
+                        e, synCtx);
+            }
+        }
+
+        @Override
+        public void onFault(MessageContext synCtx, MessageContext faultCtx) {
+            synCtx.setProperty(SynapseConstants.SENDING_FAULT, Boolean.TRUE);
+            synCtx.setProperty(SynapseConstants.ERROR_CODE,
+                    faultCtx.getProperty(SynapseConstants.ERROR_CODE));
+            synCtx.setProperty(SynapseConstants.ERROR_MESSAGE,
+                    faultCtx.getProperty(SynapseConstants.ERROR_MESSAGE));
+            synCtx.setProperty(SynapseConstants.ERROR_DETAIL,
+                    faultCtx.getProperty(SynapseConstants.ERROR_DETAIL));
+            synCtx.setProperty(SynapseConstants.ERROR_EXCEPTION,
+                    faultCtx.getProperty(SynapseConstants.ERROR_EXCEPTION));
+            throw new SynapseException("Error while performing the callout operation",
+                    (Exception) faultCtx.getProperty(SynapseConstants.ERROR_EXCEPTION));
+        }
+    }
+
     @Override
     public void init(SynapseEnvironment synEnv) {
         blockingMsgSender = new Axis2BlockingClient(clientRepository, axis2xml);
@@ -308,6 +408,13 @@ public class CalloutMediator extends AbstractMediator implements ManagedLifecycl
         } else {
             endpoint.init(synEnv);
         }
+        if (!blocking) {
+            if (isWrappingEndpointCreated) {
+                // the asynchronous sender relies on the endpoint context
+                endpoint.init(synEnv);
+            }
+            ContinuationStack.addSuspendingMediator();
+        }
         // If the endpoint is specified, we'll look it up at mediation time.
 
         if (endpointDefinition != null && isSecurityOn()) {
@@ -327,9 +434,12 @@ public class CalloutMediator extends AbstractMediator implements ManagedLifecycl
 
     @Override
     public void destroy() {
-        if (!isWrappingEndpointCreated) {
+        if (!isWrappingEndpointCreated || !blocking) {
             endpoint.destroy();
         }
+        if (!blocking) {
+            ContinuationStack.removeSuspendingMediator();
+        }
         try {
             blockingMsgSender.cleanup();
         } catch (AxisFault ignore) {}
@@ -407,6 +517,14 @@ public class CalloutMediator extends AbstractMediator implements ManagedLifecycl
         this.passHeaders = passHeaders;
     }
 
+    public boolean isBlocking() {
+        return blocking;
+    }
+
+    public void setBlocking(boolean blocking) {
+        this.blocking = blocking;
+    }
+
     public boolean isInitClientOptions() {
         return initClientOptions;
     }
@@ -23,6 +23,7 @@ import org.apache.axiom.om.OMNode;
 import org.apache.synapse.FaultHandler;
 import org.apache.synapse.MessageContext;
 import org.apache.synapse.SynapseConstants;
+import org.apache.synapse.SynapseException;
 import org.apache.synapse.SynapseLog;
 import org.apache.synapse.config.Entry;
 import org.apache.synapse.config.SynapseConfigUtils;
@@ -48,15 +49,21 @@ import javax.xml.validation.SchemaFactory;
 import javax.xml.validation.Validator;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Validate a message or an element against a schema
  * <p/>
  * This internally uses the Xerces2-j parser, which cautions a lot about thread-safety and
- * memory leaks. Hence this initial implementation will create a single parser instance
- * for each unique mediator instance, and re-use it to validate multiple messages - even
- * concurrently - by synchronizing access
+ * memory leaks. The compiled schema is thread-safe and shared by all the messages. When one
+ * of its registry entries changes, a single task of the Synapse worker pool creates it again,
+ * and messages are validated against the previous schema until the new one is published. The
+ * validators created from it are not thread-safe, so each thread reuses one of its own.
  */
 public class ValidateMediator extends AbstractListMediator {
 
@@ -84,16 +91,22 @@ public class ValidateMediator extends AbstractListMediator {
     private final List<MediatorProperty> explicityFeatures = new ArrayList<MediatorProperty>();
 
     /**
-     * This is the actual schema instance used to create a new schema
-     * This is a thred-safe instance.
+     * The current schema, with the revisions of the schema entries it was created from.
+     * Schema instances are thread-safe, and are replaced as a whole when outdated.
      */
-    private Schema cachedSchema;
+    private final AtomicReference<CachedSchema> cachedSchema =
+            new AtomicReference<CachedSchema>();
 
     /**
-     * Lock used to ensure thread-safe creation and use of the above Validator
+     * Lock used to ensure only one thread at a time creates the schema
      */
     private final Object validatorLock = new Object();
 
+    /**
+     * Whether a task is creating the schema again from changed registry entries
+     */
+    private final AtomicBoolean refreshing = new AtomicBoolean(false);
+
     /**
      * The SchemaFactory used to create new schema instances.
      */
@@ -114,66 +127,22 @@ public class ValidateMediator extends AbstractListMediator {
         // Input source for the validation
         Source validateSrc = getValidationSource(synCtx, synLog);
 
-        // flag to check if we need to initialize/re-initialize the schema
-        boolean reCreate = false;
-        // if any of the schemas are not loaded, or have expired, load or re-load them
-        for (Value schemaKey : schemaKeys) {
-            // Derive actual key from message context
-            String propKey = schemaKey.evaluateValue(synCtx);
-            Entry dp = synCtx.getConfiguration().getEntryDefinition(propKey);
-            if (dp != null && dp.isDynamic()) {
-                if (!dp.isCached() || dp.isExpired()) {
-                    reCreate = true;       // request re-initialization of Validator
-                }
-            }
+        // if the schemas are not loaded, load them. If any of them has changed, keep using
+        // the current schema while it is created again
+        List<String> keys = getSchemaKeys(synCtx);
+        CachedSchema schema = cachedSchema.get();
+        if (schema == null || !schema.keys.equals(keys)) {
+            schema = loadSchema(keys, synCtx);
+        } else if (isOutdated(schema, synCtx.getConfiguration())) {
+            refreshSchema(keys, synCtx);
         }
 
         // This is the reference to the DefaultHandler instance
         ValidateMediatorErrorHandler errorHandler = new ValidateMediatorErrorHandler();
 
-        // do not re-initialize schema unless required
-        synchronized (validatorLock) {
-            if (reCreate || cachedSchema == null) {
-
-                factory.setErrorHandler(errorHandler);
-                StreamSource[] sources = new StreamSource[schemaKeys.size()];
-                int i = 0;
-                for (Value schemaKey : schemaKeys) {
-                    // Derive actual key from message context
-                    String propName = schemaKey.evaluateValue(synCtx);
-                    sources[i++] = SynapseConfigUtils.getStreamSource(synCtx.getEntry(propName));
-                }
-                // load the UserDefined SchemaURIResolver implementations
-                try {
-                    SynapseConfiguration synCfg = synCtx.getConfiguration();
-                    if (synCfg.getProperty(SynapseConstants.SYNAPSE_SCHEMA_RESOLVER) != null) {
-                        setUserDefinedSchemaResourceResolver(synCtx);
-                    } else {
-                        factory.setResourceResolver(
-                                new SchemaResourceResolver(synCtx.getConfiguration(), resourceMap));
-                    }
-                    cachedSchema = factory.newSchema(sources);
-                } catch (SAXException e) {
-                    handleException("Error creating a new schema objects for " +
-                            "schemas : " + schemaKeys.toString(), e, synCtx);
-                } catch (RuntimeException e) {
-                    handleException("Error creating a new schema objects for " +
-                            "schemas : " + schemaKeys.toString(), e, synCtx);
-                }
-
-                if (errorHandler.isValidationError()) {
-                    //reset the errorhandler state
-                    errorHandler.setValidationError(false);
-                    cachedSchema = null;
-                    handleException("Error creating a new schema objects for schemas : "
-                            + schemaKeys.toString(), errorHandler.getSaxParseException(), synCtx);
-                }
-            }
-        }
-
-        // no need to synchronize, schema instances are thread-safe
+        // validators are not thread-safe, so each thread reuses one of its own
+        Validator validator = schema.getValidator();
         try {
-            Validator validator = cachedSchema.newValidator();
             validator.setErrorHandler(errorHandler);
 
             // perform actual validation
@@ -208,9 +177,13 @@ public class ValidateMediator extends AbstractListMediator {
                 return super.mediate(synCtx);
             }
         } catch (SAXException e) {
+            validator.reset();
             handleException("Error validating " + source + " element", e, synCtx);
         } catch (IOException e) {
+            validator.reset();
             handleException("Error validating " + source + " element", e, synCtx);
+        } finally {
+            validator.setErrorHandler(null);
         }
 
         if (synLog.isTraceOrDebugEnabled()) {
@@ -222,6 +195,152 @@ public class ValidateMediator extends AbstractListMediator {
         return true;
     }
 
+    /**
+     * Derive the actual keys of the schemas from the current message
+     *
+     * @param synCtx the current message
+     * @return the keys of the schemas, in the order of the schema key list
+     */
+    private List<String> getSchemaKeys(MessageContext synCtx) {
+        List<String> keys = new ArrayList<String>(schemaKeys.size());
+        for (Value schemaKey : schemaKeys) {
+            keys.add(schemaKey.evaluateValue(synCtx));
+        }
+        return keys;
+    }
+
+    /**
+     * Check whether any of the registry schemas the given schema was created from has been
+     * replaced since. The registry is given the chance to refresh expired schemas.
+     *
+     * @param schema the current schema
+     * @param synCfg the current configuration
+     * @return true if the schema has to be created again
+     */
+    private boolean isOutdated(CachedSchema schema, SynapseConfiguration synCfg) {
+        boolean outdated = false;
+        for (String propKey : schema.keys) {
+            Entry dp = synCfg.getEntryDefinition(propKey);
+            if (dp != null && dp.isDynamic()) {
+                // let the registry load or refresh the schema as needed
+                synCfg.getEntry(propKey);
+                Long revision = schema.revisions.get(propKey);
+                if (revision == null || revision != dp.getRevision()) {
+                    outdated = true;
+                }
+            }
+        }
+        return outdated;
+    }
+
+    /**
+     * Create the schema again on the Synapse worker pool, unless a task is already doing so.
+     * If the schema can't be created from the changed entries, the current one is kept until
+     * they change again, rather than being created again for every message.
+     *
+     * @param keys   the keys of the schemas
+     * @param synCtx the message that found the schema outdated, used to report errors
+     */
+    private void refreshSchema(final List<String> keys, final MessageContext synCtx) {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        Runnable refresh = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    loadSchema(keys, synCtx);
+                } catch (SynapseException e) {
+                    // the error has been logged; don't retry until the entries change
+                    CachedSchema current = cachedSchema.get();
+                    if (current != null && current.keys.equals(keys)) {
+                        cachedSchema.compareAndSet(current, new CachedSchema(current.schema,
+                                keys, getRevisions(keys, synCtx.getConfiguration())));
+                    }
+                } finally {
+                    refreshing.set(false);
+                }
+            }
+        };
+        try {
+            synCtx.getEnvironment().getExecutorService().execute(refresh);
+        } catch (RejectedExecutionException e) {
+            // try again with a later message
+            refreshing.set(false);
+        }
+    }
+
+    private Map<String, Long> getRevisions(List<String> keys, SynapseConfiguration synCfg) {
+        Map<String, Long> revisions = new HashMap<String, Long>();
+        for (String key : keys) {
+            Entry dp = synCfg.getEntryDefinition(key);
+            revisions.put(key, dp != null ? dp.getRevision() : -1);
+        }
+        return revisions;
+    }
+
+    /**
+     * Create the schema from the current schema entries, unless another thread did so in
+     * the meantime, and publish it for the following messages
+     *
+     * @param keys   the keys of the schemas
+     * @param synCtx the current message, used to report errors
+     * @return the current schema
+     */
+    private CachedSchema loadSchema(List<String> keys, MessageContext synCtx) {
+
+        // the factory is not thread-safe, and only one thread needs to create the schema
+        synchronized (validatorLock) {
+            SynapseConfiguration synCfg = synCtx.getConfiguration();
+            CachedSchema current = cachedSchema.get();
+            if (current != null && current.keys.equals(keys) && !isOutdated(current, synCfg)) {
+                return current;
+            }
+
+            ValidateMediatorErrorHandler errorHandler = new ValidateMediatorErrorHandler();
+            factory.setErrorHandler(errorHandler);
+            StreamSource[] sources = new StreamSource[keys.size()];
+            Map<String, Long> revisions = new HashMap<String, Long>();
+            int i = 0;
+            for (String propName : keys) {
+                Entry dp = synCfg.getEntryDefinition(propName);
+                Object schema = synCfg.getEntry(propName);
+                // if the schema has been replaced in the meantime, create it again
+                // for the next message
+                revisions.put(propName, dp != null && dp.getValue() == schema ?
+                        dp.getRevision() : -1);
+                sources[i++] = SynapseConfigUtils.getStreamSource(schema);
+            }
+
+            Schema schema = null;
+            // load the UserDefined SchemaURIResolver implementations
+            try {
+                if (synCfg.getProperty(SynapseConstants.SYNAPSE_SCHEMA_RESOLVER) != null) {
+                    setUserDefinedSchemaResourceResolver(synCtx);
+                } else {
+                    factory.setResourceResolver(
+                            new SchemaResourceResolver(synCfg, resourceMap));
+                }
+                schema = factory.newSchema(sources);
+            } catch (SAXException e) {
+                handleException("Error creating a new schema objects for " +
+                        "schemas : " + schemaKeys.toString(), e, synCtx);
+            } catch (RuntimeException e) {
+                handleException("Error creating a new schema objects for " +
+                        "schemas : " + schemaKeys.toString(), e, synCtx);
+            }
+
+            if (errorHandler.isValidationError()) {
+                handleException("Error creating a new schema objects for schemas : "
+                        + schemaKeys.toString(), errorHandler.getSaxParseException(), synCtx);
+            }
+
+            CachedSchema created = new CachedSchema(schema, keys, revisions);
+            cachedSchema.set(created);
+            return created;
+        }
+    }
+
     /**
      * UserDefined schema resource resolver
      *
@@ -278,6 +397,34 @@ public class ValidateMediator extends AbstractListMediator {
         return null; // never reaches here
     }
 
+    /**
+     * A schema together with the keys and revisions of the registry entries it was created
+     * from. Instances are immutable, and a new one replaces the current one when any of the
+     * entries changes.
+     */
+    private static class CachedSchema {
+
+        private final Schema schema;
+        private final List<String> keys;
+        private final Map<String, Long> revisions;
+        private final ThreadLocal<Validator> validators = new ThreadLocal<Validator>();
+
+        CachedSchema(Schema schema, List<String> keys, Map<String, Long> revisions) {
+            this.schema = schema;
+            this.keys = keys;
+            this.revisions = revisions;
+        }
+
+        Validator getValidator() {
+            Validator validator = validators.get();
+            if (validator == null) {
+                validator = schema.newValidator();
+                validators.set(validator);
+            }
+            return validator;
+        }
+    }
+
     /**
      * This class handles validation errors to be used for the error reporting
      */
@@ -60,6 +60,16 @@ public abstract class AbstractDBMediator extends AbstractMediator implements Man
     /** MBean for DBPool monitoring */
     private DBPoolView dbPoolView;
 
+    /**
+     * Number of mediators using each MBean registered by a mediator, by data source name. The
+     * MBean is shared by the mediators using the same data source and is unregistered when the
+     * last of them is destroyed. Guarded by the {@link DatasourceMBeanRepository} instance.
+     */
+    private static final Map<String, Integer> dbPoolViewReferences = new HashMap<String, Integer>();
+
+    /** Whether this mediator holds a reference to an MBean registered by a mediator */
+    private boolean dbPoolViewRegistered;
+
     /** Statements */
     private final List<Statement> statementList = new ArrayList<Statement>();
 
@@ -88,6 +98,14 @@ public abstract class AbstractDBMediator extends AbstractMediator implements Man
      */
     @Override
     public void destroy() {
+        for (Statement stmnt : statementList) {
+            if (stmnt.getResultCache() != null) {
+                stmnt.getResultCache().clear();
+            }
+        }
+        if (dbPoolViewRegistered) {
+            releaseDbPoolView();
+        }
         if (dataSourceName != null) {
             // Don't touch the globally configured JNDI data sources
             return;
@@ -205,6 +223,75 @@ public abstract class AbstractDBMediator extends AbstractMediator implements Man
         this.dbPoolView = dbPoolView;
     }
 
+    /**
+     * Make sure that the statistics collected by this mediator are exposed over JMX. The MBean
+     * already registered for the data source is used if there is one, otherwise a new one is
+     * registered under the name of the data source. An MBean registered by a mediator is
+     * unregistered when the last mediator using it is destroyed.
+     */
+    protected void registerDbPoolView() {
+        if (dbPoolView != null) {
+            return;
+        }
+        String name = getDSName();
+        if (name == null || "".equals(name)) {
+            return;
+        }
+        DatasourceMBeanRepository repository = DatasourceMBeanRepository.getInstance();
+        synchronized (repository) {
+            Object mBean = repository.getMBean(name);
+            Integer references = dbPoolViewReferences.get(name);
+            if (mBean instanceof DBPoolView) {
+                dbPoolView = (DBPoolView) mBean;
+                if (references == null) {
+                    // registered along with the data source, which owns it
+                    return;
+                }
+            } else {
+                dbPoolView = new DBPoolView(name);
+                repository.addMBean(name, dbPoolView);
+                references = 0;
+            }
+            dbPoolViewReferences.put(name, references + 1);
+            dbPoolViewRegistered = true;
+        }
+    }
+
+    private void releaseDbPoolView() {
+        String name = dbPoolView.getName();
+        DatasourceMBeanRepository repository = DatasourceMBeanRepository.getInstance();
+        synchronized (repository) {
+            Integer references = dbPoolViewReferences.get(name);
+            if (references == null || references <= 1) {
+                dbPoolViewReferences.remove(name);
+                if (repository.getMBean(name) == dbPoolView) {
+                    repository.removeMBean(name);
+                }
+            } else {
+                dbPoolViewReferences.put(name, references - 1);
+            }
+        }
+        dbPoolViewRegistered = false;
+    }
+
+    /**
+     * Evaluate the values of the parameters of the given statement against the current message
+     * @param stmnt SQL statement
+     * @param msgCtx Current message context
+     * @return the values of the parameters, in the order of the parameters
+     */
+    protected List<String> getParameterValues(Statement stmnt, MessageContext msgCtx) {
+        List<String> values = new ArrayList<String>(stmnt.getParameters().size());
+        for (Statement.Parameter param : stmnt.getParameters()) {
+            if (param == null) {
+                continue;
+            }
+            values.add(param.getPropertyName() != null ?
+                    param.getPropertyName() : param.getXpath().stringValueOf(msgCtx));
+        }
+        return values;
+    }
+
     /**
      * Return a Prepared statement for the given Statement object, which is ready to be executed
      * @param stmnt SQL statement to be executed
@@ -215,6 +302,24 @@ public abstract class AbstractDBMediator extends AbstractMediator implements Man
      */
     protected PreparedStatement getPreparedStatement(Statement stmnt, Connection con,
                                                      MessageContext msgCtx) throws SQLException {
+        return getPreparedStatement(stmnt, con, getParameterValues(stmnt, msgCtx), msgCtx);
+    }
+
+    /**
+     * Return a Prepared statement for the given Statement object, with the given parameter
+     * values bound to it. When the connection comes from a pool which pools statements, the
+     * statement is reused from the pool of the connection, provided that the caller closes it
+     * after use.
+     * @param stmnt SQL statement to be executed
+     * @param con The connection to be used
+     * @param values values of the parameters, as returned by {@link #getParameterValues}
+     * @param msgCtx Current message context
+     * @return a PreparedStatement
+     * @throws SQLException on error
+     */
+    protected PreparedStatement getPreparedStatement(Statement stmnt, Connection con,
+                                                     List<String> values,
+                                                     MessageContext msgCtx) throws SQLException {
 
         SynapseLog synLog = getLog(msgCtx);
 
@@ -253,19 +358,41 @@ public abstract class AbstractDBMediator extends AbstractMediator implements Man
         }
 
         PreparedStatement ps = con.prepareStatement(stmnt.getRawStatement());
+        setParameters(ps, stmnt, values, msgCtx);
+
+        if (synLog.isTraceOrDebugEnabled()) {
+            synLog.traceOrDebug("Successfully prepared statement : " + stmnt.getRawStatement() +
+                " against DataSource : " + getDSName());
+        }
+        return ps;
+    }
+
+    /**
+     * Bind the given parameter values to a statement prepared for the given Statement object
+     * @param ps the prepared statement
+     * @param stmnt SQL statement the prepared statement was prepared for
+     * @param values values of the parameters, as returned by {@link #getParameterValues}
+     * @param msgCtx the current message, or null if the values are not bound while mediating
+     *               a message
+     * @throws SQLException on error
+     */
+    protected void setParameters(PreparedStatement ps, Statement stmnt, List<String> values,
+                                 MessageContext msgCtx) throws SQLException {
+
+        SynapseLog synLog = msgCtx != null ? getLog(msgCtx) : null;
 
         // set parameters if any
         List<Statement.Parameter> params = stmnt.getParameters();
         int column = 1;
+        Iterator<String> valueIter = values.iterator();
 
         for (Statement.Parameter param : params) {
             if (param == null) {
                 continue;
             }
-            String value = (param.getPropertyName() != null ?
-                    param.getPropertyName() : param.getXpath().stringValueOf(msgCtx));
+            String value = valueIter.next();
 
-            if (synLog.isTraceOrDebugEnabled()) {
+            if (synLog != null && synLog.isTraceOrDebugEnabled()) {
                 synLog.traceOrDebug("Setting as parameter : " + column + " value : " + value +
                         " as JDBC Type : " + param.getType() + "(see java.sql.Types for valid " +
                         "types)");
@@ -388,16 +515,14 @@ public abstract class AbstractDBMediator extends AbstractMediator implements Man
                             stmnt.getRawStatement() +
                             " used by a DB mediator against DataSource : " + getDSName() +
                             " (see java.sql.Types for valid type values)";
-                    handleException(msg, msgCtx);
+                    if (msgCtx != null) {
+                        handleException(msg, msgCtx);
+                    } else {
+                        handleException(msg);
+                    }
                 }
             }
         }
-
-        if (synLog.isTraceOrDebugEnabled()) {
-            synLog.traceOrDebug("Successfully prepared statement : " + stmnt.getRawStatement() +
-                " against DataSource : " + getDSName());
-        }
-        return ps;
     }
 
     /**
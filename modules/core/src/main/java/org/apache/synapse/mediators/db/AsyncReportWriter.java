@@ -0,0 +1,549 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.mediators.db;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.synapse.SynapseException;
+import org.apache.synapse.commons.datasource.DBPoolView;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes the rows reported by a {@link DBReportMediator} in asynchronous mode. The mediator
+ * queues the parameter values of its statements, captured while mediating the message, and
+ * a single writer thread executes them against the database in JDBC batches, one transaction
+ * per batch. A batch is written as soon as it holds the configured number of rows, or when the
+ * flush interval has passed since its first row was queued.
+ * <p/>
+ * When the queue is full, the {@link OverflowPolicy} of the writer decides whether the
+ * mediating thread waits for space, the row is dropped, or the row is spilled to a file. Once
+ * rows have been spilled, new rows are spilled as well until the writer has drained the queue
+ * and taken the spill file, so that the rows are written in the order they were reported. The
+ * spilled rows are written before the writer starts a new batch from the queue.
+ * <p/>
+ * If a batch cannot be written, its rows are retried one at a time, so that a single bad row
+ * does not discard the other rows of its batch. On shutdown, the writer drains the queue and
+ * any spilled rows before it stops.
+ */
+public class AsyncReportWriter implements Runnable {
+
+    private static final Log log = LogFactory.getLog(AsyncReportWriter.class);
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** What to do with a row reported while the queue is full */
+    public enum OverflowPolicy {
+        /** wait for space in the queue */
+        BLOCK,
+        /** discard the row */
+        DROP,
+        /** append the row to a spill file, to be written once the queue has drained */
+        SPILL
+    }
+
+    private final DBReportMediator mediator;
+    private final int batchSize;
+    private final long flushInterval;
+    private final OverflowPolicy overflowPolicy;
+    private final BlockingQueue<Report> queue;
+    private final SpillFile spillFile;
+
+    private volatile boolean running = false;
+    private Thread thread;
+
+    private final AtomicLong written = new AtomicLong(0);
+    private final AtomicLong dropped = new AtomicLong(0);
+    private final AtomicLong spilled = new AtomicLong(0);
+    private final AtomicLong failed = new AtomicLong(0);
+
+    public AsyncReportWriter(DBReportMediator mediator, int queueSize, int batchSize,
+                             long flushInterval, OverflowPolicy overflowPolicy,
+                             File spillDirectory) {
+        this.mediator = mediator;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.overflowPolicy = overflowPolicy;
+        this.queue = new ArrayBlockingQueue<Report>(queueSize);
+        this.spillFile = overflowPolicy == OverflowPolicy.SPILL ?
+                new SpillFile(spillDirectory) : null;
+    }
+
+    /**
+     * Start the writer thread
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this, "DBReportWriter-" + mediator.getDSName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stop accepting rows, and wait for the rows already accepted to be written
+     *
+     * @param timeout maximum time in milliseconds to wait for the pending rows to be written
+     */
+    public void stop(long timeout) {
+        Thread writerThread;
+        synchronized (this) {
+            running = false;
+            writerThread = thread;
+        }
+        if (writerThread == null) {
+            return;
+        }
+        try {
+            writerThread.join(timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writerThread.isAlive()) {
+            log.warn("Timed out while writing the pending rows to DataSource : " +
+                    mediator.getDSName() + ". " + getPendingCount() + " rows are discarded");
+            writerThread.interrupt();
+        }
+    }
+
+    /**
+     * Queue the given parameter values of a statement to be written
+     *
+     * @param stmnt  the statement
+     * @param values the values of the parameters of the statement
+     */
+    public void submit(Statement stmnt, List<String> values) {
+        if (!running) {
+            throw new SynapseException("The asynchronous writer of the DBReport mediator " +
+                    "against DataSource : " + mediator.getDSName() + " is not running");
+        }
+        Report report = new Report(stmnt, values);
+        try {
+            // keep the order of the rows while earlier rows are waiting in the spill file
+            if (spillFile != null && spillFile.append(report, false)) {
+                spilled.incrementAndGet();
+                return;
+            }
+        } catch (IOException e) {
+            log.error("Error spilling a row for statement : " + stmnt.getRawStatement() +
+                    " to file", e);
+            drop();
+            return;
+        }
+        if (queue.offer(report)) {
+            return;
+        }
+
+        switch (overflowPolicy) {
+            case BLOCK: {
+                try {
+                    // wait in steps, so that a shutdown does not leave the caller waiting
+                    while (!queue.offer(report, flushInterval, TimeUnit.MILLISECONDS)) {
+                        if (!running) {
+                            drop();
+                            return;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    drop();
+                }
+                break;
+            }
+            case SPILL: {
+                try {
+                    spillFile.append(report, true);
+                    spilled.incrementAndGet();
+                } catch (IOException e) {
+                    log.error("Error spilling a row for statement : " + stmnt.getRawStatement() +
+                            " to file", e);
+                    drop();
+                }
+                break;
+            }
+            default: {
+                drop();
+            }
+        }
+    }
+
+    private void drop() {
+        long count = dropped.incrementAndGet();
+        if (count == 1 || count % 1000 == 0) {
+            log.warn("The queue of the DBReport mediator against DataSource : " +
+                    mediator.getDSName() + " is full. " + count + " rows dropped so far");
+        }
+    }
+
+    @Override
+    public void run() {
+        List<Report> batch = new ArrayList<Report>(batchSize);
+        long deadline = 0;
+
+        while (true) {
+            try {
+                if (batch.isEmpty()) {
+                    // the spilled rows were reported after the rows still in the queue, and
+                    // before any row queued once the spill file is taken
+                    Report first = queue.poll();
+                    if (first == null && spillFile != null && spillFile.hasRows()) {
+                        writeSpilledRows();
+                        continue;
+                    }
+                    if (first == null) {
+                        first = queue.poll(flushInterval, TimeUnit.MILLISECONDS);
+                    }
+                    if (first == null) {
+                        if (!running && queue.isEmpty() &&
+                                (spillFile == null || !spillFile.hasRows())) {
+                            break;
+                        }
+                        continue;
+                    }
+                    batch.add(first);
+                    deadline = System.currentTimeMillis() + flushInterval;
+                }
+
+                queue.drainTo(batch, batchSize - batch.size());
+                long remaining = deadline - System.currentTimeMillis();
+                // no more rows are queued while rows are spilled, so do not wait for them
+                if (batch.size() < batchSize && remaining > 0 && running &&
+                        (spillFile == null || !spillFile.hasRows())) {
+                    Report next = queue.poll(remaining, TimeUnit.MILLISECONDS);
+                    if (next != null) {
+                        batch.add(next);
+                    }
+                    continue;
+                }
+
+                write(batch);
+                batch.clear();
+
+            } catch (InterruptedException e) {
+                if (!batch.isEmpty()) {
+                    failed.addAndGet(batch.size());
+                }
+                break;
+            } catch (Throwable t) {
+                log.error("Unexpected error in the DBReport writer against DataSource : " +
+                        mediator.getDSName(), t);
+                failed.addAndGet(batch.size());
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeSpilledRows() throws IOException {
+        File file = spillFile.take();
+        if (file == null) {
+            return;
+        }
+        List<Statement> statements = mediator.getStatementList();
+        List<Report> batch = new ArrayList<Report>(batchSize);
+        DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)));
+        try {
+            while (true) {
+                int index;
+                try {
+                    index = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                int count = in.readInt();
+                List<String> values = new ArrayList<String>(count);
+                for (int i = 0; i < count; i++) {
+                    int length = in.readInt();
+                    if (length < 0) {
+                        values.add(null);
+                    } else {
+                        byte[] bytes = new byte[length];
+                        in.readFully(bytes);
+                        values.add(new String(bytes, UTF_8));
+                    }
+                }
+                batch.add(new Report(statements.get(index), values));
+                if (batch.size() == batchSize) {
+                    write(batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+            }
+        } finally {
+            in.close();
+            if (!file.delete()) {
+                log.warn("Unable to delete the spill file : " + file);
+            }
+        }
+    }
+
+    /**
+     * Write the rows of a batch. If the batch fails, its rows are retried one at a time, and
+     * only the rows which fail again are counted as failed.
+     *
+     * @param batch the rows to be written
+     */
+    private void write(List<Report> batch) {
+        if (execute(batch) || batch.size() == 1) {
+            return;
+        }
+        log.warn("Retrying the " + batch.size() + " rows of the failed batch one at a time");
+        for (Report report : batch) {
+            execute(Collections.singletonList(report));
+        }
+    }
+
+    /**
+     * Execute the rows of a batch in a single transaction, grouping the rows of each statement
+     * into a JDBC batch
+     *
+     * @param batch the rows to be written
+     * @return true if the rows were written, false if the transaction was rolled back
+     */
+    private boolean execute(List<Report> batch) {
+        long start = System.currentTimeMillis();
+        Connection con = null;
+        Map<Statement, PreparedStatement> statements =
+                new LinkedHashMap<Statement, PreparedStatement>();
+        try {
+            con = mediator.getDataSource().getConnection();
+            boolean autoCommit = con.getAutoCommit();
+            if (autoCommit) {
+                con.setAutoCommit(false);
+            }
+
+            for (Report report : batch) {
+                PreparedStatement ps = statements.get(report.stmnt);
+                if (ps == null) {
+                    ps = con.prepareStatement(report.stmnt.getRawStatement());
+                    statements.put(report.stmnt, ps);
+                }
+                mediator.setParameters(ps, report.stmnt, report.values, null);
+                ps.addBatch();
+            }
+            for (PreparedStatement ps : statements.values()) {
+                ps.executeBatch();
+            }
+            con.commit();
+            if (autoCommit) {
+                con.setAutoCommit(true);
+            }
+
+            written.addAndGet(batch.size());
+            DBPoolView dbPoolView = mediator.getDbPoolView();
+            if (dbPoolView != null) {
+                dbPoolView.updateBatchStatistics(batch.size(),
+                        System.currentTimeMillis() - start);
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Wrote a batch of " + batch.size() + " rows to DataSource : " +
+                        mediator.getDSName() + " in " + (System.currentTimeMillis() - start) +
+                        " ms");
+            }
+            return true;
+
+        } catch (Exception e) {
+            if (batch.size() == 1) {
+                log.error("Error writing a row for statement : " +
+                        batch.get(0).stmnt.getRawStatement() + " to DataSource : " +
+                        mediator.getDSName(), e);
+                failed.incrementAndGet();
+            } else {
+                log.error("Error writing a batch of " + batch.size() + " rows to DataSource : " +
+                        mediator.getDSName(), e);
+            }
+            if (con != null) {
+                try {
+                    con.rollback();
+                } catch (SQLException ignore) {}
+            }
+            return false;
+        } finally {
+            for (PreparedStatement ps : statements.values()) {
+                try {
+                    ps.close();
+                } catch (SQLException ignore) {}
+            }
+            if (con != null) {
+                try {
+                    con.close();
+                } catch (SQLException ignore) {}
+            }
+        }
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /** @return number of rows queued or spilled, and not yet written */
+    public int getPendingCount() {
+        return queue.size() + (spillFile != null ? spillFile.getRowCount() : 0);
+    }
+
+    /** @return number of rows written to the database */
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    /** @return number of rows dropped because the queue was full */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /** @return number of rows spilled to file because the queue was full */
+    public long getSpilledCount() {
+        return spilled.get();
+    }
+
+    /** @return number of rows which could not be written due to an error */
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    private static class Report {
+        private final Statement stmnt;
+        private final List<String> values;
+
+        Report(Statement stmnt, List<String> values) {
+            this.stmnt = stmnt;
+            this.values = values;
+        }
+    }
+
+    /**
+     * Rows spilled while the queue was full. Rows are appended to a file until the writer takes
+     * the file to write its rows, after which new rows go to a new file.
+     */
+    private class SpillFile {
+
+        private final File directory;
+        private final Map<Statement, Integer> indexes = new IdentityHashMap<Statement, Integer>();
+        private File file;
+        private DataOutputStream out;
+        private int rowCount = 0;
+
+        SpillFile(File directory) {
+            this.directory = directory;
+            List<Statement> statements = mediator.getStatementList();
+            for (int i = 0; i < statements.size(); i++) {
+                indexes.put(statements.get(i), i);
+            }
+        }
+
+        /**
+         * Append a row to the spill file
+         *
+         * @param report the row
+         * @param always whether to spill the row even if there are no spilled rows yet
+         * @return true if the row was spilled
+         * @throws IOException if the row cannot be written to the file
+         */
+        synchronized boolean append(Report report, boolean always) throws IOException {
+            if (!always && rowCount == 0) {
+                return false;
+            }
+            // encode the row up front, so that an unexpected value cannot leave half a row
+            // in the file
+            ByteArrayOutputStream row = new ByteArrayOutputStream();
+            DataOutputStream rowOut = new DataOutputStream(row);
+            rowOut.writeInt(indexes.get(report.stmnt));
+            rowOut.writeInt(report.values.size());
+            for (String value : report.values) {
+                if (value == null) {
+                    rowOut.writeInt(-1);
+                } else {
+                    byte[] bytes = value.getBytes(UTF_8);
+                    rowOut.writeInt(bytes.length);
+                    rowOut.write(bytes);
+                }
+            }
+            rowOut.flush();
+
+            if (out == null) {
+                file = File.createTempFile("dbreport-", ".spill", directory);
+                out = new DataOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(file)));
+            }
+            row.writeTo(out);
+            rowCount++;
+            return true;
+        }
+
+        synchronized boolean hasRows() {
+            return rowCount > 0;
+        }
+
+        synchronized int getRowCount() {
+            return rowCount;
+        }
+
+        /**
+         * @return the file holding the rows spilled so far, or null if no rows were spilled
+         * @throws IOException if the file cannot be closed
+         */
+        synchronized File take() throws IOException {
+            if (out == null) {
+                return null;
+            }
+            out.close();
+            File spilledFile = file;
+            file = null;
+            out = null;
+            rowCount = 0;
+            return spilledFile;
+        }
+    }
+}
@@ -21,31 +21,99 @@ package org.apache.synapse.mediators.db;
 
 import org.apache.synapse.MessageContext;
 import org.apache.synapse.SynapseLog;
+import org.apache.synapse.core.SynapseEnvironment;
 
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Connection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
 /**
- * Simple database table lookup mediator. Designed only for read/lookup
+ * Simple database table lookup mediator. Designed only for read/lookup. If a statement has a
+ * result cache, the results of the statement are looked up in the cache by the values of its
+ * parameters before going to the database.
  */
 public class DBLookupMediator extends AbstractDBMediator {
 
     @Override
-    protected void processStatement(Statement stmnt, MessageContext msgCtx) {
+    public void init(SynapseEnvironment se) {
+        super.init(se);
+        for (Statement stmnt : getStatementList()) {
+            StatementResultCache cache = stmnt.getResultCache();
+            if (cache != null) {
+                // exposes the hit, miss, coalesced and eviction counts of the caches
+                registerDbPoolView();
+                cache.setPoolView(getDbPoolView());
+            }
+        }
+    }
+
+    @Override
+    protected void processStatement(final Statement stmnt, final MessageContext msgCtx) {
+
+        SynapseLog synLog = getLog(msgCtx);
+
+        final List<String> values = getParameterValues(stmnt, msgCtx);
+        StatementResultCache cache = stmnt.getResultCache();
+        Map<String, String> results;
+        try {
+            if (cache == null) {
+                results = executeQuery(stmnt, values, msgCtx);
+            } else {
+                results = cache.get(values, new Callable<Map<String, String>>() {
+                    @Override
+                    public Map<String, String> call() throws Exception {
+                        return executeQuery(stmnt, values, msgCtx);
+                    }
+                });
+            }
+        } catch (SQLException e) {
+            handleException("Error executing statement : " + stmnt.getRawStatement() +
+                    " against DataSource : " + getDSName(), e, msgCtx);
+            return;
+        } catch (Exception e) {
+            handleException("Error executing statement : " + stmnt.getRawStatement() +
+                    " against DataSource : " + getDSName(), e, msgCtx);
+            return;
+        }
+
+        for (Map.Entry<String, String> result : results.entrySet()) {
+            if (synLog.isTraceOrDebugEnabled()) {
+                synLog.traceOrDebug("Setting the message property : " + result.getKey() +
+                        " to value : " + result.getValue());
+            }
+            msgCtx.setProperty(result.getKey(), result.getValue());
+        }
+    }
+
+    /**
+     * Execute the statement with the given parameter values, and extract the results that have
+     * been specified from the first result row
+     * @param stmnt SQL statement to be executed
+     * @param values values of the parameters
+     * @param msgCtx Current message context
+     * @return the non null results, as a map of message property names to values
+     * @throws SQLException on error
+     */
+    private Map<String, String> executeQuery(Statement stmnt, List<String> values,
+                                             MessageContext msgCtx) throws SQLException {
 
         SynapseLog synLog = getLog(msgCtx);
 
-        // execute the prepared statement, and extract the first result row and
-        // set as message context properties, any results that have been specified
         Connection con = null;
+        PreparedStatement ps = null;
         ResultSet rs = null;
         try {
             con = this.getDataSource().getConnection();
-            PreparedStatement ps = getPreparedStatement(stmnt, con, msgCtx);
+            ps = getPreparedStatement(stmnt, con, values, msgCtx);
             rs = ps.executeQuery();
 
+            Map<String, String> results = new HashMap<String, String>();
             if (rs.next()) {
                 if (synLog.isTraceOrDebugEnabled()) {
                     synLog.traceOrDebug(
@@ -67,9 +135,9 @@ public class DBLookupMediator extends AbstractDBMediator {
                         if (synLog.isTraceOrDebugEnabled()) {
                             synLog.traceOrDebug("Column : " + columnStr +
                                     " returned value : " + obj +
-                                    " Setting this as the message property : " + propName);
+                                    " for the message property : " + propName);
                         }
-                        msgCtx.setProperty(propName, obj.toString());
+                        results.put(propName, obj.toString());
                     } else {
                         if (synLog.isTraceOrDebugEnabled()) {
                             synLog.traceOrDebugWarn("Column : " + columnStr +
@@ -83,20 +151,20 @@ public class DBLookupMediator extends AbstractDBMediator {
                         + stmnt.getRawStatement() + " returned 0 rows");
                 }
             }
-            
-        } catch (SQLException e) {
-            handleException("Error executing statement : " + stmnt.getRawStatement() +
-                    " against DataSource : " + getDSName(), e, msgCtx);
-        } catch (Exception e) {
-            handleException("Error executing statement : " + stmnt.getRawStatement() +
-                    " against DataSource : " + getDSName(), e, msgCtx);
-        }
-        finally {
+            return Collections.unmodifiableMap(results);
+
+        } finally {
             if (rs != null) {
                 try {
                     rs.close();
                 } catch (SQLException ignore) {}
             }
+            if (ps != null) {
+                // returns the statement to the statement pool of the connection, if any
+                try {
+                    ps.close();
+                } catch (SQLException ignore) {}
+            }
             if (con != null) {
                 try {
                     con.close();
@@ -21,16 +21,27 @@ package org.apache.synapse.mediators.db;
 
 import org.apache.synapse.MessageContext;
 import org.apache.synapse.SynapseLog;
+import org.apache.synapse.core.SynapseEnvironment;
 
+import java.io.File;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Connection;
 
 /**
- * A mediator that writes (i.e. inserts one row) to a table using message information
+ * A mediator that writes (i.e. inserts one row) to a table using message information.
+ * <p/>
+ * In asynchronous mode, the values of the statement parameters are captured while mediating
+ * the message, and an {@link AsyncReportWriter} writes them to the database in batches, so
+ * that the latency of the database does not add to the latency of the message.
  */
 public class DBReportMediator extends AbstractDBMediator {
 
+    public static final int DEFAULT_QUEUE_SIZE = 10000;
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    public static final long DEFAULT_FLUSH_INTERVAL = 1000;
+    public static final long DEFAULT_SHUTDOWN_TIMEOUT = 30000;
+
     public boolean isUseTransaction() {
         return useTransaction;
     }
@@ -43,16 +54,59 @@ public class DBReportMediator extends AbstractDBMediator {
     // default do not participate in a distribute tx
     boolean useTransaction = false;
 
+    /** Write the reported rows in batches from a separate thread? */
+    private boolean async = false;
+    private int queueSize = DEFAULT_QUEUE_SIZE;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private long flushInterval = DEFAULT_FLUSH_INTERVAL;
+    private long shutdownTimeout = DEFAULT_SHUTDOWN_TIMEOUT;
+    private AsyncReportWriter.OverflowPolicy overflowPolicy =
+            AsyncReportWriter.OverflowPolicy.BLOCK;
+    /** Directory of the spill files, or null for the default temporary-file directory */
+    private String spillDirectory;
+
+    private AsyncReportWriter writer;
+
+    @Override
+    public void init(SynapseEnvironment se) {
+        super.init(se);
+        if (async) {
+            // exposes the batch statistics over JMX
+            registerDbPoolView();
+            writer = new AsyncReportWriter(this, queueSize, batchSize, flushInterval,
+                    overflowPolicy, spillDirectory != null ? new File(spillDirectory) : null);
+            writer.start();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (writer != null) {
+            writer.stop(shutdownTimeout);
+            writer = null;
+        }
+        super.destroy();
+    }
+
     @Override
     protected void processStatement(Statement stmnt, MessageContext msgCtx) {
 
 
         SynapseLog synLog = getLog(msgCtx);
 
+        if (writer != null) {
+            if (synLog.isTraceOrDebugEnabled()) {
+                synLog.traceOrDebug("Queueing a row for statement : " + stmnt.getRawStatement());
+            }
+            writer.submit(stmnt, getParameterValues(stmnt, msgCtx));
+            return;
+        }
+
         Connection con = null;
+        PreparedStatement ps = null;
         try {
             con = this.getDataSource().getConnection();
-            PreparedStatement ps = getPreparedStatement(stmnt, con, msgCtx);
+            ps = getPreparedStatement(stmnt, con, msgCtx);
             con = ps.getConnection();
             int count = ps.executeUpdate();
 
@@ -82,6 +136,12 @@ public class DBReportMediator extends AbstractDBMediator {
                     " against DataSource : " + getDSName(), e, msgCtx);
         }
         finally {
+            if (ps != null) {
+                try {
+                    ps.close();
+                } catch (SQLException ignore) {
+                }
+            }
             if (con != null) {
                 try {
                     con.close();
@@ -90,4 +150,68 @@ public class DBReportMediator extends AbstractDBMediator {
             }
         }
     }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    public void setAsync(boolean async) {
+        this.async = async;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+    public void setFlushInterval(long flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    public long getShutdownTimeout() {
+        return shutdownTimeout;
+    }
+
+    public void setShutdownTimeout(long shutdownTimeout) {
+        this.shutdownTimeout = shutdownTimeout;
+    }
+
+    public AsyncReportWriter.OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public void setOverflowPolicy(AsyncReportWriter.OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    public String getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    public void setSpillDirectory(String spillDirectory) {
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * @return the writer of the rows in asynchronous mode, or null if the mediator is not
+     *         initialized in asynchronous mode
+     */
+    public AsyncReportWriter getWriter() {
+        return writer;
+    }
 }
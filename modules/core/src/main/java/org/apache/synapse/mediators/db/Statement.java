@@ -37,6 +37,7 @@ public class Statement {
     private String rawStatement = null;
     private final List<Parameter> parameters = new ArrayList<Parameter>();
     private final Map<String, String> resultsMap = new HashMap<String, String>();
+    private StatementResultCache resultCache = null;
 
     public Statement(String rawStatement) {
         this.rawStatement = rawStatement;
@@ -62,6 +63,17 @@ public class Statement {
         return resultsMap;
     }
 
+    /**
+     * @return the cache of the results of this statement, or null if results are not cached
+     */
+    public StatementResultCache getResultCache() {
+        return resultCache;
+    }
+
+    public void setResultCache(StatementResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
     public static class Parameter {
         String propertyName = null;
         SynapseXPath xpath = null;
@@ -0,0 +1,234 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.mediators.db;
+
+import org.apache.synapse.commons.datasource.DBPoolView;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the results of a lookup statement, keyed by the values bound to the parameters of the
+ * statement. Entries expire after a fixed time to live, and the least recently used entry is
+ * evicted once the cache holds the maximum number of entries.
+ * <p/>
+ * When several threads miss the cache for the same key at the same time, only the first one
+ * loads the result from the database, and the others wait for and share its result (or its
+ * failure).
+ */
+public class StatementResultCache {
+
+    /** Time in milliseconds an entry stays valid, or a non positive value to never expire */
+    private final long timeout;
+    private final int maxSize;
+
+    private final Map<List<String>, CachedResult> entries;
+    private final ConcurrentMap<List<String>, FutureTask<Map<String, String>>> loading =
+            new ConcurrentHashMap<List<String>, FutureTask<Map<String, String>>>();
+
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    private final AtomicLong coalesced = new AtomicLong(0);
+    private final AtomicLong evictions = new AtomicLong(0);
+
+    /** The MBean of the data source, which also exposes the counts over JMX, or null */
+    private volatile DBPoolView poolView;
+
+    public StatementResultCache(long timeout, final int maxSize) {
+        this.timeout = timeout;
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<List<String>, CachedResult>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<String>, CachedResult> eldest) {
+                if (size() > maxSize) {
+                    evictions.incrementAndGet();
+                    DBPoolView view = poolView;
+                    if (view != null) {
+                        view.cacheEvicted();
+                    }
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Return the cached result for the given parameter values, loading it with the given
+     * loader if there is no valid entry for them
+     *
+     * @param key    the values bound to the parameters of the statement
+     * @param loader loads the result from the database
+     * @return the result, as a map of message property names to values
+     * @throws Exception if the result could not be loaded
+     */
+    public Map<String, String> get(List<String> key, Callable<Map<String, String>> loader)
+            throws Exception {
+
+        DBPoolView view = poolView;
+        Map<String, String> result = getCached(key);
+        if (result != null) {
+            hits.incrementAndGet();
+            if (view != null) {
+                view.cacheHit();
+            }
+            return result;
+        }
+        misses.incrementAndGet();
+        if (view != null) {
+            view.cacheMiss();
+        }
+
+        FutureTask<Map<String, String>> task = new FutureTask<Map<String, String>>(loader);
+        FutureTask<Map<String, String>> existing = loading.putIfAbsent(key, task);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            if (view != null) {
+                view.cacheCoalesced();
+            }
+            return getResult(existing);
+        }
+
+        try {
+            task.run();
+            result = getResult(task);
+            put(key, result);
+            return result;
+        } finally {
+            loading.remove(key, task);
+        }
+    }
+
+    private Map<String, String> getCached(List<String> key) {
+        synchronized (entries) {
+            CachedResult cached = entries.get(key);
+            if (cached == null) {
+                return null;
+            }
+            if (cached.isExpired()) {
+                entries.remove(key);
+                return null;
+            }
+            return cached.result;
+        }
+    }
+
+    private void put(List<String> key, Map<String, String> result) {
+        long expiresAt = timeout > 0 ? System.currentTimeMillis() + timeout : Long.MAX_VALUE;
+        synchronized (entries) {
+            entries.put(key, new CachedResult(result, expiresAt));
+        }
+    }
+
+    private Map<String, String> getResult(FutureTask<Map<String, String>> task)
+            throws Exception {
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Remove all the cached results
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Report the hits, misses, coalesced misses and evictions of this cache to the MBean of
+     * the data source as well
+     *
+     * @param poolView the MBean of the data source of the statement, or null
+     */
+    public void setPoolView(DBPoolView poolView) {
+        this.poolView = poolView;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /** @return number of entries currently cached, including expired ones not yet removed */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /** @return number of lookups answered from the cache */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /** @return number of lookups which did not find a valid entry in the cache */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /** @return number of misses which waited for a load already in progress for the same key */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    /** @return number of entries evicted to keep the cache within its maximum size */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public double getHitRatio() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0 : (double) hits.get() / total;
+    }
+
+    private static class CachedResult {
+        private final Map<String, String> result;
+        private final long expiresAt;
+
+        CachedResult(Map<String, String> result, long expiresAt) {
+            this.result = result;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+    }
+}
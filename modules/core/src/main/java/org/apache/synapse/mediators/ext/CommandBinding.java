@@ -0,0 +1,322 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.mediators.ext;
+
+import org.apache.axiom.om.OMElement;
+import org.apache.synapse.Command;
+import org.apache.synapse.SynapseException;
+import org.apache.synapse.mediators.bean.BeanUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The constructor, execute() method, setters and getters of a POJO command class, resolved once
+ * into method handles. Setters accept the values the {@link POJOCommandMediator} has always
+ * accepted: a String, converted to a String, int, long, float, double or boolean parameter, or
+ * an OMElement. The converters of String values are composed into the setter handles, and static
+ * property values are converted when the binding is created.
+ */
+final class CommandBinding {
+
+    private static final MethodType SETTER = MethodType.methodType(void.class, Object.class,
+            Object.class);
+    private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+    /** type of the execute() method, and of the setters bound to a value */
+    private static final MethodType NO_ARGS = MethodType.methodType(void.class, Object.class);
+
+    private final Class commandClass;
+
+    /** null if the class has no public no argument constructor */
+    private final MethodHandle constructor;
+
+    /** null if the class implements Command, or doesn't have an execute() method */
+    private final MethodHandle execute;
+
+    private final Map<String, Setter> setters = new HashMap<String, Setter>();
+
+    /** getters by property name, absent if the class doesn't have a getter for a property */
+    private final Map<String, MethodHandle> getters = new HashMap<String, MethodHandle>();
+
+    /** setter handles of the static properties, bound to the converted values */
+    private final List<MethodHandle> staticSetters = new ArrayList<MethodHandle>();
+
+    /**
+     * Resolve the given command class
+     *
+     * @param commandClass      the command class
+     * @param staticProperties  the values of static properties, by name
+     * @param dynamicProperties names of the properties set for each message
+     * @param getterProperties  names of the properties read after execution
+     * @throws SynapseException if a static property can't be set on the command class
+     */
+    CommandBinding(Class commandClass, Map<String, Object> staticProperties,
+                   Collection<String> dynamicProperties, Collection<String> getterProperties) {
+
+        this.commandClass = commandClass;
+        this.constructor = BeanUtils.resolveConstructor(commandClass);
+        this.execute = Command.class.isAssignableFrom(commandClass) ?
+                null : resolveExecute(commandClass);
+
+        Method[] methods = commandClass.getMethods();
+        for (Map.Entry<String, Object> entry : staticProperties.entrySet()) {
+            staticSetters.add(getSetter(entry.getKey(), methods).bind(entry.getValue()));
+        }
+        for (String name : dynamicProperties) {
+            getSetter(name, methods);
+        }
+        for (String name : getterProperties) {
+            MethodHandle getter = resolveGetter(name, methods);
+            if (getter != null) {
+                getters.put(name, getter);
+            }
+        }
+    }
+
+    /**
+     * @return a new instance of the command class
+     * @throws SynapseException if the command class can't be instantiated
+     */
+    Object newInstance() {
+        if (constructor == null) {
+            throw new SynapseException("No public no argument constructor is found in " +
+                    commandClass.getName());
+        }
+        return BeanUtils.newInstance(constructor);
+    }
+
+    /**
+     * Set the static properties on a new command object
+     */
+    void setStaticProperties(Object command) {
+        for (MethodHandle setter : staticSetters) {
+            try {
+                setter.invokeExact(command);
+            } catch (Throwable t) {
+                throw new SynapseException("Error setting a static property on the command " +
+                        "class : " + commandClass.getName(), t);
+            }
+        }
+    }
+
+    /**
+     * Set a property from a value evaluated for the current message
+     */
+    void setProperty(String name, Object value, Object command) {
+        Setter setter = setters.get(name);
+        MethodHandle handle = setter.resolve(value);
+        try {
+            handle.invokeExact(command, value);
+        } catch (Throwable t) {
+            throw new SynapseException("Error invoking setter method named : " +
+                    setter.methodName + "()", t);
+        }
+    }
+
+    /**
+     * @return the value of a property, or null if the command class doesn't have a getter for it
+     * @throws Throwable if the getter fails
+     */
+    Object getProperty(String name, Object command) throws Throwable {
+        MethodHandle getter = getters.get(name);
+        return getter == null ? null : (Object) getter.invokeExact(command);
+    }
+
+    /**
+     * @return true if the command class has an execute() method or implements Command
+     */
+    boolean isExecutable() {
+        return execute != null || Command.class.isAssignableFrom(commandClass);
+    }
+
+    /**
+     * Invoke the execute() method of a command class which doesn't implement Command
+     *
+     * @throws Throwable if the execute() method fails
+     */
+    void execute(Object command) throws Throwable {
+        execute.invokeExact(command);
+    }
+
+    private Setter getSetter(String name, Method[] methods) {
+        Setter setter = setters.get(name);
+        if (setter == null) {
+            setter = new Setter("set" + Character.toUpperCase(name.charAt(0)) + name.substring(1));
+            // the first suitable method wins, as it always has
+            for (Method method : methods) {
+                if (setter.methodName.equals(method.getName()) &&
+                        method.getParameterTypes().length == 1) {
+                    setter.add(method);
+                }
+            }
+            setters.put(name, setter);
+        }
+        return setter;
+    }
+
+    private static MethodHandle resolveGetter(String name, Method[] methods) {
+        String methodName = "get" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        for (Method method : methods) {
+            if (methodName.equals(method.getName()) && method.getParameterTypes().length == 0) {
+                MethodHandle getter = unreflect(method);
+                if (getter != null) {
+                    return getter.asType(GETTER);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static MethodHandle resolveExecute(Class commandClass) {
+        try {
+            MethodHandle execute = unreflect(commandClass.getMethod("execute"));
+            return execute == null ? null : execute.asType(NO_ARGS);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static MethodHandle unreflect(Method method) {
+        try {
+            return MethodHandles.publicLookup().unreflect(method);
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The setters of a property, for String values and for OMElement values
+     */
+    private static final class Setter {
+
+        private final String methodName;
+
+        /** the setter taking a String or a type converted from a String, and the converter */
+        private MethodHandle stringMethod;
+        private MethodHandle stringConverter;
+
+        /** the String setter with the converter composed in */
+        private MethodHandle stringSetter;
+        private MethodHandle elementSetter;
+
+        private Setter(String methodName) {
+            this.methodName = methodName;
+        }
+
+        private void add(Method method) {
+            Class type = method.getParameterTypes()[0];
+            if (stringSetter == null && isStringConvertible(type)) {
+                MethodHandle handle = unreflect(method);
+                if (handle != null) {
+                    stringMethod = handle;
+                    stringConverter = getConverter(type);
+                    if (stringConverter != null) {
+                        handle = MethodHandles.filterArguments(handle, 1, stringConverter);
+                    }
+                    stringSetter = handle.asType(SETTER);
+                }
+            } else if (elementSetter == null && OMElement.class.equals(type)) {
+                MethodHandle handle = unreflect(method);
+                if (handle != null) {
+                    elementSetter = handle.asType(SETTER);
+                }
+            }
+        }
+
+        /**
+         * @return the setter handle for the given value
+         * @throws SynapseException if the property can't be set to the value
+         */
+        private MethodHandle resolve(Object value) {
+            MethodHandle handle = value instanceof String ? stringSetter :
+                    value instanceof OMElement ? elementSetter : null;
+            if (handle == null) {
+                throw new SynapseException("Did not find a setter method named : " + methodName +
+                        "() that takes a single String, int, long, float, double, OMElement or " +
+                        "boolean parameter");
+            }
+            return handle;
+        }
+
+        /**
+         * @return the setter handle with the given constant value, converted once, bound to it
+         * @throws SynapseException if the property can't be set to the value
+         */
+        private MethodHandle bind(Object value) {
+            if (value instanceof String && stringSetter != null) {
+                Object converted = value;
+                if (stringConverter != null) {
+                    try {
+                        converted = stringConverter.invoke((String) value);
+                    } catch (Throwable t) {
+                        throw new SynapseException("Unable to convert '" + value + "' for " +
+                                "the setter method named : " + methodName + "()", t);
+                    }
+                }
+                return MethodHandles.insertArguments(stringMethod, 1, converted).asType(NO_ARGS);
+            }
+            return MethodHandles.insertArguments(resolve(value), 1, value);
+        }
+
+        private static boolean isStringConvertible(Class type) {
+            return String.class.equals(type) || int.class.equals(type) ||
+                    long.class.equals(type) || float.class.equals(type) ||
+                    double.class.equals(type) || boolean.class.equals(type);
+        }
+
+        private static MethodHandle getConverter(Class type) {
+            String parser;
+            Class wrapper;
+            if (int.class.equals(type)) {
+                parser = "parseInt";
+                wrapper = Integer.class;
+            } else if (long.class.equals(type)) {
+                parser = "parseLong";
+                wrapper = Long.class;
+            } else if (float.class.equals(type)) {
+                parser = "parseFloat";
+                wrapper = Float.class;
+            } else if (double.class.equals(type)) {
+                parser = "parseDouble";
+                wrapper = Double.class;
+            } else if (boolean.class.equals(type)) {
+                parser = "parseBoolean";
+                wrapper = Boolean.class;
+            } else {
+                return null;
+            }
+            try {
+                return MethodHandles.publicLookup().findStatic(wrapper, parser,
+                        MethodType.methodType(type, String.class));
+            } catch (NoSuchMethodException e) {
+                throw new SynapseException("Unable to resolve the converter for " + type, e);
+            } catch (IllegalAccessException e) {
+                throw new SynapseException("Unable to resolve the converter for " + type, e);
+            }
+        }
+    }
+}
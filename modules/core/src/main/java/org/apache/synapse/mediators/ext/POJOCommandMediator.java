@@ -22,16 +22,16 @@ package org.apache.synapse.mediators.ext;
 import org.apache.axiom.om.OMAbstractFactory;
 import org.apache.axiom.om.OMNode;
 import org.apache.synapse.Command;
+import org.apache.synapse.ManagedLifecycle;
 import org.apache.synapse.MessageContext;
 import org.apache.synapse.SynapseLog;
-import org.apache.synapse.commons.util.PropertyHelper;
+import org.apache.synapse.core.SynapseEnvironment;
 import org.apache.synapse.mediators.AbstractMediator;
 import org.apache.synapse.mediators.eip.EIPUtils;
 import org.apache.synapse.util.xpath.SynapseXPath;
 import org.jaxen.JaxenException;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -41,10 +41,12 @@ import java.util.Map;
  * the properties specified to it through the configuraiton. The specified command object may or
  * may not implement the Command interface. If the Command object has not implemented the Command
  * interface then this will use reflection to find a method called execute() and execute it.
+ * The constructor, the execute() method and the property accessors of the command class are
+ * resolved once, on initialization, rather than for every message.
  *
  * @see org.apache.synapse.Command interface
  */
-public class POJOCommandMediator extends AbstractMediator {
+public class POJOCommandMediator extends AbstractMediator implements ManagedLifecycle {
 
     /**
      * This will hold the command object to be executed
@@ -81,6 +83,12 @@ public class POJOCommandMediator extends AbstractMediator {
      */
     private final Map<String, SynapseXPath> messageGetterProperties = new HashMap<String, SynapseXPath>();
 
+    /**
+     * The command class resolved for the configured properties, created on initialization or
+     * on the first message and discarded when the configuration changes
+     */
+    private volatile CommandBinding binding;
+
     /**
      * Implements the mediate method of the Mediator interface. This method will instantiate
      * a new instance of the POJO class, set all specified properties from the current runtime
@@ -103,36 +111,35 @@ public class POJOCommandMediator extends AbstractMediator {
         }
 
         if (synLog.isTraceOrDebugEnabled()) {
-            synLog.traceOrDebug("Creating a new instance of POJO class : " + command.getClass());
+            synLog.traceOrDebug("Creating a new instance of POJO class : " + command.getName());
         }
 
+        CommandBinding binding = getBinding();
+
         Object commandObject = null;
         try {
             // instantiate a new command object each time
-            commandObject = command.newInstance();
+            commandObject = binding.newInstance();
         } catch (Exception e) {
             handleException("Error creating an instance of the POJO command class : " +
-                command.getClass(), e, synCtx);
+                command.getName(), e, synCtx);
         }
 
         synLog.traceOrDebug("Instance created, setting static and dynamic properties");
 
         // then set the static/constant properties first
-        for (String name : staticSetterProperties.keySet()) {
-            PropertyHelper.setInstanceProperty(name, staticSetterProperties.get(name), commandObject);
-        }
+        binding.setStaticProperties(commandObject);
 
         // now set the any dynamic properties from the message context properties
-        for (String name : contextSetterProperties.keySet()) {
-            PropertyHelper.setInstanceProperty(name, synCtx.getProperty(contextSetterProperties.get(name)),
+        for (Map.Entry<String, String> entry : contextSetterProperties.entrySet()) {
+            binding.setProperty(entry.getKey(), synCtx.getProperty(entry.getValue()),
                 commandObject);
         }
 
         // now set the any dynamic properties evaluating XPath's on the current message
-        for (String name : messageSetterProperties.keySet()) {
-            SynapseXPath xpath = messageSetterProperties.get(name);
-            String value = xpath.stringValueOf(synCtx);
-            PropertyHelper.setInstanceProperty(name, value, commandObject);
+        for (Map.Entry<String, SynapseXPath> entry : messageSetterProperties.entrySet()) {
+            String value = entry.getValue().stringValueOf(synCtx);
+            binding.setProperty(entry.getKey(), value, commandObject);
         }
 
         synLog.traceOrDebug("POJO initialized successfully, invoking the execute() method");
@@ -143,27 +150,27 @@ public class POJOCommandMediator extends AbstractMediator {
                 ((Command) commandObject).execute();
             } catch (Exception e) {
                 handleException("Error invoking POJO command class : "
-                    + command.getClass(), e, synCtx);
+                    + command.getName(), e, synCtx);
             }
 
+        } else if (!binding.isExecutable()) {
+            handleException("Cannot locate an execute() method on POJO class : " +
+                command.getName(), synCtx);
+
         } else {
 
             try {
-                Method exeMethod = command.getMethod("execute");
-                exeMethod.invoke(commandObject);
-            } catch (NoSuchMethodException e) {
-                handleException("Cannot locate an execute() method on POJO class : " +
-                    command.getClass(), e, synCtx);
-            } catch (Exception e) {
+                binding.execute(commandObject);
+            } catch (Throwable t) {
                 handleException("Error invoking the execute() method on POJO class : " +
-                    command.getClass(), e, synCtx);
+                    command.getName(), asException(t), synCtx);
             }
         }
 
         // then set the context properties back to the messageContext from the command
         for (String name : contextGetterProperties.keySet()) {
             synCtx.setProperty(contextGetterProperties.get(name),
-                getInstanceProperty(name, commandObject, synCtx));
+                getInstanceProperty(binding, name, commandObject, synCtx));
         }
 
         // now set the any message properties evaluating XPath's on the current message back
@@ -171,7 +178,7 @@ public class POJOCommandMediator extends AbstractMediator {
         for (String name : messageGetterProperties.keySet()) {
             SynapseXPath xpath = messageGetterProperties.get(name);
 
-            Object resultValue = getInstanceProperty(name, commandObject, synCtx);
+            Object resultValue = getInstanceProperty(binding, name, commandObject, synCtx);
 
             try {
                 List list = EIPUtils.getMatchingElements(synCtx.getEnvelope(), xpath);
@@ -204,62 +211,92 @@ public class POJOCommandMediator extends AbstractMediator {
     }
 
     /**
-     * Find and invoke the getter method with the name of form getXXX and returns the value given
+     * Invoke the getter method with the name of form getXXX and returns the value given
      * on the POJO object
      *
+     * @param binding the command class binding
      * @param name name of the getter field
      * @param obj POJO instance
      * @param synCtx current message
      * @return object representing the value of the getter method
      */
-    private Object getInstanceProperty(String name, Object obj, MessageContext synCtx) {
+    private Object getInstanceProperty(CommandBinding binding, String name, Object obj,
+                                       MessageContext synCtx) {
 
-        String mName = "get" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
         try {
-            Method[] methods = obj.getClass().getMethods();
-
-            for (Method method : methods) {
-                if (mName.equals(method.getName())) {
-                    return method.invoke(obj);
-                }
-            }
-        } catch(InvocationTargetException e) {
+            return binding.getProperty(name, obj);
+        } catch (Throwable t) {
             handleException("Unable to get the command property '"
-                + name + "' back to the message", e, synCtx);
-        } catch(IllegalAccessException e){
-            handleException("Unable to get the command property '"
-                + name + "' back to the message", e, synCtx);
+                + name + "' back to the message", asException(t), synCtx);
         }
 
         return null;
     }
 
+    private static Exception asException(Throwable t) {
+        return t instanceof Exception ? (Exception) t : new Exception(t);
+    }
+
+    @Override
+    public void init(SynapseEnvironment se) {
+        if (command != null) {
+            getBinding();
+        }
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+    /**
+     * @return the binding of the command class, which is resolved if it doesn't exist yet
+     */
+    private CommandBinding getBinding() {
+        CommandBinding binding = this.binding;
+        if (binding == null) {
+            List<String> setterProperties = new ArrayList<String>(contextSetterProperties.keySet());
+            setterProperties.addAll(messageSetterProperties.keySet());
+            List<String> getterProperties = new ArrayList<String>(contextGetterProperties.keySet());
+            getterProperties.addAll(messageGetterProperties.keySet());
+            binding = new CommandBinding(command, staticSetterProperties, setterProperties,
+                    getterProperties);
+            this.binding = binding;
+        }
+        return binding;
+    }
+
     public Class getCommand() {
         return command;
     }
 
     public void setCommand(Class command) {
         this.command = command;
+        this.binding = null;
     }
 
     public void addStaticSetterProperty(String name, Object value) {
         this.staticSetterProperties.put(name, value);
+        this.binding = null;
     }
 
     public void addMessageSetterProperty(String name, SynapseXPath xpath) {
         this.messageSetterProperties.put(name, xpath);
+        this.binding = null;
     }
     
     public void addContextSetterProperty(String name, String ctxName) {
         this.contextSetterProperties.put(name, ctxName);
+        this.binding = null;
     }
 
     public void addContextGetterProperty(String name, String value) {
         this.contextGetterProperties.put(name, value);
+        this.binding = null;
     }
 
     public void addMessageGetterProperty(String name, SynapseXPath xpath) {
         this.messageGetterProperties.put(name, xpath);
+        this.binding = null;
     }
 
     public Map<String, Object> getStaticSetterProperties() {
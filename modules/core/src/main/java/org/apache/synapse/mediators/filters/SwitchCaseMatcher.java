@@ -0,0 +1,267 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.synapse.mediators.filters;
+
+import org.apache.synapse.config.xml.SwitchCase;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Selects the first {@link SwitchCase} of a switch mediator that matches a given value,
+ * without running every case regex in turn. Cases whose regex is a plain literal are looked
+ * up in a hash map, and cases of the form <code>literal.*</code> or <code>.*literal</code>
+ * are looked up in a prefix or suffix trie. Only the remaining regexes are run against the
+ * value, and only those declared before the best case found so far, so the case selected is
+ * always the one the switch mediator would have selected by trying each regex in order.
+ */
+final class SwitchCaseMatcher {
+
+    /** Marks an unquoted <code>.*</code> in the segments of a parsed regex */
+    private static final Object WILDCARD = new Object();
+
+    private final SwitchCase[] cases;
+    private final Map<String,Integer> literals = new HashMap<String,Integer>();
+    private final TrieNode prefixes = new TrieNode();
+    private final TrieNode suffixes = new TrieNode();
+    /** Indexes of the cases that have to be matched with their own regex, in case order */
+    private final int[] regexCases;
+
+    SwitchCaseMatcher(List<SwitchCase> caseList) {
+        cases = caseList.toArray(new SwitchCase[caseList.size()]);
+        List<Integer> others = new ArrayList<Integer>();
+        for (int i = 0; i < cases.length; i++) {
+            if (cases[i] == null) {
+                continue;
+            }
+            if (!compile(cases[i].getRegex(), i)) {
+                others.add(i);
+            }
+        }
+        regexCases = new int[others.size()];
+        for (int i = 0; i < regexCases.length; i++) {
+            regexCases[i] = others.get(i);
+        }
+    }
+
+    /**
+     * Checks whether this matcher was compiled for the current content of the given case list
+     *
+     * @param caseList the cases of the switch mediator
+     * @return true if the list has not grown or shrunk since this matcher was compiled
+     */
+    boolean isCompiledFor(List<SwitchCase> caseList) {
+        return caseList.size() == cases.length;
+    }
+
+    /**
+     * Finds the first case matching the given value
+     *
+     * @param value the value to match, which must not be null
+     * @return the first matching case, or null if none of the cases match
+     */
+    SwitchCase match(String value) {
+        int best = Integer.MAX_VALUE;
+
+        Integer literal = literals.get(value);
+        if (literal != null) {
+            best = literal;
+        }
+
+        // '.' does not match line terminators, so a prefix only matches if the rest of the
+        // value is free of them, and a suffix only if everything before it is
+        int length = value.length();
+        int first = length;
+        int last = -1;
+        for (int i = 0; i < length; i++) {
+            if (isLineTerminator(value.charAt(i))) {
+                if (first == length) {
+                    first = i;
+                }
+                last = i;
+            }
+        }
+
+        TrieNode node = prefixes;
+        for (int depth = 0; node != null; depth++) {
+            if (node.index >= 0 && node.index < best && last < depth) {
+                best = node.index;
+            }
+            node = depth < length ? node.child(value.charAt(depth)) : null;
+        }
+        node = suffixes;
+        for (int depth = 0; node != null; depth++) {
+            if (node.index >= 0 && node.index < best && first >= length - depth) {
+                best = node.index;
+            }
+            node = depth < length ? node.child(value.charAt(length - depth - 1)) : null;
+        }
+
+        for (int index : regexCases) {
+            if (index > best) {
+                break;
+            }
+            if (cases[index].matches(value)) {
+                return cases[index];
+            }
+        }
+        return best == Integer.MAX_VALUE ? null : cases[best];
+    }
+
+    private boolean compile(Pattern pattern, int index) {
+        if (pattern == null) {
+            return false;
+        }
+        if (pattern.flags() == Pattern.LITERAL) {
+            addLiteral(pattern.pattern(), index);
+            return true;
+        }
+        if (pattern.flags() != 0) {
+            return false;
+        }
+
+        List<Object> segments = parse(pattern.pattern());
+        if (segments == null) {
+            return false;
+        }
+        if (segments.size() == 1 && segments.get(0) != WILDCARD) {
+            addLiteral((String) segments.get(0), index);
+            return true;
+        }
+        if (segments.size() == 1) {
+            prefixes.add("", false, index);
+            return true;
+        }
+        if (segments.size() != 2 || segments.get(0) == segments.get(1)) {
+            return false;
+        }
+        if (segments.get(1) == WILDCARD) {
+            prefixes.add((String) segments.get(0), false, index);
+            return true;
+        }
+        if (segments.get(0) == WILDCARD) {
+            suffixes.add((String) segments.get(1), true, index);
+            return true;
+        }
+        return false;
+    }
+
+    private void addLiteral(String literal, int index) {
+        if (!literals.containsKey(literal)) {
+            literals.put(literal, index);
+        }
+    }
+
+    /**
+     * Splits a regex into literal strings and unquoted <code>.*</code> wildcards
+     *
+     * @param regex the regex to be parsed
+     * @return the segments of the regex, or null if it contains any other construct
+     */
+    private static List<Object> parse(String regex) {
+        List<Object> segments = new ArrayList<Object>();
+        StringBuilder literal = new StringBuilder();
+        int length = regex.length();
+        int i = 0;
+        while (i < length) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 == length) {
+                    return null;
+                }
+                char next = regex.charAt(i + 1);
+                if (next == 'Q') {
+                    int end = regex.indexOf("\\E", i + 2);
+                    if (end < 0) {
+                        end = length;
+                    }
+                    literal.append(regex, i + 2, end);
+                    i = Math.min(end + 2, length);
+                    continue;
+                }
+                if (Character.isLetterOrDigit(next)) {
+                    // character classes, escape sequences and back references
+                    return null;
+                }
+                literal.append(next);
+                i += 2;
+            } else if (c == '.') {
+                if (i + 1 == length || regex.charAt(i + 1) != '*') {
+                    return null;
+                }
+                if (i + 2 < length && "?+*{".indexOf(regex.charAt(i + 2)) >= 0) {
+                    return null;
+                }
+                if (literal.length() > 0) {
+                    segments.add(literal.toString());
+                    literal.setLength(0);
+                }
+                segments.add(WILDCARD);
+                i += 2;
+            } else if ("[](){}*+?^$|".indexOf(c) >= 0) {
+                return null;
+            } else {
+                literal.append(c);
+                i++;
+            }
+        }
+        if (literal.length() > 0 || segments.isEmpty()) {
+            segments.add(literal.toString());
+        }
+        return segments;
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    private static final class TrieNode {
+
+        private Map<Character,TrieNode> children;
+        /** Index of the first case ending at this node, or -1 if there is none */
+        private int index = -1;
+
+        TrieNode child(char c) {
+            return children == null ? null : children.get(c);
+        }
+
+        void add(String key, boolean reverse, int caseIndex) {
+            TrieNode node = this;
+            int length = key.length();
+            for (int i = 0; i < length; i++) {
+                char c = key.charAt(reverse ? length - i - 1 : i);
+                if (node.children == null) {
+                    node.children = new HashMap<Character,TrieNode>();
+                }
+                TrieNode next = node.children.get(c);
+                if (next == null) {
+                    next = new TrieNode();
+                    node.children.put(c, next);
+                }
+                node = next;
+            }
+            if (node.index < 0) {
+                node.index = caseIndex;
+            }
+        }
+    }
+}
@@ -44,9 +44,12 @@ public class SwitchMediator extends AbstractMediator implements ManagedLifecycle
     private final List<SwitchCase> cases = new ArrayList<SwitchCase>();
     /** The default switch case, if any */
     private SwitchCase defaultCase = null;
+    /** The matcher compiled from the cases, rebuilt when the list of cases changes */
+    private volatile SwitchCaseMatcher matcher = null;
 
     @Override
     public void init(SynapseEnvironment se) {
+        matcher = new SwitchCaseMatcher(cases);
         for (ManagedLifecycle swCase : cases) {
             swCase.init(se);
         }
@@ -102,15 +105,18 @@ public class SwitchMediator extends AbstractMediator implements ManagedLifecycle
                 return defaultCase.mediate(synCtx);
 
             } else {
-                for (SwitchCase swCase : cases) {
-                    if (swCase != null) {
-                        if (swCase.matches(sourceText)) {
-                            if (synLog.isTraceOrDebugEnabled()) {
-                                synLog.traceOrDebug("Matching case found : " + swCase.getRegex());
-                            }
-                            return swCase.mediate(synCtx);
-                        }
+                SwitchCase swCase = null;
+                if (sourceText == null) {
+                    synLog.auditWarn("Source XPath evaluated to : null. " +
+                            "None of the switch cases will be executed");
+                } else {
+                    swCase = getMatcher().match(sourceText);
+                }
+                if (swCase != null) {
+                    if (synLog.isTraceOrDebugEnabled()) {
+                        synLog.traceOrDebug("Matching case found : " + swCase.getRegex());
                     }
+                    return swCase.mediate(synCtx);
                 }
 
                 if (defaultCase != null) {
@@ -138,6 +144,16 @@ public class SwitchMediator extends AbstractMediator implements ManagedLifecycle
      */
     public void addCase(SwitchCase m) {
         cases.add(m);
+        matcher = null;
+    }
+
+    private SwitchCaseMatcher getMatcher() {
+        SwitchCaseMatcher m = matcher;
+        if (m == null || !m.isCompiledFor(cases)) {
+            m = new SwitchCaseMatcher(cases);
+            matcher = m;
+        }
+        return m;
     }
 
     /**
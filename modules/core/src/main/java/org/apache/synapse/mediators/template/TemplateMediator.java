@@ -82,6 +82,20 @@ public class TemplateMediator extends AbstractListMediator {
         return result;
     }
 
+    /**
+     * Resumes a suspended flow within this template. The function context of the template
+     * is already part of the restored function stack, hence it is only popped once the
+     * remaining mediators complete.
+     */
+    @Override
+    public boolean resume(MessageContext synCtx, int position) {
+        try {
+            return super.resume(synCtx, position);
+        } finally {
+            popFuncContextFrom(synCtx);
+        }
+    }
+
     /**
      * for each message coming to this function template ,pushes a function context containing
      * parameters into Synapse Function Stack.
@@ -22,7 +22,10 @@ package org.apache.synapse.mediators.transform;
 import org.apache.axiom.om.OMElement;
 import org.apache.axiom.om.util.AXIOMUtil;
 import org.apache.axiom.soap.SOAPBody;
+import org.apache.axis2.Constants;
 import org.apache.synapse.MessageContext;
+import org.apache.synapse.SynapseException;
+import org.apache.synapse.core.axis2.Axis2MessageContext;
 import org.apache.synapse.mediators.AbstractMediator;
 import org.apache.synapse.util.xpath.SynapseXPath;
 
@@ -39,23 +42,43 @@ import java.util.regex.Pattern;
  * mediator.<p/>
  * Each argument in the mediator configuration could be a static value or an XPath expression.
  * When an expression is used, argument value is fetched at runtime by evaluating the provided XPath
- * expression against the existing SOAP message/message context.
+ * expression against the existing SOAP message/message context.<p/>
+ * The format is compiled once, when it is set, and the new payload is built directly from the
+ * compiled format. Argument values are inserted as text, so they are escaped as required. A
+ * format may also be given as JSON, in which case it is compiled into the XML payload which the
+ * Axis2 JSON formatter writes back as the same JSON.
  */
 public class PayloadFactoryMediator extends AbstractMediator {
 
+    public static final String XML_TYPE = "xml";
+    public static final String JSON_TYPE = "json";
+
+    private static final String JSON_CONTENT_TYPE = "application/json";
+
     /**
      * Stores the new payload format.
      */
     private String format;
 
+    /**
+     * The media type of the format, xml or json
+     */
+    private String mediaType = XML_TYPE;
+
+    /**
+     * The compiled format, or null if the format could not be compiled, in which case the
+     * arguments are substituted into the format text and the result is parsed for each message.
+     */
+    private PayloadTemplate template;
+
     /**
      * Stores the argument list, argument values are computed dynamically at mediation time.
      */
     private List<Argument> argumentList = new ArrayList<Argument>();
 
     /**
-     * Pattern object used for regex processing. This finds occurrences of $n, where n is a positive
-     * number, to replace them with argument values.
+     * Pattern object used for regex processing, for the formats which could not be compiled. This
+     * finds occurrences of $n, where n is a positive number, to replace them with argument values.
      */
     private Pattern pattern = Pattern.compile("\\$(\\d)+");
 
@@ -69,6 +92,32 @@ public class PayloadFactoryMediator extends AbstractMediator {
 
         SOAPBody soapBody = synCtx.getEnvelope().getBody();
 
+        PayloadTemplate template = this.template;
+        if (template != null) {
+            Object[] argValues = getArgValues(synCtx);
+            if (argValues.length < template.getArgumentCount()) {
+                handleException("The payloadFactory format refers to $" +
+                        template.getArgumentCount() + ", but only " + argValues.length +
+                        " arguments are provided", synCtx);
+            }
+            String[] args = new String[argValues.length];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = argValues[i].toString();
+            }
+
+            // replace the existing payload with the new payload
+            soapBody.removeChildren();
+            template.build(soapBody.getOMFactory(), soapBody, args);
+
+            if (JSON_TYPE.equals(mediaType) && synCtx instanceof Axis2MessageContext) {
+                org.apache.axis2.context.MessageContext axis2Ctx =
+                        ((Axis2MessageContext) synCtx).getAxis2MessageContext();
+                axis2Ctx.setProperty(Constants.Configuration.MESSAGE_TYPE, JSON_CONTENT_TYPE);
+                axis2Ctx.setProperty(Constants.Configuration.CONTENT_TYPE, JSON_CONTENT_TYPE);
+            }
+            return true;
+        }
+
         StringBuffer result = new StringBuffer();
         transformPayload(result, synCtx);
 
@@ -143,6 +192,45 @@ public class PayloadFactoryMediator extends AbstractMediator {
 
     public void setFormat(String format) {
         this.format = format;
+        compileFormat();
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public void setMediaType(String mediaType) {
+        if (!XML_TYPE.equals(mediaType) && !JSON_TYPE.equals(mediaType)) {
+            throw new SynapseException("Unsupported payloadFactory media type: " + mediaType);
+        }
+        this.mediaType = mediaType;
+        compileFormat();
+    }
+
+    private void compileFormat() {
+        template = null;
+        if (format == null) {
+            return;
+        }
+
+        if (JSON_TYPE.equals(mediaType)) {
+            try {
+                template = PayloadTemplate.compileJSON(format);
+            } catch (IllegalArgumentException e) {
+                throw new SynapseException("Invalid JSON format in the payloadFactory mediator: " +
+                        e.getMessage(), e);
+            }
+        } else {
+            try {
+                template = PayloadTemplate.compileXML(format);
+            } catch (XMLStreamException e) {
+                log.warn("Unable to parse the payloadFactory format, arguments will be " +
+                        "substituted into the format text", e);
+            } catch (IllegalArgumentException e) {
+                log.warn("Unable to compile the payloadFactory format, arguments will be " +
+                        "substituted into the format text: " + e.getMessage());
+            }
+        }
     }
 
     public void addArgument(Argument arg) {
@@ -0,0 +1,519 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.mediators.transform;
+
+import org.apache.axiom.om.OMAttribute;
+import org.apache.axiom.om.OMComment;
+import org.apache.axiom.om.OMContainer;
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.OMFactory;
+import org.apache.axiom.om.OMNamespace;
+import org.apache.axiom.om.OMNode;
+import org.apache.axiom.om.OMText;
+import org.apache.axiom.om.util.AXIOMUtil;
+
+import javax.xml.stream.XMLStreamException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A payload factory format compiled into a tree of elements, in which text content and attribute
+ * values are split into literal segments and argument slots. The format is parsed once, and the
+ * payload of each message is built directly from the tree. As argument values only ever end up
+ * in text nodes and attribute values, they are escaped when the payload is serialized, and can
+ * never change the structure of the payload.
+ * <p/>
+ * A JSON format is compiled into the same tree, following the mapped convention of the Axis2 JSON
+ * builder and formatter: the single member of the top level object becomes the payload element,
+ * object members become child elements, array items become repeated elements, members named
+ * "@name" become attributes and a member named "$" becomes the text content.
+ */
+final class PayloadTemplate {
+
+    /**
+     * Finds occurrences of $n, where n is a positive number
+     */
+    private static final Pattern ARGUMENT = Pattern.compile("\\$(\\d+)");
+
+    private final Element root;
+
+    /** the largest argument number referred to by the format */
+    private final int argumentCount;
+
+    private PayloadTemplate(Element root, int argumentCount) {
+        this.root = root;
+        this.argumentCount = argumentCount;
+    }
+
+    /**
+     * Compile an XML format
+     *
+     * @param format the format, an XML element
+     * @return the compiled format
+     * @throws XMLStreamException if the format is not well-formed
+     * @throws IllegalArgumentException if the format uses a construct which can't be compiled,
+     * such as an argument in a namespace name
+     */
+    static PayloadTemplate compileXML(String format) throws XMLStreamException {
+        Compiler compiler = new Compiler();
+        Element root = compiler.compile(AXIOMUtil.stringToOM(format));
+        return new PayloadTemplate(root, compiler.argumentCount);
+    }
+
+    /**
+     * Compile a JSON format
+     *
+     * @param format the format, a JSON object with a single member
+     * @return the compiled format
+     * @throws IllegalArgumentException if the format is not valid JSON or can't be represented
+     * as an XML payload
+     */
+    static PayloadTemplate compileJSON(String format) {
+        JSONCompiler compiler = new JSONCompiler(format);
+        Element root = compiler.compile();
+        return new PayloadTemplate(root, compiler.argumentCount);
+    }
+
+    /**
+     * @return the largest argument number referred to by the format
+     */
+    int getArgumentCount() {
+        return argumentCount;
+    }
+
+    /**
+     * Build the payload as the last child of the given parent
+     *
+     * @param factory the factory of the parent
+     * @param parent  the parent of the new payload
+     * @param args    argument values, of which there are at least {@link #getArgumentCount()}
+     * @return the payload element
+     */
+    OMElement build(OMFactory factory, OMContainer parent, String[] args) {
+        return root.build(factory, parent, args);
+    }
+
+    /**
+     * A text, split into literal strings and argument indexes
+     */
+    private static final class Segments {
+
+        private final Object[] parts;
+
+        private Segments(Object[] parts) {
+            this.parts = parts;
+        }
+
+        String render(String[] args) {
+            if (parts.length == 1) {
+                Object part = parts[0];
+                return part instanceof String ? (String) part : args[(Integer) part];
+            }
+            StringBuilder sb = new StringBuilder();
+            for (Object part : parts) {
+                sb.append(part instanceof String ? (String) part : args[(Integer) part]);
+            }
+            return sb.toString();
+        }
+    }
+
+    private static abstract class Node {
+        abstract OMNode build(OMFactory factory, OMContainer parent, String[] args);
+    }
+
+    private static final class Text extends Node {
+
+        private final Segments text;
+        private final int type;
+
+        private Text(Segments text, int type) {
+            this.text = text;
+            this.type = type;
+        }
+
+        @Override
+        OMNode build(OMFactory factory, OMContainer parent, String[] args) {
+            if (type == OMNode.COMMENT_NODE) {
+                return factory.createOMComment(parent, text.render(args));
+            }
+            return factory.createOMText(parent, text.render(args), type);
+        }
+    }
+
+    private static final class Attribute {
+
+        private final String localName;
+        private final String namespaceURI;
+        private final String prefix;
+        private final Segments value;
+
+        private Attribute(String localName, String namespaceURI, String prefix, Segments value) {
+            this.localName = localName;
+            this.namespaceURI = namespaceURI;
+            this.prefix = prefix;
+            this.value = value;
+        }
+    }
+
+    private static final class Element extends Node {
+
+        private final String localName;
+        private final String namespaceURI;
+        private final String prefix;
+
+        /** prefix and namespace name pairs declared on the element */
+        private final List<String[]> namespaces = new ArrayList<String[]>();
+        private final List<Attribute> attributes = new ArrayList<Attribute>();
+        private final List<Node> children = new ArrayList<Node>();
+
+        private Element(String localName, String namespaceURI, String prefix) {
+            this.localName = localName;
+            this.namespaceURI = namespaceURI;
+            this.prefix = prefix;
+        }
+
+        @Override
+        OMElement build(OMFactory factory, OMContainer parent, String[] args) {
+            OMNamespace ns = namespaceURI == null ?
+                    null : factory.createOMNamespace(namespaceURI, prefix);
+            OMElement element = factory.createOMElement(localName, ns, parent);
+            for (String[] namespace : namespaces) {
+                if (namespace[0].length() == 0) {
+                    element.declareDefaultNamespace(namespace[1]);
+                } else {
+                    element.declareNamespace(namespace[1], namespace[0]);
+                }
+            }
+            for (Attribute attribute : attributes) {
+                OMNamespace attributeNS = attribute.namespaceURI == null ? null :
+                        factory.createOMNamespace(attribute.namespaceURI, attribute.prefix);
+                element.addAttribute(attribute.localName, attribute.value.render(args),
+                        attributeNS);
+            }
+            for (Node child : children) {
+                child.build(factory, element, args);
+            }
+            return element;
+        }
+    }
+
+    /**
+     * Splits text into segments, and keeps track of the arguments referred to
+     */
+    private static class SegmentCompiler {
+
+        int argumentCount;
+
+        Segments compileText(String text) {
+            Matcher matcher = ARGUMENT.matcher(text);
+            List<Object> parts = new ArrayList<Object>();
+            int last = 0;
+            while (matcher.find()) {
+                if (matcher.start() > last) {
+                    parts.add(text.substring(last, matcher.start()));
+                }
+                int argument = Integer.parseInt(matcher.group(1));
+                if (argument == 0) {
+                    throw new IllegalArgumentException("Arguments are numbered from $1: $0 " +
+                            "is not a valid argument");
+                }
+                argumentCount = Math.max(argumentCount, argument);
+                parts.add(argument - 1);
+                last = matcher.end();
+            }
+            if (last < text.length() || parts.isEmpty()) {
+                parts.add(text.substring(last));
+            }
+            return new Segments(parts.toArray());
+        }
+    }
+
+    private static final class Compiler extends SegmentCompiler {
+
+        Element compile(OMElement source) {
+            OMNamespace ns = source.getNamespace();
+            if (ns != null) {
+                checkLiteral(ns.getNamespaceURI());
+            }
+            Element element = ns == null ? new Element(source.getLocalName(), null, null) :
+                    new Element(source.getLocalName(), ns.getNamespaceURI(), ns.getPrefix());
+
+            for (Iterator itr = source.getAllDeclaredNamespaces(); itr.hasNext();) {
+                OMNamespace declared = (OMNamespace) itr.next();
+                checkLiteral(declared.getNamespaceURI());
+                String prefix = declared.getPrefix() == null ? "" : declared.getPrefix();
+                element.namespaces.add(new String[] {prefix, declared.getNamespaceURI()});
+            }
+
+            for (Iterator itr = source.getAllAttributes(); itr.hasNext();) {
+                OMAttribute attribute = (OMAttribute) itr.next();
+                OMNamespace attributeNS = attribute.getNamespace();
+                if (attributeNS != null) {
+                    checkLiteral(attributeNS.getNamespaceURI());
+                }
+                element.attributes.add(new Attribute(attribute.getLocalName(),
+                        attributeNS == null ? null : attributeNS.getNamespaceURI(),
+                        attributeNS == null ? null : attributeNS.getPrefix(),
+                        compileText(attribute.getAttributeValue())));
+            }
+
+            for (Iterator itr = source.getChildren(); itr.hasNext();) {
+                OMNode child = (OMNode) itr.next();
+                switch (child.getType()) {
+                    case OMNode.ELEMENT_NODE:
+                        element.children.add(compile((OMElement) child));
+                        break;
+                    case OMNode.TEXT_NODE:
+                    case OMNode.SPACE_NODE:
+                    case OMNode.CDATA_SECTION_NODE:
+                        element.children.add(new Text(
+                                compileText(((OMText) child).getText()), child.getType()));
+                        break;
+                    case OMNode.COMMENT_NODE:
+                        element.children.add(new Text(
+                                compileText(((OMComment) child).getValue()), child.getType()));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unsupported node of type " +
+                                child.getType() + " in the format");
+                }
+            }
+            return element;
+        }
+
+        private void checkLiteral(String namespaceURI) {
+            if (namespaceURI != null && ARGUMENT.matcher(namespaceURI).find()) {
+                throw new IllegalArgumentException("Arguments are not supported in namespace " +
+                        "names: " + namespaceURI);
+            }
+        }
+    }
+
+    private static final class JSONCompiler extends SegmentCompiler {
+
+        private final String json;
+        private int pos;
+
+        private JSONCompiler(String json) {
+            this.json = json;
+        }
+
+        Element compile() {
+            expect('{');
+            String name = readString();
+            expect(':');
+            if (name.startsWith("@") || "$".equals(name)) {
+                throw error("The top level member must not be an attribute or text");
+            }
+            if (peek() == '[') {
+                throw error("The top level member must not be an array");
+            }
+            List<Element> elements = new ArrayList<Element>();
+            readMember(name, elements);
+            if (peek() == ',') {
+                throw error("The top level object must have a single member");
+            }
+            expect('}');
+            while (pos < json.length() && Character.isWhitespace(json.charAt(pos))) {
+                pos++;
+            }
+            if (pos < json.length()) {
+                throw error("The format must have a single top level object with a single member");
+            }
+            return elements.get(0);
+        }
+
+        /**
+         * Read the value of a member, and add the elements which represent it
+         */
+        private void readMember(String name, List<? super Element> elements) {
+            checkName(name);
+            char c = peek();
+            if (c == '[') {
+                pos++;
+                if (peek() == ']') {
+                    pos++;
+                    return;
+                }
+                do {
+                    if (peek() == '[') {
+                        throw error("Nested arrays are not supported");
+                    }
+                    readMember(name, elements);
+                } while (next(',', ']'));
+            } else if (c == '{') {
+                pos++;
+                Element element = new Element(name, null, null);
+                if (peek() == '}') {
+                    pos++;
+                } else {
+                    do {
+                        String member = readString();
+                        expect(':');
+                        if (member.startsWith("@")) {
+                            Segments value = readScalar();
+                            checkName(member.substring(1));
+                            element.attributes.add(new Attribute(member.substring(1), null, null,
+                                    value == null ? compileText("") : value));
+                        } else if ("$".equals(member)) {
+                            Segments value = readScalar();
+                            if (value != null) {
+                                element.children.add(new Text(value, OMNode.TEXT_NODE));
+                            }
+                        } else {
+                            readMember(member, element.children);
+                        }
+                    } while (next(',', '}'));
+                }
+                elements.add(element);
+            } else {
+                Element element = new Element(name, null, null);
+                Segments value = readScalar();
+                if (value != null) {
+                    element.children.add(new Text(value, OMNode.TEXT_NODE));
+                }
+                elements.add(element);
+            }
+        }
+
+        /**
+         * Make sure that a member name can be used as an element or attribute name
+         */
+        private void checkName(String name) {
+            boolean valid = name.length() > 0 &&
+                    (Character.isLetter(name.charAt(0)) || name.charAt(0) == '_');
+            for (int i = 1; valid && i < name.length(); i++) {
+                char c = name.charAt(i);
+                valid = Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.';
+            }
+            if (!valid) {
+                throw error("'" + name + "' can't be used as an XML name");
+            }
+        }
+
+        /**
+         * Read a string, number, literal or argument, returning null for a JSON null
+         */
+        private Segments readScalar() {
+            char c = peek();
+            if (c == '"') {
+                return compileText(readString());
+            } else if (c == '{' || c == '[') {
+                throw error("A string, number or literal is expected");
+            }
+            int start = pos;
+            while (pos < json.length() && ",}] \t\r\n".indexOf(json.charAt(pos)) < 0) {
+                pos++;
+            }
+            String token = json.substring(start, pos);
+            if (token.length() == 0) {
+                throw error("A value is expected");
+            } else if ("null".equals(token)) {
+                return null;
+            }
+            return compileText(token);
+        }
+
+        private String readString() {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                if (pos >= json.length()) {
+                    throw error("Unterminated string");
+                }
+                char c = json.charAt(pos++);
+                if (c == '"') {
+                    return sb.toString();
+                } else if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                if (pos >= json.length()) {
+                    throw error("Unterminated string");
+                }
+                c = json.charAt(pos++);
+                switch (c) {
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'u':
+                        if (pos + 4 > json.length()) {
+                            throw error("Invalid unicode escape");
+                        }
+                        try {
+                            sb.append((char) Integer.parseInt(json.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("Invalid unicode escape");
+                        }
+                        pos += 4;
+                        break;
+                    default:
+                        sb.append(c);
+                }
+            }
+        }
+
+        /**
+         * Consume a separator or the closing character
+         *
+         * @return true if a separator was consumed
+         */
+        private boolean next(char separator, char end) {
+            char c = peek();
+            pos++;
+            if (c == separator) {
+                return true;
+            } else if (c == end) {
+                return false;
+            }
+            throw error("'" + separator + "' or '" + end + "' is expected");
+        }
+
+        private void expect(char expected) {
+            if (peek() != expected) {
+                throw error("'" + expected + "' is expected");
+            }
+            pos++;
+        }
+
+        /**
+         * Skip white space and return the next character, without consuming it
+         */
+        private char peek() {
+            while (pos < json.length() && Character.isWhitespace(json.charAt(pos))) {
+                pos++;
+            }
+            if (pos >= json.length()) {
+                throw error("Unexpected end of the format");
+            }
+            return json.charAt(pos);
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + pos +
+                    " of the JSON format");
+        }
+    }
+}
@@ -28,6 +28,7 @@ import org.apache.synapse.SynapseException;
 import org.apache.synapse.SynapseLog;
 import org.apache.synapse.config.Entry;
 import org.apache.synapse.config.SynapseConfigUtils;
+import org.apache.synapse.config.SynapseConfiguration;
 import org.apache.synapse.core.SynapseEnvironment;
 import org.apache.synapse.mediators.AbstractMediator;
 import org.apache.synapse.mediators.Value;
@@ -41,6 +42,8 @@ import org.apache.synapse.util.xpath.SynapseXPath;
 import javax.xml.transform.*;
 import java.nio.charset.Charset;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * The XSLT mediator performs an XSLT transformation requested, using
@@ -61,6 +64,20 @@ import java.util.*;
  */
 public class XSLTMediator extends AbstractMediator {
 
+    /**
+     * A compiled template together with the revision of the registry entry it was compiled
+     * from
+     */
+    private static class CachedTemplates {
+        private final Templates templates;
+        private final long revision;
+
+        CachedTemplates(Templates templates, long revision) {
+            this.templates = templates;
+            this.revision = revision;
+        }
+    }
+
     private static class ErrorListenerImpl implements ErrorListener {
         private final SynapseLog synLog;
         private final String activity;
@@ -149,9 +166,17 @@ public class XSLTMediator extends AbstractMediator {
     /**
      * Cache multiple templates
      * Unique string used as a key for each template
-     * The Template instance used to create a Transformer object. This is  thread-safe
+     * The Template instance used to create a Transformer object. This is  thread-safe.
+     * A template is replaced as a whole when it has been compiled again
+     */
+    private final Map<String, CachedTemplates> cachedTemplatesMap =
+            new ConcurrentHashMap<String, CachedTemplates>();
+
+    /**
+     * Keys of the templates being compiled again from changed registry entries
      */
-    private Map<String, Templates> cachedTemplatesMap = new Hashtable<String, Templates>();
+    private final Set<String> refreshingKeys =
+            Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
     /**
      * The TransformerFactory instance which use to create Templates. This is not thread-safe.
@@ -220,30 +245,29 @@ public class XSLTMediator extends AbstractMediator {
         // Derive actual key from message context
         String generatedXsltKey = xsltKey.evaluateValue(synCtx);
 
-        // get templates from generatedXsltKey
-        Templates cachedTemplates = null;
-
         if (synLog.isTraceTraceEnabled()) {
             synLog.traceTrace("Transformation source : " + sourceNode.toString());
         }
 
-        // determine if it is needed to create or create the template
-        if (isCreationOrRecreationRequired(synCtx)) {
-            // many threads can see this and come here for acquiring the lock
+        // get templates from generatedXsltKey
+        Templates cachedTemplates;
+        CachedTemplates cached = cachedTemplatesMap.get(generatedXsltKey);
+        if (cached == null) {
+            // this is a creation case. Many threads can see this and come here for acquiring
+            // the lock, but only the first thread should create the template
             synchronized (transformerLock) {
-                // only first thread should create the template
-                if (isCreationOrRecreationRequired(synCtx)) {
-                    cachedTemplates = createTemplate(synCtx, synLog, generatedXsltKey);
-                } else {
-                    cachedTemplates = cachedTemplatesMap.get(generatedXsltKey);
-                }
+                cached = cachedTemplatesMap.get(generatedXsltKey);
+                cachedTemplates = cached != null ? cached.templates :
+                        createTemplate(synCtx.getConfiguration(), synLog, generatedXsltKey,
+                                synCtx);
             }
-        }
-        else{
-            //If already cached template then load it from cachedTemplatesMap
-            synchronized (transformerLock){
-                cachedTemplates = cachedTemplatesMap.get(generatedXsltKey);
+        } else {
+            // if the XSLT has changed, keep using the current template while it is
+            // compiled again
+            if (isRecreationRequired(synCtx.getConfiguration(), generatedXsltKey, cached)) {
+                refreshTemplate(synCtx, synLog, generatedXsltKey);
             }
+            cachedTemplates = cached.templates;
         }
 
         try {
@@ -364,30 +388,37 @@ public class XSLTMediator extends AbstractMediator {
 
     /**
      * Create a XSLT template object and assign it to the cachedTemplates variable
-     * @param synCtx current message
+     * @param synCfg current configuration
      * @param synLog logger to use
      * @param generatedXsltKey evaluated xslt key(real key value) for dynamic or static key 
+     * @param synCtx the message the template is created for, used to report errors
      * @return cached template
      */
-    private Templates createTemplate(MessageContext synCtx, SynapseLog synLog, String generatedXsltKey) {
+    private Templates createTemplate(SynapseConfiguration synCfg, SynapseLog synLog,
+                                     String generatedXsltKey, MessageContext synCtx) {
         // Assign created template
         Templates cachedTemplates = null;
 
         // Set an error listener (SYNAPSE-307).
         transFact.setErrorListener(new ErrorListenerImpl(synLog, "stylesheet parsing"));
         // Allow xsl:import and xsl:include resolution
-        transFact.setURIResolver(new CustomJAXPURIResolver(resourceMap,
-                synCtx.getConfiguration()));
+        transFact.setURIResolver(new CustomJAXPURIResolver(resourceMap, synCfg));
 
         try {
-            cachedTemplates = transFact.newTemplates(
-                    SynapseConfigUtils.getStreamSource(synCtx.getEntry(generatedXsltKey)));
+            Entry dp = synCfg.getEntryDefinition(generatedXsltKey);
+            Object xslt = synCfg.getEntry(generatedXsltKey);
+            // revision of the entry the template is compiled from. If the value of the entry
+            // has been replaced in the meantime, compile it again for the next message
+            long revision = dp != null && dp.getValue() == xslt ? dp.getRevision() : -1;
+
+            cachedTemplates = transFact.newTemplates(SynapseConfigUtils.getStreamSource(xslt));
             if (cachedTemplates == null) {
                 // if cached template creation failed
                 handleException("Error compiling the XSLT with key : " + xsltKey, synCtx);
             } else {
                 // if cached template is created then put it in to cachedTemplatesMap
-                cachedTemplatesMap.put(generatedXsltKey, cachedTemplates);
+                cachedTemplatesMap.put(generatedXsltKey,
+                        new CachedTemplates(cachedTemplates, revision));
             }
         } catch (Exception e) {
             handleException("Error creating XSLT transformer using : " + xsltKey, e, synCtx);
@@ -396,29 +427,72 @@ public class XSLTMediator extends AbstractMediator {
     }
 
     /**
-     * Utility method to determine weather it is needed to create a XSLT template
+     * Compile the template again on the Synapse worker pool, unless a task is already doing
+     * so. If the changed XSLT can't be compiled, the current template is kept until the entry
+     * changes again, rather than being compiled again for every message.
      *
-     * @param synCtx current message
-     * @return true if it is needed to create a new XSLT template
+     * @param synCtx the message that found the template outdated, used to report errors
+     * @param synLog logger to use
+     * @param generatedXsltKey evaluated xslt key(real key value) for dynamic or static key
      */
-    private boolean isCreationOrRecreationRequired(MessageContext synCtx) {
-
-        // Derive actual key from message context
-        String generatedXsltKey = xsltKey.evaluateValue(synCtx);
+    private void refreshTemplate(final MessageContext synCtx, final SynapseLog synLog,
+                                 final String generatedXsltKey) {
+        if (!refreshingKeys.add(generatedXsltKey)) {
+            return;
+        }
+        final SynapseConfiguration synCfg = synCtx.getConfiguration();
+        Runnable refresh = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    synchronized (transformerLock) {
+                        CachedTemplates current = cachedTemplatesMap.get(generatedXsltKey);
+                        if (current == null ||
+                                isRecreationRequired(synCfg, generatedXsltKey, current)) {
+                            createTemplate(synCfg, synLog, generatedXsltKey, synCtx);
+                        }
+                    }
+                } catch (SynapseException e) {
+                    // the error has been logged; don't retry until the entry changes
+                    CachedTemplates current = cachedTemplatesMap.get(generatedXsltKey);
+                    Entry dp = synCfg.getEntryDefinition(generatedXsltKey);
+                    if (current != null && dp != null) {
+                        cachedTemplatesMap.put(generatedXsltKey,
+                                new CachedTemplates(current.templates, dp.getRevision()));
+                    }
+                } finally {
+                    refreshingKeys.remove(generatedXsltKey);
+                }
+            }
+        };
+        try {
+            synCtx.getEnvironment().getExecutorService().execute(refresh);
+        } catch (RejectedExecutionException e) {
+            // try again with a later message
+            refreshingKeys.remove(generatedXsltKey);
+        }
+    }
 
-        // if there are no cachedTemplates inside cachedTemplatesMap or
-        // if the template related to this generated key is not cached
-        // then it need to be cached
-        if (cachedTemplatesMap.isEmpty() || !cachedTemplatesMap.containsKey(generatedXsltKey)) {
-            // this is a creation case
-            return true;
-        } else {
-            // build transformer - if necessary
-            Entry dp = synCtx.getConfiguration().getEntryDefinition(generatedXsltKey);
-            // if the xsltKey refers to a dynamic resource, and if it has been expired
-            // it is a recreation case
-            return dp != null && dp.isDynamic() && (!dp.isCached() || dp.isExpired());
+    /**
+     * Utility method to determine weather it is needed to compile a cached XSLT template again
+     *
+     * @param synCfg current configuration
+     * @param generatedXsltKey evaluated xslt key(real key value) for dynamic or static key
+     * @param cached the cached template
+     * @return true if the template has to be compiled again
+     */
+    private boolean isRecreationRequired(SynapseConfiguration synCfg, String generatedXsltKey,
+                                         CachedTemplates cached) {
+        // build transformer - if necessary
+        Entry dp = synCfg.getEntryDefinition(generatedXsltKey);
+        if (dp == null || !dp.isDynamic()) {
+            return false;
         }
+        // if the xsltKey refers to a dynamic resource, let the registry load or refresh
+        // it as needed. If its value has been replaced since the template was compiled,
+        // it is a recreation case
+        synCfg.getEntry(generatedXsltKey);
+        return cached.revision != dp.getRevision();
     }
 
     public SynapseXPath getSource() {
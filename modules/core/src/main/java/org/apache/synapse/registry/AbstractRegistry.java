@@ -22,23 +22,56 @@ package org.apache.synapse.registry;
 import org.apache.axiom.om.OMNode;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.synapse.SynapseException;
 import org.apache.synapse.config.Entry;
 import org.apache.synapse.config.XMLToObjectMapper;
 import org.apache.synapse.endpoints.Endpoint;
 import org.apache.synapse.mediators.base.SequenceMediator;
 
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Implements the core Registry lookup algorithm
+ * Implements the core Registry lookup algorithm.
+ * <p/>
+ * Concurrent requests for an entry which is not cached, or whose cache has expired, share a
+ * single fetch from the registry. If the <code>refreshAheadTime</code> parameter of the registry
+ * is set (in milliseconds), entries are also revalidated in the background: an entry accessed
+ * within that time before it expires is refreshed by a background thread, and an expired entry
+ * keeps being served while it is refreshed, so that request threads do not wait for the
+ * registry. The refreshed value replaces the cached one in a single step.
  */
 public abstract class AbstractRegistry implements Registry {
 
     private static final Log log = LogFactory.getLog(AbstractRegistry.class);
 
+    /** Registry parameter for the time before expiry at which entries are refreshed */
+    public static final String REFRESH_AHEAD_TIME = "refreshAheadTime";
+
     /** The list of configuration properties */
     protected final Properties properties = new Properties();
 
+    /** Time in milliseconds before expiry at which entries are refreshed, 0 if disabled */
+    private long refreshAheadTime = 0;
+
+    /** Refreshes entries in the background, if refresh ahead is enabled */
+    private volatile ThreadPoolExecutor refresher;
+
+    /** The fetches in progress, by entry */
+    private final ConcurrentMap<Entry, FutureTask<Object>> fetches =
+            new ConcurrentHashMap<Entry, FutureTask<Object>>();
+
     /**
      * Get the resource for the given key from this registry
      * @param entry The Entry instance that contains meta-data
@@ -48,6 +81,172 @@ public abstract class AbstractRegistry implements Registry {
     @Override
     public Object getResource(Entry entry, Properties properties) {
 
+        ThreadPoolExecutor refresher = this.refresher;
+        if (entry.isCached()) {
+            if (!entry.isExpired()) {
+                if (refresher != null && needsRefresh(entry)) {
+                    scheduleRefresh(refresher, entry, properties);
+                }
+                return entry.getValue();
+
+            } else if (refresher != null) {
+                // serve the stale value while it is refreshed
+                scheduleRefresh(refresher, entry, properties);
+                return entry.getValue();
+            }
+        }
+        return fetch(entry, properties, false);
+    }
+
+    /**
+     * Fetch the resource of the given entry from the registry, unless a fetch for the entry is
+     * already in progress, in which case wait for its result
+     * @param entry The Entry instance that contains meta-data
+     * @param properties bag of properties with additional information
+     * @param revalidate whether to revalidate the entry even if its cache has not expired
+     * @return the matching resultant object
+     */
+    private Object fetch(final Entry entry, final Properties properties,
+                         final boolean revalidate) {
+
+        FutureTask<Object> task = new FutureTask<Object>(new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                return fetchResource(entry, properties, revalidate);
+            }
+        });
+        FutureTask<Object> existing = fetches.putIfAbsent(entry, task);
+        if (existing != null) {
+            if (log.isDebugEnabled()) {
+                log.debug("Waiting for the fetch in progress for key : " + entry.getKey());
+            }
+            task = existing;
+        } else {
+            try {
+                task.run();
+            } finally {
+                fetches.remove(entry, task);
+            }
+        }
+
+        try {
+            return task.get();
+        } catch (CancellationException e) {
+            // the refresh this lookup was waiting for was discarded
+            return fetch(entry, properties, revalidate);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SynapseException("Interrupted while fetching the resource for key : " +
+                    entry.getKey(), e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new SynapseException("Error fetching the resource for key : " +
+                    entry.getKey(), cause);
+        }
+    }
+
+    /**
+     * Refresh the given entry on the refresher thread, unless a fetch for the entry is already
+     * in progress or queued. The refresh is registered as the fetch in progress for the entry,
+     * so that lookups of the entry in the meantime neither queue further refreshes nor fetch
+     * the entry themselves.
+     * @param refresher the executor to run the refresh
+     * @param entry The Entry instance that contains meta-data
+     * @param properties bag of properties with additional information
+     */
+    private void scheduleRefresh(ThreadPoolExecutor refresher, final Entry entry,
+                                 final Properties properties) {
+
+        final FutureTask<Object> task = new FutureTask<Object>(new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                // the entry may have been fetched since the refresh was queued
+                if (entry.isCached() && !needsRefresh(entry)) {
+                    return entry.getValue();
+                }
+                return fetchResource(entry, properties, true);
+            }
+        });
+        if (fetches.putIfAbsent(entry, task) != null) {
+            return;
+        }
+
+        RefreshTask refresh = new RefreshTask(entry, task);
+        try {
+            refresher.execute(refresh);
+        } catch (RejectedExecutionException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Refresh of the resource " + entry.getKey() + " was rejected");
+            }
+            refresh.discard();
+        }
+    }
+
+    /**
+     * A refresh of an entry, queued to the refresher thread
+     */
+    private class RefreshTask implements Runnable {
+
+        private final Entry entry;
+        private final FutureTask<Object> task;
+
+        RefreshTask(Entry entry, FutureTask<Object> task) {
+            this.entry = entry;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            try {
+                task.run();
+            } finally {
+                fetches.remove(entry, task);
+            }
+            try {
+                task.get();
+            } catch (ExecutionException e) {
+                // keep serving the cached value, and try again on a later access
+                log.warn("Error refreshing the resource " + entry.getKey() + " from " +
+                        "the registry. Previously cached value will be used", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (CancellationException ignore) {
+            }
+        }
+
+        /**
+         * Drop a refresh which will never run. Lookups waiting for it fetch the entry
+         * themselves.
+         */
+        void discard() {
+            fetches.remove(entry, task);
+            task.cancel(false);
+        }
+    }
+
+    /**
+     * @param entry a cached entry
+     * @return true if the entry has expired, or expires within the refresh ahead time
+     */
+    private boolean needsRefresh(Entry entry) {
+        return entry.isExpired() || (entry.getExpiryTime() > 0 &&
+                entry.getExpiryTime() - System.currentTimeMillis() < refreshAheadTime);
+    }
+
+    /**
+     * Fetch the resource of the given entry from the registry, and cache it in the entry
+     * @param entry The Entry instance that contains meta-data
+     * @param properties bag of properties with additional information
+     * @param revalidate whether to revalidate the entry even if its cache has not expired
+     * @return the matching resultant object
+     */
+    private Object fetchResource(Entry entry, Properties properties, boolean revalidate) {
+
         OMNode omNode = null;
         RegistryEntry re = null;
 
@@ -55,7 +254,7 @@ public abstract class AbstractRegistry implements Registry {
         // it at least once and have it cached already?
 
         // if we have an unexpired cached copy, return the cached object
-        if (entry.isCached() && !entry.isExpired()) {
+        if (entry.isCached() && !entry.isExpired() && !revalidate) {
             return entry.getValue();
 
         // if we have not cached the referenced object, fetch it and its RegistryEntry
@@ -82,11 +281,12 @@ public abstract class AbstractRegistry implements Registry {
                 re = getRegistryEntry(entry.getKey());
             }
 
-        // if we have cached it before, and now the cache has expired
+        // if we have cached it before, and now the cache has expired (or is about to)
         // get its *new* registry entry and compare versions and pick new cache duration
-        } else if (entry.isExpired()) {
+        } else {
             if (log.isDebugEnabled()) {
-                log.debug("Cached object has expired for key : " + entry.getKey());
+                log.debug((entry.isExpired() ? "Cached object has expired" :
+                        "Revalidating cached object") + " for key : " + entry.getKey());
             }
             re = getRegistryEntry(entry.getKey());
 
@@ -141,14 +341,15 @@ public abstract class AbstractRegistry implements Registry {
         // if we get here, we have received the raw omNode from the
         // registry and our previous copy (if we had one) has expired or is not valid
         Object expiredValue = entry.getValue();
+        Object value = expiredValue;
 
         // if we have a XMLToObjectMapper for this entry, use it to convert this
         // resource into the appropriate object - e.g. sequence or endpoint
         if (entry.getMapper() != null) {
-            entry.setValue(entry.getMapper().getObjectFromOMNode(omNode, properties));
-
-            if (entry.getValue() instanceof SequenceMediator) {
-                SequenceMediator seq = (SequenceMediator) entry.getValue();
+            // build the new object completely before replacing the cached one
+            value = entry.getMapper().getObjectFromOMNode(omNode, properties);
+            if (value instanceof SequenceMediator) {
+                SequenceMediator seq = (SequenceMediator) value;
                 seq.setDynamic(true);
                 seq.setRegistryKey(entry.getKey());
             }
@@ -162,15 +363,25 @@ public abstract class AbstractRegistry implements Registry {
                 XMLToObjectMapper mapper = getMapper(re.getType());
                 if (mapper != null) {
                     entry.setMapper(mapper);
-                    entry.setValue(mapper.getObjectFromOMNode(omNode, properties));
+                    value = mapper.getObjectFromOMNode(omNode, properties);
 
                 } else {
-                    entry.setValue(omNode);
+                    value = omNode;
                 }
             }
         }
 
-        if (expiredValue != null) {
+        // replace the value together with the cache expiry time specified by the last
+        // getRegistryEntry() call, so that the new value is never seen with the old lease
+        if (re != null) {
+            long expiryTime = re.getCachableDuration() > 0 ?
+                    System.currentTimeMillis() + re.getCachableDuration() : -1;
+            entry.setValue(value, expiryTime, re.getVersion());
+        } else if (value != expiredValue) {
+            entry.setValue(value);
+        }
+
+        if (expiredValue != null && expiredValue != value) {
             // Destroy the old resource so that everything is properly cleaned up
             if (expiredValue instanceof SequenceMediator) {
                 ((SequenceMediator) expiredValue).destroy();
@@ -179,16 +390,6 @@ public abstract class AbstractRegistry implements Registry {
             }
         }
 
-        // increment cache expiry time as specified by the last getRegistryEntry() call
-        if (re != null) {
-            if (re.getCachableDuration() > 0) {
-                entry.setExpiryTime(System.currentTimeMillis() + re.getCachableDuration());
-            } else {
-                entry.setExpiryTime(-1);
-            }
-            entry.setVersion(re.getVersion());
-        }
-
         return entry.getValue();
     }
 
@@ -209,6 +410,56 @@ public abstract class AbstractRegistry implements Registry {
     @Override
     public void init(Properties properties) {
         this.properties.putAll(properties);
+
+        String refreshAhead = (String) properties.get(REFRESH_AHEAD_TIME);
+        if (refreshAhead != null) {
+            try {
+                refreshAheadTime = Long.parseLong(refreshAhead.trim());
+            } catch (NumberFormatException e) {
+                throw new SynapseException("Invalid value : " + refreshAhead + " for the " +
+                        "registry parameter : " + REFRESH_AHEAD_TIME, e);
+            }
+        }
+        if (refreshAheadTime > 0 && refresher == null) {
+            // a single thread, which goes away while there is nothing to refresh
+            refresher = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                        private final AtomicInteger count = new AtomicInteger(1);
+
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread t = new Thread(r, "RegistryRefresher-" +
+                                    count.getAndIncrement());
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    });
+            refresher.allowCoreThreadTimeOut(true);
+        }
+    }
+
+    /**
+     * Stop the background refresher of this registry, if there is one. Refreshes which have
+     * not started yet are discarded, and entries are fetched on demand from then on.
+     */
+    public void destroy() {
+        ThreadPoolExecutor executor = refresher;
+        refresher = null;
+        if (executor != null) {
+            for (Runnable r : executor.shutdownNow()) {
+                if (r instanceof RefreshTask) {
+                    ((RefreshTask) r).discard();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return time in milliseconds before expiry at which entries are refreshed in the
+     *         background, or 0 if entries are only fetched on demand
+     */
+    public long getRefreshAheadTime() {
+        return refreshAheadTime;
     }
 
     @Override
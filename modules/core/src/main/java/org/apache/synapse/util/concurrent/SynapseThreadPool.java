@@ -19,13 +19,39 @@
 
 package org.apache.synapse.util.concurrent;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.synapse.mediators.MediatorWorker;
+import org.apache.synapse.transport.nhttp.util.LatencyHistogram;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * This is the executor service that will be returned by the env
+ * This is the executor service that will be returned by the env.
+ *
+ * <p>Every task handed over to the pool is timed: the time it waited in the queue and the time
+ * it took to run are recorded per sequence (or per task class, for tasks which are not
+ * sequence mediations) into rolling histograms covering roughly the last minute. The pool also
+ * keeps track of the fraction of the run time its threads spend blocked rather than on the
+ * CPU, and can resize itself to <code>processors / (1 - blocking ratio)</code> threads within
+ * the configured bounds, which is the number of threads needed to keep the processors busy.</p>
+ *
+ * <p>When the work queue is bounded, tasks submitted to a saturated pool are handled according
+ * to the rejection policy: they are rejected (the default), run by the submitting thread, or
+ * the submitting thread is blocked until there is room in the queue.</p>
  */
 public class SynapseThreadPool extends ThreadPoolExecutor {
 
+    private static final Log log = LogFactory.getLog(SynapseThreadPool.class);
+
     // default values
     public static final int SYNAPSE_CORE_THREADS  = 20;
     public static final int SYNAPSE_MAX_THREADS   = 100;
@@ -33,6 +59,12 @@ public class SynapseThreadPool extends ThreadPoolExecutor {
     public static final int SYNAPSE_THREAD_QLEN   = -1;
     public static final String SYNAPSE_THREAD_GROUP     = "synapse-thread-group";
     public static final String SYNAPSE_THREAD_ID_PREFIX = "SynapseWorker";
+    public static final long SYNAPSE_BLOCK_TIMEOUT = 30000;
+
+    // rejection policies
+    public static final String REJECTION_ABORT       = "abort";
+    public static final String REJECTION_CALLER_RUNS = "caller-runs";
+    public static final String REJECTION_BLOCK       = "block";
 
     // property keys
     public static final String SYN_THREAD_CORE     = "synapse.threads.core";
@@ -41,6 +73,45 @@ public class SynapseThreadPool extends ThreadPoolExecutor {
     public static final String SYN_THREAD_QLEN     = "synapse.threads.qlen";
     public static final String SYN_THREAD_GROUP    = "synapse.threads.group";
     public static final String SYN_THREAD_IDPREFIX = "synapse.threads.idprefix";
+    public static final String SYN_THREAD_REJECTION     = "synapse.threads.rejection";
+    public static final String SYN_THREAD_BLOCK_TIMEOUT = "synapse.threads.block.timeout";
+    public static final String SYN_THREAD_AUTOSIZE      = "synapse.threads.autosize";
+    public static final String SYN_THREAD_AUTOSIZE_MIN  = "synapse.threads.autosize.min";
+
+    /** Name under which the tasks of sequences without a name are recorded */
+    public static final String ANONYMOUS_SEQUENCE = "Anonymous";
+
+    /** Length of a statistics interval, which is also how often the pool size is revised */
+    private static final long INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    /** Number of past intervals reported by the histograms, in addition to the current one */
+    private static final int HISTOGRAM_INTERVALS = 5;
+
+    /** Windows with less run time than this are too small to say anything about blocking */
+    private static final long MIN_SAMPLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+    private final ConcurrentMap<String, TaskStatistics> statistics =
+            new ConcurrentHashMap<String, TaskStatistics>();
+
+    private final AtomicLong rejectedTasks = new AtomicLong();
+    private final AtomicLong callerRunsTasks = new AtomicLong();
+
+    /** Run time and CPU time of the tasks completed in the current interval */
+    private final AtomicLong wallTime = new AtomicLong();
+    private final AtomicLong cpuTime = new AtomicLong();
+    private final boolean cpuTimeSupported;
+    private volatile double blockingRatio = -1;
+
+    private final AtomicLong nextTick = new AtomicLong(System.nanoTime() + INTERVAL_NANOS);
+
+    private volatile String rejectionPolicy = REJECTION_ABORT;
+    private volatile long blockTimeout = SYNAPSE_BLOCK_TIMEOUT;
+    private volatile boolean autoSizing = false;
+    private volatile int autoSizingMinimum = Runtime.getRuntime().availableProcessors();
+
+    private final BlockingQueue<Runnable> queueView = new QueueView();
 
     /**
      * Constructor for the Synapse thread poll
@@ -57,6 +128,8 @@ public class SynapseThreadPool extends ThreadPoolExecutor {
         super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue,
             new SynapseThreadFactory(
                 new ThreadGroup(SYNAPSE_THREAD_GROUP), SYNAPSE_THREAD_ID_PREFIX));
+        setRejectedExecutionHandler(new RejectionHandler());
+        cpuTimeSupported = isCpuTimeSupported();
     }
 
     /**
@@ -83,5 +156,527 @@ public class SynapseThreadPool extends ThreadPoolExecutor {
         super(corePoolSize, maxPoolSize, keepAliveTime, TimeUnit.SECONDS,
             qlen > 0 ? new LinkedBlockingQueue<Runnable>(qlen) : new LinkedBlockingQueue<Runnable>(),
             new SynapseThreadFactory(new ThreadGroup(threadGroup), threadIdPrefix));
+        setRejectedExecutionHandler(new RejectionHandler());
+        cpuTimeSupported = isCpuTimeSupported();
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (command == null) {
+            throw new NullPointerException();
+        }
+        super.execute(new InstrumentedTask(command, getStatistics(getTaskName(command))));
+    }
+
+    /**
+     * Tasks handed to {@link #submit} are recorded under the name of the callable or runnable
+     * they wrap, rather than under the class of their future
+     */
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+        return new NamedFutureTask<T>(callable, callable.getClass().getName());
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+        return new NamedFutureTask<T>(runnable, value, getTaskName(runnable));
+    }
+
+    /**
+     * @return the tasks which never commenced execution, as they were handed to the pool
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> tasks = super.shutdownNow();
+        List<Runnable> unwrapped = new ArrayList<Runnable>(tasks.size());
+        for (Runnable task : tasks) {
+            unwrapped.add(unwrap(task));
+        }
+        return unwrapped;
+    }
+
+    @Override
+    public boolean remove(Runnable task) {
+        Runnable queued = findQueued(task);
+        return queued != null && super.remove(queued);
+    }
+
+    /**
+     * @return a view of the work queue which holds the tasks as they were handed to the pool.
+     *  Tasks added through the view are timed like the tasks handed to {@link #execute}.
+     */
+    @Override
+    public BlockingQueue<Runnable> getQueue() {
+        return queueView;
+    }
+
+    /**
+     * Find the queued wrapper of the given task
+     *
+     * @param task a task as it was handed to the pool
+     * @return the element of the work queue holding the task, or null if it is not queued
+     */
+    private Runnable findQueued(Object task) {
+        for (Runnable queued : super.getQueue()) {
+            if (queued == task || unwrap(queued) == task) {
+                return queued;
+            }
+        }
+        return null;
+    }
+
+    private Runnable wrap(Runnable task) {
+        return new InstrumentedTask(task, getStatistics(getTaskName(task)));
+    }
+
+    private static Runnable unwrap(Runnable task) {
+        return task instanceof InstrumentedTask ? ((InstrumentedTask) task).task : task;
+    }
+
+    /**
+     * Set the way tasks are handled when both the pool and its queue are full
+     *
+     * @param policy one of {@link #REJECTION_ABORT}, {@link #REJECTION_CALLER_RUNS} or
+     *  {@link #REJECTION_BLOCK}
+     */
+    public void setRejectionPolicy(String policy) {
+        if (!REJECTION_ABORT.equals(policy) && !REJECTION_CALLER_RUNS.equals(policy)
+                && !REJECTION_BLOCK.equals(policy)) {
+            throw new IllegalArgumentException("Unknown rejection policy : " + policy);
+        }
+        this.rejectionPolicy = policy;
+    }
+
+    public String getRejectionPolicy() {
+        return rejectionPolicy;
+    }
+
+    /**
+     * Set how long the {@link #REJECTION_BLOCK} policy waits for room in the queue before
+     * rejecting a task
+     *
+     * @param blockTimeout the timeout in milliseconds
+     */
+    public void setBlockTimeout(long blockTimeout) {
+        this.blockTimeout = blockTimeout;
+    }
+
+    public long getBlockTimeout() {
+        return blockTimeout;
+    }
+
+    public boolean isAutoSizing() {
+        return autoSizing;
+    }
+
+    public void setAutoSizing(boolean autoSizing) {
+        this.autoSizing = autoSizing;
+    }
+
+    public int getAutoSizingMinimum() {
+        return autoSizingMinimum;
+    }
+
+    /**
+     * Set the smallest core pool size the pool may shrink to when sizing itself
+     *
+     * @param autoSizingMinimum minimum number of core threads, the number of processors by
+     *  default
+     */
+    public void setAutoSizingMinimum(int autoSizingMinimum) {
+        this.autoSizingMinimum = Math.max(1, autoSizingMinimum);
+    }
+
+    public long getRejectedTaskCount() {
+        return rejectedTasks.get();
+    }
+
+    public long getCallerRunsTaskCount() {
+        return callerRunsTasks.get();
+    }
+
+    /**
+     * Returns the fraction of the run time of tasks which was not spent on the CPU, as
+     * measured over the last complete interval
+     *
+     * @return the blocking ratio between 0 and 1, or -1 if it is not known yet
+     */
+    public double getBlockingRatio() {
+        tick();
+        return blockingRatio;
+    }
+
+    /**
+     * Returns the statistics of the tasks recorded under the given sequence or task name
+     *
+     * @param name name of the sequence, or class name of the task
+     * @return the statistics or null if no such task has been executed
+     */
+    public TaskStatistics getTaskStatistics(String name) {
+        tick();
+        return statistics.get(name);
+    }
+
+    /**
+     * @return names of the sequences and tasks for which statistics have been recorded
+     */
+    public String[] getTaskNames() {
+        return statistics.keySet().toArray(new String[0]);
+    }
+
+    public void resetStatistics() {
+        statistics.clear();
+        rejectedTasks.set(0);
+        callerRunsTasks.set(0);
+    }
+
+    /**
+     * Revise the core pool size using the blocking ratio observed since the last revision.
+     * This is invoked once every interval as tasks complete, and does nothing when there
+     * was not enough work in the interval to measure the blocking ratio.
+     */
+    void adjustPoolSize() {
+        long wall = wallTime.getAndSet(0);
+        long cpu = cpuTime.getAndSet(0);
+        if (cpuTimeSupported) {
+            adjustPoolSize(wall, cpu);
+        }
+    }
+
+    /**
+     * Revise the core pool size for the given run time and CPU time of the tasks completed in
+     * an interval
+     *
+     * @param wall run time of the tasks in nanoseconds
+     * @param cpu  CPU time of the tasks in nanoseconds
+     */
+    void adjustPoolSize(long wall, long cpu) {
+        if (wall < MIN_SAMPLE_NANOS) {
+            return;
+        }
+
+        double ratio = Math.min(0.99, Math.max(0.0, 1.0 - (double) cpu / wall));
+        blockingRatio = ratio;
+        if (!autoSizing) {
+            return;
+        }
+
+        int target = (int) Math.ceil(Runtime.getRuntime().availableProcessors() / (1.0 - ratio));
+        target = Math.max(autoSizingMinimum, Math.min(target, getMaximumPoolSize()));
+        int current = getCorePoolSize();
+        // only grow when there is work waiting for the extra threads
+        if (target < current || (target > current && !super.getQueue().isEmpty())) {
+            if (log.isDebugEnabled()) {
+                log.debug("Resizing the Synapse thread pool from " + current + " to " + target +
+                        " core threads for an observed blocking ratio of " + ratio);
+            }
+            setCorePoolSize(target);
+        }
+    }
+
+    private void tick() {
+        long now = System.nanoTime();
+        long next = nextTick.get();
+        if (now - next < 0 || !nextTick.compareAndSet(next, now + INTERVAL_NANOS)) {
+            return;
+        }
+
+        // rotate once for every interval that has passed, but not more than the window size
+        long missed = Math.min((now - next) / INTERVAL_NANOS + 1, HISTOGRAM_INTERVALS + 1);
+        for (TaskStatistics stats : statistics.values()) {
+            for (int i = 0; i < missed; i++) {
+                stats.rotate();
+            }
+        }
+        adjustPoolSize();
+    }
+
+    private TaskStatistics getStatistics(String name) {
+        TaskStatistics stats = statistics.get(name);
+        if (stats == null) {
+            TaskStatistics newStats = new TaskStatistics();
+            stats = statistics.putIfAbsent(name, newStats);
+            if (stats == null) {
+                stats = newStats;
+            }
+        }
+        return stats;
+    }
+
+    private static String getTaskName(Runnable command) {
+        if (command instanceof NamedFutureTask) {
+            return ((NamedFutureTask) command).name;
+        }
+        if (command instanceof MediatorWorker) {
+            String name = ((MediatorWorker) command).getSequenceName();
+            return name != null ? name : ANONYMOUS_SEQUENCE;
+        }
+        return command.getClass().getName();
+    }
+
+    private static boolean isCpuTimeSupported() {
+        try {
+            return threadMXBean.isCurrentThreadCpuTimeSupported() &&
+                    threadMXBean.isThreadCpuTimeEnabled();
+        } catch (UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Wraps the tasks handed over to the pool to time them
+     */
+    private class InstrumentedTask implements Runnable {
+
+        private final Runnable task;
+        private final TaskStatistics stats;
+        private final long submitted = System.nanoTime();
+
+        InstrumentedTask(Runnable task, TaskStatistics stats) {
+            this.task = task;
+            this.stats = stats;
+        }
+
+        @Override
+        public void run() {
+            long started = System.nanoTime();
+            long cpuStarted = cpuTimeSupported ? threadMXBean.getCurrentThreadCpuTime() : 0;
+            try {
+                task.run();
+            } finally {
+                long finished = System.nanoTime();
+                if (cpuTimeSupported) {
+                    cpuTime.addAndGet(threadMXBean.getCurrentThreadCpuTime() - cpuStarted);
+                    wallTime.addAndGet(finished - started);
+                }
+                stats.record(started - submitted, finished - started);
+                tick();
+            }
+        }
+    }
+
+    /**
+     * The future of a task handed to {@link #submit}, which keeps the name of the task
+     */
+    private static class NamedFutureTask<T> extends FutureTask<T> {
+
+        private final String name;
+
+        NamedFutureTask(Callable<T> callable, String name) {
+            super(callable);
+            this.name = name;
+        }
+
+        NamedFutureTask(Runnable runnable, T value, String name) {
+            super(runnable, value);
+            this.name = name;
+        }
+    }
+
+    /**
+     * The work queue as seen from outside the pool, which holds the tasks as they were handed
+     * to the pool rather than the wrappers timing them
+     */
+    private class QueueView extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+
+        private BlockingQueue<Runnable> queue() {
+            return SynapseThreadPool.super.getQueue();
+        }
+
+        @Override
+        public Iterator<Runnable> iterator() {
+            final Iterator<Runnable> it = queue().iterator();
+            return new Iterator<Runnable>() {
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public Runnable next() {
+                    return unwrap(it.next());
+                }
+
+                @Override
+                public void remove() {
+                    it.remove();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return queue().size();
+        }
+
+        @Override
+        public boolean offer(Runnable r) {
+            return queue().offer(wrap(r));
+        }
+
+        @Override
+        public boolean offer(Runnable r, long timeout, TimeUnit unit)
+                throws InterruptedException {
+            return queue().offer(wrap(r), timeout, unit);
+        }
+
+        @Override
+        public void put(Runnable r) throws InterruptedException {
+            queue().put(wrap(r));
+        }
+
+        @Override
+        public Runnable poll() {
+            Runnable r = queue().poll();
+            return r != null ? unwrap(r) : null;
+        }
+
+        @Override
+        public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+            Runnable r = queue().poll(timeout, unit);
+            return r != null ? unwrap(r) : null;
+        }
+
+        @Override
+        public Runnable take() throws InterruptedException {
+            return unwrap(queue().take());
+        }
+
+        @Override
+        public Runnable peek() {
+            Runnable r = queue().peek();
+            return r != null ? unwrap(r) : null;
+        }
+
+        @Override
+        public int remainingCapacity() {
+            return queue().remainingCapacity();
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            Runnable queued = findQueued(o);
+            return queued != null && queue().remove(queued);
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return findQueued(o) != null;
+        }
+
+        @Override
+        public int drainTo(Collection<? super Runnable> c) {
+            return drainTo(c, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public int drainTo(Collection<? super Runnable> c, int maxElements) {
+            List<Runnable> drained = new ArrayList<Runnable>();
+            int n = queue().drainTo(drained, maxElements);
+            for (Runnable r : drained) {
+                c.add(unwrap(r));
+            }
+            return n;
+        }
+    }
+
+    /**
+     * Applies the configured rejection policy to the tasks the pool could not accept
+     */
+    private class RejectionHandler implements RejectedExecutionHandler {
+
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            if (!executor.isShutdown()) {
+                String policy = rejectionPolicy;
+                if (REJECTION_CALLER_RUNS.equals(policy)) {
+                    callerRunsTasks.incrementAndGet();
+                    r.run();
+                    return;
+
+                } else if (REJECTION_BLOCK.equals(policy)) {
+                    try {
+                        if (SynapseThreadPool.super.getQueue().offer(
+                                r, blockTimeout, TimeUnit.MILLISECONDS)) {
+                            return;
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+
+            rejectedTasks.incrementAndGet();
+            throw new RejectedExecutionException("The Synapse thread pool is saturated - " +
+                    executor.getPoolSize() + " threads active and " +
+                    SynapseThreadPool.super.getQueue().size() + " tasks queued");
+        }
+    }
+
+    /**
+     * Queue time and run time distribution of the tasks of one sequence. Times are
+     * recorded in microseconds and reported in milliseconds.
+     */
+    public static class TaskStatistics {
+
+        private final LatencyHistogram queueTime = new LatencyHistogram(HISTOGRAM_INTERVALS);
+        private final LatencyHistogram runTime = new LatencyHistogram(HISTOGRAM_INTERVALS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalQueueTime = new AtomicLong();
+        private final AtomicLong totalRunTime = new AtomicLong();
+
+        void record(long queueNanos, long runNanos) {
+            long queueMicros = TimeUnit.NANOSECONDS.toMicros(queueNanos);
+            long runMicros = TimeUnit.NANOSECONDS.toMicros(runNanos);
+            queueTime.record(queueMicros);
+            runTime.record(runMicros);
+            totalQueueTime.addAndGet(queueMicros);
+            totalRunTime.addAndGet(runMicros);
+            count.incrementAndGet();
+        }
+
+        void rotate() {
+            queueTime.rotate();
+            runTime.rotate();
+        }
+
+        /**
+         * @return number of tasks completed since the statistics were last reset
+         */
+        public long getCount() {
+            return count.get();
+        }
+
+        /**
+         * @return average queue time in milliseconds since the statistics were last reset
+         */
+        public double getAverageQueueTime() {
+            long n = count.get();
+            return n == 0 ? 0 : totalQueueTime.get() / 1000.0 / n;
+        }
+
+        /**
+         * @return average run time in milliseconds since the statistics were last reset
+         */
+        public double getAverageRunTime() {
+            long n = count.get();
+            return n == 0 ? 0 : totalRunTime.get() / 1000.0 / n;
+        }
+
+        /**
+         * @param percentile percentile in the range 0 to 100
+         * @return queue time in milliseconds at the given percentile, within the last minute
+         */
+        public double getQueueTimePercentile(double percentile) {
+            return queueTime.getValueAtPercentile(percentile) / 1000.0;
+        }
+
+        /**
+         * @param percentile percentile in the range 0 to 100
+         * @return run time in milliseconds at the given percentile, within the last minute
+         */
+        public double getRunTimePercentile(double percentile) {
+            return runTime.getValueAtPercentile(percentile) / 1000.0;
+        }
     }
 }
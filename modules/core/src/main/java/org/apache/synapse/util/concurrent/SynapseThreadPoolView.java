@@ -0,0 +1,154 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.util.concurrent;
+
+public class SynapseThreadPoolView implements SynapseThreadPoolViewMBean {
+
+    private SynapseThreadPool pool;
+
+    public SynapseThreadPoolView(SynapseThreadPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public int getCorePoolSize() {
+        return pool.getCorePoolSize();
+    }
+
+    @Override
+    public void setCorePoolSize(int size) {
+        pool.setCorePoolSize(size);
+    }
+
+    @Override
+    public int getMaximumPoolSize() {
+        return pool.getMaximumPoolSize();
+    }
+
+    @Override
+    public void setMaximumPoolSize(int size) {
+        pool.setMaximumPoolSize(size);
+    }
+
+    @Override
+    public int getPoolSize() {
+        return pool.getPoolSize();
+    }
+
+    @Override
+    public int getLargestPoolSize() {
+        return pool.getLargestPoolSize();
+    }
+
+    @Override
+    public int getActiveCount() {
+        return pool.getActiveCount();
+    }
+
+    @Override
+    public int getQueueSize() {
+        return pool.getQueue().size();
+    }
+
+    @Override
+    public int getQueueRemainingCapacity() {
+        return pool.getQueue().remainingCapacity();
+    }
+
+    @Override
+    public long getCompletedTaskCount() {
+        return pool.getCompletedTaskCount();
+    }
+
+    @Override
+    public long getRejectedTaskCount() {
+        return pool.getRejectedTaskCount();
+    }
+
+    @Override
+    public long getCallerRunsTaskCount() {
+        return pool.getCallerRunsTaskCount();
+    }
+
+    @Override
+    public String getRejectionPolicy() {
+        return pool.getRejectionPolicy();
+    }
+
+    @Override
+    public void setRejectionPolicy(String policy) {
+        pool.setRejectionPolicy(policy);
+    }
+
+    @Override
+    public double getBlockingRatio() {
+        return pool.getBlockingRatio();
+    }
+
+    @Override
+    public boolean isAutoSizing() {
+        return pool.isAutoSizing();
+    }
+
+    @Override
+    public void setAutoSizing(boolean autoSizing) {
+        pool.setAutoSizing(autoSizing);
+    }
+
+    @Override
+    public String[] getSequenceNames() {
+        return pool.getTaskNames();
+    }
+
+    @Override
+    public long getTaskCount(String sequence) {
+        SynapseThreadPool.TaskStatistics stats = pool.getTaskStatistics(sequence);
+        return stats != null ? stats.getCount() : 0;
+    }
+
+    @Override
+    public double getAverageQueueTime(String sequence) {
+        SynapseThreadPool.TaskStatistics stats = pool.getTaskStatistics(sequence);
+        return stats != null ? stats.getAverageQueueTime() : 0;
+    }
+
+    @Override
+    public double getAverageRunTime(String sequence) {
+        SynapseThreadPool.TaskStatistics stats = pool.getTaskStatistics(sequence);
+        return stats != null ? stats.getAverageRunTime() : 0;
+    }
+
+    @Override
+    public double getQueueTimePercentile(String sequence, double percentile) {
+        SynapseThreadPool.TaskStatistics stats = pool.getTaskStatistics(sequence);
+        return stats != null ? stats.getQueueTimePercentile(percentile) : 0;
+    }
+
+    @Override
+    public double getRunTimePercentile(String sequence, double percentile) {
+        SynapseThreadPool.TaskStatistics stats = pool.getTaskStatistics(sequence);
+        return stats != null ? stats.getRunTimePercentile(percentile) : 0;
+    }
+
+    @Override
+    public void resetStatistics() {
+        pool.resetStatistics();
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.util.concurrent;
+
+/**
+ * JMX MBean interface for monitoring and tuning the Synapse thread pool, which runs the
+ * asynchronous mediations of the Synapse environment. Times are reported in milliseconds.
+ */
+public interface SynapseThreadPoolViewMBean {
+
+    public int getCorePoolSize();
+
+    public void setCorePoolSize(int size);
+
+    public int getMaximumPoolSize();
+
+    public void setMaximumPoolSize(int size);
+
+    public int getPoolSize();
+
+    public int getLargestPoolSize();
+
+    public int getActiveCount();
+
+    public int getQueueSize();
+
+    /**
+     * Get the number of tasks the queue can still take
+     *
+     * @return remaining capacity or Integer.MAX_VALUE if the queue is unbounded
+     */
+    public int getQueueRemainingCapacity();
+
+    public long getCompletedTaskCount();
+
+    public long getRejectedTaskCount();
+
+    /**
+     * Get the number of tasks run by the submitting thread as the pool was saturated
+     *
+     * @return number of tasks run with the caller-runs policy
+     */
+    public long getCallerRunsTaskCount();
+
+    public String getRejectionPolicy();
+
+    /**
+     * Set the rejection policy of the pool
+     *
+     * @param policy one of abort, caller-runs or block
+     */
+    public void setRejectionPolicy(String policy);
+
+    /**
+     * Get the fraction of the run time of tasks not spent on the CPU
+     *
+     * @return blocking ratio between 0 and 1, or -1 if it has not been measured yet
+     */
+    public double getBlockingRatio();
+
+    public boolean isAutoSizing();
+
+    public void setAutoSizing(boolean autoSizing);
+
+    /**
+     * Get the names of the sequences (and other tasks) executed by the pool
+     *
+     * @return An array of strings
+     */
+    public String[] getSequenceNames();
+
+    public long getTaskCount(String sequence);
+
+    public double getAverageQueueTime(String sequence);
+
+    public double getAverageRunTime(String sequence);
+
+    /**
+     * Get the queue time of the tasks of a sequence at the given percentile, over the
+     * last minute
+     *
+     * @param sequence name of the sequence
+     * @param percentile percentile in the range 0 to 100
+     * @return queue time in milliseconds
+     */
+    public double getQueueTimePercentile(String sequence, double percentile);
+
+    /**
+     * Get the run time of the tasks of a sequence at the given percentile, over the
+     * last minute
+     *
+     * @param sequence name of the sequence
+     * @param percentile percentile in the range 0 to 100
+     * @return run time in milliseconds
+     */
+    public double getRunTimePercentile(String sequence, double percentile);
+
+    public void resetStatistics();
+}
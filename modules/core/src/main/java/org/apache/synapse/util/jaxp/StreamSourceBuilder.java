@@ -50,7 +50,7 @@ public class StreamSourceBuilder implements SourceBuilder {
 
     @Override
     public Source getSource(OMElement node) {
-        tmp = synEnv.createOverflowBlob();
+        tmp = synEnv.createScopedOverflowBlob();
         OutputStream out = tmp.getOutputStream();
         try {
             node.serialize(out);
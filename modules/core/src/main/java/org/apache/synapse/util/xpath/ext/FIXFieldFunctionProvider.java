@@ -0,0 +1,49 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.synapse.util.xpath.ext;
+
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.core.axis2.Axis2MessageContext;
+import org.apache.synapse.transport.fix.FIXFieldFunction;
+import org.jaxen.Function;
+
+import javax.xml.namespace.QName;
+
+/**
+ * Provides the <code>fix:field(tag)</code> XPath function, bound to the namespace
+ * http://ws.apache.org/ns/synapse/fix, which reads a field of a message received over the FIX
+ * transport by its tag number without converting the message to XML. Register it in
+ * synapse.properties under synapse.xpath.func.extensions to use it. The FIX transport is only an
+ * optional dependency of Synapse core, so its jar must be on the classpath as well.
+ */
+public class FIXFieldFunctionProvider implements SynapseXpathFunctionContextProvider {
+
+    private static final QName FIX_FIELD = new QName(FIXFieldFunction.NAMESPACE,
+            FIXFieldFunction.NAME, FIXFieldFunction.PREFIX);
+
+    @Override
+    public Function getInitializedExtFunction(MessageContext msgCtxt) {
+        return new FIXFieldFunction(((Axis2MessageContext) msgCtxt).getAxis2MessageContext());
+    }
+
+    @Override
+    public QName getResolvingQName() {
+        return FIX_FIELD;
+    }
+}
@@ -80,4 +80,19 @@ public class DBLookupMediatorSerializationTest extends AbstractTestCase {
         assertTrue(serialization(inputXml, dbLookupFactory, dbLookupSerializer));
         assertTrue(serialization(inputXml, dbLookupSerializer));
     }
+
+    public void testDBLookupMediatorSerializationWithCache() throws Exception {
+
+        String inputXml =
+            "<syn:dblookup xmlns:syn=\"http://ws.apache.org/ns/synapse\">" +
+                    "<syn:connection><syn:pool><syn:dsName>lookupdb</syn:dsName>" +
+                    "</syn:pool></syn:connection><syn:statement><syn:sql>" +
+                    "<![CDATA[select target from destinations where source = ?]]></syn:sql>" +
+                    "<syn:parameter expression=\"4\" type=\"INTEGER\"/>" +
+                    "<syn:result name=\"2\" column=\"int\"/>" +
+                    "<syn:cache timeout=\"30\" maxSize=\"500\"/></syn:statement></syn:dblookup>";
+
+        assertTrue(serialization(inputXml, dbLookupFactory, dbLookupSerializer));
+        assertTrue(serialization(inputXml, dbLookupSerializer));
+    }
 }
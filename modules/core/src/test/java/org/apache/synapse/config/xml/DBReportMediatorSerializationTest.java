@@ -19,6 +19,10 @@
 
 package org.apache.synapse.config.xml;
 
+import org.apache.synapse.SynapseException;
+
+import java.util.Properties;
+
 public class DBReportMediatorSerializationTest extends AbstractTestCase {
 
     private DBReportMediatorFactory dbReportMediatorFactory;
@@ -72,4 +76,30 @@ public class DBReportMediatorSerializationTest extends AbstractTestCase {
         assertTrue(serialization(inputXml, dbReportMediatorFactory, dbReportMediatorSerializer));
         assertTrue(serialization(inputXml, dbReportMediatorSerializer));
     }
-}
\ No newline at end of file
+
+    public void testDBReportMediatorSerializationWithAsyncWriter() throws Exception {
+        String inputXml = "<dbreport xmlns=\"http://ws.apache.org/ns/synapse\">" +
+                          "<connection><pool>" +
+                          "<dsName>DataServiceName</dsName></pool>" +
+                          "</connection><statement><sql><![CDATA[insert into audit values(?)]]>" +
+                          "</sql><parameter expression=\"//symbol\" type=\"VARCHAR\"/>" +
+                          "</statement><async batchSize=\"50\" flushInterval=\"200\" " +
+                          "overflow=\"spill\" spillDirectory=\"work/spill\"/></dbreport>";
+        assertTrue(serialization(inputXml, dbReportMediatorFactory, dbReportMediatorSerializer));
+        assertTrue(serialization(inputXml, dbReportMediatorSerializer));
+    }
+
+    public void testCacheIsRejected() throws Exception {
+        String inputXml = "<dbreport xmlns=\"http://ws.apache.org/ns/synapse\">" +
+                          "<connection><pool>" +
+                          "<dsName>DataServiceName</dsName></pool>" +
+                          "</connection><statement><sql><![CDATA[insert into audit values(?)]]>" +
+                          "</sql><parameter expression=\"//symbol\" type=\"VARCHAR\"/>" +
+                          "<cache timeout=\"30\"/></statement></dbreport>";
+        try {
+            dbReportMediatorFactory.createMediator(createOMElement(inputXml), new Properties());
+            fail("A dbreport statement must not accept a cache");
+        } catch (SynapseException ignored) {
+        }
+    }
+}
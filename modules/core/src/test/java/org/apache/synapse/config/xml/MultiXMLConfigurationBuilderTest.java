@@ -25,26 +25,99 @@ import java.io.File;
 import java.net.URL;
 import java.util.Properties;
 
+import org.apache.axiom.om.OMElement;
+import org.apache.commons.io.FileUtils;
 import org.apache.synapse.config.SynapseConfiguration;
 import org.apache.synapse.mediators.base.SequenceMediator;
+import org.apache.synapse.mediators.builtin.DropMediator;
 import org.apache.axis2.util.JavaUtils;
 import org.apache.synapse.registry.Registry;
 
 public class MultiXMLConfigurationBuilderTest extends TestCase {
 
     public void testConfigurationBuilder() throws Exception {
-        URL u = this.getClass().getClassLoader().getResource("synapse-config");
-        if (u == null) {
-            fail("Failed to load the synapse-config resource files");
-        }
-        String root = new File(u.toURI()).getAbsolutePath();
-
+        String root = getConfigRoot();
         System.out.println("Using SYNAPSE_CONFIG_HOME=" + root);
         Properties properties = new Properties();
         properties.setProperty("foo", "bar");
         SynapseConfiguration synapseConfig =
                 MultiXMLConfigurationBuilder.getConfiguration(root, properties);
+        assertConfiguration(synapseConfig);
+    }
+
+    public void testParallelConfigurationBuilder() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("foo", "bar");
+        properties.setProperty(MultiXMLConfigurationBuilder.LOADER_THREADS, "4");
+        SynapseConfiguration synapseConfig =
+                MultiXMLConfigurationBuilder.getConfiguration(getConfigRoot(), properties);
+        assertConfiguration(synapseConfig);
+    }
+
+    public void testConfigurationSnapshot() throws Exception {
+        File root = new File(System.getProperty("java.io.tmpdir"),
+                "synapse-config-" + System.currentTimeMillis());
+        FileUtils.copyDirectory(new File(getConfigRoot()), root);
+        // files modified just before the snapshot is written are left out of it
+        long lastModified = System.currentTimeMillis() - 60000;
+        for (Object file : FileUtils.listFiles(root, null, true)) {
+            ((File) file).setLastModified(lastModified);
+        }
+        File snapshotFile = new File(root, "config.snapshot");
+        File foo = new File(root, "sequences/foo.xml");
+
+        try {
+            Properties properties = new Properties();
+            properties.setProperty("foo", "bar");
+            properties.setProperty(MultiXMLConfigurationBuilder.SNAPSHOT_FILE,
+                    snapshotFile.getAbsolutePath());
+
+            assertConfiguration(MultiXMLConfigurationBuilder.getConfiguration(
+                    root.getAbsolutePath(), properties));
+            assertTrue(snapshotFile.exists());
+            ConfigurationSnapshot snapshot = ConfigurationSnapshot.load(snapshotFile);
+            assertNotNull(getDocument(snapshot, root, "sequences/foo.xml"));
+            assertNotNull(getDocument(snapshot, root, "endpoints/epr1.xml"));
+
+            // unchanged files come from the snapshot, and changed ones are parsed again even
+            // if their size is the same
+            FileUtils.writeStringToFile(foo, FileUtils.readFileToString(foo)
+                    .replace("<send/>", "<drop/>"));
+            foo.setLastModified(lastModified + 10000);
+            assertNull(getDocument(snapshot, root, "sequences/foo.xml"));
+            SynapseConfiguration synapseConfig = MultiXMLConfigurationBuilder.getConfiguration(
+                    root.getAbsolutePath(), properties);
+            assertConfiguration(synapseConfig);
+            SequenceMediator seq = synapseConfig.getDefinedSequences().get("foo");
+            assertTrue(seq.getChild(seq.getList().size() - 1) instanceof DropMediator);
+
+            snapshot = ConfigurationSnapshot.load(snapshotFile);
+            assertNotNull(getDocument(snapshot, root, "sequences/foo.xml"));
+
+            // a file modified just before the snapshot is written could change again unnoticed
+            foo.setLastModified(System.currentTimeMillis());
+            MultiXMLConfigurationBuilder.getConfiguration(root.getAbsolutePath(), properties);
+            snapshot = ConfigurationSnapshot.load(snapshotFile);
+            assertNull(getDocument(snapshot, root, "sequences/foo.xml"));
+        } finally {
+            FileUtils.deleteQuietly(root);
+        }
+    }
+
+    private String getConfigRoot() throws Exception {
+        URL u = this.getClass().getClassLoader().getResource("synapse-config");
+        if (u == null) {
+            fail("Failed to load the synapse-config resource files");
+        }
+        return new File(u.toURI()).getAbsolutePath();
+    }
+
+    private OMElement getDocument(ConfigurationSnapshot snapshot, File root, String path) {
+        File file = new File(root, path);
+        return snapshot.getDocument(path, file.length(), file.lastModified());
+    }
 
+    private void assertConfiguration(SynapseConfiguration synapseConfig) {
         assertNotNull(synapseConfig.getDefinedSequences().get("main"));
         assertNotNull(synapseConfig.getDefinedSequences().get("fault"));
         SequenceMediator foo = synapseConfig.getDefinedSequences().get("foo");
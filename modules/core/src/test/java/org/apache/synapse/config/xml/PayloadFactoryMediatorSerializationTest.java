@@ -73,4 +73,14 @@ public class PayloadFactoryMediatorSerializationTest extends AbstractTestCase {
         assertTrue(serialization(inputXml, payloadFactoryMediatorSerializer));
     }
 
+    public void testPayloadFactoryMediatorJSONFormatSerialization() throws Exception {
+
+        String inputXml = "<payloadFactory xmlns=\"http://ws.apache.org/ns/synapse\" media-type=\"json\">" +
+                "<format>{\"foo\":{\"bar\":\"$1\",\"batz\":[1,2]}}</format>" +
+                "<args><arg expression=\"get-property('foo')\"/></args></payloadFactory>";
+
+        assertTrue(serialization(inputXml, payloadFactoryMediatorFactory, payloadFactoryMediatorSerializer));
+        assertTrue(serialization(inputXml, payloadFactoryMediatorSerializer));
+    }
+
 }
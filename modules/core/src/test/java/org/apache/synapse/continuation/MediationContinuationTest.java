@@ -0,0 +1,184 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.continuation;
+
+import junit.framework.TestCase;
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.SynapseConstants;
+import org.apache.synapse.SynapseException;
+import org.apache.synapse.mediators.AbstractMediator;
+import org.apache.synapse.mediators.TestUtils;
+import org.apache.synapse.mediators.base.SequenceMediator;
+
+public class MediationContinuationTest extends TestCase {
+
+    private static final String TRACE = "trace";
+
+    @Override
+    protected void setUp() throws Exception {
+        ContinuationStack.addSuspendingMediator();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        ContinuationStack.removeSuspendingMediator();
+    }
+
+    public void testResumeAfterSuspension() throws Exception {
+        SuspendingMediator callout = new SuspendingMediator();
+        SequenceMediator main = sequence(trace("x"), sequence(trace("a"), callout, trace("b")),
+                trace("y"));
+
+        MessageContext synCtx = TestUtils.getTestContext("<empty/>");
+        assertFalse(main.mediate(synCtx));
+        assertEquals("x,a", synCtx.getProperty(TRACE));
+        assertEquals(Boolean.TRUE, synCtx.getProperty(SynapseConstants.MEDIATION_SUSPENDED));
+
+        callout.continuation.onResponse(TestUtils.getTestContext("<response/>"));
+        assertEquals("x,a,response,b,y", synCtx.getProperty(TRACE));
+        assertNull(synCtx.getProperty(SynapseConstants.MEDIATION_SUSPENDED));
+    }
+
+    public void testLateResultIsIgnored() throws Exception {
+        SuspendingMediator callout = new SuspendingMediator();
+        SequenceMediator main = sequence(callout, trace("b"));
+
+        MessageContext synCtx = TestUtils.getTestContext("<empty/>");
+        main.mediate(synCtx);
+        callout.continuation.onFault(TestUtils.getTestContext("<timeout/>"));
+        callout.continuation.onResponse(TestUtils.getTestContext("<response/>"));
+        assertNull(synCtx.getProperty(TRACE));
+    }
+
+    public void testResponseBeforeUnwinding() throws Exception {
+        SuspendingMediator callout = new SuspendingMediator();
+        callout.respondImmediately = true;
+        SequenceMediator main = sequence(trace("x"), sequence(callout, trace("b")), trace("y"));
+
+        MessageContext synCtx = TestUtils.getTestContext("<empty/>");
+        main.mediate(synCtx);
+        assertEquals("x,response,b,y", synCtx.getProperty(TRACE));
+    }
+
+    public void testSuspendAgainWhileResuming() throws Exception {
+        SuspendingMediator first = new SuspendingMediator();
+        SuspendingMediator second = new SuspendingMediator();
+        SequenceMediator main = sequence(sequence(first, trace("b"), second, trace("c")),
+                trace("y"));
+
+        MessageContext synCtx = TestUtils.getTestContext("<empty/>");
+        main.mediate(synCtx);
+        first.continuation.onResponse(TestUtils.getTestContext("<response/>"));
+        assertEquals("response,b", synCtx.getProperty(TRACE));
+
+        second.continuation.onResponse(TestUtils.getTestContext("<response/>"));
+        assertEquals("response,b,response,c,y", synCtx.getProperty(TRACE));
+        assertEquals(0, ContinuationStack.getCurrent().getDepth());
+    }
+
+    public void testFaultReachesErrorHandlerOfSuspendedSequence() throws Exception {
+        SuspendingMediator callout = new SuspendingMediator();
+        SequenceMediator inner = sequence(trace("a"), callout, trace("b"));
+        inner.setErrorHandler("inner_fault");
+        SequenceMediator main = sequence(inner, trace("y"));
+
+        MessageContext synCtx = TestUtils.getTestContext("<empty/>");
+        synCtx.getConfiguration().addSequence("inner_fault", sequence(trace("fault")));
+        main.mediate(synCtx);
+        assertTrue(synCtx.getFaultStack().isEmpty());
+
+        callout.continuation.onFault(TestUtils.getTestContext("<fault/>"));
+        assertEquals("a,fault", synCtx.getProperty(TRACE));
+        assertTrue(synCtx.getFaultStack().isEmpty());
+    }
+
+    public void testNoContinuationOutsideListMediator() throws Exception {
+        SuspendingMediator callout = new SuspendingMediator();
+        MessageContext synCtx = TestUtils.getTestContext("<empty/>");
+        callout.mediate(synCtx);
+        assertNull(callout.continuation);
+    }
+
+    public void testNoContinuationWithoutSuspendingMediators() throws Exception {
+        ContinuationStack.removeSuspendingMediator();
+        try {
+            SuspendingMediator callout = new SuspendingMediator();
+            MessageContext synCtx = TestUtils.getTestContext("<empty/>");
+            sequence(callout).mediate(synCtx);
+            assertNull(callout.continuation);
+            assertEquals(0, ContinuationStack.getCurrent().getDepth());
+        } finally {
+            ContinuationStack.addSuspendingMediator();
+        }
+    }
+
+    private static SequenceMediator sequence(AbstractMediator... mediators) {
+        SequenceMediator sequence = new SequenceMediator();
+        for (AbstractMediator mediator : mediators) {
+            sequence.addChild(mediator);
+        }
+        return sequence;
+    }
+
+    private static AbstractMediator trace(final String name) {
+        return new AbstractMediator() {
+            @Override
+            public boolean mediate(MessageContext synCtx) {
+                append(synCtx, name);
+                return true;
+            }
+        };
+    }
+
+    private static void append(MessageContext synCtx, String name) {
+        Object trace = synCtx.getProperty(TRACE);
+        synCtx.setProperty(TRACE, trace == null ? name : trace + "," + name);
+    }
+
+    private static class SuspendingMediator extends AbstractMediator
+            implements MediationContinuation.ResponseHandler {
+
+        private MediationContinuation continuation;
+        private boolean respondImmediately = false;
+
+        @Override
+        public boolean mediate(MessageContext synCtx) {
+            continuation = MediationContinuation.suspend(synCtx, this);
+            if (continuation != null && respondImmediately) {
+                try {
+                    continuation.onResponse(TestUtils.getTestContext("<response/>"));
+                } catch (Exception e) {
+                    fail(e.getMessage());
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void onResponse(MessageContext synCtx, MessageContext response) {
+            append(synCtx, "response");
+        }
+
+        @Override
+        public void onFault(MessageContext synCtx, MessageContext faultCtx) {
+            throw new SynapseException("Callout failed");
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.synapse.eventing;
+
+import junit.framework.TestCase;
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.endpoints.AddressEndpoint;
+import org.apache.synapse.mediators.TestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+public class EventDeliveryQueueTest extends TestCase {
+
+    private ManualExecutor executor;
+    private RecordingEndpoint endpoint;
+    private SynapseSubscription subscription;
+
+    @Override
+    protected void setUp() throws Exception {
+        executor = new ManualExecutor();
+        endpoint = new RecordingEndpoint();
+        subscription = new SynapseSubscription();
+        subscription.setId("subscription");
+    }
+
+    public void testEventsAreDeliveredInOrder() throws Exception {
+        EventDeliveryQueue queue = new EventDeliveryQueue(subscription, endpoint, 10, executor);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(queue.offer(event(i)));
+        }
+        // a single task drains the queue
+        assertEquals(1, executor.tasks.size());
+        executor.runAll();
+
+        assertEquals(3, endpoint.values.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(String.valueOf(i), endpoint.values.get(i));
+        }
+        assertEquals(0, queue.size());
+        assertSame(subscription, queue.getSubscription());
+    }
+
+    public void testFullQueueDropsEvents() throws Exception {
+        EventDeliveryQueue queue = new EventDeliveryQueue(subscription, endpoint, 2, executor);
+        assertTrue(queue.offer(event(0)));
+        assertTrue(queue.offer(event(1)));
+        assertFalse(queue.offer(event(2)));
+        assertFalse(queue.offer(event(3)));
+        assertEquals(2, queue.getDroppedEventCount());
+
+        executor.runAll();
+        assertEquals(2, endpoint.values.size());
+        assertTrue(queue.offer(event(4)));
+    }
+
+    public void testLongQueueIsSentInBatches() throws Exception {
+        EventDeliveryQueue queue = new EventDeliveryQueue(subscription, endpoint, 100, executor);
+        for (int i = 0; i < 70; i++) {
+            queue.offer(event(i));
+        }
+        executor.runNext();
+        assertEquals(64, endpoint.values.size());
+        // the task yields the thread and schedules itself again
+        assertEquals(1, executor.tasks.size());
+        executor.runAll();
+        assertEquals(70, endpoint.values.size());
+        assertEquals("69", endpoint.values.get(69));
+    }
+
+    public void testRejectedTaskIsRescheduled() throws Exception {
+        EventDeliveryQueue queue = new EventDeliveryQueue(subscription, endpoint, 10, executor);
+        executor.reject = true;
+        assertTrue(queue.offer(event(0)));
+        assertEquals(1, queue.size());
+
+        executor.reject = false;
+        assertTrue(queue.offer(event(1)));
+        executor.runAll();
+        assertEquals(2, endpoint.values.size());
+    }
+
+    public void testFailedEventDoesNotStopDelivery() throws Exception {
+        EventDeliveryQueue queue = new EventDeliveryQueue(subscription, endpoint, 10, executor);
+        endpoint.failOn = "1";
+        for (int i = 0; i < 3; i++) {
+            queue.offer(event(i));
+        }
+        executor.runAll();
+        assertEquals(3, endpoint.values.size());
+        assertEquals("2", endpoint.values.get(2));
+    }
+
+    private static SharedEventPayload event(int value) throws Exception {
+        return new SharedEventPayload(
+                TestUtils.getTestContext("<event><value>" + value + "</value></event>"));
+    }
+
+    private static class ManualExecutor implements Executor {
+
+        private final List<Runnable> tasks = new ArrayList<Runnable>();
+        private boolean reject = false;
+
+        @Override
+        public void execute(Runnable command) {
+            if (reject) {
+                throw new RejectedExecutionException();
+            }
+            tasks.add(command);
+        }
+
+        void runNext() {
+            tasks.remove(0).run();
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                runNext();
+            }
+        }
+    }
+
+    private static class RecordingEndpoint extends AddressEndpoint {
+
+        private final List<String> values = new ArrayList<String>();
+        private String failOn;
+
+        @Override
+        public void send(MessageContext synCtx) {
+            String value = synCtx.getEnvelope().getBody().getFirstElement()
+                    .getFirstElement().getText();
+            values.add(value);
+            if (value.equals(failOn)) {
+                throw new RuntimeException("Failed to send the event " + value);
+            }
+        }
+    }
+}
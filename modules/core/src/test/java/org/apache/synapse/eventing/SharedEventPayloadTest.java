@@ -0,0 +1,84 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.synapse.eventing;
+
+import junit.framework.TestCase;
+import org.apache.axiom.om.OMElement;
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.SynapseConstants;
+import org.apache.synapse.core.axis2.Axis2MessageContext;
+import org.apache.synapse.mediators.TestUtils;
+import org.apache.synapse.transport.passthru.PassThroughConstants;
+
+import java.util.Iterator;
+
+public class SharedEventPayloadTest extends TestCase {
+
+    private static final String EVENT =
+            "<m:event xmlns:m=\"http://services.samples\"><m:value>42</m:value></m:event>";
+
+    public void testMessagesShareThePayload() throws Exception {
+        SharedEventPayload payload = new SharedEventPayload(TestUtils.getTestContext(EVENT));
+
+        MessageContext first = payload.createMessage();
+        MessageContext second = payload.createMessage();
+        assertNotSame(first.getEnvelope(), second.getEnvelope());
+
+        for (MessageContext message : new MessageContext[] {first, second}) {
+            OMElement event = message.getEnvelope().getBody().getFirstElement();
+            assertEquals("event", event.getLocalName());
+            assertEquals("http://services.samples", event.getNamespace().getNamespaceURI());
+            assertEquals("42", event.getFirstElement().getText());
+            assertEquals("true", message.getProperty(SynapseConstants.OUT_ONLY));
+        }
+    }
+
+    public void testMessagesCanBeChangedIndependently() throws Exception {
+        SharedEventPayload payload = new SharedEventPayload(TestUtils.getTestContext(EVENT));
+
+        MessageContext first = payload.createMessage();
+        first.getEnvelope().getBody().getFirstElement().getFirstElement().setText("changed");
+        first.getEnvelope().getBody().getFirstElement().detach();
+
+        MessageContext second = payload.createMessage();
+        assertEquals("42", second.getEnvelope().getBody().getFirstElement()
+                .getFirstElement().getText());
+    }
+
+    public void testEveryBodyElementIsShared() throws Exception {
+        MessageContext event = TestUtils.getTestContext(EVENT);
+        event.getEnvelope().getBody().addChild(TestUtils.createOMElement("<second/>"));
+        SharedEventPayload payload = new SharedEventPayload(event);
+
+        Iterator children = payload.createMessage().getEnvelope().getBody().getChildElements();
+        assertEquals("event", ((OMElement) children.next()).getLocalName());
+        assertEquals("second", ((OMElement) children.next()).getLocalName());
+        assertFalse(children.hasNext());
+    }
+
+    public void testPipeIsNotShared() throws Exception {
+        MessageContext event = TestUtils.getTestContext(EVENT);
+        ((Axis2MessageContext) event).getAxis2MessageContext().setProperty(
+                PassThroughConstants.PASS_THROUGH_PIPE, new Object());
+        SharedEventPayload payload = new SharedEventPayload(event);
+
+        assertNull(((Axis2MessageContext) payload.createMessage()).getAxis2MessageContext()
+                .getProperty(PassThroughConstants.PASS_THROUGH_PIPE));
+    }
+}
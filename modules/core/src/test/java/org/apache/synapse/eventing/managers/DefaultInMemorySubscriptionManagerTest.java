@@ -0,0 +1,120 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.eventing.managers;
+
+import junit.framework.TestCase;
+import org.apache.axis2.context.MessageContext;
+import org.apache.synapse.eventing.SynapseSubscription;
+import org.apache.synapse.eventing.filters.TopicBasedEventFilter;
+import org.apache.synapse.mediators.TestUtils;
+import org.wso2.eventing.Event;
+import org.wso2.eventing.Subscription;
+
+import javax.xml.namespace.QName;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class DefaultInMemorySubscriptionManagerTest extends TestCase {
+
+    private static final String TOPIC_NS = "http://apache.org/aip";
+    private static final String TOPIC_HEADER = "topic";
+
+    private DefaultInMemorySubscriptionManager subMan;
+
+    @Override
+    protected void setUp() throws Exception {
+        subMan = new DefaultInMemorySubscriptionManager();
+        subMan.addProperty("topicHeaderName", TOPIC_HEADER);
+        subMan.addProperty("topicHeaderNS", TOPIC_NS);
+        subMan.init();
+
+        subscribe("weather", "weather", null);
+        subscribe("storms", "weather/storms", null);
+        subscribe("sports", "sports", null);
+        subscribe("prefix", "weather/storm", null);
+        subscribe("none", null, null);
+
+        Calendar past = Calendar.getInstance();
+        past.add(Calendar.HOUR, -1);
+        subscribe("expired", "weather", past);
+    }
+
+    public void testMatchingSubscriptions() throws Exception {
+        assertMatches("weather", "weather");
+        assertMatches("weather/storms", "weather", "storms");
+        assertMatches("weather/storms/north", "weather", "storms");
+        assertMatches("weather/stormsnorth", "weather");
+        assertMatches("sports", "sports");
+        assertMatches("news");
+        assertMatches(null);
+    }
+
+    public void testUnsubscribe() throws Exception {
+        assertTrue(subMan.unsubscribe("storms"));
+        assertFalse(subMan.unsubscribe("storms"));
+        assertMatches("weather/storms", "weather");
+
+        subscribe("storms", "weather/storms", null);
+        assertMatches("weather/storms", "weather", "storms");
+    }
+
+    public void testResubscribe() throws Exception {
+        subscribe("storms", "sports", null);
+        assertMatches("weather/storms", "weather");
+        assertMatches("sports", "sports", "storms");
+    }
+
+    public void testTopicFilterMatches() {
+        assertTrue(TopicBasedEventFilter.matches("weather/storms", "weather"));
+        assertFalse(TopicBasedEventFilter.matches("weatherstorms", "weather"));
+        assertTrue(TopicBasedEventFilter.matches("weather/storms", " weather"));
+    }
+
+    private void subscribe(String id, String filter, Calendar expires) throws Exception {
+        Subscription subscription = new SynapseSubscription();
+        subscription.setId(id);
+        subscription.setFilterValue(filter);
+        subscription.setExpires(expires);
+        subMan.subscribe(subscription);
+    }
+
+    private void assertMatches(String topic, String... ids) throws Exception {
+        MessageContext msgCtx = TestUtils.getAxis2MessageContext("<event/>", null).
+                getAxis2MessageContext();
+        if (topic != null) {
+            TestUtils.addSOAPHeaderBlock(msgCtx, new QName(TOPIC_NS, TOPIC_HEADER, "aip"), topic);
+        }
+        Event<MessageContext> event = new Event<MessageContext>();
+        event.setMessage(msgCtx);
+
+        List<Subscription> matches = subMan.getMatchingSubscriptions(event);
+        Set<String> matchedIds = new HashSet<String>();
+        for (Subscription subscription : matches) {
+            matchedIds.add(subscription.getId());
+        }
+        assertEquals(ids.length, matches.size());
+        for (String id : ids) {
+            assertTrue("Subscription " + id + " does not match the topic " + topic,
+                    matchedIds.contains(id));
+        }
+    }
+}
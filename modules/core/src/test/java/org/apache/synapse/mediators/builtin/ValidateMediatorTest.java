@@ -37,6 +37,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ValidateMediatorTest extends TestCase {
 
@@ -224,6 +225,52 @@ public class ValidateMediatorTest extends TestCase {
         test(validate, synCtx, true);
     }
 
+    public void testConcurrentValidation() throws Exception {
+        final ValidateMediator validate = new ValidateMediator();
+        validate.setSchemaKeys(createKeyListFromStaticKey("xsd-key"));
+        validate.setSource(createXPath("//m0:CheckPriceRequest"));
+
+        final AtomicInteger failures = new AtomicInteger();
+        TestMediator testMediator = new TestMediator();
+        testMediator.setHandler(
+                new TestMediateHandler() {
+                    @Override
+                    public void handle(MessageContext synCtx) {
+                        failures.incrementAndGet();
+                    }
+                });
+        validate.addChild(testMediator);
+
+        // every thread reuses its validator, also after a message failed the validation
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 10; j++) {
+                            MessageContext synCtx = new TestMessageContextBuilder()
+                                    .addFileEntry("xsd-key", "./../../repository/conf/sample/resources/validate/validate.xsd")
+                                    .setBodyFromString(j % 2 == 0 ? VALID_ENVELOPE : IN_VALID_ENVELOPE)
+                                    .build();
+                            validate.mediate(synCtx);
+                        }
+                    } catch (Throwable t) {
+                        errors.add(t);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(errors.toString(), errors.isEmpty());
+        assertEquals(threads.length * 5, failures.get());
+    }
+
     public void testValidateMediatorValidCaseNoNS() throws Exception {
         // create a validate mediator
         ValidateMediator validate = new ValidateMediator();
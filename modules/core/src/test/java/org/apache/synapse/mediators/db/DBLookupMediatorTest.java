@@ -23,6 +23,8 @@ import junit.extensions.TestSetup;
 import junit.framework.Test;
 import junit.framework.TestSuite;
 import org.apache.synapse.MessageContext;
+import org.apache.synapse.commons.datasource.DBPoolView;
+import org.apache.synapse.commons.datasource.DatasourceMBeanRepository;
 import org.apache.synapse.config.SynapseConfiguration;
 import org.apache.synapse.config.xml.DBLookupMediatorFactory;
 import org.apache.synapse.core.axis2.Axis2SynapseEnvironment;
@@ -35,6 +37,7 @@ import java.util.Properties;
 public class DBLookupMediatorTest extends AbstractMediatorTestCase {
 
     private static DBLookupMediator lookup;
+    private static DBLookupMediator cachedLookup;
 
     public void testLookupMediator1() throws Exception {
         MessageContext synCtx = TestUtils.getTestContext("<dummy><source>5</source></dummy>");
@@ -50,6 +53,99 @@ public class DBLookupMediatorTest extends AbstractMediatorTestCase {
         assertEquals(synCtx.getProperty("categoryProp"), "B");
     }
 
+    public void testCachedLookup() throws Exception {
+        StatementResultCache cache = cachedLookup.getStatementList().get(0).getResultCache();
+        assertNotNull(cache);
+        long hits = cache.getHitCount();
+        long misses = cache.getMissCount();
+
+        MessageContext synCtx = TestUtils.getTestContext("<dummy><source>7</source></dummy>");
+        assertTrue(cachedLookup.mediate(synCtx));
+        assertEquals("svr4", synCtx.getProperty("targetProp"));
+        assertEquals(misses + 1, cache.getMissCount());
+
+        // the cached result is returned even though the row has changed since
+        java.sql.Connection con = cachedLookup.getDataSource().getConnection();
+        java.sql.Statement s = con.createStatement();
+        s.execute("update destinations set target = 'svr5' where source = 7");
+        s.close();
+        con.close();
+
+        synCtx = TestUtils.getTestContext("<dummy><source>7</source></dummy>");
+        assertTrue(cachedLookup.mediate(synCtx));
+        assertEquals("svr4", synCtx.getProperty("targetProp"));
+        assertEquals("C", synCtx.getProperty("categoryProp"));
+        assertEquals(hits + 1, cache.getHitCount());
+
+        // a lookup for other parameter values goes to the database
+        synCtx = TestUtils.getTestContext("<dummy><source>6</source></dummy>");
+        assertTrue(cachedLookup.mediate(synCtx));
+        assertEquals("svr3", synCtx.getProperty("targetProp"));
+        assertEquals(misses + 2, cache.getMissCount());
+
+        // and the uncached mediator sees the change
+        synCtx = TestUtils.getTestContext("<dummy><source>7</source></dummy>");
+        assertTrue(lookup.mediate(synCtx));
+        assertEquals("svr5", synCtx.getProperty("targetProp"));
+
+        cache.clear();
+        synCtx = TestUtils.getTestContext("<dummy><source>7</source></dummy>");
+        assertTrue(cachedLookup.mediate(synCtx));
+        assertEquals("svr5", synCtx.getProperty("targetProp"));
+
+        // the counts are also exposed through the MBean of the data source
+        DBPoolView view = cachedLookup.getDbPoolView();
+        assertNotNull(view);
+        assertSame(view, DatasourceMBeanRepository.getInstance().getMBean(view.getName()));
+        assertEquals(cache.getHitCount(), view.getCacheHitCount());
+        assertEquals(cache.getMissCount(), view.getCacheMissCount());
+        assertEquals(cache.getCoalescedCount(), view.getCacheCoalescedCount());
+        assertEquals(cache.getEvictionCount(), view.getCacheEvictionCount());
+    }
+
+    public void testSharedPoolView() throws Exception {
+        String baseDir = System.getProperty("basedir");
+        if (baseDir == null) {
+            baseDir = ".";
+        }
+        DBLookupMediator other = createCachedLookup(baseDir);
+        MessageContext synCtx = TestUtils.getTestContext("<dummy><source>5</source></dummy>");
+        assertTrue(other.mediate(synCtx));
+        DBPoolView view = cachedLookup.getDbPoolView();
+        assertNotNull(view);
+        assertSame(view, other.getDbPoolView());
+
+        // the MBean is still used by the other mediator of the data source
+        other.destroy();
+        assertSame(view, DatasourceMBeanRepository.getInstance().getMBean(view.getName()));
+    }
+
+    private static DBLookupMediator createCachedLookup(String baseDir) throws Exception {
+        DBLookupMediator mediator = (DBLookupMediator)
+            new DBLookupMediatorFactory().createMediator(createOMElement(
+                "<dblookup xmlns=\"http://ws.apache.org/ns/synapse\">\n" +
+                    "  <connection>\n" +
+                    "    <pool>\n" +
+                    "      <driver>org.apache.derby.jdbc.EmbeddedDriver</driver>\n" +
+                    "      <url>jdbc:derby:" + baseDir + "/target/derbyDB;create=true</url>\n" +
+                    "      <user>user</user>\n" +
+                    "      <password>pass</password>\n" +
+                    "    </pool>\n" +
+                    "  </connection>\n" +
+                    "  <statement>\n" +
+                    "    <sql>select target, category from destinations where source = ? and type = ?</sql>\n" +
+                    "    <parameter expression=\"//source\" type=\"INTEGER\"/>\n" +
+                    "    <parameter value=\"GOLD\" type=\"VARCHAR\"/>\n" +
+                    "    <result name=\"targetProp\" column=\"target\"/>\n" +
+                    "    <result name=\"categoryProp\" column=\"2\"/>\n" +
+                    "    <cache timeout=\"300\" maxSize=\"10\"/>\n" +
+                    "  </statement>\n" +
+                    "</dblookup>"
+            ), new Properties());
+        mediator.init(new Axis2SynapseEnvironment(new SynapseConfiguration()));
+        return mediator;
+    }
+
     public static Test suite() {
         return new TestSetup(new TestSuite(DBLookupMediatorTest.class)) {
 
@@ -86,6 +182,8 @@ public class DBLookupMediatorTest extends AbstractMediatorTestCase {
 
                 lookup.init(new Axis2SynapseEnvironment(new SynapseConfiguration()));
 
+                cachedLookup = createCachedLookup(baseDir);
+
                 java.sql.Statement s = lookup.getDataSource().getConnection().createStatement();
                 try {
                     s.execute("drop table destinations");
@@ -94,12 +192,13 @@ public class DBLookupMediatorTest extends AbstractMediatorTestCase {
                 s.execute("insert into destinations values ('svr1', 5, 'GOLD', 'A')");
                 s.execute("insert into destinations values ('svr2', 5, 'SILVER', 'A')");
                 s.execute("insert into destinations values ('svr3', 6, 'GOLD', 'B')");
+                s.execute("insert into destinations values ('svr4', 7, 'GOLD', 'C')");
                 s.close();
             }
 
             @Override
             protected void tearDown() throws Exception {
-
+                cachedLookup.destroy();
             }
         };
     }
@@ -23,6 +23,7 @@ import junit.extensions.TestSetup;
 import junit.framework.Test;
 import junit.framework.TestSuite;
 import org.apache.synapse.MessageContext;
+import org.apache.synapse.commons.datasource.DBPoolView;
 import org.apache.synapse.config.SynapseConfiguration;
 import org.apache.synapse.config.xml.DBReportMediatorFactory;
 import org.apache.synapse.core.axis2.Axis2SynapseEnvironment;
@@ -37,6 +38,7 @@ import java.util.Properties;
 public class DBReportMediatorTest extends AbstractMediatorTestCase {
 
     private static DBReportMediator report;
+    private static String baseDir;
 
     public void testLookupMediator1() throws Exception {
         MessageContext synCtx = TestUtils.getTestContext(
@@ -55,13 +57,87 @@ public class DBReportMediatorTest extends AbstractMediatorTestCase {
         }
     }
 
+    public void testAsyncReport() throws Exception {
+        DBReportMediator asyncReport = createAsyncReport("");
+        try {
+            for (int i = 0; i < 25; i++) {
+                MessageContext synCtx = TestUtils.getTestContext("<dummy><from>async</from>" +
+                        "<count>" + i + "</count><to>you</to><category>GOLD</category></dummy>");
+                assertTrue(asyncReport.mediate(synCtx));
+            }
+        } finally {
+            // drains the queue before returning
+            asyncReport.destroy();
+        }
+
+        assertEquals(25, countRows("async"));
+        DBPoolView dbPoolView = asyncReport.getDbPoolView();
+        assertEquals(25, dbPoolView.getBatchedStatementCount());
+        // batches of at most 10 rows
+        assertTrue(dbPoolView.getBatchCount() >= 3);
+    }
+
+    public void testAsyncReportSpill() throws Exception {
+        DBReportMediator asyncReport = createAsyncReport(
+                " queueSize=\"1\" overflow=\"spill\" spillDirectory=\"" + baseDir + "/target\"");
+        try {
+            for (int i = 0; i < 20; i++) {
+                MessageContext synCtx = TestUtils.getTestContext("<dummy><from>spill</from>" +
+                        "<count>" + i + "</count><to>you</to><category>GOLD</category></dummy>");
+                assertTrue(asyncReport.mediate(synCtx));
+            }
+        } finally {
+            asyncReport.destroy();
+        }
+
+        assertEquals(20, countRows("spill"));
+    }
+
+    private DBReportMediator createAsyncReport(String asyncAttributes) throws Exception {
+        DBReportMediator asyncReport = (DBReportMediator)
+            new DBReportMediatorFactory().createMediator(createOMElement(
+                "<dbreport xmlns=\"http://ws.apache.org/ns/synapse\">\n" +
+                    "  <connection>\n" +
+                    "    <pool>\n" +
+                    "      <driver>org.apache.derby.jdbc.EmbeddedDriver</driver>\n" +
+                    "      <url>jdbc:derby:" + baseDir + "/target/derbyDB;create=true</url>\n" +
+                    "      <user>user</user>\n" +
+                    "      <password>pass</password>\n" +
+                    "    </pool>\n" +
+                    "  </connection>\n" +
+                    "  <statement>\n" +
+                    "    <sql>insert into async_audit values(?, ?, ?, ?)</sql>\n" +
+                    "    <parameter expression=\"//from\" type=\"VARCHAR\"/>\n" +
+                    "    <parameter expression=\"//count\" type=\"INTEGER\"/>\n" +
+                    "    <parameter expression=\"//to\" type=\"VARCHAR\"/>\n" +
+                    "    <parameter value=\"GOLD\" type=\"VARCHAR\"/>\n" +
+                    "  </statement>\n" +
+                    "  <async batchSize=\"10\" flushInterval=\"100\"" + asyncAttributes + "/>\n" +
+                    "</dbreport>"
+            ), new Properties());
+        asyncReport.init(new Axis2SynapseEnvironment(new SynapseConfiguration()));
+        return asyncReport;
+    }
+
+    private int countRows(String from) throws SQLException {
+        Connection con = report.getDataSource().getConnection();
+        try {
+            ResultSet rs = con.createStatement().executeQuery(
+                "select count(*) from async_audit where fromepr = '" + from + "'");
+            assertTrue(rs.next());
+            return rs.getInt(1);
+        } finally {
+            con.close();
+        }
+    }
+
     public static Test suite() {
         return new TestSetup(new TestSuite(DBReportMediatorTest.class)) {
 
             @Override
             protected void setUp() throws Exception {
 
-                String baseDir = System.getProperty("basedir");
+                baseDir = System.getProperty("basedir");
                 if (baseDir == null) {
                     baseDir = ".";
                 }
@@ -96,6 +172,10 @@ public class DBReportMediatorTest extends AbstractMediatorTestCase {
                     s.execute("drop table audit");
                 } catch (SQLException ignore) {}
                 s.execute("create table audit(fromepr varchar(10), cnt int, toepr varchar(10), category varchar(10))");
+                try {
+                    s.execute("drop table async_audit");
+                } catch (SQLException ignore) {}
+                s.execute("create table async_audit(fromepr varchar(10), cnt int, toepr varchar(10), category varchar(10))");
                 s.close();
             }
 
@@ -0,0 +1,149 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.mediators.db;
+
+import junit.framework.TestCase;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class StatementResultCacheTest extends TestCase {
+
+    public void testHitAndExpiry() throws Exception {
+        StatementResultCache cache = new StatementResultCache(200, 10);
+        CountingLoader loader = new CountingLoader("A");
+        List<String> key = Arrays.asList("5", "GOLD");
+
+        assertEquals("A", cache.get(key, loader).get("prop"));
+        assertEquals("A", cache.get(Arrays.asList("5", "GOLD"), loader).get("prop"));
+        assertEquals(1, loader.count.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        Thread.sleep(300);
+        cache.get(key, loader);
+        assertEquals(2, loader.count.get());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    public void testLRUEviction() throws Exception {
+        StatementResultCache cache = new StatementResultCache(0, 2);
+        CountingLoader loader = new CountingLoader("A");
+
+        cache.get(Collections.singletonList("1"), loader);
+        cache.get(Collections.singletonList("2"), loader);
+        // touch 1, so that 2 is the least recently used one
+        cache.get(Collections.singletonList("1"), loader);
+        cache.get(Collections.singletonList("3"), loader);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+
+        cache.get(Collections.singletonList("1"), loader);
+        assertEquals(3, loader.count.get());
+        cache.get(Collections.singletonList("2"), loader);
+        assertEquals(4, loader.count.get());
+    }
+
+    public void testFailuresAreNotCached() throws Exception {
+        StatementResultCache cache = new StatementResultCache(0, 10);
+        List<String> key = Collections.singletonList("1");
+        try {
+            cache.get(key, new Callable<Map<String, String>>() {
+                @Override
+                public Map<String, String> call() throws Exception {
+                    throw new SQLException("Connection refused");
+                }
+            });
+            fail("The failure of the loader should have been thrown");
+        } catch (SQLException expected) {
+            assertEquals("Connection refused", expected.getMessage());
+        }
+        assertEquals("A", cache.get(key, new CountingLoader("A")).get("prop"));
+    }
+
+    public void testConcurrentMissesAreCoalesced() throws Exception {
+        final StatementResultCache cache = new StatementResultCache(0, 10);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger loads = new AtomicInteger(0);
+        final Callable<Map<String, String>> loader = new Callable<Map<String, String>>() {
+            @Override
+            public Map<String, String> call() throws Exception {
+                loads.incrementAndGet();
+                release.await();
+                return Collections.singletonMap("prop", "A");
+            }
+        };
+
+        int threadCount = 8;
+        final CountDownLatch done = new CountDownLatch(threadCount);
+        final AtomicInteger results = new AtomicInteger(0);
+        for (int i = 0; i < threadCount; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if ("A".equals(cache.get(Collections.singletonList("1"), loader)
+                                .get("prop"))) {
+                            results.incrementAndGet();
+                        }
+                    } catch (Exception ignore) {
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+
+        // wait until all the other threads are waiting for the first one to load the result
+        long deadline = System.currentTimeMillis() + 10000;
+        while (cache.getCoalescedCount() < threadCount - 1 &&
+                System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        release.countDown();
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(threadCount, results.get());
+        assertEquals(1, loads.get());
+        assertEquals(threadCount - 1, cache.getCoalescedCount());
+    }
+
+    private static class CountingLoader implements Callable<Map<String, String>> {
+        private final AtomicInteger count = new AtomicInteger(0);
+        private final String value;
+
+        CountingLoader(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public Map<String, String> call() throws Exception {
+            count.incrementAndGet();
+            return Collections.singletonMap("prop", value);
+        }
+    }
+}
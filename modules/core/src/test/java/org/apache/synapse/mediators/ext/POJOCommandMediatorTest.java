@@ -19,8 +19,10 @@
 
 package org.apache.synapse.mediators.ext;
 
+import org.apache.synapse.ManagedLifecycle;
 import org.apache.synapse.Mediator;
 import org.apache.synapse.MessageContext;
+import org.apache.synapse.SynapseException;
 import org.apache.synapse.TestMessageContext;
 import org.apache.synapse.config.xml.MediatorFactoryFinder;
 import org.apache.synapse.mediators.AbstractMediatorTestCase;
@@ -127,4 +129,35 @@ public class POJOCommandMediatorTest extends AbstractMediatorTestCase {
         assertEquals("testcommand", ctx.getProperty("testCtxProp").toString());
         assertTrue(POJOCommandTestHelper.getInstance().isExecuted());
     }
+
+    public void testPojoReusedAcrossMessages() throws Exception {
+        Mediator pcm = MediatorFactoryFinder.getInstance().getMediator(createOMElement(
+                "<pojoCommand name='org.apache.synapse.mediators.ext.POJOCommandTestImplementedMediator' " +
+                        "xmlns='http://ws.apache.org/ns/synapse'><property name=\"ctxTest\" " +
+                        "context-name=\"testCtxProp\" action=\"ReadAndUpdateContext\"/></pojoCommand>"), new Properties());
+        ((ManagedLifecycle) pcm).init(null);
+
+        for (String value : new String[] {"first", "second"}) {
+            POJOCommandTestHelper.reset();
+            MessageContext ctx = new TestMessageContext();
+            ctx.setProperty("testCtxProp", value);
+            pcm.mediate(ctx);
+            assertEquals(value + "command", ctx.getProperty("testCtxProp"));
+            assertTrue(POJOCommandTestHelper.getInstance().isExecuted());
+        }
+    }
+
+    public void testPojoWithUnsupportedContextValue() throws Exception {
+        Mediator pcm = MediatorFactoryFinder.getInstance().getMediator(createOMElement(
+                "<pojoCommand name='org.apache.synapse.mediators.ext.POJOCommandTestImplementedMediator' " +
+                        "xmlns='http://ws.apache.org/ns/synapse'><property name=\"ctxTest\" " +
+                        "context-name=\"testCtxProp\" action=\"ReadContext\"/></pojoCommand>"), new Properties());
+        MessageContext ctx = new TestMessageContext();
+        ctx.setProperty("testCtxProp", 10);
+        try {
+            pcm.mediate(ctx);
+            fail("A setter taking an Integer value does not exist");
+        } catch (SynapseException expected) {
+        }
+    }
 }
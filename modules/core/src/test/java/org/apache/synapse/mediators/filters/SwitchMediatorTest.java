@@ -29,7 +29,9 @@ import org.apache.synapse.mediators.TestMediator;
 import org.apache.synapse.mediators.TestUtils;
 import org.apache.synapse.util.xpath.SynapseXPath;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.regex.Pattern;
 
 public class SwitchMediatorTest extends TestCase {
@@ -138,6 +140,52 @@ public class SwitchMediatorTest extends TestCase {
         assertTrue("DEFAULT".equals(getExecutedCase()));
     }
 
+    public void testCaseMatcherKeepsFirstMatch() throws Exception {
+        String[] regexes = {
+            "GOOG", "IB.*", ".*SFT", "IBM", "[A-Z]{3}", "\\QA.*\\E", "MS.*", "ORCL|SAP", "IBM\\.N",
+            ".*", "", "A.*B"
+        };
+        List<SwitchCase> cases = new ArrayList<SwitchCase>();
+        for (String regex : regexes) {
+            SwitchCase swCase = new SwitchCase();
+            swCase.setRegex(Pattern.compile(regex));
+            cases.add(swCase);
+        }
+        SwitchCaseMatcher matcher = new SwitchCaseMatcher(cases);
+
+        String[] values = {
+            "GOOG", "IBM", "IBM.N", "IBMXN", "MSFT", "MS", "SFT", "SUN", "ORCL", "SAP", "A.*",
+            "AXB", "", "IB\nM", "MS\nFT", "X\rSFT", "\u2028"
+        };
+        for (String value : values) {
+            SwitchCase expected = null;
+            for (SwitchCase swCase : cases) {
+                if (swCase.matches(value)) {
+                    expected = swCase;
+                    break;
+                }
+            }
+            assertSame("Case selected for " + value, expected, matcher.match(value));
+        }
+    }
+
+    public void testSwitchCaseAddedAfterMediation() throws Exception {
+        setExecutedCase(null);
+        switchMediator.mediate(TestUtils.getTestContext(DEFAULT_REQ));
+        assertEquals("DEFAULT", getExecutedCase());
+
+        SwitchCase caseThree = new SwitchCase();
+        caseThree.setRegex(Pattern.compile("SU.*"));
+        AnonymousListMediator mediatorThree = new AnonymousListMediator();
+        mediatorThree.addAll(Arrays.asList(new Mediator[] {ibmMediator}));
+        caseThree.setCaseMediator(mediatorThree);
+        switchMediator.addCase(caseThree);
+
+        executedCase = null;
+        switchMediator.mediate(TestUtils.getTestContext(DEFAULT_REQ));
+        assertEquals("IBM", getExecutedCase());
+    }
+
     public String getExecutedCase() {
         return executedCase;
     }
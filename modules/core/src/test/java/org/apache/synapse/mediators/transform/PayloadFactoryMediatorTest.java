@@ -20,10 +20,16 @@
 package org.apache.synapse.mediators.transform;
 
 import junit.framework.TestCase;
+import org.apache.axiom.om.OMElement;
+import org.apache.axis2.Constants;
 import org.apache.synapse.MessageContext;
+import org.apache.synapse.SynapseException;
+import org.apache.synapse.core.axis2.Axis2MessageContext;
 import org.apache.synapse.mediators.TestUtils;
 import org.apache.synapse.util.xpath.SynapseXPath;
 
+import javax.xml.namespace.QName;
+
 public class PayloadFactoryMediatorTest extends TestCase {
 
     private static final String SOURCE =
@@ -57,6 +63,64 @@ public class PayloadFactoryMediatorTest extends TestCase {
         testTransformation(mediator);
     }
 
+    public void testArgsAreEscaped() throws Exception {
+
+        PayloadFactoryMediator mediator = new PayloadFactoryMediator();
+        mediator.setFormat("<m:order xmlns:m=\"http://services.samples\" id=\"$2\">" +
+                "<m:symbol>$1</m:symbol><m:note>$1 and $2</m:note></m:order>");
+        PayloadFactoryMediator.Argument arg = new PayloadFactoryMediator.Argument();
+        arg.setValue("<IBM/> & $2");
+        mediator.addArgument(arg);
+        arg = new PayloadFactoryMediator.Argument();
+        arg.setValue("\"1\" \\ $");
+        mediator.addArgument(arg);
+
+        MessageContext synCtx = TestUtils.getTestContext(SOURCE);
+        assertTrue(mediator.mediate(synCtx));
+
+        OMElement order = synCtx.getEnvelope().getBody().getFirstElement();
+        assertEquals("order", order.getLocalName());
+        assertEquals("\"1\" \\ $", order.getAttributeValue(new QName("id")));
+        OMElement symbol = order.getFirstElement();
+        assertNull(symbol.getFirstElement());
+        assertEquals("<IBM/> & $2", symbol.getText());
+        assertEquals("<IBM/> & $2 and \"1\" \\ $",
+                ((OMElement) symbol.getNextOMSibling()).getText());
+    }
+
+    public void testJSONFormat() throws Exception {
+
+        PayloadFactoryMediator mediator = new PayloadFactoryMediator();
+        mediator.setMediaType(PayloadFactoryMediator.JSON_TYPE);
+        mediator.setFormat("{\"getQuote\": {\"request\": {\"@id\": 7, \"symbol\": \"$1\"}, " +
+                "\"tags\": [\"a\", \"b\"]}}");
+        PayloadFactoryMediator.Argument arg = new PayloadFactoryMediator.Argument();
+        SynapseXPath expression = new SynapseXPath("//m:Code");
+        expression.addNamespace("m", "http://services.samples");
+        arg.setExpression(expression);
+        mediator.addArgument(arg);
+
+        MessageContext synCtx = TestUtils.getTestContext(SOURCE);
+        assertTrue(mediator.mediate(synCtx));
+
+        assertEquals("IBM", new SynapseXPath("//getQuote/request/symbol").stringValueOf(synCtx));
+        assertEquals("7", new SynapseXPath("//getQuote/request/@id").stringValueOf(synCtx));
+        assertEquals("2", new SynapseXPath("count(//getQuote/tags)").stringValueOf(synCtx));
+        assertEquals("application/json", ((Axis2MessageContext) synCtx).getAxis2MessageContext()
+                .getProperty(Constants.Configuration.MESSAGE_TYPE));
+    }
+
+    public void testInvalidJSONFormat() throws Exception {
+
+        PayloadFactoryMediator mediator = new PayloadFactoryMediator();
+        mediator.setMediaType(PayloadFactoryMediator.JSON_TYPE);
+        try {
+            mediator.setFormat("{\"a\": 1, \"b\": 2}");
+            fail("A JSON format with more than one top level member must be rejected");
+        } catch (SynapseException expected) {
+        }
+    }
+
     private void testTransformation(PayloadFactoryMediator mediator) throws Exception {
 
         MessageContext synCtx = TestUtils.getTestContext(SOURCE);
@@ -34,6 +34,9 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class SimpleURLRegistryTest extends TestCase {
 
@@ -104,6 +107,136 @@ public class SimpleURLRegistryTest extends TestCase {
         XMLAssert.assertXMLEqual(TEXT_1, reg.getResource(prop, new Properties()).toString());
     }
     
+    public void testRefreshAhead() throws Exception {
+        Registry reg = new SimpleURLRegistry();
+        Properties props = new Properties();
+        props.put("root", "file:./");
+        props.put("cachableDuration", "3000");
+        props.put("refreshAheadTime", "2500");
+        reg.init(props);
+        Entry prop = new Entry();
+        prop.setType(Entry.REMOTE_ENTRY);
+        prop.setKey(FILE);
+
+        // initial load of file from registry
+        XMLAssert.assertXMLEqual(TEXT_1, reg.getResource(prop, new Properties()).toString());
+        long revision = prop.getRevision();
+
+        // wait until the last modified time of the file changes with its content, and
+        // access the entry within the refresh ahead time before it expires
+        Thread.sleep(1100);
+        writeToFile(TEXT_2);
+        XMLAssert.assertXMLEqual(TEXT_1, reg.getResource(prop, new Properties()).toString());
+
+        // the entry is refreshed in the background, before it expires
+        waitForRevisionChange(prop, revision);
+        assertFalse(prop.isExpired());
+        XMLAssert.assertXMLEqual(TEXT_2, reg.getResource(prop, new Properties()).toString());
+        revision = prop.getRevision();
+
+        // once expired, the stale content is served while the entry is refreshed
+        Thread.sleep(1100);
+        writeToFile(TEXT_1);
+        prop.setExpiryTime(System.currentTimeMillis() - 1);
+        XMLAssert.assertXMLEqual(TEXT_2, reg.getResource(prop, new Properties()).toString());
+        waitForRevisionChange(prop, revision);
+        XMLAssert.assertXMLEqual(TEXT_1, reg.getResource(prop, new Properties()).toString());
+    }
+
+    public void testRefreshIsQueuedOnce() throws Exception {
+        final AtomicInteger lookups = new AtomicInteger(0);
+        final CountDownLatch release = new CountDownLatch(1);
+        SimpleURLRegistry reg = new SimpleURLRegistry() {
+            @Override
+            public OMNode lookup(String key) {
+                if (lookups.incrementAndGet() > 1) {
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException ignore) {
+                    }
+                }
+                return super.lookup(key);
+            }
+        };
+        Properties props = new Properties();
+        props.put("root", "file:./");
+        props.put("cachableDuration", "60000");
+        props.put("refreshAheadTime", "60000");
+        reg.init(props);
+        Entry prop = new Entry();
+        prop.setType(Entry.REMOTE_ENTRY);
+        prop.setKey(FILE);
+
+        try {
+            XMLAssert.assertXMLEqual(TEXT_1, reg.getResource(prop, new Properties()).toString());
+            long revision = prop.getRevision();
+
+            // make the cached version stale, so that the refresh reloads the resource even
+            // within the resolution of the modification time of the file
+            writeToFile(TEXT_2);
+            prop.setVersion(Long.MIN_VALUE + 1);
+
+            // every access is within the refresh ahead time, while the first refresh is blocked
+            for (int i = 0; i < 100; i++) {
+                reg.getResource(prop, new Properties());
+            }
+            release.countDown();
+            waitForRevisionChange(prop, revision);
+            Thread.sleep(200);
+            assertEquals(2, lookups.get());
+        } finally {
+            reg.destroy();
+        }
+    }
+
+    public void testConcurrentFetchesAreCoalesced() throws Exception {
+        final AtomicInteger lookups = new AtomicInteger(0);
+        final Registry reg = new SimpleURLRegistry() {
+            @Override
+            public OMNode lookup(String key) {
+                lookups.incrementAndGet();
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException ignore) {
+                }
+                return super.lookup(key);
+            }
+        };
+        Properties props = new Properties();
+        props.put("root", "file:./");
+        props.put("cachableDuration", "60000");
+        reg.init(props);
+        final Entry prop = new Entry();
+        prop.setType(Entry.REMOTE_ENTRY);
+        prop.setKey(FILE);
+
+        int threadCount = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threadCount);
+        final AtomicInteger loaded = new AtomicInteger(0);
+        for (int i = 0; i < threadCount; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        if (reg.getResource(prop, new Properties()) != null) {
+                            loaded.incrementAndGet();
+                        }
+                    } catch (Exception ignore) {
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        start.countDown();
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(threadCount, loaded.get());
+        assertEquals(1, lookups.get());
+    }
+
     public void testLargeFile() throws Exception {
         Registry reg = new SimpleURLRegistry();
         Properties props = new Properties();
@@ -137,6 +270,14 @@ public class SimpleURLRegistryTest extends TestCase {
         FileUtils.deleteQuietly(new File(FILE2));
     }
 
+    private void waitForRevisionChange(Entry entry, long revision) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (entry.getRevision() == revision && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue("The entry was not refreshed", entry.getRevision() != revision);
+    }
+
     private void writeToFile(String content) throws Exception {
         BufferedWriter out = new BufferedWriter(new FileWriter(new File(FILE)));
         out.write(content);
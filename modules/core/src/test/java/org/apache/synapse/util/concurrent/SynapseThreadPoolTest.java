@@ -0,0 +1,239 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.util.concurrent;
+
+import junit.framework.TestCase;
+import org.apache.synapse.mediators.MediatorWorker;
+import org.apache.synapse.mediators.TestUtils;
+import org.apache.synapse.mediators.base.SequenceMediator;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class SynapseThreadPoolTest extends TestCase {
+
+    private SynapseThreadPool pool;
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Override
+    protected void tearDown() throws Exception {
+        release.countDown();
+        if (pool != null) {
+            pool.shutdown();
+            pool.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    public void testAbortPolicy() throws Exception {
+        pool = saturatedPool(SynapseThreadPool.REJECTION_ABORT);
+        try {
+            pool.execute(new Sleeper(0));
+            fail("The task should have been rejected");
+        } catch (RejectedExecutionException expected) {
+        }
+        assertEquals(1, pool.getRejectedTaskCount());
+    }
+
+    public void testCallerRunsPolicy() throws Exception {
+        pool = saturatedPool(SynapseThreadPool.REJECTION_CALLER_RUNS);
+        final AtomicReference<Thread> runner = new AtomicReference<Thread>();
+        pool.execute(new Runnable() {
+            @Override
+            public void run() {
+                runner.set(Thread.currentThread());
+            }
+        });
+        assertSame(Thread.currentThread(), runner.get());
+        assertEquals(1, pool.getCallerRunsTaskCount());
+        assertEquals(0, pool.getRejectedTaskCount());
+    }
+
+    public void testBlockPolicy() throws Exception {
+        pool = saturatedPool(SynapseThreadPool.REJECTION_BLOCK);
+        pool.setBlockTimeout(50);
+        try {
+            pool.execute(new Sleeper(0));
+            fail("The task should have been rejected after the block timeout");
+        } catch (RejectedExecutionException expected) {
+        }
+
+        pool.setBlockTimeout(10000);
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException ignore) {
+                }
+                release.countDown();
+            }
+        }.start();
+        pool.execute(new Sleeper(0));
+        assertEquals(1, pool.getRejectedTaskCount());
+    }
+
+    public void testSequenceStatistics() throws Exception {
+        pool = new SynapseThreadPool(2, 2, 5, -1, "test-group", "test-worker");
+        SequenceMediator seq = new SequenceMediator();
+        seq.setName("foo");
+        for (int i = 0; i < 10; i++) {
+            pool.execute(new MediatorWorker(seq,
+                    TestUtils.createLightweightSynapseMessageContext("<empty/>")));
+        }
+        pool.execute(new MediatorWorker(new SequenceMediator(),
+                TestUtils.createLightweightSynapseMessageContext("<empty/>")));
+        waitForCompletion(11);
+
+        assertEquals(10, pool.getTaskStatistics("foo").getCount());
+        assertEquals(1, pool.getTaskStatistics(SynapseThreadPool.ANONYMOUS_SEQUENCE).getCount());
+        assertTrue(pool.getTaskStatistics("foo").getRunTimePercentile(99) >= 0);
+
+        SynapseThreadPoolView view = new SynapseThreadPoolView(pool);
+        assertEquals(2, view.getSequenceNames().length);
+        assertEquals(10, view.getTaskCount("foo"));
+        assertEquals(0, view.getTaskCount("bar"));
+        view.resetStatistics();
+        assertEquals(0, view.getSequenceNames().length);
+    }
+
+    public void testAutoSizingShrinksForComputeBoundTasks() throws Exception {
+        int processors = Runtime.getRuntime().availableProcessors();
+        pool = new SynapseThreadPool(processors * 4, processors * 4, 5, -1, "test-group",
+                "test-worker");
+        pool.setAutoSizing(true);
+        pool.setAutoSizingMinimum(1);
+
+        // tasks which spent 90 of their 100 ms on the CPU
+        pool.adjustPoolSize(TimeUnit.MILLISECONDS.toNanos(100),
+                TimeUnit.MILLISECONDS.toNanos(90));
+
+        assertEquals(0.1, pool.getBlockingRatio(), 0.001);
+        assertEquals((int) Math.ceil(processors / 0.9), pool.getCorePoolSize());
+    }
+
+    public void testAutoSizingIgnoresShortIntervals() throws Exception {
+        pool = new SynapseThreadPool(8, 8, 5, -1, "test-group", "test-worker");
+        pool.setAutoSizing(true);
+        pool.setAutoSizingMinimum(1);
+        pool.adjustPoolSize(TimeUnit.MILLISECONDS.toNanos(1), TimeUnit.MILLISECONDS.toNanos(1));
+
+        assertEquals(-1.0, pool.getBlockingRatio());
+        assertEquals(8, pool.getCorePoolSize());
+    }
+
+    public void testAutoSizingGrowsForBlockingTasks() throws Exception {
+        pool = new SynapseThreadPool(1, 8, 5, -1, "test-group", "test-worker");
+        pool.setAutoSizing(true);
+        pool.setAutoSizingMinimum(1);
+        pool.execute(new Sleeper(50));
+        waitForCompletion(1);
+
+        // the pool only grows while there is a backlog
+        pool.execute(new Blocker());
+        pool.execute(new Sleeper(0));
+        pool.adjustPoolSize();
+
+        assertTrue(pool.getBlockingRatio() > 0.5);
+        assertEquals(8, pool.getCorePoolSize());
+    }
+
+    public void testSubmittedTasksAreNamedAfterTheirTask() throws Exception {
+        pool = new SynapseThreadPool(2, 2, 5, -1, "test-group", "test-worker");
+        pool.submit(new Sleeper(0)).get();
+        pool.submit(new Callable<String>() {
+            @Override
+            public String call() {
+                return "done";
+            }
+        }).get();
+        waitForCompletion(2);
+
+        assertEquals(1, pool.getTaskStatistics(Sleeper.class.getName()).getCount());
+        assertEquals(2, pool.getTaskNames().length);
+        assertNull(pool.getTaskStatistics(FutureTask.class.getName()));
+    }
+
+    public void testQueuedTasksAreUnwrapped() throws Exception {
+        pool = saturatedPool(SynapseThreadPool.REJECTION_ABORT);
+        Runnable queued = pool.getQueue().peek();
+        assertTrue(queued instanceof Blocker);
+        assertTrue(pool.getQueue().contains(queued));
+
+        assertTrue(pool.remove(queued));
+        assertEquals(0, pool.getQueue().size());
+
+        Sleeper sleeper = new Sleeper(0);
+        pool.execute(sleeper);
+        List<Runnable> pending = pool.shutdownNow();
+        assertEquals(1, pending.size());
+        assertSame(sleeper, pending.get(0));
+    }
+
+    /**
+     * Creates a pool with a single thread and a queue of one, both taken by blocked tasks
+     */
+    private SynapseThreadPool saturatedPool(String policy) {
+        SynapseThreadPool pool = new SynapseThreadPool(1, 1, 5, 1, "test-group", "test-worker");
+        pool.setRejectionPolicy(policy);
+        pool.execute(new Blocker());
+        pool.execute(new Blocker());
+        return pool;
+    }
+
+    private void waitForCompletion(long tasks) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (pool.getCompletedTaskCount() < tasks && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(tasks, pool.getCompletedTaskCount());
+    }
+
+    private class Blocker implements Runnable {
+        @Override
+        public void run() {
+            try {
+                release.await();
+            } catch (InterruptedException ignore) {
+            }
+        }
+    }
+
+    private static class Sleeper implements Runnable {
+
+        private final long millis;
+
+        Sleeper(long millis) {
+            this.millis = millis;
+        }
+
+        @Override
+        public void run() {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException ignore) {
+            }
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.mediators.bsf;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.synapse.SynapseException;
+
+import javax.script.CompiledScript;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of script engines owned by a single {@link ScriptMediator}. Engines which are
+ * not thread safe are used by one message at a time; the pool lets a mediator run as many
+ * messages in parallel as it has engines, instead of serializing all the messages on a single
+ * engine. Engines are created on demand up to the maximum size of the pool, after which callers
+ * wait for an engine to be released. The time spent waiting is recorded, so that an undersized
+ * pool can be identified.
+ */
+public class ScriptEnginePool {
+
+    private static final Log log = LogFactory.getLog(ScriptEnginePool.class);
+
+    /**
+     * Creates the engines of the pool, with the script of the mediator compiled or loaded
+     */
+    public interface EngineFactory {
+        PooledScriptEngine createEngine() throws ScriptException;
+    }
+
+    /**
+     * A script engine of the pool, along with the per engine state of the mediator script
+     */
+    public static class PooledScriptEngine {
+
+        private final ScriptEngine engine;
+        private CompiledScript compiledScript;
+        /** the script sources last evaluated in this engine, for external scripts */
+        private volatile List<String> loadedSources;
+
+        public PooledScriptEngine(ScriptEngine engine) {
+            this.engine = engine;
+        }
+
+        public ScriptEngine getEngine() {
+            return engine;
+        }
+
+        public CompiledScript getCompiledScript() {
+            return compiledScript;
+        }
+
+        public void setCompiledScript(CompiledScript compiledScript) {
+            this.compiledScript = compiledScript;
+        }
+
+        public List<String> getLoadedSources() {
+            return loadedSources;
+        }
+
+        public void setLoadedSources(List<String> loadedSources) {
+            this.loadedSources = loadedSources;
+        }
+    }
+
+    /**
+     * Time in milliseconds a waiting caller sleeps before checking whether it may create an
+     * engine itself
+     */
+    private static final long CREATE_RETRY_INTERVAL = 100;
+
+    private final int maxSize;
+    private final EngineFactory factory;
+    private final BlockingQueue<PooledScriptEngine> idleEngines;
+    private final AtomicInteger size = new AtomicInteger(0);
+
+    private final AtomicLong borrowCount = new AtomicLong(0);
+    private final AtomicLong waitCount = new AtomicLong(0);
+    private final AtomicLong totalWaitTime = new AtomicLong(0);
+    private final AtomicLong maxWaitTime = new AtomicLong(0);
+
+    /**
+     * Create a pool
+     *
+     * @param maxSize the maximum number of engines in the pool
+     * @param factory creates the engines of the pool
+     * @param initialEngine an engine already created for the pool, or null
+     */
+    public ScriptEnginePool(int maxSize, EngineFactory factory, PooledScriptEngine initialEngine) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Invalid script engine pool size : " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.factory = factory;
+        this.idleEngines = new ArrayBlockingQueue<PooledScriptEngine>(maxSize);
+        if (initialEngine != null) {
+            size.incrementAndGet();
+            idleEngines.add(initialEngine);
+        }
+    }
+
+    /**
+     * Take an engine from the pool, creating one if all the engines are in use and the pool
+     * is not full, or waiting for an engine to be released otherwise. A waiting caller
+     * creates an engine itself if the creation of another engine failed in the meantime. The
+     * engine must be returned with {@link #release(PooledScriptEngine)}.
+     *
+     * @return an engine which is not used by any other thread
+     * @throws ScriptException if a new engine could not be created
+     */
+    public PooledScriptEngine borrow() throws ScriptException {
+        borrowCount.incrementAndGet();
+        PooledScriptEngine engine = idleEngines.poll();
+        if (engine != null) {
+            return engine;
+        }
+
+        int current;
+        while ((current = size.get()) < maxSize) {
+            if (size.compareAndSet(current, current + 1)) {
+                try {
+                    engine = factory.createEngine();
+                } finally {
+                    if (engine == null) {
+                        size.decrementAndGet();
+                    }
+                }
+                if (log.isDebugEnabled()) {
+                    log.debug("Created script engine " + (current + 1) + " of " + maxSize);
+                }
+                return engine;
+            }
+        }
+
+        long start = System.nanoTime();
+        try {
+            // The engine being created by another caller may fail, in which case that caller
+            // gives its slot back and the pool has room again, so check for that now and then
+            // instead of waiting only for a release which may never come
+            while ((engine = idleEngines.poll(CREATE_RETRY_INTERVAL,
+                    TimeUnit.MILLISECONDS)) == null) {
+                if ((current = size.get()) < maxSize &&
+                        size.compareAndSet(current, current + 1)) {
+                    try {
+                        engine = factory.createEngine();
+                    } finally {
+                        if (engine == null) {
+                            size.decrementAndGet();
+                        }
+                    }
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SynapseException("Interrupted while waiting for a script engine", e);
+        } finally {
+            recordWait(System.nanoTime() - start);
+        }
+        return engine;
+    }
+
+    /**
+     * Return an engine taken with {@link #borrow()} to the pool
+     *
+     * @param engine the engine
+     */
+    public void release(PooledScriptEngine engine) {
+        idleEngines.offer(engine);
+    }
+
+    private void recordWait(long waitTime) {
+        waitCount.incrementAndGet();
+        totalWaitTime.addAndGet(waitTime);
+        long max;
+        while (waitTime > (max = maxWaitTime.get())) {
+            if (maxWaitTime.compareAndSet(max, waitTime)) {
+                break;
+            }
+        }
+    }
+
+    /** @return the maximum number of engines in the pool */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /** @return the number of engines created so far */
+    public int getSize() {
+        return size.get();
+    }
+
+    /** @return the number of engines not in use */
+    public int getIdleCount() {
+        return idleEngines.size();
+    }
+
+    /** @return the number of times an engine was taken from the pool */
+    public long getBorrowCount() {
+        return borrowCount.get();
+    }
+
+    /** @return the number of times a caller had to wait for an engine */
+    public long getWaitCount() {
+        return waitCount.get();
+    }
+
+    /** @return the average time in milliseconds callers waited for an engine, over all borrows */
+    public double getAverageWaitTime() {
+        long count = borrowCount.get();
+        return count == 0 ? 0 : (double) totalWaitTime.get() / count / 1000000;
+    }
+
+    /** @return the longest time in milliseconds a caller waited for an engine */
+    public long getMaxWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitTime.get());
+    }
+}
@@ -29,6 +29,7 @@ import org.apache.synapse.MessageContext;
 import org.apache.synapse.SynapseException;
 import org.apache.synapse.SynapseLog;
 import org.apache.synapse.config.Entry;
+import org.apache.synapse.config.SynapsePropertiesLoader;
 import org.apache.synapse.mediators.AbstractMediator;
 import org.apache.synapse.mediators.Value;
 import org.mozilla.javascript.Context;
@@ -38,6 +39,10 @@ import javax.script.*;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -57,6 +62,12 @@ import java.util.TreeMap;
  * if not specified it defaults to a function named 'mediate'. The function takes a single
  * parameter which is the Synapse MessageContext. The function may return a boolean, if it
  * does not then true is assumed.
+ * <p/>
+ * Script engines which are not thread safe are taken from a {@link ScriptEnginePool} owned by
+ * the mediator, so that a message is never run on an engine used by another message while
+ * different messages still run in parallel. The maximum size of the pool is set with the
+ * <code>synapse.script.mediator.pool.size</code> property in synapse.properties and defaults
+ * to the number of available processors.
  */
 public class ScriptMediator extends AbstractMediator {
 
@@ -70,6 +81,16 @@ public class ScriptMediator extends AbstractMediator {
      */
     private static final String JAVA_SCRIPT = "js";
 
+    /**
+     * synapse.properties entry for the maximum number of script engines per mediator
+     */
+    private static final String POOL_SIZE_PROPERTY = "synapse.script.mediator.pool.size";
+
+    /**
+     * The maximum number of script engines per mediator, 0 until read from synapse.properties
+     */
+    private static volatile int poolSize = 0;
+
     /**
      * The registry entry key for a script loaded from the registry
      * Handle both static and dynamic(Xpath) Keys
@@ -90,9 +111,10 @@ public class ScriptMediator extends AbstractMediator {
     /**
      * The source code of the script
      */
-    private String scriptSourceCode;
+    private volatile String scriptSourceCode;
     /**
-     * The BSF engine created to process each message through the script
+     * The BSF engine created first for this mediator. It is the only engine used when the
+     * engine supports multi-threading, and the first engine of the pool otherwise
      */
     protected ScriptEngine scriptEngine;
     /**
@@ -100,13 +122,19 @@ public class ScriptMediator extends AbstractMediator {
      */
     private boolean multiThreadedEngine;
     /**
-     * The compiled script. Only used for inline scripts
+     * The engine that is shared by all the messages when the engine supports multi-threading
      */
-    private CompiledScript compiledScript;
+    private ScriptEnginePool.PooledScriptEngine sharedEngine;
     /**
-     * The Invokable script. Only used for external scripts
+     * The engines used one message at a time when the engine doesn't support multi-threading
      */
-    private Invocable invocableScript;
+    private ScriptEnginePool enginePool;
+    /**
+     * The sources of an external script and its includes, in the order they are evaluated.
+     * Replaced as a whole when a source is reloaded, so that each engine can tell whether it
+     * has evaluated the current sources
+     */
+    private volatile List<String> externalSources;
     /**
      * The BSF helper to convert between the XML representations used by Java
      * and the scripting language
@@ -159,7 +187,6 @@ public class ScriptMediator extends AbstractMediator {
             throw new SynapseException("Script engine is not an Invocable" +
                     " engine for language: " + language);
         }
-        invocableScript = (Invocable) scriptEngine;
     }
 
     /**
@@ -189,11 +216,18 @@ public class ScriptMediator extends AbstractMediator {
 
         boolean returnValue;
         if (multiThreadedEngine) {
-            returnValue = invokeScript(synCtx);
+            returnValue = invokeScript(synCtx, sharedEngine);
         } else {
-            // TODO: change to use a pool of script engines (requires an update to BSF)
-            synchronized (scriptEngine.getClass()) {
-                returnValue = invokeScript(synCtx);
+            ScriptEnginePool.PooledScriptEngine engine = null;
+            try {
+                engine = enginePool.borrow();
+            } catch (ScriptException e) {
+                handleException("Error creating a " + language + " script engine", e, synCtx);
+            }
+            try {
+                returnValue = invokeScript(synCtx, engine);
+            } finally {
+                enginePool.release(engine);
             }
         }
 
@@ -208,7 +242,7 @@ public class ScriptMediator extends AbstractMediator {
         return returnValue;
     }
 
-    private boolean invokeScript(MessageContext synCtx) {
+    private boolean invokeScript(MessageContext synCtx, ScriptEnginePool.PooledScriptEngine engine) {
         boolean returnValue;
         try {
 
@@ -220,9 +254,9 @@ public class ScriptMediator extends AbstractMediator {
 
             Object returnObject;
             if (key != null) {
-                returnObject = mediateWithExternalScript(synCtx);
+                returnObject = mediateWithExternalScript(synCtx, engine);
             } else {
-                returnObject = mediateForInlineScript(synCtx);
+                returnObject = mediateForInlineScript(synCtx, engine);
             }
             returnValue = !(returnObject != null && returnObject instanceof Boolean)
                     || (Boolean) returnObject;
@@ -251,36 +285,55 @@ public class ScriptMediator extends AbstractMediator {
      * Mediation implementation when the script to be executed should be loaded from the registry
      *
      * @param synCtx the message context
+     * @param engine the engine to run the script on
      * @return script result
      * @throws ScriptException       For any errors , when compile, run the script
      * @throws NoSuchMethodException If the function is not defined in the script
      */
-    private Object mediateWithExternalScript(MessageContext synCtx)
+    private Object mediateWithExternalScript(MessageContext synCtx,
+                                             ScriptEnginePool.PooledScriptEngine engine)
             throws ScriptException, NoSuchMethodException {
         prepareExternalScript(synCtx);
+        List<String> sources = externalSources;
+        if (engine.getLoadedSources() != sources) {
+            // first use of the engine, or the script or an include was reloaded since. A
+            // multi-threaded engine is shared by all the messages, so only one of them may
+            // evaluate the new sources
+            synchronized (engine) {
+                if (engine.getLoadedSources() != sources) {
+                    for (String source : sources) {
+                        engine.getEngine().eval(source);
+                    }
+                    engine.setLoadedSources(sources);
+                }
+            }
+        }
         ScriptMessageContext scriptMC = new ScriptMessageContext(synCtx, xmlHelper);
-        return invocableScript.invokeFunction(function, new Object[]{scriptMC});        
+        return ((Invocable) engine.getEngine()).invokeFunction(function, new Object[]{scriptMC});
     }
 
     /**
      * Perform mediation with static inline script of the given scripting language
      *
      * @param synCtx message context
+     * @param engine the engine to run the script on
      * @return true, or the script return value
      * @throws ScriptException For any errors , when compile , run the script
      */
-    private Object mediateForInlineScript(MessageContext synCtx) throws ScriptException {
+    private Object mediateForInlineScript(MessageContext synCtx,
+                                          ScriptEnginePool.PooledScriptEngine engine)
+            throws ScriptException {
 
         ScriptMessageContext scriptMC = new ScriptMessageContext(synCtx, xmlHelper);
 
-        Bindings bindings = scriptEngine.createBindings();
+        Bindings bindings = engine.getEngine().createBindings();
         bindings.put(MC_VAR_NAME, scriptMC);
 
         Object response;
-        if (compiledScript != null) {
-            response = compiledScript.eval(bindings);
+        if (engine.getCompiledScript() != null) {
+            response = engine.getCompiledScript().eval(bindings);
         } else {
-            response = scriptEngine.eval(scriptSourceCode, bindings);
+            response = engine.getEngine().eval(scriptSourceCode, bindings);
         }
 
         return response;
@@ -291,133 +344,154 @@ public class ScriptMediator extends AbstractMediator {
      * Initialise the Mediator for the inline script
      */
     protected void initInlineScript() {
-        try {
-            initScriptEngine();
+        initScriptEngine();
+    }
 
-            if (scriptEngine instanceof Compilable) {
-                if (log.isDebugEnabled()) {
-                    log.debug("Script engine supports Compilable interface, " +
-                            "compiling script code..");
-                }
-                compiledScript = ((Compilable) scriptEngine).compile(scriptSourceCode);
-            } else {
-                // do nothing. If the script engine doesn't support Compilable then
-                // the inline script will be evaluated on each invocation
-                if (log.isDebugEnabled()) {
-                    log.debug("Script engine does not support the Compilable interface, " +
-                            "in-lined script would be evaluated on each invocation..");
-                }
-            }
+    /**
+     * Compiles the inline script for an engine, if the engine supports it
+     *
+     * @param engine the engine
+     * @throws ScriptException For any errors , when compile the script
+     */
+    private void compileInlineScript(ScriptEnginePool.PooledScriptEngine engine)
+            throws ScriptException {
 
-        } catch (ScriptException e) {
-            throw new SynapseException("Exception initializing inline script", e);
+        if (engine.getEngine() instanceof Compilable) {
+            if (log.isDebugEnabled()) {
+                log.debug("Script engine supports Compilable interface, " +
+                        "compiling script code..");
+            }
+            engine.setCompiledScript(
+                    ((Compilable) engine.getEngine()).compile(scriptSourceCode));
+        } else {
+            // do nothing. If the script engine doesn't support Compilable then
+            // the inline script will be evaluated on each invocation
+            if (log.isDebugEnabled()) {
+                log.debug("Script engine does not support the Compilable interface, " +
+                        "in-lined script would be evaluated on each invocation..");
+            }
         }
     }
 
     /**
-     * Prepares the mediator for the invocation of an external script
+     * Prepares the mediator for the invocation of an external script, by loading the script
+     * and its includes from the registry when they were not loaded yet or have expired. The
+     * engines evaluate the loaded sources the next time they are used.
      *
      * @param synCtx MessageContext script
      * @throws ScriptException For any errors , when compile the script
      */
-    protected synchronized void prepareExternalScript(MessageContext synCtx)
+    protected void prepareExternalScript(MessageContext synCtx)
             throws ScriptException {
 
-        // TODO: only need this synchronized method for dynamic registry entries. If there was a way
-        // to access the registry entry during mediator initialization then for non-dynamic entries
-        // this could be done just the once during mediator initialization.
-
         // Derive actual key from xpath expression or get static key
         String generatedScriptKey = key.evaluateValue(synCtx);
-        Entry entry = synCtx.getConfiguration().getEntryDefinition(generatedScriptKey);
-        boolean needsReload = (entry != null) && entry.isDynamic() &&
-                (!entry.isCached() || entry.isExpired());
-        synchronized (resourceLock) {
-            if (scriptSourceCode == null || needsReload) {
-                Object o = synCtx.getEntry(generatedScriptKey);
-                if (o instanceof OMElement) {
-                    scriptSourceCode = ((OMElement) (o)).getText();
-                    scriptEngine.eval(scriptSourceCode);
-                } else if (o instanceof String) {
-                    scriptSourceCode = (String) o;
-                    scriptEngine.eval(scriptSourceCode);
-                } else if (o instanceof OMText) {
-
-                    DataHandler dataHandler = (DataHandler) ((OMText) o).getDataHandler();
-                    if (dataHandler != null) {
-                        BufferedReader reader = null;
-                        try {
-                            reader = new BufferedReader(
-                                    new InputStreamReader(dataHandler.getInputStream()));
-                            scriptEngine.eval(reader);
+        boolean reload = scriptSourceCode == null || needsReload(synCtx, generatedScriptKey);
 
-                        } catch (IOException e) {
-                            handleException("Error in reading script as a stream ", e, synCtx);
-                        } finally {
+        List<String> includeKeys = new ArrayList<String>(includes.size());
+        for (Value includeKey : includes.keySet()) {
+            String generatedKey = includeKey.evaluateValue(synCtx);
+            includeKeys.add(generatedKey);
+            reload |= includes.get(includeKey) == null || needsReload(synCtx, generatedKey);
+        }
+
+        if (!reload) {
+            return;
+        }
 
-                            if (reader != null) {
-                                try {
-                                    reader.close();
-                                } catch (IOException e) {
-                                    handleException("Error in closing input stream ", e, synCtx);
-                                }
-                            }
+        synchronized (resourceLock) {
+            boolean changed = false;
+            if (scriptSourceCode == null || needsReload(synCtx, generatedScriptKey)) {
+                String source = loadScript(synCtx, generatedScriptKey);
+                if (source != null) {
+                    scriptSourceCode = source;
+                    changed = true;
+                }
+            }
 
-                        }
+            // load <include /> scripts; reload each script if needed
+            int i = 0;
+            for (Value includeKey : includes.keySet()) {
+                String generatedKey = includeKeys.get(i++);
+                if (includes.get(includeKey) == null || needsReload(synCtx, generatedKey)) {
+                    log.debug("Re-/Loading the include script with key " + includeKey);
+                    String source = loadScript(synCtx, generatedKey);
+                    if (source != null) {
+                        includes.put(includeKey, source);
+                        changed = true;
                     }
                 }
+            }
 
+            if (changed || externalSources == null) {
+                List<String> sources = new ArrayList<String>();
+                if (scriptSourceCode != null) {
+                    sources.add(scriptSourceCode);
+                }
+                for (Object include : includes.values()) {
+                    if (include != null) {
+                        sources.add((String) include);
+                    }
+                }
+                externalSources = Collections.unmodifiableList(sources);
             }
         }
+    }
 
-        // load <include /> scripts; reload each script if needed
-        for (Value includeKey : includes.keySet()) {
-
-            String includeSourceCode = (String) includes.get(includeKey);
-
-            String generatedKey = includeKey.evaluateValue(synCtx);
+    private boolean needsReload(MessageContext synCtx, String entryKey) {
+        Entry entry = synCtx.getConfiguration().getEntryDefinition(entryKey);
+        return (entry != null) && entry.isDynamic() && (!entry.isCached() || entry.isExpired());
+    }
 
-            Entry includeEntry = synCtx.getConfiguration().getEntryDefinition(generatedKey);
-            boolean includeEntryNeedsReload = (includeEntry != null) && includeEntry.isDynamic()
-                    && (!includeEntry.isCached() || includeEntry.isExpired());
-            synchronized (resourceLock) {
-                if (includeSourceCode == null || includeEntryNeedsReload) {
-                    log.debug("Re-/Loading the include script with key " + includeKey);
-                    Object o = synCtx.getEntry(generatedKey);
-                    if (o instanceof OMElement) {
-                        includeSourceCode = ((OMElement) (o)).getText();
-                        scriptEngine.eval(includeSourceCode);
-                    } else if (o instanceof String) {
-                        includeSourceCode = (String) o;
-                        scriptEngine.eval(includeSourceCode);
-                    } else if (o instanceof OMText) {
-
-                        DataHandler dataHandler = (DataHandler) ((OMText) o).getDataHandler();
-                        if (dataHandler != null) {
-                            BufferedReader reader = null;
-                            try {
-                                reader = new BufferedReader(
-                                        new InputStreamReader(dataHandler.getInputStream()));
-                                scriptEngine.eval(reader);
-
-                            } catch (IOException e) {
-                                handleException("Error in reading script as a stream ", e, synCtx);
-                            } finally {
-
-                                if (reader != null) {
-                                    try {
-                                        reader.close();
-                                    } catch (IOException e) {
-                                        handleException("Error in closing input" +
-                                                " stream ", e, synCtx);
-                                    }
-                                }
-                            }
+    /**
+     * Reads the source of a script from the registry
+     *
+     * @param synCtx    the message context
+     * @param entryKey  the registry entry key of the script
+     * @return the source of the script, or null if the entry is not a script
+     */
+    private String loadScript(MessageContext synCtx, String entryKey) {
+        Object o = synCtx.getEntry(entryKey);
+        if (o instanceof OMElement) {
+            return ((OMElement) (o)).getText();
+        } else if (o instanceof String) {
+            return (String) o;
+        } else if (o instanceof OMText) {
+
+            DataHandler dataHandler = (DataHandler) ((OMText) o).getDataHandler();
+            if (dataHandler != null) {
+                BufferedReader reader = null;
+                try {
+                    reader = new BufferedReader(
+                            new InputStreamReader(dataHandler.getInputStream()));
+                    return readFully(reader);
+
+                } catch (IOException e) {
+                    handleException("Error in reading script as a stream ", e, synCtx);
+                } finally {
+
+                    if (reader != null) {
+                        try {
+                            reader.close();
+                        } catch (IOException e) {
+                            handleException("Error in closing input stream ", e, synCtx);
                         }
                     }
+
                 }
             }
         }
+        return null;
+    }
+
+    private static String readFully(Reader reader) throws IOException {
+        StringBuilder source = new StringBuilder();
+        char[] buffer = new char[4096];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            source.append(buffer, 0, read);
+        }
+        return source.toString();
     }
 
     protected void initScriptEngine() {
@@ -425,15 +499,7 @@ public class ScriptMediator extends AbstractMediator {
             log.debug("Initializing script mediator for language : " + language);
         }
 
-        ScriptEngineManager manager = new ScriptEngineManager();
-        manager.registerEngineExtension("js", new RhinoScriptEngineFactory());
-        manager.registerEngineExtension("groovy", new GroovyScriptEngineFactory());
-        manager.registerEngineExtension("rb", new JRubyScriptEngineFactory());
-
-        this.scriptEngine = manager.getEngineByExtension(language);
-        if (scriptEngine == null) {
-            handleException("No script engine found for language: " + language);
-        }
+        this.scriptEngine = createScriptEngine();
         //Invoking a custom Helper class since there is an api change in rhino17 for js
         if (language.equalsIgnoreCase(JAVA_SCRIPT)) {
             xmlHelper = new JavaScriptXmlHelper();
@@ -444,6 +510,78 @@ public class ScriptMediator extends AbstractMediator {
         this.multiThreadedEngine = scriptEngine.getFactory().getParameter("THREADING") != null;
         log.debug("Script mediator for language : " + language +
                 " supports multithreading? : " + multiThreadedEngine);
+
+        ScriptEnginePool.PooledScriptEngine firstEngine =
+                new ScriptEnginePool.PooledScriptEngine(scriptEngine);
+        if (key == null) {
+            try {
+                compileInlineScript(firstEngine);
+            } catch (ScriptException e) {
+                throw new SynapseException("Exception initializing inline script", e);
+            }
+        }
+
+        if (multiThreadedEngine) {
+            sharedEngine = firstEngine;
+            enginePool = null;
+        } else {
+            int poolSize = getPoolSize();
+            enginePool = new ScriptEnginePool(poolSize, new ScriptEnginePool.EngineFactory() {
+                @Override
+                public ScriptEnginePool.PooledScriptEngine createEngine() throws ScriptException {
+                    ScriptEnginePool.PooledScriptEngine engine =
+                            new ScriptEnginePool.PooledScriptEngine(createScriptEngine());
+                    if (key == null) {
+                        compileInlineScript(engine);
+                    }
+                    return engine;
+                }
+            }, firstEngine);
+            log.debug("Script mediator for language : " + language +
+                    " uses a pool of up to " + poolSize + " script engines");
+        }
+    }
+
+    /**
+     * Reads the maximum number of script engines per mediator from synapse.properties. The
+     * value is read once and shared by all the script mediators.
+     *
+     * @return the configured pool size, or the number of available processors if the property
+     *         is not set or is not a positive integer
+     */
+    private int getPoolSize() {
+        if (poolSize == 0) {
+            int defaultSize = Runtime.getRuntime().availableProcessors();
+            String value = SynapsePropertiesLoader.getPropertyValue(POOL_SIZE_PROPERTY, null);
+            int size = defaultSize;
+            if (value != null) {
+                try {
+                    size = Integer.parseInt(value.trim());
+                } catch (NumberFormatException e) {
+                    size = 0;
+                }
+                if (size < 1) {
+                    log.warn("Invalid value " + value + " for " + POOL_SIZE_PROPERTY +
+                            ", using the default : " + defaultSize);
+                    size = defaultSize;
+                }
+            }
+            poolSize = size;
+        }
+        return poolSize;
+    }
+
+    private ScriptEngine createScriptEngine() {
+        ScriptEngineManager manager = new ScriptEngineManager();
+        manager.registerEngineExtension("js", new RhinoScriptEngineFactory());
+        manager.registerEngineExtension("groovy", new GroovyScriptEngineFactory());
+        manager.registerEngineExtension("rb", new JRubyScriptEngineFactory());
+
+        ScriptEngine engine = manager.getEngineByExtension(language);
+        if (engine == null) {
+            handleException("No script engine found for language: " + language);
+        }
+        return engine;
     }
 
     public String getLanguage() {
@@ -462,6 +600,16 @@ public class ScriptMediator extends AbstractMediator {
         return scriptSourceCode;
     }
 
+    /**
+     * Returns the pool of script engines of this mediator, which also records how long
+     * messages waited for an engine
+     *
+     * @return the engine pool, or null if the script engine supports multi-threading
+     */
+    public ScriptEnginePool getEnginePool() {
+        return enginePool;
+    }
+
     private void handleException(String msg) {
         log.error(msg);
         throw new SynapseException(msg);
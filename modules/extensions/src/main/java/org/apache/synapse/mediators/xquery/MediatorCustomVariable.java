@@ -105,6 +105,20 @@ public class MediatorCustomVariable extends MediatorVariable {
         }
     }
 
+    @Override
+    public Object getValue(MessageContext synCtx) {
+        if (this.regKey == null) {
+            return evaluate(synCtx);
+        }
+        evaluateValue(synCtx);
+        return this.value;
+    }
+
+    @Override
+    public boolean isMessageDependent() {
+        return this.regKey == null;
+    }
+
     /**
      * Return the object to be used for the variable value
      *
@@ -69,4 +69,26 @@ public abstract class MediatorVariable {
      */
     public abstract boolean evaluateValue(MessageContext synCtx);
 
+    /**
+     * Calculates the value of this variable for the given message. Unlike
+     * {@link #evaluateValue(MessageContext)}, a value that depends on the message is returned
+     * without being stored in the variable, so that concurrent messages don't see each
+     * other's values.
+     *
+     * @param synCtx Current message in transit
+     * @return the value of the variable for the message
+     */
+    public Object getValue(MessageContext synCtx) {
+        evaluateValue(synCtx);
+        return value;
+    }
+
+    /**
+     * @return <code>true</code> if the value of this variable is taken from the message, and
+     *         hence must be bound again for every message
+     */
+    public boolean isMessageDependent() {
+        return false;
+    }
+
 }
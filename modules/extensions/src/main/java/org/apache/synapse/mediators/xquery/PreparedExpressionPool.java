@@ -0,0 +1,230 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.synapse.mediators.xquery;
+
+import net.sf.saxon.javax.xml.xquery.XQConnection;
+import net.sf.saxon.javax.xml.xquery.XQDataSource;
+import net.sf.saxon.javax.xml.xquery.XQException;
+import net.sf.saxon.javax.xml.xquery.XQPreparedExpression;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of expressions prepared from the same XQuery, each with its own connection. An
+ * expression is used by one message at a time, so that the variables bound for a message
+ * and the result sequence of the query are never shared with another message. Expressions
+ * are prepared on demand when all the pooled ones are in use; up to a fixed number of idle
+ * expressions are kept for reuse and any others are closed when released. The number of
+ * expressions, idle or in use, is capped: when the cap is reached, a message waits for an
+ * expression to be released instead of opening another connection.
+ */
+public class PreparedExpressionPool {
+
+    private static final Log log = LogFactory.getLog(PreparedExpressionPool.class);
+
+    /**
+     * A prepared expression of the pool, along with the values bound to its variables
+     */
+    public static class PooledExpression {
+
+        private final XQConnection connection;
+        private final XQPreparedExpression expression;
+        private final Object[] boundValues;
+
+        PooledExpression(XQConnection connection, XQPreparedExpression expression,
+                         int variableCount) {
+            this.connection = connection;
+            this.expression = expression;
+            this.boundValues = new Object[variableCount];
+        }
+
+        public XQPreparedExpression getExpression() {
+            return expression;
+        }
+
+        /**
+         * @param index the index of a variable of the mediator
+         * @return the value last bound to the variable in this expression, or null
+         */
+        public Object getBoundValue(int index) {
+            return boundValues[index];
+        }
+
+        public void setBoundValue(int index, Object value) {
+            boundValues[index] = value;
+        }
+
+        boolean isClosed() {
+            return expression.isClosed() || connection.isClosed();
+        }
+
+        void close() {
+            try {
+                expression.close();
+            } catch (XQException e) {
+                log.debug("Error closing a prepared XQuery expression", e);
+            }
+            try {
+                connection.close();
+            } catch (XQException e) {
+                log.debug("Error closing an XQuery connection", e);
+            }
+        }
+    }
+
+    private final XQDataSource dataSource;
+    /** the query, as a String or as the bytes of the query stream */
+    private final Object query;
+    private final int variableCount;
+    private final BlockingQueue<PooledExpression> idleExpressions;
+    /** permits for the expressions that are not in use, prepared or not */
+    private final Semaphore available;
+    private volatile boolean closed = false;
+
+    private final AtomicLong borrowCount = new AtomicLong(0);
+    private final AtomicLong prepareCount = new AtomicLong(0);
+
+    /**
+     * Create a pool
+     *
+     * @param dataSource    the data source to get the connections from
+     * @param query         the query, either a String or the bytes of the query stream
+     * @param variableCount the number of variables bound to the expressions
+     * @param maxIdle       the maximum number of idle expressions kept in the pool
+     * @param maxActive     the maximum number of expressions, idle or in use
+     */
+    public PreparedExpressionPool(XQDataSource dataSource, Object query, int variableCount,
+                                  int maxIdle, int maxActive) {
+        if (!(query instanceof String || query instanceof byte[])) {
+            throw new IllegalArgumentException("Unsupported query source : " + query);
+        }
+        this.dataSource = dataSource;
+        this.query = query;
+        this.variableCount = variableCount;
+        this.idleExpressions = new ArrayBlockingQueue<PooledExpression>(Math.max(maxIdle, 1));
+        this.available = new Semaphore(Math.max(maxActive, maxIdle), true);
+    }
+
+    /**
+     * Take an expression from the pool, or prepare a new one if there is no idle expression.
+     * Waits for an expression to be released if the maximum number of expressions is in use.
+     * The expression must be returned with {@link #release(PooledExpression, boolean)}.
+     *
+     * @return an expression which is not used by any other thread
+     * @throws XQException if the expression could not be prepared, or if the thread was
+     *                     interrupted while waiting
+     */
+    public PooledExpression borrow() throws XQException {
+        try {
+            available.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new XQException("Interrupted while waiting for a prepared XQuery expression");
+        }
+        boolean borrowed = false;
+        try {
+            PooledExpression expression = take();
+            borrowed = true;
+            return expression;
+        } finally {
+            if (!borrowed) {
+                available.release();
+            }
+        }
+    }
+
+    private PooledExpression take() throws XQException {
+        borrowCount.incrementAndGet();
+        PooledExpression expression;
+        while ((expression = idleExpressions.poll()) != null) {
+            if (!expression.isClosed()) {
+                return expression;
+            }
+            expression.close();
+        }
+
+        XQConnection connection = dataSource.getConnection();
+        try {
+            XQPreparedExpression preparedExpression;
+            if (query instanceof String) {
+                preparedExpression = connection.prepareExpression((String) query);
+            } else {
+                preparedExpression = connection.prepareExpression(
+                        new ByteArrayInputStream((byte[]) query));
+            }
+            prepareCount.incrementAndGet();
+            return new PooledExpression(connection, preparedExpression, variableCount);
+        } catch (XQException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Return an expression to the pool
+     *
+     * @param expression the expression taken with {@link #borrow()}
+     * @param reusable   false if the expression must not be used again, e.g. because the
+     *                   query failed
+     */
+    public void release(PooledExpression expression, boolean reusable) {
+        try {
+            if (!reusable || closed || !idleExpressions.offer(expression)) {
+                expression.close();
+            } else if (closed && idleExpressions.remove(expression)) {
+                // the pool was closed while the expression was being returned
+                expression.close();
+            }
+        } finally {
+            available.release();
+        }
+    }
+
+    /**
+     * Close the idle expressions of the pool. Expressions in use are closed when released.
+     */
+    public void close() {
+        closed = true;
+        PooledExpression expression;
+        while ((expression = idleExpressions.poll()) != null) {
+            expression.close();
+        }
+    }
+
+    /** @return the number of times an expression was taken from the pool */
+    public long getBorrowCount() {
+        return borrowCount.get();
+    }
+
+    /** @return the number of expressions prepared for the pool */
+    public long getPrepareCount() {
+        return prepareCount.get();
+    }
+
+    /** @return the number of idle expressions in the pool */
+    public int getIdleCount() {
+        return idleExpressions.size();
+    }
+}
@@ -33,6 +33,7 @@ import org.apache.synapse.SynapseException;
 import org.apache.synapse.SynapseLog;
 import org.apache.synapse.config.Entry;
 import org.apache.synapse.config.SynapseConfigUtils;
+import org.apache.synapse.config.SynapsePropertiesLoader;
 import org.apache.synapse.mediators.AbstractMediator;
 import org.apache.synapse.mediators.MediatorProperty;
 import org.apache.synapse.mediators.Value;
@@ -44,10 +45,12 @@ import org.xml.sax.InputSource;
 import javax.activation.DataHandler;
 import javax.xml.namespace.QName;
 import javax.xml.transform.dom.DOMSource;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringReader;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /**
@@ -64,6 +67,18 @@ import java.util.*;
 
 public class XQueryMediator extends AbstractMediator {
 
+    /* synapse.properties entry for the number of idle prepared expressions kept per query */
+    private static final String POOL_SIZE_PROPERTY = "synapse.xquery.mediator.pool.size";
+
+    /* The number of idle prepared expressions kept per query, 0 until read from synapse.properties */
+    private static volatile int poolSize = 0;
+
+    /* synapse.properties entry for the number of prepared expressions, idle or in use, per query */
+    private static final String POOL_MAX_ACTIVE_PROPERTY = "synapse.xquery.mediator.pool.maxActive";
+
+    /* The number of prepared expressions allowed per query, 0 until read from synapse.properties */
+    private static volatile int poolMaxActive = 0;
+
     /* Properties that must set to the XQDataSource  */
     private final List<MediatorProperty> dataSourceProperties = new ArrayList<MediatorProperty>();
 
@@ -86,13 +101,17 @@ public class XQueryMediator extends AbstractMediator {
     private boolean useDOMSource = false;
 
     /*The DataSource which use to create a connection to XML database */
-    private XQDataSource cachedXQDataSource = null;
+    private volatile XQDataSource cachedXQDataSource = null;
+
+    /* Connection used to detach streamed results from the pooled expressions they were read from */
+    private volatile XQConnection resultConnection = null;
 
-    /* connection with a specific XQuery engine.Connection will live as long as synapse live */
-    private XQConnection cachedConnection = null;
+    /* Pools of prepared expressions, one per query key. A pool is replaced when its query has changed */
+    private final Map<String, PreparedExpressionPool> expressionPools =
+            new ConcurrentHashMap<String, PreparedExpressionPool>();
 
-    /* An expression that use for multiple  executions.Expression will recreate if query has changed */
-    private Map<String, XQPreparedExpression> cachedPreparedExpressionMap = new Hashtable<String, XQPreparedExpression>();
+    /* Should the XML result be attached as a sourced element instead of being built as an OMElement */
+    private boolean streamResult = false;
 
     public XQueryMediator() {
     }
@@ -141,295 +160,419 @@ public class XQueryMediator extends AbstractMediator {
      */
     private void performQuery(MessageContext synCtx, SynapseLog synLog) {
 
-        boolean reLoad = false;
-        boolean needBind = false;
-        XQResultSequence resultSequence;
         String generatedQueryKey = null;
-        boolean isQueryKeyGenerated = false;
-
         if (queryKey != null) {
             // Derive actual key from xpath or get static key
             generatedQueryKey = queryKey.evaluateValue(synCtx);
         }
 
-        if (generatedQueryKey != null) {
-            isQueryKeyGenerated = true;
+        PreparedExpressionPool pool = getExpressionPool(synCtx, generatedQueryKey, synLog);
+        if (pool == null) {
+            return;
         }
 
-        // get expression from generatedQueryKey
-        XQPreparedExpression cachedPreparedExpression = null;
+        PreparedExpressionPool.PooledExpression pooledExpression = null;
+        boolean reusable = false;
+        try {
+            pooledExpression = pool.borrow();
+            XQPreparedExpression preparedExpression = pooledExpression.getExpression();
+
+            //Bind the external variables to the DynamicContext
+            if (!variables.isEmpty()) {
+                synLog.traceOrDebug("Binding  external variables to the DynamicContext");
+                for (int i = 0; i < variables.size(); i++) {
+                    MediatorVariable variable = variables.get(i);
+                    if (variable != null) {
+                        Object value = variable.getValue(synCtx);
+                        //if the value has changed since it was bound to this expression
+                        if (variable.isMessageDependent()
+                                || value != pooledExpression.getBoundValue(i)) {
+                            //Binds the external variable to the DynamicContext
+                            bindVariable(preparedExpression, variable, value, synLog);
+                            pooledExpression.setBoundValue(i, value);
+                        }
+                    }
+                }
+            }
 
-        if (generatedQueryKey != null && !"".equals(generatedQueryKey)) {
+            //executing the query
+            XQResultSequence resultSequence = preparedExpression.executeQuery();
+            if (resultSequence == null) {
+                synLog.traceOrDebug("Result Sequence is null");
+                reusable = true;
+                return;
+            }
 
-            Entry dp = synCtx.getConfiguration().getEntryDefinition(generatedQueryKey);
-            // if the queryKey refers to a dynamic resource
-            if (dp != null && dp.isDynamic()) {
-                if (!dp.isCached() || dp.isExpired()) {
-                    reLoad = true;
-                }
+            try {
+                processResult(synCtx, synLog, resultSequence);
+            } finally {
+                resultSequence.close();  // closing the result sequence
+            }
+            reusable = true;
+
+        } catch (XQException e) {
+            handleException("Error during the querying " + e.getMessage(), e);
+        } catch (OMException e) {
+            handleException("Error during retrieving  the Doument Node as  the result "
+                    + e.getMessage(), e);
+        } finally {
+            if (pooledExpression != null) {
+                pool.release(pooledExpression, reusable);
             }
         }
+    }
 
-        try {
-            synchronized (resourceLock) {
-
-                //creating data source
-                if (cachedXQDataSource == null) {
-                    // A factory for XQConnection  objects
-                    cachedXQDataSource = new SaxonXQDataSource();
-                    //setting up the properties to the XQDataSource
-                    if (dataSourceProperties != null && !dataSourceProperties.isEmpty()) {
-                        synLog.traceOrDebug("Setting up properties to the XQDataSource");
+    /**
+     * Returns the pool of prepared expressions for the query, loading the query from the
+     * registry if it has not been loaded yet or if the registry entry has expired
+     *
+     * @param synCtx            The current MessageContext
+     * @param generatedQueryKey the registry key of the query, or null for an in-lined query
+     * @param synLog            the Synapse log to use
+     * @return the pool, or null if the query could not be found
+     */
+    private PreparedExpressionPool getExpressionPool(MessageContext synCtx,
+                                                     String generatedQueryKey,
+                                                     SynapseLog synLog) {
+
+        boolean isInlined = querySource != null && !"".equals(querySource);
+        String poolKey = generatedQueryKey != null ? generatedQueryKey : "";
+
+        PreparedExpressionPool pool = expressionPools.get(poolKey);
+        if (pool != null && (isInlined || !isExpired(synCtx, generatedQueryKey))) {
+            return pool;
+        }
+
+        synchronized (resourceLock) {
+
+            // another message may have prepared the query in the meantime
+            pool = expressionPools.get(poolKey);
+            if (pool != null && (isInlined || !isExpired(synCtx, generatedQueryKey))) {
+                return pool;
+            }
+
+            //creating data source
+            if (cachedXQDataSource == null) {
+                // A factory for XQConnection  objects
+                XQDataSource xqDataSource = new SaxonXQDataSource();
+                //setting up the properties to the XQDataSource
+                if (!dataSourceProperties.isEmpty()) {
+                    synLog.traceOrDebug("Setting up properties to the XQDataSource");
+                    try {
                         for (MediatorProperty dataSourceProperty : dataSourceProperties) {
                             if (dataSourceProperty != null) {
-                                cachedXQDataSource.setProperty(dataSourceProperty.getName(),
+                                xqDataSource.setProperty(dataSourceProperty.getName(),
                                         dataSourceProperty.getValue());
                             }
                         }
+                    } catch (XQException e) {
+                        handleException("Error setting up the XQDataSource " + e.getMessage(), e);
                     }
                 }
-
-                //creating connection
-                if (cachedConnection == null
-                        || (cachedConnection != null && cachedConnection.isClosed())) {
-                    //get the Connection to XML DataBase
-                    synLog.traceOrDebug("Creating a connection from the XQDataSource ");
-                    cachedConnection = cachedXQDataSource.getConnection();
+                cachedXQDataSource = xqDataSource;
+            }
+            if (streamResult && resultConnection == null) {
+                try {
+                    resultConnection = cachedXQDataSource.getConnection();
+                } catch (XQException e) {
+                    handleException("Error creating an XQuery connection " + e.getMessage(), e);
                 }
+            }
 
-                //If already cached expression then load it from cachedPreparedExpressionMap
-                if (isQueryKeyGenerated) {
-                    cachedPreparedExpression = cachedPreparedExpressionMap.get(generatedQueryKey);
+            Object query;
+            if (isInlined) {
+                if (synLog.isTraceOrDebugEnabled()) {
+                    synLog.traceOrDebug("Using in-lined query source - " + querySource);
                 }
+                query = querySource;
+            } else {
+                query = loadQuery(synCtx, generatedQueryKey, synLog);
+                if (query == null) {
+                    return null;
+                }
+                if (synLog.isTraceOrDebugEnabled()) {
+                    synLog.traceOrDebug("Picked up the xquery source from the " +
+                            "key " + queryKey);
+                }
+            }
 
-                // prepare the expression to execute query
-                if (reLoad || cachedPreparedExpression == null
-                        || (cachedPreparedExpression != null
-                        && cachedPreparedExpression.isClosed())) {
-
-                    if (querySource != null && !"".equals(querySource)) {
-
-                        if (cachedPreparedExpression == null) {
-
-                            if (synLog.isTraceOrDebugEnabled()) {
-                                synLog.traceOrDebug("Using in-lined query source - " + querySource);
-                                synLog.traceOrDebug("Prepare an expression for the query ");
-                            }
-
-                            //create an XQPreparedExpression using the query source
-                            cachedPreparedExpression =
-                                    cachedConnection.prepareExpression(querySource);
-
-                            // if cachedPreparedExpression is created then put it in to cachedPreparedExpressionMap
-                            if (isQueryKeyGenerated) {
-                                cachedPreparedExpressionMap.put(generatedQueryKey, cachedPreparedExpression);
-                            }
-
-                            // need binding because the expression just has recreated
-                            needBind = true;
-                        }
-
-                    } else {
+            PreparedExpressionPool oldPool = expressionPools.put(poolKey,
+                    new PreparedExpressionPool(cachedXQDataSource, query, variables.size(),
+                            getPoolSize(), getPoolMaxActive()));
+            if (oldPool != null) {
+                // expressions of the previous query still in use are closed when released
+                oldPool.close();
+            }
+            return expressionPools.get(poolKey);
+        }
+    }
 
-                        Object o = synCtx.getEntry(generatedQueryKey);
-                        if (o == null) {
-                            if (synLog.isTraceOrDebugEnabled()) {
-                                synLog.traceOrDebug("Couldn't find the xquery source with a key "
-                                        + queryKey);
-                            }
-                            return;
-                        }
+    private boolean isExpired(MessageContext synCtx, String generatedQueryKey) {
+        if (generatedQueryKey == null || "".equals(generatedQueryKey)) {
+            return false;
+        }
+        Entry dp = synCtx.getConfiguration().getEntryDefinition(generatedQueryKey);
+        // if the queryKey refers to a dynamic resource
+        return dp != null && dp.isDynamic() && (!dp.isCached() || dp.isExpired());
+    }
 
-                        String sourceCode = null;
-                        InputStream inputStream = null;
-                        if (o instanceof OMElement) {
-                            sourceCode = ((OMElement) (o)).getText();
-                        } else if (o instanceof String) {
-                            sourceCode = (String) o;
-                        } else if (o instanceof OMText) {
-                            DataHandler dataHandler = (DataHandler) ((OMText) o).getDataHandler();
-                            if (dataHandler != null) {
-                                try {
-                                    inputStream = dataHandler.getInputStream();
-                                    if (inputStream == null) {
-                                        if (synLog.isTraceOrDebugEnabled()) {
-                                            synLog.traceOrDebug("Couldn't get" +
-                                                    " the stream from the xquery source with a key "
-                                                    + queryKey);
-                                        }
-                                        return;
-                                    }
-
-                                } catch (IOException e) {
-                                    handleException("Error in reading content as a stream ");
-                                }
-                            }
-                        }
+    /**
+     * Reads the query from the registry
+     *
+     * @param synCtx            The current MessageContext
+     * @param generatedQueryKey the registry key of the query
+     * @param synLog            the Synapse log to use
+     * @return the query as a String, the bytes of the query stream, or null if not found
+     */
+    private Object loadQuery(MessageContext synCtx, String generatedQueryKey,
+                             SynapseLog synLog) {
 
-                        if ((sourceCode == null || "".equals(sourceCode)) && inputStream == null) {
-                            if (synLog.isTraceOrDebugEnabled()) {
-                                synLog.traceOrDebug("Couldn't find the xquery source with a key "
-                                        + queryKey);
-                            }
-                            return;
-                        }
+        Object o = synCtx.getEntry(generatedQueryKey);
+        if (o == null) {
+            if (synLog.isTraceOrDebugEnabled()) {
+                synLog.traceOrDebug("Couldn't find the xquery source with a key "
+                        + queryKey);
+            }
+            return null;
+        }
 
+        String sourceCode = null;
+        byte[] sourceBytes = null;
+        if (o instanceof OMElement) {
+            sourceCode = ((OMElement) (o)).getText();
+        } else if (o instanceof String) {
+            sourceCode = (String) o;
+        } else if (o instanceof OMText) {
+            DataHandler dataHandler = (DataHandler) ((OMText) o).getDataHandler();
+            if (dataHandler != null) {
+                InputStream inputStream = null;
+                try {
+                    inputStream = dataHandler.getInputStream();
+                    if (inputStream == null) {
                         if (synLog.isTraceOrDebugEnabled()) {
-                            synLog.traceOrDebug("Picked up the xquery source from the " +
-                                    "key " + queryKey);
-                            synLog.traceOrDebug("Prepare an expression for the query ");
-                        }
-
-                        if (sourceCode != null) {
-                            //create an XQPreparedExpression using the query source
-                            cachedPreparedExpression =
-                                    cachedConnection.prepareExpression(sourceCode);
-                        } else {
-                            //create an XQPreparedExpression using the query source stream
-                            cachedPreparedExpression =
-                                    cachedConnection.prepareExpression(inputStream);
+                            synLog.traceOrDebug("Couldn't get" +
+                                    " the stream from the xquery source with a key "
+                                    + queryKey);
                         }
-
-                        // if cachedPreparedExpression is created then put it in to cachedPreparedExpressionMap
-                        if (isQueryKeyGenerated) {
-                            cachedPreparedExpressionMap.put(generatedQueryKey, cachedPreparedExpression);
-                        }
-
-                        // need binding because the expression just has recreated
-                        needBind = true;
+                        return null;
                     }
-                }
-
-                //Bind the external variables to the DynamicContext
-                if (variables != null && !variables.isEmpty()) {
-                    synLog.traceOrDebug("Binding  external variables to the DynamicContext");
-                    for (MediatorVariable variable : variables) {
-                        if (variable != null) {
-                            boolean hasValueChanged = variable.evaluateValue(synCtx);
-                            //if the value has changed or need binding because the expression has recreated
-                            if (hasValueChanged || needBind) {
-                                //Binds the external variable to the DynamicContext
-                                bindVariable(cachedPreparedExpression, variable, synLog);
-                            }
+                    // the stream is read once, so that each pooled expression can be prepared from it
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[4096];
+                    int read;
+                    while ((read = inputStream.read(buffer)) != -1) {
+                        out.write(buffer, 0, read);
+                    }
+                    sourceBytes = out.toByteArray();
+                } catch (IOException e) {
+                    handleException("Error in reading content as a stream ");
+                } finally {
+                    if (inputStream != null) {
+                        try {
+                            inputStream.close();
+                        } catch (IOException ignore) {
                         }
                     }
                 }
+            }
+        }
 
-                //executing the query
-                resultSequence = cachedPreparedExpression.executeQuery();
-
+        if ((sourceCode == null || "".equals(sourceCode)) && sourceBytes == null) {
+            if (synLog.isTraceOrDebugEnabled()) {
+                synLog.traceOrDebug("Couldn't find the xquery source with a key "
+                        + queryKey);
             }
+            return null;
+        }
+        return sourceCode != null ? sourceCode : sourceBytes;
+    }
 
-            if (resultSequence == null) {
-                synLog.traceOrDebug("Result Sequence is null");
+    /**
+     * Attaches the first item of the result sequence to the target node
+     *
+     * @param synCtx         The current MessageContext
+     * @param synLog         the Synapse log to use
+     * @param resultSequence the result of the query
+     * @throws XQException if the result could not be read
+     */
+    private void processResult(MessageContext synCtx, SynapseLog synLog,
+                               XQResultSequence resultSequence) throws XQException {
+
+        //processing the result
+        while (resultSequence.next()) {
+
+            XQItem xqItem = resultSequence.getItem();
+            if (xqItem == null) {
                 return;
             }
+            XQItemType itemType = xqItem.getItemType();
+            if (itemType == null) {
+                return;
+            }
+            int itemKind = itemType.getItemKind();
+            int baseType = itemType.getBaseType();
+            if (synLog.isTraceOrDebugEnabled()) {
+                synLog.traceOrDebug("The XQuery Result " + xqItem.getItemAsString());
+            }
 
-            //processing the result 
-            while (resultSequence.next()) {
-
-                XQItem xqItem = resultSequence.getItem();
-                if (xqItem == null) {
-                    return;
+            //The target node that is going to modify
+            OMNode destination = target.selectOMNode(synCtx, synLog);
+            if (destination != null) {
+                if (synLog.isTraceOrDebugEnabled()) {
+                    synLog.traceOrDebug("The target node " + destination);
                 }
-                XQItemType itemType = xqItem.getItemType();
-                if (itemType == null) {
-                    return;
+
+                //If the result is XML
+                if (XQItemType.XQITEMKIND_DOCUMENT_ELEMENT == itemKind ||
+                        XQItemType.XQITEMKIND_ELEMENT == itemKind ||
+                        XQItemType.XQITEMKIND_DOCUMENT == itemKind) {
+                    OMElement resultOM = createResultElement(xqItem);
+                    if (resultOM != null) {
+                        //replace the target node from the result
+                        destination.insertSiblingAfter(resultOM);
+                        destination.detach();
+                    }
+                } else if (XQItemType.XQBASETYPE_INTEGER == baseType ||
+                        XQItemType.XQBASETYPE_INT == baseType) {
+                    //replace the text value of the target node by the result ,If the result is
+                    // a basic type
+                    ((OMElement) destination).setText(String.valueOf(xqItem.getInt()));
+                } else if (XQItemType.XQBASETYPE_BOOLEAN == baseType) {
+                    ((OMElement) destination).setText(String.valueOf(xqItem.getBoolean()));
+                } else if (XQItemType.XQBASETYPE_DOUBLE == baseType) {
+                    ((OMElement) destination).setText(String.valueOf(xqItem.getDouble()));
+                } else if (XQItemType.XQBASETYPE_FLOAT == baseType) {
+                    ((OMElement) destination).setText(String.valueOf(xqItem.getFloat()));
+                } else if (XQItemType.XQBASETYPE_LONG == baseType) {
+                    ((OMElement) destination).setText(String.valueOf(xqItem.getLong()));
+                } else if (XQItemType.XQBASETYPE_SHORT == baseType) {
+                    ((OMElement) destination).setText(String.valueOf(xqItem.getShort()));
+                } else if (XQItemType.XQBASETYPE_BYTE == baseType) {
+                    ((OMElement) destination).setText(String.valueOf(xqItem.getByte()));
+                } else if (XQItemType.XQBASETYPE_STRING == baseType) {
+                    ((OMElement) destination).setText(
+                            String.valueOf(xqItem.getItemAsString()));
                 }
-                int itemKind = itemType.getItemKind();
-                int baseType = itemType.getBaseType();
+            } else if (target.getXPath() == null) {
+                //In the case soap body doesn't have the first element --> Empty soap body
+                destination = synCtx.getEnvelope().getBody();
                 if (synLog.isTraceOrDebugEnabled()) {
-                    synLog.traceOrDebug("The XQuery Result " + xqItem.getItemAsString());
+                    synLog.traceOrDebug("The target node " + destination);
                 }
 
-                //The target node that is going to modify
-                OMNode destination = target.selectOMNode(synCtx, synLog);
-                if (destination != null) {
-                    if (synLog.isTraceOrDebugEnabled()) {
-                        synLog.traceOrDebug("The target node " + destination);
+                //If the result is XML
+                if (XQItemType.XQITEMKIND_DOCUMENT_ELEMENT == itemKind ||
+                        XQItemType.XQITEMKIND_ELEMENT == itemKind ||
+                        XQItemType.XQITEMKIND_DOCUMENT == itemKind) {
+                    OMElement resultOM = createResultElement(xqItem);
+                    if (resultOM != null) {
+                        ((OMElement) destination).addChild(resultOM);
                     }
+                }
+                //No else part since soap body could have only XML part not text values
 
-                    //If the result is XML
-                    if (XQItemType.XQITEMKIND_DOCUMENT_ELEMENT == itemKind ||
-                            XQItemType.XQITEMKIND_ELEMENT == itemKind ||
-                            XQItemType.XQITEMKIND_DOCUMENT == itemKind) {
-                        OMXMLParserWrapper builder = OMXMLBuilderFactory.createOMBuilder(
-                                new StringReader(xqItem.getItemAsString()));
-                        OMElement resultOM = builder.getDocumentElement();
-                        if (resultOM != null) {
-                            //replace the target node from the result
-                            destination.insertSiblingAfter(resultOM);
-                            destination.detach();
-                        }
-                    } else if (XQItemType.XQBASETYPE_INTEGER == baseType ||
-                            XQItemType.XQBASETYPE_INT == baseType) {
-                        //replace the text value of the target node by the result ,If the result is
-                        // a basic type
-                        ((OMElement) destination).setText(String.valueOf(xqItem.getInt()));
-                    } else if (XQItemType.XQBASETYPE_BOOLEAN == baseType) {
-                        ((OMElement) destination).setText(String.valueOf(xqItem.getBoolean()));
-                    } else if (XQItemType.XQBASETYPE_DOUBLE == baseType) {
-                        ((OMElement) destination).setText(String.valueOf(xqItem.getDouble()));
-                    } else if (XQItemType.XQBASETYPE_FLOAT == baseType) {
-                        ((OMElement) destination).setText(String.valueOf(xqItem.getFloat()));
-                    } else if (XQItemType.XQBASETYPE_LONG == baseType) {
-                        ((OMElement) destination).setText(String.valueOf(xqItem.getLong()));
-                    } else if (XQItemType.XQBASETYPE_SHORT == baseType) {
-                        ((OMElement) destination).setText(String.valueOf(xqItem.getShort()));
-                    } else if (XQItemType.XQBASETYPE_BYTE == baseType) {
-                        ((OMElement) destination).setText(String.valueOf(xqItem.getByte()));
-                    } else if (XQItemType.XQBASETYPE_STRING == baseType) {
-                        ((OMElement) destination).setText(
-                                String.valueOf(xqItem.getItemAsString()));
-                    }
-                } else if (target.getXPath() == null) {
-                    //In the case soap body doesn't have the first element --> Empty soap body
-                    destination = synCtx.getEnvelope().getBody();
-                    if (synLog.isTraceOrDebugEnabled()) {
-                        synLog.traceOrDebug("The target node " + destination);
-                    }
+            }
+            break;   // Only take the *first* value of the result sequence
+        }
+    }
 
-                    //If the result is XML
-                    if (XQItemType.XQITEMKIND_DOCUMENT_ELEMENT == itemKind ||
-                            XQItemType.XQITEMKIND_ELEMENT == itemKind ||
-                            XQItemType.XQITEMKIND_DOCUMENT == itemKind) {
-                        OMXMLParserWrapper builder = OMXMLBuilderFactory.createOMBuilder(
-                                new StringReader(xqItem.getItemAsString()));
-                        OMElement resultOM = builder.getDocumentElement();
-                        if (resultOM != null) {
-                            ((OMElement) destination).addChild(resultOM);
-                        }
-                    }
-                    //No else part since soap body could have only XML part not text values
+    /**
+     * Creates the element for an XML result. When the result is streamed, the item is
+     * attached as a sourced element, which is only built into an object model if a later
+     * mediator reads it; the message formatter has Saxon serialize the item straight to the
+     * output stream. Otherwise the result is parsed into an OMElement.
+     *
+     * @param xqItem the XML result
+     * @return the element holding the result
+     * @throws XQException if the result could not be serialized
+     */
+    private OMElement createResultElement(XQItem xqItem) throws XQException {
+        if (streamResult) {
+            // the copy shares the result tree, but not the result sequence of the pooled
+            // expression, which is closed before the message is sent
+            return OMAbstractFactory.getOMFactory().createOMElement(
+                    new XQueryResultDataSource(resultConnection.createItem(xqItem)));
+        }
+        OMXMLParserWrapper builder = OMXMLBuilderFactory.createOMBuilder(
+                new StringReader(xqItem.getItemAsString()));
+        return builder.getDocumentElement();
+    }
 
+    /**
+     * Reads the number of idle prepared expressions kept per query from synapse.properties.
+     * The value is read once and shared by all the XQuery mediators.
+     *
+     * @return the configured pool size, or the number of available processors if the property
+     *         is not set or is not a positive integer
+     */
+    private int getPoolSize() {
+        if (poolSize == 0) {
+            int defaultSize = Runtime.getRuntime().availableProcessors();
+            String value = SynapsePropertiesLoader.getPropertyValue(POOL_SIZE_PROPERTY, null);
+            int size = defaultSize;
+            if (value != null) {
+                try {
+                    size = Integer.parseInt(value.trim());
+                } catch (NumberFormatException e) {
+                    size = 0;
+                }
+                if (size < 1) {
+                    log.warn("Invalid value " + value + " for " + POOL_SIZE_PROPERTY +
+                            ", using the default : " + defaultSize);
+                    size = defaultSize;
                 }
-                break;   // Only take the *first* value of the result sequence
             }
-            resultSequence.close();  // closing the result sequence
-        } catch (XQException e) {
-            handleException("Error during the querying " + e.getMessage(), e);
-        } catch (OMException e) {
-            handleException("Error during retrieving  the Doument Node as  the result "
-                    + e.getMessage(), e);
+            poolSize = size;
         }
+        return poolSize;
+    }
+
+    /**
+     * Reads the number of prepared expressions allowed per query, idle or in use, from
+     * synapse.properties. A message waits for an expression of the pool to be released
+     * when this number of expressions is in use.
+     *
+     * @return the configured maximum, or four times the pool size if the property is not
+     *         set or is not a positive integer
+     */
+    private int getPoolMaxActive() {
+        if (poolMaxActive == 0) {
+            int defaultMaxActive = 4 * getPoolSize();
+            String value = SynapsePropertiesLoader.getPropertyValue(POOL_MAX_ACTIVE_PROPERTY, null);
+            int maxActive = defaultMaxActive;
+            if (value != null) {
+                try {
+                    maxActive = Integer.parseInt(value.trim());
+                } catch (NumberFormatException e) {
+                    maxActive = 0;
+                }
+                if (maxActive < 1) {
+                    log.warn("Invalid value " + value + " for " + POOL_MAX_ACTIVE_PROPERTY +
+                            ", using the default : " + defaultMaxActive);
+                    maxActive = defaultMaxActive;
+                }
+            }
+            poolMaxActive = Math.max(maxActive, getPoolSize());
+        }
+        return poolMaxActive;
     }
 
     /**
      * Binding a variable to the Dynamic Context in order to available during doing the querying
      *
      * @param xqDynamicContext The Dynamic Context  to which the variable will be binded
-     * @param variable         The variable which contains the name and vaule for binding
+     * @param variable         The variable which contains the name and type for binding
+     * @param value            The value of the variable for the current message
      * @param synLog           the Synapse log to use
      * @throws XQException throws if any error occurs when binding the variable
      */
     private void bindVariable(XQDynamicContext xqDynamicContext, MediatorVariable variable,
-                              SynapseLog synLog) throws XQException {
+                              Object value, SynapseLog synLog) throws XQException {
 
         if (variable != null) {
 
             QName name = variable.getName();
             int type = variable.getType();
-            Object value = variable.getValue();
 
             if (value != null && type != -1) {
 
@@ -696,6 +839,14 @@ public class XQueryMediator extends AbstractMediator {
         this.dataSourceProperties.addAll(list);
     }
 
+    public boolean isStreamResult() {
+        return streamResult;
+    }
+
+    public void setStreamResult(boolean streamResult) {
+        this.streamResult = streamResult;
+    }
+
     public boolean isUseDOMSource() {
         return useDOMSource;
     }
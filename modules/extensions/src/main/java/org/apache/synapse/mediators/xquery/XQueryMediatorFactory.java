@@ -38,7 +38,7 @@ import java.util.Properties;
  * Creates a XQuery mediator from the given XML
  * <p/>
  * <pre>
- * &lt;xquery key="string" [target="xpath"]&gt;
+ * &lt;xquery key="string" [target="xpath"] [streamResult="true|false"]&gt;
  *   &lt;variable name="string" type="string" [key="string"] [expression="xpath"]
  *      [value="string"]/&gt;?
  * &lt;/xquery&gt;
@@ -66,6 +66,8 @@ public class XQueryMediatorFactory extends AbstractMediatorFactory {
                 "key"));
         OMAttribute attrTarget = elem.getAttribute(new QName(XMLConfigConstants.NULL_NAMESPACE,
                 "target"));
+        OMAttribute attrStreamResult = elem.getAttribute(
+                new QName(XMLConfigConstants.NULL_NAMESPACE, "streamResult"));
         if (xqueryKey != null) {
             // KeyFactory for creating dynamic or static Key
             ValueFactory keyFac = new ValueFactory();
@@ -92,6 +94,10 @@ public class XQueryMediatorFactory extends AbstractMediatorFactory {
                 }
             }
         }
+        if (attrStreamResult != null) {
+            xQueryMediator.setStreamResult(
+                    Boolean.parseBoolean(attrStreamResult.getAttributeValue()));
+        }
         // after successfully creating the mediator
         // set its common attributes such as tracing etc
         processAuditStatus(xQueryMediator, elem);
@@ -37,7 +37,7 @@ import java.util.List;
  * Serialize the given XQuery mediator into a XML
  * <p/>
  * <pre>
- * &lt;xquery key="string" [target="xpath"]&gt;
+ * &lt;xquery key="string" [target="xpath"] [streamResult="true|false"]&gt;
  *   &lt;variable name="string" type="string" [key="string"] [expression="xpath"]
  *      [value="string"]/&gt;?
  * &lt;/xquery&gt;
@@ -70,6 +70,10 @@ public class XQueryMediatorSerializer extends AbstractMediatorSerializer {
             SynapseXPathSerializer.serializeXPath(targetXPath, xquery, "target");
         }
 
+        if (queryMediator.isStreamResult()) {
+            xquery.addAttribute(fac.createOMAttribute("streamResult", nullNS, "true"));
+        }
+
         List<MediatorProperty> pros = queryMediator.getDataSourceProperties();
         if (pros != null && !pros.isEmpty()) {
             OMElement dataSource = fac.createOMElement("dataSource", synNS);
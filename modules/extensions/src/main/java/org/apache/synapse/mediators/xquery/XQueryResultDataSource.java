@@ -0,0 +1,124 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.synapse.mediators.xquery;
+
+import net.sf.saxon.javax.xml.xquery.XQException;
+import net.sf.saxon.javax.xml.xquery.XQItem;
+import org.apache.axiom.om.OMDataSourceExt;
+import org.apache.axiom.om.OMOutputFormat;
+import org.apache.axiom.om.ds.OMDataSourceExtBase;
+import org.apache.axiom.om.util.StAXUtils;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.OutputKeys;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.util.Properties;
+
+/**
+ * Backs an XML result of the XQuery mediator with the result item itself. When the message
+ * is sent, Saxon serializes the item straight to the output stream of the transport, so the
+ * result is neither copied into an intermediate buffer nor built into an object model. The
+ * item is only parsed into an OMElement if a later mediator reads the content of the element.
+ * <p/>
+ * The item must not depend on the result sequence or on the pooled expression it was read
+ * from, since the element outlives both; see
+ * {@link net.sf.saxon.javax.xml.xquery.XQDataFactory#createItem(XQItem)}.
+ */
+public class XQueryResultDataSource extends OMDataSourceExtBase {
+
+    private final XQItem item;
+
+    public XQueryResultDataSource(XQItem item) {
+        this.item = item;
+    }
+
+    @Override
+    public void serialize(OutputStream out, OMOutputFormat format) throws XMLStreamException {
+        try {
+            item.writeItem(out, getOutputProperties(format.getCharSetEncoding()));
+        } catch (XQException e) {
+            throw new XMLStreamException("Error serializing the XQuery result", e);
+        }
+    }
+
+    @Override
+    public void serialize(Writer writer, OMOutputFormat format) throws XMLStreamException {
+        try {
+            item.writeItem(writer, getOutputProperties(format.getCharSetEncoding()));
+        } catch (XQException e) {
+            throw new XMLStreamException("Error serializing the XQuery result", e);
+        }
+    }
+
+    @Override
+    public XMLStreamReader getReader() throws XMLStreamException {
+        try {
+            return StAXUtils.createXMLStreamReader(new StringReader(item.getItemAsString()));
+        } catch (XQException e) {
+            throw new XMLStreamException("Error reading the XQuery result", e);
+        }
+    }
+
+    @Override
+    public byte[] getXMLBytes(String encoding) throws UnsupportedEncodingException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            item.writeItem(out, getOutputProperties(encoding));
+        } catch (XQException e) {
+            throw new IllegalStateException("Error serializing the XQuery result", e);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public Object getObject() {
+        return item;
+    }
+
+    @Override
+    public boolean isDestructiveRead() {
+        return false;
+    }
+
+    @Override
+    public boolean isDestructiveWrite() {
+        return false;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public OMDataSourceExt copy() {
+        return new XQueryResultDataSource(item);
+    }
+
+    private static Properties getOutputProperties(String encoding) {
+        Properties outputProperties = new Properties();
+        outputProperties.setProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+        outputProperties.setProperty(OutputKeys.ENCODING, encoding != null ? encoding : "UTF-8");
+        return outputProperties;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.mediators.bsf;
+
+import junit.framework.TestCase;
+
+import javax.script.ScriptException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ScriptEnginePoolTest extends TestCase {
+
+    private static class CountingFactory implements ScriptEnginePool.EngineFactory {
+        final AtomicInteger created = new AtomicInteger();
+
+        @Override
+        public ScriptEnginePool.PooledScriptEngine createEngine() throws ScriptException {
+            created.incrementAndGet();
+            return new ScriptEnginePool.PooledScriptEngine(null);
+        }
+    }
+
+    public void testEnginesAreCreatedOnDemandAndReused() throws Exception {
+        CountingFactory factory = new CountingFactory();
+        ScriptEnginePool pool = new ScriptEnginePool(2, factory, null);
+
+        ScriptEnginePool.PooledScriptEngine first = pool.borrow();
+        ScriptEnginePool.PooledScriptEngine second = pool.borrow();
+        assertNotSame(first, second);
+        assertEquals(2, factory.created.get());
+        assertEquals(0, pool.getIdleCount());
+
+        pool.release(first);
+        assertSame(first, pool.borrow());
+        assertEquals(2, factory.created.get());
+        assertEquals(3, pool.getBorrowCount());
+        assertEquals(0, pool.getWaitCount());
+    }
+
+    public void testBorrowWaitsForRelease() throws Exception {
+        final ScriptEnginePool pool = new ScriptEnginePool(1, new CountingFactory(), null);
+        final ScriptEnginePool.PooledScriptEngine engine = pool.borrow();
+        final AtomicReference<ScriptEnginePool.PooledScriptEngine> borrowed =
+                new AtomicReference<ScriptEnginePool.PooledScriptEngine>();
+
+        Thread waiter = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    borrowed.set(pool.borrow());
+                } catch (ScriptException ignored) {
+                }
+            }
+        };
+        waiter.start();
+        waiter.join(200);
+        assertTrue("Borrow should wait while the only engine is in use", waiter.isAlive());
+
+        pool.release(engine);
+        waiter.join(10000);
+        assertFalse(waiter.isAlive());
+        assertSame(engine, borrowed.get());
+        assertEquals(1, pool.getWaitCount());
+        assertEquals(1, pool.getSize());
+    }
+
+    public void testWaitingBorrowCreatesEngineAfterFailedCreation() throws Exception {
+        final CountDownLatch creating = new CountDownLatch(1);
+        final CountDownLatch fail = new CountDownLatch(1);
+        final AtomicInteger attempts = new AtomicInteger();
+        final ScriptEnginePool pool = new ScriptEnginePool(1, new ScriptEnginePool.EngineFactory() {
+            @Override
+            public ScriptEnginePool.PooledScriptEngine createEngine() throws ScriptException {
+                if (attempts.incrementAndGet() == 1) {
+                    creating.countDown();
+                    try {
+                        fail.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw new ScriptException("Engine creation failed");
+                }
+                return new ScriptEnginePool.PooledScriptEngine(null);
+            }
+        }, null);
+
+        final AtomicReference<Throwable> creatorError = new AtomicReference<Throwable>();
+        Thread creator = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    pool.borrow();
+                } catch (Throwable t) {
+                    creatorError.set(t);
+                }
+            }
+        };
+        creator.start();
+        assertTrue(creating.await(10, TimeUnit.SECONDS));
+
+        final AtomicReference<ScriptEnginePool.PooledScriptEngine> borrowed =
+                new AtomicReference<ScriptEnginePool.PooledScriptEngine>();
+        Thread waiter = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    borrowed.set(pool.borrow());
+                } catch (ScriptException ignored) {
+                }
+            }
+        };
+        waiter.start();
+        waiter.join(200);
+        assertTrue("The pool is full while the first engine is created", waiter.isAlive());
+
+        fail.countDown();
+        creator.join(10000);
+        assertTrue(creatorError.get() instanceof ScriptException);
+        waiter.join(10000);
+        assertFalse("The waiting borrow must not hang after the creation failed",
+                waiter.isAlive());
+        assertNotNull(borrowed.get());
+        assertEquals(2, attempts.get());
+        assertEquals(1, pool.getSize());
+    }
+}
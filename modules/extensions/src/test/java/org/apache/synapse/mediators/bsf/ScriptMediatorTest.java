@@ -31,6 +31,10 @@ import org.apache.synapse.mediators.TestUtils;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ScriptMediatorTest extends TestCase {
 
@@ -126,6 +130,38 @@ public class ScriptMediatorTest extends TestCase {
         assertNull(headersMap.get("PROP_TRP"));
     }
 
+    public void testConcurrentMediation() throws Exception {
+        final ScriptMediator mediator = new ScriptMediator("js", threadsafetyscript, null);
+        final AtomicInteger failures = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 200; i++) {
+            final int number = i;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        MessageContext mc = TestUtils.getTestContext(
+                                "<randomNo>" + number + "</randomNo>", null);
+                        mediator.mediate(mc);
+                        if (Integer.parseInt(mc.getEnvelope().getBody().getFirstElement()
+                                .getText()) != number * 2) {
+                            failures.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        failures.incrementAndGet();
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+        assertEquals(0, failures.get());
+
+        // Rhino supports multi-threading, so all the messages share a single engine. The
+        // pool used by other engines is covered by ScriptEnginePoolTest
+        assertNull(mediator.getEnginePool());
+    }
+
     public static Test suite() {
         TestSuite suite = new TestSuite();
         suite.addTest(new ScriptMediatorTest("testInlineMediator"));
@@ -134,6 +170,7 @@ public class ScriptMediatorTest extends TestCase {
         }
         suite.addTest(new ScriptMediatorTest("testSetProperty"));
         suite.addTest(new ScriptMediatorTest("testRemoveProperty"));
+        suite.addTest(new ScriptMediatorTest("testConcurrentMediation"));
         return suite;
     }
 
@@ -20,6 +20,8 @@ package org.apache.synapse.mediators.xquery;
 
 import junit.framework.TestCase;
 import org.apache.axiom.om.OMAbstractFactory;
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.OMSourcedElement;
 import org.apache.synapse.MessageContext;
 import org.apache.synapse.config.SynapseConfigUtils;
 import org.apache.synapse.mediators.TestUtils;
@@ -27,6 +29,10 @@ import org.apache.synapse.mediators.TestUtils;
 import javax.xml.namespace.QName;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.sf.saxon.javax.xml.xquery.XQItemType;
 
@@ -269,4 +275,51 @@ public class XQueryMediatorTest extends TestCase {
         assertTrue(mediator.mediate(mc));
         assertEquals("testing", mc.getEnvelope().getBody().getFirstElement().getLocalName());
     }
+
+    public void testConcurrentQueries() throws Exception {
+        final XQueryMediator mediator = new XQueryMediator();
+        MediatorVariable variable = new MediatorCustomVariable(new QName("payload"));
+        variable.setType(XQItemType.XQITEMKIND_DOCUMENT);
+        mediator.addVariable(variable);
+        mediator.setQuerySource("declare variable $payload as document-node() external;" +
+                "<result>{data($payload//value) * 2}</result>");
+
+        final AtomicInteger failures = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 200; i++) {
+            final int number = i;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        MessageContext mc = TestUtils.getTestContext(
+                                "<value>" + number + "</value>", null);
+                        mediator.mediate(mc);
+                        OMElement result = mc.getEnvelope().getBody().getFirstElement();
+                        if (!String.valueOf(number * 2).equals(result.getText())) {
+                            failures.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        failures.incrementAndGet();
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+        assertEquals(0, failures.get());
+    }
+
+    public void testStreamResult() throws Exception {
+        MessageContext mc = TestUtils.getTestContext("<foo/>", null);
+        XQueryMediator mediator = new XQueryMediator();
+        mediator.setStreamResult(true);
+        mediator.setQuerySource("<result><value>{1 + 1}</value></result>");
+        assertTrue(mediator.mediate(mc));
+        OMElement result = mc.getEnvelope().getBody().getFirstElement();
+        assertTrue(result instanceof OMSourcedElement);
+        assertFalse(((OMSourcedElement) result).isExpanded());
+        assertEquals("result", result.getLocalName());
+        assertEquals("2", result.getFirstElement().getText());
+    }
 }
@@ -28,8 +28,11 @@ import org.apache.synapse.transport.nhttp.util.AccessTimeUtil;
 
 import java.net.InetAddress;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -52,6 +55,12 @@ public class Access {
 
     private static AccessLogger accessLogger;
 
+    private static AsyncAccessLogger asyncAccessLogger;
+
+    /** The listeners and senders which have started using the access log, and not stopped */
+    private static final Set<Object> users =
+            Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+
     private static ConcurrentLinkedQueue<HttpRequest> requestQueue;
     private static ConcurrentLinkedQueue<HttpResponse> responseQueue;
 
@@ -73,13 +82,61 @@ public class Access {
         logAccesses();
     }
 
+    /**
+     * Constructor of AccessLog, which hands the formatted accesses over to an asynchronous
+     * writer instead of queueing up the messages for periodic logging.
+     *
+     * @param log               - Log passed as a param. Default is Log of the same class.
+     * @param asyncAccessLogger - AsyncAccessLogger Object
+     */
+    public Access(final Log log, AsyncAccessLogger asyncAccessLogger) {
+        super();
+        Access.log = log;
+        Access.asyncAccessLogger = asyncAccessLogger;
+        logElements = createLogElements();
+    }
+
+    /**
+     * Starts writing the accesses handed over to the asynchronous writer, if there is one.
+     * Called by the http listeners and senders when they start. The writer is shared by all
+     * of them, so it keeps running until the last transport which started it stops.
+     *
+     * @param transport the listener or sender starting
+     */
+    public void start(Object transport) {
+        synchronized (users) {
+            if (users.add(transport) && users.size() == 1 && asyncAccessLogger != null) {
+                asyncAccessLogger.start();
+            }
+        }
+    }
+
+    /**
+     * Writes out the accesses handed over to the asynchronous writer so far, if there is one,
+     * and stops the writer once no started transport uses it anymore. Called by the http
+     * listeners and senders when they stop.
+     *
+     * @param transport the listener or sender stopping
+     */
+    public void stop(Object transport) {
+        synchronized (users) {
+            if (users.remove(transport) && users.isEmpty() && asyncAccessLogger != null) {
+                asyncAccessLogger.stop();
+            }
+        }
+    }
+
     /**
      * Adds the accesses to the queue.
      *
      * @param request - HttpRequest
      */
     public void addAccessToQueue(HttpRequest request) {
-        requestQueue.add(request);
+        if (asyncAccessLogger != null) {
+            log(request, null);
+        } else {
+            requestQueue.add(request);
+        }
     }
 
     /**
@@ -88,7 +145,11 @@ public class Access {
      * @param response - HttpResponse
      */
     public void addAccessToQueue(HttpResponse response) {
-        responseQueue.add(response);
+        if (asyncAccessLogger != null) {
+            log(null, response);
+        } else {
+            responseQueue.add(response);
+        }
     }
 
     /**
@@ -140,7 +201,11 @@ public class Access {
         }
         String logString = result.toString();
         log.debug(logString);      //log to the console
-        accessLogger.log(logString);      //log to the file
+        if (asyncAccessLogger != null) {
+            asyncAccessLogger.log(logString);      //queue for the file writer
+        } else {
+            accessLogger.log(logString);      //log to the file
+        }
     }
 
     /**
@@ -30,9 +30,18 @@ public class AccessHandler {
 
     private final static Log accessLog = LogFactory.getLog(ACCESS_LOG_ID);
 
-    private static final AccessLogger accessLogger = new AccessLogger(accessLog);
-
-    private static final Access access = new Access(accessLog, accessLogger);
+    private static final Access access = createAccess();
+
+    private static Access createAccess() {
+        NHttpConfiguration cfg = NHttpConfiguration.getInstance();
+        if (cfg.isAsyncAccessLogEnabled()) {
+            AsyncAccessLogger asyncAccessLogger = new AsyncAccessLogger(accessLog,
+                    cfg.getAccessLogBufferSize(), cfg.getAccessLogWriteBufferSize(),
+                    cfg.getAccessLogFullPolicy());
+            return new Access(accessLog, asyncAccessLogger);
+        }
+        return new Access(accessLog, new AccessLogger(accessLog));
+    }
 
     public static Access getAccess() {
         return access;
@@ -0,0 +1,426 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.transport.nhttp;
+
+import org.apache.commons.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>Writes the Http Accesses to the access log files from a single background thread, so that
+ * threads reporting accesses never wait on the file system. Log records are preformatted by the
+ * reporting threads and pushed onto a bounded, lock-free ring buffer. The writer thread drains
+ * the ring in batches, encodes the records into a reusable direct buffer and hands them to a
+ * {@link FileChannel} in large writes.</p>
+ *
+ * <p>Daily rotation is handled by the writer thread alone. The date stamp of the log file name
+ * is formatted once per rotation, and the time of the next rotation is precomputed, so the
+ * writer only compares two longs per batch to decide whether to switch files.</p>
+ *
+ * <p>When the ring is full, the configured {@link FullPolicy} decides whether the record is
+ * dropped (and counted) or the reporting thread waits for space to become available. Records
+ * are dropped by default, as the reporting thread is usually an I/O reactor thread.</p>
+ *
+ * <p>{@link #stop()} writes out everything queued so far and closes the log file. The logger
+ * is shared by all the http listeners and senders, and {@link Access} only stops it once the
+ * last of them stops. Records queued after that are kept in the ring until the writer is
+ * started again, or written out by the next stop.</p>
+ */
+public class AsyncAccessLogger {
+
+    /**
+     * What to do with a log record when the ring buffer is full
+     */
+    public enum FullPolicy {
+        /** Discard the record and increment the dropped record count */
+        DROP,
+        /** Wait until the writer makes space for the record, which stalls the reporting thread */
+        BLOCK
+    }
+
+    /** How long the writer thread sleeps when there is nothing to write */
+    private static final long IDLE_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    /** How long a producer waits between attempts when the ring is full under BLOCK policy */
+    private static final long FULL_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private static final byte[] LINE_SEPARATOR =
+            System.getProperty("line.separator", "\n").getBytes(Charset.forName("UTF-8"));
+
+    private final Log log;
+
+    private final FullPolicy fullPolicy;
+
+    /* The ring buffer - each slot carries a sequence number which tells whether it is
+       free to be written by a producer or ready to be read by the writer */
+    private final AtomicReferenceArray<String> records;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong producerPosition = new AtomicLong(0);
+    /** Only ever updated by the writer thread */
+    private volatile long consumerPosition = 0;
+
+    private final AtomicLong droppedRecords = new AtomicLong(0);
+    private final AtomicLong writtenRecords = new AtomicLong(0);
+
+    /* Writer thread state - only accessed by the writer thread, or by stop() once the
+       writer thread has terminated */
+    private final ByteBuffer writeBuffer;
+    /** Number of records in the write buffer, which are counted once the buffer is written */
+    private int bufferedRecords = 0;
+    private final CharsetEncoder encoder;
+    private final SimpleDateFormat fileDateFormatter =
+            new SimpleDateFormat(AccessConstants.FILE_FORMAT);
+    private FileChannel channel;
+    private long nextRotationTime = 0L;
+
+    private final File directory;
+    private final boolean isRotatable;
+    private volatile Thread writer;
+    private volatile boolean running = false;
+
+    /**
+     * Create and start an asynchronous access logger
+     *
+     * @param log             Log used to report problems with the access log files
+     * @param capacity        number of records the ring buffer can hold, rounded up to a
+     *                        power of two
+     * @param writeBufferSize size of the buffer used to batch records into a single write
+     * @param fullPolicy      what to do with records when the ring buffer is full
+     */
+    public AsyncAccessLogger(final Log log, int capacity, int writeBufferSize,
+                             FullPolicy fullPolicy) {
+        this(log, capacity, writeBufferSize, fullPolicy,
+                new File(AccessConstants.DIRECTORY), true);
+    }
+
+    AsyncAccessLogger(final Log log, int capacity, int writeBufferSize, FullPolicy fullPolicy,
+                      File directory, boolean isRotatable) {
+        this.log = log;
+        this.fullPolicy = fullPolicy;
+        this.directory = directory;
+        this.isRotatable = isRotatable;
+
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        this.records = new AtomicReferenceArray<String>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+
+        this.writeBuffer = ByteBuffer.allocateDirect(Math.max(writeBufferSize, 1024));
+        this.encoder = Charset.forName("UTF-8").newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        start();
+    }
+
+    /**
+     * Queue the specified message to be written to the log file. This never blocks on
+     * file system operations. When the ring is full the message is either dropped or the
+     * caller waits for space, depending on the configured policy. A stopped logger never
+     * makes the caller wait.
+     *
+     * @param message Message to be logged
+     */
+    public void log(String message) {
+        while (!offer(message)) {
+            if (fullPolicy == FullPolicy.DROP || !running) {
+                droppedRecords.incrementAndGet();
+                return;
+            }
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(this, FULL_WAIT_NANOS);
+        }
+    }
+
+    /**
+     * Start the writer thread, unless it is already running
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        if (writer != null && writer.isAlive()) {
+            // the previous writer did not stop in time, and carries on writing
+            return;
+        }
+        Thread thread = new Thread(new Writer(), "http-access-log-writer");
+        thread.setDaemon(true);
+        writer = thread;
+        thread.start();
+    }
+
+    /**
+     * Stop the writer thread, after writing out all the records queued so far
+     */
+    public synchronized void stop() {
+        Thread thread = writer;
+        running = false;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (thread.isAlive()) {
+                log.warn("The access log writer did not stop in time");
+                return;
+            }
+            writer = null;
+        }
+        // records queued while the writer was stopping or already stopped
+        if (getBacklog() > 0) {
+            drain();
+        }
+        closeChannel();
+    }
+
+    /**
+     * @return true if the writer thread is running
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @return number of records dropped because the ring buffer was full, or because they
+     * could not be written to the log file
+     */
+    public long getDroppedRecordCount() {
+        return droppedRecords.get();
+    }
+
+    /**
+     * @return number of records written to the log files
+     */
+    public long getWrittenRecordCount() {
+        return writtenRecords.get();
+    }
+
+    /**
+     * @return number of records waiting to be written
+     */
+    public int getBacklog() {
+        return (int) (producerPosition.get() - consumerPosition);
+    }
+
+    private boolean offer(String message) {
+        while (true) {
+            long position = producerPosition.get();
+            int index = (int) position & mask;
+            long diff = sequences.get(index) - position;
+            if (diff == 0) {
+                if (producerPosition.compareAndSet(position, position + 1)) {
+                    records.lazySet(index, message);
+                    sequences.set(index, position + 1);
+                    if (position - consumerPosition == (mask + 1) / 2) {
+                        // wake the writer up early rather than letting the ring fill up
+                        LockSupport.unpark(writer);
+                    }
+                    return true;
+                }
+            } else if (diff < 0) {
+                // the writer has not yet consumed the record written a full lap ago
+                return false;
+            }
+            // another producer claimed this position - try the next one
+        }
+    }
+
+    private String poll() {
+        long position = consumerPosition;
+        int index = (int) position & mask;
+        if (sequences.get(index) != position + 1) {
+            return null;
+        }
+        String message = records.get(index);
+        records.lazySet(index, null);
+        sequences.set(index, position + mask + 1);
+        consumerPosition = position + 1;
+        return message;
+    }
+
+    private class Writer implements Runnable {
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    // read running before draining, so nothing queued before stop() is lost
+                    boolean stopping = !running;
+                    int count = drain();
+                    if (count == 0) {
+                        if (stopping) {
+                            break;
+                        }
+                        LockSupport.parkNanos(this, IDLE_WAIT_NANOS);
+                    }
+                }
+            } finally {
+                closeChannel();
+            }
+        }
+    }
+
+    /**
+     * Write out whatever is available in the ring buffer
+     *
+     * @return number of records taken off the ring buffer
+     */
+    private int drain() {
+        rotateIfRequired();
+
+        int count = 0;
+        String message;
+        while ((message = poll()) != null) {
+            append(message);
+            count++;
+        }
+
+        if (count > 0) {
+            flush();
+        }
+        return count;
+    }
+
+    private void append(String message) {
+        bufferedRecords++;
+        CharBuffer chars = CharBuffer.wrap(message);
+        encoder.reset();
+        while (true) {
+            CoderResult result = encoder.encode(chars, writeBuffer, true);
+            if (result.isOverflow()) {
+                flush();
+            } else {
+                break;
+            }
+        }
+        if (writeBuffer.remaining() < LINE_SEPARATOR.length) {
+            flush();
+        }
+        writeBuffer.put(LINE_SEPARATOR);
+    }
+
+    private void flush() {
+        writeBuffer.flip();
+        boolean written = false;
+        try {
+            if (channel != null) {
+                while (writeBuffer.hasRemaining()) {
+                    channel.write(writeBuffer);
+                }
+                written = true;
+            }
+        } catch (IOException e) {
+            log.warn("Unable to write to the access log file", e);
+            closeChannel();
+        } finally {
+            writeBuffer.clear();
+        }
+
+        if (written) {
+            writtenRecords.addAndGet(bufferedRecords);
+        } else {
+            droppedRecords.addAndGet(bufferedRecords);
+        }
+        bufferedRecords = 0;
+    }
+
+    private void rotateIfRequired() {
+        long now = System.currentTimeMillis();
+        if (now < nextRotationTime) {
+            return;
+        }
+
+        closeChannel();
+
+        String pathName;
+        File dir = directory;
+        if (!dir.exists() && !dir.mkdirs()) {
+            log.error("Access Log Open Directory Failed");
+        }
+        // If no rotate - no need for dateStamp in fileName
+        if (isRotatable) {
+            pathName = dir.getAbsolutePath() + File.separator + AccessConstants.PREFIX +
+                       fileDateFormatter.format(new Date(now)) + AccessConstants.SUFFIX;
+            nextRotationTime = getNextDayStart(now);
+        } else {
+            pathName = dir.getAbsolutePath() + File.separator + AccessConstants.PREFIX +
+                       AccessConstants.SUFFIX;
+            nextRotationTime = Long.MAX_VALUE;
+        }
+
+        try {
+            channel = FileChannel.open(new File(pathName).toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            log.warn("Unable to open the access log file " + pathName, e);
+            channel = null;
+            // do not retry on every batch
+            nextRotationTime = now + 1000;
+        }
+    }
+
+    private void closeChannel() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.info("Access Log file Close failed");
+        }
+        channel = null;
+        // open the file again for the next batch
+        nextRotationTime = 0L;
+    }
+
+    private static long getNextDayStart(long time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        calendar.add(Calendar.DAY_OF_MONTH, 1);
+        return calendar.getTimeInMillis();
+    }
+}
@@ -349,12 +349,17 @@ public class Axis2HttpRequest {
      * @throws IOException if an exception occurred while writing data
      */
     private void setStreamAsTempData(BasicHttpEntity entity) throws IOException {
-        OverflowBlob serialized = new OverflowBlob(256, 4096, "http-nio_", ".dat");
+        OverflowBlob serialized = NhttpUtil.createSerializationBlob(msgContext);
         OutputStream out = serialized.getOutputStream();
+        boolean written = false;
         try {
             messageFormatter.writeTo(msgContext, format, out, true);
+            written = true;
         } finally {
             out.close();
+            if (!written) {
+                serialized.release();
+            }
         }
         msgContext.setProperty(NhttpConstants.SERIALIZED_BYTES, serialized);
         entity.setContentLength(serialized.getLength());
@@ -38,9 +38,9 @@ import org.apache.http.HttpStatus;
 import org.apache.http.nio.NHttpServerConnection;
 import org.apache.http.protocol.HTTP;
 import org.apache.synapse.transport.nhttp.util.RESTUtil;
+import org.apache.synapse.transport.nhttp.util.ServiceDocumentCache;
 import org.apache.ws.commons.schema.XmlSchema;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.InetAddress;
@@ -63,10 +63,17 @@ public class DefaultHttpGetProcessor implements HttpGetRequestProcessor {
 
     protected ServerHandler serverHandler;
 
+    /** The generated ?wsdl, ?wsdl2 and ?xsd documents of the services */
+    protected final ServiceDocumentCache documentCache = new ServiceDocumentCache();
+
+    /** The address written into the generated documents, looked up on the first request */
+    private volatile String ipAddress;
+
     @Override
     public void init(ConfigurationContext cfgCtx, ServerHandler serverHandler) throws AxisFault {
         this.cfgCtx = cfgCtx;
         this.serverHandler = serverHandler;
+        documentCache.observe(cfgCtx.getAxisConfiguration());
     }
 
     /**
@@ -294,22 +301,24 @@ public class DefaultHttpGetProcessor implements HttpGetRequestProcessor {
                                OutputStream os, String serviceName,
                                Map<String, String> parameters, boolean isRestDispatching) {
         if (parameters.get("xsd") == null || "".equals(parameters.get("xsd"))) {
-            AxisService service = cfgCtx.getAxisConfiguration()
+            final AxisService service = cfgCtx.getAxisConfiguration()
                     .getServices().get(serviceName);
             if (service != null) {
                 try {
-                    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                    service.printSchema(baos);
-                    response.addHeader(CONTENT_TYPE, TEXT_XML);
-                    serverHandler.commitResponseHideExceptions(conn, response);
-                    os.write(baos.toByteArray());
-                    closeOutputStream(os);
+                    writeDocument(request, response, conn, os, service, "xsd",
+                            new ServiceDocumentCache.DocumentGenerator() {
+                                @Override
+                                public void generate(OutputStream out) throws Exception {
+                                    service.printSchema(out);
+                                }
+                            });
 
                 } catch (Exception e) {
                     handleBrowserException(response, conn, os,
                             "Error generating ?xsd output for service : " + serviceName, e);
                 }
             } else {
+                documentCache.invalidate(serviceName);
                 processGetAndDelete(request, response, messageCtx, conn, os,
                         serviceName, isRestDispatching);
             }
@@ -335,13 +344,15 @@ public class DefaultHttpGetProcessor implements HttpGetRequestProcessor {
                 }
                 //schema found - write it to the stream
                 if (schema != null) {
+                    final XmlSchema namedSchema = schema;
                     try {
-                        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                        schema.write(baos);
-                        response.addHeader(CONTENT_TYPE, TEXT_XML);
-                        serverHandler.commitResponseHideExceptions(conn, response);
-                        os.write(baos.toByteArray());
-                        closeOutputStream(os);
+                        writeDocument(request, response, conn, os, service, "xsd=" + schemaName,
+                                new ServiceDocumentCache.DocumentGenerator() {
+                                    @Override
+                                    public void generate(OutputStream out) throws Exception {
+                                        namedSchema.write(out);
+                                    }
+                                });
                     } catch (Exception e) {
                         handleBrowserException(response, conn, os,
                                 "Error generating named ?xsd output for service : " + serviceName, e);
@@ -353,6 +364,7 @@ public class DefaultHttpGetProcessor implements HttpGetRequestProcessor {
                     closeOutputStream(os);
                 }
             } else {
+                documentCache.invalidate(serviceName);
                 processGetAndDelete(request, response, messageCtx, conn, os,
                         serviceName, isRestDispatching);
             }
@@ -374,7 +386,7 @@ public class DefaultHttpGetProcessor implements HttpGetRequestProcessor {
                                  MessageContext msgContext,
                                  NHttpServerConnection conn,
                                  OutputStream os, String serviceName, boolean isRestDispatching) {
-        AxisService service = cfgCtx.getAxisConfiguration().
+        final AxisService service = cfgCtx.getAxisConfiguration().
                 getServices().get(serviceName);
         if (service != null) {
             String parameterValue = (String) service.getParameterValue("serviceType");
@@ -384,18 +396,21 @@ public class DefaultHttpGetProcessor implements HttpGetRequestProcessor {
                                 ". A WSDL cannot be generated.", null);
             }
             try {
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                service.printWSDL2(baos, getIpAddress());
-                response.addHeader(CONTENT_TYPE, TEXT_XML);
-                serverHandler.commitResponseHideExceptions(conn, response);
-                os.write(baos.toByteArray());
-                closeOutputStream(os);
+                final String ipAddress = getServiceIpAddress();
+                writeDocument(request, response, conn, os, service, "wsdl2@" + ipAddress,
+                        new ServiceDocumentCache.DocumentGenerator() {
+                            @Override
+                            public void generate(OutputStream out) throws Exception {
+                                service.printWSDL2(out, ipAddress);
+                            }
+                        });
 
             } catch (Exception e) {
                 handleBrowserException(response, conn, os,
                         "Error generating ?wsdl2 output for service : " + serviceName, e);
             }
         } else {
+            documentCache.invalidate(serviceName);
             processGetAndDelete(request, response, msgContext,
                     conn, os, "GET", isRestDispatching);
         }
@@ -418,33 +433,62 @@ public class DefaultHttpGetProcessor implements HttpGetRequestProcessor {
                                 NHttpServerConnection conn,
                                 OutputStream os, String serviceName,
                                 Map<String, String> parameters, boolean isRestDispatching) {
-        AxisService service = cfgCtx.getAxisConfiguration().
+        final AxisService service = cfgCtx.getAxisConfiguration().
                 getServices().get(serviceName);
         if (service != null) {
             try {
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                String parameterValue = parameters.get("wsdl");
-                if (parameterValue == null) {
-                    service.printWSDL(baos, getIpAddress());
-                } else {
-                    // here the parameter value should be the wsdl file name
-                    service.printUserWSDL(baos, parameterValue);
-                }
-                response.addHeader(CONTENT_TYPE, TEXT_XML);
-                serverHandler.commitResponseHideExceptions(conn, response);
-                os.write(baos.toByteArray());
-                closeOutputStream(os);
+                final String parameterValue = parameters.get("wsdl");
+                final String ipAddress = parameterValue == null ? getServiceIpAddress() : null;
+                writeDocument(request, response, conn, os, service,
+                        parameterValue == null ? "wsdl@" + ipAddress : "wsdl=" + parameterValue,
+                        new ServiceDocumentCache.DocumentGenerator() {
+                            @Override
+                            public void generate(OutputStream out) throws Exception {
+                                if (parameterValue == null) {
+                                    service.printWSDL(out, ipAddress);
+                                } else {
+                                    // here the parameter value should be the wsdl file name
+                                    service.printUserWSDL(out, parameterValue);
+                                }
+                            }
+                        });
 
             } catch (Exception e) {
                 handleBrowserException(response, conn, os,
                         "Error generating ?wsdl output for service : " + serviceName, e);
             }
         } else {
+            documentCache.invalidate(serviceName);
             processGetAndDelete(request, response, msgContext,
                     conn, os, "GET", isRestDispatching);
         }
     }
 
+    /**
+     * Writes a document of a service, generating it only if it is not cached. Conditional
+     * and gzip accepting requests are answered from the cached document as well.
+     *
+     * @param request   HttpRequest
+     * @param response  HttpResponse
+     * @param conn      NHttpServerConnection
+     * @param os        OutputStream
+     * @param service   the service the document belongs to
+     * @param key       identifies the document within the service
+     * @param generator generates the document
+     * @throws Exception if the document cannot be generated or written
+     */
+    protected void writeDocument(HttpRequest request, HttpResponse response,
+                                 NHttpServerConnection conn, OutputStream os,
+                                 AxisService service, String key,
+                                 ServiceDocumentCache.DocumentGenerator generator)
+            throws Exception {
+        byte[] body = documentCache.getDocument(service, key, generator)
+                .prepareResponse(request, response, TEXT_XML);
+        serverHandler.commitResponseHideExceptions(conn, response);
+        os.write(body);
+        closeOutputStream(os);
+    }
+
     /**
      * Calls the RESTUtil to process GET and DELETE Request
      *
@@ -577,6 +621,22 @@ public class DefaultHttpGetProcessor implements HttpGetRequestProcessor {
         return isWSDLProvided;
     }
 
+    /**
+     * Get the IP address used in the generated documents. Walking the network interfaces is
+     * expensive, hence the address is only looked up once.
+     *
+     * @return the IP address
+     * @throws java.net.SocketException if the socket can not be accessed
+     */
+    protected String getServiceIpAddress() throws SocketException {
+        String address = ipAddress;
+        if (address == null) {
+            address = getIpAddress();
+            ipAddress = address;
+        }
+        return address;
+    }
+
     /**
      * Whatever this method returns as the IP is ignored by the actual http/s listener when
      * its getServiceEPR is invoked. This was originally copied from axis2
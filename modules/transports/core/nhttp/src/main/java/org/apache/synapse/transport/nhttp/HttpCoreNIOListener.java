@@ -198,6 +198,7 @@ public class HttpCoreNIOListener implements TransportListener, ManagementSupport
         if (log.isDebugEnabled()) {
             log.debug("Starting Listener...");
         }
+        AccessHandler.getAccess().start(this);
         
         // configure the IO reactor on the specified port
         try {
@@ -316,6 +317,8 @@ public class HttpCoreNIOListener implements TransportListener, ManagementSupport
             }
         } catch (IOException e) {
             handleException("Error shutting down IOReactor", e);
+        } finally {
+            AccessHandler.getAccess().stop(this);
         }
     }
 
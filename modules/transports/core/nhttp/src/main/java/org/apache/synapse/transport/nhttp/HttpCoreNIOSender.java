@@ -113,6 +113,7 @@ public class HttpCoreNIOSender extends AbstractHandler implements TransportSende
      */
     @Override
     public void init(ConfigurationContext cfgCtx, TransportOutDescription transportOut) throws AxisFault {
+        AccessHandler.getAccess().start(this);
         // is this an SSL Sender?
         sslContext = getSSLContext(transportOut);
         SSLSetupHandler sslSetupHandler = getSSLSetupHandler(transportOut);
@@ -601,12 +602,17 @@ public class HttpCoreNIOSender extends AbstractHandler implements TransportSende
     private void setStreamAsTempData(BasicHttpEntity entity, MessageFormatter messageFormatter,
                                      MessageContext msgContext, OMOutputFormat format)
             throws IOException {
-        OverflowBlob serialized = new OverflowBlob(256, 4096, "http-nio_", ".dat");
+        OverflowBlob serialized = NhttpUtil.createSerializationBlob(msgContext);
         OutputStream out = serialized.getOutputStream();
+        boolean written = false;
         try {
             messageFormatter.writeTo(msgContext, format, out, true);
+            written = true;
         } finally {
             out.close();
+            if (!written) {
+                serialized.release();
+            }
         }
         msgContext.setProperty(NhttpConstants.SERIALIZED_BYTES, serialized);
         entity.setContentLength(serialized.getLength());
@@ -733,6 +739,7 @@ public class HttpCoreNIOSender extends AbstractHandler implements TransportSende
         } catch (IOException e) {
             log.warn("Error shutting down IOReactor", e);
         }
+        AccessHandler.getAccess().stop(this);
         mbeanSupport.unregister();
         metrics.destroy();
     }
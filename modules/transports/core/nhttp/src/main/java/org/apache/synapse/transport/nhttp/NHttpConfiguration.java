@@ -38,6 +38,8 @@ public final class NHttpConfiguration extends HttpTransportConfiguration {
     private static final int BLOCKING_QUEUE_LENGTH = -1;
     private static final int IO_WORKER_COUNT = Runtime.getRuntime().availableProcessors();
     private static final int BUFFER_SIZE           = 8192;
+    private static final int ACCESS_LOG_BUFFER_SIZE = 8192;
+    private static final int ACCESS_LOG_WRITE_BUFFER_SIZE = 256 * 1024;
 
     // server listener
     private static final String S_T_CORE     = "snd_t_core";
@@ -57,6 +59,12 @@ public final class NHttpConfiguration extends HttpTransportConfiguration {
     private static final String G_BUFFER_SIZE  = "nhttp_buffer_size";
     private static final String G_DISABLED_HTTP_METHODS = "nhttp_disabled_methods";
 
+    // access log
+    private static final String A_ASYNC = "access_log_async";
+    private static final String A_BUFFER_SIZE = "access_log_buffer_size";
+    private static final String A_WRITE_BUFFER_SIZE = "access_log_write_buffer_size";
+    private static final String A_FULL_POLICY = "access_log_full_policy";
+
     private static NHttpConfiguration _instance = new NHttpConfiguration();
     private List<String> methods;
     //Preserve HTTP headers
@@ -128,6 +136,29 @@ public final class NHttpConfiguration extends HttpTransportConfiguration {
         return getStringProperty(BLOCK_SERVICE_LIST, BLOCK_SERVICE_LIST_DEFAULT);
     }
 
+    public boolean isAsyncAccessLogEnabled() {
+        return getBooleanProperty(A_ASYNC, false);
+    }
+
+    public int getAccessLogBufferSize() {
+        return getIntProperty(A_BUFFER_SIZE, ACCESS_LOG_BUFFER_SIZE);
+    }
+
+    public int getAccessLogWriteBufferSize() {
+        return getIntProperty(A_WRITE_BUFFER_SIZE, ACCESS_LOG_WRITE_BUFFER_SIZE);
+    }
+
+    public AsyncAccessLogger.FullPolicy getAccessLogFullPolicy() {
+        String policy = getStringProperty(A_FULL_POLICY, AsyncAccessLogger.FullPolicy.DROP.name());
+        try {
+            return AsyncAccessLogger.FullPolicy.valueOf(policy.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid http tuning property value. " + A_FULL_POLICY +
+                    " must be one of 'drop' or 'block'");
+            return AsyncAccessLogger.FullPolicy.DROP;
+        }
+    }
+
     public boolean isHttpMethodDisabled(String method) {
         if (methods == null) {
             methods = new ArrayList<String>();
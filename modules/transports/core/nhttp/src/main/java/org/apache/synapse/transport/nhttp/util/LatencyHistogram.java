@@ -0,0 +1,185 @@
+/*
+*  Licensed to the Apache Software Foundation (ASF) under one
+*  or more contributor license agreements.  See the NOTICE file
+*  distributed with this work for additional information
+*  regarding copyright ownership.  The ASF licenses this file
+*  to you under the Apache License, Version 2.0 (the
+*  "License"); you may not use this file except in compliance
+*  with the License.  You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+*  Unless required by applicable law or agreed to in writing,
+*  software distributed under the License is distributed on an
+*   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+*  KIND, either express or implied.  See the License for the
+*  specific language governing permissions and limitations
+*  under the License.
+*/
+
+package org.apache.synapse.transport.nhttp.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>A rolling window latency histogram which can be updated concurrently without locking and
+ * without allocating any objects on the recording path. The histogram is made of a ring of
+ * fixed size interval slots, each of which holds a preallocated array of bucket counters. Values
+ * are always recorded into the current slot, and the owner of the histogram is expected to call
+ * {@link #rotate()} once every interval so the oldest slot is cleared and reused.</p>
+ *
+ * <p>Buckets use a log-linear layout: values below 16 get a bucket of their own, and every
+ * following power of two range is split into 16 equally sized buckets. This keeps the
+ * relative error of a reported percentile under 6.25% for any value up to
+ * {@link Integer#MAX_VALUE}, while needing less than 500 counters per slot.</p>
+ */
+public class LatencyHistogram {
+
+    /** Number of bits used to index the linear sub buckets within a power of two range */
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /** Largest value that can be tracked - anything above this is recorded as this value */
+    static final long MAX_TRACKABLE_VALUE = Integer.MAX_VALUE;
+
+    static final int BUCKET_COUNT = bucketIndex(MAX_TRACKABLE_VALUE) + 1;
+
+    private final AtomicLongArray[] counts;
+    private final AtomicLongArray maxValues;
+
+    /** Index of the slot currently being recorded to */
+    private volatile int current = 0;
+
+    /**
+     * Create a histogram which reports over the given number of intervals
+     *
+     * @param intervals number of past intervals (in addition to the current one) to report on
+     */
+    public LatencyHistogram(int intervals) {
+        if (intervals < 1) {
+            throw new IllegalArgumentException("At least one interval is required");
+        }
+        counts = new AtomicLongArray[intervals + 1];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new AtomicLongArray(BUCKET_COUNT);
+        }
+        maxValues = new AtomicLongArray(intervals + 1);
+    }
+
+    /**
+     * Record a single value. Negative values are recorded as 0.
+     *
+     * @param value the value to be recorded
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        } else if (value > MAX_TRACKABLE_VALUE) {
+            value = MAX_TRACKABLE_VALUE;
+        }
+
+        int slot = current;
+        counts[slot].incrementAndGet(bucketIndex(value));
+
+        long max;
+        while ((max = maxValues.get(slot)) < value) {
+            if (maxValues.compareAndSet(slot, max, value)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Move on to the next interval. The oldest interval is cleared and becomes the one
+     * recorded to. This should only be invoked by a single thread.
+     */
+    public void rotate() {
+        int next = (current + 1) % counts.length;
+        clearSlot(next);
+        current = next;
+    }
+
+    /**
+     * Clear all the data recorded so far
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length; i++) {
+            clearSlot(i);
+        }
+    }
+
+    /**
+     * Returns the value at the given percentile of the values recorded within the window.
+     * The upper bound of the matching bucket is reported, capped by the largest recorded value.
+     *
+     * @param percentile percentile to be calculated, in the range 0 to 100
+     * @return the value at the given percentile or 0 if no values have been recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] snapshot = new long[BUCKET_COUNT];
+        long total = 0;
+        for (AtomicLongArray slot : counts) {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                long c = slot.get(i);
+                snapshot[i] += c;
+                total += c;
+            }
+        }
+
+        if (total == 0) {
+            return 0;
+        }
+
+        long target = (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * total);
+        if (target < 1) {
+            target = 1;
+        }
+
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= target) {
+                return Math.min(highestEquivalentValue(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Returns the largest value recorded within the window
+     *
+     * @return the largest recorded value or 0 if no values have been recorded
+     */
+    public long getMax() {
+        long max = 0;
+        for (int i = 0; i < maxValues.length(); i++) {
+            max = Math.max(max, maxValues.get(i));
+        }
+        return max;
+    }
+
+    private void clearSlot(int slot) {
+        AtomicLongArray array = counts[slot];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            array.set(i, 0);
+        }
+        maxValues.set(slot, 0);
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index >> SUB_BUCKET_BITS) - 1;
+        long lowest = ((long) (index - (shift << SUB_BUCKET_BITS))) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
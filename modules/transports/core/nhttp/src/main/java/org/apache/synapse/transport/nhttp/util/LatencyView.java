@@ -21,10 +21,8 @@ package org.apache.synapse.transport.nhttp.util;
 
 import org.apache.synapse.commons.jmx.MBeanRegistrar;
 
-import java.util.LinkedList;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.*;
-import java.util.Queue;
 import java.util.Date;
 import java.util.Calendar;
 
@@ -51,6 +49,11 @@ import java.util.Calendar;
  *    Latency = (t4 - t1) - (t3 - t2)
  * </p>
  *
+ * <p>In addition to the averages, the mediation latency and the backend latency (t3 - t2) of
+ * each invocation are recorded into {@link LatencyHistogram} instances, from which percentiles
+ * over the last minute are reported. Recording a value does not acquire any locks or allocate
+ * any objects, so the cost of monitoring stays flat regardless of the message rate.</p>
+ *
  */
 public class LatencyView implements LatencyViewMBean {
 
@@ -59,32 +62,37 @@ public class LatencyView implements LatencyViewMBean {
     private static final int SAMPLES_PER_MINUTE = 60/ SMALL_DATA_COLLECTION_PERIOD;
     private static final int SAMPLES_PER_HOUR = (60 * 60)/LARGE_DATA_COLLECTION_PERIOD;
 
+    /** Number of short term collection periods covered by the percentile histograms */
+    private static final int HISTOGRAM_INTERVALS = SAMPLES_PER_MINUTE;
+
     /** Keeps track of th last reported latency value */
     private AtomicLong lastLatency = new AtomicLong(0);
 
-    /**
-     * Queue of all latency values reported. The short term data collector clears this queue up
-     * time to time thus ensuring it doesn't grow indefinitely.
-     */
-    private Queue<Long> latencyDataQueue = new ConcurrentLinkedQueue<Long>();
+    /** Sum and count of all latency values reported, used to compute the all time average */
+    private AtomicLong latencySum = new AtomicLong(0);
+    private AtomicLong latencyCount = new AtomicLong(0);
 
     /**
-     * Queue of samples collected by the short term data collector. This is maintained
-     * as a fixed length queue
+     * Samples collected by the short term data collector. This is maintained
+     * as a fixed length ring
      */
-    private Queue<Long> shortTermLatencyDataQueue = new LinkedList<Long>();
+    private SampleRing shortTermLatencyData = new SampleRing(SAMPLES_PER_MINUTE * 15);
 
     /**
-     * Queue of samples collected by the long term data collector. This is maintained
-     * as a fixed length queue
+     * Samples collected by the long term data collector. This is maintained
+     * as a fixed length ring
      */
-    private Queue<Long> longTermLatencyDataQueue = new LinkedList<Long>();
+    private SampleRing longTermLatencyData = new SampleRing(SAMPLES_PER_HOUR * 24);
+
+    /** Distribution of the latency added by the mediation during the last minute */
+    private LatencyHistogram mediationLatencyHistogram = new LatencyHistogram(HISTOGRAM_INTERVALS);
+
+    /** Distribution of the time spent waiting on the backend during the last minute */
+    private LatencyHistogram backendLatencyHistogram = new LatencyHistogram(HISTOGRAM_INTERVALS);
 
     /** Scheduled executor on which data collectors are executed */
     private ScheduledExecutorService scheduler;
 
-    private double allTimeAvgLatency = 0.0;
-    private int count = 0;
     private Date resetTime = Calendar.getInstance().getTime();
 
     private String latencyMode;
@@ -133,14 +141,22 @@ public class LatencyView implements LatencyViewMBean {
     public void notifyTimes(long reqArrival, long reqDeparture,
                             long resArrival, long resDeparture) {
 
-        long latency = (resDeparture - reqArrival) - (resArrival - reqDeparture);
+        long backendLatency = resArrival - reqDeparture;
+        long latency = (resDeparture - reqArrival) - backendLatency;
         lastLatency.set(latency);
-        latencyDataQueue.offer(latency);
+        latencySum.addAndGet(latency);
+        latencyCount.incrementAndGet();
+        mediationLatencyHistogram.record(latency);
+        backendLatencyHistogram.record(backendLatency);
     }
 
     @Override
     public double getAllTimeAvgLatency() {
-        return allTimeAvgLatency;
+        long count = latencyCount.get();
+        if (count == 0) {
+            return 0.0;
+        }
+        return (double) latencySum.get() / count;
     }
 
     @Override
@@ -173,14 +189,65 @@ public class LatencyView implements LatencyViewMBean {
         return getAverageLatencyByHour(24);
     }
 
+    @Override
+    public long getMediationLatencyP50() {
+        return mediationLatencyHistogram.getValueAtPercentile(50.0);
+    }
+
+    @Override
+    public long getMediationLatencyP90() {
+        return mediationLatencyHistogram.getValueAtPercentile(90.0);
+    }
+
+    @Override
+    public long getMediationLatencyP99() {
+        return mediationLatencyHistogram.getValueAtPercentile(99.0);
+    }
+
+    @Override
+    public long getMediationLatencyP999() {
+        return mediationLatencyHistogram.getValueAtPercentile(99.9);
+    }
+
+    @Override
+    public long getMediationLatencyMax() {
+        return mediationLatencyHistogram.getMax();
+    }
+
+    @Override
+    public long getBackendLatencyP50() {
+        return backendLatencyHistogram.getValueAtPercentile(50.0);
+    }
+
+    @Override
+    public long getBackendLatencyP90() {
+        return backendLatencyHistogram.getValueAtPercentile(90.0);
+    }
+
+    @Override
+    public long getBackendLatencyP99() {
+        return backendLatencyHistogram.getValueAtPercentile(99.0);
+    }
+
+    @Override
+    public long getBackendLatencyP999() {
+        return backendLatencyHistogram.getValueAtPercentile(99.9);
+    }
+
+    @Override
+    public long getBackendLatencyMax() {
+        return backendLatencyHistogram.getMax();
+    }
+
     @Override
     public void reset() {
         lastLatency.set(0);
-        allTimeAvgLatency = 0.0;
-        latencyDataQueue.clear();
-        shortTermLatencyDataQueue.clear();
-        longTermLatencyDataQueue.clear();
-        count = 0;
+        latencySum.set(0);
+        latencyCount.set(0);
+        shortTermLatencyData.clear();
+        longTermLatencyData.clear();
+        mediationLatencyHistogram.reset();
+        backendLatencyHistogram.reset();
         resetTime = Calendar.getInstance().getTime();
     }
 
@@ -190,51 +257,11 @@ public class LatencyView implements LatencyViewMBean {
     }
 
     private double getAverageLatencyByMinute(int n) {
-        int samples = n * SAMPLES_PER_MINUTE;
-        double sum = 0.0;
-        Long[] array = shortTermLatencyDataQueue.toArray(new Long[shortTermLatencyDataQueue.size()]);
-
-        if (samples > array.length) {
-            // If we don't have enough samples collected yet
-            // add up everything we have
-            samples = array.length;
-            for (int i = 0; i < array.length; i++) {
-                sum += array[i];
-            }
-        } else {
-            // We have enough samples to make the right calculation
-            // Add up starting from the end of the queue (to give the most recent values)
-            for (int i = 0; i < samples; i++) {
-                sum += array[array.length - 1 - i];
-            }
-        }
-
-        if (samples == 0) {
-            return 0.0;
-        }
-        return sum/samples;
+        return shortTermLatencyData.average(n * SAMPLES_PER_MINUTE);
     }
 
     private double getAverageLatencyByHour(int n) {
-        int samples = n * SAMPLES_PER_HOUR;
-        double sum = 0.0;
-        Long[] array = longTermLatencyDataQueue.toArray(new Long[longTermLatencyDataQueue.size()]);
-
-        if (samples > array.length) {
-            samples = array.length;
-            for (int i = 0; i < array.length; i++) {
-                sum += array[i];
-            }
-        } else {
-            for (int i = 0; i < samples; i++) {
-                sum += array[array.length - 1 - i];
-            }
-        }
-
-        if (samples == 0) {
-            return 0.0;
-        }
-        return sum/samples;
+        return longTermLatencyData.average(n * SAMPLES_PER_HOUR);
     }
 
     private class ShortTermDataCollector implements Runnable {
@@ -242,27 +269,17 @@ public class LatencyView implements LatencyViewMBean {
         public void run() {
             long latency = lastLatency.get();
 
-            // calculate all time average latency
-            int size = latencyDataQueue.size();
-            if (size > 0) {
-                long sum = 0;
-                for (int i = 0; i < size; i++) {
-                    sum += latencyDataQueue.poll();
-                }
-                allTimeAvgLatency = (allTimeAvgLatency * count + sum)/(count + size);
-                count = count + size;
-            }
+            // start a new interval in the percentile histograms
+            mediationLatencyHistogram.rotate();
+            backendLatencyHistogram.rotate();
 
-            if (shortTermLatencyDataQueue.size() == 0 && latency == 0) {
+            if (shortTermLatencyData.size() == 0 && latency == 0) {
                 // we haven't started collecting data yet - skip ahead...
                 return;
             }
 
             // take a sample for the short term latency calculation
-            if (shortTermLatencyDataQueue.size() == SAMPLES_PER_MINUTE * 15) {
-                shortTermLatencyDataQueue.remove();
-            }
-            shortTermLatencyDataQueue.offer(latency);
+            shortTermLatencyData.add(latency);
         }
     }
 
@@ -270,14 +287,62 @@ public class LatencyView implements LatencyViewMBean {
         @Override
         public void run() {
             long latency = lastLatency.get();
-            if (longTermLatencyDataQueue.size() == 0 && latency == 0) {
+            if (longTermLatencyData.size() == 0 && latency == 0) {
                 return;
             }
 
-            if (longTermLatencyDataQueue.size() == SAMPLES_PER_HOUR * 24) {
-                longTermLatencyDataQueue.remove();
+            longTermLatencyData.add(latency);
+        }
+    }
+
+    /**
+     * A fixed length ring of samples backed by a primitive array. Once the ring is full the
+     * oldest sample is overwritten by each new sample.
+     */
+    private static class SampleRing {
+
+        private final long[] samples;
+        private int size = 0;
+        private int next = 0;
+
+        SampleRing(int capacity) {
+            samples = new long[capacity];
+        }
+
+        synchronized void add(long sample) {
+            samples[next] = sample;
+            next = (next + 1) % samples.length;
+            if (size < samples.length) {
+                size++;
+            }
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized void clear() {
+            size = 0;
+            next = 0;
+        }
+
+        /**
+         * Average of the most recent samples. If there are not enough samples collected
+         * yet, everything we have is added up.
+         */
+        synchronized double average(int count) {
+            if (count > size) {
+                count = size;
+            }
+            if (count == 0) {
+                return 0.0;
+            }
+
+            double sum = 0.0;
+            for (int i = 1; i <= count; i++) {
+                sum += samples[(next - i + samples.length) % samples.length];
             }
-            longTermLatencyDataQueue.offer(latency);
+            return sum/count;
         }
     }
 }
@@ -37,4 +37,20 @@ public interface LatencyViewMBean {
     public void reset();
     public Date getLastResetTime();
 
+    /* Percentiles and the maximum of the latency added by the transport (in milliseconds),
+       calculated over the last minute */
+    public long getMediationLatencyP50();
+    public long getMediationLatencyP90();
+    public long getMediationLatencyP99();
+    public long getMediationLatencyP999();
+    public long getMediationLatencyMax();
+
+    /* Percentiles and the maximum of the time spent waiting on the backend (in milliseconds),
+       calculated over the last minute */
+    public long getBackendLatencyP50();
+    public long getBackendLatencyP90();
+    public long getBackendLatencyP99();
+    public long getBackendLatencyP999();
+    public long getBackendLatencyMax();
+
 }
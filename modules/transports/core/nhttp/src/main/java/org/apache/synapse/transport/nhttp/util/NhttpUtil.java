@@ -19,11 +19,14 @@
 package org.apache.synapse.transport.nhttp.util;
 
 import org.apache.axiom.om.OMOutputFormat;
+import org.apache.axiom.util.blob.OverflowBlob;
 import org.apache.axis2.Constants;
 import org.apache.axis2.addressing.EndpointReference;
+import org.apache.axis2.context.ConfigurationContext;
 import org.apache.axis2.context.MessageContext;
 import org.apache.axis2.transport.TransportUtils;
 import org.apache.axis2.transport.http.HTTPConstants;
+import org.apache.synapse.commons.spill.SpillManager;
 
 import java.net.InetAddress;
 
@@ -126,4 +129,24 @@ public class NhttpUtil {
             return getOMOutputFormat(msgContext).getContentType();
         }
     }
+
+    /**
+     * Create the blob holding a message which is serialized before it is sent, in order to
+     * compute its content length. The blob comes from the spill area of the Synapse environment
+     * when one is published in the configuration context, and must be released once the
+     * message has been written out.
+     *
+     * @param msgContext the message to be serialized
+     * @return a new blob, which must be released after use
+     */
+    public static OverflowBlob createSerializationBlob(MessageContext msgContext) {
+        ConfigurationContext cfgCtx = msgContext.getConfigurationContext();
+        if (cfgCtx != null) {
+            Object spillManager = cfgCtx.getProperty(SpillManager.SPILL_MANAGER);
+            if (spillManager instanceof SpillManager) {
+                return ((SpillManager) spillManager).createBlob(256);
+            }
+        }
+        return new OverflowBlob(256, 4096, "http-nio_", ".dat");
+    }
 }
@@ -0,0 +1,314 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.transport.nhttp.util;
+
+import org.apache.axiom.om.OMElement;
+import org.apache.axis2.AxisFault;
+import org.apache.axis2.description.AxisModule;
+import org.apache.axis2.description.AxisService;
+import org.apache.axis2.description.AxisServiceGroup;
+import org.apache.axis2.description.Parameter;
+import org.apache.axis2.engine.AxisConfiguration;
+import org.apache.axis2.engine.AxisEvent;
+import org.apache.axis2.engine.AxisObserver;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.protocol.HTTP;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * <p>Cache of the documents served for the ?wsdl, ?wsdl2 and ?xsd requests of the services.
+ * Each document is generated once, and served afterwards from the cached bytes along with an
+ * ETag, so that clients can revalidate their copy with a conditional GET. A gzip compressed
+ * variant, with an ETag of its own, is created on the first request which accepts it.</p>
+ *
+ * <p>The documents of a service are bound to the {@link AxisService} instance they were
+ * generated from. Redeploying a service (e.g. a proxy service) creates a new instance, which
+ * drops the documents of the previous deployment on the next request. Once the cache
+ * {@link #observe(AxisConfiguration) observes} the Axis2 configuration, the documents of a
+ * service are also dropped as soon as it is undeployed or redeployed.</p>
+ */
+public class ServiceDocumentCache {
+
+    private static final String ACCEPT_ENCODING = "Accept-Encoding";
+    private static final String ETAG = "ETag";
+    private static final String IF_NONE_MATCH = "If-None-Match";
+    private static final String VARY = "Vary";
+    private static final String GZIP = "gzip";
+
+    /** Maximum number of documents cached for a single service */
+    private static final int MAX_DOCUMENTS_PER_SERVICE = 64;
+
+    /**
+     * Generates a document of a service
+     */
+    public interface DocumentGenerator {
+
+        /**
+         * Write the document to the given stream
+         *
+         * @param out stream to write the document to
+         * @throws Exception if the document cannot be generated
+         */
+        void generate(OutputStream out) throws Exception;
+    }
+
+    private final ConcurrentMap<String, ServiceDocuments> services =
+            new ConcurrentHashMap<String, ServiceDocuments>();
+
+    /**
+     * Get a document of a service, generating it if it has not been cached yet
+     *
+     * @param service the service
+     * @param key identifies the document within the service, including any input which
+     *            affects the generated output
+     * @param generator generates the document if it is not cached
+     * @return the document
+     * @throws Exception if the document cannot be generated
+     */
+    public Document getDocument(AxisService service, String key,
+                                DocumentGenerator generator) throws Exception {
+        ServiceDocuments documents = services.get(service.getName());
+        if (documents == null || documents.service.get() != service) {
+            documents = new ServiceDocuments(service);
+            services.put(service.getName(), documents);
+        }
+
+        Document document = documents.documents.get(key);
+        if (document == null) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            generator.generate(out);
+            document = new Document(out.toByteArray());
+            if (document.content.length > 0 &&
+                    documents.documents.size() < MAX_DOCUMENTS_PER_SERVICE) {
+                Document existing = documents.documents.putIfAbsent(key, document);
+                if (existing != null) {
+                    document = existing;
+                }
+            }
+        }
+        return document;
+    }
+
+    /**
+     * Drop the cached documents of a service
+     *
+     * @param serviceName name of the service
+     */
+    public void invalidate(String serviceName) {
+        services.remove(serviceName);
+    }
+
+    /**
+     * Drop the cached documents of the services undeployed from, or redeployed to, the given
+     * configuration from now on
+     *
+     * @param axisConfig the Axis2 configuration holding the services
+     */
+    public void observe(AxisConfiguration axisConfig) {
+        axisConfig.addObservers(new ServiceObserver());
+    }
+
+    /**
+     * Drops the documents of a service when it is deployed or removed
+     */
+    private class ServiceObserver implements AxisObserver {
+        @Override
+        public void init(AxisConfiguration axisConfig) {}
+
+        @Override
+        public void serviceUpdate(AxisEvent event, AxisService service) {
+            if (event.getEventType() == AxisEvent.SERVICE_REMOVE ||
+                    event.getEventType() == AxisEvent.SERVICE_DEPLOY) {
+                invalidate(service.getName());
+            }
+        }
+
+        @Override
+        public void moduleUpdate(AxisEvent event, AxisModule module) {}
+        @Override
+        public void addParameter(Parameter parameter) throws AxisFault {}
+        @Override
+        public void removeParameter(Parameter parameter) throws AxisFault {}
+        @Override
+        public void deserializeParameters(OMElement parameterElement) throws AxisFault {}
+        @Override
+        public Parameter getParameter(String name) { return null; }
+        @Override
+        public ArrayList<Parameter> getParameters() { return null; }
+        @Override
+        public boolean isParameterLocked(String parameterName) { return false; }
+        @Override
+        public void serviceGroupUpdate(AxisEvent event, AxisServiceGroup serviceGroup) {}
+    }
+
+    private static class ServiceDocuments {
+
+        private final WeakReference<AxisService> service;
+
+        private final ConcurrentMap<String, Document> documents =
+                new ConcurrentHashMap<String, Document>();
+
+        private ServiceDocuments(AxisService service) {
+            this.service = new WeakReference<AxisService>(service);
+        }
+    }
+
+    /**
+     * A generated document along with its ETag and compressed variant
+     */
+    public static class Document {
+
+        private final byte[] content;
+
+        private final String eTag;
+
+        /** the compressed variant is a different representation, hence has a different tag */
+        private final String gzipETag;
+
+        private volatile byte[] gzipContent;
+
+        Document(byte[] content) {
+            this.content = content;
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            String tag = Long.toHexString(crc.getValue()) + "-" +
+                    Integer.toHexString(content.length);
+            this.eTag = "\"" + tag + "\"";
+            this.gzipETag = "\"" + tag + "-" + GZIP + "\"";
+        }
+
+        public String getETag() {
+            return eTag;
+        }
+
+        public String getGzipETag() {
+            return gzipETag;
+        }
+
+        /**
+         * Prepare the response to a request for this document. Answers the request with a
+         * 304 (Not Modified) if the client holds the current version of the document, and with
+         * the compressed document if the client accepts gzip encoding.
+         *
+         * @param request the request for the document
+         * @param response the response to be prepared
+         * @param contentType content type of the document
+         * @return the bytes to be written as the response body, which must not be modified
+         * @throws IOException if the document cannot be compressed
+         */
+        public byte[] prepareResponse(HttpRequest request, HttpResponse response,
+                                      String contentType) throws IOException {
+            boolean gzip = acceptsGzip(request.getFirstHeader(ACCEPT_ENCODING));
+            response.setHeader(ETAG, gzip ? gzipETag : eTag);
+            response.setHeader(VARY, ACCEPT_ENCODING);
+
+            byte[] body;
+            if (isNotModified(request.getFirstHeader(IF_NONE_MATCH))) {
+                response.setStatusCode(HttpStatus.SC_NOT_MODIFIED);
+                body = new byte[0];
+            } else {
+                response.setHeader(HTTP.CONTENT_TYPE, contentType);
+                if (gzip) {
+                    response.setHeader(HTTP.CONTENT_ENCODING, GZIP);
+                    body = getGzipContent();
+                } else {
+                    body = content;
+                }
+            }
+
+            // the length is known up front, hence there is no need to chunk the body
+            HttpEntity entity = response.getEntity();
+            if (entity instanceof BasicHttpEntity) {
+                ((BasicHttpEntity) entity).setChunked(false);
+                ((BasicHttpEntity) entity).setContentLength(body.length);
+            }
+            return body;
+        }
+
+        private byte[] getGzipContent() throws IOException {
+            byte[] compressed = gzipContent;
+            if (compressed == null) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 4 + 64);
+                GZIPOutputStream gzip = new GZIPOutputStream(out);
+                gzip.write(content);
+                gzip.close();
+                compressed = out.toByteArray();
+                gzipContent = compressed;
+            }
+            return compressed;
+        }
+
+        boolean isNotModified(Header ifNoneMatch) {
+            if (ifNoneMatch == null) {
+                return false;
+            }
+            for (String tag : ifNoneMatch.getValue().split(",")) {
+                tag = tag.trim();
+                if (tag.startsWith("W/")) {
+                    // weak comparison, as a GET may be answered with a 304 on a weak match
+                    tag = tag.substring(2);
+                }
+                // both variants hold the same document, a copy of either is up to date
+                if ("*".equals(tag) || eTag.equals(tag) || gzipETag.equals(tag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        static boolean acceptsGzip(Header acceptEncoding) {
+            if (acceptEncoding == null) {
+                return false;
+            }
+            for (String coding : acceptEncoding.getValue().split(",")) {
+                String[] parts = coding.split(";");
+                String name = parts[0].trim();
+                if (GZIP.equalsIgnoreCase(name) || "x-gzip".equalsIgnoreCase(name)) {
+                    for (int i = 1; i < parts.length; i++) {
+                        String param = parts[i].trim();
+                        if (param.startsWith("q=")) {
+                            try {
+                                return Float.parseFloat(param.substring(2)) > 0;
+                            } catch (NumberFormatException e) {
+                                return false;
+                            }
+                        }
+                    }
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -46,6 +46,7 @@ import org.apache.http.nio.reactor.IOReactorExceptionHandler;
 import org.apache.http.nio.reactor.ListenerEndpoint;
 import org.apache.http.nio.reactor.ssl.SSLSetupHandler;
 import org.apache.synapse.commons.jmx.MBeanRegistrar;
+import org.apache.synapse.transport.nhttp.AccessHandler;
 import org.apache.synapse.transport.passthru.config.SourceConfiguration;
 import org.apache.synapse.transport.passthru.jmx.PassThroughTransportMetricsCollector;
 import org.apache.synapse.transport.passthru.jmx.TransportView;
@@ -141,6 +142,7 @@ public class PassThroughHttpListener implements TransportListener {
     @Override
     public void start() throws AxisFault {
         log.info("Starting pass-through " + namePrefix + " listener...");
+        AccessHandler.getAccess().start(this);
 
         try {
             String prefix = namePrefix + "-PT-Listener I/O Dispatcher";
@@ -268,6 +270,8 @@ public class PassThroughHttpListener implements TransportListener {
             ioReactor.shutdown();
         } catch (IOException e) {
             handleException("Error shutting down " + namePrefix + " listening IO reactor", e);
+        } finally {
+            AccessHandler.getAccess().stop(this);
         }
     }
 
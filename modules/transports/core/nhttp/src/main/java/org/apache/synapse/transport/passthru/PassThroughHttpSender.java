@@ -53,6 +53,7 @@ import org.apache.http.nio.reactor.IOReactorException;
 import org.apache.http.nio.reactor.IOReactorExceptionHandler;
 import org.apache.http.nio.reactor.ssl.SSLSetupHandler;
 import org.apache.synapse.commons.jmx.MBeanRegistrar;
+import org.apache.synapse.transport.nhttp.AccessHandler;
 import org.apache.synapse.transport.nhttp.NhttpConstants;
 import org.apache.synapse.transport.nhttp.util.MessageFormatterDecoratorFactory;
 import org.apache.synapse.transport.nhttp.util.NhttpUtil;
@@ -117,6 +118,7 @@ public class PassThroughHttpSender extends AbstractHandler implements TransportS
         if (log.isDebugEnabled()) {
             log.debug("Initializing pass-through HTTP/S sender...");
         }
+        AccessHandler.getAccess().start(this);
 
         // is this an SSL Sender?
         SSLContext sslContext = getSSLContext(transportOutDescription);
@@ -249,6 +251,7 @@ public class PassThroughHttpSender extends AbstractHandler implements TransportS
         } catch (IOException e) {
             log.error("Error shutting down the PassThroughHttpSender", e);
         }
+        AccessHandler.getAccess().stop(this);
     }
 
     @Override
@@ -23,6 +23,7 @@ import org.apache.http.nio.IOControl;
 import org.apache.http.nio.ContentDecoder;
 import org.apache.http.nio.ContentEncoder;
 import org.apache.synapse.transport.passthru.config.BaseConfiguration;
+import org.apache.synapse.transport.passthru.util.ContentCodec;
 import org.apache.synapse.transport.passthru.util.ControlledByteBuffer;
 
 import java.io.*;
@@ -72,6 +73,9 @@ public class Pipe {
     private ByteBufferInputStream inputStream;
     private ByteBufferOutputStream outputStream;
 
+    /** Compresses or decompresses the content on its way to the consumer, if set */
+    private ContentCodec codec;
+
     public Pipe(IOControl producerIoControl, ControlledByteBuffer buffer,
                 String name, BaseConfiguration baseConfig) {
         this.producerIoControl = producerIoControl;
@@ -95,6 +99,21 @@ public class Pipe {
         this.consumerIoControl = consumerIoControl;
     }
 
+    /**
+     * Set a codec to transform the content written out by the consumer. Must be set before
+     * the consumer starts consuming.
+     *
+     * @param codec codec compressing or decompressing the content
+     */
+    public void setContentCodec(ContentCodec codec) {
+        lock.lock();
+        try {
+            this.codec = codec;
+        } finally {
+            lock.unlock();
+        }
+    }
+
     /**
      * Consume the data from the buffer. Before calling this method attachConsumer
      * method must be called with a valid IOControl.
@@ -123,10 +142,15 @@ public class Pipe {
         try {
             // if producer at error we have to stop the encoding and return immediately
             if (producerError) {
+                releaseCodec();
                 encoder.complete();
                 return -1;
             }
 
+            if (codec != null) {
+                return consumeThroughCodec(encoder, consumerBuffer);
+            }
+
             setOutputMode(consumerBuffer);
             int bytesWritten = encoder.write(consumerBuffer.getByteBuffer());
             setInputMode(consumerBuffer);
@@ -158,6 +182,65 @@ public class Pipe {
         }
     }
 
+    /**
+     * Consume the data from the buffer through the codec. The codec transforms as much of the
+     * buffered data as it can hold, and the transformed data is written out from the codec.
+     */
+    private int consumeThroughCodec(ContentEncoder encoder, ControlledByteBuffer consumerBuffer)
+            throws IOException {
+        boolean inputCompleted = outputBuffer == null ? producerCompleted :
+                (serializationComplete || rawSerializationComplete);
+
+        setOutputMode(consumerBuffer);
+        int available = consumerBuffer.remaining();
+        try {
+            codec.transform(consumerBuffer.getByteBuffer(), inputCompleted);
+        } catch (IOException e) {
+            releaseCodec();
+            throw e;
+        }
+        boolean inputConsumed = consumerBuffer.remaining() < available;
+        setInputMode(consumerBuffer);
+
+        int bytesWritten = codec.write(encoder);
+        if (codec.isCompleted()) {
+            releaseCodec();
+            encoder.complete();
+        } else if (consumerBuffer.position() == 0 && !codec.hasOutput() &&
+                outputBuffer == null && !producerCompleted) {
+            // nothing left to transform. Wait until the producer fills up the buffer
+            consumerIoControl.suspendOutput();
+        }
+
+        if (inputConsumed) {
+            if (!encoder.isCompleted() && !producerCompleted && hasHttpProducer) {
+                producerIoControl.requestInput();
+            }
+            writeCondition.signalAll();
+        }
+        return bytesWritten;
+    }
+
+    /**
+     * Return the resources of the content codec, if any, to the codec factory. Called when the
+     * connection is reset or shut down before the content has been fully consumed.
+     */
+    public void releaseContentCodec() {
+        lock.lock();
+        try {
+            releaseCodec();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void releaseCodec() {
+        if (codec != null) {
+            codec.release();
+            codec = null;
+        }
+    }
+
     /**
      * Produce data in to the buffer.
      *
@@ -212,6 +295,8 @@ public class Pipe {
         lock.lock();
         try {
             this.consumerError = true;
+            // the consumer will not write out the rest of the content
+            releaseCodec();
             writeCondition.signalAll();
         } finally {
             lock.unlock();
@@ -100,6 +100,11 @@ public class SourceContext {
             this.state = ProtocolState.REQUEST_READY;
         }
 
+        if (writer != null) {
+            // the codec buffers are owned by the pipe, so they are released even on errors
+            writer.releaseContentCodec();
+        }
+
         if (writer != null && !isError) {    // If there is an error we do not release the buffer to the factory
             ControlledByteBuffer buffer = writer.getBuffer();
             buffer.clear();
@@ -27,6 +27,8 @@ import org.apache.http.protocol.HTTP;
 import org.apache.http.protocol.HttpContext;
 import org.apache.http.protocol.HttpCoreContext;
 import org.apache.synapse.transport.passthru.config.SourceConfiguration;
+import org.apache.synapse.transport.passthru.util.ContentCodec;
+import org.apache.synapse.transport.passthru.util.ContentCodecFactory;
 import org.apache.synapse.transport.passthru.util.PassThroughTransportUtils;
 import org.apache.axis2.AxisFault;
 import org.apache.axis2.context.MessageContext;
@@ -68,6 +70,9 @@ public class SourceResponse {
 
     private boolean versionChangeRequired =false;
 
+    /** Whether the response must be sent with the length computed up front */
+    private boolean lengthRequired = false;
+
     public SourceResponse(SourceConfiguration config, int status, SourceRequest request) {
         this(config, status, null, request);
     }
@@ -122,11 +127,19 @@ public class SourceResponse {
             headers.remove(HTTP.CONTENT_LEN);
         }
 
+        ContentCodec codec = createContentCodec(contentLength);
+        if (codec != null) {
+            // the length of the transformed content is not known up front
+            contentLength = -1;
+            pipe.setContentCodec(codec);
+        }
+
         if (contentLength != -1) {
             entity.setChunked(false);
             entity.setContentLength(contentLength);
         } else {
-            entity.setChunked(true);
+            entity.setChunked(codec == null ||
+                    request.getVersion().greaterEquals(HttpVersion.HTTP_1_1));
         }
 
         response.setEntity(entity);
@@ -157,6 +170,72 @@ public class SourceResponse {
         conn.submitResponse(response);        
     }
 
+    /**
+     * Create a codec to compress the response for a client accepting compressed content, or
+     * to decompress a compressed response for a client which does not accept its encoding.
+     * The headers of the response are updated to describe the transformed content.
+     *
+     * @param contentLength length of the response content, or -1 if not known
+     * @return the codec, or null if the response is sent as it is
+     */
+    private ContentCodec createContentCodec(int contentLength) {
+        ContentCodecFactory codecFactory = sourceConfiguration.getCodecFactory();
+        if (codecFactory == null || pipe == null || request == null || lengthRequired ||
+                versionChangeRequired || "HEAD".equalsIgnoreCase(request.getMethod()) ||
+                status < HttpStatus.SC_OK || status == HttpStatus.SC_NO_CONTENT ||
+                status == HttpStatus.SC_NOT_MODIFIED ||
+                !sourceConfiguration.isCompressionEnabled()) {
+            return null;
+        }
+
+        String acceptEncoding = request.getHeaders().get(HttpHeaders.ACCEPT_ENCODING);
+        String contentEncoding = getHeader(HTTP.CONTENT_ENCODING);
+        ContentCodec codec = null;
+        if (contentEncoding == null || HTTP.IDENTITY_CODING.equalsIgnoreCase(contentEncoding)) {
+            String encoding = ContentCodecFactory.selectEncoding(acceptEncoding);
+            if (encoding != null &&
+                    codecFactory.isCompressible(getHeader(HTTP.CONTENT_TYPE), contentLength)) {
+                codec = codecFactory.createCompressor(encoding);
+                removeHeader(HTTP.CONTENT_ENCODING);
+                addHeader(HTTP.CONTENT_ENCODING, codec.getEncoding());
+                addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            }
+        } else if (acceptEncoding != null && ContentCodecFactory.isSupported(contentEncoding) &&
+                !ContentCodecFactory.isAccepted(acceptEncoding, contentEncoding)) {
+            // without an Accept-Encoding header any coding is acceptable to the client
+            codec = codecFactory.createDecompressor(contentEncoding.trim());
+            removeHeader(HTTP.CONTENT_ENCODING);
+        }
+
+        if (codec != null) {
+            // the transformed content is not byte by byte equal to the tagged one anymore
+            String eTag = getHeader(HttpHeaders.ETAG);
+            if (eTag != null && !eTag.startsWith("W/")) {
+                removeHeader(HttpHeaders.ETAG);
+                addHeader(HttpHeaders.ETAG, "W/" + eTag);
+            }
+        }
+        return codec;
+    }
+
+    private String getHeader(String name) {
+        for (Map.Entry<String, TreeSet<String>> entry : headers.entrySet()) {
+            if (name.equalsIgnoreCase(entry.getKey()) && !entry.getValue().isEmpty()) {
+                return entry.getValue().first();
+            }
+        }
+        return null;
+    }
+
+    private void removeHeader(String name) {
+        Iterator<String> names = headers.keySet().iterator();
+        while (names.hasNext()) {
+            if (name.equalsIgnoreCase(names.next())) {
+                names.remove();
+            }
+        }
+    }
+
     /**
      * Consume the content through the Pipe and write them to the wire
      * @param conn connection
@@ -216,6 +295,7 @@ public class SourceResponse {
             version = HttpVersion.HTTP_1_0;
             versionChangeRequired = true;
         }
+        lengthRequired = true;
         Boolean noEntityBody =
                 (Boolean) responseMsgContext.getProperty(PassThroughConstants.NO_ENTITY_BODY);
         if (Boolean.TRUE.equals(noEntityBody)) {
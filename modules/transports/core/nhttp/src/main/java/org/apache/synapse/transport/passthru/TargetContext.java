@@ -131,6 +131,11 @@ public class TargetContext {
             state = ProtocolState.REQUEST_READY;
         }
 
+        if (writer != null) {
+            // the codec buffers are owned by the pipe, so they are released even on errors
+            writer.releaseContentCodec();
+        }
+
         if (writer != null && !isError) { // If there is an error we do not release the buffer to the factory
             ControlledByteBuffer buffer = writer.getBuffer();
             buffer.clear();
@@ -37,6 +37,7 @@ import org.apache.http.protocol.HttpCoreContext;
 import org.apache.synapse.transport.nhttp.NhttpConstants;
 import org.apache.synapse.transport.nhttp.util.MessageFormatterDecoratorFactory;
 import org.apache.synapse.transport.passthru.config.TargetConfiguration;
+import org.apache.synapse.transport.passthru.util.ContentCodecFactory;
 import org.apache.synapse.transport.passthru.util.PassThroughTransportUtils;
 import org.apache.synapse.transport.passthru.util.RelayUtils;
 
@@ -171,6 +172,13 @@ public class TargetRequest {
 
             BasicHttpEntity entity = new BasicHttpEntity();
 
+            if (isInflationRequired(requestMsgCtx)) {
+                pipe.setContentCodec(targetConfiguration.getCodecFactory().createDecompressor(
+                        removeContentEncoding().trim()));
+                // the length of the decompressed content is not known up front
+                contentLength = -1;
+            }
+
             if (requestMsgCtx.isPropertyTrue(NhttpConstants.FORCE_HTTP_CONTENT_LENGTH)) {
                 entity.setChunked(false);
                 if (requestMsgCtx.isPropertyTrue(PassThroughConstants.COPY_CONTENT_LENGTH_FROM_INCOMING)
@@ -272,6 +280,39 @@ public class TargetRequest {
 		}
 	}
     
+    /**
+     * Checks whether the request content is compressed and should be decompressed before
+     * it is relayed, as configured. Requests which have to be sent with their length are
+     * relayed as they are.
+     */
+    private boolean isInflationRequired(MessageContext requestMsgCtx) {
+        if (pipe == null || !targetConfiguration.isRequestInflationEnabled() ||
+                requestMsgCtx.isPropertyTrue(NhttpConstants.FORCE_HTTP_CONTENT_LENGTH) ||
+                requestMsgCtx.isPropertyTrue(PassThroughConstants.DISABLE_CHUNKING) ||
+                requestMsgCtx.isPropertyTrue(PassThroughConstants.FORCE_HTTP_1_0)) {
+            return false;
+        }
+        for (Map.Entry<String, TreeSet<String>> entry : headers.entrySet()) {
+            if (HTTP.CONTENT_ENCODING.equalsIgnoreCase(entry.getKey())) {
+                return entry.getValue().size() == 1 &&
+                        ContentCodecFactory.isSupported(entry.getValue().first());
+            }
+        }
+        return false;
+    }
+
+    private String removeContentEncoding() {
+        Iterator<Map.Entry<String, TreeSet<String>>> entries = headers.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<String, TreeSet<String>> entry = entries.next();
+            if (HTTP.CONTENT_ENCODING.equalsIgnoreCase(entry.getKey())) {
+                entries.remove();
+                return entry.getValue().first();
+            }
+        }
+        return null;
+    }
+
 	/**
 	 * Handles the chunking messages in PassThough context, create a temporary buffer and
      * calculate the message size before writing to the external buffer, which is required the
@@ -19,7 +19,6 @@
 
 package org.apache.synapse.transport.passthru.api;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.InetAddress;
@@ -48,6 +47,7 @@ import org.apache.http.nio.util.SimpleOutputBuffer;
 import org.apache.http.protocol.HTTP;
 import org.apache.synapse.transport.nhttp.NHttpConfiguration;
 import org.apache.synapse.transport.nhttp.NhttpConstants;
+import org.apache.synapse.transport.nhttp.util.ServiceDocumentCache;
 import org.apache.synapse.transport.passthru.HttpGetRequestProcessor;
 import org.apache.synapse.transport.passthru.PassThroughConstants;
 import org.apache.synapse.transport.passthru.ProtocolState;
@@ -69,12 +69,19 @@ public class PassThroughNHttpGetProcessor implements HttpGetRequestProcessor {
 
 	protected SourceHandler sourceHandler;
 
+    /** The generated ?wsdl, ?wsdl2 and ?xsd documents of the services */
+    protected final ServiceDocumentCache documentCache = new ServiceDocumentCache();
+
+    /** The address written into the generated documents, looked up on the first request */
+    private volatile String ipAddress;
+
 	@Override
     public void init(ConfigurationContext cfgCtx, SourceHandler handler)
 			throws AxisFault {
 
 		this.cfgCtx = cfgCtx;
 		this.sourceHandler = handler;
+		documentCache.observe(cfgCtx.getAxisConfiguration());
 	}
 
 	@Override
@@ -115,11 +122,11 @@ public class PassThroughNHttpGetProcessor implements HttpGetRequestProcessor {
 			response.addHeader(LOCATION, "http://ws.apache.org/favicon.ico");
             sendResponseAndFinish(response, HttpStatus.SC_MOVED_PERMANENTLY, conn, os, msgContext);
 		} else if (serviceName != null && parameters.containsKey("wsdl")) {
-			generateWsdl(response, msgContext, conn, os, serviceName, parameters);
+			generateWsdl(request, response, msgContext, conn, os, serviceName, parameters);
 		} else if (serviceName != null && parameters.containsKey("wsdl2")) {
-			generateWsdl2(response, msgContext, conn, os, serviceName);
+			generateWsdl2(request, response, msgContext, conn, os, serviceName);
 		} else if (serviceName != null && parameters.containsKey("xsd")) {
-			generateXsd(response, msgContext, conn, os, serviceName, parameters);
+			generateXsd(request, response, msgContext, conn, os, serviceName, parameters);
 		} else {
 			msgContext.setProperty(PassThroughConstants.REST_GET_DELETE_INVOKE, true);
 		}
@@ -145,6 +152,20 @@ public class PassThroughNHttpGetProcessor implements HttpGetRequestProcessor {
         msgContext.setProperty(PassThroughConstants.GET_REQUEST_HANDLED, Boolean.TRUE);
     }
 
+    /**
+     * Writes a document of a service, generating it only if it is not cached. Conditional
+     * and gzip accepting requests are answered from the cached document as well.
+     */
+    private void writeDocument(HttpRequest request, HttpResponse response,
+                               MessageContext msgContext, NHttpServerConnection conn,
+                               OutputStream os, AxisService service, String key,
+                               ServiceDocumentCache.DocumentGenerator generator)
+            throws Exception {
+        byte[] body = documentCache.getDocument(service, key, generator)
+                .prepareResponse(request, response, TEXT_XML);
+        sendResponseAndFinish(response, body, conn, os, msgContext);
+    }
+
 	private void closeOutputStream(OutputStream os) {
 		try {
 			os.flush();
@@ -156,6 +177,8 @@ public class PassThroughNHttpGetProcessor implements HttpGetRequestProcessor {
 	/**
 	 * Generate WSDL.
 	 *
+	 * @param request
+	 *            HttpRequest
 	 * @param response
 	 *            HttpResponse
 	 * @param msgContext
@@ -169,30 +192,35 @@ public class PassThroughNHttpGetProcessor implements HttpGetRequestProcessor {
 	 * @param parameters
 	 *            parameters
 	 */
-	protected void generateWsdl(HttpResponse response,
+	protected void generateWsdl(HttpRequest request, HttpResponse response,
 			MessageContext msgContext, NHttpServerConnection conn,
 			OutputStream os, String serviceName,
 			Map<String, String> parameters) {
-		AxisService service = cfgCtx.getAxisConfiguration().getServices().get(serviceName);
+		final AxisService service = cfgCtx.getAxisConfiguration().getServices().get(serviceName);
 		if (service != null) {
 			try {
-				ByteArrayOutputStream output = new ByteArrayOutputStream();
-				String parameterValue = parameters.get("wsdl");
-				if (parameterValue == null) {
-					service.printWSDL(output, getIpAddress());
-				} else {
-					// here the parameter value should be the wsdl file name
-					service.printUserWSDL(output, parameterValue);
-				}
-
-                response.addHeader(CONTENT_TYPE, TEXT_XML);
-                sendResponseAndFinish(response, output.toByteArray(), conn, os, msgContext);
+				final String parameterValue = parameters.get("wsdl");
+				final String ipAddress = parameterValue == null ? getServiceIpAddress() : null;
+				writeDocument(request, response, msgContext, conn, os, service,
+						parameterValue == null ? "wsdl@" + ipAddress : "wsdl=" + parameterValue,
+						new ServiceDocumentCache.DocumentGenerator() {
+							@Override
+							public void generate(OutputStream out) throws Exception {
+								if (parameterValue == null) {
+									service.printWSDL(out, ipAddress);
+								} else {
+									// here the parameter value should be the wsdl file name
+									service.printUserWSDL(out, parameterValue);
+								}
+							}
+						});
 
 			} catch (Exception e) {
 				handleBrowserException(response, msgContext, conn, os,
 						"Error generating ?wsdl output for service : " + serviceName, e);
 			}
 		} else {
+			documentCache.invalidate(serviceName);
             if (log.isDebugEnabled()) {
                 log.debug("Unable to find service: " + serviceName + " for WSDL generation.");
             }
@@ -203,6 +231,8 @@ public class PassThroughNHttpGetProcessor implements HttpGetRequestProcessor {
 	/**
 	 * Generate WSDL2.
 	 * 
+	 * @param request
+	 *            HttpRequest
 	 * @param response
 	 *            HttpResponse
 	 * @param msgContext
@@ -214,10 +244,10 @@ public class PassThroughNHttpGetProcessor implements HttpGetRequestProcessor {
 	 * @param serviceName
 	 *            service name
 	 */
-	protected void generateWsdl2(HttpResponse response,
+	protected void generateWsdl2(HttpRequest request, HttpResponse response,
 			MessageContext msgContext, NHttpServerConnection conn,
 			OutputStream os, String serviceName) {
-		AxisService service = cfgCtx.getAxisConfiguration().getServices()
+		final AxisService service = cfgCtx.getAxisConfiguration().getServices()
 				.get(serviceName);
 		if (service != null) {
 			String parameterValue = (String) service
@@ -229,16 +259,21 @@ public class PassThroughNHttpGetProcessor implements HttpGetRequestProcessor {
 								+ ". A WSDL cannot be generated.", null);
 			}
 			try {
-				ByteArrayOutputStream output = new ByteArrayOutputStream();
-				service.printWSDL2(output, getIpAddress());
-				response.addHeader(CONTENT_TYPE, TEXT_XML);
-                sendResponseAndFinish(response, output.toByteArray(), conn, os, msgContext);
+				final String ipAddress = getServiceIpAddress();
+				writeDocument(request, response, msgContext, conn, os, service,
+						"wsdl2@" + ipAddress, new ServiceDocumentCache.DocumentGenerator() {
+							@Override
+							public void generate(OutputStream out) throws Exception {
+								service.printWSDL2(out, ipAddress);
+							}
+						});
 			} catch (Exception e) {
 				handleBrowserException(response, msgContext, conn, os,
 						"Error generating ?wsdl2 output for service : "
 								+ serviceName, e);
 			}
 		} else {
+			documentCache.invalidate(serviceName);
 			msgContext.setProperty(PassThroughConstants.REST_GET_DELETE_INVOKE, true);
 		}
 	}
@@ -297,6 +332,8 @@ public class PassThroughNHttpGetProcessor implements HttpGetRequestProcessor {
 	/**
 	 * Generates Schema.
 	 *
+	 * @param request
+	 *            HttpRequest
 	 * @param response
 	 *            HttpResponse
 	 * @param msgContext
@@ -310,25 +347,29 @@ public class PassThroughNHttpGetProcessor implements HttpGetRequestProcessor {
 	 * @param parameters
 	 *            url parameters
 	 */
-	protected void generateXsd(HttpResponse response,
+	protected void generateXsd(HttpRequest request, HttpResponse response,
 			MessageContext msgContext, NHttpServerConnection conn,
 			OutputStream os, String serviceName,
 			Map<String, String> parameters) {
 		if (parameters.get("xsd") == null || "".equals(parameters.get("xsd"))) {
-			AxisService service = cfgCtx.getAxisConfiguration().getServices()
+			final AxisService service = cfgCtx.getAxisConfiguration().getServices()
 					.get(serviceName);
 			if (service != null) {
 				try {
-					ByteArrayOutputStream output = new ByteArrayOutputStream();
-					service.printSchema(output);
-					response.addHeader(CONTENT_TYPE, TEXT_XML);
-                    sendResponseAndFinish(response, output.toByteArray(), conn, os, msgContext);
+					writeDocument(request, response, msgContext, conn, os, service, "xsd",
+							new ServiceDocumentCache.DocumentGenerator() {
+								@Override
+								public void generate(OutputStream out) throws Exception {
+									service.printSchema(out);
+								}
+							});
 				} catch (Exception e) {
 					handleBrowserException(response, msgContext, conn, os,
 							"Error generating ?xsd output for service : "
 									+ serviceName, e);
 				}
 			} else {
+				documentCache.invalidate(serviceName);
 				msgContext.setProperty(PassThroughConstants.REST_GET_DELETE_INVOKE, true);
 			}
 
@@ -353,15 +394,15 @@ public class PassThroughNHttpGetProcessor implements HttpGetRequestProcessor {
 				}
 				// schema found - write it to the stream
 				if (schema != null) {
+					final XmlSchema namedSchema = schema;
 					try {
-						ByteArrayOutputStream output = new ByteArrayOutputStream();
-						schema.write(output);
-						response.addHeader(CONTENT_TYPE, TEXT_XML);
-						sourceHandler.commitResponseHideExceptions(conn,
-								response);
-                        write(conn, os, output.toByteArray());
-						closeOutputStream(os);
-                        msgContext.setProperty(PassThroughConstants.GET_REQUEST_HANDLED, Boolean.TRUE);
+						writeDocument(request, response, msgContext, conn, os, service,
+								"xsd=" + schemaName, new ServiceDocumentCache.DocumentGenerator() {
+									@Override
+									public void generate(OutputStream out) throws Exception {
+										namedSchema.write(out);
+									}
+								});
 					} catch (Exception e) {
 						handleBrowserException(response, msgContext, conn, os,
 								"Error generating named ?xsd output for service : "
@@ -375,6 +416,7 @@ public class PassThroughNHttpGetProcessor implements HttpGetRequestProcessor {
                     msgContext.setProperty(PassThroughConstants.GET_REQUEST_HANDLED, Boolean.TRUE);
 				}
 			} else {
+				documentCache.invalidate(serviceName);
 				msgContext.setProperty(PassThroughConstants.REST_GET_DELETE_INVOKE, true);
 			}
 		}
@@ -452,6 +494,22 @@ public class PassThroughNHttpGetProcessor implements HttpGetRequestProcessor {
     }
 
 	
+    /**
+     * Get the IP address used in the generated documents. Walking the network interfaces is
+     * expensive, hence the address is only looked up once.
+     *
+     * @return the IP address
+     * @throws java.net.SocketException if the socket can not be accessed
+     */
+    protected String getServiceIpAddress() throws SocketException {
+        String address = ipAddress;
+        if (address == null) {
+            address = getIpAddress();
+            ipAddress = address;
+        }
+        return address;
+    }
+
 	   /**
      * Whatever this method returns as the IP is ignored by the actual http/s listener when
      * its getServiceEPR is invoked. This was originally copied from axis2
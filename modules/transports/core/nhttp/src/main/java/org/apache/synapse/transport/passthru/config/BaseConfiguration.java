@@ -29,6 +29,7 @@ import org.apache.http.nio.util.HeapByteBufferAllocator;
 import org.apache.http.protocol.HttpProcessor;
 import org.apache.synapse.transport.passthru.jmx.PassThroughTransportMetricsCollector;
 import org.apache.synapse.transport.passthru.util.BufferFactory;
+import org.apache.synapse.transport.passthru.util.ContentCodecFactory;
 
 /**
  * This class has common configurations for both sender and receiver.
@@ -48,6 +49,13 @@ public abstract class BaseConfiguration {
 
     private BufferFactory bufferFactory = null;
 
+    /** Codecs for (de)compressing relayed content, null if compression is disabled */
+    private ContentCodecFactory codecFactory = null;
+
+    private boolean compressionEnabled = false;
+
+    private boolean requestInflationEnabled = false;
+
     private PassThroughTransportMetricsCollector metrics = null;
 
     private HttpProcessor httpProcessor;
@@ -73,6 +81,12 @@ public abstract class BaseConfiguration {
 
         int bufferSize = conf.getIntProperty(PassThroughConfigPNames.IO_BUFFER_SIZE, 1024 * 8);
         bufferFactory = new BufferFactory(bufferSize, HeapByteBufferAllocator.INSTANCE, 512);
+        compressionEnabled = conf.isCompressionEnabled();
+        requestInflationEnabled = conf.isRequestInflationEnabled();
+        if (compressionEnabled || requestInflationEnabled) {
+            codecFactory = new ContentCodecFactory(bufferFactory, conf.getCompressionLevel(),
+                    conf.getCompressionMinSize(), 512);
+        }
         httpProcessor = initHttpProcessor();
     }
 
@@ -102,6 +116,18 @@ public abstract class BaseConfiguration {
         return bufferFactory;
     }
 
+    public ContentCodecFactory getCodecFactory() {
+        return codecFactory;
+    }
+
+    public boolean isCompressionEnabled() {
+        return compressionEnabled;
+    }
+
+    public boolean isRequestInflationEnabled() {
+        return requestInflationEnabled;
+    }
+
     public HttpProcessor getHttpProcessor() {
         return httpProcessor;
     }
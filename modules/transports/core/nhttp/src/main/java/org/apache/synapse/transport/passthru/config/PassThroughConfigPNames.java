@@ -91,4 +91,26 @@ public interface PassThroughConfigPNames {
      * responses to a client.
      */
     public String SERVER_HEADER_VALUE = "http.server.value";
+
+    /**
+     * Defines whether relayed responses are compressed for the clients accepting gzip or
+     * deflate encoding, and decompressed for the clients which do not accept their encoding
+     */
+    public String COMPRESSION_ENABLED = "http.compression.enabled";
+
+    /**
+     * Defines the compression level (0-9) used to compress responses
+     */
+    public String COMPRESSION_LEVEL = "http.compression.level";
+
+    /**
+     * Defines the minimum length of the responses which are compressed
+     */
+    public String COMPRESSION_MIN_SIZE = "http.compression.min_size";
+
+    /**
+     * Defines whether gzip or deflate encoded requests are decompressed before they are
+     * relayed to the backend endpoints
+     */
+    public String COMPRESSION_INFLATE_REQUESTS = "http.compression.inflate_requests";
 }
@@ -35,6 +35,8 @@ public class PassThroughConfiguration extends HttpTransportConfiguration {
     private static final int DEFAULT_WORKER_THREAD_KEEPALIVE_SEC = 60;
     private static final int DEFAULT_WORKER_POOL_QUEUE_LENGTH    = -1;
     private static final int DEFAULT_IO_THREADS_PER_REACTOR      = Runtime.getRuntime().availableProcessors();
+    private static final int DEFAULT_COMPRESSION_LEVEL           = 6;
+    private static final int DEFAULT_COMPRESSION_MIN_SIZE        = 1024;
 
     private static PassThroughConfiguration _instance = new PassThroughConfiguration();
 
@@ -76,4 +78,22 @@ public class PassThroughConfiguration extends HttpTransportConfiguration {
         return getStringProperty(PassThroughConfigPNames.HTTP_HEADERS_PRESERVE, "");
     }
 
+    public boolean isCompressionEnabled() {
+        return getBooleanProperty(PassThroughConfigPNames.COMPRESSION_ENABLED, false);
+    }
+
+    public int getCompressionLevel() {
+        return getIntProperty(PassThroughConfigPNames.COMPRESSION_LEVEL,
+                DEFAULT_COMPRESSION_LEVEL);
+    }
+
+    public int getCompressionMinSize() {
+        return getIntProperty(PassThroughConfigPNames.COMPRESSION_MIN_SIZE,
+                DEFAULT_COMPRESSION_MIN_SIZE);
+    }
+
+    public boolean isRequestInflationEnabled() {
+        return getBooleanProperty(PassThroughConfigPNames.COMPRESSION_INFLATE_REQUESTS, false);
+    }
+
 }
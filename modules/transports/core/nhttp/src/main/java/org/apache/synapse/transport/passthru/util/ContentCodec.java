@@ -0,0 +1,413 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.transport.passthru.util;
+
+import org.apache.http.nio.ContentEncoder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A streaming stage which compresses or decompresses the content relayed through a
+ * {@link org.apache.synapse.transport.passthru.Pipe}. The codec reads the content directly off
+ * the array of the pipe buffer and writes its output into a fixed size buffer of its own, which
+ * is written to the wire by the pipe. The content is never held as a whole, hence relayed
+ * messages can be (de)compressed without building them.
+ * <p>
+ * Codecs are created by a {@link ContentCodecFactory} and must be released back to it once
+ * done, so that their {@link Deflater} / {@link Inflater} and buffer are reused.
+ */
+public abstract class ContentCodec {
+
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int GZIP_FLAG_HCRC = 2;
+    private static final int GZIP_FLAG_EXTRA = 4;
+    private static final int GZIP_FLAG_NAME = 8;
+    private static final int GZIP_FLAG_COMMENT = 16;
+
+    protected final ContentCodecFactory factory;
+
+    protected final String encoding;
+
+    protected final boolean gzip;
+
+    /** Output of the codec, always kept in write (input) mode */
+    private ControlledByteBuffer outputBuffer;
+
+    protected ByteBuffer out;
+
+    protected final CRC32 crc = new CRC32();
+
+    ContentCodec(ContentCodecFactory factory, String encoding, ControlledByteBuffer outputBuffer) {
+        this.factory = factory;
+        this.encoding = encoding;
+        this.gzip = ContentCodecFactory.GZIP.equals(encoding);
+        this.outputBuffer = outputBuffer;
+        this.out = outputBuffer.getByteBuffer();
+    }
+
+    /**
+     * Transform the available content, as long as there is space left in the output buffer.
+     * The input must be backed by an accessible array, as the buffers of the pipes are.
+     *
+     * @param in the content in read mode, the position of which is moved past the consumed bytes
+     * @param endOfInput whether the content available is the last of the message
+     * @throws IOException if the content cannot be decompressed
+     */
+    public abstract void transform(ByteBuffer in, boolean endOfInput) throws IOException;
+
+    /**
+     * @return whether the whole message has been transformed, but not necessarily written
+     */
+    protected abstract boolean isTransformCompleted();
+
+    /**
+     * Write the transformed content to the wire
+     *
+     * @param encoder encoder of the connection
+     * @return number of bytes written
+     * @throws IOException if an error occurs while writing
+     */
+    public int write(ContentEncoder encoder) throws IOException {
+        out.flip();
+        try {
+            return encoder.write(out);
+        } finally {
+            out.compact();
+        }
+    }
+
+    /**
+     * @return whether there is transformed content waiting to be written
+     */
+    public boolean hasOutput() {
+        return out.position() > 0;
+    }
+
+    /**
+     * @return whether the whole message has been transformed and written
+     */
+    public boolean isCompleted() {
+        return isTransformCompleted() && !hasOutput();
+    }
+
+    public String getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Return the resources of this codec to the factory. The codec must not be used afterwards.
+     */
+    public void release() {
+        if (outputBuffer != null) {
+            releaseResources();
+            factory.getBufferFactory().release(outputBuffer);
+            outputBuffer = null;
+            out = null;
+        }
+    }
+
+    protected abstract void releaseResources();
+
+    /**
+     * Compresses the content with gzip or deflate (zlib) encoding. The output is flushed
+     * whenever the codec runs out of input, so that slowly produced content is not held back.
+     */
+    static class Compressor extends ContentCodec {
+
+        private Deflater deflater;
+
+        /** gzip header or trailer bytes pending to be written */
+        private final byte[] pending = new byte[10];
+        private int pendingOffset = 0;
+        private int pendingLength = 0;
+
+        private boolean flushed = false;
+        private boolean trailerWritten = false;
+
+        Compressor(ContentCodecFactory factory, String encoding,
+                   ControlledByteBuffer outputBuffer, Deflater deflater) {
+            super(factory, encoding, outputBuffer);
+            this.deflater = deflater;
+            if (gzip) {
+                // magic, deflate method, no flags, no modification time, no extra flags, unknown OS
+                pending[0] = (byte) GZIP_MAGIC;
+                pending[1] = (byte) (GZIP_MAGIC >> 8);
+                pending[2] = Deflater.DEFLATED;
+                pending[9] = (byte) 0xff;
+                pendingLength = 10;
+            }
+        }
+
+        @Override
+        public void transform(ByteBuffer in, boolean endOfInput) {
+            if (!writePending()) {
+                return;
+            }
+
+            while (out.hasRemaining() && !deflater.finished()) {
+                int length = in.remaining();
+                int offset = in.arrayOffset() + in.position();
+                deflater.setInput(in.array(), offset, length);
+                if (endOfInput) {
+                    deflater.finish();
+                }
+                int mode = !endOfInput && length == 0 && !flushed ?
+                        Deflater.SYNC_FLUSH : Deflater.NO_FLUSH;
+
+                long read = deflater.getBytesRead();
+                int written = deflater.deflate(out.array(), out.arrayOffset() + out.position(),
+                        out.remaining(), mode);
+                int consumed = (int) (deflater.getBytesRead() - read);
+                out.position(out.position() + written);
+                if (consumed > 0) {
+                    if (gzip) {
+                        crc.update(in.array(), offset, consumed);
+                    }
+                    in.position(in.position() + consumed);
+                    flushed = false;
+                } else if (mode == Deflater.SYNC_FLUSH && out.hasRemaining()) {
+                    flushed = true;
+                }
+
+                if (written == 0 && consumed == 0) {
+                    break;
+                }
+            }
+
+            if (deflater.finished() && gzip && !trailerWritten) {
+                writeIntLE((int) crc.getValue(), 0);
+                writeIntLE((int) deflater.getBytesRead(), 4);
+                pendingOffset = 0;
+                pendingLength = 8;
+                trailerWritten = true;
+                writePending();
+            }
+        }
+
+        private boolean writePending() {
+            if (pendingLength > pendingOffset) {
+                int length = Math.min(pendingLength - pendingOffset, out.remaining());
+                out.put(pending, pendingOffset, length);
+                pendingOffset += length;
+            }
+            return pendingLength == pendingOffset;
+        }
+
+        private void writeIntLE(int value, int offset) {
+            pending[offset] = (byte) value;
+            pending[offset + 1] = (byte) (value >> 8);
+            pending[offset + 2] = (byte) (value >> 16);
+            pending[offset + 3] = (byte) (value >> 24);
+        }
+
+        @Override
+        protected boolean isTransformCompleted() {
+            return deflater.finished() && pendingLength == pendingOffset;
+        }
+
+        @Override
+        protected void releaseResources() {
+            factory.releaseDeflater(deflater, gzip);
+            deflater = null;
+        }
+    }
+
+    /**
+     * Decompresses gzip or deflate (zlib) encoded content. Any content following the end of
+     * the compressed stream is discarded.
+     */
+    static class Decompressor extends ContentCodec {
+
+        private static final int HEADER = 0;
+        private static final int EXTRA_LENGTH = 1;
+        private static final int EXTRA = 2;
+        private static final int NAME = 3;
+        private static final int COMMENT = 4;
+        private static final int HEADER_CRC = 5;
+        private static final int BODY = 6;
+        private static final int TRAILER = 7;
+        private static final int DONE = 8;
+
+        private Inflater inflater;
+
+        private int state;
+
+        /** bytes of the gzip header or trailer read so far */
+        private final byte[] fields = new byte[10];
+        private int fieldLength = 0;
+        private int remaining = 0;
+        private int flags = 0;
+
+        Decompressor(ContentCodecFactory factory, String encoding,
+                     ControlledByteBuffer outputBuffer, Inflater inflater) {
+            super(factory, encoding, outputBuffer);
+            this.inflater = inflater;
+            this.state = gzip ? HEADER : BODY;
+        }
+
+        @Override
+        public void transform(ByteBuffer in, boolean endOfInput) throws IOException {
+            while (state != DONE) {
+                if (state == BODY) {
+                    if (!inflate(in)) {
+                        break;
+                    }
+                } else if (in.hasRemaining()) {
+                    readField(in.get());
+                } else {
+                    break;
+                }
+            }
+
+            if (state == DONE) {
+                in.position(in.limit());
+            } else if (endOfInput && !in.hasRemaining() && out.hasRemaining()) {
+                throw new IOException("Unexpected end of the " + encoding + " encoded content");
+            }
+        }
+
+        /**
+         * @return whether the compressed stream has been inflated and there may be more to do
+         */
+        private boolean inflate(ByteBuffer in) throws IOException {
+            int length = in.remaining();
+            inflater.setInput(in.array(), in.arrayOffset() + in.position(), length);
+            int written;
+            try {
+                written = inflater.inflate(out.array(), out.arrayOffset() + out.position(),
+                        out.remaining());
+            } catch (DataFormatException e) {
+                throw new IOException("Invalid " + encoding + " encoded content", e);
+            }
+            if (inflater.needsDictionary()) {
+                throw new IOException("Preset dictionaries are not supported");
+            }
+
+            int consumed = length - inflater.getRemaining();
+            in.position(in.position() + consumed);
+            if (gzip) {
+                crc.update(out.array(), out.arrayOffset() + out.position(), written);
+            }
+            out.position(out.position() + written);
+
+            if (inflater.finished()) {
+                state = gzip ? TRAILER : DONE;
+                fieldLength = 0;
+                remaining = 8;
+                return true;
+            }
+            return written > 0 || consumed > 0;
+        }
+
+        private void readField(byte b) throws IOException {
+            switch (state) {
+                case HEADER:
+                case TRAILER:
+                    fields[fieldLength++] = b;
+                    if (state == HEADER && fieldLength == 10) {
+                        if (readShortLE(0) != GZIP_MAGIC || fields[2] != Deflater.DEFLATED) {
+                            throw new IOException("Content is not in the gzip format");
+                        }
+                        flags = fields[3];
+                        nextHeaderField(EXTRA_LENGTH);
+                    } else if (state == TRAILER && fieldLength == 8) {
+                        if (readIntLE(0) != (int) crc.getValue() ||
+                                readIntLE(4) != (int) inflater.getBytesWritten()) {
+                            throw new IOException("Corrupt gzip trailer");
+                        }
+                        state = DONE;
+                    }
+                    break;
+                case EXTRA_LENGTH:
+                    fields[fieldLength++] = b;
+                    if (fieldLength == 2) {
+                        remaining = readShortLE(0);
+                        state = EXTRA;
+                        if (remaining == 0) {
+                            nextHeaderField(NAME);
+                        }
+                    }
+                    break;
+                case EXTRA:
+                case HEADER_CRC:
+                    if (--remaining == 0) {
+                        nextHeaderField(state == EXTRA ? NAME : BODY);
+                    }
+                    break;
+                case NAME:
+                case COMMENT:
+                    if (b == 0) {
+                        nextHeaderField(state + 1);
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unexpected state : " + state);
+            }
+        }
+
+        /**
+         * Move on to the first of the header fields from the given one, which is present
+         */
+        private void nextHeaderField(int field) {
+            fieldLength = 0;
+            if (field == EXTRA_LENGTH && (flags & GZIP_FLAG_EXTRA) == 0) {
+                field = NAME;
+            }
+            if (field == NAME && (flags & GZIP_FLAG_NAME) == 0) {
+                field = COMMENT;
+            }
+            if (field == COMMENT && (flags & GZIP_FLAG_COMMENT) == 0) {
+                field = HEADER_CRC;
+            }
+            if (field == HEADER_CRC) {
+                if ((flags & GZIP_FLAG_HCRC) == 0) {
+                    field = BODY;
+                } else {
+                    remaining = 2;
+                }
+            }
+            state = field;
+        }
+
+        private int readShortLE(int offset) {
+            return (fields[offset] & 0xff) | ((fields[offset + 1] & 0xff) << 8);
+        }
+
+        private int readIntLE(int offset) {
+            return readShortLE(offset) | (readShortLE(offset + 2) << 16);
+        }
+
+        @Override
+        protected boolean isTransformCompleted() {
+            return state == DONE;
+        }
+
+        @Override
+        protected void releaseResources() {
+            factory.releaseInflater(inflater, gzip);
+            inflater = null;
+        }
+    }
+}
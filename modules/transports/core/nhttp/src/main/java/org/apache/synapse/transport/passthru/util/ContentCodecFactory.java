@@ -0,0 +1,213 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.transport.passthru.util;
+
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Creates the {@link ContentCodec}s used to compress and decompress relayed content, and pools
+ * the {@link Deflater}s and {@link Inflater}s they use, as these hold on to native memory and
+ * are expensive to create per message.
+ */
+public class ContentCodecFactory {
+
+    public static final String GZIP = "gzip";
+    public static final String DEFLATE = "deflate";
+
+    private static final String X_GZIP = "x-gzip";
+
+    private final BufferFactory bufferFactory;
+
+    private final int level;
+
+    private final long minSize;
+
+    private final BlockingQueue<Deflater> gzipDeflaters;
+    private final BlockingQueue<Deflater> zlibDeflaters;
+    private final BlockingQueue<Inflater> gzipInflaters;
+    private final BlockingQueue<Inflater> zlibInflaters;
+
+    /**
+     * @param bufferFactory factory of the output buffers of the codecs
+     * @param level compression level (0-9, or -1 for the default level)
+     * @param minSize content shorter than this is not compressed
+     * @param poolSize maximum number of idle deflaters and inflaters kept of each kind
+     */
+    public ContentCodecFactory(BufferFactory bufferFactory, int level, long minSize,
+                               int poolSize) {
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level : " + level);
+        }
+        this.bufferFactory = bufferFactory;
+        this.level = level;
+        this.minSize = minSize;
+        this.gzipDeflaters = new ArrayBlockingQueue<Deflater>(poolSize);
+        this.zlibDeflaters = new ArrayBlockingQueue<Deflater>(poolSize);
+        this.gzipInflaters = new ArrayBlockingQueue<Inflater>(poolSize);
+        this.zlibInflaters = new ArrayBlockingQueue<Inflater>(poolSize);
+    }
+
+    /**
+     * Create a codec compressing the content with the given encoding
+     *
+     * @param encoding gzip or deflate
+     * @return the codec
+     */
+    public ContentCodec createCompressor(String encoding) {
+        boolean gzip = isGzip(encoding);
+        Deflater deflater = (gzip ? gzipDeflaters : zlibDeflaters).poll();
+        if (deflater == null) {
+            // gzip carries raw deflate data within its own header and trailer
+            deflater = new Deflater(level, gzip);
+        }
+        return new ContentCodec.Compressor(this, gzip ? GZIP : DEFLATE,
+                bufferFactory.getBuffer(), deflater);
+    }
+
+    /**
+     * Create a codec decompressing content of the given encoding
+     *
+     * @param encoding gzip or deflate
+     * @return the codec
+     */
+    public ContentCodec createDecompressor(String encoding) {
+        boolean gzip = isGzip(encoding);
+        Inflater inflater = (gzip ? gzipInflaters : zlibInflaters).poll();
+        if (inflater == null) {
+            inflater = new Inflater(gzip);
+        }
+        return new ContentCodec.Decompressor(this, gzip ? GZIP : DEFLATE,
+                bufferFactory.getBuffer(), inflater);
+    }
+
+    void releaseDeflater(Deflater deflater, boolean gzip) {
+        deflater.reset();
+        if (!(gzip ? gzipDeflaters : zlibDeflaters).offer(deflater)) {
+            deflater.end();
+        }
+    }
+
+    void releaseInflater(Inflater inflater, boolean gzip) {
+        inflater.reset();
+        if (!(gzip ? gzipInflaters : zlibInflaters).offer(inflater)) {
+            inflater.end();
+        }
+    }
+
+    BufferFactory getBufferFactory() {
+        return bufferFactory;
+    }
+
+    /**
+     * Checks whether content of the given type and length is worth compressing. Only textual
+     * content is compressed, as most binary formats are compressed already.
+     *
+     * @param contentType value of the Content-Type header, or null if not known
+     * @param contentLength length of the content, or -1 if not known
+     * @return true if the content should be compressed
+     */
+    public boolean isCompressible(String contentType, long contentLength) {
+        if (contentType == null || (contentLength >= 0 && contentLength < minSize)) {
+            return false;
+        }
+        String type = contentType.toLowerCase(Locale.ENGLISH);
+        int parameters = type.indexOf(';');
+        if (parameters != -1) {
+            type = type.substring(0, parameters);
+        }
+        type = type.trim();
+        return type.startsWith("text/") || type.endsWith("/xml") || type.endsWith("+xml") ||
+                type.endsWith("/json") || type.endsWith("+json") ||
+                type.endsWith("/javascript") || type.endsWith("/x-www-form-urlencoded");
+    }
+
+    /**
+     * Checks whether content of the given encoding can be decompressed
+     *
+     * @param contentEncoding value of the Content-Encoding header
+     * @return true if it is gzip or deflate
+     */
+    public static boolean isSupported(String contentEncoding) {
+        return contentEncoding != null && (isGzip(contentEncoding.trim()) ||
+                DEFLATE.equalsIgnoreCase(contentEncoding.trim()));
+    }
+
+    /**
+     * Select the encoding to compress content with, for a recipient sending the given
+     * Accept-Encoding header. gzip is preferred over deflate.
+     *
+     * @param acceptEncoding value of the Accept-Encoding header, or null if not present
+     * @return gzip, deflate or null if the recipient accepts neither
+     */
+    public static String selectEncoding(String acceptEncoding) {
+        if (isAccepted(acceptEncoding, GZIP)) {
+            return GZIP;
+        } else if (isAccepted(acceptEncoding, DEFLATE)) {
+            return DEFLATE;
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether a recipient sending the given Accept-Encoding header accepts the given
+     * encoding
+     *
+     * @param acceptEncoding value of the Accept-Encoding header, or null if not present
+     * @param encoding gzip or deflate
+     * @return true if the encoding is accepted with a non zero quality. A missing header allows
+     *         any coding, but is not taken as a request for one, so false is returned for it
+     */
+    public static boolean isAccepted(String acceptEncoding, String encoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        boolean gzip = isGzip(encoding.trim());
+        float wildcard = 0;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            float quality = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        quality = Float.parseFloat(parameter.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (gzip ? isGzip(name) : encoding.trim().equalsIgnoreCase(name)) {
+                return quality > 0;
+            } else if ("*".equals(name)) {
+                wildcard = quality;
+            }
+        }
+        return wildcard > 0;
+    }
+
+    private static boolean isGzip(String encoding) {
+        return GZIP.equalsIgnoreCase(encoding) || X_GZIP.equalsIgnoreCase(encoding);
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.synapse.transport.nhttp;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.logging.LogFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AsyncAccessLoggerTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("access-log").toFile();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void testConcurrentProducers() throws Exception {
+        final AsyncAccessLogger logger = new AsyncAccessLogger(
+                LogFactory.getLog(AsyncAccessLoggerTest.class), 64, 1024,
+                AsyncAccessLogger.FullPolicy.BLOCK, directory, false);
+
+        final int threads = 4;
+        final int messages = 5000;
+        Thread[] producers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            producers[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < messages; i++) {
+                        logger.log("producer-" + id + " message-" + i);
+                    }
+                }
+            };
+            producers[t].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        logger.stop();
+
+        assertEquals(0, logger.getDroppedRecordCount());
+        assertEquals(threads * messages, logger.getWrittenRecordCount());
+
+        List<String> lines = FileUtils.readLines(new File(directory,
+                AccessConstants.PREFIX + AccessConstants.SUFFIX), Charset.forName("UTF-8"));
+        assertEquals(threads * messages, lines.size());
+        Set<String> unique = new HashSet<String>(lines);
+        assertEquals(threads * messages, unique.size());
+        assertTrue(unique.contains("producer-3 message-4999"));
+    }
+
+    @Test
+    public void testDropPolicy() throws Exception {
+        AsyncAccessLogger logger = new AsyncAccessLogger(
+                LogFactory.getLog(AsyncAccessLoggerTest.class), 4, 1024,
+                AsyncAccessLogger.FullPolicy.DROP, directory, false);
+        logger.stop();
+
+        // the writer has stopped, so only the ring capacity can be accepted
+        for (int i = 0; i < 10; i++) {
+            logger.log("message-" + i);
+        }
+        assertEquals(6, logger.getDroppedRecordCount());
+        assertEquals(4, logger.getBacklog());
+    }
+
+    @Test
+    public void testRecordsQueuedAfterStop() throws Exception {
+        AsyncAccessLogger logger = new AsyncAccessLogger(
+                LogFactory.getLog(AsyncAccessLoggerTest.class), 16, 1024,
+                AsyncAccessLogger.FullPolicy.DROP, directory, false);
+        logger.log("message-1");
+        logger.stop();
+
+        // queued while stopped, and written out by the next stop
+        logger.log("message-2");
+        assertEquals(1, logger.getBacklog());
+        logger.stop();
+
+        logger.start();
+        logger.log("message-3");
+        logger.stop();
+
+        assertEquals(3, logger.getWrittenRecordCount());
+        assertEquals(0, logger.getDroppedRecordCount());
+        List<String> lines = FileUtils.readLines(new File(directory,
+                AccessConstants.PREFIX + AccessConstants.SUFFIX), Charset.forName("UTF-8"));
+        assertEquals(Arrays.asList("message-1", "message-2", "message-3"), lines);
+    }
+
+    @Test
+    public void testUnwritableRecordsAreNotCountedAsWritten() throws Exception {
+        // a file in place of the log directory, so that the log file cannot be opened
+        File file = new File(directory, "not-a-directory");
+        assertTrue(file.createNewFile());
+        AsyncAccessLogger logger = new AsyncAccessLogger(
+                LogFactory.getLog(AsyncAccessLoggerTest.class), 16, 1024,
+                AsyncAccessLogger.FullPolicy.DROP, file, false);
+        for (int i = 0; i < 3; i++) {
+            logger.log("message-" + i);
+        }
+        logger.stop();
+
+        assertEquals(0, logger.getWrittenRecordCount());
+        assertEquals(3, logger.getDroppedRecordCount());
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.synapse.transport.nhttp.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketBoundaries() {
+        long previous = -1;
+        for (int i = 0; i < LatencyHistogram.BUCKET_COUNT; i++) {
+            long highest = LatencyHistogram.highestEquivalentValue(i);
+            assertTrue(highest > previous);
+            assertEquals(i, LatencyHistogram.bucketIndex(highest));
+            assertEquals(i, LatencyHistogram.bucketIndex(previous + 1));
+            previous = highest;
+        }
+        assertEquals(LatencyHistogram.MAX_TRACKABLE_VALUE, previous);
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram(2);
+        assertEquals(0, histogram.getValueAtPercentile(99.0));
+        assertEquals(0, histogram.getMax());
+
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+
+        assertWithinError(500, histogram.getValueAtPercentile(50.0));
+        assertWithinError(900, histogram.getValueAtPercentile(90.0));
+        assertWithinError(990, histogram.getValueAtPercentile(99.0));
+        assertWithinError(999, histogram.getValueAtPercentile(99.9));
+        assertEquals(1000, histogram.getValueAtPercentile(100.0));
+        assertEquals(1000, histogram.getMax());
+    }
+
+    @Test
+    public void testOutOfRangeValues() {
+        LatencyHistogram histogram = new LatencyHistogram(1);
+        histogram.record(-5);
+        assertEquals(0, histogram.getMax());
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(LatencyHistogram.MAX_TRACKABLE_VALUE, histogram.getMax());
+    }
+
+    @Test
+    public void testRollingWindow() {
+        LatencyHistogram histogram = new LatencyHistogram(2);
+        histogram.record(5000);
+        histogram.rotate();
+        histogram.record(10);
+        histogram.rotate();
+        assertEquals(5000, histogram.getMax());
+
+        // The interval holding 5000 falls out of the window
+        histogram.rotate();
+        assertEquals(10, histogram.getMax());
+        assertEquals(10, histogram.getValueAtPercentile(99.9));
+
+        histogram.reset();
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getValueAtPercentile(50.0));
+    }
+
+    private void assertWithinError(long expected, long actual) {
+        assertTrue("Expected " + expected + " but was " + actual,
+                actual >= expected && actual <= expected * 1.0625);
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.transport.nhttp.util;
+
+import static org.junit.Assert.*;
+
+import org.apache.axis2.description.AxisService;
+import org.apache.axis2.engine.AxisConfiguration;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.HTTP;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+
+public class ServiceDocumentCacheTest {
+
+    private static final byte[] WSDL = "<definitions/>".getBytes();
+
+    @Test
+    public void testDocumentIsGeneratedOnce() throws Exception {
+        ServiceDocumentCache cache = new ServiceDocumentCache();
+        AxisService service = new AxisService("Test");
+        CountingGenerator generator = new CountingGenerator();
+
+        ServiceDocumentCache.Document first = cache.getDocument(service, "wsdl", generator);
+        ServiceDocumentCache.Document second = cache.getDocument(service, "wsdl", generator);
+        assertSame(first, second);
+        assertEquals(1, generator.count);
+
+        cache.getDocument(service, "xsd", generator);
+        assertEquals(2, generator.count);
+    }
+
+    @Test
+    public void testRedeployedServiceIsRegenerated() throws Exception {
+        ServiceDocumentCache cache = new ServiceDocumentCache();
+        CountingGenerator generator = new CountingGenerator();
+
+        cache.getDocument(new AxisService("Test"), "wsdl", generator);
+        cache.getDocument(new AxisService("Test"), "wsdl", generator);
+        assertEquals(2, generator.count);
+
+        AxisService service = new AxisService("Test");
+        cache.getDocument(service, "wsdl", generator);
+        cache.invalidate("Test");
+        cache.getDocument(service, "wsdl", generator);
+        assertEquals(4, generator.count);
+    }
+
+    @Test
+    public void testConditionalRequest() throws Exception {
+        ServiceDocumentCache.Document document = new ServiceDocumentCache()
+                .getDocument(new AxisService("Test"), "wsdl", new CountingGenerator());
+
+        BasicHttpRequest request = new BasicHttpRequest("GET", "/services/Test?wsdl");
+        HttpResponse response = newResponse();
+        assertArrayEquals(WSDL, document.prepareResponse(request, response, "text/xml"));
+        assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        assertEquals(document.getETag(), response.getFirstHeader("ETag").getValue());
+        assertEquals(WSDL.length, response.getEntity().getContentLength());
+        assertFalse(response.getEntity().isChunked());
+
+        request.addHeader("If-None-Match", "\"other\", " + document.getETag());
+        response = newResponse();
+        assertEquals(0, document.prepareResponse(request, response, "text/xml").length);
+        assertEquals(HttpStatus.SC_NOT_MODIFIED, response.getStatusLine().getStatusCode());
+        assertNull(response.getFirstHeader(HTTP.CONTENT_TYPE));
+    }
+
+    @Test
+    public void testGzipRequest() throws Exception {
+        ServiceDocumentCache.Document document = new ServiceDocumentCache()
+                .getDocument(new AxisService("Test"), "wsdl", new CountingGenerator());
+
+        BasicHttpRequest request = new BasicHttpRequest("GET", "/services/Test?wsdl");
+        request.addHeader("Accept-Encoding", "deflate, gzip;q=0.5");
+        HttpResponse response = newResponse();
+        byte[] body = document.prepareResponse(request, response, "text/xml");
+        assertEquals("gzip", response.getFirstHeader(HTTP.CONTENT_ENCODING).getValue());
+        assertEquals(document.getGzipETag(), response.getFirstHeader("ETag").getValue());
+        assertFalse(document.getGzipETag().equals(document.getETag()));
+        assertArrayEquals(WSDL, gunzip(body));
+
+        request.addHeader("If-None-Match", document.getGzipETag());
+        response = newResponse();
+        assertEquals(0, document.prepareResponse(request, response, "text/xml").length);
+        assertEquals(HttpStatus.SC_NOT_MODIFIED, response.getStatusLine().getStatusCode());
+
+        request = new BasicHttpRequest("GET", "/services/Test?wsdl");
+        request.addHeader("Accept-Encoding", "gzip;q=0");
+        response = newResponse();
+        assertArrayEquals(WSDL, document.prepareResponse(request, response, "text/xml"));
+        assertNull(response.getFirstHeader(HTTP.CONTENT_ENCODING));
+        assertEquals(document.getETag(), response.getFirstHeader("ETag").getValue());
+    }
+
+    @Test
+    public void testUndeployedServiceIsEvicted() throws Exception {
+        ServiceDocumentCache cache = new ServiceDocumentCache();
+        AxisConfiguration axisConfig = new AxisConfiguration();
+        cache.observe(axisConfig);
+        AxisService service = new AxisService("Test");
+        axisConfig.addService(service);
+        CountingGenerator generator = new CountingGenerator();
+
+        cache.getDocument(service, "wsdl", generator);
+        cache.getDocument(service, "wsdl", generator);
+        assertEquals(1, generator.count);
+
+        axisConfig.removeService("Test");
+        cache.getDocument(service, "wsdl", generator);
+        assertEquals(2, generator.count);
+    }
+
+    private static HttpResponse newResponse() {
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        BasicHttpEntity entity = new BasicHttpEntity();
+        entity.setChunked(true);
+        response.setEntity(entity);
+        return response;
+    }
+
+    private static byte[] gunzip(byte[] data) throws Exception {
+        InputStream in = new GZIPInputStream(new ByteArrayInputStream(data));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static class CountingGenerator implements ServiceDocumentCache.DocumentGenerator {
+
+        private int count;
+
+        @Override
+        public void generate(OutputStream out) throws Exception {
+            count++;
+            out.write(WSDL);
+        }
+    }
+}
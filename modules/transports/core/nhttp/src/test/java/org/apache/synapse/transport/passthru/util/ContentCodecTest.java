@@ -0,0 +1,209 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.transport.passthru.util;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.util.HeapByteBufferAllocator;
+import org.junit.Test;
+
+public class ContentCodecTest {
+
+    private final ContentCodecFactory factory = new ContentCodecFactory(
+            new BufferFactory(64, HeapByteBufferAllocator.INSTANCE, 4), 6, 16, 4);
+
+    @Test
+    public void testGzipCompression() throws Exception {
+        byte[] content = createContent();
+        byte[] compressed = transform(factory.createCompressor("gzip"), content);
+        assertTrue(compressed.length < content.length);
+        assertArrayEquals(content, read(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+    }
+
+    @Test
+    public void testDeflateCompression() throws Exception {
+        byte[] content = createContent();
+        byte[] compressed = transform(factory.createCompressor("deflate"), content);
+        assertArrayEquals(content,
+                read(new InflaterInputStream(new ByteArrayInputStream(compressed))));
+    }
+
+    @Test
+    public void testGzipDecompression() throws Exception {
+        byte[] content = createContent();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        GZIPOutputStream out = new GZIPOutputStream(compressed);
+        out.write(content);
+        out.close();
+
+        assertArrayEquals(content,
+                transform(factory.createDecompressor("gzip"), compressed.toByteArray()));
+        // the inflaters are reused once released
+        assertArrayEquals(content,
+                transform(factory.createDecompressor("x-gzip"), compressed.toByteArray()));
+    }
+
+    @Test
+    public void testGzipDecompressionWithOptionalHeaders() throws Exception {
+        byte[] content = createContent();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        GZIPOutputStream out = new GZIPOutputStream(compressed);
+        out.write(content);
+        out.close();
+
+        // add a file name and a comment to the header
+        byte[] plain = compressed.toByteArray();
+        ByteArrayOutputStream withHeaders = new ByteArrayOutputStream();
+        withHeaders.write(plain, 0, 10);
+        withHeaders.write("content.xml\0a comment\0".getBytes("US-ASCII"));
+        withHeaders.write(plain, 10, plain.length - 10);
+        byte[] gzip = withHeaders.toByteArray();
+        gzip[3] = 8 | 16;
+
+        assertArrayEquals(content, transform(factory.createDecompressor("gzip"), gzip));
+    }
+
+    @Test
+    public void testDeflateDecompression() throws Exception {
+        byte[] content = createContent();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        DeflaterOutputStream out = new DeflaterOutputStream(compressed);
+        out.write(content);
+        out.close();
+
+        assertArrayEquals(content,
+                transform(factory.createDecompressor("deflate"), compressed.toByteArray()));
+    }
+
+    @Test
+    public void testTruncatedContent() throws Exception {
+        byte[] compressed = transform(factory.createCompressor("gzip"), createContent());
+        try {
+            transform(factory.createDecompressor("gzip"),
+                    Arrays.copyOf(compressed, compressed.length - 4));
+            fail("Truncated content must not be accepted");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void testEncodingSelection() {
+        assertEquals("gzip", ContentCodecFactory.selectEncoding("deflate, gzip"));
+        assertEquals("deflate", ContentCodecFactory.selectEncoding("gzip;q=0, deflate"));
+        assertEquals("gzip", ContentCodecFactory.selectEncoding("*"));
+        assertNull(ContentCodecFactory.selectEncoding("identity"));
+        assertNull(ContentCodecFactory.selectEncoding(null));
+        assertTrue(ContentCodecFactory.isAccepted("x-gzip", "gzip"));
+        assertFalse(ContentCodecFactory.isAccepted("gzip;q=0.0, *", "gzip"));
+    }
+
+    @Test
+    public void testCompressibleContent() {
+        assertTrue(factory.isCompressible("application/json; charset=UTF-8", -1));
+        assertTrue(factory.isCompressible("text/xml", 16));
+        assertTrue(factory.isCompressible("application/soap+xml", 100));
+        assertFalse(factory.isCompressible("text/xml", 15));
+        assertFalse(factory.isCompressible("image/png", 100));
+        assertFalse(factory.isCompressible(null, 100));
+    }
+
+    /**
+     * Relay the content through the codec in small pieces, as a pipe does
+     */
+    private static byte[] transform(ContentCodec codec, byte[] content) throws IOException {
+        ByteBuffer in = ByteBuffer.allocate(100);
+        CollectingEncoder encoder = new CollectingEncoder();
+        int offset = 0;
+        try {
+            while (!codec.isCompleted()) {
+                int length = Math.min(37, Math.min(in.remaining(), content.length - offset));
+                in.put(content, offset, length);
+                offset += length;
+
+                in.flip();
+                codec.transform(in, offset == content.length);
+                in.compact();
+                codec.write(encoder);
+            }
+        } finally {
+            codec.release();
+        }
+        return encoder.out.toByteArray();
+    }
+
+    private static byte[] createContent() {
+        StringBuilder content = new StringBuilder();
+        Random random = new Random(7);
+        for (int i = 0; i < 500; i++) {
+            content.append("<item id=\"").append(random.nextInt(100)).append("\">value</item>");
+        }
+        return content.toString().getBytes();
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static class CollectingEncoder implements ContentEncoder {
+
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        private boolean completed;
+
+        @Override
+        public int write(ByteBuffer src) {
+            // write at most a few bytes at a time, as a busy connection would
+            int length = Math.min(src.remaining(), 50);
+            byte[] bytes = new byte[length];
+            src.get(bytes);
+            out.write(bytes, 0, length);
+            return length;
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+        }
+
+        @Override
+        public boolean isCompleted() {
+            return completed;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.synapse.transport.pipe;
+
+import java.nio.ByteBuffer;
+
+/**
+ * {@link ProtocolDecoder} that decodes whole chunks of the stream at once.
+ * <p>
+ * Instead of being fed a heap array and queueing the datagrams, the decoder reads the data
+ * straight from the buffer the stream was read into and adds the datagrams that are completed
+ * to a {@link DatagramBatch}. Each datagram is copied out of the buffer into an array of its
+ * own, so that the listener can read the stream into a direct buffer that is reused for the
+ * lifetime of the listener, without first copying every chunk into a heap array.
+ */
+public interface BufferProtocolDecoder extends ProtocolDecoder {
+    /**
+     * Decode the remaining data in the buffer. Datagrams that are completed by the data
+     * are added to the batch; an incomplete datagram at the end of the data is retained
+     * by the decoder until it is completed by a later call. When the method returns, the
+     * buffer has no remaining data and may be reused by the caller.
+     *
+     * @param buffer the buffer containing data from the stream
+     * @param batch the batch to add the decoded datagrams to
+     */
+    void decode(ByteBuffer buffer, DatagramBatch batch);
+}
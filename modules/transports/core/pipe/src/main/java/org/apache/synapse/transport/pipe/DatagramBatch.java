@@ -0,0 +1,74 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.synapse.transport.pipe;
+
+/**
+ * A sequence of datagrams read from a stream. Each datagram is held in an array of its
+ * own, starting at offset 0 and spanning the whole array, which is the form expected by
+ * {@link org.apache.axis2.transport.base.datagram.ProcessPacketTask}.
+ */
+public class DatagramBatch {
+    private byte[][] datagrams;
+    private int size;
+    private long byteCount;
+
+    public DatagramBatch() {
+        this(16);
+    }
+
+    public DatagramBatch(int initialCapacity) {
+        datagrams = new byte[initialCapacity][];
+    }
+
+    /**
+     * Add a datagram to the batch. The array must not be modified afterwards.
+     *
+     * @param datagram the datagram
+     */
+    public void add(byte[] datagram) {
+        if (size == datagrams.length) {
+            byte[][] newDatagrams = new byte[size * 2][];
+            System.arraycopy(datagrams, 0, newDatagrams, 0, size);
+            datagrams = newDatagrams;
+        }
+        datagrams[size++] = datagram;
+        byteCount += datagram.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Get the total length of the datagrams in the batch.
+     *
+     * @return the number of bytes
+     */
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    public byte[] get(int index) {
+        return datagrams[index];
+    }
+}
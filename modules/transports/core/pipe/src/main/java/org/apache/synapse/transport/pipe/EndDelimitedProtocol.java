@@ -19,6 +19,7 @@
 package org.apache.synapse.transport.pipe;
 
 import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 import java.util.LinkedList;
 import java.util.Queue;
 
@@ -50,11 +51,21 @@ import org.apache.axis2.transport.base.ParamUtils;
  *   &lt;parameter name="protocol">org.apache.synapse.transport.pipe.EndDelimitedProtocol&lt;/parameter>
  *   &lt;parameter name="delimiter">10&lt;/parameter>
  * &lt;/transportReceiver></pre>
+ * The decoders created by this protocol implement {@link BufferProtocolDecoder}: the
+ * datagrams are copied straight from the read buffer into one array each. Only a datagram
+ * that spans several reads is copied a second time, from the carry-over of the previous
+ * reads, when it is completed.
  */
 public class EndDelimitedProtocol implements Protocol {
-    private class ProtocolDecoderImpl implements ProtocolDecoder {
+    /** Carry-over buffers larger than this are released once their datagram is completed */
+    private static final int MAX_RETAINED_PENDING_SIZE = PipeConstants.DEFAULT_READ_BUFFER_SIZE;
+
+    private class ProtocolDecoderImpl implements BufferProtocolDecoder {
         private final ByteArrayOutputStream messageBuffer = new ByteArrayOutputStream();
         private final Queue<byte[]> messages = new LinkedList<byte[]>();
+        /** The incomplete datagram at the end of the data decoded so far (buffer mode only) */
+        private byte[] pending = new byte[0];
+        private int pendingLength;
         
         public ProtocolDecoderImpl() {}
         
@@ -67,7 +78,8 @@ public class EndDelimitedProtocol implements Protocol {
         public void decode(byte[] buf, int offset, int length) {
             byte delimiter = getDelimiter();
             int start = offset;
-            for (int i=offset; i<length; i++) {
+            int end = offset + length;
+            for (int i=offset; i<end; i++) {
                 if (buf[i] == delimiter) {
                     messageBuffer.write(buf, start, i-start);
                     start = i+1;
@@ -75,7 +87,43 @@ public class EndDelimitedProtocol implements Protocol {
                     messageBuffer.reset();
                 }
             }
-            messageBuffer.write(buf, start, length-start);
+            messageBuffer.write(buf, start, end-start);
+        }
+
+        @Override
+        public void decode(ByteBuffer buffer, DatagramBatch batch) {
+            byte delimiter = getDelimiter();
+            int limit = buffer.limit();
+            int start = buffer.position();
+            for (int i=start; i<limit; i++) {
+                if (buffer.get(i) == delimiter) {
+                    // The datagram is copied straight out of the read buffer into its own
+                    // array, after the part of it carried over from the previous reads
+                    int length = i-start;
+                    byte[] datagram = new byte[pendingLength + length];
+                    System.arraycopy(pending, 0, datagram, 0, pendingLength);
+                    buffer.position(start);
+                    buffer.get(datagram, pendingLength, length);
+                    batch.add(datagram);
+                    if (pending.length > MAX_RETAINED_PENDING_SIZE) {
+                        pending = new byte[0];
+                    }
+                    pendingLength = 0;
+                    start = i+1;
+                }
+            }
+            // Append the incomplete datagram at the end of the data to the carry-over. The
+            // carry-over grows geometrically, so that a datagram spanning many reads is only
+            // copied once more when it is completed.
+            int length = limit-start;
+            if (pendingLength + length > pending.length) {
+                byte[] newPending = new byte[Math.max(pendingLength + length, pending.length*2)];
+                System.arraycopy(pending, 0, newPending, 0, pendingLength);
+                pending = newPending;
+            }
+            buffer.position(start);
+            buffer.get(pending, pendingLength, length);
+            pendingLength += length;
         }
 
         @Override
@@ -25,4 +25,10 @@ public class PipeConstants {
     private PipeConstants() {}
     
     public static final String NAME_KEY = "transport.pipe.name";
+    public static final String READ_BUFFER_SIZE_KEY = "transport.pipe.readBufferSize";
+    public static final String MAX_BATCH_SIZE_KEY = "transport.pipe.maxBatchSize";
+    public static final String MAX_PENDING_BATCHES_KEY = "transport.pipe.maxPendingBatches";
+
+    public static final int DEFAULT_READ_BUFFER_SIZE = 65536;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 256;
 }
@@ -26,16 +26,30 @@ import java.util.Map;
 
 import org.apache.axis2.transport.base.datagram.DatagramDispatcher;
 import org.apache.axis2.transport.base.datagram.DatagramDispatcherCallback;
+import org.apache.axis2.transport.base.threads.WorkerPool;
 
 /**
  * {@link DatagramDispatcher} implementation for the pipe transport.
  */
 public class PipeDispatcher implements DatagramDispatcher<PipeEndpoint> {
     private final DatagramDispatcherCallback callback;
+    private final WorkerPool workerPool;
     private final Map<PipeEndpoint,PipeEndpointListener> endpointListeners = new IdentityHashMap<PipeEndpoint,PipeEndpointListener>();
     
     public PipeDispatcher(DatagramDispatcherCallback callback) {
+        this(callback, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param callback the callback used to dispatch datagrams one by one if no worker
+     *                 pool is given
+     * @param workerPool the worker pool used to process batches of datagrams, or null
+     */
+    public PipeDispatcher(DatagramDispatcherCallback callback, WorkerPool workerPool) {
         this.callback = callback;
+        this.workerPool = workerPool;
     }
 
 	@Override
@@ -47,7 +61,7 @@ public class PipeDispatcher implements DatagramDispatcher<PipeEndpoint> {
 	    if (pipe.isDirectory() || pipe.isFile()) {
 	        throw new IOException(pipe.getAbsolutePath() + " is not a pipe");
 	    }
-		PipeEndpointListener listener = new PipeEndpointListener(endpoint, callback);
+		PipeEndpointListener listener = new PipeEndpointListener(endpoint, callback, workerPool);
 		new Thread(listener, "pipe:" + pipe.getAbsolutePath()).start();
 		endpointListeners.put(endpoint, listener);
 	}
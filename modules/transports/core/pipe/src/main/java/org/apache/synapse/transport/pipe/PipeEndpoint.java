@@ -33,6 +33,10 @@ import org.apache.axis2.transport.base.datagram.DatagramEndpoint;
 public class PipeEndpoint extends DatagramEndpoint {
 	private File pipe;
 	private Protocol protocol;
+	private int readBufferSize;
+	private int maxBatchSize;
+	private int maxPendingBatches;
+	private final PipeStatistics statistics = new PipeStatistics();
 
 	public File getPipe() {
 		return pipe;
@@ -46,6 +50,27 @@ public class PipeEndpoint extends DatagramEndpoint {
         this.protocol = protocol;
     }
 
+    public int getReadBufferSize() {
+        return readBufferSize;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Get the maximum number of batches dispatched to the worker pool and not yet processed.
+     *
+     * @return the maximum number of pending batches, or 0 if there is no limit
+     */
+    public int getMaxPendingBatches() {
+        return maxPendingBatches;
+    }
+
+    public PipeStatistics getStatistics() {
+        return statistics;
+    }
+
     @Override
     public boolean loadConfiguration(ParameterInclude params) throws AxisFault {
         String name = ParamUtils.getOptionalParam(params, PipeConstants.NAME_KEY);
@@ -53,6 +78,15 @@ public class PipeEndpoint extends DatagramEndpoint {
             return false;
         }
         pipe = new File(name);
+        readBufferSize = ParamUtils.getOptionalParamInt(params,
+                PipeConstants.READ_BUFFER_SIZE_KEY, PipeConstants.DEFAULT_READ_BUFFER_SIZE);
+        maxBatchSize = ParamUtils.getOptionalParamInt(params,
+                PipeConstants.MAX_BATCH_SIZE_KEY, PipeConstants.DEFAULT_MAX_BATCH_SIZE);
+        maxPendingBatches = ParamUtils.getOptionalParamInt(params,
+                PipeConstants.MAX_PENDING_BATCHES_KEY, 0);
+        if (readBufferSize <= 0 || maxBatchSize <= 0 || maxPendingBatches < 0) {
+            throw new AxisFault("Invalid buffer or batch size configured for pipe " + name);
+        }
         return super.loadConfiguration(params);
     }
 
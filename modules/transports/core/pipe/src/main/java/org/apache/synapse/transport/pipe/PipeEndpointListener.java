@@ -26,8 +26,11 @@ import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.axis2.transport.base.datagram.DatagramDispatcherCallback;
+import org.apache.axis2.transport.base.threads.WorkerPool;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -50,22 +53,45 @@ import org.apache.commons.logging.LogFactory;
  *       operations on a file channel can't be invoked concurrently from different threads,
  *       we need to create two separate channels from the same file descriptor.</li>
  * </ul>
+ * The pipe is read into a direct buffer that is reused for the lifetime of the listener.
+ * All the datagrams decoded from a single read are dispatched to the worker pool as a
+ * {@link DatagramBatch}, split into tasks of at most
+ * {@link PipeEndpoint#getMaxBatchSize()} datagrams.
  */
 public class PipeEndpointListener implements Runnable {
     private static final Log log = LogFactory.getLog(PipeEndpointListener.class);
     
     private final PipeEndpoint endpoint;
     private final DatagramDispatcherCallback callback;
+    private final WorkerPool workerPool;
     private final RandomAccessFile pipe;
     private final FileChannel readChannel;
     private final FileChannel writeChannel;
     private final Object guard = new Object();
     private boolean running;
     private final CountDownLatch done = new CountDownLatch(1);
+    private final AtomicInteger pendingBatches = new AtomicInteger();
+    /** Whether datagrams have been dropped since the last successful dispatch */
+    private boolean dropping;
     
     public PipeEndpointListener(PipeEndpoint endpoint, DatagramDispatcherCallback callback) throws IOException {
+        this(endpoint, callback, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param endpoint the endpoint to read from
+     * @param callback the callback used to dispatch datagrams one by one if no worker
+     *                 pool is given
+     * @param workerPool the worker pool used to process batches of datagrams, or null
+     * @throws IOException if the pipe could not be opened
+     */
+    public PipeEndpointListener(PipeEndpoint endpoint, DatagramDispatcherCallback callback,
+                                WorkerPool workerPool) throws IOException {
         this.endpoint = endpoint;
         this.callback = callback;
+        this.workerPool = workerPool;
         pipe = new RandomAccessFile(endpoint.getPipe(), "rw");
         FileDescriptor fd = pipe.getFD();
         readChannel = new FileInputStream(fd).getChannel();
@@ -78,34 +104,47 @@ public class PipeEndpointListener implements Runnable {
     @Override
     public void run() {
         running = true;
-        ByteBuffer readBuffer = ByteBuffer.allocate(1024);
+        ByteBuffer readBuffer = ByteBuffer.allocateDirect(endpoint.getReadBufferSize());
+        ProtocolDecoder decoder = endpoint.getProtocol().createProtocolDecoder();
+        BufferProtocolDecoder bufferDecoder = decoder instanceof BufferProtocolDecoder
+                ? (BufferProtocolDecoder)decoder : null;
+        // Decoders that can't read from the buffer directly need the data in a heap array
+        byte[] readArray = bufferDecoder == null ? new byte[readBuffer.capacity()] : null;
+        int lastBatchSize = 16;
         try {
             while (true) {
-                ProtocolDecoder decoder;
-                decoder = endpoint.getProtocol().createProtocolDecoder();
-                while (true) {
-                    while (decoder.inputRequired()) {
-                        int c;
-                        try {
-                            c = readChannel.read(readBuffer);
-                        } catch (IOException ex) {
-                            log.error("Error while reading from pipe " + endpoint.getPipe().getAbsolutePath() + "; shutting down listener", ex);
-                            return;
-                        }
-                        if (c == -1) {
-                            log.error("Pipe " + endpoint.getPipe().getAbsolutePath() + " was unexpectedly closed; shutting down listener");
-                            return;
-                        }
-                        synchronized (guard) {
-                            if (!running) {
-                                return;
-                            }
-                        }
-                        decoder.decode(readBuffer.array(), 0, readBuffer.position());
-                        readBuffer.rewind();
+                int c;
+                try {
+                    c = readChannel.read(readBuffer);
+                } catch (IOException ex) {
+                    log.error("Error while reading from pipe " + endpoint.getPipe().getAbsolutePath() + "; shutting down listener", ex);
+                    return;
+                }
+                if (c == -1) {
+                    log.error("Pipe " + endpoint.getPipe().getAbsolutePath() + " was unexpectedly closed; shutting down listener");
+                    return;
+                }
+                synchronized (guard) {
+                    if (!running) {
+                        return;
                     }
-                    byte[] message = decoder.getNext();
-                    callback.receive(endpoint, message, message.length, null);
+                }
+                readBuffer.flip();
+                DatagramBatch batch = new DatagramBatch(lastBatchSize);
+                if (bufferDecoder != null) {
+                    bufferDecoder.decode(readBuffer, batch);
+                } else {
+                    int length = readBuffer.remaining();
+                    readBuffer.get(readArray, 0, length);
+                    decoder.decode(readArray, 0, length);
+                    while (!decoder.inputRequired()) {
+                        batch.add(decoder.getNext());
+                    }
+                }
+                readBuffer.clear();
+                if (!batch.isEmpty()) {
+                    lastBatchSize = batch.size();
+                    dispatch(batch);
                 }
             }
         }
@@ -122,6 +161,47 @@ public class PipeEndpointListener implements Runnable {
         }
     }
 
+    private void dispatch(DatagramBatch batch) {
+        PipeStatistics statistics = endpoint.getStatistics();
+        int size = batch.size();
+        statistics.received(size, batch.getByteCount());
+        if (workerPool == null) {
+            for (int i=0; i<size; i++) {
+                byte[] datagram = batch.get(i);
+                callback.receive(endpoint, datagram, datagram.length, null);
+            }
+            return;
+        }
+        int maxBatchSize = endpoint.getMaxBatchSize();
+        int maxPendingBatches = endpoint.getMaxPendingBatches();
+        for (int start=0; start<size; start+=maxBatchSize) {
+            int end = Math.min(start + maxBatchSize, size);
+            if (maxPendingBatches > 0 && pendingBatches.get() >= maxPendingBatches) {
+                drop(end - start);
+                continue;
+            }
+            pendingBatches.incrementAndGet();
+            try {
+                workerPool.execute(new ProcessBatchTask(endpoint, batch, start, end, pendingBatches));
+            } catch (RejectedExecutionException ex) {
+                pendingBatches.decrementAndGet();
+                drop(end - start);
+                continue;
+            }
+            statistics.dispatched();
+            dropping = false;
+        }
+    }
+
+    private void drop(int count) {
+        endpoint.getStatistics().dropped(count);
+        if (!dropping) {
+            log.warn("Worker pool saturated; dropping datagrams received from pipe "
+                    + endpoint.getPipe().getAbsolutePath());
+            dropping = true;
+        }
+    }
+
     public void stop() throws IOException {
         if (log.isDebugEnabled()) {
             log.debug("Stopping listener for pipe " + endpoint.getPipe().getAbsolutePath() + " ...");
@@ -136,7 +216,8 @@ public class PipeEndpointListener implements Runnable {
             Thread.currentThread().interrupt();
         }
         if (log.isDebugEnabled()) {
-            log.debug("Listener for pipe " + endpoint.getPipe().getAbsolutePath() + " stopped");
+            log.debug("Listener for pipe " + endpoint.getPipe().getAbsolutePath() + " stopped ["
+                    + endpoint.getStatistics() + "]");
         }
     }
 }
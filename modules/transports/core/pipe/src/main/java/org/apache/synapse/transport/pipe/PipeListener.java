@@ -49,7 +49,20 @@ import org.apache.axis2.transport.base.datagram.DatagramDispatcherCallback;
  *   <dt>transport.pipe.contentType</dt>
  *   <dd>The content type of the messages received (required). This setting
  *       is used to select the appropriate message builder.</dd>
+ *   <dt>transport.pipe.readBufferSize</dt>
+ *   <dd>The size in bytes of the direct buffer the pipe is read into (optional,
+ *       default 65536).</dd>
+ *   <dt>transport.pipe.maxBatchSize</dt>
+ *   <dd>The maximum number of datagrams processed by a single worker task (optional,
+ *       default 256). The datagrams decoded from a single read are dispatched
+ *       together, split into tasks of at most this size.</dd>
+ *   <dt>transport.pipe.maxPendingBatches</dt>
+ *   <dd>The maximum number of worker tasks that may be waiting for or in processing
+ *       (optional). When the limit is reached, further datagrams are dropped instead of
+ *       blocking the reader. By default there is no limit.</dd>
  * </dl>
+ * The number of datagrams received and dropped on an endpoint is available from
+ * {@link PipeEndpoint#getStatistics()}.
  */
 public class PipeListener extends AbstractDatagramTransportListener<PipeEndpoint> implements ManagementSupport {
     private Protocol protocol;
@@ -78,7 +91,7 @@ public class PipeListener extends AbstractDatagramTransportListener<PipeEndpoint
 
     @Override
     protected PipeDispatcher createDispatcher(DatagramDispatcherCallback callback) throws IOException {
-        return new PipeDispatcher(callback);
+        return new PipeDispatcher(callback, workerPool);
     }
 
     @Override
@@ -0,0 +1,93 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.synapse.transport.pipe;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters maintained by the listener of a pipe endpoint. Datagrams are counted when they
+ * are read from the pipe, before they are processed; the outcome of the processing is
+ * reflected by the {@link org.apache.axis2.transport.base.MetricsCollector} of the transport.
+ */
+public class PipeStatistics {
+    private final AtomicLong datagramsReceived = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong batchesDispatched = new AtomicLong();
+    private final AtomicLong datagramsDropped = new AtomicLong();
+    private volatile long resetTime = System.currentTimeMillis();
+
+    void received(int datagrams, long bytes) {
+        datagramsReceived.addAndGet(datagrams);
+        bytesReceived.addAndGet(bytes);
+    }
+
+    void dispatched() {
+        batchesDispatched.incrementAndGet();
+    }
+
+    void dropped(int datagrams) {
+        datagramsDropped.addAndGet(datagrams);
+    }
+
+    public long getDatagramsReceived() {
+        return datagramsReceived.get();
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    public long getBatchesDispatched() {
+        return batchesDispatched.get();
+    }
+
+    /**
+     * Get the number of datagrams that were read from the pipe but discarded because the
+     * worker pool could not accept them.
+     *
+     * @return the number of dropped datagrams
+     */
+    public long getDatagramsDropped() {
+        return datagramsDropped.get();
+    }
+
+    /**
+     * Get the average number of datagrams received per second since the last reset.
+     *
+     * @return the receive rate in datagrams per second
+     */
+    public double getDatagramsPerSecond() {
+        long elapsed = System.currentTimeMillis() - resetTime;
+        return elapsed <= 0 ? 0 : datagramsReceived.get() * 1000.0 / elapsed;
+    }
+
+    public void reset() {
+        datagramsReceived.set(0);
+        bytesReceived.set(0);
+        batchesDispatched.set(0);
+        datagramsDropped.set(0);
+        resetTime = System.currentTimeMillis();
+    }
+
+    @Override
+    public String toString() {
+        return "received=" + getDatagramsReceived() + ", bytes=" + getBytesReceived()
+                + ", batches=" + getBatchesDispatched() + ", dropped=" + getDatagramsDropped();
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.synapse.transport.pipe;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.axis2.transport.base.datagram.ProcessPacketTask;
+
+/**
+ * Worker task that processes a range of the datagrams in a {@link DatagramBatch}, one
+ * after the other, by running a {@link ProcessPacketTask} for each of them on the current
+ * thread. This avoids the scheduling overhead of a worker task per datagram when datagrams
+ * are small and arrive at a high rate.
+ */
+public class ProcessBatchTask implements Runnable {
+    private final PipeEndpoint endpoint;
+    private final DatagramBatch batch;
+    private final int start;
+    private final int end;
+    private final AtomicInteger pendingBatches;
+    
+    /**
+     * Constructor.
+     * 
+     * @param endpoint the endpoint the datagrams were received on
+     * @param batch the batch containing the datagrams
+     * @param start the index of the first datagram to process
+     * @param end the index after the last datagram to process
+     * @param pendingBatches counter decremented when the task completes, or null
+     */
+    public ProcessBatchTask(PipeEndpoint endpoint, DatagramBatch batch, int start, int end,
+                            AtomicInteger pendingBatches) {
+        this.endpoint = endpoint;
+        this.batch = batch;
+        this.start = start;
+        this.end = end;
+        this.pendingBatches = pendingBatches;
+    }
+
+    @Override
+    public void run() {
+        try {
+            for (int i=start; i<end; i++) {
+                byte[] datagram = batch.get(i);
+                new ProcessPacketTask(endpoint, datagram, datagram.length, null).run();
+            }
+        } finally {
+            if (pendingBatches != null) {
+                pendingBatches.decrementAndGet();
+            }
+        }
+    }
+}
@@ -22,6 +22,8 @@ package org.apache.synapse.transport.pipe;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
@@ -65,4 +67,88 @@ public class EndDelimitedProtocolTest extends TestCase {
             assertEquals(new String(expected, "us-ascii"), new String(actual, "us-ascii"));
         }
     }
+
+    public void testBufferDecoding() throws IOException {
+        byte delimiter = 10;
+        Random random = new Random();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        List<byte[]> messages = new LinkedList<byte[]>();
+        for (int i=0; i<500; i++) {
+            int size = random.nextInt(i % 50 == 0 ? 5000 : 200);
+            byte[] data = new byte[size];
+            for (int j=0; j<size; j++) {
+                data[j] = (byte)(32 + random.nextInt(96));
+            }
+            out.write(data);
+            out.write(delimiter);
+            messages.add(data);
+        }
+        EndDelimitedProtocol protocol = new EndDelimitedProtocol();
+        protocol.setDelimiter(delimiter);
+        BufferProtocolDecoder decoder = (BufferProtocolDecoder)protocol.createProtocolDecoder();
+        byte[] stream = out.toByteArray();
+        ByteBuffer readBuffer = ByteBuffer.allocateDirect(1024);
+        DatagramBatch batch = new DatagramBatch(1);
+        int position = 0;
+        while (position < stream.length) {
+            int length = Math.min(1 + random.nextInt(readBuffer.capacity()), stream.length - position);
+            readBuffer.put(stream, position, length);
+            position += length;
+            readBuffer.flip();
+            decoder.decode(readBuffer, batch);
+            assertFalse(readBuffer.hasRemaining());
+            readBuffer.clear();
+        }
+        assertEquals(messages.size(), batch.size());
+        for (int i=0; i<batch.size(); i++) {
+            byte[] expected = messages.get(i);
+            assertEquals(new String(expected, "us-ascii"),
+                    new String(batch.get(i), "us-ascii"));
+        }
+    }
+
+    public void testDatagramSpanningManyReads() throws IOException {
+        byte delimiter = 10;
+        byte[] record = new byte[1024*1024];
+        for (int i=0; i<record.length; i++) {
+            record[i] = (byte)(32 + i % 96);
+        }
+        EndDelimitedProtocol protocol = new EndDelimitedProtocol();
+        protocol.setDelimiter(delimiter);
+        BufferProtocolDecoder decoder = (BufferProtocolDecoder)protocol.createProtocolDecoder();
+        ByteBuffer readBuffer = ByteBuffer.allocateDirect(1000);
+        DatagramBatch batch = new DatagramBatch();
+        int position = 0;
+        while (position < record.length) {
+            int length = Math.min(readBuffer.capacity(), record.length - position);
+            readBuffer.put(record, position, length);
+            position += length;
+            readBuffer.flip();
+            decoder.decode(readBuffer, batch);
+            assertFalse(readBuffer.hasRemaining());
+            readBuffer.clear();
+            assertTrue("Incomplete datagram must not be returned", batch.isEmpty());
+        }
+        readBuffer.put(new byte[] { delimiter, 'a', delimiter, delimiter, 'b' });
+        readBuffer.flip();
+        decoder.decode(readBuffer, batch);
+
+        assertEquals(3, batch.size());
+        byte[] actual = batch.get(0);
+        assertTrue(Arrays.equals(record, actual));
+        assertEquals("a", new String(batch.get(1), "us-ascii"));
+        assertEquals(0, batch.get(2).length);
+        assertEquals(record.length + 1, batch.getByteCount());
+
+        // the carry-over must not be reused by the datagrams already returned
+        readBuffer.clear();
+        readBuffer.put(new byte[] { 'c', delimiter });
+        readBuffer.flip();
+        DatagramBatch next = new DatagramBatch();
+        decoder.decode(readBuffer, next);
+        assertEquals(1, next.size());
+        assertEquals("bc", new String(next.get(0), "us-ascii"));
+        assertEquals("a", new String(batch.get(1), "us-ascii"));
+        assertTrue(Arrays.equals(record, actual));
+    }
 }
@@ -15,13 +15,11 @@ package org.apache.synapse.transport.amqp;
 
 import org.apache.axis2.AxisFault;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 
 /**
- * Keeps the request/response messages until pick by the processing/response dispatching tasks.
+ * Keeps the request messages until picked by the processing tasks.
  * These buffers(an instance of
  * http://docs.oracle.com/javase/6/docs/api/java/util/concurrent/BlockingQueue.html) are used in
  * order to define an asynchronous architecture between the polling tak and actual processing which
@@ -31,39 +29,24 @@ public class AMQPTransportBuffers {
     /**
      * The request message buffer which holds the request messages
      */
-    private BlockingQueue<AMQPTransportMessage> requestBuffer =
-            new LinkedBlockingQueue<AMQPTransportMessage>();
+    private BlockingQueue<AMQPTransportMessage> requestBuffer;
 
     /**
-     * The response message buffer which holds the responses for processed messages
+     * Create an unbounded request buffer
      */
-    private BlockingQueue<AMQPTransportMessage> responseBuffer =
-            new LinkedBlockingQueue<AMQPTransportMessage>();
-
-    /**
-     * Returns the response messages as a list
-     *
-     * @param blockSize the block blockSize of the response message list
-     * @return the block of the response messages of blockSize
-     * @throws AMQPTransportException in case of an error
-     */
-    public List<AMQPTransportMessage> getResponseMessageList(final int blockSize) throws AMQPTransportException {
-        List<AMQPTransportMessage> msgList = new ArrayList<AMQPTransportMessage>();
-        if (responseBuffer.size() > 0) {
-            AMQPTransportUtils.moveElements(responseBuffer, msgList, blockSize);
-        }
-        return msgList;
+    public AMQPTransportBuffers() {
+        this(Integer.MAX_VALUE);
     }
 
     /**
-     * Add a response message to the response buffer
+     * Create a bounded request buffer. Once the buffer is full, further messages are refused
+     * rather than blocking the thread adding them, which is shared with the dispatching and
+     * processing tasks.
      *
-     * @param msg the response message
-     * @throws InterruptedException throws in case of an error
+     * @param requestBufferSize the maximum number of request messages to hold
      */
-    public void addResponseMessage(AMQPTransportMessage msg) throws InterruptedException {
-        // it's ok to block here until space available,
-        responseBuffer.put(msg);
+    public AMQPTransportBuffers(int requestBufferSize) {
+        requestBuffer = new LinkedBlockingQueue<AMQPTransportMessage>(requestBufferSize);
     }
 
     /**
@@ -76,12 +59,13 @@ public class AMQPTransportBuffers {
     }
 
     /**
-     * Add a message to the request message buffer
+     * Add a message to the request message buffer, if there is space available
      *
      * @param msg the message to add into the buffer
+     * @return true if the message was added, false if the buffer is full
      */
-    public void addRequestMessage(AMQPTransportMessage msg) {
-        requestBuffer.add(msg);
+    public boolean addRequestMessage(AMQPTransportMessage msg) {
+        return requestBuffer.offer(msg);
     }
 
     /**
@@ -98,4 +82,4 @@ public class AMQPTransportBuffers {
         }
         return null;
     }
-}
\ No newline at end of file
+}
@@ -122,6 +122,67 @@ public final class AMQPTransportConstant {
      */
     public static final String PARAMETER_CONSUMER_TX = "transport.amqp.ConsumerTx";
 
+    /**
+     * How the messages are taken from the broker. One of poll(default), where scheduled tasks
+     * pull one message per run into the request buffer, or push, where the broker delivers the
+     * messages straight to the worker pool and they are acknowledged in batches once mediated.
+     */
+    public static final String PARAMETER_CONSUMER_MODE = "transport.amqp.ConsumerMode";
+
+    /**
+     * Maximum number of unacknowledged messages the broker delivers to a push mode consumer.
+     */
+    public static final String PARAMETER_CONSUMER_PREFETCH_COUNT =
+            "transport.amqp.ConsumerPrefetchCount";
+
+    /**
+     * Number of mediated messages a push mode consumer acknowledges with a single
+     * cumulative acknowledgement.
+     */
+    public static final String PARAMETER_CONSUMER_ACK_BATCH_SIZE =
+            "transport.amqp.ConsumerAckBatchSize";
+
+    /**
+     * Maximum number of request messages held in the request buffer. Unbounded by default.
+     * Polled messages arriving while the buffer is full are returned to the broker when
+     * transactions are used, and dropped otherwise.
+     */
+    public static final String PARAMETER_REQUEST_BUFFER_SIZE = "transport.amqp.RequestBufferSize";
+
+    /**
+     * Publish in publisher confirm mode on a pool of channels shared by all the senders of the
+     * connection factory, instead of the channel of the connection factory. The sender waits for
+     * the broker to confirm each message, but many messages are confirmed together.
+     */
+    public static final String PARAMETER_PUBLISHER_CONFIRMS = "transport.amqp.PublisherConfirms";
+
+    /**
+     * Maximum number of messages waiting for a confirm on each publisher channel.
+     */
+    public static final String PARAMETER_PUBLISHER_CONFIRM_WINDOW =
+            "transport.amqp.PublisherConfirmWindow";
+
+    /**
+     * Number of publisher channels opened for a connection factory in publisher confirm mode.
+     */
+    public static final String PARAMETER_PUBLISHER_CHANNEL_POOL_SIZE =
+            "transport.amqp.PublisherChannelPoolSize";
+
+    /**
+     * Number of messages published on a channel between two waits for confirms. With the
+     * default of 1 every sender waits for its own message. With a larger batch only the sender
+     * completing a batch waits, and it fails if any batched message confirmed meanwhile was
+     * rejected. Senders waiting for their own message never see those rejections.
+     */
+    public static final String PARAMETER_PUBLISHER_CONFIRM_BATCH_SIZE =
+            "transport.amqp.PublisherConfirmBatchSize";
+
+    /**
+     * Maximum time in milliseconds to wait for the broker to confirm messages.
+     */
+    public static final String PARAMETER_PUBLISHER_CONFIRM_TIMEOUT =
+            "transport.amqp.PublisherConfirmTimeout";
+
     /**
      * Use transactions at producer side, possible values are lwpc(light weight publisher confirm),
      * tx(transaction). tx should be able to set per message basis
@@ -351,6 +412,22 @@ public final class AMQPTransportConstant {
 
     public static final String AMQP_USE_LWPC = "lwpc";
 
+    public static final String CONSUMER_MODE_POLL = "poll";
+
+    public static final String CONSUMER_MODE_PUSH = "push";
+
+    public static final int CONSUMER_PREFETCH_COUNT_DEFAULT = 256;
+
+    public static final int CONSUMER_ACK_BATCH_SIZE_DEFAULT = 32;
+
+    public static final int PUBLISHER_CONFIRM_WINDOW_DEFAULT = 1024;
+
+    public static final int PUBLISHER_CHANNEL_POOL_SIZE_DEFAULT = 4;
+
+    public static final int PUBLISHER_CONFIRM_BATCH_SIZE_DEFAULT = 1;
+
+    public static final long PUBLISHER_CONFIRM_TIMEOUT_DEFAULT = 30000L;
+
     public static final String DEFAULT_CONTENT_TYPE = "application/xml";
 
     public static final String ROUTING_KEY_DELIMITER = ",";
@@ -29,6 +29,7 @@ import org.apache.axis2.transport.base.AbstractTransportSender;
 import org.apache.axis2.util.MessageContextBuilder;
 import org.apache.synapse.transport.amqp.connectionfactory.AMQPTransportConnectionFactoryManager;
 import org.apache.synapse.transport.amqp.pollingtask.AMQPSimpleConsumerTask;
+import org.apache.synapse.transport.amqp.sendertask.AMQPChannelPool;
 import org.apache.synapse.transport.amqp.sendertask.AMQPSender;
 import org.apache.synapse.transport.amqp.sendertask.AMQPSenderCache;
 import org.apache.synapse.transport.amqp.sendertask.AMQPSenderFactory;
@@ -56,6 +57,11 @@ public class AMQPTransportSender extends AbstractTransportSender {
 
     private AMQPSenderCache cache;
 
+    /**
+     * The publisher confirm mode channels of each connection factory, shared by all the senders
+     */
+    private Map<String, AMQPChannelPool> channelPools;
+
     /**
      * Keep tracks of the responses for two in/out messages
      */
@@ -90,6 +96,7 @@ public class AMQPTransportSender extends AbstractTransportSender {
                 AMQPTransportConstant.PARAM_SEMAPHORE_TIME_OUT, 86400L);
 
         cache = new AMQPSenderCache(new ConcurrentHashMap<Integer, AMQPSender>());
+        channelPools = new ConcurrentHashMap<String, AMQPChannelPool>();
         responseTracker = new ConcurrentHashMap<String, Semaphore>();
         responseMessage = new ConcurrentHashMap<String, AMQPTransportMessage>();
 
@@ -99,6 +106,10 @@ public class AMQPTransportSender extends AbstractTransportSender {
     @Override
     public void stop() {
         super.stop();
+        for (AMQPChannelPool pool : channelPools.values()) {
+            pool.close();
+        }
+        channelPools.clear();
         try {
             connectionFactoryManager.shutDownConnectionFactories();
         } catch (AMQPTransportException e) {
@@ -166,7 +177,8 @@ public class AMQPTransportSender extends AbstractTransportSender {
             amqpSender = cache.get(hashKey);
         } else {
             try {
-                amqpSender = AMQPSenderFactory.createAMQPSender(connectionFactoryManager, params);
+                amqpSender = AMQPSenderFactory.createAMQPSender(
+                        connectionFactoryManager, params, channelPools);
                 cache.add(hashKey, amqpSender);
             } catch (IOException e) {
                 throw new AxisFault("Could not create the AMQP sender", e);
@@ -211,7 +223,10 @@ public class AMQPTransportSender extends AbstractTransportSender {
                 }
             }
 
-            amqpSender.sendAMQPMessage(msgCtx, correlationId, replyTo);
+            // a per message transaction applies to the channel of the sender, so the shared
+            // publisher confirm channels are only used when no transaction was requested
+            amqpSender.sendAMQPMessage(msgCtx, correlationId, replyTo,
+                    tx == null && amqpSender.isConfirmMode());
 
             if (tx != null) {
                 try {
@@ -254,7 +269,8 @@ public class AMQPTransportSender extends AbstractTransportSender {
                 }
             }
         } catch (AMQPTransportException e) {
-            throw new AxisFault("Could not retrieve the connection factory information", e);
+            throw new AxisFault("Could not deliver the message '" +
+                    msgCtx.getMessageID() + "'", e);
         } catch (IOException e) {
             throw new AxisFault("Could not produce the message into the destination", e);
         }
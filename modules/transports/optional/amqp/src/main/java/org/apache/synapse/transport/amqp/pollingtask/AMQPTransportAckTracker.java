@@ -0,0 +1,115 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.synapse.transport.amqp.pollingtask;
+
+import com.rabbitmq.client.Channel;
+
+import java.io.IOException;
+import java.util.TreeSet;
+
+/**
+ * Keeps track of the messages delivered on a channel which are being mediated, and acknowledges
+ * them back to the broker with cumulative(multiple) acknowledgements. Messages are mediated in
+ * parallel and complete out of order, so a cumulative acknowledgement is only sent up to the
+ * delivery tag right below the oldest message still in flight. An acknowledgement is sent once
+ * the given number of messages have been mediated since the last one, or when nothing is left
+ * in flight.
+ */
+public class AMQPTransportAckTracker {
+
+    private final Channel channel;
+
+    private final int batchSize;
+
+    /**
+     * Delivery tags of the messages which are still being mediated
+     */
+    private final TreeSet<Long> inFlight = new TreeSet<Long>();
+
+    /**
+     * Delivery tags of the messages which have been mediated but not yet acknowledged. A
+     * cumulative acknowledgement must end on a message the broker still considers
+     * unacknowledged, so only these tags are used as the upper bound.
+     */
+    private final TreeSet<Long> completed = new TreeSet<Long>();
+
+    public AMQPTransportAckTracker(Channel channel, int batchSize) {
+        this.channel = channel;
+        this.batchSize = batchSize < 1 ? 1 : batchSize;
+    }
+
+    /**
+     * Start tracking a message delivered by the broker
+     *
+     * @param deliveryTag the delivery tag of the message
+     */
+    public synchronized void track(long deliveryTag) {
+        inFlight.add(deliveryTag);
+    }
+
+    /**
+     * Mark a message as successfully mediated. This acknowledges all the messages up to
+     * the oldest message still in flight, if enough messages have been mediated.
+     *
+     * @param deliveryTag the delivery tag of the message
+     * @throws IOException in case of an error while acknowledging
+     */
+    public synchronized void complete(long deliveryTag) throws IOException {
+        inFlight.remove(deliveryTag);
+        completed.add(deliveryTag);
+        if (completed.size() >= batchSize || inFlight.isEmpty()) {
+            flush();
+        }
+    }
+
+    /**
+     * Reject a message which could not be mediated. The message is rejected on its own, and
+     * excluded from the following cumulative acknowledgements.
+     *
+     * @param deliveryTag the delivery tag of the message
+     * @param requeue     true if the broker should deliver the message again
+     * @throws IOException in case of an error while rejecting
+     */
+    public synchronized void reject(long deliveryTag, boolean requeue) throws IOException {
+        channel.basicNack(deliveryTag, false, requeue);
+        inFlight.remove(deliveryTag);
+        if (inFlight.isEmpty() && !completed.isEmpty()) {
+            flush();
+        }
+    }
+
+    /**
+     * @return number of messages delivered and not yet settled
+     */
+    public synchronized int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * Forget about all the messages in flight. This should be called when the channel is
+     * replaced, as delivery tags are only valid within the channel that issued them.
+     */
+    public synchronized void reset() {
+        inFlight.clear();
+        completed.clear();
+    }
+
+    private void flush() throws IOException {
+        Long ackUpTo = inFlight.isEmpty() ? completed.last() : completed.lower(inFlight.first());
+        if (ackUpTo != null) {
+            channel.basicAck(ackUpTo, true);
+            completed.headSet(ackUpTo, true).clear();
+        }
+    }
+}
@@ -14,10 +14,7 @@
 package org.apache.synapse.transport.amqp.pollingtask;
 
 import com.rabbitmq.client.*;
-import org.apache.axiom.om.OMAbstractFactory;
-import org.apache.axiom.om.OMDocument;
 import org.apache.axiom.om.OMElement;
-import org.apache.axiom.soap.*;
 import org.apache.axis2.AxisFault;
 import org.apache.axis2.Constants;
 import org.apache.axis2.builder.Builder;
@@ -34,7 +31,6 @@ import org.apache.synapse.transport.amqp.ha.AMQPTransportHAEntry;
 import org.apache.synapse.transport.amqp.ha.AMQPTransportReconnectHandler;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
@@ -42,6 +38,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * The polling task deploy for each services exposed on AMQP transport. This task
@@ -114,6 +111,25 @@ public class AMQPTransportPollingTask {
      */
     private boolean isUseTx = false;
 
+    /**
+     * Should the broker push messages straight to the worker pool, instead of having scheduled
+     * tasks pull them into the request buffer.
+     * {@link AMQPTransportConstant#PARAMETER_CONSUMER_MODE}
+     */
+    private boolean isPushMode = false;
+
+    /**
+     * Maximum number of unacknowledged messages delivered to the push mode consumers.
+     * {@link AMQPTransportConstant#PARAMETER_CONSUMER_PREFETCH_COUNT}
+     */
+    private int prefetchCount = AMQPTransportConstant.CONSUMER_PREFETCH_COUNT_DEFAULT;
+
+    /**
+     * Number of mediated messages acknowledged at once in push mode.
+     * {@link AMQPTransportConstant#PARAMETER_CONSUMER_ACK_BATCH_SIZE}
+     */
+    private int ackBatchSize = AMQPTransportConstant.CONSUMER_ACK_BATCH_SIZE_DEFAULT;
+
 
     /**
      * The name of the queue this consumer should bind to.{
@@ -204,12 +220,28 @@ public class AMQPTransportPollingTask {
     /**
      * The AMQP channel to use.
      */
-    private Channel channel;
+    private volatile Channel channel;
 
     private String configuredContentType = AMQPTransportConstant.DEFAULT_CONTENT_TYPE;
 
     private List<ScheduledFuture<?>> taskFutureList = new ArrayList<ScheduledFuture<?>>();
 
+    /**
+     * The consumer tags of the push mode consumers, used to cancel them on stop.
+     */
+    private List<String> consumerTagList = new ArrayList<String>();
+
+    /**
+     * Acknowledges the messages delivered in push mode, once they are mediated.
+     */
+    private AMQPTransportAckTracker ackTracker;
+
+    /**
+     * True while the push mode consumers are being recovered. All the consumers of a channel
+     * get its shutdown signal, and only the first one starts the recovery.
+     */
+    private final AtomicBoolean isRecovering = new AtomicBoolean(false);
+
 
     private AMQPTransportReconnectHandler haHandler;
 
@@ -217,6 +249,18 @@ public class AMQPTransportPollingTask {
         isUseTx = useTx;
     }
 
+    public void setPushMode(boolean pushMode) {
+        isPushMode = pushMode;
+    }
+
+    public void setPrefetchCount(int prefetchCount) {
+        this.prefetchCount = prefetchCount;
+    }
+
+    public void setAckBatchSize(int ackBatchSize) {
+        this.ackBatchSize = ackBatchSize;
+    }
+
     public void setChannel(Channel channel) {
         this.channel = channel;
     }
@@ -377,6 +421,18 @@ public class AMQPTransportPollingTask {
         return noOfDispatchingTask;
     }
 
+    public boolean isPushMode() {
+        return isPushMode;
+    }
+
+    public int getPrefetchCount() {
+        return prefetchCount;
+    }
+
+    public int getAckBatchSize() {
+        return ackBatchSize;
+    }
+
     public ExecutorService getPollingTaskScheduler() {
         return pollingTaskScheduler;
     }
@@ -437,6 +493,11 @@ public class AMQPTransportPollingTask {
             handleException(e.getMessage(), e);
         }
 
+        if (isPushMode) {
+            startPushConsumers();
+            return;
+        }
+
         // schedule dispatching tasks to handover messages from the internal buffer to actual
         // processing task
         for (int i = 0; i < noOfDispatchingTask; i++) {
@@ -468,6 +529,31 @@ public class AMQPTransportPollingTask {
         }
     }
 
+    /**
+     * Let the broker push the messages straight into the worker pool. Each message is
+     * acknowledged, along with the ones delivered before it, once it has been mediated. The
+     * prefetch count bounds the number of messages in flight, so the broker stops delivering
+     * when the workers fall behind.
+     */
+    private void startPushConsumers() throws AMQPTransportException {
+        ackTracker = new AMQPTransportAckTracker(channel, ackBatchSize);
+        try {
+            channel.basicQos(prefetchCount);
+            for (int i = 0; i < noOfConcurrentConsumers; i++) {
+                consumerTagList.add(
+                        channel.basicConsume(queueName, false, new PushConsumer(channel)));
+            }
+        } catch (IOException e) {
+            handleException(e.getMessage(), e);
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Push mode consumers started listening on the queue '" + queueName + "' on " +
+                    "behalf of the service '" + serviceName + "' with prefetch count " +
+                    prefetchCount);
+        }
+    }
+
     /**
      * Stop the polling tasks
      */
@@ -475,6 +561,138 @@ public class AMQPTransportPollingTask {
         for (ScheduledFuture<?> pollingTaskFuture : taskFutureList) {
             pollingTaskFuture.cancel(false);
         }
+        taskFutureList.clear();
+
+        for (String consumerTag : consumerTagList) {
+            try {
+                channel.basicCancel(consumerTag);
+            } catch (IOException e) {
+                log.warn("Error while cancelling the consumer '" + consumerTag + "' of service '" +
+                        serviceName + "'", e);
+            } catch (ShutdownSignalException e) {
+                // the channel is gone along with the consumer
+            }
+        }
+        consumerTagList.clear();
+    }
+
+    /**
+     * Receives the messages pushed by the broker and hands them straight to the worker pool
+     */
+    private final class PushConsumer extends DefaultConsumer {
+
+        private final AMQPTransportAckTracker tracker;
+
+        private PushConsumer(Channel channel) {
+            super(channel);
+            this.tracker = ackTracker;
+        }
+
+        @Override
+        public void handleDelivery(String consumerTag,
+                                   Envelope envelope,
+                                   AMQP.BasicProperties properties,
+                                   byte[] body) {
+            tracker.track(envelope.getDeliveryTag());
+            AMQPTransportMessage msg = new AMQPTransportMessage(
+                    new QueueingConsumer.Delivery(envelope, properties, body));
+            pollingTaskScheduler.execute(new MessageProcessingTask(msg, buffers, tracker,
+                    envelope.getDeliveryTag(), envelope.isRedeliver()));
+        }
+
+        @Override
+        public void handleShutdownSignal(String consumerTag, ShutdownSignalException sig) {
+            if (sig.isInitiatedByApplication()) {
+                // closed by the transport itself
+                return;
+            }
+            // ignore the signals of a channel which has already been replaced, and of the other
+            // consumers of the channel being recovered
+            Channel failedChannel = getChannel();
+            if (failedChannel != AMQPTransportPollingTask.this.channel ||
+                    !isRecovering.compareAndSet(false, true)) {
+                return;
+            }
+            log.error("Push mode consumers for service '" + serviceName + "' received a " +
+                    "shutdown signal", sig);
+            // delivery tags of the old channel are meaningless from now on
+            tracker.reset();
+            pollingTaskScheduler.execute(
+                    new PushConsumerRecoveryTask(failedChannel, sig.isHardError()));
+        }
+    }
+
+    /**
+     * Restarts the push consumers on a new channel. When only the channel was closed, the new
+     * channel is opened on the same connection, otherwise the task waits for the HA handler to
+     * re-establish the connection.
+     */
+    private final class PushConsumerRecoveryTask implements Runnable {
+
+        private final Channel failedChannel;
+        private final boolean isConnectionLost;
+
+        private PushConsumerRecoveryTask(Channel failedChannel, boolean isConnectionLost) {
+            this.failedChannel = failedChannel;
+            this.isConnectionLost = isConnectionLost;
+        }
+
+        public void run() {
+            try {
+                Channel newChannel = null;
+                if (!isConnectionLost && failedChannel.getConnection().isOpen()) {
+                    try {
+                        newChannel = failedChannel.getConnection().createChannel();
+                    } catch (IOException e) {
+                        log.warn("Could not open a new channel for the push mode consumers of " +
+                                "service '" + serviceName + "'", e);
+                    }
+                }
+                if (newChannel == null) {
+                    newChannel = awaitReconnection();
+                }
+                if (newChannel != null) {
+                    restart(newChannel);
+                }
+            } finally {
+                isRecovering.set(false);
+            }
+        }
+
+        private Channel awaitReconnection() {
+            Semaphore available = new Semaphore(0, true);
+            String key = UUID.randomUUID().toString();
+            haHandler.getBlockedTasks().add(new AMQPTransportHAEntry(
+                    available, key, connectionFactoryName));
+            try {
+                available.acquire();
+            } catch (InterruptedException ie) {
+                log.error("The blocking semaphore was interrupted", ie);
+                Thread.currentThread().interrupt();
+                return null;
+            }
+
+            AMQPTransportHABrokerEntry brokerEntry = haHandler.getConnectionMap().get(key);
+            if (brokerEntry == null) {
+                log.error("No new connection factory was found for key '" + key + "'");
+                return null;
+            }
+            return brokerEntry.getChannel();
+        }
+
+        private void restart(Channel newChannel) {
+            synchronized (AMQPTransportPollingTask.this) {
+                consumerTagList.clear();
+                setChannel(newChannel);
+                try {
+                    start();
+                    log.info("Push mode consumers for service '" + serviceName +
+                            "' are re-deployed");
+                } catch (AMQPTransportException ex) {
+                    log.error("Start of push mode consumers failed. System must be restarted!");
+                }
+            }
+        }
     }
 
     /**
@@ -502,10 +720,22 @@ public class AMQPTransportPollingTask {
                 }
                 QueueingConsumer.Delivery delivery = queueingConsumer.nextDelivery();
                 if (delivery != null) {
-                    buffers.addRequestMessage(new AMQPTransportMessage(delivery));
-                    if (isUseTx) {
-                        channel.basicAck(delivery.getEnvelope().getDeliveryTag(), false);
+                    long deliveryTag = delivery.getEnvelope().getDeliveryTag();
+                    if (buffers.addRequestMessage(new AMQPTransportMessage(delivery))) {
+                        if (isUseTx) {
+                            channel.basicAck(deliveryTag, false);
+                            channel.txCommit();
+                        }
+                    } else if (isUseTx) {
+                        // hand the message back to the broker rather than waiting for space
+                        channel.basicReject(deliveryTag, true);
                         channel.txCommit();
+                        log.warn("The request buffer of service '" + serviceName + "' is " +
+                                "full. The message was returned to the broker");
+                    } else {
+                        log.warn("The request buffer of service '" + serviceName + "' is " +
+                                "full. The message '" + delivery.getProperties().getMessageId() +
+                                "' was dropped");
                     }
                 } else {
                     if (isUseTx) {
@@ -588,7 +818,11 @@ public class AMQPTransportPollingTask {
 
         private AMQPTransportMessage message;
         private AMQPTransportBuffers buffers;
-        private boolean isSOAP11;
+
+        /* Only set for the messages pushed by the broker, which are acknowledged here */
+        private AMQPTransportAckTracker tracker;
+        private long deliveryTag;
+        private boolean isRedelivered;
 
         private MessageProcessingTask(
                 AMQPTransportMessage message,
@@ -598,19 +832,55 @@ public class AMQPTransportPollingTask {
             this.buffers = buffers;
         }
 
+        private MessageProcessingTask(
+                AMQPTransportMessage message,
+                AMQPTransportBuffers buffers,
+                AMQPTransportAckTracker tracker,
+                long deliveryTag,
+                boolean isRedelivered) {
+
+            this(message, buffers);
+            this.tracker = tracker;
+            this.deliveryTag = deliveryTag;
+            this.isRedelivered = isRedelivered;
+        }
+
         public void run() {
+            boolean isMediated = false;
             try {
                 handleIncomingMessage(message, buffers);
+                isMediated = true;
             } catch (AxisFault axisFault) {
-                // there seems to be a fault while trying to execute the back end service
-                // send a fault to the client
-                try {
-                    handleFaultMessage(message, buffers, axisFault);
-                } catch (Exception e) {
-                    // do not let the task die
-                    log.error("Error while sending the fault message to the client. Client will " +
-                            "not receive any errors!", e);
+                // there seems to be a fault while trying to execute the back end service. The
+                // fault is not sent anywhere, so the message is settled as mediated
+                log.error("Error while processing the message '" + message.getMessageId() +
+                        "' for service '" + serviceName + "'. Client will not receive any " +
+                        "errors!", axisFault);
+                isMediated = true;
+            } catch (RuntimeException e) {
+                log.error("Error while processing the message '" + message.getMessageId() +
+                        "' for service '" + serviceName + "'", e);
+            } finally {
+                if (tracker != null) {
+                    settle(isMediated);
+                }
+            }
+        }
+
+        private void settle(boolean isMediated) {
+            try {
+                if (isMediated) {
+                    tracker.complete(deliveryTag);
+                } else {
+                    // give the message one more chance before dropping it
+                    tracker.reject(deliveryTag, !isRedelivered);
                 }
+            } catch (IOException e) {
+                log.error("Error while acknowledging the message '" + message.getMessageId() +
+                        "' for service '" + serviceName + "'", e);
+            } catch (ShutdownSignalException e) {
+                log.error("Could not acknowledge the message '" + message.getMessageId() +
+                        "', the channel of service '" + serviceName + "' is closed", e);
             }
         }
 
@@ -667,7 +937,6 @@ public class AMQPTransportPollingTask {
                     OMElement documentElement = builder.processDocument(
                             gzipInputStream, contentType, msgContext);
                     msgContext.setEnvelope(TransportUtils.createSOAPEnvelope(documentElement));
-                    isSOAP11 = msgContext.isSOAP11();
 
                     AxisEngine.receive(msgContext);
 
@@ -678,41 +947,6 @@ public class AMQPTransportPollingTask {
                 }
             }
         }
-
-        private void handleFaultMessage(AMQPTransportMessage originalMsg,
-                                        AMQPTransportBuffers buffers,
-                                        AxisFault axisFault) throws Exception {
-
-            SOAPFactory factory = (isSOAP11 ?
-                    OMAbstractFactory.getSOAP11Factory() : OMAbstractFactory.getSOAP12Factory());
-            OMDocument soapFaultDocument = factory.createOMDocument();
-            SOAPEnvelope faultEnvelope = factory.getDefaultFaultEnvelope();
-            soapFaultDocument.addChild(faultEnvelope);
-
-            // create the fault element  if it is needed
-            SOAPFault fault = faultEnvelope.getBody().getFault();
-            if (fault == null) {
-                fault = factory.createSOAPFault();
-            }
-            SOAPFaultCode code = factory.createSOAPFaultCode();
-            code.setText(axisFault.getMessage());
-            fault.setCode(code);
-
-            SOAPFaultReason reason = factory.createSOAPFaultReason();
-            reason.setText(axisFault.getMessage());
-            fault.setReason(reason);
-
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            faultEnvelope.serialize(out);
-            AMQPTransportMessage msg = new AMQPTransportMessage(
-                    new AMQP.BasicProperties(), out.toByteArray());
-            try {
-                buffers.addResponseMessage(msg);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
-        }
-
     }
 
     private void handleException(String msg, Throwable t) throws AMQPTransportException {
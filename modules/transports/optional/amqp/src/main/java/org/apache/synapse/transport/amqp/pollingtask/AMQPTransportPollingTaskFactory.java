@@ -52,8 +52,15 @@ public class AMQPTransportPollingTaskFactory {
         pt.setPollingTaskScheduler(pool);
         pt.setHaHandler(haHandler);
 
-        // set buffers to hold request/response messages for this task
-        pt.setBuffers(new AMQPTransportBuffers());
+        // set the buffer to hold request messages for this task
+        try {
+            Integer requestBufferSize = AMQPTransportUtils.getOptionalIntParameter(
+                    AMQPTransportConstant.PARAMETER_REQUEST_BUFFER_SIZE, svcParam, conFacParam);
+            pt.setBuffers(new AMQPTransportBuffers(
+                    requestBufferSize != null ? requestBufferSize : Integer.MAX_VALUE));
+        } catch (AMQPTransportException e) {
+            throw new AxisFault("Could not assign the request buffer size", e);
+        }
 
         String exchangeName = AMQPTransportUtils.getOptionalStringParameter(
                 AMQPTransportConstant.PARAMETER_EXCHANGE_NAME, svcParam, conFacParam);
@@ -186,6 +193,40 @@ public class AMQPTransportPollingTaskFactory {
             pt.setUseTx(isUseTx);
         }
 
+        String consumerMode = AMQPTransportUtils.getOptionalStringParameter(
+                AMQPTransportConstant.PARAMETER_CONSUMER_MODE, svcParam, conFacParam);
+        if (consumerMode != null) {
+            if (AMQPTransportConstant.CONSUMER_MODE_PUSH.equals(consumerMode)) {
+                pt.setPushMode(true);
+            } else if (!AMQPTransportConstant.CONSUMER_MODE_POLL.equals(consumerMode)) {
+                throw new AxisFault("Invalid consumer mode '" + consumerMode + "'. Must be one " +
+                        "of '" + AMQPTransportConstant.CONSUMER_MODE_POLL + "' or '" +
+                        AMQPTransportConstant.CONSUMER_MODE_PUSH + "'");
+            }
+        }
+
+        try {
+            Integer prefetchCount = AMQPTransportUtils.getOptionalIntParameter(
+                    AMQPTransportConstant.PARAMETER_CONSUMER_PREFETCH_COUNT,
+                    svcParam, conFacParam);
+            if (prefetchCount != null) {
+                pt.setPrefetchCount(prefetchCount);
+            }
+        } catch (AMQPTransportException e) {
+            throw new AxisFault("Could not assign the consumer prefetch count", e);
+        }
+
+        try {
+            Integer ackBatchSize = AMQPTransportUtils.getOptionalIntParameter(
+                    AMQPTransportConstant.PARAMETER_CONSUMER_ACK_BATCH_SIZE,
+                    svcParam, conFacParam);
+            if (ackBatchSize != null) {
+                pt.setAckBatchSize(ackBatchSize);
+            }
+        } catch (AMQPTransportException e) {
+            throw new AxisFault("Could not assign the consumer acknowledgement batch size", e);
+        }
+
         try {
             Integer initialDelay = AMQPTransportUtils.getOptionalIntParameter(
                     AMQPTransportConstant.PARAMETER_SCHEDULED_TASK_INITIAL_DELAY,
@@ -232,7 +273,10 @@ public class AMQPTransportPollingTaskFactory {
                     "Is queue auto deleted: '" + pt.isQueueAutoDelete() + "'\n" +
                     "Is blocking mode: '" + pt.isBlockingMode() + "'\n" +
                     "Number of concurrent consumers: '" + pt.getNoOfConcurrentConsumers() + "'\n" +
-                    "Number of dispatching task: '" + pt.getNoOfDispatchingTask() + "'");
+                    "Number of dispatching task: '" + pt.getNoOfDispatchingTask() + "'\n" +
+                    "Is push mode: '" + pt.isPushMode() + "'\n" +
+                    "Prefetch count: '" + pt.getPrefetchCount() + "'\n" +
+                    "Acknowledgement batch size: '" + pt.getAckBatchSize() + "'");
         }
 
         return pt;
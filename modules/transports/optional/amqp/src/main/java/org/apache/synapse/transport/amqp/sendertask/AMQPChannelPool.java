@@ -0,0 +1,137 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.synapse.transport.amqp.sendertask;
+
+import com.rabbitmq.client.Connection;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.synapse.transport.amqp.AMQPTransportException;
+import org.apache.synapse.transport.amqp.connectionfactory.AMQPTransportConnectionFactoryManager;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fixed set of confirm mode channels opened on the connection of a connection factory. All
+ * the senders using the same connection factory share the pool, and spread their messages over
+ * the channels in round robin order. A channel closed by the broker is replaced the next time
+ * it is handed out. When the connection factory has been given a new connection, for example
+ * after the broker came back, the channels of the old connection are dropped and the whole
+ * pool is opened again on the new one.
+ */
+public class AMQPChannelPool {
+
+    private static Log log = LogFactory.getLog(AMQPChannelPool.class);
+
+    private final AMQPTransportConnectionFactoryManager connectionFactoryManager;
+
+    private final String connectionFactoryName;
+
+    private final int windowSize;
+
+    private final AMQPConfirmChannel[] channels;
+
+    /**
+     * The connection the channels were opened on
+     */
+    private volatile Connection connection;
+
+    private final AtomicInteger next = new AtomicInteger(0);
+
+    public AMQPChannelPool(AMQPTransportConnectionFactoryManager connectionFactoryManager,
+                           String connectionFactoryName, int poolSize, int windowSize)
+            throws IOException {
+        this.connectionFactoryManager = connectionFactoryManager;
+        this.connectionFactoryName = connectionFactoryName;
+        this.windowSize = windowSize;
+        this.channels = new AMQPConfirmChannel[poolSize < 1 ? 1 : poolSize];
+        synchronized (this) {
+            open(currentConnection());
+        }
+    }
+
+    /**
+     * @return the next channel to publish on
+     * @throws IOException if a closed channel could not be replaced
+     */
+    public AMQPConfirmChannel getChannel() throws IOException {
+        Connection current = currentConnection();
+        if (current != connection) {
+            reopen(current);
+        }
+        int index = (next.getAndIncrement() & Integer.MAX_VALUE) % channels.length;
+        AMQPConfirmChannel channel;
+        synchronized (this) {
+            channel = channels[index];
+        }
+        if (!channel.isOpen()) {
+            channel = replace(index, channel);
+        }
+        return channel;
+    }
+
+    public int getPoolSize() {
+        return channels.length;
+    }
+
+    public synchronized void close() {
+        for (AMQPConfirmChannel channel : channels) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Error while closing a publisher channel, continue anyway...", e);
+            }
+        }
+    }
+
+    private Connection currentConnection() throws IOException {
+        try {
+            return connectionFactoryManager.getConnectionFactory(connectionFactoryName)
+                    .getConnection();
+        } catch (AMQPTransportException e) {
+            throw new IOException("The connection factory '" + connectionFactoryName +
+                    "' is not available", e);
+        }
+    }
+
+    private synchronized void reopen(Connection current) throws IOException {
+        if (current == connection) {
+            return;
+        }
+        log.info("Opening the publisher channels of the connection factory '" +
+                connectionFactoryName + "' on its new connection");
+        // the old connection is gone along with its channels, anything still waiting for a
+        // confirm on them is failed by their shutdown
+        close();
+        open(current);
+    }
+
+    private void open(Connection current) throws IOException {
+        for (int i = 0; i < channels.length; i++) {
+            channels[i] = new AMQPConfirmChannel(current.createChannel(), windowSize);
+        }
+        connection = current;
+    }
+
+    private synchronized AMQPConfirmChannel replace(int index, AMQPConfirmChannel closed)
+            throws IOException {
+        if (channels[index] == closed) {
+            if (log.isDebugEnabled()) {
+                log.debug("Replacing the closed publisher channel " + index);
+            }
+            channels[index] = new AMQPConfirmChannel(connection.createChannel(), windowSize);
+        }
+        return channels[index];
+    }
+}
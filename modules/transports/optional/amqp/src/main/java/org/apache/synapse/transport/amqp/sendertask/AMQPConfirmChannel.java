@@ -0,0 +1,313 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.synapse.transport.amqp.sendertask;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
+import com.rabbitmq.client.ShutdownListener;
+import com.rabbitmq.client.ShutdownSignalException;
+
+import java.io.IOException;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A channel in publisher confirm mode which can be shared by many sending threads. Messages
+ * are published without waiting for the broker, and the sequence numbers of the messages not
+ * yet confirmed are kept until the broker acknowledges them, usually with a single cumulative
+ * confirm for many messages. A sender then either waits for the confirm of its own message, in
+ * which case a rejection is always reported to the sender of the rejected message, or counts
+ * its message towards a batch. Only the sender completing a batch waits, for all the messages
+ * published on the channel so far, and it is told about the rejection of any batched message.
+ * <p/>
+ * The number of unconfirmed messages is bounded by the confirm window, publishing blocks once
+ * the window is full until the broker catches up.
+ */
+public class AMQPConfirmChannel implements ConfirmListener, ShutdownListener {
+
+    private final Channel channel;
+
+    private final Semaphore window;
+
+    private final Object publishLock = new Object();
+
+    /**
+     * Sequence numbers of the messages published and not yet confirmed
+     */
+    private final TreeSet<Long> unconfirmed = new TreeSet<Long>();
+
+    /**
+     * Sequence numbers of the messages the broker could not accept, until their senders
+     * collect them
+     */
+    private final TreeSet<Long> nacked = new TreeSet<Long>();
+
+    /**
+     * Sequence numbers of the unconfirmed messages whose senders gave up waiting, so that
+     * nobody would collect their rejection
+     */
+    private final TreeSet<Long> abandoned = new TreeSet<Long>();
+
+    /**
+     * Sequence numbers of the unconfirmed messages counted towards a batch, whose rejection is
+     * reported to the sender flushing the batch
+     */
+    private final TreeSet<Long> batched = new TreeSet<Long>();
+
+    /**
+     * Sequence numbers of the batched messages the broker could not accept, until a flush
+     * collects them
+     */
+    private final TreeSet<Long> batchNacked = new TreeSet<Long>();
+
+    private int unflushed = 0;
+
+    private volatile boolean closed = false;
+
+    public AMQPConfirmChannel(Channel channel, int windowSize) throws IOException {
+        this.channel = channel;
+        this.window = new Semaphore(windowSize < 1 ? 1 : windowSize);
+        channel.confirmSelect();
+        channel.addConfirmListener(this);
+        channel.addShutdownListener(this);
+    }
+
+    /**
+     * Publish a message without waiting for the broker to confirm it.
+     *
+     * @param exchange   the exchange to publish to
+     * @param routingKey the routing key
+     * @param props      the message properties
+     * @param body       the message body
+     * @param timeout    maximum time in milliseconds to wait for a free slot in the window
+     * @return the sequence number of the published message
+     * @throws IOException          if the message could not be published
+     * @throws InterruptedException if interrupted while waiting for the window
+     */
+    public long publish(String exchange, String routingKey, AMQP.BasicProperties props,
+                        byte[] body, long timeout) throws IOException, InterruptedException {
+        if (!window.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+            throw new IOException("Timed out waiting for the broker to confirm earlier messages");
+        }
+        synchronized (publishLock) {
+            if (closed) {
+                window.release();
+                throw new IOException("The channel has been closed");
+            }
+            long seqNo = channel.getNextPublishSeqNo();
+            synchronized (this) {
+                unconfirmed.add(seqNo);
+            }
+            try {
+                channel.basicPublish(exchange, routingKey, props, body);
+            } catch (IOException e) {
+                // the message never reached the broker, so there is nothing to confirm
+                discard(seqNo);
+                throw e;
+            }
+            return seqNo;
+        }
+    }
+
+    /**
+     * Wait until the broker has confirmed the given message.
+     *
+     * @param seqNo   sequence number returned by publish
+     * @param timeout maximum time in milliseconds to wait
+     * @return true if the broker accepted the message, false if it was rejected or the channel
+     *         closed before the confirm arrived
+     * @throws IOException          if the confirm did not arrive in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized boolean awaitConfirm(long seqNo, long timeout)
+            throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        try {
+            while (unconfirmed.contains(seqNo)) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new IOException("Timed out waiting for the confirm of message " +
+                            seqNo);
+                }
+                wait(remaining);
+            }
+        } finally {
+            if (unconfirmed.contains(seqNo)) {
+                abandoned.add(seqNo);
+            }
+        }
+        return !nacked.remove(seqNo);
+    }
+
+    /**
+     * Count the given message towards the current batch instead of waiting for its confirm,
+     * and wait for the confirms of all the messages published so far once the batch is full.
+     *
+     * @param seqNo     sequence number returned by publish
+     * @param batchSize number of messages to publish between two flushes
+     * @param timeout   maximum time in milliseconds to wait
+     * @return false if any batched message confirmed by the flush was rejected
+     * @throws IOException          if the confirms did not arrive in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean flushIfRequired(long seqNo, int batchSize, long timeout)
+            throws IOException, InterruptedException {
+        synchronized (this) {
+            if (unconfirmed.contains(seqNo)) {
+                batched.add(seqNo);
+            } else if (nacked.remove(seqNo)) {
+                // rejected before it was counted towards the batch
+                batchNacked.add(seqNo);
+            }
+            if (++unflushed < batchSize) {
+                return true;
+            }
+            unflushed = 0;
+        }
+        return flush(timeout);
+    }
+
+    /**
+     * Wait until the broker has confirmed all the messages published so far.
+     *
+     * @param timeout maximum time in milliseconds to wait
+     * @return false if any of the batched messages among them was rejected
+     * @throws IOException          if the confirms did not arrive in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean flush(long timeout) throws IOException, InterruptedException {
+        long last;
+        synchronized (publishLock) {
+            last = channel.getNextPublishSeqNo() - 1;
+        }
+        synchronized (this) {
+            long deadline = System.currentTimeMillis() + timeout;
+            while (!unconfirmed.isEmpty() && unconfirmed.first() <= last) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new IOException("Timed out waiting for the confirms up to message " +
+                            last);
+                }
+                wait(remaining);
+            }
+            SortedSet<Long> rejected = batchNacked.headSet(last, true);
+            if (rejected.isEmpty()) {
+                return true;
+            }
+            rejected.clear();
+            return false;
+        }
+    }
+
+    public boolean isOpen() {
+        return !closed && channel.isOpen();
+    }
+
+    public Channel getChannel() {
+        return channel;
+    }
+
+    /**
+     * @return number of messages published and not yet confirmed
+     */
+    public synchronized int getUnconfirmedCount() {
+        return unconfirmed.size();
+    }
+
+    /**
+     * @return number of rejected messages whose senders have not yet collected the rejection
+     */
+    public synchronized int getRejectedCount() {
+        return nacked.size() + batchNacked.size();
+    }
+
+    public void close() throws IOException {
+        if (channel.isOpen()) {
+            channel.close();
+        }
+    }
+
+    public void handleAck(long deliveryTag, boolean multiple) {
+        settle(deliveryTag, multiple, true);
+    }
+
+    public void handleNack(long deliveryTag, boolean multiple) {
+        settle(deliveryTag, multiple, false);
+    }
+
+    public void shutdownCompleted(ShutdownSignalException cause) {
+        synchronized (publishLock) {
+            closed = true;
+        }
+        // nothing more will be confirmed on this channel
+        synchronized (this) {
+            int count = unconfirmed.size();
+            unconfirmed.removeAll(abandoned);
+            unconfirmed.removeAll(batched);
+            batchNacked.addAll(batched);
+            nacked.addAll(unconfirmed);
+            window.release(count);
+            unconfirmed.clear();
+            abandoned.clear();
+            batched.clear();
+            notifyAll();
+        }
+    }
+
+    private synchronized void discard(long seqNo) {
+        if (unconfirmed.remove(seqNo)) {
+            window.release();
+            notifyAll();
+        }
+    }
+
+    private synchronized void settle(long deliveryTag, boolean multiple, boolean ack) {
+        int count;
+        if (multiple) {
+            SortedSet<Long> settled = unconfirmed.headSet(deliveryTag, true);
+            count = settled.size();
+            SortedSet<Long> settledAbandoned = abandoned.headSet(deliveryTag, true);
+            SortedSet<Long> settledBatched = batched.headSet(deliveryTag, true);
+            if (!ack) {
+                settled.removeAll(settledAbandoned);
+                settled.removeAll(settledBatched);
+                batchNacked.addAll(settledBatched);
+                nacked.addAll(settled);
+            }
+            settled.clear();
+            settledAbandoned.clear();
+            settledBatched.clear();
+        } else if (unconfirmed.remove(deliveryTag)) {
+            count = 1;
+            boolean isAbandoned = abandoned.remove(deliveryTag);
+            boolean isBatched = batched.remove(deliveryTag);
+            if (!ack) {
+                if (isBatched) {
+                    batchNacked.add(deliveryTag);
+                } else if (!isAbandoned) {
+                    nacked.add(deliveryTag);
+                }
+            }
+        } else {
+            count = 0;
+        }
+        if (count > 0) {
+            window.release(count);
+            notifyAll();
+        }
+    }
+}
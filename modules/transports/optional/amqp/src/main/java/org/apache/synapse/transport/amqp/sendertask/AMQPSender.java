@@ -59,6 +59,12 @@ public class AMQPSender {
 
     private String routingKey = null;
 
+    private AMQPChannelPool channelPool = null;
+
+    private int confirmBatchSize = AMQPTransportConstant.PUBLISHER_CONFIRM_BATCH_SIZE_DEFAULT;
+
+    private long confirmTimeout = AMQPTransportConstant.PUBLISHER_CONFIRM_TIMEOUT_DEFAULT;
+
     public void setChannel(Channel channel) {
         this.channel = channel;
     }
@@ -75,12 +81,48 @@ public class AMQPSender {
         this.queueName = queueName;
     }
 
+    public void setChannelPool(AMQPChannelPool channelPool) {
+        this.channelPool = channelPool;
+    }
+
+    public void setConfirmBatchSize(int confirmBatchSize) {
+        this.confirmBatchSize = confirmBatchSize;
+    }
+
+    public void setConfirmTimeout(long confirmTimeout) {
+        this.confirmTimeout = confirmTimeout;
+    }
+
     public Channel getChannel() {
         return channel;
     }
 
+    /**
+     * @return true if the messages are published in publisher confirm mode on the shared
+     *         channel pool
+     */
+    public boolean isConfirmMode() {
+        return channelPool != null;
+    }
+
     public void sendAMQPMessage(MessageContext mc, String correlationId, String replyTo)
             throws AMQPTransportException, IOException {
+        sendAMQPMessage(mc, correlationId, replyTo, isConfirmMode());
+    }
+
+    /**
+     * Send the message
+     *
+     * @param mc            the message context
+     * @param correlationId the correlation id of the message
+     * @param replyTo       the reply to address of the message
+     * @param confirm       true to publish on the channel pool and wait for the broker to confirm
+     *                      the message, false to publish on the channel of this sender
+     * @throws AMQPTransportException if the broker rejected the message
+     * @throws IOException            if the message could not be published
+     */
+    public void sendAMQPMessage(MessageContext mc, String correlationId, String replyTo,
+                                boolean confirm) throws AMQPTransportException, IOException {
 
         OMOutputFormat format = BaseUtils.getOMOutputFormat(mc);
         MessageFormatter formatter;
@@ -178,14 +220,45 @@ public class AMQPSender {
         formatter.writeTo(mc, format, out, false);
         byte[] msg = out.toByteArray();
 
+        String exchange;
+        String key;
         if (exchangeName != null) {
-            if (routingKey != null) {
-                channel.basicPublish(exchangeName, routingKey, builder.build(), msg);
+            exchange = exchangeName;
+            key = routingKey != null ? routingKey : "";
+        } else {
+            exchange = "";
+            key = queueName;
+        }
+
+        if (confirm && channelPool != null) {
+            publishWithConfirm(mc, exchange, key, builder.build(), msg);
+        } else {
+            channel.basicPublish(exchange, key, builder.build(), msg);
+        }
+    }
+
+    private void publishWithConfirm(MessageContext mc, String exchange, String key,
+                                    AMQP.BasicProperties props, byte[] msg)
+            throws AMQPTransportException, IOException {
+        AMQPConfirmChannel confirmChannel = channelPool.getChannel();
+        boolean accepted;
+        try {
+            long seqNo = confirmChannel.publish(exchange, key, props, msg, confirmTimeout);
+            if (confirmBatchSize > 1) {
+                accepted = confirmChannel.flushIfRequired(seqNo, confirmBatchSize,
+                        confirmTimeout);
             } else {
-                channel.basicPublish(exchangeName, "", builder.build(), msg);
+                accepted = confirmChannel.awaitConfirm(seqNo, confirmTimeout);
             }
-        } else {
-            channel.basicPublish("", queueName, builder.build(), msg);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AMQPTransportException("Interrupted while waiting for the broker to " +
+                    "confirm the message '" + mc.getMessageID() + "'", e);
+        }
+        if (!accepted) {
+            throw new AMQPTransportException("The broker did not accept the message '" +
+                    mc.getMessageID() + "'" + (confirmBatchSize > 1 ?
+                    " or a message published in the same batch" : ""));
         }
     }
 
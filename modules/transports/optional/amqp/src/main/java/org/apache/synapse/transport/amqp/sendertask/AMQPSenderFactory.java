@@ -37,6 +37,7 @@ import org.apache.synapse.transport.amqp.connectionfactory.AMQPTransportConnecti
 import org.apache.synapse.transport.amqp.connectionfactory.AMQPTransportConnectionFactoryManager;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Map;
 
 public class AMQPSenderFactory {
@@ -46,6 +47,25 @@ public class AMQPSenderFactory {
     public synchronized static AMQPSender createAMQPSender(
             AMQPTransportConnectionFactoryManager connectionFactoryManager,
             Map<String, String> params) throws IOException {
+        return createAMQPSender(connectionFactoryManager, params, null);
+    }
+
+    /**
+     * Create a sender for the given destination.
+     *
+     * @param connectionFactoryManager the connection factories of the transport sender
+     * @param params                   the parameters of the destination
+     * @param channelPools             the publisher channel pools of the transport sender, keyed
+     *                                 by connection factory name. A pool is created here for a
+     *                                 connection factory in publisher confirm mode on first use.
+     *                                 Publisher confirm mode is not available if this is null.
+     * @return the sender
+     * @throws IOException in case of an error while creating the sender
+     */
+    public synchronized static AMQPSender createAMQPSender(
+            AMQPTransportConnectionFactoryManager connectionFactoryManager,
+            Map<String, String> params,
+            Map<String, AMQPChannelPool> channelPools) throws IOException {
 
         boolean isQueueDurable = false;
 
@@ -108,6 +128,17 @@ public class AMQPSenderFactory {
             isInternalExchange = value.booleanValue();
         }
 
+        value = AMQPTransportUtils.getOptionalBooleanParameter(
+                AMQPTransportConstant.PARAMETER_PUBLISHER_CONFIRMS, params, conFacParam);
+        if (value != null && value.booleanValue() && channelPools != null) {
+            try {
+                setupConfirmMode(as, connectionFactoryManager, connFac, params, conFacParam,
+                        channelPools);
+            } catch (AMQPTransportException e) {
+                throw new AxisFault("Invalid publisher confirm configuration", e);
+            }
+        }
+
         String queueName = params.get(AMQPTransportConstant.PARAMETER_QUEUE_NAME);
         as.setQueueName(queueName);
 
@@ -151,4 +182,47 @@ public class AMQPSenderFactory {
 
         return as;
     }
+
+    private static void setupConfirmMode(AMQPSender as,
+                                         AMQPTransportConnectionFactoryManager
+                                                 connectionFactoryManager,
+                                         AMQPTransportConnectionFactory connFac,
+                                         Map<String, String> params,
+                                         Map<String, String> conFacParam,
+                                         Map<String, AMQPChannelPool> channelPools)
+            throws AMQPTransportException, IOException {
+
+        AMQPChannelPool pool = channelPools.get(connFac.getName());
+        if (pool == null) {
+            // the pool belongs to the connection factory, so only its parameters apply
+            Map<String, String> none = Collections.emptyMap();
+            Integer poolSize = AMQPTransportUtils.getOptionalIntParameter(
+                    AMQPTransportConstant.PARAMETER_PUBLISHER_CHANNEL_POOL_SIZE,
+                    conFacParam, none);
+            Integer windowSize = AMQPTransportUtils.getOptionalIntParameter(
+                    AMQPTransportConstant.PARAMETER_PUBLISHER_CONFIRM_WINDOW,
+                    conFacParam, none);
+            pool = new AMQPChannelPool(connectionFactoryManager, connFac.getName(),
+                    poolSize != null ? poolSize :
+                            AMQPTransportConstant.PUBLISHER_CHANNEL_POOL_SIZE_DEFAULT,
+                    windowSize != null ? windowSize :
+                            AMQPTransportConstant.PUBLISHER_CONFIRM_WINDOW_DEFAULT);
+            channelPools.put(connFac.getName(), pool);
+            log.info("Publisher confirm mode enabled with " + pool.getPoolSize() +
+                    " channel(s) for the connection factory '" + connFac.getName() + "'");
+        }
+        as.setChannelPool(pool);
+
+        Integer batchSize = AMQPTransportUtils.getOptionalIntParameter(
+                AMQPTransportConstant.PARAMETER_PUBLISHER_CONFIRM_BATCH_SIZE, params, conFacParam);
+        if (batchSize != null) {
+            as.setConfirmBatchSize(batchSize);
+        }
+
+        Integer timeout = AMQPTransportUtils.getOptionalIntParameter(
+                AMQPTransportConstant.PARAMETER_PUBLISHER_CONFIRM_TIMEOUT, params, conFacParam);
+        if (timeout != null) {
+            as.setConfirmTimeout(timeout);
+        }
+    }
 }
@@ -0,0 +1,346 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.synapse.tranport.amqp;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
+import com.rabbitmq.client.ShutdownListener;
+import com.rabbitmq.client.ShutdownSignalException;
+import junit.framework.TestCase;
+import org.apache.synapse.transport.amqp.sendertask.AMQPConfirmChannel;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AMQPConfirmChannelTest extends TestCase {
+
+    private static final long TIMEOUT = 10000;
+
+    /**
+     * Stands in for the broker side of a channel in confirm mode. Published messages are
+     * numbered the way a broker does, and confirmed either by the test or by a background
+     * thread which confirms everything received, with one cumulative confirm per round trip.
+     */
+    private static class StandInBroker implements InvocationHandler, Runnable {
+        private final long roundTripMicros;
+        private final long rejectEvery;
+        private ConfirmListener confirmListener;
+        private ShutdownListener shutdownListener;
+        private long nextSeqNo = 1;
+        private long lastConfirmed = 0;
+        private int confirmFrames = 0;
+        private boolean failPublish = false;
+        private volatile boolean running = true;
+
+        StandInBroker(long roundTripMicros) {
+            this(roundTripMicros, 0);
+        }
+
+        StandInBroker(long roundTripMicros, long rejectEvery) {
+            this.roundTripMicros = roundTripMicros;
+            this.rejectEvery = rejectEvery;
+        }
+
+        public synchronized Object invoke(Object proxy, Method method, Object[] args)
+                throws IOException {
+            String name = method.getName();
+            if ("addConfirmListener".equals(name)) {
+                confirmListener = (ConfirmListener) args[0];
+            } else if ("addShutdownListener".equals(name)) {
+                shutdownListener = (ShutdownListener) args[0];
+            } else if ("getNextPublishSeqNo".equals(name)) {
+                return nextSeqNo;
+            } else if ("basicPublish".equals(name)) {
+                if (failPublish) {
+                    throw new IOException("Connection reset");
+                }
+                nextSeqNo++;
+            } else if ("isOpen".equals(name)) {
+                return Boolean.TRUE;
+            }
+            return null;
+        }
+
+        public void run() {
+            while (running) {
+                long upTo;
+                synchronized (this) {
+                    upTo = nextSeqNo - 1;
+                }
+                if (upTo > lastConfirmed) {
+                    try {
+                        for (long seqNo = lastConfirmed + 1;
+                             rejectEvery > 0 && seqNo <= upTo; seqNo++) {
+                            if (seqNo % rejectEvery == 0) {
+                                confirmListener.handleNack(seqNo, false);
+                            }
+                        }
+                        confirmListener.handleAck(upTo, true);
+                    } catch (IOException e) {
+                        fail(e.getMessage());
+                    }
+                    lastConfirmed = upTo;
+                    confirmFrames++;
+                }
+                try {
+                    TimeUnit.MICROSECONDS.sleep(roundTripMicros);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static final AMQP.BasicProperties PROPS = new AMQP.BasicProperties();
+
+    private static final byte[] BODY = "<test/>".getBytes();
+
+    private Channel newChannel(StandInBroker broker) {
+        return (Channel) Proxy.newProxyInstance(AMQPConfirmChannelTest.class.getClassLoader(),
+                new Class[]{Channel.class}, broker);
+    }
+
+    public void testConfirmsAndRejections() throws Exception {
+        StandInBroker broker = new StandInBroker(0);
+        AMQPConfirmChannel channel = new AMQPConfirmChannel(newChannel(broker), 16);
+
+        long first = channel.publish("", "q", PROPS, BODY, TIMEOUT);
+        long second = channel.publish("", "q", PROPS, BODY, TIMEOUT);
+        long third = channel.publish("", "q", PROPS, BODY, TIMEOUT);
+        assertEquals(3, channel.getUnconfirmedCount());
+
+        channel.handleNack(second, false);
+        channel.handleAck(third, true);
+
+        assertTrue(channel.awaitConfirm(first, TIMEOUT));
+        assertFalse(channel.awaitConfirm(second, TIMEOUT));
+        assertTrue(channel.awaitConfirm(third, TIMEOUT));
+        assertEquals(0, channel.getUnconfirmedCount());
+    }
+
+    public void testBatchFlush() throws Exception {
+        StandInBroker broker = new StandInBroker(0);
+        AMQPConfirmChannel channel = new AMQPConfirmChannel(newChannel(broker), 16);
+
+        for (int i = 0; i < 2; i++) {
+            long seqNo = channel.publish("", "q", PROPS, BODY, TIMEOUT);
+            assertTrue(channel.flushIfRequired(seqNo, 3, TIMEOUT));
+        }
+        long own = channel.publish("", "q", PROPS, BODY, TIMEOUT);
+        long last = channel.publish("", "q", PROPS, BODY, TIMEOUT);
+        channel.handleNack(2, false);
+        channel.handleNack(own, false);
+        channel.handleAck(last, true);
+
+        // the batch is complete, and carries the rejection of the second message, but not the
+        // rejection of the message whose sender waits for it
+        assertFalse(channel.flushIfRequired(last, 3, TIMEOUT));
+        assertFalse(channel.awaitConfirm(own, TIMEOUT));
+        assertTrue(channel.flush(TIMEOUT));
+        assertEquals(0, channel.getRejectedCount());
+    }
+
+    public void testFailedPublishIsNotRejected() throws Exception {
+        StandInBroker broker = new StandInBroker(0);
+        AMQPConfirmChannel channel = new AMQPConfirmChannel(newChannel(broker), 1);
+
+        broker.failPublish = true;
+        try {
+            channel.publish("", "q", PROPS, BODY, TIMEOUT);
+            fail("The publish should fail");
+        } catch (IOException expected) {
+        }
+        assertEquals(0, channel.getUnconfirmedCount());
+        assertEquals(0, channel.getRejectedCount());
+
+        // the slot of the failed message is available again
+        broker.failPublish = false;
+        long seqNo = channel.publish("", "q", PROPS, BODY, 50);
+        channel.handleAck(seqNo, false);
+        assertTrue(channel.awaitConfirm(seqNo, TIMEOUT));
+    }
+
+    public void testWindowLimitsUnconfirmedMessages() throws Exception {
+        StandInBroker broker = new StandInBroker(0);
+        AMQPConfirmChannel channel = new AMQPConfirmChannel(newChannel(broker), 2);
+
+        channel.publish("", "q", PROPS, BODY, TIMEOUT);
+        channel.publish("", "q", PROPS, BODY, TIMEOUT);
+        try {
+            channel.publish("", "q", PROPS, BODY, 50);
+            fail("The window should be full");
+        } catch (IOException expected) {
+        }
+
+        channel.handleAck(1, false);
+        channel.publish("", "q", PROPS, BODY, 50);
+        assertEquals(2, channel.getUnconfirmedCount());
+    }
+
+    public void testShutdownFailsUnconfirmedMessages() throws Exception {
+        StandInBroker broker = new StandInBroker(0);
+        AMQPConfirmChannel channel = new AMQPConfirmChannel(newChannel(broker), 16);
+
+        long seqNo = channel.publish("", "q", PROPS, BODY, TIMEOUT);
+        broker.shutdownListener.shutdownCompleted(
+                new ShutdownSignalException(false, false, null, null));
+
+        assertFalse(channel.awaitConfirm(seqNo, TIMEOUT));
+        try {
+            channel.publish("", "q", PROPS, BODY, TIMEOUT);
+            fail("Publishing on a closed channel should fail");
+        } catch (IOException expected) {
+        }
+    }
+
+    public void testAbandonedRejectionsAreNotKept() throws Exception {
+        StandInBroker broker = new StandInBroker(0);
+        AMQPConfirmChannel channel = new AMQPConfirmChannel(newChannel(broker), 16);
+
+        long first = channel.publish("", "q", PROPS, BODY, TIMEOUT);
+        long second = channel.publish("", "q", PROPS, BODY, TIMEOUT);
+        long third = channel.publish("", "q", PROPS, BODY, TIMEOUT);
+        try {
+            channel.awaitConfirm(first, 1);
+            fail("The confirm should not have arrived");
+        } catch (IOException expected) {
+        }
+
+        // nobody waits for the first message any more
+        channel.handleNack(second, true);
+        assertEquals(1, channel.getRejectedCount());
+        assertFalse(channel.awaitConfirm(second, TIMEOUT));
+        assertEquals(0, channel.getRejectedCount());
+
+        try {
+            channel.awaitConfirm(third, 1);
+            fail("The confirm should not have arrived");
+        } catch (IOException expected) {
+        }
+        broker.shutdownListener.shutdownCompleted(
+                new ShutdownSignalException(false, false, null, null));
+        assertEquals(0, channel.getRejectedCount());
+        assertEquals(0, channel.getUnconfirmedCount());
+    }
+
+    public void testConcurrentSendersGetTheirOwnConfirms() throws Exception {
+        final int threads = 8;
+        final int messages = 500;
+        // rejects every tenth message, and acknowledges the rest with cumulative confirms
+        StandInBroker broker = new StandInBroker(100, 10);
+        final AMQPConfirmChannel channel = new AMQPConfirmChannel(newChannel(broker), 64);
+        Thread brokerThread = new Thread(broker);
+        brokerThread.start();
+
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicInteger failures = new AtomicInteger(0);
+        for (int t = 0; t < threads; t++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < messages; i++) {
+                            long seqNo = channel.publish("", "q", PROPS, BODY, TIMEOUT);
+                            boolean accepted = channel.awaitConfirm(seqNo, TIMEOUT);
+                            if (accepted == (seqNo % 10 == 0)) {
+                                failures.incrementAndGet();
+                            }
+                        }
+                    } catch (Exception e) {
+                        failures.incrementAndGet();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        broker.running = false;
+        brokerThread.join();
+
+        assertEquals(0, failures.get());
+        assertEquals(0, channel.getUnconfirmedCount());
+        assertEquals(0, channel.getRejectedCount());
+    }
+
+    public void testThroughput() throws Exception {
+        final int threads = 8;
+        final int messages = 500;
+        final long roundTripMicros = 1000;
+
+        benchmark(threads, messages, roundTripMicros, 1);
+        benchmark(threads, messages, roundTripMicros, 50);
+    }
+
+    /**
+     * Publishes from concurrent senders against a broker confirming cumulatively once per
+     * round trip, and reports the throughput. Timings are only reported, as they depend on the
+     * machine running the test.
+     */
+    private void benchmark(int threads, final int messages, long roundTripMicros,
+                           final int batchSize) throws Exception {
+        StandInBroker broker = new StandInBroker(roundTripMicros);
+        final AMQPConfirmChannel channel = new AMQPConfirmChannel(newChannel(broker), 1024);
+        Thread brokerThread = new Thread(broker);
+        brokerThread.start();
+
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicInteger failures = new AtomicInteger(0);
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < messages; i++) {
+                            long seqNo = channel.publish("", "q", PROPS, BODY, TIMEOUT);
+                            boolean accepted = batchSize > 1 ?
+                                    channel.flushIfRequired(seqNo, batchSize, TIMEOUT) :
+                                    channel.awaitConfirm(seqNo, TIMEOUT);
+                            if (!accepted) {
+                                failures.incrementAndGet();
+                            }
+                        }
+                    } catch (Exception e) {
+                        failures.incrementAndGet();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        assertTrue(channel.flush(TIMEOUT));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        broker.running = false;
+        brokerThread.join();
+
+        int total = threads * messages;
+        assertEquals(0, failures.get());
+        assertEquals(0, channel.getUnconfirmedCount());
+        // a transaction per message would take a round trip per message
+        assertTrue("Too many confirms: " + broker.confirmFrames,
+                broker.confirmFrames < total / 2);
+        System.out.println("Published " + total + " messages with batch size " + batchSize +
+                " and " + broker.confirmFrames + " confirms in " + elapsed + " ms (" +
+                (total * 1000L / Math.max(elapsed, 1)) + " msg/s)");
+    }
+}
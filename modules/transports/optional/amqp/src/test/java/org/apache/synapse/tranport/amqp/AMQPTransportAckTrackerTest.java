@@ -0,0 +1,141 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.synapse.tranport.amqp;
+
+import com.rabbitmq.client.Channel;
+import junit.framework.TestCase;
+import org.apache.synapse.transport.amqp.pollingtask.AMQPTransportAckTracker;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class AMQPTransportAckTrackerTest extends TestCase {
+
+    /**
+     * Stands in for the broker side of a channel - keeps the unacknowledged delivery tags and
+     * fails the same way a broker does on an unknown delivery tag.
+     */
+    private static class RecordingChannel implements InvocationHandler {
+        private final TreeSet<Long> unacked = new TreeSet<Long>();
+        private final List<Long> nacked = new ArrayList<Long>();
+        private int ackCalls = 0;
+
+        public synchronized Object invoke(Object proxy, Method method, Object[] args) {
+            if ("basicAck".equals(method.getName())) {
+                long tag = (Long) args[0];
+                assertTrue("Unknown delivery tag " + tag, unacked.contains(tag));
+                if ((Boolean) args[1]) {
+                    unacked.headSet(tag, true).clear();
+                } else {
+                    unacked.remove(tag);
+                }
+                ackCalls++;
+            } else if ("basicNack".equals(method.getName())) {
+                long tag = (Long) args[0];
+                assertTrue("Unknown delivery tag " + tag, unacked.remove(tag));
+                nacked.add(tag);
+            }
+            return null;
+        }
+
+        synchronized void deliver(long tag) {
+            unacked.add(tag);
+        }
+    }
+
+    private RecordingChannel broker;
+    private Channel channel;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        broker = new RecordingChannel();
+        channel = (Channel) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{Channel.class}, broker);
+    }
+
+    public void testOutOfOrderCompletion() throws Exception {
+        AMQPTransportAckTracker tracker = new AMQPTransportAckTracker(channel, 2);
+        for (long tag = 1; tag <= 4; tag++) {
+            broker.deliver(tag);
+            tracker.track(tag);
+        }
+
+        tracker.complete(2);
+        tracker.complete(3);
+        // 1 is still in flight, so nothing can be acknowledged yet
+        assertEquals(0, broker.ackCalls);
+
+        tracker.complete(1);
+        assertEquals(1, broker.ackCalls);
+        assertEquals(Collections.singleton(4L), broker.unacked);
+
+        tracker.complete(4);
+        assertEquals(2, broker.ackCalls);
+        assertTrue(broker.unacked.isEmpty());
+        assertEquals(0, tracker.getInFlightCount());
+    }
+
+    public void testRejectedMessagesAreNotAcknowledged() throws Exception {
+        AMQPTransportAckTracker tracker = new AMQPTransportAckTracker(channel, 10);
+        for (long tag = 1; tag <= 3; tag++) {
+            broker.deliver(tag);
+            tracker.track(tag);
+        }
+
+        tracker.complete(1);
+        tracker.complete(2);
+        tracker.reject(3, true);
+
+        assertEquals(Collections.singletonList(3L), broker.nacked);
+        assertEquals(1, broker.ackCalls);
+        assertTrue(broker.unacked.isEmpty());
+    }
+
+    public void testConcurrentCompletion() throws Exception {
+        final AMQPTransportAckTracker tracker = new AMQPTransportAckTracker(channel, 32);
+        final int messages = 100000;
+        ExecutorService workers = Executors.newFixedThreadPool(8);
+
+        for (long tag = 1; tag <= messages; tag++) {
+            final long deliveryTag = tag;
+            broker.deliver(deliveryTag);
+            tracker.track(deliveryTag);
+            workers.execute(new Runnable() {
+                public void run() {
+                    try {
+                        tracker.complete(deliveryTag);
+                    } catch (Exception e) {
+                        fail(e.getMessage());
+                    }
+                }
+            });
+        }
+        workers.shutdown();
+        assertTrue(workers.awaitTermination(60, TimeUnit.SECONDS));
+
+        assertTrue(broker.unacked.isEmpty());
+        assertEquals(0, tracker.getInFlightCount());
+        assertTrue("Too many acknowledgements: " + broker.ackCalls,
+                broker.ackCalls <= messages / 8);
+    }
+}
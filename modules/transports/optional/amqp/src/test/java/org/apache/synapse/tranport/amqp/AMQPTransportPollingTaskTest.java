@@ -0,0 +1,143 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.synapse.tranport.amqp;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.Consumer;
+import com.rabbitmq.client.ShutdownSignalException;
+import junit.framework.TestCase;
+import org.apache.synapse.transport.amqp.pollingtask.AMQPTransportPollingTask;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class AMQPTransportPollingTaskTest extends TestCase {
+
+    /**
+     * Stands in for a connection, which counts the channels opened on it
+     */
+    private class FakeConnection implements InvocationHandler {
+        private final List<FakeChannel> channels = new ArrayList<FakeChannel>();
+
+        public synchronized Object invoke(Object proxy, Method method, Object[] args) {
+            if ("isOpen".equals(method.getName())) {
+                return true;
+            } else if ("createChannel".equals(method.getName())) {
+                return newChannel();
+            }
+            return null;
+        }
+
+        synchronized Channel newChannel() {
+            FakeChannel handler = new FakeChannel();
+            handler.channel = (Channel) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class[]{Channel.class}, handler);
+            channels.add(handler);
+            return handler.channel;
+        }
+    }
+
+    /**
+     * Stands in for a channel, which keeps the consumers registered on it
+     */
+    private class FakeChannel implements InvocationHandler {
+        private Channel channel;
+        private final List<Consumer> consumers = new ArrayList<Consumer>();
+
+        public synchronized Object invoke(Object proxy, Method method, Object[] args) {
+            if ("basicConsume".equals(method.getName())) {
+                consumers.add((Consumer) args[args.length - 1]);
+                return "consumer-" + consumers.size();
+            } else if ("getConnection".equals(method.getName())) {
+                return connectionProxy;
+            }
+            return null;
+        }
+
+        void close(boolean byApplication) {
+            ShutdownSignalException sig =
+                    new ShutdownSignalException(false, byApplication, null, channel);
+            for (int i = 0; i < consumers.size(); i++) {
+                consumers.get(i).handleShutdownSignal("consumer-" + (i + 1), sig);
+            }
+        }
+    }
+
+    private FakeConnection connection;
+    private Connection connectionProxy;
+    private ScheduledExecutorService scheduler;
+    private AMQPTransportPollingTask task;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        connection = new FakeConnection();
+        connectionProxy = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{Connection.class}, connection);
+        scheduler = Executors.newScheduledThreadPool(2);
+
+        task = new AMQPTransportPollingTask();
+        task.setServiceName("test");
+        task.setQueueName("test");
+        task.setPushMode(true);
+        task.setNoOfConcurrentConsumers(3);
+        task.setPollingTaskScheduler(scheduler);
+        task.setChannel(connection.newChannel());
+        task.start();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        scheduler.shutdownNow();
+        super.tearDown();
+    }
+
+    public void testChannelCloseRecoversOnce() throws Exception {
+        FakeChannel first = connection.channels.get(0);
+        assertEquals(3, first.consumers.size());
+
+        // every consumer of the channel gets the shutdown signal
+        first.close(false);
+        awaitRecovery();
+
+        assertEquals(2, connection.channels.size());
+        assertEquals(3, connection.channels.get(1).consumers.size());
+
+        // a late signal of the replaced channel does not start another recovery
+        first.close(false);
+        awaitRecovery();
+        assertEquals(2, connection.channels.size());
+    }
+
+    public void testApplicationCloseIsNotRecovered() throws Exception {
+        connection.channels.get(0).close(true);
+        awaitRecovery();
+
+        assertEquals(1, connection.channels.size());
+    }
+
+    private void awaitRecovery() throws Exception {
+        scheduler.shutdown();
+        assertTrue(scheduler.awaitTermination(10, TimeUnit.SECONDS));
+        scheduler = Executors.newScheduledThreadPool(2);
+        task.setPollingTaskScheduler(scheduler);
+    }
+}
@@ -56,6 +56,7 @@ public class FIXConstants {
     public static final String DEFAULT_START_TIME_VALUE = "00:00:00";
     public static final String DEFAULT_END_TIME_VALUE = "00:00:00";
     public static final int DEFAULT_COUNTER_UPPER_LIMIT = 1000000000;
+    public static final int DEFAULT_SESSION_QUEUE_SIZE = 1000;
 
     public static final String HEART_BY_INT = "HeartBtInt";
     public static final String BEGIN_STRING = "BeginString";
@@ -111,6 +112,9 @@ public class FIXConstants {
     public static final String FIX_ACCEPTOR_SINGLE_THREADED = "transport.fix.AcceptorSingleThreaded";
     public static final String FIX_INITIATOR_SINGLE_THREADED = "transport.fix.InitiatorSingleThreaded";
 
+    public static final String FIX_PROCESS_IN_SESSION_ORDER = "transport.fix.ProcessInSessionOrder";
+    public static final String FIX_SESSION_QUEUE_SIZE = "transport.fix.SessionQueueSize";
+
     public static final String FIX_USE_THREADED_CONNECTORS = "transport.fix.UseThreadedConnectors";
     public static final String FIX_USE_THREADED_ACCEPTOR = "transport.fix.UseThreadedAcceptor";
     public static final String FIX_USE_THREADED_INITIATOR = "transport.fix.UseThreadedInitiator";
@@ -0,0 +1,61 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.transport.fix;
+
+import org.apache.axis2.context.MessageContext;
+import org.jaxen.Context;
+import org.jaxen.Function;
+import org.jaxen.FunctionCallException;
+import org.jaxen.function.NumberFunction;
+
+import java.util.List;
+
+/**
+ * XPath function which returns the value of a field of the FIX message by its tag number, for
+ * example <code>fix:field(35)</code> for the message type. Unlike an XPath expression over the
+ * XML infoset of the message, this does not convert the message to XML when it is still held
+ * as a quickfixj Message. An empty string is returned when the message has no such field.
+ */
+public class FIXFieldFunction implements Function {
+
+    public static final String NAMESPACE = "http://ws.apache.org/ns/synapse/fix";
+    public static final String PREFIX = "fix";
+    public static final String NAME = "field";
+
+    private final MessageContext msgCtx;
+
+    public FIXFieldFunction(MessageContext msgCtx) {
+        this.msgCtx = msgCtx;
+    }
+
+    @Override
+    public Object call(Context context, List args) throws FunctionCallException {
+        if (args == null || args.size() != 1) {
+            throw new FunctionCallException(PREFIX + ":" + NAME +
+                    "() function expects a single tag number argument");
+        }
+        Double tag = NumberFunction.evaluate(args.get(0), context.getNavigator());
+        if (tag.isNaN()) {
+            throw new FunctionCallException("Invalid FIX tag number: " + args.get(0));
+        }
+        String value = FIXUtils.getFieldValue(msgCtx, tag.intValue());
+        return value != null ? value : "";
+    }
+}
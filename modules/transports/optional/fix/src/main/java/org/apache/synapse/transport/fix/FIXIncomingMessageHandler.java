@@ -72,6 +72,8 @@ public class FIXIncomingMessageHandler implements Application {
     private Semaphore semaphore;
     private SessionEventHandler eventHandler;
     private boolean singleThreaded;
+    /** Runs the messages of each session in order when processing in session order */
+    private FIXSessionExecutor sessionExecutor;
 
     public FIXIncomingMessageHandler(ConfigurationContext cfgCtx, WorkerPool workerPool,
                                      AxisService service, boolean acceptor) {
@@ -108,6 +110,14 @@ public class FIXIncomingMessageHandler implements Application {
         }
 
         singleThreaded = isSingleThreaded();
+        if (!singleThreaded && isProcessedInSessionOrder()) {
+            sessionExecutor = new FIXSessionExecutor(workerPool, getSessionQueueSize());
+            if (!FIXSessionFactory.useThreadedConnector(service, acceptor)) {
+                log.warn("FIX messages for service: " + service.getName() + " are processed " +
+                        "in session order without threaded connectors. A full session queue " +
+                        "will stall all the sessions of the connector.");
+            }
+        }
     }
 
     private void getResponseHandlingApproach() {
@@ -151,6 +161,37 @@ public class FIXIncomingMessageHandler implements Application {
     }
 
 
+    private boolean isProcessedInSessionOrder() {
+        Parameter param = service.getParameter(FIXConstants.FIX_PROCESS_IN_SESSION_ORDER);
+        if (param != null && JavaUtils.isTrueExplicitly(param.getValue())) {
+            log.info("FIX messages for service: " + service.getName() + " are processed " +
+                    "in session order");
+            return true;
+        }
+        return false;
+    }
+
+    private int getSessionQueueSize() {
+        Parameter param = service.getParameter(FIXConstants.FIX_SESSION_QUEUE_SIZE);
+        if (param != null && param.getValue() != null) {
+            try {
+                return Integer.parseInt(param.getValue().toString().trim());
+            } catch (NumberFormatException e) {
+                log.warn("Invalid value for " + FIXConstants.FIX_SESSION_QUEUE_SIZE + ": " +
+                        param.getValue() + ", using the default");
+            }
+        }
+        return FIXConstants.DEFAULT_SESSION_QUEUE_SIZE;
+    }
+
+    /**
+     * @return the executor running the messages of each session in order, or null if the
+     *         messages are not processed in session order
+     */
+    public FIXSessionExecutor getSessionExecutor() {
+        return sessionExecutor;
+    }
+
     public void setOutgoingMessageContext(MessageContext msgCtx) {
         if (!allNewApproach) {
             outgoingMessages.offer(msgCtx);
@@ -217,6 +258,9 @@ public class FIXIncomingMessageHandler implements Application {
         FIXTransportSender trpSender = (FIXTransportSender) cfgCtx.getAxisConfiguration().
                 getTransportOut(FIXConstants.TRANSPORT_NAME).getSender();
         trpSender.logOutIncomingSession(sessionID);
+        if (sessionExecutor != null) {
+            sessionExecutor.remove(sessionID);
+        }
         log.info("FIX session logged out: " + sessionID.toString());
 
         if (eventHandler != null) {
@@ -325,7 +369,8 @@ public class FIXIncomingMessageHandler implements Application {
      * This callback receives messages for the application. This is one of the
      * core entry points for the FIX application. Every application level
      * request will come through here. A new thread will be spawned from the
-     * thread pool for each incoming message.
+     * thread pool for each incoming message, unless the messages are processed
+     * single threaded or in session order.
      *
      * @param message QuickFIX message
      * @param sessionID QuickFIX session ID
@@ -356,6 +401,15 @@ public class FIXIncomingMessageHandler implements Application {
         }
         if (singleThreaded) {
             processMessage(message, sessionID, counter);
+        } else if (sessionExecutor != null) {
+            try {
+                sessionExecutor.execute(sessionID,
+                        new FIXWorkerThread(message, sessionID, counter));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                handleException("Interrupted while queueing a message of the session " +
+                        sessionID, e);
+            }
         } else {
             workerPool.execute(new FIXWorkerThread(message, sessionID, counter));
         }
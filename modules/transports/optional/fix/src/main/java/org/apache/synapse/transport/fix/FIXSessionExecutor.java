@@ -0,0 +1,319 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.transport.fix;
+
+import org.apache.axis2.transport.base.threads.WorkerPool;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.synapse.commons.jmx.MBeanRegistrar;
+import quickfix.SessionID;
+
+import javax.management.NotCompliantMBeanException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Runs the tasks submitted for a FIX session one at a time and in the order they were
+ * submitted, while tasks of different sessions run in parallel on a shared worker pool. Each
+ * session has its own bounded queue, and at most one worker drains a given queue at any time.
+ * A worker gives up its thread after a fixed number of tasks if the session still has more,
+ * so that busy sessions do not starve the others.
+ * <p/>
+ * When the queue of a session is full, the submitting thread waits. With threaded connectors
+ * every session has its own FIX engine thread, so this pushes back on the counter party of that
+ * session only. With the non-threaded connectors all the sessions of a connector share one
+ * thread, so a full queue stalls every session of the connector until it has room again.
+ * <p/>
+ * The queue of a session is kept until the session logs out, after which it is discarded
+ * as soon as the tasks already queued have been run. While it is kept, the statistics of the
+ * session are available over JMX as an MBean of type FIXSession, named after the session.
+ */
+public class FIXSessionExecutor {
+
+    private static final Log log = LogFactory.getLog(FIXSessionExecutor.class);
+
+    /** Maximum number of tasks a worker runs for a session before yielding its thread */
+    private static final int MAX_TASKS_PER_RUN = 64;
+
+    private static final String MBEAN_CATEGORY = "FIXSession";
+
+    private final WorkerPool workerPool;
+    private final int queueSize;
+    private final ConcurrentMap<SessionID, SessionQueue> sessions =
+            new ConcurrentHashMap<SessionID, SessionQueue>();
+
+    public FIXSessionExecutor(WorkerPool workerPool, int queueSize) {
+        this.workerPool = workerPool;
+        this.queueSize = queueSize;
+    }
+
+    /**
+     * Queue a task to be run after all the tasks already queued for the session
+     *
+     * @param sessionID the session the task belongs to
+     * @param task      the task
+     * @throws InterruptedException if interrupted while waiting for space in the queue
+     */
+    public void execute(SessionID sessionID, Runnable task) throws InterruptedException {
+        while (true) {
+            SessionQueue queue = sessions.get(sessionID);
+            if (queue == null || queue.closed) {
+                synchronized (sessions) {
+                    queue = sessions.get(sessionID);
+                    if (queue == null) {
+                        queue = new SessionQueue(sessionID);
+                        sessions.put(sessionID, queue);
+                        queue.register();
+                    }
+                    queue.closed = false;
+                }
+            }
+            if (queue.submit(task)) {
+                return;
+            }
+            // the queue was dropped after it was looked up, use the one replacing it
+        }
+    }
+
+    /**
+     * Discard the queue of a session which is no longer online. Tasks already queued for the
+     * session are still run, and the queue is dropped once they have completed.
+     *
+     * @param sessionID the session which logged out
+     */
+    public void remove(SessionID sessionID) {
+        synchronized (sessions) {
+            SessionQueue queue = sessions.get(sessionID);
+            if (queue != null) {
+                queue.closed = true;
+                queue.removeIfIdle();
+            }
+        }
+    }
+
+    /**
+     * @param sessionID a FIX session
+     * @return the statistics of the session, or null if nothing was run for the session
+     */
+    public SessionStatistics getStatistics(SessionID sessionID) {
+        return sessions.get(sessionID);
+    }
+
+    /**
+     * @return the statistics of all the sessions
+     */
+    public Map<SessionID, ? extends SessionStatistics> getStatistics() {
+        return sessions;
+    }
+
+    /**
+     * Statistics of the tasks run for a single session
+     */
+    public interface SessionStatistics {
+
+        /** @return number of tasks waiting to be run */
+        int getBacklog();
+
+        /** @return number of tasks completed */
+        long getCompletedCount();
+
+        /** @return average time in milliseconds from submission to completion of a task */
+        double getAverageLatency();
+
+        /** @return maximum time in milliseconds from submission to completion of a task */
+        long getMaxLatency();
+    }
+
+    private class SessionQueue implements Runnable, SessionStatistics {
+
+        private final SessionID sessionID;
+        private final BlockingQueue<QueuedTask> tasks;
+        /** true while a worker is scheduled to drain this queue */
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+        /** true once the session has logged out, changed only while holding the sessions lock */
+        private volatile boolean closed = false;
+        /**
+         * Held shared while submitting, and exclusively while dropping the queue, so that no
+         * task is ever added to a queue which has been dropped
+         */
+        private final ReadWriteLock submitLock = new ReentrantReadWriteLock();
+        /** true once the queue has been dropped from the sessions, guarded by submitLock */
+        private boolean removed = false;
+
+        private final AtomicLong completed = new AtomicLong(0);
+        private final AtomicLong totalLatency = new AtomicLong(0);
+        private final AtomicLong maxLatency = new AtomicLong(0);
+
+        SessionQueue(SessionID sessionID) {
+            this.sessionID = sessionID;
+            this.tasks = new ArrayBlockingQueue<QueuedTask>(queueSize);
+        }
+
+        /**
+         * Queue a task, unless this queue has already been dropped
+         *
+         * @return false if the queue has been dropped, and the task was not queued
+         */
+        boolean submit(Runnable task) throws InterruptedException {
+            submitLock.readLock().lock();
+            try {
+                if (removed) {
+                    return false;
+                }
+                QueuedTask queuedTask = new QueuedTask(task);
+                if (!tasks.offer(queuedTask)) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Queue of the FIX session " + sessionID + " is full, " +
+                                "waiting...");
+                    }
+                    tasks.put(queuedTask);
+                }
+                schedule();
+                return true;
+            } finally {
+                submitLock.readLock().unlock();
+            }
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                workerPool.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                QueuedTask task;
+                int count = 0;
+                while (count < MAX_TASKS_PER_RUN && (task = tasks.poll()) != null) {
+                    try {
+                        task.task.run();
+                    } catch (Throwable t) {
+                        log.error("Error while processing a message of the FIX session " +
+                                sessionID, t);
+                    }
+                    record(System.currentTimeMillis() - task.submitted);
+                    count++;
+                }
+            } finally {
+                scheduled.set(false);
+                // a task may have been queued after the last poll, but before the flag was
+                // cleared, in which case its submitter did not schedule a worker
+                if (!tasks.isEmpty()) {
+                    schedule();
+                } else if (closed) {
+                    synchronized (sessions) {
+                        removeIfIdle();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Drop this queue from the sessions if the session has logged out and nothing is left
+         * to run. Must be called while holding the sessions lock. Nothing is dropped while a
+         * task is being submitted, as the worker running that task checks again once done.
+         */
+        private void removeIfIdle() {
+            if (!closed || !tasks.isEmpty() || scheduled.get() ||
+                    !submitLock.writeLock().tryLock()) {
+                return;
+            }
+            try {
+                if (tasks.isEmpty() && !scheduled.get()) {
+                    removed = true;
+                    // a queue created for the session after it logged in again stays
+                    if (sessions.remove(sessionID, this)) {
+                        MBeanRegistrar.getInstance().unRegisterMBean(MBEAN_CATEGORY,
+                                getMBeanName());
+                    }
+                }
+            } finally {
+                submitLock.writeLock().unlock();
+            }
+        }
+
+        private void register() {
+            try {
+                MBeanRegistrar.getInstance().registerMBean(
+                        new StandardMBean(this, SessionStatistics.class), MBEAN_CATEGORY,
+                        getMBeanName());
+            } catch (NotCompliantMBeanException e) {
+                log.warn("Unable to expose the statistics of the FIX session " + sessionID, e);
+            }
+        }
+
+        private String getMBeanName() {
+            // session IDs contain characters which are not allowed in plain ObjectName values
+            return ObjectName.quote(sessionID.toString());
+        }
+
+        private void record(long latency) {
+            completed.incrementAndGet();
+            totalLatency.addAndGet(latency);
+            long max;
+            while (latency > (max = maxLatency.get())) {
+                if (maxLatency.compareAndSet(max, latency)) {
+                    break;
+                }
+            }
+        }
+
+        @Override
+        public int getBacklog() {
+            return tasks.size();
+        }
+
+        @Override
+        public long getCompletedCount() {
+            return completed.get();
+        }
+
+        @Override
+        public double getAverageLatency() {
+            long count = completed.get();
+            return count == 0 ? 0 : (double) totalLatency.get() / count;
+        }
+
+        @Override
+        public long getMaxLatency() {
+            return maxLatency.get();
+        }
+    }
+
+    private static class QueuedTask {
+        private final Runnable task;
+        private final long submitted = System.currentTimeMillis();
+
+        QueuedTask(Runnable task) {
+            this.task = task;
+        }
+    }
+}
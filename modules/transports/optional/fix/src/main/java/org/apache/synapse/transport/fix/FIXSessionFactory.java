@@ -546,7 +546,7 @@ public class FIXSessionFactory {
         }
     }
 
-    private boolean useThreadedConnector(AxisService service, boolean acceptor) {
+    static boolean useThreadedConnector(AxisService service, boolean acceptor) {
 	    Parameter param = service.getParameter(FIXConstants.FIX_USE_THREADED_ACCEPTOR);
         if (acceptor && param != null && JavaUtils.isTrueExplicitly(param.getValue())) {
             return true;
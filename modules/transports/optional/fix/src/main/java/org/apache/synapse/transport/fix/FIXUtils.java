@@ -19,10 +19,10 @@
 
 package org.apache.synapse.transport.fix;
 
-import org.apache.axiom.attachments.ByteArrayDataSource;
 import org.apache.axiom.om.OMAbstractFactory;
 import org.apache.axiom.om.OMElement;
 import org.apache.axiom.om.OMNamespace;
+import org.apache.axiom.om.OMSourcedElement;
 import org.apache.axiom.soap.SOAPBody;
 import org.apache.axiom.soap.SOAPEnvelope;
 import org.apache.axiom.soap.SOAPFactory;
@@ -31,11 +31,11 @@ import org.apache.axis2.context.MessageContext;
 import org.apache.axis2.transport.base.BaseUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.synapse.transport.fix.message.FIXMessageDataSource;
 import quickfix.*;
 import quickfix.field.*;
 
 import javax.activation.DataHandler;
-import javax.activation.DataSource;
 import javax.xml.namespace.QName;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -66,6 +66,9 @@ public class FIXUtils {
      * </message>
      * </soapBody>
      * </soapEnvelope>
+     * <p/>
+     * The message element is backed by a {@link FIXMessageDataSource}, so the header, body
+     * and trailer are only built when the content of the message element is accessed.
      *
      * @param message   the FIX message
      * @param counter   application level sequence number of the message
@@ -81,147 +84,96 @@ public class FIXUtils {
         }
 
         SOAPFactory soapFactory = OMAbstractFactory.getSOAP11Factory();
-        OMElement msg = soapFactory.createOMElement(FIXConstants.FIX_MESSAGE, null);
-        msg.addAttribute(soapFactory.createOMAttribute(FIXConstants.FIX_MESSAGE_INCOMING_SESSION,
-                null, sessionID));
-        msg.addAttribute(soapFactory.createOMAttribute
-                (FIXConstants.FIX_MESSAGE_COUNTER, null, String.valueOf(counter)));
-
-        OMElement header = soapFactory.createOMElement(FIXConstants.FIX_HEADER, null);
-        OMElement body = soapFactory.createOMElement(FIXConstants.FIX_BODY, null);
-        OMElement trailer = soapFactory.createOMElement(FIXConstants.FIX_TRAILER, null);
-
-        //process FIX header
-        Iterator<Field<?>> iter = message.getHeader().iterator();
-        if (iter != null) {
-            while (iter.hasNext()) {
-                Field<?> field = iter.next();
-                OMElement msgField = soapFactory.createOMElement(FIXConstants.FIX_FIELD, null);
-                msgField.addAttribute(soapFactory.createOMAttribute(FIXConstants.FIX_FIELD_ID,
-                        null, String.valueOf(field.getTag())));
-                Object value = field.getObject();
-
-                if (value instanceof byte[]) {
-                    DataSource dataSource = new ByteArrayDataSource((byte[]) value);
-                    DataHandler dataHandler = new DataHandler(dataSource);
-                    String contentID = msgCtx.addAttachment(dataHandler);
-                    OMElement binaryData = soapFactory.createOMElement(
-                            FIXConstants.FIX_BINARY_FIELD, null);
-                    String binaryCID = "cid:" + contentID;
-                    binaryData.addAttribute(FIXConstants.FIX_MESSAGE_REFERENCE, binaryCID, null);
-                    msgField.addChild(binaryData);
-                } else {
-                    createOMText(soapFactory, msgField, value.toString());
-                }
-                header.addChild(msgField);
-            }
-        }
-        //process FIX body
-        convertFIXBodyToXML(message, body, soapFactory, msgCtx);
-
-        //process FIX trailer
-        iter = message.getTrailer().iterator();
-        if (iter != null) {
-            while (iter.hasNext()) {
-                Field<?> field = iter.next();
-                OMElement msgField = soapFactory.createOMElement(FIXConstants.FIX_FIELD, null);
-                msgField.addAttribute(soapFactory.
-                        createOMAttribute(FIXConstants.FIX_FIELD_ID, null,
-                        String.valueOf(field.getTag())));
-                Object value = field.getObject();
-
-                if (value instanceof byte[]) {
-                    DataSource dataSource = new ByteArrayDataSource((byte[]) value);
-                    DataHandler dataHandler = new DataHandler(dataSource);
-                    String contentID = msgCtx.addAttachment(dataHandler);
-                    OMElement binaryData = soapFactory.createOMElement(
-                            FIXConstants.FIX_BINARY_FIELD, null);
-                    String binaryCID = "cid:" + contentID;
-                    binaryData.addAttribute(FIXConstants.FIX_MESSAGE_REFERENCE, binaryCID, null);
-                    msgField.addChild(binaryData);
-                } else {
-                    createOMText(soapFactory, msgField, value.toString());
-                }
-                trailer.addChild(msgField);
-            }
-        }
-
-        msg.addChild(header);
-        msg.addChild(body);
-        msg.addChild(trailer);
+        OMElement msg = soapFactory.createOMElement(
+                new FIXMessageDataSource(message, counter, sessionID, msgCtx),
+                FIXConstants.FIX_MESSAGE, null);
         SOAPEnvelope envelope = soapFactory.getDefaultEnvelope();
         envelope.getBody().addChild(msg);
         msgCtx.setEnvelope(envelope);
     }
-    
 
     /**
-     * Constructs the XML infoset for the FIX message body
+     * Find the data source of a FIX payload which has not been converted to XML yet. The
+     * original FIX message held by the data source is an exact representation of the payload
+     * only as long as the payload element has not been expanded, since mediation may change
+     * the XML once it has been.
      *
-     * @param message the FIX message
-     * @param body the body element of the XML infoset
-     * @param soapFactory the SOAP factory to create XML elements
-     * @param msgCtx the Axis2 Message context
-     * @throws AxisFault on error
+     * @param msgCtx the Axis2 MessageContext
+     * @return the data source of the payload, or null if the payload is not backed by a FIX
+     *         message or has already been expanded
      */
-    private void convertFIXBodyToXML(FieldMap message, OMElement body, SOAPFactory soapFactory,
-                                        MessageContext msgCtx) throws AxisFault{
+    public static FIXMessageDataSource getUnexpandedDataSource(MessageContext msgCtx) {
+        SOAPEnvelope envelope = msgCtx.getEnvelope();
+        if (envelope == null || envelope.getBody() == null) {
+            return null;
+        }
+        OMElement payload = envelope.getBody().getFirstElement();
+        if (payload instanceof OMSourcedElement) {
+            OMSourcedElement sourcedElement = (OMSourcedElement) payload;
+            if (!sourcedElement.isExpanded() &&
+                    sourcedElement.getDataSource() instanceof FIXMessageDataSource) {
+                return (FIXMessageDataSource) sourcedElement.getDataSource();
+            }
+        }
+        return null;
+    }
 
-        if (log.isDebugEnabled()) {
-            log.debug("Generating FIX message body (Message ID: " + msgCtx.getMessageID() + ")");
+    /**
+     * Get the value of a field of the FIX message in a MessageContext by its tag number. The
+     * header is searched first, followed by the body and the trailer. Fields of repeating
+     * groups are not considered. When the payload has not been converted to XML, the value is
+     * read from the original FIX message without converting it.
+     *
+     * @param msgCtx the Axis2 MessageContext
+     * @param tag    the tag number of the field
+     * @return the value of the field, or null if the message has no such field
+     */
+    public static String getFieldValue(MessageContext msgCtx, int tag) {
+        FIXMessageDataSource dataSource = getUnexpandedDataSource(msgCtx);
+        if (dataSource != null) {
+            Message message = dataSource.getMessage();
+            FieldMap[] sections = {message.getHeader(), message, message.getTrailer()};
+            for (FieldMap section : sections) {
+                if (section.isSetField(tag)) {
+                    try {
+                        return section.getString(tag);
+                    } catch (FieldNotFound ignored) {
+                        // removed concurrently, keep looking
+                    }
+                }
+            }
+            return null;
         }
 
-        Iterator<Field<?>> iter = message.iterator();
-        if (iter != null) {
-             while (iter.hasNext()) {
-                 Field<?> field = iter.next();
-                 OMElement msgField = soapFactory.createOMElement(FIXConstants.FIX_FIELD, null);
-                 msgField.addAttribute(soapFactory.
-                         createOMAttribute(FIXConstants.FIX_FIELD_ID, null,
-                         String.valueOf(field.getTag())));
-                 Object value = field.getObject();
-
-                 if (value instanceof byte[]) {
-                     DataSource dataSource = new ByteArrayDataSource((byte[]) value);
-                     DataHandler dataHandler = new DataHandler(dataSource);
-                     String contentID = msgCtx.addAttachment(dataHandler);
-                     OMElement binaryData = soapFactory.createOMElement(
-                             FIXConstants.FIX_BINARY_FIELD, null);
-                     String binaryCID = "cid:" + contentID;
-                     binaryData.addAttribute(FIXConstants.FIX_MESSAGE_REFERENCE, binaryCID, null);
-                     msgField.addChild(binaryData);
-                 } else {
-                     createOMText(soapFactory, msgField, value.toString());
-                 }
-
-                 body.addChild(msgField);
-             }
+        SOAPBody body = msgCtx.getEnvelope().getBody();
+        OMElement messageNode = body.getFirstElement();
+        if (messageNode == null) {
+            return null;
         }
-        
-        //process FIX repeating groups
-        Iterator<Integer> groupKeyItr = message.groupKeyIterator();
-        if (groupKeyItr != null) {
-            while (groupKeyItr.hasNext()) {
-                int groupKey =  groupKeyItr.next();
-                OMElement groupsField = soapFactory.createOMElement(FIXConstants.FIX_GROUPS,
-                        null);
-                groupsField.addAttribute(FIXConstants.FIX_FIELD_ID,
-                        String.valueOf(groupKey),null);
-                List<Group> groupList = message.getGroups(groupKey);
-                Iterator<Group> groupIterator = groupList.iterator();
-
-                while (groupIterator.hasNext()) {
-                    Group msgGroup = groupIterator.next();
-                    OMElement groupField = soapFactory.createOMElement(FIXConstants.FIX_GROUP, null);
-                    // rec. call the method to process the repeating groups
-                    convertFIXBodyToXML(msgGroup, groupField, soapFactory, msgCtx);
-                    groupsField.addChild(groupField);
+        String id = String.valueOf(tag);
+        Iterator sections = messageNode.getChildElements();
+        while (sections.hasNext()) {
+            OMElement section = (OMElement) sections.next();
+            Iterator fields = section.getChildElements();
+            while (fields.hasNext()) {
+                OMElement field = (OMElement) fields.next();
+                if (FIXConstants.FIX_FIELD.equals(field.getLocalName()) &&
+                        id.equals(getFieldId(field))) {
+                    return field.getText();
                 }
-                body.addChild(groupsField);
             }
         }
+        return null;
     }
 
+    private static String getFieldId(OMElement field) {
+        String id = field.getAttributeValue(new QName(FIXConstants.FIX_FIELD_ID));
+        if (id == null && field.getNamespace() != null) {
+            id = field.getAttributeValue(new QName(field.getNamespace().getNamespaceURI(),
+                    FIXConstants.FIX_FIELD_ID));
+        }
+        return id;
+    }
 
     private void generateFIXBody(OMElement node, FieldMap message, MessageContext msgCtx,
                                  boolean withNs, String nsURI, String nsPrefix) throws IOException {
@@ -311,10 +263,17 @@ public class FIXUtils {
                     msgCtx.getMessageID() + ")");
         }
 
+        FIXMessageDataSource dataSource = getUnexpandedDataSource(msgCtx);
+        if (dataSource != null) {
+            // the payload was not touched by mediation, so skip the XML round trip. The sender
+            // modifies the header, and the payload may be sent more than once, so use a copy
+            return (Message) dataSource.getMessage().clone();
+        }
+
         boolean withNs = false;
         String nsPrefix = null;
         String nsURI = null;
-        
+
         Message message = new Message();
         SOAPBody soapBody = msgCtx.getEnvelope().getBody();
 
@@ -717,6 +676,11 @@ public class FIXUtils {
      * @return application level sequence number or -1
      */
     public static int getSequenceNumber(MessageContext msgCtx) {
+        FIXMessageDataSource dataSource = getUnexpandedDataSource(msgCtx);
+        if (dataSource != null) {
+            return dataSource.getCounter();
+        }
+
         int seqNum;
         SOAPBody body = msgCtx.getEnvelope().getBody();
         OMNamespace ns = getNamespaceOfFIXPayload(body);
@@ -762,6 +726,11 @@ public class FIXUtils {
      * @return a String uniquely identifying a session or null
      */
     public static String getSourceSession(MessageContext msgCtx) {
+        FIXMessageDataSource dataSource = getUnexpandedDataSource(msgCtx);
+        if (dataSource != null) {
+            return dataSource.getSessionID();
+        }
+
         String srcSession;
         SOAPBody body = msgCtx.getEnvelope().getBody();
         OMNamespace ns = getNamespaceOfFIXPayload(body);
@@ -790,24 +759,6 @@ public class FIXUtils {
                    FIXConstants.FIX_MESSAGE_INCOMING_SESSION, ns.getPrefix()));
     }
 
-    /**
-     * Creates a text node within a CDATA section selectively by looking at the enclosing text.
-     *
-     * @param soapFactory SOAPFactory instance used to create the OMText object
-     * @param field Parent OMElement (field element)
-     * @param text String text to be added to the field element
-     */
-    private static void createOMText(SOAPFactory soapFactory, OMElement field, String text) {
-        if (text == null) {
-            return;
-        }
-        if (text.indexOf('<') == -1 && text.indexOf('&') == -1 && text.indexOf('>') == -1) {
-            soapFactory.createOMText(field, text);
-        } else {
-            soapFactory.createOMText(field, text, OMElement.CDATA_SECTION_NODE);
-        }
-    }
-
     /**
      * Read the FIX message payload and identify the namespace if exists
      *
@@ -0,0 +1,208 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.transport.fix.message;
+
+import org.apache.axiom.attachments.ByteArrayDataSource;
+import org.apache.axiom.om.OMDataSourceExt;
+import org.apache.axiom.om.ds.AbstractPushOMDataSource;
+import org.apache.axis2.context.MessageContext;
+import org.apache.synapse.transport.fix.FIXConstants;
+import quickfix.Field;
+import quickfix.FieldMap;
+import quickfix.Group;
+import quickfix.Message;
+
+import javax.activation.DataHandler;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Backs the FIX payload of a SOAP envelope with the original quickfixj Message. The XML infoset
+ * of the message is only produced when something reads the content of the payload element, so
+ * messages which are routed on a few fields and forwarded unchanged are never converted to XML.
+ * As long as the payload element has not been expanded, the FIX transport reads fields straight
+ * from the Message and sends a copy of it instead of rebuilding it from XML.
+ * <p/>
+ * The generated infoset is the same as the one described in
+ * {@link org.apache.synapse.transport.fix.FIXUtils#setSOAPEnvelope}.
+ */
+public class FIXMessageDataSource extends AbstractPushOMDataSource {
+
+    private final Message message;
+    private final int counter;
+    private final String sessionID;
+    private final MessageContext msgCtx;
+
+    /**
+     * Content IDs of the binary fields of the message, which are added to the message context
+     * as attachments when the data source is created
+     */
+    private final Map<byte[], String> attachments;
+
+    public FIXMessageDataSource(Message message, int counter, String sessionID,
+                                MessageContext msgCtx) {
+        this(message, counter, sessionID, msgCtx, new IdentityHashMap<byte[], String>());
+        addAttachments(message.getHeader());
+        addAttachments(message);
+        addAttachments(message.getTrailer());
+    }
+
+    private FIXMessageDataSource(Message message, int counter, String sessionID,
+                                 MessageContext msgCtx, Map<byte[], String> attachments) {
+        this.message = message;
+        this.counter = counter;
+        this.sessionID = sessionID;
+        this.msgCtx = msgCtx;
+        this.attachments = attachments;
+    }
+
+    public Message getMessage() {
+        return message;
+    }
+
+    public int getCounter() {
+        return counter;
+    }
+
+    public String getSessionID() {
+        return sessionID;
+    }
+
+    @Override
+    public Object getObject() {
+        return message;
+    }
+
+    @Override
+    public boolean isDestructiveWrite() {
+        return false;
+    }
+
+    @Override
+    public OMDataSourceExt copy() {
+        return new FIXMessageDataSource(message, counter, sessionID, msgCtx, attachments);
+    }
+
+    @Override
+    public void serialize(XMLStreamWriter writer) throws XMLStreamException {
+        writer.writeStartElement("", FIXConstants.FIX_MESSAGE, "");
+        writer.writeAttribute("", "", FIXConstants.FIX_MESSAGE_INCOMING_SESSION, sessionID);
+        writer.writeAttribute("", "", FIXConstants.FIX_MESSAGE_COUNTER,
+                String.valueOf(counter));
+
+        writer.writeStartElement("", FIXConstants.FIX_HEADER, "");
+        writeFields(writer, message.getHeader());
+        writer.writeEndElement();
+
+        writer.writeStartElement("", FIXConstants.FIX_BODY, "");
+        writeBody(writer, message);
+        writer.writeEndElement();
+
+        writer.writeStartElement("", FIXConstants.FIX_TRAILER, "");
+        writeFields(writer, message.getTrailer());
+        writer.writeEndElement();
+
+        writer.writeEndElement();
+    }
+
+    private void writeBody(XMLStreamWriter writer, FieldMap fieldMap) throws XMLStreamException {
+        writeFields(writer, fieldMap);
+
+        //process FIX repeating groups
+        Iterator<Integer> groupKeyItr = fieldMap.groupKeyIterator();
+        while (groupKeyItr.hasNext()) {
+            int groupKey = groupKeyItr.next();
+            writer.writeStartElement("", FIXConstants.FIX_GROUPS, "");
+            writer.writeAttribute("", "", FIXConstants.FIX_FIELD_ID, String.valueOf(groupKey));
+            for (Group group : fieldMap.getGroups(groupKey)) {
+                writer.writeStartElement("", FIXConstants.FIX_GROUP, "");
+                writeBody(writer, group);
+                writer.writeEndElement();
+            }
+            writer.writeEndElement();
+        }
+    }
+
+    private void writeFields(XMLStreamWriter writer, FieldMap fieldMap)
+            throws XMLStreamException {
+        Iterator<Field<?>> iter = fieldMap.iterator();
+        while (iter.hasNext()) {
+            Field<?> field = iter.next();
+            writer.writeStartElement("", FIXConstants.FIX_FIELD, "");
+            writer.writeAttribute("", "", FIXConstants.FIX_FIELD_ID,
+                    String.valueOf(field.getTag()));
+            Object value = field.getObject();
+            if (value instanceof byte[]) {
+                writer.writeStartElement("", FIXConstants.FIX_BINARY_FIELD, "");
+                writer.writeAttribute("", "", FIXConstants.FIX_MESSAGE_REFERENCE,
+                        "cid:" + getContentID((byte[]) value));
+                writer.writeEndElement();
+            } else if (value != null) {
+                String text = value.toString();
+                if (text.indexOf('<') == -1 && text.indexOf('&') == -1 &&
+                        text.indexOf('>') == -1) {
+                    writer.writeCharacters(text);
+                } else {
+                    writer.writeCData(text);
+                }
+            }
+            writer.writeEndElement();
+        }
+    }
+
+    /**
+     * Add the binary fields of a section of the message, including those of its repeating
+     * groups, to the message context as attachments. This is done while the message is built
+     * rather than when the payload is serialized, so that the attachments are visible to
+     * anything which reads the message context before the payload is converted to XML.
+     *
+     * @param fieldMap the header, body, trailer or a repeating group of the message
+     */
+    private void addAttachments(FieldMap fieldMap) {
+        Iterator<Field<?>> iter = fieldMap.iterator();
+        while (iter.hasNext()) {
+            Object value = iter.next().getObject();
+            if (value instanceof byte[]) {
+                getContentID((byte[]) value);
+            }
+        }
+        Iterator<Integer> groupKeyItr = fieldMap.groupKeyIterator();
+        while (groupKeyItr.hasNext()) {
+            for (Group group : fieldMap.getGroups(groupKeyItr.next())) {
+                addAttachments(group);
+            }
+        }
+    }
+
+    private String getContentID(byte[] value) {
+        synchronized (attachments) {
+            String contentID = attachments.get(value);
+            if (contentID == null) {
+                contentID = msgCtx.addAttachment(
+                        new DataHandler(new ByteArrayDataSource(value)));
+                attachments.put(value, contentID);
+            }
+            return contentID;
+        }
+    }
+}
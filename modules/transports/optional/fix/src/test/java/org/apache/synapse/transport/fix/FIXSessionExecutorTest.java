@@ -0,0 +1,209 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.transport.fix;
+
+import junit.framework.TestCase;
+import org.apache.axis2.transport.base.threads.WorkerPool;
+import org.apache.axis2.transport.base.threads.WorkerPoolFactory;
+import quickfix.SessionID;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class FIXSessionExecutorTest extends TestCase {
+
+    public void testOrderingWithinSessions() throws Exception {
+        WorkerPool pool = WorkerPoolFactory.getWorkerPool(
+                8, 8, 5, -1, "FIX test thread group", "FIX-Test");
+        FIXSessionExecutor executor = new FIXSessionExecutor(pool, 16);
+
+        final int sessionCount = 20;
+        final int messages = 500;
+        final CountDownLatch done = new CountDownLatch(sessionCount * messages);
+        final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+
+        List<SessionID> sessions = new ArrayList<SessionID>();
+        final List<List<Integer>> processed = new ArrayList<List<Integer>>();
+        for (int i = 0; i < sessionCount; i++) {
+            sessions.add(new SessionID("FIX.4.4", "SENDER" + i, "SYNAPSE"));
+            processed.add(new ArrayList<Integer>());
+        }
+
+        for (int m = 0; m < messages; m++) {
+            for (int i = 0; i < sessionCount; i++) {
+                final List<Integer> order = processed.get(i);
+                final int sequence = m;
+                executor.execute(sessions.get(i), new Runnable() {
+                    @Override
+                    public void run() {
+                        threads.add(Thread.currentThread());
+                        // only one task of a session runs at a time, so no locking is needed
+                        order.add(sequence);
+                        done.countDown();
+                    }
+                });
+            }
+        }
+
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        for (int i = 0; i < sessionCount; i++) {
+            List<Integer> order = processed.get(i);
+            assertEquals(messages, order.size());
+            for (int m = 0; m < messages; m++) {
+                assertEquals(m, order.get(m).intValue());
+            }
+            FIXSessionExecutor.SessionStatistics stats = executor.getStatistics(sessions.get(i));
+            assertEquals(messages, stats.getCompletedCount());
+            assertEquals(0, stats.getBacklog());
+            assertTrue(stats.getMaxLatency() >= stats.getAverageLatency());
+        }
+        assertTrue("Sessions were not spread over the pool", threads.size() > 1);
+        pool.shutdown(1000);
+    }
+
+    public void testBoundedQueue() throws Exception {
+        WorkerPool pool = WorkerPoolFactory.getWorkerPool(
+                1, 1, 5, -1, "FIX test thread group", "FIX-Test");
+        final FIXSessionExecutor executor = new FIXSessionExecutor(pool, 2);
+        final SessionID session = new SessionID("FIX.4.4", "BANZAI", "SYNAPSE");
+        final CountDownLatch release = new CountDownLatch(1);
+
+        Runnable blocked = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        executor.execute(session, blocked);
+        // wait for the worker to take the first task
+        while (executor.getStatistics(session).getBacklog() > 0) {
+            Thread.sleep(1);
+        }
+        executor.execute(session, blocked);
+        executor.execute(session, blocked);
+        assertEquals(2, executor.getStatistics(session).getBacklog());
+
+        Thread submitter = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    executor.execute(session, new Runnable() {
+                        @Override
+                        public void run() {
+                        }
+                    });
+                } catch (InterruptedException ignored) {
+                }
+            }
+        };
+        submitter.start();
+        submitter.join(200);
+        assertTrue("Submitter should wait for space in the queue", submitter.isAlive());
+
+        release.countDown();
+        submitter.join(10000);
+        assertFalse(submitter.isAlive());
+        pool.shutdown(1000);
+    }
+
+    public void testQueueIsDroppedAfterLogout() throws Exception {
+        WorkerPool pool = WorkerPoolFactory.getWorkerPool(
+                1, 1, 5, -1, "FIX test thread group", "FIX-Test");
+        FIXSessionExecutor executor = new FIXSessionExecutor(pool, 4);
+        SessionID session = new SessionID("FIX.4.4", "BANZAI", "SYNAPSE");
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(2);
+
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            }
+        };
+        executor.execute(session, task);
+        executor.execute(session, task);
+        executor.remove(session);
+        assertNotNull("Queued tasks must still run", executor.getStatistics(session));
+
+        release.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        long deadline = System.currentTimeMillis() + 10000;
+        while (executor.getStatistics(session) != null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertNull(executor.getStatistics(session));
+        assertTrue(executor.getStatistics().isEmpty());
+
+        executor.execute(session, task);
+        assertNotNull(executor.getStatistics(session));
+        pool.shutdown(1000);
+    }
+
+    public void testStatisticsOverJMX() throws Exception {
+        WorkerPool pool = WorkerPoolFactory.getWorkerPool(
+                1, 1, 5, -1, "FIX test thread group", "FIX-Test");
+        FIXSessionExecutor executor = new FIXSessionExecutor(pool, 4);
+        SessionID session = new SessionID("FIX.4.4", "JMX", "SYNAPSE");
+        final CountDownLatch done = new CountDownLatch(1);
+
+        executor.execute(session, new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("org.apache.synapse:Type=FIXSession,Name=" +
+                ObjectName.quote(session.toString()));
+        long deadline = System.currentTimeMillis() + 10000;
+        while (executor.getStatistics(session).getCompletedCount() == 0 &&
+                System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(1L, server.getAttribute(name, "CompletedCount"));
+        assertEquals(0, server.getAttribute(name, "Backlog"));
+
+        executor.remove(session);
+        while (server.isRegistered(name) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertFalse(server.isRegistered(name));
+        pool.shutdown(1000);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.transport.fix;
+
+import junit.framework.TestCase;
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.OMSourcedElement;
+import org.apache.axiom.om.xpath.AXIOMXPath;
+import org.apache.axis2.context.MessageContext;
+import org.jaxen.SimpleFunctionContext;
+import quickfix.BytesField;
+import quickfix.Message;
+import quickfix.field.*;
+import quickfix.fix44.NewOrderSingle;
+
+import javax.xml.namespace.QName;
+import java.util.Iterator;
+
+public class LazyPayloadTest extends TestCase {
+
+    private static final String SESSION_ID = "FIX.4.4:BANZAI->SYNAPSE";
+
+    private Message createMessage() {
+        Message message = new NewOrderSingle();
+        message.getHeader().setField(new BeginString("FIX.4.4"));
+        message.getHeader().setField(new SenderCompID("BANZAI"));
+        message.getHeader().setField(new TargetCompID("SYNAPSE"));
+        message.getHeader().setField(new MsgSeqNum(7));
+        message.setField(new ClOrdID("12345"));
+        message.setField(new Symbol("APACHE"));
+        message.getTrailer().setField(new CheckSum("123"));
+        return message;
+    }
+
+    private OMSourcedElement getPayload(MessageContext msgCtx) {
+        return (OMSourcedElement) msgCtx.getEnvelope().getBody().getFirstElement();
+    }
+
+    public void testRoutingDoesNotExpandPayload() throws Exception {
+        Message message = createMessage();
+        MessageContext msgCtx = new MessageContext();
+        FIXUtils.getInstance().setSOAPEnvelope(message, 7, SESSION_ID, msgCtx);
+
+        assertEquals(SESSION_ID, FIXUtils.getSourceSession(msgCtx));
+        assertEquals(7, FIXUtils.getSequenceNumber(msgCtx));
+        assertEquals(NewOrderSingle.MSGTYPE, FIXUtils.getFieldValue(msgCtx, MsgType.FIELD));
+        assertEquals("APACHE", FIXUtils.getFieldValue(msgCtx, Symbol.FIELD));
+        assertNull(FIXUtils.getFieldValue(msgCtx, Price.FIELD));
+
+        AXIOMXPath xpath = new AXIOMXPath("fix:field(49)");
+        xpath.addNamespace(FIXFieldFunction.PREFIX, FIXFieldFunction.NAMESPACE);
+        SimpleFunctionContext functions = new SimpleFunctionContext();
+        functions.registerFunction(FIXFieldFunction.NAMESPACE, FIXFieldFunction.NAME,
+                new FIXFieldFunction(msgCtx));
+        xpath.setFunctionContext(functions);
+        assertEquals("BANZAI", xpath.stringValueOf(msgCtx.getEnvelope()));
+
+        Message copy = FIXUtils.getInstance().createFIXMessage(msgCtx);
+        assertNotSame(message, copy);
+        assertEquals(message.toString(), copy.toString());
+
+        assertFalse(getPayload(msgCtx).isExpanded());
+    }
+
+    public void testModifiedPayloadIsConvertedBack() throws Exception {
+        MessageContext msgCtx = new MessageContext();
+        FIXUtils.getInstance().setSOAPEnvelope(createMessage(), 7, SESSION_ID, msgCtx);
+
+        OMElement body = getPayload(msgCtx).getFirstChildWithName(
+                new QName(FIXConstants.FIX_BODY));
+        assertTrue(getPayload(msgCtx).isExpanded());
+        Iterator fields = body.getChildElements();
+        while (fields.hasNext()) {
+            OMElement field = (OMElement) fields.next();
+            if (String.valueOf(Symbol.FIELD).equals(
+                    field.getAttributeValue(new QName(FIXConstants.FIX_FIELD_ID)))) {
+                field.setText("SYNAPSE");
+            }
+        }
+
+        assertEquals("SYNAPSE", FIXUtils.getFieldValue(msgCtx, Symbol.FIELD));
+        assertEquals(SESSION_ID, FIXUtils.getSourceSession(msgCtx));
+        assertEquals(7, FIXUtils.getSequenceNumber(msgCtx));
+        Message copy = FIXUtils.getInstance().createFIXMessage(msgCtx);
+        assertEquals("SYNAPSE", copy.getString(Symbol.FIELD));
+        assertEquals("12345", copy.getString(ClOrdID.FIELD));
+    }
+
+    public void testBinaryFieldsAreAttachedBeforeSerialization() throws Exception {
+        Message message = createMessage();
+        message.setField(new BytesField(RawData.FIELD, new byte[] {1, 2, 3}));
+        MessageContext msgCtx = new MessageContext();
+        FIXUtils.getInstance().setSOAPEnvelope(message, 7, SESSION_ID, msgCtx);
+
+        assertFalse(getPayload(msgCtx).isExpanded());
+        String[] contentIDs = msgCtx.getAttachmentMap().getAllContentIDs();
+        assertEquals(1, contentIDs.length);
+
+        AXIOMXPath xpath = new AXIOMXPath("//" + FIXConstants.FIX_BINARY_FIELD + "/@" +
+                FIXConstants.FIX_MESSAGE_REFERENCE);
+        assertEquals("cid:" + contentIDs[0], xpath.stringValueOf(msgCtx.getEnvelope()));
+        assertEquals(1, msgCtx.getAttachmentMap().getAllContentIDs().length);
+    }
+}